@@ -47,6 +47,8 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.core.archive.compound.ArchivePerformanceTest.class );
 		suite.addTestSuite( org.eclipse.birt.core.archive.compound.ArchiveRemoveTest.class );
 		suite.addTestSuite( org.eclipse.birt.core.archive.compound.ArchiveViewTest.class );
+		suite.addTestSuite( org.eclipse.birt.core.archive.compound.CompressedArchiveEntryTest.class );
+		suite.addTestSuite( org.eclipse.birt.core.archive.compound.MappedArchiveFileTest.class );
 		suite.addTestSuite( org.eclipse.birt.core.archive.compound.UpgradeArchiveTest.class );
 
 		/* in package: org.eclipse.birt.core.btree */
@@ -71,6 +73,7 @@ public class AllTests
 		
 		/* in package: org.eclipse.birt.core.format */
 		suite.addTestSuite( org.eclipse.birt.core.format.DateFormatterTest.class );			
+		suite.addTestSuite( org.eclipse.birt.core.format.FormatterCacheTest.class );
 		suite.addTestSuite( org.eclipse.birt.core.format.NumberFormatterTest.class );
 		suite.addTestSuite( org.eclipse.birt.core.format.StringFormatterTest.class );
 		
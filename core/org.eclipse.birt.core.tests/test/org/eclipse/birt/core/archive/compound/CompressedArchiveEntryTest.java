@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class CompressedArchiveEntryTest extends TestCase
+{
+
+	static final String TEST_FOLDER = "./utest/";
+	static final String ARCHIVE_FILE = TEST_FOLDER + "compressed.archive";
+
+	static final int ENTRY_SIZE = 1024 * 1024 + 123;
+
+	public void setUp( )
+	{
+		new File( TEST_FOLDER ).mkdirs( );
+	}
+
+	public void tearDown( )
+	{
+		new File( ARCHIVE_FILE ).delete( );
+		new File( TEST_FOLDER ).delete( );
+	}
+
+	private static byte getByte( long pos )
+	{
+		return (byte) ( pos % 13 + ( pos >> 12 ) );
+	}
+
+	private void writeEntry( ArchiveEntry entry, long from, long to )
+			throws IOException
+	{
+		byte[] bytes = new byte[5000];
+		for ( long pos = from; pos < to; pos += bytes.length )
+		{
+			int size = (int) Math.min( bytes.length, to - pos );
+			for ( int i = 0; i < size; i++ )
+			{
+				bytes[i] = getByte( pos + i );
+			}
+			entry.write( pos, bytes, 0, size );
+		}
+	}
+
+	private void checkEntry( ArchiveEntry entry, long length )
+			throws IOException
+	{
+		assertEquals( length, entry.getLength( ) );
+		byte[] bytes = new byte[7000];
+		long pos = 0;
+		int size = entry.read( pos, bytes, 0, bytes.length );
+		while ( size > 0 )
+		{
+			for ( int i = 0; i < size; i++ )
+			{
+				assertEquals( getByte( pos + i ), bytes[i] );
+			}
+			pos += size;
+			size = entry.read( pos, bytes, 0, bytes.length );
+		}
+		assertEquals( -1, size );
+		assertEquals( length, pos );
+	}
+
+	public void testReadWrite( ) throws IOException
+	{
+		ArchiveFile archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+		archive.setCompressEntries( true );
+		ArchiveEntry entry = archive.createEntry( "/compressed" );
+		writeEntry( entry, 0, ENTRY_SIZE );
+		entry.close( );
+		archive.close( );
+		// the repetitive data is compressed
+		assertTrue( new File( ARCHIVE_FILE ).length( ) < ENTRY_SIZE / 4 );
+
+		archive = new ArchiveFile( ARCHIVE_FILE, "r" );
+		entry = archive.openEntry( "/compressed" );
+		checkEntry( entry, ENTRY_SIZE );
+
+		// seek randomly
+		Random random = new Random( 1 );
+		byte[] bytes = new byte[100];
+		for ( int i = 0; i < 100; i++ )
+		{
+			long pos = random.nextInt( ENTRY_SIZE - bytes.length );
+			assertEquals( bytes.length, entry.read( pos, bytes, 0, bytes.length ) );
+			for ( int j = 0; j < bytes.length; j++ )
+			{
+				assertEquals( getByte( pos + j ), bytes[j] );
+			}
+		}
+		entry.close( );
+		archive.close( );
+
+		ArchiveFileFactory factory = new ArchiveFileFactory( true );
+		IArchiveFile mappedArchive = factory.openArchive( ARCHIVE_FILE, "r" );
+		assertTrue( mappedArchive instanceof MappedArchiveFile );
+		entry = mappedArchive.openEntry( "/compressed" );
+		checkEntry( entry, ENTRY_SIZE );
+		entry.close( );
+		mappedArchive.close( );
+	}
+
+	public void testRewrite( ) throws IOException
+	{
+		ArchiveFile archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+		archive.setCompressEntries( true );
+		ArchiveEntry entry = archive.createEntry( "/compressed" );
+		writeEntry( entry, 0, 100000 );
+		// write the header after the data
+		entry.write( 0, new byte[10], 0, 10 );
+		writeEntry( entry, 0, 10 );
+		// truncate and extend
+		entry.setLength( 50000 );
+		assertEquals( 50000, entry.getLength( ) );
+		entry.setLength( 60000 );
+		byte[] bytes = new byte[10000];
+		assertEquals( 10000, entry.read( 50000, bytes, 0, bytes.length ) );
+		for ( int i = 0; i < bytes.length; i++ )
+		{
+			assertEquals( 0, bytes[i] );
+		}
+		writeEntry( entry, 50000, ENTRY_SIZE );
+		entry.close( );
+		archive.close( );
+
+		// append the data
+		archive = new ArchiveFile( ARCHIVE_FILE, "rw+" );
+		entry = archive.openEntry( "/compressed" );
+		checkEntry( entry, ENTRY_SIZE );
+		writeEntry( entry, ENTRY_SIZE, ENTRY_SIZE + 100000 );
+		entry.close( );
+		archive.close( );
+
+		archive = new ArchiveFile( ARCHIVE_FILE, "r" );
+		entry = archive.openEntry( "/compressed" );
+		checkEntry( entry, ENTRY_SIZE + 100000 );
+		entry.close( );
+		archive.close( );
+	}
+
+	/**
+	 * the records replaced by the flushes are removed when the entry is
+	 * closed, the reader opened before reads the moved records.
+	 */
+	public void testCompact( ) throws IOException
+	{
+		ArchiveFile archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+		archive.setCompressEntries( true );
+		ArchiveEntry entry = archive.createEntry( "/compressed" );
+		ArchiveEntry reader = archive.openEntry( "/compressed" );
+		for ( long pos = 0; pos < ENTRY_SIZE; pos += 10000 )
+		{
+			writeEntry( entry, pos, Math.min( pos + 10000, ENTRY_SIZE ) );
+			// update the header, the first and the last blocks are saved
+			// again by each flush
+			entry.write( 0, new byte[]{getByte( 0 )}, 0, 1 );
+			archive.flush( );
+			if ( pos == 500000 )
+			{
+				checkEntry( reader, pos + 10000 );
+			}
+		}
+		entry.close( );
+		checkEntry( reader, ENTRY_SIZE );
+		reader.close( );
+		archive.close( );
+
+		archive = new ArchiveFile( ARCHIVE_FILE, "r" );
+		entry = archive.openEntry( "/compressed" );
+		checkEntry( entry, ENTRY_SIZE );
+		// the replaced records are removed
+		assertTrue( ( (CompressedArchiveEntry) entry ).entry.getLength( ) < ENTRY_SIZE / 100 );
+		entry.close( );
+		archive.close( );
+	}
+
+	public void testReadWhileWriting( ) throws IOException
+	{
+		ArchiveFile archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+		archive.setCompressEntries( true );
+		ArchiveEntry entry = archive.createEntry( "/compressed" );
+		writeEntry( entry, 0, 100000 );
+		archive.flush( );
+
+		ArchiveEntry reader = archive.openEntry( "/compressed" );
+		checkEntry( reader, 100000 );
+
+		writeEntry( entry, 100000, 200000 );
+		entry.write( 0, new byte[]{getByte( 0 )}, 0, 1 );
+		archive.flush( );
+		checkEntry( reader, 200000 );
+		reader.close( );
+
+		archive.close( );
+
+		archive = new ArchiveFile( ARCHIVE_FILE, "r" );
+		entry = archive.openEntry( "/compressed" );
+		checkEntry( entry, 200000 );
+		entry.close( );
+		archive.close( );
+	}
+
+	public void testUncompressedEntry( ) throws IOException
+	{
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		archive.setCompressEntries( true );
+		ArchiveEntry entry = archive.createEntry( "/plain", false );
+		writeEntry( entry, 0, 100000 );
+		entry.close( );
+		archive.close( );
+		assertTrue( new File( ARCHIVE_FILE ).length( ) > 100000 );
+
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "r" );
+		entry = archive.openEntry( "/plain" );
+		assertTrue( entry instanceof ArchiveEntryV3 );
+		checkEntry( entry, 100000 );
+		entry.close( );
+		archive.close( );
+	}
+}
@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class MappedArchiveFileTest extends TestCase
+{
+
+	static final int TEST_COUNT = 50;
+	static final int THREAD_COUNT = 4;
+
+	/**
+	 * the large entry uses the double indirect blocks
+	 */
+	static final int LARGE_ENTRY_SIZE = 5 * 1024 * 1024 + 123;
+
+	static final String TEST_FOLDER = "./utest/";
+	static final String ARCHIVE_ID = TEST_FOLDER + "mappedArchive";
+	static final String VIEW_ID = TEST_FOLDER + "mappedView";
+
+	public void setUp( )
+	{
+		new File( TEST_FOLDER ).mkdirs( );
+	}
+
+	public void tearDown( )
+	{
+		new File( ARCHIVE_ID ).delete( );
+		new File( VIEW_ID ).delete( );
+		new File( TEST_FOLDER ).delete( );
+	}
+
+	private static byte getByte( int entry, long pos )
+	{
+		return (byte) ( entry * 31 + pos * 7 + ( pos >> 12 ) );
+	}
+
+	private void createArchive( ) throws IOException
+	{
+		IArchiveFileFactory factory = new ArchiveFileFactory( );
+		IArchiveFile archive = factory.createArchive( ARCHIVE_ID );
+		for ( int index = 0; index < TEST_COUNT; index++ )
+		{
+			ArchiveEntry entry = archive.createEntry( "/entry/" + index );
+			byte[] bytes = new byte[index * 100];
+			for ( int i = 0; i < bytes.length; i++ )
+			{
+				bytes[i] = getByte( index, i );
+			}
+			entry.write( 0, bytes, 0, bytes.length );
+			entry.close( );
+		}
+		ArchiveEntry entry = archive.createEntry( "/large" );
+		byte[] bytes = new byte[10000];
+		for ( int pos = 0; pos < LARGE_ENTRY_SIZE; pos += bytes.length )
+		{
+			int size = Math.min( bytes.length, LARGE_ENTRY_SIZE - pos );
+			for ( int i = 0; i < size; i++ )
+			{
+				bytes[i] = getByte( TEST_COUNT, pos + i );
+			}
+			entry.write( pos, bytes, 0, size );
+		}
+		entry.close( );
+		archive.close( );
+	}
+
+	private void checkEntry( IArchiveFile archive, String name, int index,
+			long length, int bufferSize ) throws IOException
+	{
+		ArchiveEntry entry = archive.openEntry( name );
+		try
+		{
+			assertEquals( length, entry.getLength( ) );
+			byte[] bytes = new byte[bufferSize];
+			long pos = 0;
+			int size = entry.read( pos, bytes, 0, bytes.length );
+			while ( size > 0 )
+			{
+				for ( int i = 0; i < size; i++ )
+				{
+					assertEquals( getByte( index, pos + i ), bytes[i] );
+				}
+				pos += size;
+				size = entry.read( pos, bytes, 0, bytes.length );
+			}
+			assertEquals( -1, size );
+			assertEquals( length, pos );
+		}
+		finally
+		{
+			entry.close( );
+		}
+	}
+
+	public void testOpenArchive( ) throws IOException
+	{
+		createArchive( );
+
+		ArchiveFileFactory factory = new ArchiveFileFactory( true );
+		IArchiveFile archive = factory.openArchive( ARCHIVE_ID, "r" );
+		assertTrue( archive instanceof MappedArchiveFile );
+		assertEquals( ARCHIVE_ID, archive.getSystemId( ) );
+		assertEquals( null, archive.getDependId( ) );
+
+		List<String> entries = archive.listEntries( "/entry/" );
+		assertEquals( TEST_COUNT, entries.size( ) );
+		assertTrue( archive.exists( "/large" ) );
+		assertFalse( archive.exists( "/none" ) );
+		for ( int index = 0; index < TEST_COUNT; index++ )
+		{
+			checkEntry( archive, "/entry/" + index, index, index * 100, 33 );
+		}
+		checkEntry( archive, "/large", TEST_COUNT, LARGE_ENTRY_SIZE, 10000 );
+
+		try
+		{
+			archive.createEntry( "/new" );
+			fail( );
+		}
+		catch ( IOException ex )
+		{
+		}
+		try
+		{
+			archive.openEntry( "/none" );
+			fail( );
+		}
+		catch ( IOException ex )
+		{
+		}
+		archive.close( );
+
+		factory.setMemoryMapped( false );
+		archive = factory.openArchive( ARCHIVE_ID, "r" );
+		assertFalse( archive instanceof MappedArchiveFile );
+		archive.close( );
+	}
+
+	public void testOpenView( ) throws IOException
+	{
+		createArchive( );
+
+		ArchiveFileFactory factory = new ArchiveFileFactory( true );
+		IArchiveFile archive = factory.openArchive( ARCHIVE_ID, "r" );
+		IArchiveFile view = factory.createView( VIEW_ID, archive );
+		ArchiveEntry entry = view.createEntry( "/view" );
+		entry.write( 0, new byte[10], 0, 10 );
+		entry.close( );
+		view.close( );
+		archive.close( );
+
+		view = factory.openArchive( VIEW_ID, "r" );
+		assertEquals( VIEW_ID, view.getSystemId( ) );
+		assertEquals( ARCHIVE_ID, view.getDependId( ) );
+		assertTrue( view.exists( "/view" ) );
+		checkEntry( view, "/entry/1", 1, 100, 33 );
+		view.close( );
+	}
+
+	public void testConcurrentRead( ) throws Exception
+	{
+		createArchive( );
+
+		final IArchiveFile archive = new ArchiveFileFactory( true ).openArchive(
+				ARCHIVE_ID,
+				"r" );
+		final Throwable[] errors = new Throwable[THREAD_COUNT];
+		Thread[] threads = new Thread[THREAD_COUNT];
+		for ( int i = 0; i < THREAD_COUNT; i++ )
+		{
+			final int threadIndex = i;
+			threads[i] = new Thread( ) {
+
+				public void run( )
+				{
+					try
+					{
+						for ( int index = 0; index < TEST_COUNT; index++ )
+						{
+							checkEntry( archive,
+									"/entry/" + index,
+									index,
+									index * 100,
+									17 + threadIndex );
+						}
+						checkEntry( archive,
+								"/large",
+								TEST_COUNT,
+								LARGE_ENTRY_SIZE,
+								4000 + threadIndex );
+					}
+					catch ( Throwable ex )
+					{
+						errors[threadIndex] = ex;
+					}
+				}
+			};
+			threads[i].start( );
+		}
+		for ( int i = 0; i < THREAD_COUNT; i++ )
+		{
+			threads[i].join( );
+			if ( errors[i] != null )
+			{
+				throw new Exception( errors[i] );
+			}
+		}
+		archive.close( );
+	}
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.format;
+
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import com.ibm.icu.text.DateFormat;
+import com.ibm.icu.text.SimpleDateFormat;
+import com.ibm.icu.util.TimeZone;
+import com.ibm.icu.util.ULocale;
+
+/**
+ * Test the formatters cached by FormatterCache
+ */
+public class FormatterCacheTest extends TestCase
+{
+
+	static final int THREAD_COUNT = 8;
+
+	/*
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	public void tearDown( )
+	{
+		FormatterCache.clearThreadCache( );
+	}
+
+	public void testThreadCache( )
+	{
+		TimeZone gmt = TimeZone.getTimeZone( "GMT" );
+		DateFormatter df = FormatterCache.getDateFormatter( "yyyy-MM-dd",
+				ULocale.US,
+				gmt );
+		assertSame( df, FormatterCache.getDateFormatter( "yyyy-MM-dd",
+				ULocale.US,
+				TimeZone.getTimeZone( "GMT" ) ) );
+		assertNotSame( df, FormatterCache.getDateFormatter( "yyyy-MM-dd",
+				ULocale.GERMANY,
+				gmt ) );
+		assertNotSame( df, FormatterCache.getDateFormatter( "yyyy-MM-dd",
+				ULocale.US,
+				null ) );
+		assertNotSame( df, FormatterCache.getDateFormatter( "yyyy/MM/dd",
+				ULocale.US,
+				gmt ) );
+		assertEquals( "yyyy-MM-dd", df.getPattern( ) );
+
+		NumberFormatter nf = FormatterCache.getNumberFormatter( "#,##0.00",
+				ULocale.US );
+		assertSame( nf, FormatterCache.getNumberFormatter( "#,##0.00",
+				ULocale.US ) );
+		assertEquals( "1,234.50", nf.format( 1234.5 ) );
+
+		assertSame( FormatterCache.getNumberFormat( ULocale.US ),
+				FormatterCache.getNumberFormat( ULocale.US ) );
+		assertSame( FormatterCache.getSimpleDateFormat( "M/d/yyyy",
+				null,
+				null ), FormatterCache.getSimpleDateFormat( "M/d/yyyy",
+				null,
+				null ) );
+
+		FormatterCache.clearThreadCache( );
+		assertNotSame( df, FormatterCache.getDateFormatter( "yyyy-MM-dd",
+				ULocale.US,
+				gmt ) );
+	}
+
+	public void testNewInstance( )
+	{
+		DateFormat format1 = FormatterCache.newDateInstance( DateFormat.SHORT,
+				ULocale.US );
+		DateFormat format2 = FormatterCache.newDateInstance( DateFormat.SHORT,
+				ULocale.US );
+		assertNotSame( format1, format2 );
+		assertEquals( DateFormat.getDateInstance( DateFormat.SHORT, ULocale.US )
+				.format( new Date( 0 ) ), format1.format( new Date( 0 ) ) );
+
+		// changing a returned format doesn't change the others
+		format1.setTimeZone( TimeZone.getTimeZone( "GMT+08:00" ) );
+		format2.setTimeZone( TimeZone.getTimeZone( "GMT-08:00" ) );
+		DateFormat format3 = FormatterCache.newDateInstance( DateFormat.SHORT,
+				ULocale.US );
+		assertEquals( TimeZone.getDefault( ).getID( ), format3.getTimeZone( )
+				.getID( ) );
+
+		SimpleDateFormat simpleFormat = FormatterCache.newSimpleDateFormat( "yyyy-MM-dd",
+				ULocale.US );
+		simpleFormat.applyPattern( "yyyy" );
+		assertEquals( "yyyy-MM-dd", FormatterCache.newSimpleDateFormat( "yyyy-MM-dd",
+				ULocale.US )
+				.toPattern( ) );
+	}
+
+	public void testMaxPrototypeCount( )
+	{
+		for ( int i = 0; i < FormatterCache.MAX_PROTOTYPE_COUNT * 2; i++ )
+		{
+			String pattern = "'" + i + "' yyyy"; //$NON-NLS-1$ //$NON-NLS-2$
+			SimpleDateFormat format = FormatterCache.newSimpleDateFormat( pattern,
+					ULocale.US );
+			assertEquals( pattern, format.toPattern( ) );
+			assertTrue( FormatterCache.getPrototypeCount( ) <= FormatterCache.MAX_PROTOTYPE_COUNT );
+		}
+	}
+
+	public void testConcurrentFormat( ) throws Exception
+	{
+		final String pattern = "yyyy-MM-dd HH:mm:ss";
+		final TimeZone gmt = TimeZone.getTimeZone( "GMT" );
+		final DateFormatter[] formatters = new DateFormatter[THREAD_COUNT];
+		final Throwable[] errors = new Throwable[THREAD_COUNT];
+		Thread[] threads = new Thread[THREAD_COUNT];
+		for ( int i = 0; i < THREAD_COUNT; i++ )
+		{
+			final int threadIndex = i;
+			threads[i] = new Thread( ) {
+
+				public void run( )
+				{
+					try
+					{
+						SimpleDateFormat expected = new SimpleDateFormat( pattern,
+								ULocale.US );
+						expected.setTimeZone( gmt );
+						formatters[threadIndex] = FormatterCache.getDateFormatter( pattern,
+								ULocale.US,
+								gmt );
+						for ( int j = 0; j < 10000; j++ )
+						{
+							Date date = new Date( ( threadIndex * 10000L + j ) * 1000003L );
+							assertEquals( expected.format( date ),
+									FormatterCache.getDateFormatter( pattern,
+											ULocale.US,
+											gmt ).format( date ) );
+						}
+					}
+					catch ( Throwable ex )
+					{
+						errors[threadIndex] = ex;
+					}
+				}
+			};
+			threads[i].start( );
+		}
+		for ( int i = 0; i < THREAD_COUNT; i++ )
+		{
+			threads[i].join( );
+			if ( errors[i] != null )
+			{
+				throw new Exception( errors[i] );
+			}
+		}
+		// each thread has its own formatter
+		for ( int i = 0; i < THREAD_COUNT; i++ )
+		{
+			for ( int j = i + 1; j < THREAD_COUNT; j++ )
+			{
+				assertNotSame( formatters[i], formatters[j] );
+			}
+		}
+	}
+}
@@ -28,6 +28,12 @@ interface ArchiveConstants
 	 * the system property defines the block size, it should be times of 1024.
 	 */
 	static final String PROPERTY_DEFAULT_BLOCK_SIZE = "org.eclipse.birt.core.archive.compound.DEFAULT_BLOCK_SIZE";
+
+	/**
+	 * the system property defines if the entries of the new archive files are
+	 * saved in compressed blocks, "true" or "false".
+	 */
+	static final String PROPERTY_COMPRESS_ENTRIES = "org.eclipse.birt.core.archive.compound.COMPRESS_ENTRIES";
 	
 	/**
 	 * Size of a physical block, counted in bytes.
@@ -243,6 +243,20 @@ public class ArchiveFile implements IArchiveFile
 		}
 	}
 
+	/**
+	 * sets if the entries created later are saved in compressed blocks, it is
+	 * only supported by the archive of the latest version.
+	 * 
+	 * @see ArchiveFileV3#setCompressEntries(boolean)
+	 */
+	public void setCompressEntries( boolean compressEntries )
+	{
+		if ( af instanceof ArchiveFileV3 )
+		{
+			( (ArchiveFileV3) af ).setCompressEntries( compressEntries );
+		}
+	}
+
 	public long getUsedCache( )
 	{
 		if ( isArchiveFileAvailable( af ) )
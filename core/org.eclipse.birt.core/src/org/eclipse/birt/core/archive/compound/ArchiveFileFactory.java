@@ -17,6 +17,37 @@ import java.io.IOException;
 public class ArchiveFileFactory implements IArchiveFileFactory
 {
 
+	/**
+	 * open the V3 archives in "r" mode with the memory mapped archive.
+	 */
+	protected boolean memoryMapped;
+
+	public ArchiveFileFactory( )
+	{
+		this( false );
+	}
+
+	/**
+	 * @param memoryMapped
+	 *            true if the archives opened in "r" mode should be mapped into
+	 *            memory, so the entries can be read by several threads without
+	 *            lock. The archives of other versions are opened as usual.
+	 */
+	public ArchiveFileFactory( boolean memoryMapped )
+	{
+		this.memoryMapped = memoryMapped;
+	}
+
+	public boolean isMemoryMapped( )
+	{
+		return memoryMapped;
+	}
+
+	public void setMemoryMapped( boolean memoryMapped )
+	{
+		this.memoryMapped = memoryMapped;
+	}
+
 	public IArchiveFile createArchive( String archiveId ) throws IOException
 	{
 		String fileName = getPhysicalFile( archiveId );
@@ -84,7 +115,7 @@ public class ArchiveFileFactory implements IArchiveFileFactory
 			throws IOException
 	{
 		String fileName = getPhysicalFile( archiveId );
-		ArchiveFile file = new ArchiveFile( fileName, archiveId, mode );
+		IArchiveFile file = doOpenArchive( archiveId, fileName, mode );
 		String dependId = file.getDependId( );
 		if ( dependId != null && dependId.length( ) > 0 )
 		{
@@ -98,10 +129,21 @@ public class ArchiveFileFactory implements IArchiveFileFactory
 			IArchiveFile archive ) throws IOException
 	{
 		String fileName = getPhysicalFile( viewId );
-		ArchiveFile view = new ArchiveFile( fileName, viewId, mode );
+		IArchiveFile view = doOpenArchive( viewId, fileName, mode );
 		return new ArchiveView( view, archive, true );
 	}
 
+	private IArchiveFile doOpenArchive( String archiveId, String fileName,
+			String mode ) throws IOException
+	{
+		if ( memoryMapped && "r".equals( mode )
+				&& MappedArchiveFile.isMappable( fileName ) )
+		{
+			return new MappedArchiveFile( archiveId, fileName );
+		}
+		return new ArchiveFile( fileName, archiveId, mode );
+	}
+
 	/**
 	 * The sub class should override this method to implement its own systemId
 	 * resolver.
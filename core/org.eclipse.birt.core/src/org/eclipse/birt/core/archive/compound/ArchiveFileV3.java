@@ -14,6 +14,8 @@ package org.eclipse.birt.core.archive.compound;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -29,7 +31,12 @@ public class ArchiveFileV3 implements IArchiveFile
 	public static final String PROPERTY_DEPEND_ID = "archive.depened-id";
 
 	protected Ext2FileSystem fs;
-	protected HashSet<ArchiveEntryV3> openedEntries = new HashSet<ArchiveEntryV3>( );
+	protected HashSet<ArchiveEntry> openedEntries = new HashSet<ArchiveEntry>( );
+
+	/**
+	 * the entries created by createEntry(name) are saved in compressed blocks
+	 */
+	protected boolean compressEntries = isCompressEntriesDefault( );
 
 	public ArchiveFileV3( String fileName, String mode ) throws IOException
 
@@ -56,9 +63,9 @@ public class ArchiveFileV3 implements IArchiveFile
 	{
 		if ( !openedEntries.isEmpty( ) )
 		{
-			ArrayList<ArchiveEntryV3> entries = new ArrayList<ArchiveEntryV3>(
+			ArrayList<ArchiveEntry> entries = new ArrayList<ArchiveEntry>(
 					openedEntries );
-			for ( ArchiveEntryV3 entry : entries )
+			for ( ArchiveEntry entry : entries )
 			{
 				entry.close( );
 			}
@@ -81,10 +88,63 @@ public class ArchiveFileV3 implements IArchiveFile
 		fs.setProperty( PROPERTY_DEPEND_ID, id );
 	}
 
+	/**
+	 * sets if the entries created later are saved in compressed blocks. The
+	 * compressed entries use less disk but can't be read by the versions
+	 * before 4.2.2. The default value is defined by the system property
+	 * PROPERTY_COMPRESS_ENTRIES.
+	 */
+	public void setCompressEntries( boolean compressEntries )
+	{
+		this.compressEntries = compressEntries;
+	}
+
+	public boolean isCompressEntries( )
+	{
+		return compressEntries;
+	}
+
 	synchronized public ArchiveEntry createEntry( String name ) throws IOException
+	{
+		return createEntry( name, compressEntries );
+	}
+
+	/**
+	 * creates the entry.
+	 * 
+	 * @param name
+	 *            the entry name
+	 * @param compressed
+	 *            if the data of the entry is saved in compressed blocks
+	 */
+	synchronized public ArchiveEntry createEntry( String name,
+			boolean compressed ) throws IOException
 	{
 		Ext2File file = fs.createFile( name );
-		return new ArchiveEntryV3( this, file );
+		file.setCompressed( compressed );
+		return createEntry( file );
+	}
+
+	private ArchiveEntry createEntry( Ext2File file ) throws IOException
+	{
+		ArchiveEntryV3 entry = new ArchiveEntryV3( this, file );
+		if ( !file.isCompressed( ) )
+		{
+			return entry;
+		}
+		// register the compressed entry instead of the underlying one, so its
+		// current block is saved before the archive is flushed or closed
+		ArchiveEntry compressedEntry = new CompressedArchiveEntry( entry ) {
+
+			public void close( ) throws IOException
+			{
+				closeEntry( this );
+				super.close( );
+			}
+		};
+		openedEntries.remove( entry );
+		openedEntries.add( compressedEntry );
+		return compressedEntry;
 	}
 
 	public boolean exists( String name )
@@ -95,7 +155,7 @@ public class ArchiveFileV3 implements IArchiveFile
 	synchronized public void flush( ) throws IOException
 	{
 		// first flush all the ext2 files
-		for ( ArchiveEntryV3 entry : openedEntries )
+		for ( ArchiveEntry entry : openedEntries )
 		{
 			entry.flush( );
 		}
@@ -112,7 +172,7 @@ public class ArchiveFileV3 implements IArchiveFile
 		if ( fs.existFile( name ) )
 		{
 			Ext2File file = fs.openFile( name );
-			return new ArchiveEntryV3( this, file );
+			return createEntry( file );
 		}
 		throw new FileNotFoundException( name );
 	}
@@ -198,13 +258,26 @@ public class ArchiveFileV3 implements IArchiveFile
 		assert ( locker instanceof Ext2Entry );
 	}
 
-	synchronized protected void openEntry( ArchiveEntryV3 entry )
+	synchronized protected void openEntry( ArchiveEntry entry )
 	{
 		openedEntries.add( entry );
 	}
 
-	synchronized protected void closeEntry( ArchiveEntryV3 entry )
+	synchronized protected void closeEntry( ArchiveEntry entry )
 	{
 		openedEntries.remove( entry );
 	}
+
+	static boolean isCompressEntriesDefault( )
+	{
+		String value = (String) AccessController
+				.doPrivileged( new PrivilegedAction<Object>( ) {
+
+					public Object run( )
+					{
+						return System.getProperty( ArchiveConstants.PROPERTY_COMPRESS_ENTRIES );
+					}
+				} );
+		return Boolean.valueOf( value ).booleanValue( );
+	}
 }
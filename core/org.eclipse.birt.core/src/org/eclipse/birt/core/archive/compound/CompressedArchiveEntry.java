@@ -0,0 +1,637 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.eclipse.birt.core.archive.ArchiveUtil;
+
+/**
+ * An entry saving its data in compressed blocks of the underlying entry.
+ *
+ * The data is split into blocks of BLOCK_SIZE bytes, each block is deflated
+ * and appended to the underlying entry as a record:
+ *
+ * <pre>
+ * record: int blockId, int size, int storedSize, byte[storedSize] data
+ * </pre>
+ *
+ * The block is saved as is if it can't be compressed, in which case the
+ * storedSize equals to the size. A block changed after it has been saved is
+ * appended again, the last record of a block wins. The record LENGTH_RECORD
+ * saves the length of the entry set by setLength.
+ *
+ * When the entry is closed, the offsets of the blocks are appended as the
+ * record INDEX_RECORD, which ends with its own offset and the INDEX_TAG, so the
+ * entry can be read without scanning the records. The entry still being
+ * written has no index at the end, its records are scanned instead, so the
+ * data is read as soon as it is flushed.
+ *
+ * The records replaced by the later ones are kept while the entry is written,
+ * as they may be read by the readers of the entry. If they take more than a
+ * quarter of the entry when it is closed, the last records of the blocks are
+ * moved to the front and the entry is truncated after the index. A reader
+ * finding the length of the entry changed reads the index if the entry is
+ * closed, so it doesn't read the moved records at their old offsets.
+ *
+ * The entry is used by one thread at a time, as the other entries.
+ */
+public class CompressedArchiveEntry extends ArchiveEntry
+{
+
+	/**
+	 * the size of a compressed block, counted in bytes
+	 */
+	static final int BLOCK_SIZE = 32 * 1024;
+
+	static final int INDEX_RECORD = -1;
+	static final int LENGTH_RECORD = -2;
+
+	static final int RECORD_HEADER_SIZE = 12;
+
+	/** The magic tag of the block index: "BIRTDFIX" */
+	static final long INDEX_TAG = 0x4249525444464958L;
+
+	protected ArchiveEntry entry;
+
+	/**
+	 * the length of the uncompressed data
+	 */
+	private long length;
+
+	/**
+	 * the offsets of the last records of the blocks, -1 if the block has not
+	 * been saved
+	 */
+	private long[] blockOffsets = new long[16];
+	private int blockCount;
+
+	/**
+	 * the end of the records which have been read or written
+	 */
+	private long recordEnd;
+
+	/**
+	 * the current block and the offset of the record it is read from
+	 */
+	private byte[] block = new byte[BLOCK_SIZE];
+	private int blockId = -1;
+	private long blockOffset = -1;
+	private int blockStoredSize;
+	private boolean blockDirty;
+
+	/**
+	 * the size of the records which have been replaced by the later ones
+	 */
+	private long wastedSize;
+
+	/**
+	 * the records have been changed, the index must be saved on close
+	 */
+	private boolean modified;
+
+	private byte[] record = new byte[RECORD_HEADER_SIZE + BLOCK_SIZE];
+	private Deflater deflater;
+	private Inflater inflater;
+
+	private boolean closed;
+
+	public CompressedArchiveEntry( ArchiveEntry entry ) throws IOException
+	{
+		super( entry.getName( ) );
+		this.entry = entry;
+		if ( !readIndex( ) )
+		{
+			readRecords( );
+		}
+	}
+
+	public long getLength( ) throws IOException
+	{
+		long end = entry.getLength( );
+		if ( end != recordEnd )
+		{
+			// some records are written by others
+			refreshRecords( end );
+		}
+		return length;
+	}
+
+	public void setLength( long newLength ) throws IOException
+	{
+		if ( newLength == length )
+		{
+			return;
+		}
+		if ( newLength == 0 )
+		{
+			entry.setLength( 0 );
+			length = 0;
+			blockCount = 0;
+			recordEnd = 0;
+			blockId = -1;
+			blockOffset = -1;
+			blockDirty = false;
+			wastedSize = 0;
+			modified = true;
+			return;
+		}
+		if ( newLength < length )
+		{
+			int lastBlock = (int) ( ( newLength - 1 ) / BLOCK_SIZE );
+			if ( blockId > lastBlock )
+			{
+				blockId = -1;
+				blockOffset = -1;
+				blockDirty = false;
+			}
+			if ( blockCount > lastBlock + 1 )
+			{
+				blockCount = lastBlock + 1;
+			}
+			int tail = (int) ( newLength - (long) lastBlock * BLOCK_SIZE );
+			if ( tail < BLOCK_SIZE
+					&& ( blockId == lastBlock || getBlockOffset( lastBlock ) != -1 ) )
+			{
+				// clear the data after the end, so it is read as 0 if the
+				// entry is extended again
+				loadBlock( lastBlock );
+				Arrays.fill( block, tail, BLOCK_SIZE, (byte) 0 );
+				blockDirty = true;
+			}
+		}
+		length = newLength;
+		byte[] value = new byte[8];
+		ArchiveUtil.longToBytes( newLength, value );
+		System.arraycopy( value, 0, record, RECORD_HEADER_SIZE, 8 );
+		writeRecord( LENGTH_RECORD, 0, 8 );
+		// the length is saved in the index
+		wastedSize += RECORD_HEADER_SIZE + 8;
+	}
+
+	public void flush( ) throws IOException
+	{
+		super.flush( );
+		saveBlock( );
+		entry.flush( );
+	}
+
+	public void refresh( ) throws IOException
+	{
+		entry.refresh( );
+		long end = entry.getLength( );
+		if ( end != recordEnd )
+		{
+			refreshRecords( end );
+		}
+	}
+
+	public int read( long pos, byte[] b, int off, int len ) throws IOException
+	{
+		long remain = getLength( ) - pos;
+		if ( remain <= 0 )
+		{
+			return -1;
+		}
+		if ( len > remain )
+		{
+			len = (int) remain;
+		}
+		int size = 0;
+		while ( size < len )
+		{
+			loadBlock( (int) ( pos / BLOCK_SIZE ) );
+			int blockOff = (int) ( pos % BLOCK_SIZE );
+			int count = Math.min( len - size, BLOCK_SIZE - blockOff );
+			System.arraycopy( block, blockOff, b, off + size, count );
+			size += count;
+			pos += count;
+		}
+		return size;
+	}
+
+	public void write( long pos, byte[] b, int off, int len )
+			throws IOException
+	{
+		while ( len > 0 )
+		{
+			loadBlock( (int) ( pos / BLOCK_SIZE ) );
+			int blockOff = (int) ( pos % BLOCK_SIZE );
+			int count = Math.min( len, BLOCK_SIZE - blockOff );
+			System.arraycopy( b, off, block, blockOff, count );
+			blockDirty = true;
+			pos += count;
+			off += count;
+			len -= count;
+			if ( pos > length )
+			{
+				length = pos;
+			}
+		}
+	}
+
+	public void close( ) throws IOException
+	{
+		if ( closed )
+		{
+			return;
+		}
+		closed = true;
+		try
+		{
+			saveBlock( );
+			if ( modified )
+			{
+				if ( wastedSize * 4 > recordEnd )
+				{
+					compact( );
+				}
+				writeIndex( );
+				if ( entry.getLength( ) > recordEnd )
+				{
+					entry.setLength( recordEnd );
+				}
+			}
+		}
+		finally
+		{
+			try
+			{
+				entry.close( );
+			}
+			finally
+			{
+				if ( deflater != null )
+				{
+					deflater.end( );
+				}
+				if ( inflater != null )
+				{
+					inflater.end( );
+				}
+			}
+		}
+	}
+
+	private long getBlockOffset( int id )
+	{
+		if ( id < blockCount )
+		{
+			return blockOffsets[id];
+		}
+		return -1;
+	}
+
+	private void setBlockOffset( int id, long offset )
+	{
+		if ( id >= blockOffsets.length )
+		{
+			long[] offsets = new long[Math.max( id + 1,
+					blockOffsets.length * 2 )];
+			System.arraycopy( blockOffsets, 0, offsets, 0, blockCount );
+			blockOffsets = offsets;
+		}
+		for ( int i = blockCount; i < id; i++ )
+		{
+			blockOffsets[i] = -1;
+		}
+		if ( id >= blockCount )
+		{
+			blockCount = id + 1;
+		}
+		blockOffsets[id] = offset;
+	}
+
+	/**
+	 * makes the block the current block, the changed current block is saved
+	 * first.
+	 */
+	private void loadBlock( int id ) throws IOException
+	{
+		long offset = getBlockOffset( id );
+		if ( id == blockId && ( blockDirty || offset == blockOffset ) )
+		{
+			return;
+		}
+		saveBlock( );
+		blockId = id;
+		blockOffset = offset;
+		if ( offset == -1 )
+		{
+			Arrays.fill( block, (byte) 0 );
+			return;
+		}
+		readFully( offset, record, 0, RECORD_HEADER_SIZE );
+		int size = ArchiveUtil.bytesToInteger( record, 4 );
+		int storedSize = ArchiveUtil.bytesToInteger( record, 8 );
+		if ( ArchiveUtil.bytesToInteger( record, 0 ) != id
+				|| size > BLOCK_SIZE || storedSize > BLOCK_SIZE )
+		{
+			throw new IOException( "invalid block " + id + " of " + name );
+		}
+		blockStoredSize = storedSize;
+		if ( storedSize == size )
+		{
+			readFully( offset + RECORD_HEADER_SIZE, block, 0, size );
+		}
+		else
+		{
+			readFully( offset + RECORD_HEADER_SIZE, record, 0, storedSize );
+			inflate( storedSize, size );
+		}
+		Arrays.fill( block, size, BLOCK_SIZE, (byte) 0 );
+	}
+
+	private void inflate( int storedSize, int size ) throws IOException
+	{
+		if ( inflater == null )
+		{
+			inflater = new Inflater( );
+		}
+		inflater.reset( );
+		inflater.setInput( record, 0, storedSize );
+		try
+		{
+			int count = 0;
+			while ( count < size )
+			{
+				int n = inflater.inflate( block, count, size - count );
+				if ( n == 0 )
+				{
+					throw new EOFException( name );
+				}
+				count += n;
+			}
+		}
+		catch ( DataFormatException ex )
+		{
+			IOException ioex = new IOException( ex.getMessage( ) );
+			ioex.initCause( ex );
+			throw ioex;
+		}
+	}
+
+	/**
+	 * saves the current block if it has been changed.
+	 */
+	private void saveBlock( ) throws IOException
+	{
+		if ( !blockDirty )
+		{
+			return;
+		}
+		blockDirty = false;
+		int size = (int) Math.min( BLOCK_SIZE, length - (long) blockId
+				* BLOCK_SIZE );
+		if ( size <= 0 )
+		{
+			return;
+		}
+		if ( deflater == null )
+		{
+			deflater = new Deflater( );
+		}
+		deflater.reset( );
+		deflater.setInput( block, 0, size );
+		deflater.finish( );
+		int storedSize = 0;
+		while ( !deflater.finished( ) && storedSize < size )
+		{
+			storedSize += deflater.deflate( record, RECORD_HEADER_SIZE
+					+ storedSize, size - storedSize );
+		}
+		if ( !deflater.finished( ) || storedSize >= size )
+		{
+			// the block can't be compressed, save it as is
+			System.arraycopy( block, 0, record, RECORD_HEADER_SIZE, size );
+			storedSize = size;
+		}
+		if ( blockOffset != -1 && blockOffset == getBlockOffset( blockId ) )
+		{
+			wastedSize += RECORD_HEADER_SIZE + blockStoredSize;
+		}
+		blockOffset = recordEnd;
+		blockStoredSize = storedSize;
+		setBlockOffset( blockId, recordEnd );
+		writeRecord( blockId, size, storedSize );
+	}
+
+	/**
+	 * appends the record whose data has been copied into the record buffer.
+	 */
+	private void writeRecord( int id, int size, int storedSize )
+			throws IOException
+	{
+		ArchiveUtil.integerToBytes( id, record, 0 );
+		ArchiveUtil.integerToBytes( size, record, 4 );
+		ArchiveUtil.integerToBytes( storedSize, record, 8 );
+		entry.write( recordEnd, record, 0, RECORD_HEADER_SIZE + storedSize );
+		recordEnd += RECORD_HEADER_SIZE + storedSize;
+		modified = true;
+	}
+
+	/**
+	 * moves the last records of the blocks to the front of the entry, in the
+	 * order of their offsets, so each record is moved before it is
+	 * overwritten.
+	 */
+	private void compact( ) throws IOException
+	{
+		long[] offsets = new long[blockCount];
+		int count = 0;
+		for ( int i = 0; i < blockCount; i++ )
+		{
+			if ( blockOffsets[i] != -1 )
+			{
+				offsets[count++] = blockOffsets[i];
+			}
+		}
+		Arrays.sort( offsets, 0, count );
+		long end = 0;
+		for ( int i = 0; i < count; i++ )
+		{
+			readFully( offsets[i], record, 0, RECORD_HEADER_SIZE );
+			int id = ArchiveUtil.bytesToInteger( record, 0 );
+			int storedSize = ArchiveUtil.bytesToInteger( record, 8 );
+			if ( offsets[i] != end )
+			{
+				readFully( offsets[i] + RECORD_HEADER_SIZE,
+						record,
+						RECORD_HEADER_SIZE,
+						storedSize );
+				entry.write( end, record, 0, RECORD_HEADER_SIZE + storedSize );
+				blockOffsets[id] = end;
+			}
+			end += RECORD_HEADER_SIZE + storedSize;
+		}
+		recordEnd = end;
+		if ( blockId != -1 )
+		{
+			blockOffset = getBlockOffset( blockId );
+		}
+		wastedSize = 0;
+	}
+
+	private void writeIndex( ) throws IOException
+	{
+		byte[] index = new byte[RECORD_HEADER_SIZE + 12 + blockCount * 8 + 16];
+		ArchiveUtil.integerToBytes( INDEX_RECORD, index, 0 );
+		ArchiveUtil.integerToBytes( 0, index, 4 );
+		ArchiveUtil.integerToBytes( index.length - RECORD_HEADER_SIZE,
+				index,
+				8 );
+		int off = RECORD_HEADER_SIZE;
+		ArchiveUtil.longToBytes( length, index, off );
+		ArchiveUtil.integerToBytes( blockCount, index, off + 8 );
+		off += 12;
+		for ( int i = 0; i < blockCount; i++ )
+		{
+			ArchiveUtil.longToBytes( blockOffsets[i], index, off );
+			off += 8;
+		}
+		ArchiveUtil.longToBytes( recordEnd, index, off );
+		ArchiveUtil.longToBytes( INDEX_TAG, index, off + 8 );
+		entry.write( recordEnd, index, 0, index.length );
+		recordEnd += index.length;
+		modified = false;
+	}
+
+	/**
+	 * reads the index saved at the end of the entry.
+	 *
+	 * @return false if the entry doesn't end with an index.
+	 */
+	private boolean readIndex( ) throws IOException
+	{
+		long end = entry.getLength( );
+		if ( end < RECORD_HEADER_SIZE + 28 )
+		{
+			return false;
+		}
+		byte[] bytes = new byte[16];
+		readFully( end - 16, bytes, 0, 16 );
+		if ( ArchiveUtil.bytesToLong( bytes, 8 ) != INDEX_TAG )
+		{
+			return false;
+		}
+		long offset = ArchiveUtil.bytesToLong( bytes, 0 );
+		if ( offset < 0 || offset > end - RECORD_HEADER_SIZE - 28 )
+		{
+			return false;
+		}
+		byte[] index = new byte[(int) ( end - offset )];
+		readFully( offset, index, 0, index.length );
+		if ( ArchiveUtil.bytesToInteger( index, 0 ) != INDEX_RECORD )
+		{
+			return false;
+		}
+		int off = RECORD_HEADER_SIZE;
+		length = ArchiveUtil.bytesToLong( index, off );
+		int count = ArchiveUtil.bytesToInteger( index, off + 8 );
+		off += 12;
+		blockOffsets = new long[Math.max( count, 16 )];
+		for ( int i = 0; i < count; i++ )
+		{
+			blockOffsets[i] = ArchiveUtil.bytesToLong( index, off );
+			off += 8;
+		}
+		blockCount = count;
+		recordEnd = end;
+		return true;
+	}
+
+	/**
+	 * reads the records changed by the writer of the entry. The index is read
+	 * if the writer has closed the entry, as the records may have been moved.
+	 */
+	private void refreshRecords( long end ) throws IOException
+	{
+		if ( readIndex( ) )
+		{
+			blockId = -1;
+			blockOffset = -1;
+			return;
+		}
+		if ( end < recordEnd )
+		{
+			length = 0;
+			blockCount = 0;
+			recordEnd = 0;
+			blockId = -1;
+			blockOffset = -1;
+		}
+		readRecords( );
+	}
+
+	/**
+	 * reads the records appended after the records which have been read.
+	 */
+	private void readRecords( ) throws IOException
+	{
+		long end = entry.getLength( );
+		byte[] header = new byte[RECORD_HEADER_SIZE + 8];
+		while ( recordEnd + RECORD_HEADER_SIZE <= end )
+		{
+			readFully( recordEnd, header, 0, RECORD_HEADER_SIZE );
+			int id = ArchiveUtil.bytesToInteger( header, 0 );
+			int size = ArchiveUtil.bytesToInteger( header, 4 );
+			int storedSize = ArchiveUtil.bytesToInteger( header, 8 );
+			long next = recordEnd + RECORD_HEADER_SIZE + storedSize;
+			if ( storedSize < 0 || next > end )
+			{
+				// the record is still being written
+				break;
+			}
+			if ( id >= 0 )
+			{
+				setBlockOffset( id, recordEnd );
+				long blockEnd = (long) id * BLOCK_SIZE + size;
+				if ( blockEnd > length )
+				{
+					length = blockEnd;
+				}
+			}
+			else if ( id == LENGTH_RECORD )
+			{
+				readFully( recordEnd + RECORD_HEADER_SIZE, header, 0, 8 );
+				length = ArchiveUtil.bytesToLong( header, 0 );
+				int count = (int) ( ( length + BLOCK_SIZE - 1 ) / BLOCK_SIZE );
+				if ( blockCount > count )
+				{
+					blockCount = count;
+				}
+			}
+			recordEnd = next;
+		}
+	}
+
+	private void readFully( long pos, byte[] b, int off, int len )
+			throws IOException
+	{
+		while ( len > 0 )
+		{
+			int size = entry.read( pos, b, off, len );
+			if ( size <= 0 )
+			{
+				throw new EOFException( name );
+			}
+			pos += size;
+			off += size;
+			len -= size;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.IOException;
+
+import org.eclipse.birt.core.archive.compound.v3.Ext2MappedFile;
+import org.eclipse.birt.core.i18n.CoreMessages;
+import org.eclipse.birt.core.i18n.ResourceConstants;
+
+/**
+ * The read only entry of the MappedArchiveFile.
+ */
+public class MappedArchiveEntry extends ArchiveEntry
+{
+
+	protected Ext2MappedFile file;
+
+	MappedArchiveEntry( Ext2MappedFile file )
+	{
+		super( file.getName( ) );
+		this.file = file;
+	}
+
+	public long getLength( ) throws IOException
+	{
+		return file.length( );
+	}
+
+	public void close( ) throws IOException
+	{
+		file.close( );
+	}
+
+	@Override
+	public int read( long pos, byte[] b, int off, int len ) throws IOException
+	{
+		return file.read( pos, b, off, len );
+	}
+
+	@Override
+	public void setLength( long length ) throws IOException
+	{
+		throw new IOException(
+				CoreMessages.getString( ResourceConstants.FILE_IN_READONLY_MODE ) );
+	}
+
+	@Override
+	public void write( long pos, byte[] b, int off, int len )
+			throws IOException
+	{
+		throw new IOException(
+				CoreMessages.getString( ResourceConstants.FILE_IN_READONLY_MODE ) );
+	}
+}
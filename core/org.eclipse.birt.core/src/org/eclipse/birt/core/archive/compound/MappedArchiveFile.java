@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.core.archive.compound.v3.Ext2Entry;
+import org.eclipse.birt.core.archive.compound.v3.Ext2MappedFile;
+import org.eclipse.birt.core.archive.compound.v3.Ext2MappedFileSystem;
+import org.eclipse.birt.core.i18n.CoreMessages;
+import org.eclipse.birt.core.i18n.ResourceConstants;
+
+/**
+ * Read only archive file which maps the V3 archive into memory.
+ *
+ * The entries are read from the mapped memory directly, the archive has no
+ * block cache and the methods are not synchronized, so the entries can be
+ * opened and read by several threads at the same time.
+ *
+ * The mapped memory is released by the garbage collector after the archive
+ * and all its entries are closed, so the archive file may not be deleted or
+ * replaced until then on some platforms.
+ */
+public class MappedArchiveFile implements IArchiveFile
+{
+
+	private String archiveName;
+	private String systemId;
+	private volatile Ext2MappedFileSystem fs;
+
+	public MappedArchiveFile( String fileName ) throws IOException
+	{
+		this( null, fileName );
+	}
+
+	public MappedArchiveFile( String systemId, String fileName )
+			throws IOException
+	{
+		if ( fileName == null || fileName.length( ) == 0 )
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.FILE_NAME_IS_NULL ) );
+
+		archiveName = new File( fileName ).getCanonicalPath( );
+		fs = new Ext2MappedFileSystem( archiveName );
+		this.systemId = systemId;
+		if ( this.systemId == null )
+		{
+			this.systemId = fs.getProperty( ArchiveFileV3.PROPERTY_SYSTEM_ID );
+		}
+	}
+
+	/**
+	 * test if the file can be opened by the mapped archive.
+	 * 
+	 * @param fileName
+	 *            the archive file name.
+	 * @return true if the file is a V3 archive.
+	 * @throws IOException
+	 */
+	public static boolean isMappable( String fileName ) throws IOException
+	{
+		return Ext2MappedFileSystem.isExt2File( fileName );
+	}
+
+	private Ext2MappedFileSystem getFileSystem( ) throws IOException
+	{
+		Ext2MappedFileSystem mappedFs = fs;
+		if ( mappedFs == null )
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.FILE_HAS_BEEN_CLOSED ) );
+		}
+		return mappedFs;
+	}
+
+	public String getName( )
+	{
+		return archiveName;
+	}
+
+	public String getSystemId( )
+	{
+		return systemId;
+	}
+
+	public String getDependId( )
+	{
+		Ext2MappedFileSystem mappedFs = fs;
+		if ( mappedFs != null )
+		{
+			return mappedFs.getProperty( ArchiveFileV3.PROPERTY_DEPEND_ID );
+		}
+		return null;
+	}
+
+	public void close( ) throws IOException
+	{
+		Ext2MappedFileSystem mappedFs = fs;
+		if ( mappedFs != null )
+		{
+			fs = null;
+			mappedFs.close( );
+		}
+	}
+
+	public void flush( ) throws IOException
+	{
+	}
+
+	public void refresh( ) throws IOException
+	{
+	}
+
+	public void save( ) throws IOException
+	{
+		throw new IOException(
+				CoreMessages.getString( ResourceConstants.FILE_IN_READONLY_MODE ) );
+	}
+
+	public boolean exists( String name )
+	{
+		Ext2MappedFileSystem mappedFs = fs;
+		return mappedFs != null && mappedFs.existFile( name );
+	}
+
+	public void setCacheSize( long cacheSize )
+	{
+	}
+
+	public long getUsedCache( )
+	{
+		return 0;
+	}
+
+	public ArchiveEntry openEntry( String name ) throws IOException
+	{
+		Ext2MappedFile file = getFileSystem( ).openFile( name );
+		if ( file.isCompressed( ) )
+		{
+			return new CompressedArchiveEntry( new MappedArchiveEntry( file ) );
+		}
+		return new MappedArchiveEntry( file );
+	}
+
+	public List<String> listEntries( String namePattern )
+	{
+		ArrayList<String> files = new ArrayList<String>( );
+		Ext2MappedFileSystem mappedFs = fs;
+		if ( mappedFs != null )
+		{
+			Iterable<String> entryNames = ( namePattern == null ) ? mappedFs
+					.listAllFiles( ) : mappedFs.listFiles( namePattern );
+			for ( String file : entryNames )
+			{
+				files.add( file );
+			}
+		}
+		return files;
+	}
+
+	public ArchiveEntry createEntry( String name ) throws IOException
+	{
+		throw new IOException(
+				CoreMessages.getString( ResourceConstants.FILE_IN_READONLY_MODE ) );
+	}
+
+	public boolean removeEntry( String name ) throws IOException
+	{
+		throw new IOException(
+				CoreMessages.getString( ResourceConstants.FILE_IN_READONLY_MODE ) );
+	}
+
+	public Object lockEntry( String name ) throws IOException
+	{
+		Ext2Entry entry = getFileSystem( ).getEntry( name );
+		if ( entry != null )
+		{
+			return entry;
+		}
+		throw new FileNotFoundException( name );
+	}
+
+	public void unlockEntry( Object locker ) throws IOException
+	{
+		assert ( locker instanceof Ext2Entry );
+	}
+}
@@ -157,6 +157,36 @@ public class Ext2File
 		}
 	}
 
+	/**
+	 * @return true if the data of the file is saved in compressed blocks.
+	 */
+	public boolean isCompressed( )
+	{
+		return node.getStatus( ) == Ext2Node.STATUS_COMPRESSED;
+	}
+
+	/**
+	 * marks the file as saving its data in compressed blocks, the blocks are
+	 * written and read by the caller.
+	 */
+	public void setCompressed( boolean compressed ) throws IOException
+	{
+		if ( fs == null )
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.FILE_HAS_BEEN_CLOSED ) );
+		}
+
+		if ( fs.isReadOnly( ) )
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.FILE_IN_READONLY_MODE ) );
+		}
+		node.setStatus( compressed
+				? Ext2Node.STATUS_COMPRESSED
+				: Ext2Node.STATUS_USED );
+	}
+
 	public void seek( long position ) throws IOException
 	{
 		this.position = position;
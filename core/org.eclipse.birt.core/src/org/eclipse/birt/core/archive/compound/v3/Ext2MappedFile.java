@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compound.v3;
+
+import java.io.IOException;
+
+import org.eclipse.birt.core.i18n.CoreMessages;
+import org.eclipse.birt.core.i18n.ResourceConstants;
+
+/**
+ * A file opened from the Ext2MappedFileSystem. The file only reads the data
+ * from the mapped memory, so several files of the same entry can be read by
+ * different threads without lock. A file itself should be used by one thread
+ * at a time.
+ */
+public class Ext2MappedFile
+{
+
+	private final String name;
+	private final long length;
+	private final boolean compressed;
+	private final int[] blocks;
+	private Ext2MappedFileSystem.BufferViews views;
+
+	Ext2MappedFile( String name, long length, boolean compressed,
+			int[] blocks, Ext2MappedFileSystem.BufferViews views )
+	{
+		this.name = name;
+		this.length = length;
+		this.compressed = compressed;
+		this.blocks = blocks;
+		this.views = views;
+	}
+
+	public String getName( )
+	{
+		return name;
+	}
+
+	public long length( )
+	{
+		return length;
+	}
+
+	/**
+	 * @return true if the data of the file is saved in compressed blocks.
+	 */
+	public boolean isCompressed( )
+	{
+		return compressed;
+	}
+
+	/**
+	 * reads the data at the position
+	 *
+	 * @return the size read, -1 if the position is at the end of the file
+	 */
+	public int read( long position, byte[] b, int off, int len )
+			throws IOException
+	{
+		Ext2MappedFileSystem.BufferViews buffers = views;
+		if ( buffers == null )
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.FILE_HAS_BEEN_CLOSED ) );
+		}
+		return buffers.read( blocks, length, position, b, off, len );
+	}
+
+	public void close( )
+	{
+		views = null;
+	}
+}
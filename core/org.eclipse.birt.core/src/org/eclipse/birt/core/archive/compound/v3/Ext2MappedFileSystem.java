@@ -0,0 +1,475 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compound.v3;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.birt.core.i18n.CoreMessages;
+import org.eclipse.birt.core.i18n.ResourceConstants;
+
+/**
+ * Read only ext2 file system which maps the archive file into memory.
+ *
+ * The header, the node table, the entry table and the properties are read
+ * when the file system is opened and never changed, and the data blocks of a
+ * file are resolved once when the file is first opened. Each opened file reads
+ * the mapped memory through its own buffer views, so the files can be read by
+ * several threads at the same time without any lock.
+ *
+ * The mapped memory is released by the garbage collector after the file
+ * system and all its opened files are closed.
+ */
+public class Ext2MappedFileSystem
+{
+
+	/**
+	 * the size of each mapped region, it is a multiple of the block size so a
+	 * block never crosses two regions.
+	 */
+	static final long REGION_SIZE = 1L << 30;
+	static final int REGION_SIZE_BITS = 30;
+
+	static final int BLOCK_SIZE = Ext2FileSystem.BLOCK_SIZE;
+	static final int BLOCK_SIZE_BITS = Ext2FileSystem.BLOCK_SIZE_BITS;
+	static final int BLOCK_OFFSET_MASK = Ext2FileSystem.BLOCK_OFFSET_MASK;
+
+	private String fileName;
+	private long length;
+	private volatile MappedByteBuffer[] regions;
+
+	private final HashMap<String, String> properties = new HashMap<String, String>( );
+	private final TreeMap<String, Ext2Entry> entries = new TreeMap<String, Ext2Entry>( );
+	private Ext2Node[] nodes;
+
+	/**
+	 * the data blocks of the opened files, keyed by the node id
+	 */
+	private final ConcurrentHashMap<Integer, int[]> fileBlocks = new ConcurrentHashMap<Integer, int[]>( );
+
+	public Ext2MappedFileSystem( String filePath ) throws IOException
+	{
+		this( filePath, null );
+	}
+
+	/**
+	 * @param filePath
+	 * @param rf
+	 *            the opened file, it is closed after the file is mapped.
+	 * @throws IOException
+	 */
+	public Ext2MappedFileSystem( String filePath, RandomAccessFile rf )
+			throws IOException
+	{
+		fileName = new File( filePath ).getCanonicalPath( );
+		if ( rf == null )
+		{
+			rf = new RandomAccessFile( fileName, "r" );
+		}
+		try
+		{
+			FileChannel channel = rf.getChannel( );
+			length = channel.size( );
+			int regionCount = (int) ( ( length + REGION_SIZE - 1 ) >> REGION_SIZE_BITS );
+			MappedByteBuffer[] buffers = new MappedByteBuffer[regionCount];
+			for ( int i = 0; i < regionCount; i++ )
+			{
+				long position = ( (long) i ) << REGION_SIZE_BITS;
+				buffers[i] = channel.map( FileChannel.MapMode.READ_ONLY,
+						position,
+						Math.min( REGION_SIZE, length - position ) );
+			}
+			regions = buffers;
+		}
+		finally
+		{
+			// the mapped memory is still valid after the file is closed
+			rf.close( );
+		}
+
+		readHeader( );
+		readNodes( );
+		readEntries( );
+		readProperties( );
+	}
+
+	/**
+	 * @param fileName
+	 * @return true if the file is an ext2 archive
+	 */
+	public static boolean isExt2File( String fileName ) throws IOException
+	{
+		RandomAccessFile rf = new RandomAccessFile( fileName, "r" );
+		try
+		{
+			return rf.length( ) >= 8
+					&& rf.readLong( ) == Ext2FileSystem.EXT2_MAGIC_TAG;
+		}
+		finally
+		{
+			rf.close( );
+		}
+	}
+
+	public void close( )
+	{
+		regions = null;
+		fileBlocks.clear( );
+	}
+
+	public String getFileName( )
+	{
+		return fileName;
+	}
+
+	public String getProperty( String name )
+	{
+		assert name != null;
+		return properties.get( name );
+	}
+
+	public boolean existFile( String name )
+	{
+		return entries.containsKey( name );
+	}
+
+	public Ext2Entry getEntry( String name )
+	{
+		return entries.get( name );
+	}
+
+	public Iterable<String> listAllFiles( )
+	{
+		return Collections.unmodifiableSet( entries.keySet( ) );
+	}
+
+	public Iterable<String> listFiles( String fromName )
+	{
+		return PrefixedIterable.filteredByPrefix( entries, fromName );
+	}
+
+	public Ext2MappedFile openFile( String name ) throws IOException
+	{
+		Ext2Entry entry = entries.get( name );
+		if ( entry == null )
+		{
+			throw new FileNotFoundException( name );
+		}
+		return openFile( entry.getName( ), entry.inode );
+	}
+
+	private Ext2MappedFile openFile( String name, int nodeId )
+			throws IOException
+	{
+		MappedByteBuffer[] buffers = regions;
+		if ( buffers == null )
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.FILE_HAS_BEEN_CLOSED ) );
+		}
+		if ( nodeId < 0 || nodeId >= nodes.length )
+		{
+			throw new FileNotFoundException( name );
+		}
+		Ext2Node node = nodes[nodeId];
+		Integer key = Integer.valueOf( nodeId );
+		int[] blocks = fileBlocks.get( key );
+		if ( blocks == null )
+		{
+			// several threads may resolve the blocks at the same time, the
+			// results are the same.
+			blocks = resolveBlocks( node, new BufferViews( buffers, length ) );
+			fileBlocks.put( key, blocks );
+		}
+		return new Ext2MappedFile( name,
+				node.getLength( ),
+				node.getStatus( ) == Ext2Node.STATUS_COMPRESSED,
+				blocks,
+				new BufferViews( buffers, length ) );
+	}
+
+	/**
+	 * @return the data blocks of the node, -1 for the block not allocated
+	 */
+	private static int[] resolveBlocks( Ext2Node node, BufferViews views )
+			throws IOException
+	{
+		long blockCount = ( node.getLength( ) + BLOCK_SIZE - 1 ) >> BLOCK_SIZE_BITS;
+		if ( blockCount > Integer.MAX_VALUE )
+		{
+			throw new EOFException(
+					CoreMessages.getString( ResourceConstants.EXCEED_FILE_LENGTH ) );
+		}
+		int[] blocks = new int[(int) blockCount];
+		for ( int i = 0; i < blocks.length; i++ )
+		{
+			blocks[i] = getFileBlock( node, i, views );
+		}
+		return blocks;
+	}
+
+	/**
+	 * the same as FatBlockList.getFileBlock, but the fat blocks are read from
+	 * the mapped memory.
+	 */
+	private static int getFileBlock( Ext2Node node, int index,
+			BufferViews views ) throws IOException
+	{
+		if ( index < FatBlockList.MAX_DIRECT_BLOCK )
+		{
+			return node.getDirectBlock( index );
+		}
+		index -= FatBlockList.MAX_DIRECT_BLOCK;
+		if ( index < FatBlockList.MAX_INDIRECT_BLOCK )
+		{
+			return views.readFatEntry( node.getIndirectBlock( 0 ), index );
+		}
+		index -= FatBlockList.MAX_INDIRECT_BLOCK;
+		if ( index < FatBlockList.MAX_DOUBLE_INDIRECT_BLOCK )
+		{
+			int fatBlockId = views.readFatEntry( node.getIndirectBlock( 1 ),
+					( index & FatBlockList.DOUBLE_INDIRECT_MASK_1 ) >> FatBlockList.DOUBLE_INDIRECT_SHIFT_1 );
+			return views.readFatEntry( fatBlockId,
+					index & FatBlockList.DOUBLE_INDIRECT_MASK_2 );
+		}
+		index -= FatBlockList.MAX_DOUBLE_INDIRECT_BLOCK;
+		int fatBlockId = views.readFatEntry( node.getIndirectBlock( 2 ),
+				( index & FatBlockList.TRIPLE_INDIRECT_MASK_1 ) >> FatBlockList.TRIPLE_INDIRECT_SHIFT_1 );
+		fatBlockId = views.readFatEntry( fatBlockId,
+				( index & FatBlockList.TRIPLE_INDIRECT_MASK_2 ) >> FatBlockList.TRIPLE_INDIRECT_SHIFT_2 );
+		return views.readFatEntry( fatBlockId,
+				index & FatBlockList.TRIPLE_INDIRECT_MASK_3 );
+	}
+
+	private void readHeader( ) throws IOException
+	{
+		byte[] bytes = new byte[16];
+		new BufferViews( regions, length ).read( 0, 0, bytes, 0, bytes.length );
+
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream(
+				bytes ) );
+		long magicTag = in.readLong( );
+		if ( magicTag != Ext2FileSystem.EXT2_MAGIC_TAG )
+		{
+			throw new IOException( CoreMessages.getFormattedString(
+					ResourceConstants.NOT_EXT2_ARCHIVE, new Object[]{magicTag} ) );
+		}
+		int version = in.readInt( );
+		if ( version != Ext2FileSystem.EXT2_VERSION_0 )
+		{
+			throw new IOException( CoreMessages.getFormattedString(
+					ResourceConstants.UNSUPPORTED_ARCHIVE_VERSION,
+					new Object[]{version} ) );
+		}
+		int blockSize = in.readInt( );
+		if ( blockSize != BLOCK_SIZE )
+		{
+			throw new IOException( CoreMessages.getFormattedString(
+					ResourceConstants.UNSUPPORTED_BLOCK_SIZE,
+					new Object[]{blockSize} ) );
+		}
+	}
+
+	/**
+	 * the node table is saved in the first node, which is saved at the
+	 * beginning of block 1.
+	 */
+	private void readNodes( ) throws IOException
+	{
+		byte[] buffer = new byte[Ext2Node.NODE_SIZE];
+		new BufferViews( regions, length ).read( 1, 0, buffer, 0, buffer.length );
+		Ext2Node tableNode = new Ext2Node( NodeTable.INODE_NODE_TABLE );
+		tableNode.read( new DataInputStream( new ByteArrayInputStream( buffer ) ) );
+
+		byte[] bytes = readFile( tableNode );
+		int totalNode = bytes.length / Ext2Node.NODE_SIZE;
+		nodes = new Ext2Node[totalNode];
+		nodes[0] = tableNode;
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream(
+				bytes ) );
+		in.skipBytes( Ext2Node.NODE_SIZE );
+		for ( int i = 1; i < totalNode; i++ )
+		{
+			nodes[i] = new Ext2Node( i );
+			nodes[i].read( in );
+		}
+	}
+
+	private void readEntries( ) throws IOException
+	{
+		byte[] bytes = readFile( nodes[NodeTable.INODE_ENTRY_TABLE] );
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream(
+				bytes ) );
+		try
+		{
+			while ( true )
+			{
+				String name = in.readUTF( );
+				int inode = in.readInt( );
+				entries.put( name, new Ext2Entry( name, inode ) );
+			}
+		}
+		catch ( EOFException ex )
+		{
+			// expect the EOF exception
+		}
+	}
+
+	private void readProperties( ) throws IOException
+	{
+		byte[] bytes = readFile( nodes[NodeTable.INODE_SYSTEM_HEAD] );
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream(
+				bytes,
+				Ext2FileSystem.HEADER_SIZE,
+				bytes.length - Ext2FileSystem.HEADER_SIZE ) );
+		int count = in.readInt( );
+		for ( int i = 0; i < count; i++ )
+		{
+			String name = in.readUTF( );
+			String value = in.readUTF( );
+			if ( !properties.containsKey( name ) )
+			{
+				properties.put( name, value );
+			}
+		}
+	}
+
+	private byte[] readFile( Ext2Node node ) throws IOException
+	{
+		BufferViews views = new BufferViews( regions, length );
+		int[] blocks = resolveBlocks( node, views );
+		byte[] bytes = new byte[(int) node.getLength( )];
+		views.read( blocks, node.getLength( ), 0, bytes, 0, bytes.length );
+		return bytes;
+	}
+
+	/**
+	 * The views of the mapped regions used by one thread. The views are
+	 * duplicated when they are first used, so the positions of the views are
+	 * not shared between threads.
+	 */
+	static class BufferViews
+	{
+
+		private final MappedByteBuffer[] regions;
+		private final ByteBuffer[] views;
+		private final long length;
+
+		BufferViews( MappedByteBuffer[] regions, long length )
+		{
+			this.regions = regions;
+			this.views = new ByteBuffer[regions.length];
+			this.length = length;
+		}
+
+		private ByteBuffer getView( int index )
+		{
+			ByteBuffer view = views[index];
+			if ( view == null )
+			{
+				view = regions[index].duplicate( );
+				views[index] = view;
+			}
+			return view;
+		}
+
+		/**
+		 * reads the data of a block, the data out of the file is filled with
+		 * 0.
+		 */
+		void read( int blockId, int blockOff, byte[] buffer, int offset,
+				int size )
+		{
+			assert blockOff + size <= BLOCK_SIZE;
+
+			int readSize = 0;
+			if ( blockId >= 0 )
+			{
+				long position = ( ( (long) blockId ) << BLOCK_SIZE_BITS )
+						+ blockOff;
+				if ( position < length )
+				{
+					readSize = (int) Math.min( size, length - position );
+					ByteBuffer view = getView( (int) ( position >> REGION_SIZE_BITS ) );
+					view.position( (int) ( position & ( REGION_SIZE - 1 ) ) );
+					view.get( buffer, offset, readSize );
+				}
+			}
+			for ( int i = readSize; i < size; i++ )
+			{
+				buffer[offset + i] = 0;
+			}
+		}
+
+		/**
+		 * reads the data of a file
+		 *
+		 * @return the size read, -1 if the position is at the end of the file
+		 */
+		int read( int[] blocks, long fileLength, long position,
+				byte[] buffer, int offset, int size )
+		{
+			if ( size == 0 )
+			{
+				return 0;
+			}
+			if ( position + size > fileLength )
+			{
+				size = (int) ( fileLength - position );
+				if ( size <= 0 )
+				{
+					return -1;
+				}
+			}
+			int remainSize = size;
+			while ( remainSize > 0 )
+			{
+				int blockIndex = (int) ( position >> BLOCK_SIZE_BITS );
+				int blockOff = (int) ( position & BLOCK_OFFSET_MASK );
+				int readSize = Math.min( remainSize, BLOCK_SIZE - blockOff );
+				read( blocks[blockIndex], blockOff, buffer, offset, readSize );
+				position += readSize;
+				offset += readSize;
+				remainSize -= readSize;
+			}
+			return size;
+		}
+
+		int readFatEntry( int fatBlockId, int index )
+		{
+			if ( fatBlockId <= 0 )
+			{
+				return -1;
+			}
+			long position = ( ( (long) fatBlockId ) << BLOCK_SIZE_BITS )
+					+ ( index << 2 );
+			if ( position + 4 > length )
+			{
+				return -1;
+			}
+			ByteBuffer view = getView( (int) ( position >> REGION_SIZE_BITS ) );
+			return view.getInt( (int) ( position & ( REGION_SIZE - 1 ) ) );
+		}
+	}
+}
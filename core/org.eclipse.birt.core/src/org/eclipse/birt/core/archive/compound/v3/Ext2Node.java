@@ -25,6 +25,10 @@ public class Ext2Node implements Ext2Constants
 
 	static final int STATUS_UNUSED = 0;
 	static final int STATUS_USED = 1;
+	/**
+	 * the node is used by a file saving its data in compressed blocks
+	 */
+	static final int STATUS_COMPRESSED = 2;
 
 	static final int NODE_SIZE = 64;
 	static final int DIRECT_BLOCK_COUNT = 9;
@@ -19,16 +19,13 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import com.ibm.icu.text.DateFormat;
-import com.ibm.icu.text.SimpleDateFormat;
 
 import java.text.ParseException;
 import com.ibm.icu.util.Calendar;
 import com.ibm.icu.util.TimeZone;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.regex.Pattern;
 
@@ -37,11 +34,11 @@ import javax.sql.rowset.serial.SerialBlob;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.exception.CoreException;
 import org.eclipse.birt.core.format.DateFormatter;
+import org.eclipse.birt.core.format.FormatterCache;
 import org.eclipse.birt.core.i18n.ResourceConstants;
 import org.eclipse.birt.core.i18n.ResourceHandle;
 import org.eclipse.birt.core.script.JavascriptEvalUtil;
 
-import com.ibm.icu.text.NumberFormat;
 import com.ibm.icu.util.ULocale;
 
 /**
@@ -56,14 +53,11 @@ public final class DataTypeUtil
 	// we will try to parse it for Locale.US
 	private static ULocale DEFAULT_LOCALE = ULocale.US;
 	private static ULocale JRE_DEFAULT_LOCALE = ULocale.getDefault( );
-	private static SimpleDateFormat MysqlUSDateFormatter = new SimpleDateFormat( "M/d/yyyy HH:mm" );
+	private static final String MYSQL_US_DATE_PATTERN = "M/d/yyyy HH:mm";
 	
 	private static Pattern p1 = Pattern.compile( ".*[0-9]+:[0-9]+:[0-9]+.*" );
 	private static Pattern p2 = Pattern.compile( ".*[0-9]+:[0-9]+.*" );
 	
-	// cache DateFormatter of ICU
-	private static Map dfMap = new HashMap( );
-	private static Map nfMap = new HashMap( );
 	// Default Date/Time Style
 	private static int DEFAULT_DATE_STYLE = DateFormat.FULL;
 
@@ -253,7 +247,7 @@ public final class DataTypeUtil
 			{
 				try
 				{
-					Number number = NumberFormat.getInstance( JRE_DEFAULT_LOCALE ).parse( (String)source );
+					Number number = FormatterCache.getNumberFormat( JRE_DEFAULT_LOCALE ).parse( (String)source );
 					if( number != null )
 					{
 						if ( !isConvertableToInteger( number ))
@@ -363,7 +357,7 @@ public final class DataTypeUtil
 			{
 				try
 				{
-					Number number = NumberFormat.getInstance( JRE_DEFAULT_LOCALE )
+					Number number = FormatterCache.getNumberFormat( JRE_DEFAULT_LOCALE )
 							.parse( (String) source );
 					if( number != null )
 						return new BigDecimal( number.toString( ) );
@@ -1008,7 +1002,7 @@ public final class DataTypeUtil
 			{
 				try
 				{
-					Number number = NumberFormat.getInstance( locale == null
+					Number number = FormatterCache.getNumberFormat( locale == null
 							? JRE_DEFAULT_LOCALE : locale )
 							.parse( (String) source );
 					if( number != null )
@@ -1211,20 +1205,8 @@ public final class DataTypeUtil
 	 */
 	private static String toString( Number source, ULocale locale )
 	{
-		NumberFormat nf = (NumberFormat)nfMap.get( locale );
-		if( nf == null )
-		{
-			synchronized( nfMap )
-			{
-				nf = (NumberFormat)nfMap.get( locale );
-				if( nf == null )
-				{
-					nf = NumberFormat.getInstance( locale );
-					nfMap.put( locale, nf );
-				}
-			}
-		}
-		return nf.format( source );
+		// the format is cached by the current thread
+		return FormatterCache.getNumberFormat( locale ).format( source );
 	}
 	
 	/**
@@ -1516,7 +1498,9 @@ public final class DataTypeUtil
 	{
 		try
 		{
-			return MysqlUSDateFormatter.parse( source );
+			return FormatterCache.getSimpleDateFormat( MYSQL_US_DATE_PATTERN,
+					null,
+					null ).parse( source );
 		}
 		catch ( ParseException e1 )
 		{
@@ -1536,23 +1520,9 @@ public final class DataTypeUtil
 	 */
 	private static String toString( Date source, ULocale locale )
 	{
-		DateFormatter df = null;
-
-		// avoid any multi-thread issue
-		df = (DateFormatter) ( dfMap.get( locale ) );
-		if ( df == null )
-		{
-			synchronized ( dfMap )
-			{
-				df = (DateFormatter) ( dfMap.get( locale ) );
-				if ( df == null )
-				{
-					df = new DateFormatter( locale );
-					dfMap.put( locale, df );
-				}
-			}
-		}
-
+		// the formatter is cached by the current thread to avoid any
+		// multi-thread issue
+		DateFormatter df = FormatterCache.getDateFormatter( null, locale, null );
 		return df.format( (Date) source );
 	}
 
@@ -16,6 +16,8 @@ package org.eclipse.birt.core.data;
 
 import java.util.HashMap;
 
+import org.eclipse.birt.core.format.FormatterCache;
+
 import com.ibm.icu.text.DateFormat;
 import com.ibm.icu.text.SimpleDateFormat;
 
@@ -74,7 +76,8 @@ public class DateFormatFactory
 			for ( int i = 0; i < dateFormatPattern.length; i++ )
 			{
 				patterKey = PatternKey.getPatterKey( dateFormatPattern[i] );
-				simpleDateFormatter = new SimpleDateFormat( dateFormatPattern[i] );
+				simpleDateFormatter = FormatterCache.newSimpleDateFormat( dateFormatPattern[i],
+						ULocale.getDefault( ) );
 				simpleDateFormatter.setLenient( false );
 				value.put( patterKey, simpleDateFormatter );
 			}
@@ -106,13 +109,16 @@ public class DateFormatFactory
 		// current thread/style/locale combination
 		if ( result == null )
 		{
+			// clone the shared prototype instead of creating the format, the
+			// keywords of the locale are not used as before.
+			ULocale formatLocale = ULocale.forLocale( locale.toLocale( ) );
 			if ( timeStyle == NO_TIME_STYLE )
-				result = DateFormat.getDateInstance( dateStyle,
-						locale.toLocale( ) );
+				result = FormatterCache.newDateInstance( dateStyle,
+						formatLocale );
 			else
-				result = DateFormat.getDateTimeInstance( dateStyle,
+				result = FormatterCache.newDateTimeInstance( dateStyle,
 						timeStyle,
-						locale.toLocale( ) );
+						formatLocale );
 			result.setLenient( false );
 			tlsMap.put( keyStr, result );
 		}
@@ -190,19 +190,18 @@ public class DateFormatter implements IFormatter
 			if ( formatString == null || UNFORMATTED.equals( formatString ) )
 			{
 				formatPattern = UNFORMATTED;
-				dateTimeFormat = com.ibm.icu.text.DateFormat
-						.getDateTimeInstance(
-								com.ibm.icu.text.DateFormat.MEDIUM,
-								com.ibm.icu.text.DateFormat.SHORT, locale );
-				dateFormat = com.ibm.icu.text.DateFormat.getDateInstance(
+				dateTimeFormat = FormatterCache.newDateTimeInstance(
+						com.ibm.icu.text.DateFormat.MEDIUM,
+						com.ibm.icu.text.DateFormat.SHORT, locale );
+				dateFormat = FormatterCache.newDateInstance(
 						com.ibm.icu.text.DateFormat.MEDIUM, locale );
-				timeFormat = com.ibm.icu.text.DateFormat.getTimeInstance(
+				timeFormat = FormatterCache.newTimeInstance(
 						com.ibm.icu.text.DateFormat.MEDIUM, locale );
 				return;
 			}
 			else if ( formatString.equals( DATETIME_UNFORMATTED ) ) //$NON-NLS-1$
 			{
-				dateTimeFormat = com.ibm.icu.text.DateFormat.getDateTimeInstance( com.ibm.icu.text.DateFormat.MEDIUM,
+				dateTimeFormat = FormatterCache.newDateTimeInstance( com.ibm.icu.text.DateFormat.MEDIUM,
 						com.ibm.icu.text.DateFormat.SHORT,
 						locale );
 				return;
@@ -210,13 +209,13 @@ public class DateFormatter implements IFormatter
 			}
 			else if ( formatString.equals( DATE_UNFORMATTED ) )
 			{
-				dateTimeFormat = com.ibm.icu.text.DateFormat.getDateInstance( com.ibm.icu.text.DateFormat.MEDIUM,
+				dateTimeFormat = FormatterCache.newDateInstance( com.ibm.icu.text.DateFormat.MEDIUM,
 						locale );
 				return;
 			}
 			else if ( formatString.equals( TIME_UNFORMATTED ) )
 			{
-				dateTimeFormat = com.ibm.icu.text.DateFormat.getTimeInstance( com.ibm.icu.text.DateFormat.MEDIUM,
+				dateTimeFormat = FormatterCache.newTimeInstance( com.ibm.icu.text.DateFormat.MEDIUM,
 						locale );
 				return;
 			}
@@ -227,45 +226,42 @@ public class DateFormatter implements IFormatter
 				switch ( patternTemp )
 				{
 					case 'G' :
-						dateTimeFormat = com.ibm.icu.text.DateFormat
-								.getDateTimeInstance(
-										com.ibm.icu.text.DateFormat.LONG,
-										com.ibm.icu.text.DateFormat.LONG,
-										locale );
-						dateFormat = com.ibm.icu.text.DateFormat
-								.getDateInstance(
-										com.ibm.icu.text.DateFormat.LONG,
-										locale );
-						timeFormat = com.ibm.icu.text.DateFormat
-								.getTimeInstance(
-										com.ibm.icu.text.DateFormat.LONG,
-										locale );
+						dateTimeFormat = FormatterCache.newDateTimeInstance(
+								com.ibm.icu.text.DateFormat.LONG,
+								com.ibm.icu.text.DateFormat.LONG,
+								locale );
+						dateFormat = FormatterCache.newDateInstance(
+								com.ibm.icu.text.DateFormat.LONG,
+								locale );
+						timeFormat = FormatterCache.newTimeInstance(
+								com.ibm.icu.text.DateFormat.LONG,
+								locale );
 						return;
 					case 'D' :
 
-						dateTimeFormat = com.ibm.icu.text.DateFormat.getDateInstance( com.ibm.icu.text.DateFormat.LONG,
+						dateTimeFormat = FormatterCache.newDateInstance( com.ibm.icu.text.DateFormat.LONG,
 								locale );
 						return;
 					case 'd' :
 
-						dateTimeFormat = com.ibm.icu.text.DateFormat.getDateInstance( com.ibm.icu.text.DateFormat.SHORT,
+						dateTimeFormat = FormatterCache.newDateInstance( com.ibm.icu.text.DateFormat.SHORT,
 								locale );
 						return;
 					case 'T' :
 
-						dateTimeFormat = com.ibm.icu.text.DateFormat.getTimeInstance( com.ibm.icu.text.DateFormat.LONG,
+						dateTimeFormat = FormatterCache.newTimeInstance( com.ibm.icu.text.DateFormat.LONG,
 								locale );
 						return;
 					case 't' :
-						dateTimeFormat = new SimpleDateFormat( "HH:mm", locale );
+						dateTimeFormat = FormatterCache.newSimpleDateFormat( "HH:mm", locale );
 						return;
 					case 'f' :
-						dateTimeFormat = com.ibm.icu.text.DateFormat.getDateTimeInstance( com.ibm.icu.text.DateFormat.LONG,
+						dateTimeFormat = FormatterCache.newDateTimeInstance( com.ibm.icu.text.DateFormat.LONG,
 								com.ibm.icu.text.DateFormat.SHORT,
 								locale );
 						return;
 					case 'F' :
-						dateTimeFormat = com.ibm.icu.text.DateFormat.getDateTimeInstance( com.ibm.icu.text.DateFormat.LONG,
+						dateTimeFormat = FormatterCache.newDateTimeInstance( com.ibm.icu.text.DateFormat.LONG,
 								com.ibm.icu.text.DateFormat.LONG,
 								locale );
 						return;
@@ -285,8 +281,7 @@ public class DateFormatter implements IFormatter
 						int timeForm = ( patternTemp == 'i' || patternTemp == 'a' )
 								? com.ibm.icu.text.DateFormat.MEDIUM
 								: com.ibm.icu.text.DateFormat.LONG;
-						com.ibm.icu.text.DateFormat factoryFormat = com.ibm.icu.text.DateFormat
-								.getTimeInstance( timeForm, locale );
+						com.ibm.icu.text.DateFormat factoryFormat = FormatterCache.newTimeInstance( timeForm, locale );
 						if ( patternTemp == 'a' || patternTemp == 'A' )
 						{
 							timeFormat = hackMilliSecond( factoryFormat );
@@ -296,16 +291,14 @@ public class DateFormatter implements IFormatter
 							timeFormat = factoryFormat;
 						}
 
-						factoryFormat = com.ibm.icu.text.DateFormat
-								.getDateInstance(
-										com.ibm.icu.text.DateFormat.SHORT,
-										locale );
+						factoryFormat = FormatterCache.newDateInstance(
+								com.ibm.icu.text.DateFormat.SHORT,
+								locale );
 						dateFormat = hackYear( factoryFormat );
 
-						factoryFormat = com.ibm.icu.text.DateFormat
-								.getDateTimeInstance(
-										com.ibm.icu.text.DateFormat.SHORT,
-										timeForm, locale );
+						factoryFormat = FormatterCache.newDateTimeInstance(
+								com.ibm.icu.text.DateFormat.SHORT,
+								timeForm, locale );
 						dateTimeFormat = hackYear( factoryFormat );
 						if ( patternTemp == 'a' || patternTemp == 'A' )
 						{
@@ -315,26 +308,26 @@ public class DateFormatter implements IFormatter
 
 					case 'g' :
 
-						dateTimeFormat = com.ibm.icu.text.DateFormat.getDateTimeInstance( com.ibm.icu.text.DateFormat.SHORT,
+						dateTimeFormat = FormatterCache.newDateTimeInstance( com.ibm.icu.text.DateFormat.SHORT,
 								com.ibm.icu.text.DateFormat.SHORT,
 								locale );
 						return;
 					case 'M' :
 					case 'm' :
-						dateTimeFormat = new SimpleDateFormat( "MM/dd", locale );
+						dateTimeFormat = FormatterCache.newSimpleDateFormat( "MM/dd", locale );
 						return;
 					case 'R' :
 					case 'r' :
-						dateTimeFormat = new SimpleDateFormat( "yyyy.MM.dd HH:mm:ss a",
+						dateTimeFormat = FormatterCache.newSimpleDateFormat( "yyyy.MM.dd HH:mm:ss a",
 								locale );
 						dateTimeFormat.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
 						return;
 					case 's' :
-						dateTimeFormat = new SimpleDateFormat( "yyyy.MM.dd HH:mm:ss",
+						dateTimeFormat = FormatterCache.newSimpleDateFormat( "yyyy.MM.dd HH:mm:ss",
 								locale );
 						return;
 					case 'u' :
-						dateTimeFormat = new SimpleDateFormat( "yyyy.MM.dd HH:mm:ss  Z",
+						dateTimeFormat = FormatterCache.newSimpleDateFormat( "yyyy.MM.dd HH:mm:ss  Z",
 								locale );
 						return;
 						// TODO:the defination is not clear enough
@@ -343,10 +336,10 @@ public class DateFormatter implements IFormatter
 						 */
 					case 'Y' :
 					case 'y' :
-						dateTimeFormat = new SimpleDateFormat( "yyyy/mm", locale );
+						dateTimeFormat = FormatterCache.newSimpleDateFormat( "yyyy/mm", locale );
 						return;
 					default :
-						dateTimeFormat = new SimpleDateFormat( formatString, locale );
+						dateTimeFormat = FormatterCache.newSimpleDateFormat( formatString, locale );
 						return;
 				}
 			}
@@ -357,53 +350,53 @@ public class DateFormatter implements IFormatter
 			 */
 			if ( formatString.equals( "General Date" ) )
 			{
-				dateTimeFormat = com.ibm.icu.text.DateFormat.getDateTimeInstance( com.ibm.icu.text.DateFormat.LONG,
+				dateTimeFormat = FormatterCache.newDateTimeInstance( com.ibm.icu.text.DateFormat.LONG,
 						com.ibm.icu.text.DateFormat.LONG,
 						locale );
 				return;
 			}
 			if ( formatString.equals( "Long Date" ) )
 			{
-				dateTimeFormat = com.ibm.icu.text.DateFormat.getDateInstance( com.ibm.icu.text.DateFormat.LONG,
+				dateTimeFormat = FormatterCache.newDateInstance( com.ibm.icu.text.DateFormat.LONG,
 						locale );
 				return;
 
 			}
 			if ( formatString.equals( "Medium Date" ) )
 			{
-				dateTimeFormat = com.ibm.icu.text.DateFormat.getDateInstance( com.ibm.icu.text.DateFormat.MEDIUM,
+				dateTimeFormat = FormatterCache.newDateInstance( com.ibm.icu.text.DateFormat.MEDIUM,
 						locale );
 				return;
 
 			}
 			if ( formatString.equals( "Short Date" ) )
 			{
-				dateTimeFormat = com.ibm.icu.text.DateFormat.getDateInstance( com.ibm.icu.text.DateFormat.SHORT,
+				dateTimeFormat = FormatterCache.newDateInstance( com.ibm.icu.text.DateFormat.SHORT,
 						locale );
 				return;
 
 			}
 			if ( formatString.equals( "Long Time" ) )
 			{
-				dateTimeFormat = com.ibm.icu.text.DateFormat.getTimeInstance( com.ibm.icu.text.DateFormat.LONG,
+				dateTimeFormat = FormatterCache.newTimeInstance( com.ibm.icu.text.DateFormat.LONG,
 						locale );
 				return;
 
 			}
 			if ( formatString.equals( "Medium Time" ) )
 			{
-				dateTimeFormat = com.ibm.icu.text.DateFormat.getTimeInstance( com.ibm.icu.text.DateFormat.MEDIUM,
+				dateTimeFormat = FormatterCache.newTimeInstance( com.ibm.icu.text.DateFormat.MEDIUM,
 						locale );
 				return;
 
 			}
 			if ( formatString.equals( "Short Time" ) )
 			{
-				dateTimeFormat = new SimpleDateFormat( "kk:mm", locale );
+				dateTimeFormat = FormatterCache.newSimpleDateFormat( "kk:mm", locale );
 				return;
 
 			}
-			dateTimeFormat = new SimpleDateFormat( formatString, locale );
+			dateTimeFormat = FormatterCache.newSimpleDateFormat( formatString, locale );
 
 		}
 		catch ( Exception e )
@@ -457,7 +450,7 @@ public class DateFormatter implements IFormatter
 					pattern = strBuf.toString( );
 				}
 			}
-			return new SimpleDateFormat( pattern, locale );
+			return FormatterCache.newSimpleDateFormat( pattern, locale );
 		}
 		return factoryFormat;
 	}
@@ -481,7 +474,7 @@ public class DateFormatter implements IFormatter
 					pattern = strBuf.toString( );
 				}
 			}
-			return new SimpleDateFormat( pattern, locale );
+			return FormatterCache.newSimpleDateFormat( pattern, locale );
 		}
 		return factoryFormat;
 	}
@@ -571,41 +564,41 @@ public class DateFormatter implements IFormatter
 		SimpleDateFormat dateFormat = null;
 		if ( formatPattern.equals( "General Date" ) )
 		{
-			dateFormat = (SimpleDateFormat) SimpleDateFormat.getDateTimeInstance( com.ibm.icu.text.DateFormat.LONG,
+			dateFormat = (SimpleDateFormat) FormatterCache.newDateTimeInstance( com.ibm.icu.text.DateFormat.LONG,
 					com.ibm.icu.text.DateFormat.LONG,
 					locale );
 		}
 		if ( formatPattern.equals( "Long Date" ) )
 		{
-			dateFormat = (SimpleDateFormat) SimpleDateFormat.getDateInstance( com.ibm.icu.text.DateFormat.LONG,
+			dateFormat = (SimpleDateFormat) FormatterCache.newDateInstance( com.ibm.icu.text.DateFormat.LONG,
 					locale );
 
 		}
 		if ( formatPattern.equals( "Medium Date" ) )
 		{
-			dateFormat = (SimpleDateFormat) SimpleDateFormat.getDateInstance( com.ibm.icu.text.DateFormat.MEDIUM,
+			dateFormat = (SimpleDateFormat) FormatterCache.newDateInstance( com.ibm.icu.text.DateFormat.MEDIUM,
 					locale );
 
 		}
 		if ( formatPattern.equals( "Short Date" ) )
 		{
-			dateFormat = (SimpleDateFormat) SimpleDateFormat.getDateInstance( com.ibm.icu.text.DateFormat.SHORT,
+			dateFormat = (SimpleDateFormat) FormatterCache.newDateInstance( com.ibm.icu.text.DateFormat.SHORT,
 					locale );
 		}
 		if ( formatPattern.equals( "Long Time" ) )
 		{
-			dateFormat = (SimpleDateFormat) SimpleDateFormat.getTimeInstance( com.ibm.icu.text.DateFormat.LONG,
+			dateFormat = (SimpleDateFormat) FormatterCache.newTimeInstance( com.ibm.icu.text.DateFormat.LONG,
 					locale );
 
 		}
 		if ( formatPattern.equals( "Medium Time" ) )
 		{
-			dateFormat = (SimpleDateFormat) SimpleDateFormat.getTimeInstance( com.ibm.icu.text.DateFormat.MEDIUM,
+			dateFormat = (SimpleDateFormat) FormatterCache.newTimeInstance( com.ibm.icu.text.DateFormat.MEDIUM,
 					locale );
 		}
 		if ( formatPattern.equals( "Short Time" ) )
 		{
-			dateFormat = new SimpleDateFormat( "kk:mm", locale );
+			dateFormat = FormatterCache.newSimpleDateFormat( "kk:mm", locale );
 		}
 		return dateFormat;
 	}
@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.format;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ibm.icu.text.DateFormat;
+import com.ibm.icu.text.NumberFormat;
+import com.ibm.icu.text.SimpleDateFormat;
+import com.ibm.icu.util.TimeZone;
+import com.ibm.icu.util.ULocale;
+
+/**
+ * Caches the formatters by the locale, the pattern and the time zone.
+ *
+ * The formatters are not thread safe, so there are two kinds of cache:
+ * <ul>
+ * <li>the per-thread caches of the DateFormatter, NumberFormatter,
+ * NumberFormat and SimpleDateFormat. A returned formatter may only be used by
+ * the current thread and must not be changed, such as applying another
+ * pattern or time zone. No lock is needed to get them.</li>
+ * <li>the shared cache of the ICU DateFormat prototypes. The prototypes are
+ * never returned, the <code>newXXX</code> methods return a clone of the
+ * prototype which is owned by the caller and can be changed.</li>
+ * </ul>
+ */
+public final class FormatterCache
+{
+
+	/**
+	 * the max count of the formatters cached by each thread.
+	 */
+	static final int MAX_THREAD_CACHE_SIZE = 256;
+
+	/**
+	 * the max count of the shared prototypes. The patterns come from the
+	 * users, so the prototypes are all removed when there are too many.
+	 */
+	static final int MAX_PROTOTYPE_COUNT = 1024;
+
+	private static final int DATE_FORMATTER = 0;
+	private static final int NUMBER_FORMATTER = 1;
+	private static final int NUMBER_FORMAT = 2;
+	private static final int SIMPLE_DATE_FORMAT = 3;
+	private static final int DATE_TIME_PROTOTYPE = 4;
+
+	/**
+	 * style used to create the date or time only format.
+	 */
+	private static final int NO_STYLE = -1;
+
+	private static ThreadLocal<Map<FormatterKey, Object>> threadCache = new ThreadLocal<Map<FormatterKey, Object>>( ) {
+
+		protected Map<FormatterKey, Object> initialValue( )
+		{
+			return new LinkedHashMap<FormatterKey, Object>( 16, 0.75f, true ) {
+
+				private static final long serialVersionUID = 1L;
+
+				protected boolean removeEldestEntry(
+						Map.Entry<FormatterKey, Object> eldest )
+				{
+					return size( ) > MAX_THREAD_CACHE_SIZE;
+				}
+			};
+		}
+	};
+
+	private static ConcurrentHashMap<FormatterKey, DateFormat> prototypes = new ConcurrentHashMap<FormatterKey, DateFormat>( );
+
+	private FormatterCache( )
+	{
+	}
+
+	/**
+	 * Gets the DateFormatter of the current thread.
+	 *
+	 * @param pattern
+	 *            the pattern, null for the default format
+	 * @param locale
+	 *            the locale, null for the default locale
+	 * @param timeZone
+	 *            the time zone, null for the default time zone
+	 * @return the formatter which must be only used by the current thread
+	 */
+	public static DateFormatter getDateFormatter( String pattern,
+			ULocale locale, TimeZone timeZone )
+	{
+		FormatterKey key = new FormatterKey( DATE_FORMATTER,
+				pattern,
+				locale,
+				timeZone );
+		Map<FormatterKey, Object> cache = threadCache.get( );
+		DateFormatter formatter = (DateFormatter) cache.get( key );
+		if ( formatter == null )
+		{
+			formatter = new DateFormatter( pattern, locale, timeZone );
+			cache.put( key, formatter );
+		}
+		return formatter;
+	}
+
+	/**
+	 * Gets the NumberFormatter of the current thread.
+	 *
+	 * @param pattern
+	 *            the pattern, null for the default format
+	 * @param locale
+	 *            the locale, null for the default locale
+	 * @return the formatter which must be only used by the current thread
+	 */
+	public static NumberFormatter getNumberFormatter( String pattern,
+			ULocale locale )
+	{
+		FormatterKey key = new FormatterKey( NUMBER_FORMATTER,
+				pattern,
+				locale,
+				null );
+		Map<FormatterKey, Object> cache = threadCache.get( );
+		NumberFormatter formatter = (NumberFormatter) cache.get( key );
+		if ( formatter == null )
+		{
+			formatter = locale == null
+					? new NumberFormatter( pattern )
+					: new NumberFormatter( pattern, locale );
+			cache.put( key, formatter );
+		}
+		return formatter;
+	}
+
+	/**
+	 * Gets the general NumberFormat of the current thread.
+	 *
+	 * @param locale
+	 *            the locale, null for the default locale
+	 * @return the format which must be only used by the current thread
+	 */
+	public static NumberFormat getNumberFormat( ULocale locale )
+	{
+		FormatterKey key = new FormatterKey( NUMBER_FORMAT, null, locale, null );
+		Map<FormatterKey, Object> cache = threadCache.get( );
+		NumberFormat format = (NumberFormat) cache.get( key );
+		if ( format == null )
+		{
+			format = locale == null ? NumberFormat.getInstance( ) : NumberFormat
+					.getInstance( locale );
+			cache.put( key, format );
+		}
+		return format;
+	}
+
+	/**
+	 * Gets the SimpleDateFormat of the current thread.
+	 *
+	 * @param pattern
+	 *            the pattern
+	 * @param locale
+	 *            the locale, null for the default locale
+	 * @param timeZone
+	 *            the time zone, null for the default time zone
+	 * @return the format which must be only used by the current thread
+	 */
+	public static SimpleDateFormat getSimpleDateFormat( String pattern,
+			ULocale locale, TimeZone timeZone )
+	{
+		assert pattern != null;
+		FormatterKey key = new FormatterKey( SIMPLE_DATE_FORMAT,
+				pattern,
+				locale,
+				timeZone );
+		Map<FormatterKey, Object> cache = threadCache.get( );
+		SimpleDateFormat format = (SimpleDateFormat) cache.get( key );
+		if ( format == null )
+		{
+			format = newSimpleDateFormat( pattern, locale );
+			if ( timeZone != null )
+			{
+				format.setTimeZone( timeZone );
+			}
+			cache.put( key, format );
+		}
+		return format;
+	}
+
+	/**
+	 * Removes all the formatters cached by the current thread.
+	 */
+	public static void clearThreadCache( )
+	{
+		threadCache.remove( );
+	}
+
+	/**
+	 * Creates a date time format of the styles.
+	 *
+	 * @return a new format owned by the caller
+	 * @see DateFormat#getDateTimeInstance(int, int, ULocale)
+	 */
+	public static DateFormat newDateTimeInstance( int dateStyle,
+			int timeStyle, ULocale locale )
+	{
+		return newInstance( dateStyle, timeStyle, null, locale );
+	}
+
+	/**
+	 * Creates a date format of the style.
+	 *
+	 * @return a new format owned by the caller
+	 * @see DateFormat#getDateInstance(int, ULocale)
+	 */
+	public static DateFormat newDateInstance( int dateStyle, ULocale locale )
+	{
+		return newInstance( dateStyle, NO_STYLE, null, locale );
+	}
+
+	/**
+	 * Creates a time format of the style.
+	 *
+	 * @return a new format owned by the caller
+	 * @see DateFormat#getTimeInstance(int, ULocale)
+	 */
+	public static DateFormat newTimeInstance( int timeStyle, ULocale locale )
+	{
+		return newInstance( NO_STYLE, timeStyle, null, locale );
+	}
+
+	/**
+	 * Creates a simple date format of the pattern.
+	 *
+	 * @return a new format owned by the caller
+	 * @throws IllegalArgumentException
+	 *             if the pattern is invalid
+	 */
+	public static SimpleDateFormat newSimpleDateFormat( String pattern,
+			ULocale locale )
+	{
+		assert pattern != null;
+		return (SimpleDateFormat) newInstance( NO_STYLE,
+				NO_STYLE,
+				pattern,
+				locale );
+	}
+
+	private static DateFormat newInstance( int dateStyle, int timeStyle,
+			String pattern, ULocale locale )
+	{
+		if ( locale == null )
+		{
+			locale = ULocale.getDefault( );
+		}
+		FormatterKey key = new FormatterKey( DATE_TIME_PROTOTYPE,
+				pattern,
+				locale,
+				null,
+				dateStyle,
+				timeStyle );
+		DateFormat prototype = prototypes.get( key );
+		if ( prototype == null )
+		{
+			if ( pattern != null )
+			{
+				prototype = new SimpleDateFormat( pattern, locale );
+			}
+			else if ( timeStyle == NO_STYLE )
+			{
+				prototype = DateFormat.getDateInstance( dateStyle, locale );
+			}
+			else if ( dateStyle == NO_STYLE )
+			{
+				prototype = DateFormat.getTimeInstance( timeStyle, locale );
+			}
+			else
+			{
+				prototype = DateFormat.getDateTimeInstance( dateStyle,
+						timeStyle,
+						locale );
+			}
+			if ( prototypes.size( ) >= MAX_PROTOTYPE_COUNT )
+			{
+				prototypes.clear( );
+			}
+			// the prototype created by another thread is also fine
+			prototypes.putIfAbsent( key, prototype );
+		}
+		// cloning only reads the prototype, so it is safe to clone the same
+		// prototype in several threads.
+		return (DateFormat) prototype.clone( );
+	}
+
+	/**
+	 * @return the count of the shared prototypes
+	 */
+	static int getPrototypeCount( )
+	{
+		return prototypes.size( );
+	}
+
+	/**
+	 * The key of a cached formatter.
+	 */
+	private static class FormatterKey
+	{
+
+		private final int type;
+		private final String pattern;
+		private final ULocale locale;
+		private final String timeZoneId;
+		private final int dateStyle;
+		private final int timeStyle;
+		private final int hashCode;
+
+		FormatterKey( int type, String pattern, ULocale locale,
+				TimeZone timeZone )
+		{
+			this( type, pattern, locale, timeZone, NO_STYLE, NO_STYLE );
+		}
+
+		FormatterKey( int type, String pattern, ULocale locale,
+				TimeZone timeZone, int dateStyle, int timeStyle )
+		{
+			this.type = type;
+			this.pattern = pattern;
+			this.locale = locale;
+			this.timeZoneId = timeZone == null ? null : timeZone.getID( );
+			this.dateStyle = dateStyle;
+			this.timeStyle = timeStyle;
+
+			int hash = type;
+			hash = hash * 31 + ( pattern == null ? 0 : pattern.hashCode( ) );
+			hash = hash * 31 + ( locale == null ? 0 : locale.hashCode( ) );
+			hash = hash * 31
+					+ ( timeZoneId == null ? 0 : timeZoneId.hashCode( ) );
+			hash = hash * 31 + dateStyle;
+			hash = hash * 31 + timeStyle;
+			this.hashCode = hash;
+		}
+
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( this == obj )
+			{
+				return true;
+			}
+			if ( !( obj instanceof FormatterKey ) )
+			{
+				return false;
+			}
+			FormatterKey key = (FormatterKey) obj;
+			return type == key.type && dateStyle == key.dateStyle
+					&& timeStyle == key.timeStyle
+					&& equals( pattern, key.pattern )
+					&& equals( locale, key.locale )
+					&& equals( timeZoneId, key.timeZoneId );
+		}
+
+		private static boolean equals( Object o1, Object o2 )
+		{
+			return o1 == null ? o2 == null : o1.equals( o2 );
+		}
+	}
+}
@@ -70,6 +70,9 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.data.engine.binding.newbinding.MultiplePassTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.binding.newbinding.ColumnBindingTest.class );
 		
+		/* in package org.eclipse.birt.data.engine.executor */
+		suite.addTestSuite( org.eclipse.birt.data.engine.executor.CacheMapManagerTest.class );
+		
 		/* in package org.eclipse.birt.data.engine.executor.cache */
 		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.CacheClobAndBlobTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.CacheComputedColumnTest.class );
@@ -77,8 +80,11 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.CacheFeaturesTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.CacheNestedQueryTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.CacheSortTest.class );
+		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.ParallelCacheSortTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.CacheSubqueryTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.MemoryCacheTest.class );
+		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.ColumnarCacheTest.class );
+		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.ResultObjectCodecTest.class );
 		
 		/* in package org.eclipse.birt.data.engine.executor.transform */
 		suite.addTestSuite( org.eclipse.birt.data.engine.executor.transform.CachedResultSetTest.class );
@@ -113,6 +119,7 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.data.engine.impl.binding.AggregationTest.class );
 		/* in package org.eclipse.birt.data.engine.impl.document */
 		suite.addTestSuite( org.eclipse.birt.data.engine.impl.document.GroupInfoUtilTest.class);
+		suite.addTestSuite( org.eclipse.birt.data.engine.impl.document.util.ColumnBlockUtilTest.class );
 		
 		/* in package org.eclipse.birt.data.engine.impl */
 		suite.addTestSuite( org.eclipse.birt.data.engine.impl.util.DirectedGraphTest.class );
@@ -163,6 +170,7 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.data.util.ObjectArrayUtilTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.data.util.PrimaryDiskArrayTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.data.util.PrimarySortedStackTest.class );
+		suite.addTestSuite( org.eclipse.birt.data.engine.olap.data.util.RoaringBitmapTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.data.util.SetUtilTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.data.util.StructureDiskArrayTest.class );
 		
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor;
+
+import org.eclipse.birt.data.engine.api.querydefn.ScriptDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptDataSourceDesign;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the concurrent cache map of the data set cache
+ */
+public class CacheMapManagerTest extends TestCase
+{
+
+	private ScriptDataSourceDesign dataSource;
+	private CacheMapManager manager;
+
+	/*
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	public void setUp( )
+	{
+		dataSource = new ScriptDataSourceDesign( "dataSource" );
+		manager = new CacheMapManager( true );
+		manager.resetForTest( );
+		manager.getStatistics( ).reset( );
+	}
+
+	/*
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	public void tearDown( )
+	{
+		manager.resetForTest( );
+	}
+
+	private DataSourceAndDataSet newKey( ScriptDataSetDesign dataSet )
+	{
+		return DataSourceAndDataSet.newInstance( dataSource,
+				dataSet,
+				null,
+				null );
+	}
+
+	/**
+	 * Test the hit, miss and load statistics
+	 */
+	public void testStatistics( )
+	{
+		DataSourceAndDataSet key = newKey( new ScriptDataSetDesign( "dataSet" ) );
+		DataSetCacheStatistics statistics = manager.getStatistics( );
+
+		assertFalse( manager.doesLoadFromCache( key, 10, 0 ) );
+		manager.saveFinishOnCache( key, new CacheObject( ), 0 );
+		assertTrue( manager.doesLoadFromCache( key, 10, 0 ) );
+		assertTrue( manager.doesLoadFromCache( key, 10, 0 ) );
+
+		assertEquals( 2, statistics.getHitCount( ) );
+		assertEquals( 1, statistics.getMissCount( ) );
+		assertEquals( 1, statistics.getLoadCount( ) );
+		assertEquals( 0, statistics.getEvictionCount( ) );
+	}
+
+	/**
+	 * Test a data set being retrieved is not retrieved by another thread
+	 */
+	public void testSingleFlight( ) throws Exception
+	{
+		final DataSourceAndDataSet key = newKey( new ScriptDataSetDesign( "dataSet" ) );
+		assertFalse( manager.doesLoadFromCache( key, 10, 0 ) );
+
+		Loader loader = new Loader( new CacheMapManager( true ), key );
+		loader.start( );
+		loader.join( 200 );
+		assertTrue( loader.isAlive( ) );
+
+		manager.saveFinishOnCache( key, new CacheObject( ), 0 );
+		loader.join( 10000 );
+		assertFalse( loader.isAlive( ) );
+		assertEquals( Boolean.TRUE, loader.result );
+
+		assertEquals( 1, manager.getStatistics( ).getMissCount( ) );
+		assertEquals( 1, manager.getStatistics( ).getHitCount( ) );
+	}
+
+	/**
+	 * Test the waiting thread retrieves the data set if it is not saved
+	 */
+	public void testLoadingFailed( ) throws Exception
+	{
+		final DataSourceAndDataSet key = newKey( new ScriptDataSetDesign( "dataSet" ) );
+		assertFalse( manager.doesLoadFromCache( key, 10, 0 ) );
+
+		Loader loader = new Loader( new CacheMapManager( true ), key );
+		loader.start( );
+		loader.join( 200 );
+		assertTrue( loader.isAlive( ) );
+
+		manager.clearCache( key );
+		loader.join( 10000 );
+		assertFalse( loader.isAlive( ) );
+		assertEquals( Boolean.FALSE, loader.result );
+	}
+
+	/**
+	 * Test the waiting thread is woken up when the retrieving thread fails
+	 */
+	public void testRetrievingFailed( ) throws Exception
+	{
+		final DataSourceAndDataSet key = newKey( new ScriptDataSetDesign( "dataSet" ) );
+		assertFalse( manager.doesLoadFromCache( key, 10, 0 ) );
+
+		Loader loader = new Loader( new CacheMapManager( true ), key );
+		loader.start( );
+		loader.join( 200 );
+		assertTrue( loader.isAlive( ) );
+
+		// another thread of the manager does not finish the loading
+		Thread other = new Thread( ) {
+
+			public void run( )
+			{
+				manager.loadingFailed( );
+			}
+		};
+		other.start( );
+		other.join( );
+		loader.join( 200 );
+		assertTrue( loader.isAlive( ) );
+
+		manager.loadingFailed( );
+		loader.join( 10000 );
+		assertFalse( loader.isAlive( ) );
+		assertEquals( Boolean.FALSE, loader.result );
+	}
+
+	/**
+	 * Test the expired data set is released
+	 */
+	public void testTimeToLive( ) throws Exception
+	{
+		DataSourceAndDataSet key = newKey( new ScriptDataSetDesign( "dataSet" ) );
+		CacheObject cacheObject = new CacheObject( );
+		manager.saveFinishOnCache( key, cacheObject, 0 );
+		assertTrue( manager.doesLoadFromCache( key, 10, 60000 ) );
+		manager.loadStart( key );
+		manager.loadFinishOnCache( key );
+
+		Thread.sleep( 50 );
+		assertFalse( manager.doesLoadFromCache( key, 10, 10 ) );
+		assertTrue( cacheObject.released );
+		assertEquals( 1, manager.getStatistics( ).getEvictionCount( ) );
+	}
+
+	/**
+	 * Test the least recently used data set which is not being read is
+	 * removed when the cache is full
+	 */
+	public void testMaxEntries( ) throws Exception
+	{
+		DataSourceAndDataSet key1 = newKey( new ScriptDataSetDesign( "dataSet1" ) );
+		DataSourceAndDataSet key2 = newKey( new ScriptDataSetDesign( "dataSet2" ) );
+		DataSourceAndDataSet key3 = newKey( new ScriptDataSetDesign( "dataSet3" ) );
+		CacheObject cacheObject1 = new CacheObject( );
+		CacheObject cacheObject2 = new CacheObject( );
+		CacheObject cacheObject3 = new CacheObject( );
+
+		manager.saveFinishOnCache( key1, cacheObject1, 2 );
+		Thread.sleep( 10 );
+		manager.saveFinishOnCache( key2, cacheObject2, 2 );
+		Thread.sleep( 10 );
+
+		// key1 is being read
+		assertTrue( manager.doesLoadFromCache( key1, 10, 0 ) );
+		manager.loadStart( key1 );
+
+		manager.saveFinishOnCache( key3, cacheObject3, 2 );
+		assertFalse( cacheObject1.released );
+		assertTrue( cacheObject2.released );
+		assertFalse( cacheObject3.released );
+		assertSame( cacheObject1, manager.getloadedCacheObject( key1 ) );
+		assertNull( manager.getloadedCacheObject( key2 ) );
+		assertEquals( 1, manager.getStatistics( ).getEvictionCount( ) );
+
+		manager.loadFinishOnCache( key1 );
+	}
+
+	/**
+	 * Test the data set locked by a manager is not removed when the readers
+	 * of another manager finish
+	 */
+	public void testLockedByManager( ) throws Exception
+	{
+		DataSourceAndDataSet key1 = newKey( new ScriptDataSetDesign( "dataSet1" ) );
+		DataSourceAndDataSet key2 = newKey( new ScriptDataSetDesign( "dataSet2" ) );
+		DataSourceAndDataSet key3 = newKey( new ScriptDataSetDesign( "dataSet3" ) );
+		CacheObject cacheObject1 = new CacheObject( );
+		CacheObject cacheObject2 = new CacheObject( );
+
+		manager.saveFinishOnCache( key1, cacheObject1, 0 );
+		manager.saveFinishOnCache( key2, cacheObject2, 0 );
+		// key1 is locked by the manager but not read yet
+		assertTrue( manager.doesLoadFromCache( key1, 10, 0 ) );
+		assertTrue( manager.doesLoadFromCache( key1, 10, 0 ) );
+
+		CacheMapManager other = new CacheMapManager( true );
+		assertTrue( other.doesLoadFromCache( key1, 10, 0 ) );
+		other.loadStart( key1 );
+		other.loadFinishOnCache( key1 );
+
+		manager.saveFinishOnCache( key3, new CacheObject( ), 1 );
+		assertFalse( cacheObject1.released );
+		assertTrue( cacheObject2.released );
+
+		manager.loadStart( key1 );
+		manager.loadFinishOnCache( key1 );
+		manager.saveFinishOnCache( key2, new CacheObject( ), 1 );
+		assertTrue( cacheObject1.released );
+	}
+
+	/**
+	 * The thread checking whether the data set can be loaded from cache
+	 */
+	private static class Loader extends Thread
+	{
+
+		private CacheMapManager manager;
+		private DataSourceAndDataSet key;
+		private Boolean result;
+
+		Loader( CacheMapManager manager, DataSourceAndDataSet key )
+		{
+			this.manager = manager;
+			this.key = key;
+		}
+
+		public void run( )
+		{
+			result = Boolean.valueOf( manager.doesLoadFromCache( key, 10, 0 ) );
+		}
+	}
+
+	private static class CacheObject implements IDataSetCacheObject
+	{
+
+		private boolean released;
+
+		public boolean isCachedDataReusable( int requiredCapability )
+		{
+			return true;
+		}
+
+		public boolean needUpdateCache( int requiredCapability )
+		{
+			return false;
+		}
+
+		public IResultClass getResultClass( )
+		{
+			return null;
+		}
+
+		public void release( )
+		{
+			released = true;
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the columnar memory cache
+ */
+public class ColumnarCacheTest extends TestCase
+{
+
+	private IResultClass resultClass;
+
+	/*
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	public void setUp( ) throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"col1",
+				"col1",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				"Integer" /* nativeTypeName */,
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				"col2",
+				"col2",
+				DataType.getClass( DataType.STRING_TYPE ),
+				"String" /* nativeTypeName */,
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 3,
+				"col3",
+				"col3",
+				DataType.getClass( DataType.DECIMAL_TYPE ),
+				"Decimal" /* nativeTypeName */,
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 4,
+				"col4",
+				"col4",
+				DataType.getClass( DataType.DATE_TYPE ),
+				"Timestamp" /* nativeTypeName */,
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 5,
+				"custom",
+				"custom",
+				DataType.getClass( DataType.ANY_TYPE ),
+				null /* nativeTypeName */,
+				true ) );
+		resultClass = new ResultClass( columnsList );
+	}
+
+	private ColumnStore createStore( Object[][] rows ) throws DataException
+	{
+		ColumnStore store = new ColumnStore( resultClass );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			store.add( new ResultObject( resultClass, rows[i] ) );
+		}
+		return store;
+	}
+
+	/**
+	 * Test the values are returned as they are added
+	 */
+	public void testValues( ) throws DataException
+	{
+		Timestamp time = new Timestamp( 1000000L );
+		time.setNanos( 123456789 );
+		Object[][] rows = new Object[][]{
+				{
+						Integer.valueOf( 1 ),
+						"abc",
+						new BigDecimal( "1.25" ),
+						time,
+						null
+				}, {
+						null, null, null, null, null
+				}, {
+						Integer.valueOf( -3 ),
+						"abc",
+						new BigDecimal( "123456789012345678901234567890" ),
+						new java.sql.Date( 0 ),
+						null
+				}
+		};
+		ColumnStore store = createStore( rows );
+		ColumnarCache cache = new ColumnarCache( store, resultClass, null );
+		assertEquals( 3, cache.getCount( ) );
+
+		int i = 0;
+		IResultObject row;
+		while ( ( row = cache.fetch( ) ) != null )
+		{
+			for ( int j = 0; j < rows[i].length; j++ )
+			{
+				assertEquals( rows[i][j], row.getFieldValue( j + 1 ) );
+				if ( rows[i][j] != null )
+					assertEquals( rows[i][j].getClass( ), row.getFieldValue( j + 1 )
+							.getClass( ) );
+			}
+			assertEquals( rows[i][1], row.getFieldValue( "col2" ) );
+			i++;
+		}
+		assertEquals( 3, i );
+	}
+
+	/**
+	 * Test the column is converted when a value of another type is added
+	 */
+	public void testMixedValues( ) throws DataException
+	{
+		Object[][] rows = new Object[][]{
+				{
+						Integer.valueOf( 1 ), "a", null, null, null
+				}, {
+						Long.valueOf( Long.MAX_VALUE ), "b", null, null, null
+				}, {
+						"text", "a", null, null, null
+				}
+		};
+		ColumnStore store = createStore( rows );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			assertEquals( rows[i][0], store.get( i, 0 ) );
+			assertEquals( rows[i][1], store.get( i, 1 ) );
+		}
+	}
+
+	/**
+	 * Test the sort is stable and keeps the original rows
+	 */
+	public void testSort( ) throws DataException
+	{
+		int count = 100;
+		Object[][] rows = new Object[count][];
+		for ( int i = 0; i < count; i++ )
+		{
+			rows[i] = new Object[]{
+					Integer.valueOf( i ),
+					i % 3 == 0 ? null : "key" + ( i % 7 ),
+					null,
+					null,
+					null
+			};
+		}
+		Comparator comparator = new Comparator( ) {
+
+			public int compare( Object o1, Object o2 )
+			{
+				try
+				{
+					Object v1 = ( (IResultObject) o1 ).getFieldValue( 2 );
+					Object v2 = ( (IResultObject) o2 ).getFieldValue( 2 );
+					if ( v1 == null || v2 == null )
+						return v1 == null ? ( v2 == null ? 0 : -1 ) : 1;
+					return ( (String) v1 ).compareTo( (String) v2 );
+				}
+				catch ( DataException e )
+				{
+					throw new RuntimeException( e );
+				}
+			}
+		};
+		ColumnarCache cache = new ColumnarCache( createStore( rows ),
+				resultClass,
+				comparator );
+		assertEquals( count, cache.getCount( ) );
+
+		IResultObject previous = null;
+		IResultObject row;
+		while ( ( row = cache.fetch( ) ) != null )
+		{
+			if ( previous != null )
+			{
+				int result = comparator.compare( previous, row );
+				assertTrue( result <= 0 );
+				if ( result == 0 )
+					assertTrue( ( (Integer) previous.getFieldValue( 1 ) ).intValue( ) < ( (Integer) row.getFieldValue( 1 ) ).intValue( ) );
+			}
+			previous = row;
+		}
+
+		cache.moveTo( 0 );
+		assertNull( cache.getCurrentResult( ).getFieldValue( 2 ) );
+		assertEquals( Integer.valueOf( 0 ), cache.getCurrentResult( )
+				.getFieldValue( 1 ) );
+	}
+
+	/**
+	 * Test the custom field value is stored in the column store
+	 */
+	public void testCustomField( ) throws DataException
+	{
+		ColumnStore store = createStore( new Object[][]{
+				{
+						Integer.valueOf( 1 ), "a", null, null, null
+				}, {
+						Integer.valueOf( 2 ), "b", null, null, null
+				}
+		} );
+		ColumnarCache cache = new ColumnarCache( store, resultClass, null );
+		cache.moveTo( 1 );
+		cache.getCurrentResult( ).setCustomFieldValue( "custom", "value" );
+		cache.moveTo( 0 );
+		assertNull( cache.getCurrentResult( ).getFieldValue( "custom" ) );
+		cache.moveTo( 1 );
+		assertEquals( "value", cache.getCurrentResult( )
+				.getFieldValue( "custom" ) );
+
+		try
+		{
+			cache.getCurrentResult( ).setCustomFieldValue( "col1", "value" );
+			fail( );
+		}
+		catch ( DataException e )
+		{
+		}
+	}
+}
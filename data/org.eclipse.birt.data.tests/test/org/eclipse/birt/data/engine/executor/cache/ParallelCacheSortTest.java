@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+
+/**
+ * Test the disk sort with several threads, the result is the same as the
+ * result of CacheSortTest
+ */
+public class ParallelCacheSortTest extends CacheSortTest
+{
+
+	protected Map getAppContext()
+	{
+		Map appContext = super.getAppContext( );
+		appContext.put( DataEngine.DISK_SORT_THREAD_COUNT, "3" );
+		return appContext;
+	}
+
+	/**
+	 * Test the invalid thread count is ignored
+	 */
+	public void testInvalidThreadCount( )
+	{
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.DISK_SORT_THREAD_COUNT, "three" );
+		assertEquals( 1, CacheUtil.getDiskSortThreadCount( appContext ) );
+		appContext.put( DataEngine.DISK_SORT_THREAD_COUNT, " 3 " );
+		assertEquals( 3, CacheUtil.getDiskSortThreadCount( appContext ) );
+	}
+	
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.DataEngineContext;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.impl.DataEngineImpl;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import testutil.BaseTestCase;
+
+/**
+ * Test the rows saved by ResultObjectCodec are in the format of
+ * ResultObjectUtil.writeObject and are read back unchanged.
+ */
+public class ResultObjectCodecTest extends BaseTestCase
+{
+
+	private static final int ROW_COUNT = 3000;
+
+	private DataEngine dataEngine;
+	private ResultClass resultClass;
+	private ResultObjectUtil util;
+
+	/*
+	 * @see testutil.BaseTestCase#setUp()
+	 */
+	protected void setUp( ) throws Exception
+	{
+		super.setUp( );
+		DataEngineContext context = DataEngineContext.newInstance( DataEngineContext.DIRECT_PRESENTATION,
+				null,
+				null,
+				null );
+		context.setTmpdir( getTempDir( ) );
+		dataEngine = DataEngine.newDataEngine( context );
+
+		List columnsList = new ArrayList( );
+		int[] types = new int[]{
+				DataType.INTEGER_TYPE,
+				DataType.DOUBLE_TYPE,
+				DataType.DECIMAL_TYPE,
+				DataType.DATE_TYPE,
+				DataType.BOOLEAN_TYPE,
+				DataType.STRING_TYPE,
+				DataType.BLOB_TYPE,
+				DataType.ANY_TYPE
+		};
+		for ( int i = 0; i < types.length; i++ )
+		{
+			columnsList.add( new ResultFieldMetadata( i + 1,
+					"col" + i,
+					"col" + i,
+					DataType.getClass( types[i] ),
+					null /* nativeTypeName */,
+					false ) );
+		}
+		resultClass = new ResultClass( columnsList );
+		util = ResultObjectUtil.newInstance( resultClass,
+				( (DataEngineImpl) dataEngine ).getSession( ) );
+	}
+
+	/*
+	 * @see testutil.BaseTestCase#tearDown()
+	 */
+	protected void tearDown( ) throws Exception
+	{
+		dataEngine.shutdown( );
+		super.tearDown( );
+	}
+
+	private IResultObject[] createRows( )
+	{
+		StringBuffer longString = new StringBuffer( );
+		for ( int i = 0; i < 30000; i++ )
+		{
+			longString.append( '\u4e2d' );
+		}
+		IResultObject[] rows = new IResultObject[ROW_COUNT];
+		for ( int i = 0; i < ROW_COUNT; i++ )
+		{
+			rows[i] = new ResultObject( resultClass, new Object[]{
+					i % 7 == 0 ? null : Integer.valueOf( i * 31 - 5000 ),
+					Double.valueOf( i / 3.0 ),
+					new BigDecimal( i * 1000L - 7 ).movePointLeft( 3 ),
+					i % 2 == 0 ? new Date( 1000000L * i )
+							: new Timestamp( 1000000L * i ),
+					Boolean.valueOf( i % 3 == 0 ),
+					i == 10 ? longString.toString( ) : "value\u00e9" + i,
+					i % 4 == 0 ? null : new byte[]{
+							1, 2, (byte) i
+					},
+					i % 5 == 0 ? (Object) ( "object" + i ) : Integer.valueOf( i )
+			} );
+		}
+		return rows;
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testWriteRows( ) throws Exception
+	{
+		IResultObject[] rows = createRows( );
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream( );
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream( );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			buffer.reset( );
+			DataOutputStream dos = new DataOutputStream( buffer );
+			for ( int j = 0; j < resultClass.getFieldCount( ); j++ )
+			{
+				ResultObjectUtil.writeObject( dos,
+						rows[i].getFieldValue( j + 1 ),
+						resultClass.getFieldValueClass( j + 1 ) );
+			}
+			dos.flush( );
+			new DataOutputStream( expected ).writeInt( buffer.size( ) );
+			buffer.writeTo( expected );
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		ResultObjectCodec codec = util.newCodec( );
+		codec.writeRows( out, rows, 0, 1000 );
+		codec.writeRows( out, rows, 1000, ROW_COUNT - 1000 );
+		byte[] expectedBytes = expected.toByteArray( );
+		byte[] bytes = out.toByteArray( );
+		assertEquals( expectedBytes.length, bytes.length );
+		for ( int i = 0; i < bytes.length; i++ )
+		{
+			assertEquals( expectedBytes[i], bytes[i] );
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testReadRows( ) throws Exception
+	{
+		IResultObject[] rows = createRows( );
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		util.newCodec( ).writeRows( out, rows, 0, ROW_COUNT );
+
+		ByteArrayInputStream in = new ByteArrayInputStream( out.toByteArray( ) );
+		ResultObjectCodec codec = util.newCodec( );
+		IResultObject[] values = new IResultObject[ROW_COUNT];
+		assertEquals( 100, codec.readRows( in, null, values, 0, 100 ) );
+		// the rows after the block are read by readData
+		IResultObject[] others = util.readData( in, null, ROW_COUNT - 100 );
+		System.arraycopy( others, 0, values, 100, others.length );
+		assertEquals( 0, in.available( ) );
+
+		for ( int i = 0; i < ROW_COUNT; i++ )
+		{
+			for ( int j = 1; j <= resultClass.getFieldCount( ); j++ )
+			{
+				Object expected = rows[i].getFieldValue( j );
+				Object value = values[i].getFieldValue( j );
+				if ( expected instanceof byte[] )
+				{
+					byte[] expectedBytes = (byte[]) expected;
+					byte[] bytes = (byte[]) value;
+					assertEquals( expectedBytes.length, bytes.length );
+					for ( int k = 0; k < bytes.length; k++ )
+					{
+						assertEquals( expectedBytes[k], bytes[k] );
+					}
+				}
+				else if ( expected instanceof Date )
+				{
+					assertEquals( ( (Date) expected ).getTime( ),
+							( (Date) value ).getTime( ) );
+				}
+				else
+				{
+					assertEquals( expected, value );
+				}
+			}
+		}
+	}
+}
@@ -241,6 +241,52 @@ public class ExpressionCompilerTest extends TestCase
 		assertTrue( ((AggregateExpression)( aggrExprs.get(1))).getArguments().size() == 1 );
 	}
 	
+	// Test the simple expressions evaluated without the script
+	public void testJavaEvaluator( ) throws Exception
+	{
+		Context.getCurrentContext( ).evaluateString( scope,
+				"var row = { a: 2, b: 3, s: \"x\", n: null };",
+				"setup",
+				1,
+				null );
+		Object[][] cases = new Object[][]{
+				{ "row[\"a\"] * row[\"b\"]", new Double( 6 ) },
+				{ "row.a + row.b - 1", new Double( 4 ) },
+				{ "row.b % row.a", new Double( 1 ) },
+				{ "row.s + row.a", "x2" },
+				{ "row.a > 1", Boolean.TRUE },
+				{ "row.a >= 3 || row.b <= 2", Boolean.FALSE },
+				{ "row.n == null && row.s != null", Boolean.TRUE },
+				{ "row.a === 2 ? \"yes\" : \"no\"", "yes" },
+				{ "!( row.a < row.b )", Boolean.FALSE },
+				{ "-row.a", new Double( -2 ) },
+		};
+		for ( int i = 0; i < cases.length; i++ )
+		{
+			CompiledExpression expr = compiler.compile( (String) cases[i][0],
+					this.aggrReg,
+					cx );
+			assertTrue( (String) cases[i][0],
+					( (BytecodeExpression) expr ).hasEvaluator( ) );
+			Object result = expr.evaluate( cx, scope );
+			assertEquals( (String) cases[i][0],
+					DataTypeUtil.convert( cases[i][1], DataType.ANY_TYPE ),
+					result );
+		}
+
+		// expressions out of the subset are executed by the script
+		CompiledExpression expr = compiler.compile( "row.s.toUpperCase( )",
+				this.aggrReg,
+				cx );
+		assertFalse( ( (BytecodeExpression) expr ).hasEvaluator( ) );
+		assertEquals( "X", expr.evaluate( cx, scope ) );
+
+		// the value not supported at runtime is evaluated by the script
+		expr = compiler.compile( "row.s.length + 1", this.aggrReg, cx );
+		assertTrue( ( (BytecodeExpression) expr ).hasEvaluator( ) );
+		assertEquals( new Double( 2 ), expr.evaluate( cx, scope ) );
+	}
+
 	/*
 	 * Please refer to SCR #75905
 	 * Exception thrown out when choose "select value" without expression if set filter  
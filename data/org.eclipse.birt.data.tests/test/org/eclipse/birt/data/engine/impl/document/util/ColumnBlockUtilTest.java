@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.document.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the values saved in a column block are read back unchanged.
+ */
+public class ColumnBlockUtilTest extends TestCase
+{
+
+	private static final int COLUMN_COUNT = 9;
+
+	/**
+	 * @throws IOException
+	 */
+	public void testEncodeBlock( ) throws IOException
+	{
+		List<Object[]> rows = new ArrayList<Object[]>( );
+		for ( int i = 0; i < ColumnBlockUtil.BLOCK_ROW_COUNT; i++ )
+		{
+			if ( i % 97 == 5 )
+			{
+				// the row without values
+				rows.add( null );
+				continue;
+			}
+			rows.add( new Object[]{
+					i % 7 == 0 ? null : Integer.valueOf( i * 31 - 5000 ),
+					Long.valueOf( i * 1000000000L - 5 ),
+					i % 3 == 0 ? null : Double.valueOf( i / 3.0 ),
+					new Date( 1000000L * i ),
+					"group" + ( i % 5 ),
+					"name" + i,
+					i % 2 == 0 ? new BigDecimal( i ) : null,
+					null,
+					i % 4 == 0 ? (Object) "mixed" : Integer.valueOf( i ),
+			} );
+		}
+		rows.set( 10, new Object[]{
+				Integer.valueOf( Integer.MIN_VALUE ),
+				Long.valueOf( Long.MAX_VALUE ),
+				Double.valueOf( Double.NaN ),
+				new Timestamp( 10 ),
+				"",
+				"\u4e2d\u6587",
+				null,
+				null,
+				Integer.valueOf( Integer.MAX_VALUE )
+		} );
+		assertBlock( rows );
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	public void testEmptyColumns( ) throws IOException
+	{
+		List<Object[]> rows = new ArrayList<Object[]>( );
+		rows.add( new Object[COLUMN_COUNT] );
+		rows.add( null );
+		assertBlock( rows );
+	}
+
+	private void assertBlock( List<Object[]> rows ) throws IOException
+	{
+		byte[] data = ColumnBlockUtil.encodeBlock( rows, COLUMN_COUNT );
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream( data ) );
+		int rowCount = (int) ColumnBlockUtil.readVarLong( in );
+		assertEquals( rows.size( ), rowCount );
+		assertEquals( COLUMN_COUNT, (int) ColumnBlockUtil.readVarLong( in ) );
+		byte[] emptyRows = null;
+		if ( in.readBoolean( ) )
+		{
+			emptyRows = new byte[( rowCount + 7 ) / 8];
+			in.readFully( emptyRows );
+		}
+		int[] lengths = new int[COLUMN_COUNT];
+		for ( int i = 0; i < COLUMN_COUNT; i++ )
+		{
+			lengths[i] = (int) ColumnBlockUtil.readVarLong( in );
+		}
+		int offset = data.length - in.available( );
+		for ( int column = 0; column < COLUMN_COUNT; column++ )
+		{
+			Object[] values = ColumnBlockUtil.decodeColumn( data,
+					offset,
+					lengths[column],
+					rowCount,
+					getClass( ).getClassLoader( ) );
+			offset += lengths[column];
+			for ( int row = 0; row < rowCount; row++ )
+			{
+				Object[] rowValues = rows.get( row );
+				if ( rowValues == null )
+				{
+					assertTrue( ColumnBlockUtil.getBit( emptyRows, row ) );
+					continue;
+				}
+				Object expected = rowValues[column];
+				Object value = values[row];
+				assertEquals( expected, value );
+				if ( expected != null )
+				{
+					assertEquals( expected.getClass( ), value.getClass( ) );
+				}
+			}
+		}
+		assertEquals( data.length, offset );
+	}
+}
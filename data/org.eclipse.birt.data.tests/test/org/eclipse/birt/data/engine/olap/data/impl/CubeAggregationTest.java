@@ -16,7 +16,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
 import org.eclipse.birt.core.archive.compound.ArchiveFile;
@@ -33,6 +35,7 @@ import org.eclipse.birt.data.engine.api.querydefn.Binding;
 import org.eclipse.birt.data.engine.api.querydefn.ConditionalExpression;
 import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
 import org.eclipse.birt.data.engine.impl.DataEngineImpl;
 import org.eclipse.birt.data.engine.impl.StopSign;
 import org.eclipse.birt.data.engine.olap.api.query.CubeFilterDefinition;
@@ -1373,6 +1376,387 @@ public class CubeAggregationTest extends BaseTestCase
 			resultSet[i].close( );
 		}
 	}
+	
+	/**
+	 * test the aggregations calculated from the pre-aggregated rollups are the
+	 * same as those calculated from the fact table.
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public void testCube2AggregateStore( ) throws IOException, BirtException
+	{
+		createCube2( );
+		AggregationDefinition[] aggregations = new AggregationDefinition[4];
+		AggregationFunctionDefinition[] funcitons = new AggregationFunctionDefinition[3];
+		funcitons[0] = new AggregationFunctionDefinition( "sum1", "measure1", IBuildInAggregation.TOTAL_SUM_FUNC );
+		funcitons[1] = new AggregationFunctionDefinition( "min2", "measure2", IBuildInAggregation.TOTAL_MIN_FUNC );
+		funcitons[2] = new AggregationFunctionDefinition( "count1", "measure1", IBuildInAggregation.TOTAL_COUNT_FUNC );
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{dimLevel11},
+				new int[]{IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		
+		funcitons = new AggregationFunctionDefinition[1];
+		funcitons[0] = new AggregationFunctionDefinition( "sum1", "measure1", IBuildInAggregation.TOTAL_SUM_FUNC );
+		aggregations[1] = new AggregationDefinition( new DimLevel[]{dimLevel21, dimLevel11},
+				new int[]{IDimensionSortDefn.SORT_DESC, IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		
+		funcitons = new AggregationFunctionDefinition[1];
+		funcitons[0] = new AggregationFunctionDefinition( "sum2", "measure2", IBuildInAggregation.TOTAL_SUM_FUNC );
+		aggregations[2] = new AggregationDefinition( new DimLevel[]{dimLevel11, dimLevel12, dimLevel21},
+				new int[]{IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		
+		// the sum of the double measure is not rolled up
+		aggregations[3] = new AggregationDefinition( new DimLevel[]{dimLevel12},
+				new int[]{IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		
+		Cube cube = (Cube) CubeQueryExecutorHelper.loadCube( "cube2",
+				documentManager,
+				new StopSign( ) );
+		assertNull( cube.getAggregateStore( ) );
+		IAggregationResultSet[] expected = new CubeQueryExecutorHelper( cube ).execute( aggregations,
+				new StopSign( ) );
+		
+		MeasureInfo[] measureInfos = cube.getFactTable( ).getMeasureInfo( );
+		AggregationDefinition[] rollups = new AggregationDefinition[]{
+			CubeAggregateStore.createRollupDefinition( new DimLevel[]{
+					dimLevel11, dimLevel12, dimLevel21
+			}, measureInfos )
+		};
+		IAggregationResultSet[] rollupResultSet = new CubeQueryExecutorHelper( cube ).execute( rollups,
+				new StopSign( ) );
+		CubeAggregateStore.save( documentManager,
+				"cube2",
+				measureInfos,
+				rollupResultSet,
+				new StopSign( ) );
+		rollupResultSet[0].close( );
+		
+		cube = (Cube) CubeQueryExecutorHelper.loadCube( "cube2",
+				documentManager,
+				new StopSign( ) );
+		CubeAggregateStore store = cube.getAggregateStore( );
+		assertNotNull( store );
+		assertNotNull( store.execute( aggregations[0], new StopSign( ) ) );
+		assertNotNull( store.execute( aggregations[1], new StopSign( ) ) );
+		assertNotNull( store.execute( aggregations[2], new StopSign( ) ) );
+		assertNull( store.execute( aggregations[3], new StopSign( ) ) );
+		
+		IAggregationResultSet[] resultSet = new CubeQueryExecutorHelper( cube ).execute( aggregations,
+				new StopSign( ) );
+		assertResultSetEquals( expected, resultSet );
+	}
+	
+	/**
+	 * test the aggregations of the cube whose members and rows are appended
+	 * are the same as those of the cube created with all the rows.
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public void testCube2Append( ) throws IOException, BirtException
+	{
+		createCube2( );
+		AggregationDefinition[] aggregations = new AggregationDefinition[3];
+		AggregationFunctionDefinition[] funcitons = new AggregationFunctionDefinition[2];
+		funcitons[0] = new AggregationFunctionDefinition( "sum1", "measure1", IBuildInAggregation.TOTAL_SUM_FUNC );
+		funcitons[1] = new AggregationFunctionDefinition( "count1", "measure1", IBuildInAggregation.TOTAL_COUNT_FUNC );
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{dimLevel11, dimLevel12},
+				new int[]{IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		
+		funcitons = new AggregationFunctionDefinition[1];
+		funcitons[0] = new AggregationFunctionDefinition( "sum2", "measure2", IBuildInAggregation.TOTAL_SUM_FUNC );
+		aggregations[1] = new AggregationDefinition( new DimLevel[]{dimLevel21},
+				new int[]{IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		
+		funcitons = new AggregationFunctionDefinition[1];
+		funcitons[0] = new AggregationFunctionDefinition( "max1", "measure1", IBuildInAggregation.TOTAL_MAX_FUNC );
+		aggregations[2] = new AggregationDefinition( new DimLevel[]{dimLevel11, dimLevel21},
+				new int[]{IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		
+		IAggregationResultSet[] expected = new CubeQueryExecutorHelper( CubeQueryExecutorHelper.loadCube( "cube2",
+				documentManager,
+				new StopSign( ) ) ).execute( aggregations, new StopSign( ) );
+		
+		IDocumentManager appendManager = DocumentManagerFactory.createFileDocumentManager( getTempDir( ),
+				"append" );
+		// create the cube with the first 8 rows
+		int savedRowCount = 8;
+		String[] ColNames = new String[]{"col11", "col12", "col13"};
+		ILevelDefn[] levelDefs = new ILevelDefn[3];
+		levelDefs[0] = new LevelDefinition( "level11", new String[]{"col11"}, null );
+		levelDefs[1] = new LevelDefinition( "level12", new String[]{"col12"}, null );
+		levelDefs[2] = new LevelDefinition( "level13", new String[]{"col13"}, null );
+		DimensionForTest iterator = new DimensionForTest( ColNames );
+		iterator.setLevelMember( 0, copyOf( TestFactTable.L1Col, savedRowCount ) );
+		iterator.setLevelMember( 1, copyOf( TestFactTable.L2Col, savedRowCount ) );
+		iterator.setLevelMember( 2, copyOf( TestFactTable.L3Col, savedRowCount ) );
+		Dimension[] dimensions = new Dimension[2];
+		dimensions[0] = (Dimension) DimensionFactory.createDimension( "dimension1", appendManager, iterator, levelDefs, false, new StopSign() );
+		
+		iterator = new DimensionForTest( new String[]{"level21"} );
+		iterator.setLevelMember( 0, distinct( copyOf( TestFactTable.L1Col, savedRowCount ) ) );
+		dimensions[1] = (Dimension) DimensionFactory.createDimension( "dimension2",
+				appendManager,
+				iterator,
+				new ILevelDefn[]{ new LevelDefinition( "level21", new String[]{"level21"}, null )},
+				false,
+				new StopSign() );
+		String[][] keyColNames = CubeUtility.getKeyColNames( dimensions );
+		Cube cube = new Cube( "cube2", appendManager );
+		cube.create( keyColNames, dimensions, new TestFactTable( 0, savedRowCount ), new String[]{"measure1", "measure2"}, new StopSign( ) );
+		cube.close( );
+		
+		// append all the members, the saved ones are skipped
+		iterator = new DimensionForTest( ColNames );
+		iterator.setLevelMember( 0, TestFactTable.L1Col );
+		iterator.setLevelMember( 1, TestFactTable.L2Col );
+		iterator.setLevelMember( 2, TestFactTable.L3Col );
+		assertEquals( TestFactTable.L1Col.length,
+				DimensionFactory.appendDimension( "dimension1", appendManager, iterator, new StopSign( ) ).length( ) );
+		iterator = new DimensionForTest( new String[]{"level21"} );
+		iterator.setLevelMember( 0, distinct( TestFactTable.L1Col ) );
+		assertEquals( 3,
+				DimensionFactory.appendDimension( "dimension2", appendManager, iterator, new StopSign( ) ).length( ) );
+		
+		cube = new Cube( "cube2", appendManager );
+		cube.append( keyColNames,
+				keyColNames,
+				new TestFactTable( savedRowCount, TestFactTable.L1Col.length ),
+				null,
+				0,
+				new StopSign( ) );
+		cube.close( );
+		
+		IAggregationResultSet[] resultSet = new CubeQueryExecutorHelper( CubeQueryExecutorHelper.loadCube( "cube2",
+				appendManager,
+				new StopSign( ) ) ).execute( aggregations, new StopSign( ) );
+		assertResultSetEquals( expected, resultSet );
+		appendManager.close( );
+	}
+	
+	/**
+	 * test the appended rows are merged into the rollups of the cube, the
+	 * members of the appended rows are between the saved ones.
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public void testCube2AppendAggregateStore( ) throws IOException, BirtException
+	{
+		createCube2( );
+		DimLevel dimLevel13 = new DimLevel( "dimension1", "level13" );
+		AggregationDefinition[] aggregations = new AggregationDefinition[3];
+		AggregationFunctionDefinition[] funcitons = new AggregationFunctionDefinition[2];
+		funcitons[0] = new AggregationFunctionDefinition( "sum1", "measure1", IBuildInAggregation.TOTAL_SUM_FUNC );
+		funcitons[1] = new AggregationFunctionDefinition( "count1", "measure1", IBuildInAggregation.TOTAL_COUNT_FUNC );
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{dimLevel11, dimLevel12, dimLevel13},
+				new int[]{IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		aggregations[1] = new AggregationDefinition( new DimLevel[]{dimLevel11, dimLevel12},
+				new int[]{IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		
+		funcitons = new AggregationFunctionDefinition[3];
+		funcitons[0] = new AggregationFunctionDefinition( "max1", "measure1", IBuildInAggregation.TOTAL_MAX_FUNC );
+		funcitons[1] = new AggregationFunctionDefinition( "min2", "measure2", IBuildInAggregation.TOTAL_MIN_FUNC );
+		funcitons[2] = new AggregationFunctionDefinition( "count", null, IBuildInAggregation.TOTAL_COUNT_FUNC );
+		aggregations[2] = new AggregationDefinition( new DimLevel[]{dimLevel21},
+				new int[]{IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		
+		IAggregationResultSet[] expected = new CubeQueryExecutorHelper( CubeQueryExecutorHelper.loadCube( "cube2",
+				documentManager,
+				new StopSign( ) ) ).execute( aggregations, new StopSign( ) );
+		
+		IDocumentManager appendManager = DocumentManagerFactory.createFileDocumentManager( getTempDir( ),
+				"appendStore" );
+		Dimension[] dimensions = new Dimension[2];
+		String[] ColNames = new String[]{"col11", "col12", "col13"};
+		ILevelDefn[] levelDefs = new ILevelDefn[3];
+		levelDefs[0] = new LevelDefinition( "level11", new String[]{"col11"}, null );
+		levelDefs[1] = new LevelDefinition( "level12", new String[]{"col12"}, null );
+		levelDefs[2] = new LevelDefinition( "level13", new String[]{"col13"}, null );
+		DimensionForTest iterator = new DimensionForTest( ColNames );
+		iterator.setLevelMember( 0, TestFactTable.L1Col );
+		iterator.setLevelMember( 1, TestFactTable.L2Col );
+		iterator.setLevelMember( 2, TestFactTable.L3Col );
+		dimensions[0] = (Dimension) DimensionFactory.createDimension( "dimension1", appendManager, iterator, levelDefs, false, new StopSign() );
+		iterator = new DimensionForTest( new String[]{"level21"} );
+		iterator.setLevelMember( 0, distinct( TestFactTable.L1Col ) );
+		dimensions[1] = (Dimension) DimensionFactory.createDimension( "dimension2",
+				appendManager,
+				iterator,
+				new ILevelDefn[]{ new LevelDefinition( "level21", new String[]{"level21"}, null )},
+				false,
+				new StopSign() );
+		
+		// save the even rows and the rollups of them
+		int[] evenRows = new int[TestFactTable.L1Col.length / 2];
+		int[] oddRows = new int[TestFactTable.L1Col.length / 2];
+		for ( int i = 0; i < evenRows.length; i++ )
+		{
+			evenRows[i] = i * 2;
+			oddRows[i] = i * 2 + 1;
+		}
+		String[][] keyColNames = CubeUtility.getKeyColNames( dimensions );
+		Cube cube = new Cube( "cube2", appendManager );
+		cube.create( keyColNames, dimensions, new TestFactTable( evenRows ), new String[]{"measure1", "measure2"}, new StopSign( ) );
+		cube.close( );
+		cube = (Cube) CubeQueryExecutorHelper.loadCube( "cube2",
+				appendManager,
+				new StopSign( ) );
+		MeasureInfo[] measureInfos = cube.getFactTable( ).getMeasureInfo( );
+		AggregationDefinition[] rollups = new AggregationDefinition[]{
+				CubeAggregateStore.createRollupDefinition( new DimLevel[]{
+						dimLevel11, dimLevel12, dimLevel13
+				}, measureInfos ),
+				CubeAggregateStore.createRollupDefinition( new DimLevel[]{
+					dimLevel21
+				}, measureInfos )
+		};
+		IAggregationResultSet[] rollupResultSet = new CubeQueryExecutorHelper( cube ).execute( rollups,
+				new StopSign( ) );
+		CubeAggregateStore.save( appendManager,
+				"cube2",
+				measureInfos,
+				rollupResultSet,
+				new StopSign( ) );
+		rollupResultSet[0].close( );
+		rollupResultSet[1].close( );
+		cube.close( );
+		
+		// the members of level13 of the odd rows are between the saved ones
+		cube = new Cube( "cube2", appendManager );
+		cube.append( keyColNames,
+				keyColNames,
+				new TestFactTable( oddRows ),
+				null,
+				0,
+				new StopSign( ) );
+		cube.close( );
+		
+		cube = (Cube) CubeQueryExecutorHelper.loadCube( "cube2",
+				appendManager,
+				new StopSign( ) );
+		CubeAggregateStore store = cube.getAggregateStore( );
+		assertNotNull( store );
+		IAggregationResultSet[] storeResultSet = new IAggregationResultSet[aggregations.length];
+		for ( int i = 0; i < aggregations.length; i++ )
+		{
+			storeResultSet[i] = store.execute( aggregations[i], new StopSign( ) );
+			assertNotNull( storeResultSet[i] );
+		}
+		assertResultSetEquals( expected, storeResultSet );
+		
+		expected = new CubeQueryExecutorHelper( CubeQueryExecutorHelper.loadCube( "cube2",
+				documentManager,
+				new StopSign( ) ) ).execute( aggregations, new StopSign( ) );
+		IAggregationResultSet[] resultSet = new CubeQueryExecutorHelper( cube ).execute( aggregations,
+				new StopSign( ) );
+		assertResultSetEquals( expected, resultSet );
+		cube.close( );
+		appendManager.close( );
+	}
+	
+	/**
+	 * test the aggregations calculated in several threads are the same as
+	 * those calculated in one thread.
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public void testCube2ParallelAggregation( ) throws IOException, BirtException
+	{
+		createCube2( );
+		AggregationDefinition[] aggregations = new AggregationDefinition[4];
+		AggregationFunctionDefinition[] funcitons = new AggregationFunctionDefinition[2];
+		funcitons[0] = new AggregationFunctionDefinition( "sum1", "measure1", IBuildInAggregation.TOTAL_SUM_FUNC );
+		funcitons[1] = new AggregationFunctionDefinition( "sum2", "measure2", IBuildInAggregation.TOTAL_SUM_FUNC );
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{dimLevel11, dimLevel12},
+				new int[]{IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		aggregations[1] = new AggregationDefinition( new DimLevel[]{dimLevel11},
+				new int[]{IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		aggregations[2] = new AggregationDefinition( new DimLevel[]{dimLevel21},
+				new int[]{IDimensionSortDefn.SORT_DESC},
+				funcitons );
+		funcitons = new AggregationFunctionDefinition[1];
+		funcitons[0] = new AggregationFunctionDefinition( "count1", "measure1", IBuildInAggregation.TOTAL_COUNT_FUNC );
+		aggregations[3] = new AggregationDefinition( new DimLevel[]{dimLevel12},
+				new int[]{IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		
+		IAggregationResultSet[] expected = new CubeQueryExecutorHelper( CubeQueryExecutorHelper.loadCube( "cube2",
+				documentManager,
+				new StopSign( ) ) ).execute( aggregations, new StopSign( ) );
+		
+		CubeQueryExecutorHelper helper = new CubeQueryExecutorHelper( CubeQueryExecutorHelper.loadCube( "cube2",
+				documentManager,
+				new StopSign( ) ) );
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.CUBE_AGGREGATION_THREAD_COUNT, "4" );
+		helper.setAppContext( appContext );
+		IAggregationResultSet[] resultSet = helper.execute( aggregations,
+				new StopSign( ) );
+		assertResultSetEquals( expected, resultSet );
+	}
+	
+	/**
+	 * test the invalid aggregation thread count is ignored.
+	 */
+	public void testInvalidAggregationThreadCount( )
+	{
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.CUBE_AGGREGATION_THREAD_COUNT, "four" );
+		assertEquals( 1, CacheUtil.getCubeAggregationThreadCount( appContext ) );
+		appContext.put( DataEngine.CUBE_AGGREGATION_THREAD_COUNT, " 4 " );
+		assertEquals( 4, CacheUtil.getCubeAggregationThreadCount( appContext ) );
+	}
+	
+	private static void assertResultSetEquals( IAggregationResultSet[] expected,
+			IAggregationResultSet[] resultSet ) throws IOException
+	{
+		assertEquals( expected.length, resultSet.length );
+		for ( int i = 0; i < resultSet.length; i++ )
+		{
+			assertEquals( expected[i].length( ), resultSet[i].length( ) );
+			for ( int j = 0; j < resultSet[i].length( ); j++ )
+			{
+				expected[i].seek( j );
+				resultSet[i].seek( j );
+				for ( int k = 0; k < resultSet[i].getLevelCount( ); k++ )
+				{
+					assertTrue( Arrays.equals( expected[i].getLevelKeyValue( k ),
+							resultSet[i].getLevelKeyValue( k ) ) );
+				}
+				for ( int k = 0; k < resultSet[i].getAggregationCount( ); k++ )
+				{
+					assertEquals( expected[i].getAggregationValue( k ),
+							resultSet[i].getAggregationValue( k ) );
+				}
+			}
+			expected[i].close( );
+			resultSet[i].close( );
+		}
+	}
+	
+	private static String[] copyOf( String[] values, int length )
+	{
+		String[] result = new String[length];
+		System.arraycopy( values, 0, result, 0, length );
+		return result;
+	}
+	
+	private static int[] copyOf( int[] values, int length )
+	{
+		int[] result = new int[length];
+		System.arraycopy( values, 0, result, 0, length );
+		return result;
+	}
 }
 
 /*
@@ -1395,6 +1779,38 @@ class TestFactTable implements IDatasetIterator
 {
 
 	int ptr = -1;
+	private int start = 0;
+	private int end = L1Col.length;
+	private int[] rows;
+	private int rowIndex = -1;
+	
+	TestFactTable( )
+	{
+	}
+	
+	/**
+	 * 
+	 * @param rows
+	 *            the rows in the order they are iterated
+	 */
+	TestFactTable( int[] rows )
+	{
+		this.rows = rows;
+	}
+	
+	/**
+	 * 
+	 * @param start
+	 *            the first row
+	 * @param end
+	 *            the row after the last row
+	 */
+	TestFactTable( int start, int end )
+	{
+		this.start = start;
+		this.end = end;
+		this.ptr = start - 1;
+	}
 	static String[] L1Col = {
 			"1", "1", "1", "1", "2", "2", "2", "2", "3", "3", "3", "3"
 	};
@@ -1414,7 +1830,8 @@ class TestFactTable implements IDatasetIterator
 
 	public void beforeFirst( )
 	{
-		ptr = -1;
+		ptr = start - 1;
+		rowIndex = -1;
 		
 	}
 
@@ -1549,8 +1966,18 @@ class TestFactTable implements IDatasetIterator
 
 	public boolean next( ) throws BirtException
 	{
+		if ( rows != null )
+		{
+			rowIndex++;
+			if ( rowIndex >= rows.length )
+			{
+				return false;
+			}
+			ptr = rows[rowIndex];
+			return true;
+		}
 		ptr++;
-		if ( ptr >= L1Col.length )
+		if ( ptr >= end )
 		{
 			return false;
 		}
@@ -225,12 +225,26 @@ public class FactTableHelperTest extends TestCase
 	public void testFactTableSaveAndLoad1( ) throws IOException, BirtException
 	{
 		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
-		testFactTableSaveAndLoad1( documentManager );
+		testFactTableSaveAndLoad1( documentManager, 1 );
+		documentManager.close( );
+	}
+	
+	/**
+	 * Test the fact table saved in parallel is the same as the one saved in
+	 * one thread
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public void testParallelFactTableSaveAndLoad1( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		testFactTableSaveAndLoad1( documentManager, 4 );
 		documentManager.close( );
 	}
 	
 
-	private void testFactTableSaveAndLoad1( IDocumentManager documentManager ) throws IOException, BirtException
+	private void testFactTableSaveAndLoad1( IDocumentManager documentManager, int threadCount ) throws IOException, BirtException
 	{
 		Dimension[] dimensions = new Dimension[3];
 		
@@ -267,6 +281,7 @@ public class FactTableHelperTest extends TestCase
 		measureColumnName[0] = "measure1";
 		measureColumnName[1] = "measure2";
 		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
+		factTableConstructor.setThreadCount( threadCount );
 		FactTable factTable = factTableConstructor.saveFactTable( NamingUtil.getFactTableName( "threeDimensions" ),
 				CubeUtility.getKeyColNames(dimensions),
 				CubeUtility.getKeyColNames(dimensions),
@@ -571,6 +586,109 @@ public class FactTableHelperTest extends TestCase
 		System.out.println( "Finish iterator... time: "  + (System.currentTimeMillis( ) - startTime)/1000);
 	}
 	
+	/**
+	 * Test the rows selected by the dimension positions are the same whether
+	 * the fact table is saved with its bitmap index or not
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public void testFactTableRowIteratorWithoutBitmapIndex( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		Dimension[] dimensions = createBigDimensions( documentManager );
+		String factTableName = NamingUtil.getFactTableName( "bigThreeDimensions" );
+		String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( factTableName,
+				new int[]{0, 0, 0} );
+		
+		FactTable factTable = saveBigFactTable( documentManager, dimensions, true );
+		FactTableBitmapIndex index = FactTableBitmapIndex.load( documentManager,
+				FTSUDocName );
+		assertNotNull( index );
+		assertTrue( index.getSegmentLength( ) > 0 );
+		List indexedRows = readBigFactTableRows( factTable );
+		assertEquals( 2 * BigLevelsAndFactTableDataset.dimensionPositionLength[1] * 2,
+				indexedRows.size( ) );
+		
+		// the index saved with the former fact table is not used
+		factTable = saveBigFactTable( documentManager, dimensions, false );
+		index = FactTableBitmapIndex.load( documentManager, FTSUDocName );
+		assertNotNull( index );
+		assertEquals( -1, index.getSegmentLength( ) );
+		assertEquals( indexedRows, readBigFactTableRows( factTable ) );
+		documentManager.close( );
+		
+		documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		dimensions = createBigDimensions( documentManager );
+		factTable = saveBigFactTable( documentManager, dimensions, false );
+		assertNull( FactTableBitmapIndex.load( documentManager, FTSUDocName ) );
+		assertEquals( indexedRows, readBigFactTableRows( factTable ) );
+		documentManager.close( );
+	}
+	
+	private Dimension[] createBigDimensions( IDocumentManager documentManager ) throws IOException, BirtException
+	{
+		Dimension[] dimensions = new Dimension[3];
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			String[] levelNames = new String[]{"dimension" + ( i + 1 )};
+			DimensionForTest iterator = new DimensionForTest( levelNames );
+			int[] data = new int[BigLevelsAndFactTableDataset.dimensionPositionLength[i]];
+			for ( int j = 0; j < data.length; j++ )
+			{
+				data[j] = j;
+			}
+			iterator.setLevelMember( 0, data );
+			ILevelDefn[] levelDefs = new ILevelDefn[1];
+			levelDefs[0] = new LevelDefinition( levelNames[0], levelNames, null );
+			dimensions[i] = (Dimension) DimensionFactory.createDimension( levelNames[0], documentManager, iterator, levelDefs, false, new StopSign() );
+		}
+		return dimensions;
+	}
+	
+	private FactTable saveBigFactTable( IDocumentManager documentManager,
+			Dimension[] dimensions, boolean bitmapIndexEnabled ) throws IOException, BirtException
+	{
+		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
+		factTableConstructor.setBitmapIndexEnabled( bitmapIndexEnabled );
+		factTableConstructor.saveFactTable( NamingUtil.getFactTableName( "bigThreeDimensions" ),
+				CubeUtility.getKeyColNames(dimensions),
+				CubeUtility.getKeyColNames(dimensions),
+				new BigLevelsAndFactTableDataset( ),
+				dimensions,
+				new String[]{"measure1", "measure2"},
+				new StopSign( ) );
+		return factTableConstructor.load( NamingUtil.getFactTableName( "bigThreeDimensions" ),
+				new StopSign( ) );
+	}
+	
+	private List readBigFactTableRows( FactTable factTable ) throws IOException, BirtException
+	{
+		String[] dimensionNames = new String[]{"dimension1", "dimension3"};
+		IDiskArray[] dimensionPosition = new IDiskArray[2];
+		dimensionPosition[0] = new BufferedPrimitiveDiskArray( );
+		dimensionPosition[0].add( new Integer(10) );
+		dimensionPosition[0].add( new Integer(99) );
+		dimensionPosition[1] = new BufferedPrimitiveDiskArray( );
+		dimensionPosition[1].add( new Integer(1) );
+		dimensionPosition[1].add( new Integer(9) );
+		FactTableRowIterator facttableRowIterator = new FactTableRowIterator( factTable, dimensionNames, dimensionPosition, new StopSign() );
+		List rows = new ArrayList( );
+		while ( facttableRowIterator.next( ) )
+		{
+			int position0 = facttableRowIterator.getDimensionPosition( 0 );
+			int position1 = facttableRowIterator.getDimensionPosition( 1 );
+			int position2 = facttableRowIterator.getDimensionPosition( 2 );
+			assertTrue( position0 == 10 || position0 == 99 );
+			assertTrue( position2 == 1 || position2 == 9 );
+			assertEquals( new Integer( position0 * position1 * position2 ),
+					facttableRowIterator.getMeasure( 0 ) );
+			rows.add( position0 + "," + position1 + "," + position2 );
+		}
+		facttableRowIterator.close( );
+		return rows;
+	}
+	
 	private static String[] distinct( String[] sValues )
 	{
 		Arrays.sort( sValues );
@@ -17,6 +17,7 @@ import java.util.Date;
 import junit.framework.TestCase;
 
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.impl.StopSign;
 import org.eclipse.birt.data.engine.olap.data.api.*;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
 import org.eclipse.birt.data.engine.olap.data.impl.SelectionFactory;
@@ -771,4 +772,90 @@ public class DiskIndexTest extends TestCase
 		keyList.clear( );
 		keyList.close( );
 	}
+
+	/**
+	 * The key lists of the level indexes are sorted in parallel, the result
+	 * is the same as the one sorted in one thread.
+	 * 
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public void testSortKeysInParallel( ) throws IOException, DataException
+	{
+		int keyNumber = 10000;
+		IDiskArray[] keyLists = new IDiskArray[4];
+		for ( int i = 0; i < keyLists.length - 1; i++ )
+		{
+			keyLists[i] = createKeyList( keyNumber, i + 1 );
+		}
+		keyLists[keyLists.length - 1] = new BufferedStructureArray( IndexKey.getCreator( ),
+				1 );
+		IDiskArray[] sortedKeyLists = DiskIndex.sortKeys( keyLists,
+				1,
+				new StopSign( ) );
+		IDiskArray[] parallelKeyLists = DiskIndex.sortKeys( keyLists,
+				3,
+				new StopSign( ) );
+		assertEquals( 0, parallelKeyLists[keyLists.length - 1].size( ) );
+		for ( int i = 0; i < keyLists.length - 1; i++ )
+		{
+			assertEquals( keyNumber / ( i + 1 ), parallelKeyLists[i].size( ) );
+			assertEquals( sortedKeyLists[i].size( ), parallelKeyLists[i].size( ) );
+			for ( int j = 0; j < parallelKeyLists[i].size( ); j++ )
+			{
+				IndexKey key = (IndexKey) parallelKeyLists[i].get( j );
+				IndexKey sortedKey = (IndexKey) sortedKeyLists[i].get( j );
+				assertEquals( new Integer( j ), key.getKey( )[0] );
+				assertEquals( sortedKey.getKey( )[0], key.getKey( )[0] );
+				assertEquals( i + 1, key.getDimensionPos( ).length );
+				for ( int k = 0; k < key.getDimensionPos( ).length; k++ )
+				{
+					assertEquals( sortedKey.getDimensionPos( )[k],
+							key.getDimensionPos( )[k] );
+					assertEquals( sortedKey.getOffset( )[k], key.getOffset( )[k] );
+				}
+			}
+		}
+		DiskIndex indexTree = DiskIndex.createIndex( DocumentManagerFactory.createFileDocumentManager( ),
+				"parallel_index",
+				parallelKeyLists[1],
+				true );
+		IndexKey key = indexTree.findFirst( new Object[]{new Integer( 100 )} );
+		assertEquals( 2, key.getDimensionPos( ).length );
+		assertEquals( key.getOffset( )[0], key.getDimensionPos( )[0] * 4 );
+		assertNull( indexTree.findFirst( new Object[]{new Integer( keyNumber )} ) );
+		indexTree.close( );
+
+		StopSign stopSign = new StopSign( );
+		stopSign.stop( );
+		assertNull( DiskIndex.sortKeys( keyLists, 3, stopSign )[0] );
+		for ( int i = 0; i < keyLists.length; i++ )
+		{
+			keyLists[i].close( );
+		}
+	}
+
+	/**
+	 * 
+	 * @param keyNumber
+	 * @param repeat
+	 *            the count of the dimension positions having the same key
+	 * @return the keys in the descending order
+	 * @throws IOException
+	 */
+	private IDiskArray createKeyList( int keyNumber, int repeat )
+			throws IOException
+	{
+		BufferedStructureArray keyList = new BufferedStructureArray( IndexKey.getCreator( ),
+				1000 );
+		for ( int i = keyNumber - 1; i >= 0; i-- )
+		{
+			IndexKey key = new IndexKey( );
+			key.setKey( new Object[]{new Integer( i / repeat )} );
+			key.setDimensionPos( new int[]{i} );
+			key.setOffset( new int[]{i * 4} );
+			keyList.add( key );
+		}
+		return keyList;
+	}
 }
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.olap.data.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the compressed bitmap used by the fact table index
+ */
+public class RoaringBitmapTest extends TestCase
+{
+
+	/**
+	 * Test the sparse integers kept in the array containers
+	 */
+	public void testSparse( ) throws IOException
+	{
+		RoaringBitmap bitmap = new RoaringBitmap( );
+		bitmap.add( 70000 );
+		bitmap.add( 3 );
+		bitmap.add( 1 );
+		bitmap.add( 3 );
+		bitmap.add( 65535 );
+
+		assertEquals( 4, bitmap.getCardinality( ) );
+		assertTrue( bitmap.contains( 1 ) );
+		assertTrue( bitmap.contains( 70000 ) );
+		assertFalse( bitmap.contains( 2 ) );
+		assertFalse( bitmap.contains( 70001 ) );
+		assertTrue( Arrays.equals( new int[]{
+				1, 3, 65535, 70000
+		}, bitmap.toArray( ) ) );
+		assertTrue( Arrays.equals( bitmap.toArray( ),
+				RoaringBitmap.fromBytes( bitmap.toBytes( ) ).toArray( ) ) );
+	}
+
+	/**
+	 * Test the AND/OR of the sparse and the dense integers is the same as
+	 * BitSet
+	 */
+	public void testAndOr( ) throws IOException
+	{
+		Random random = new Random( 1 );
+		BitSet set1 = new BitSet( );
+		BitSet set2 = new BitSet( );
+		RoaringBitmap bitmap1 = new RoaringBitmap( );
+		RoaringBitmap bitmap2 = new RoaringBitmap( );
+		// dense in the first 65536 integers, sparse in the others
+		for ( int i = 0; i < 20000; i++ )
+		{
+			int value = random.nextInt( 65536 );
+			set1.set( value );
+			bitmap1.add( value );
+			value = random.nextInt( 65536 );
+			set2.set( value );
+			bitmap2.add( value );
+		}
+		for ( int i = 0; i < 2000; i++ )
+		{
+			int value = 65536 + random.nextInt( 300000 );
+			set1.set( value );
+			bitmap1.add( value );
+			value = 65536 + random.nextInt( 300000 );
+			set2.set( value );
+			bitmap2.add( value );
+		}
+		assertEquals( set1.cardinality( ), bitmap1.getCardinality( ) );
+		assertTrue( Arrays.equals( toArray( set1 ), bitmap1.toArray( ) ) );
+
+		BitSet and = (BitSet) set1.clone( );
+		and.and( set2 );
+		assertTrue( Arrays.equals( toArray( and ), RoaringBitmap.and( bitmap1,
+				bitmap2 ).toArray( ) ) );
+
+		BitSet or = (BitSet) set1.clone( );
+		or.or( set2 );
+		RoaringBitmap orBitmap = RoaringBitmap.or( bitmap1, bitmap2 );
+		assertTrue( Arrays.equals( toArray( or ), orBitmap.toArray( ) ) );
+		assertTrue( Arrays.equals( toArray( or ),
+				RoaringBitmap.fromBytes( orBitmap.toBytes( ) ).toArray( ) ) );
+
+		// the result does not share the containers of the operands
+		orBitmap.add( 400000 );
+		assertFalse( bitmap1.contains( 400000 ) );
+		assertFalse( bitmap2.contains( 400000 ) );
+	}
+
+	/**
+	 * Test the AND of two bitmaps without common integers
+	 */
+	public void testEmptyAnd( )
+	{
+		RoaringBitmap bitmap1 = new RoaringBitmap( );
+		RoaringBitmap bitmap2 = new RoaringBitmap( );
+		for ( int i = 0; i < 10000; i += 2 )
+		{
+			bitmap1.add( i );
+			bitmap2.add( i + 1 );
+		}
+		RoaringBitmap result = RoaringBitmap.and( bitmap1, bitmap2 );
+		assertTrue( result.isEmpty( ) );
+		assertEquals( 0, result.toArray( ).length );
+	}
+
+	private static int[] toArray( BitSet set )
+	{
+		int[] result = new int[set.cardinality( )];
+		int pos = 0;
+		for ( int i = set.nextSetBit( 0 ); i >= 0; i = set.nextSetBit( i + 1 ) )
+		{
+			result[pos++] = i;
+		}
+		return result;
+	}
+}
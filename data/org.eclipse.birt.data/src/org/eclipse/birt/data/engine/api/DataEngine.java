@@ -78,6 +78,68 @@ abstract public class DataEngine
 	 * a data object is allowed to access. Queries should be aborted with error if it exceeds this limit.
 	 */
 	public static String MAX_DATA_OBJECT_ROWS = "org.eclipse.birt.data.query.MaxDataObjectRows";
+
+	/**
+	 * Indicates whether the rows cached in memory during query processing are
+	 * stored column by column with primitive typed arrays. Accepts Boolean or
+	 * "true"/"false", default is false.
+	 */
+	public static String COLUMNAR_MEMORY_CACHE = "org.eclipse.birt.data.query.ColumnarCache";
+
+	/**
+	 * The count of the threads used to serialize, write and read ahead the
+	 * temporary files when the rows exceeding the memory buffer are sorted on
+	 * disk. Positive integer, default is 1 which means the sort is done in the
+	 * query thread.
+	 */
+	public static String DISK_SORT_THREAD_COUNT = "org.eclipse.birt.data.query.DiskSortThreadCount";
+
+	/**
+	 * The directories of the temporary files used to sort the rows on disk,
+	 * separated by the path separator of the platform. The temporary files are
+	 * spread over these directories, which can be on different disks. If it is
+	 * not set, the temporary directory of the data engine is used.
+	 */
+	public static String DISK_SORT_TEMP_DIRS = "org.eclipse.birt.data.query.DiskSortTempDirs";
+
+	/**
+	 * The count of the threads used to create a cube. Only two steps run in
+	 * parallel: the keys of the level indexes of each hierarchy are sorted,
+	 * one level per thread, and the positions of the fact table rows are
+	 * calculated. The level indexes are then written one by one, and the
+	 * dimension rows are read and sorted, the fact table rows sorted, and all
+	 * the other document objects written, by the thread creating the cube, as
+	 * the document manager is not thread safe. Positive integer, default is 1
+	 * which means the cube is created in one thread.
+	 */
+	public static String CUBE_BUILD_THREAD_COUNT = "org.eclipse.birt.data.cube.BuildThreadCount";
+
+	/**
+	 * The count of the threads used to calculate the aggregations of a cube
+	 * query. The aggregations sharing the same sorted fact rows are calculated
+	 * by the same thread, so the results are the same as the ones calculated
+	 * in one thread. Positive integer, default is 1 which means the
+	 * aggregations are calculated in the query thread.
+	 */
+	public static String CUBE_AGGREGATION_THREAD_COUNT = "org.eclipse.birt.data.cube.AggregationThreadCount";
+
+	/**
+	 * The level combinations whose aggregations are pre-calculated and saved
+	 * together with a cube when it is created. The aggregations of the
+	 * queries on these levels or on a subset of them are calculated from the
+	 * saved rollups instead of the fact table. The combinations are separated
+	 * by ';', the levels of a combination by ',', and each level is written as
+	 * "dimension/level", such as "Time/Year,Region/Country;Product/Line".
+	 */
+	public static String CUBE_AGGREGATE_LEVELS = "org.eclipse.birt.data.cube.AggregateLevels";
+
+	/**
+	 * Whether the bitmap index of the fact table is saved together with a
+	 * cube. Building the index reads the saved fact table once more, without
+	 * it the queries filtering on the dimension members scan the whole fact
+	 * table. "true" or "false", default is true.
+	 */
+	public static String CUBE_BITMAP_INDEX = "org.eclipse.birt.data.cube.BitmapIndex";
 	
 	
 	public static String DATA_SET_CACHE_DELTA_FILE = "org.eclipse.birt.data.cache.DeltaFile";
@@ -92,6 +154,20 @@ abstract public class DataEngine
 	 * DataEngineContext settings. 
 	 */
 	public static String MEMORY_DATA_SET_CACHE = "org.eclipse.birt.data.cache.memory";
+
+	/**
+	 * The max count of the data sets in the JVM level data set cache. When
+	 * the count is exceeded, the least recently used data sets which are not
+	 * being read are removed. Positive integer, no limit if it is not set.
+	 */
+	public static String DATA_SET_CACHE_MAX_ENTRIES = "org.eclipse.birt.data.cache.MaxEntries";
+
+	/**
+	 * The time in milliseconds a data set in the JVM level data set cache can
+	 * be reused after it is cached. The expired data set is retrieved again.
+	 * Positive integer, no limit if it is not set.
+	 */
+	public static String DATA_SET_CACHE_TIME_TO_LIVE = "org.eclipse.birt.data.cache.TimeToLive";
 	
 	/**
 	 * Indicates the session id of which a set of queries will be executed. 
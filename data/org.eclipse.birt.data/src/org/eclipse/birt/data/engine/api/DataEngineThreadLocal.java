@@ -39,6 +39,28 @@ public class DataEngineThreadLocal
 		return  closeHolder.get( );
 	}
 	
+	/**
+	 * Shares the close listeners of another thread, such as the thread of the
+	 * data engine, with the current worker thread.
+	 * 
+	 * @param closeListener
+	 */
+	public void setCloseListener( CloseListenerManager closeListener )
+	{
+		closeHolder.set( closeListener );
+	}
+	
+	/**
+	 * Shares the temp path of another thread, such as the thread of the data
+	 * engine, with the current worker thread.
+	 * 
+	 * @param tempPathManager
+	 */
+	public void setPathManager( TempPathManager tempPathManager )
+	{
+		pathManager.set( tempPathManager );
+	}
+	
 	public void removeCloseListener( )
 	{
 		closeHolder.remove( );
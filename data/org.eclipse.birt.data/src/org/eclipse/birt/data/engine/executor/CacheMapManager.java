@@ -12,41 +12,66 @@ package org.eclipse.birt.data.engine.executor;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.odi.IResultClass;
 
 /**
- * Manage the cache map
+ * Manage the cache map. The cache map is a concurrent map split into several
+ * segments, so the threads using different data sets do not block each other.
+ * Only one thread retrieves a data set which is not in the cache, the other
+ * threads requiring the same data set wait until it is saved into the cache.
  */
 public class CacheMapManager
 {
+	/**
+	 * the time in milliseconds to wait for the readers of a cached data set to
+	 * finish, or for the thread retrieving a data set to save it.
+	 */
+	private static final long WAIT_TIMEOUT = 60000;
+
+	// the count of the segments of the cache maps
+	private static final int CONCURRENCY_LEVEL = 64;
+
 	/**
 	 * Please notice that we must use static variable here for the sharing of
 	 * cached data set would be cross data set session.
 	 */
-	private static Map JVMLevelCacheMap = Collections.synchronizedMap( new HashMap( ) );
-	private static Map<DataSourceAndDataSet, Integer> lockedDataSetCacheMap = Collections.synchronizedMap( new HashMap( ) );	
-	
-	private Map<DataSourceAndDataSet, IDataSetCacheObject> cacheMap;
+	private static ConcurrentMap<DataSourceAndDataSet, CacheEntry> JVMLevelCacheMap = newConcurrentMap( );
+	private static ConcurrentMap<DataSourceAndDataSet, LoadingEntry> JVMLevelLoadingMap = newConcurrentMap( );
+	private static DataSetCacheStatistics JVMLevelStatistics = new DataSetCacheStatistics( );
+
+	private ConcurrentMap<DataSourceAndDataSet, CacheEntry> cacheMap;
+	// the data sets being retrieved, the threads requiring a same data set wait
+	// for the entry
+	private ConcurrentMap<DataSourceAndDataSet, LoadingEntry> loadingMap;
 	// use this field temporarily keep the data set object need to be saved in
 	// cache. After the data set result has been cached, saved data set object
 	// into cachedMap
 	private Map<DataSourceAndDataSet, IDataSetCacheObject> tempDataSetCacheMap;
-	
+	// the entries locked by this manager, guarded by this
+	private Map<DataSourceAndDataSet, ReadLock> readLocks = new HashMap<DataSourceAndDataSet, ReadLock>( );
+
+	private DataSetCacheStatistics statistics;
+
 	private boolean useJVMLevelCache;
-	
+
 	//ensure that JVMLevelCache will be clear when JVM shutdown
 	static
 	{
 		new ShutdownHook( JVMLevelCacheMap );
 	}
-	
+
 	/**
 	 * construction
 	 */
@@ -56,193 +81,425 @@ public class CacheMapManager
 		if( useJVMLevelCache )
 		{
 			cacheMap = JVMLevelCacheMap;
+			loadingMap = JVMLevelLoadingMap;
+			statistics = JVMLevelStatistics;
 		}
 		else
 		{
-			cacheMap = new HashMap( );
+			cacheMap = newConcurrentMap( );
+			loadingMap = newConcurrentMap( );
+			statistics = new DataSetCacheStatistics( );
 		}
-		tempDataSetCacheMap = new HashMap<DataSourceAndDataSet, IDataSetCacheObject>( );
+		tempDataSetCacheMap = new ConcurrentHashMap<DataSourceAndDataSet, IDataSetCacheObject>( );
+	}
+
+	private static <V> ConcurrentMap<DataSourceAndDataSet, V> newConcurrentMap( )
+	{
+		return new ConcurrentHashMap<DataSourceAndDataSet, V>( 16,
+				0.75f,
+				CONCURRENCY_LEVEL );
 	}
-	
+
 	/**
-	 * @param appContext 
-	 * @param collection 
-	 * @param baseDataSetDesign 
-	 * @param baseDataSourceDesign 
+	 * @param appContext
+	 * @param collection
+	 * @param baseDataSetDesign
+	 * @param baseDataSourceDesign
 	 * @return
-	 * @throws DataException 
+	 * @throws DataException
 	 */
 	boolean doesSaveToCache( DataSourceAndDataSet dsAndDs,
 			DataSetCacheConfig dscc) throws DataException
-	{		
-		synchronized ( cacheMap )
+	{
+		CacheEntry entry = cacheMap.get( dsAndDs );
+		if ( entry != null )
 		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheMap.get( dsAndDs );
-			if (cacheObject != null)
+			boolean needUpdate = entry.cacheObject.needUpdateCache( dscc.getCacheCapability( ) );
+			if ( !needUpdate )
 			{
-				return cacheObject.needUpdateCache( dscc.getCacheCapability( ) );
+				// the data set has been saved by another thread
+				finishLoading( dsAndDs );
 			}
-			else
+			return needUpdate;
+		}
+		else
+		{
+			if( !tempDataSetCacheMap.containsKey( dsAndDs ) )
 			{
-				if( !tempDataSetCacheMap.containsKey( dsAndDs ) )
-				{
-					IDataSetCacheObject dsco = dscc.createDataSetCacheObject( );
-					tempDataSetCacheMap.put( dsAndDs, dsco );					
-				}
-				return true;
+				IDataSetCacheObject dsco = dscc.createDataSetCacheObject( );
+				tempDataSetCacheMap.put( dsAndDs, dsco );
 			}
+			return true;
 		}
 	}
-	
+
 	/**
+	 * If the data set is not in the cache and another thread is retrieving it,
+	 * waits until the data set is saved into the cache.
+	 *
 	 * @param dsAndDs
+	 * @param requiredCapability
+	 * @param timeToLive
+	 *            the time in milliseconds a data set can be loaded after it is
+	 *            saved into the JVM level cache, no limit if it is not positive
 	 * @return
 	 */
-	boolean doesLoadFromCache( DataSourceAndDataSet dsAndDs, int requiredCapability )
+	boolean doesLoadFromCache( DataSourceAndDataSet dsAndDs,
+			int requiredCapability, long timeToLive )
 	{
-		synchronized ( cacheMap )
+		while ( true )
 		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheMap.get( dsAndDs );
-			if (cacheObject != null)
+			CacheEntry entry = cacheMap.get( dsAndDs );
+			if ( entry != null )
 			{
-				boolean reusable = cacheObject.isCachedDataReusable( requiredCapability );
-				if ( !reusable )
+				boolean expired = useJVMLevelCache
+						&& entry.isExpired( timeToLive );
+				if ( !expired
+						&& entry.cacheObject.isCachedDataReusable( requiredCapability ) )
 				{
-					if ( useJVMLevelCache )
+					if ( useJVMLevelCache && !lock( dsAndDs, entry ) )
 					{
-						synchronized ( lockedDataSetCacheMap )
-						{
-							if ( lockedDataSetCacheMap.containsKey( dsAndDs ) )
-							{
-								try
-								{
-									// waiting for 60s
-									lockedDataSetCacheMap.wait( 60000 );
-								}
-								catch ( InterruptedException e )
-								{
-								}
-								lockedDataSetCacheMap.remove( dsAndDs );
-							}
-						}
+						// the entry is being removed, check it again
+						continue;
 					}
-					cacheObject.release( );
-					tempDataSetCacheMap.remove( dsAndDs );
-					cacheMap.remove( dsAndDs );
+					entry.touch( );
+					statistics.recordHit( );
+					return true;
 				}
-				else
-				if ( this.useJVMLevelCache )
+				unlockIdle( dsAndDs, entry );
+				if ( removeEntry( dsAndDs, entry ) && expired )
 				{
-					if ( !lockedDataSetCacheMap.containsKey( dsAndDs ) )
-					{
-						lockedDataSetCacheMap.put( dsAndDs, 0 );
-					}
+					statistics.recordEviction( );
 				}
-				return reusable;
 			}
-			else
+
+			LoadingEntry loading = new LoadingEntry( this );
+			LoadingEntry running = loadingMap.putIfAbsent( dsAndDs, loading );
+			if ( running == null || running.isLoadedInCurrentThread( ) )
 			{
+				// the data set may be checked again by the manager loading it
+				if ( running == null || running.owner != this )
+				{
+					statistics.recordMiss( );
+				}
 				return false;
 			}
+			if ( !running.await( WAIT_TIMEOUT ) )
+			{
+				// the data set is not saved in time, retrieve it again
+				finishLoading( dsAndDs, running );
+			}
+		}
+	}
+
+	/**
+	 * Locks the entry for the readers of this manager, the entry is locked
+	 * once however many times the data set is checked.
+	 *
+	 * @param dsAndDs
+	 * @param entry
+	 * @return false if the entry is being released
+	 */
+	private synchronized boolean lock( DataSourceAndDataSet dsAndDs,
+			CacheEntry entry )
+	{
+		ReadLock readLock = readLocks.get( dsAndDs );
+		if ( readLock != null && readLock.entry == entry )
+		{
+			return true;
+		}
+		if ( !entry.lock( ) )
+		{
+			return false;
+		}
+		if ( readLock != null )
+		{
+			// the locked entry has been replaced in the cache map, the
+			// readers of the old entry are counted with the new one
+			readLock.entry.unlock( );
+			readLock.entry = entry;
+		}
+		else
+		{
+			readLocks.put( dsAndDs, new ReadLock( entry ) );
 		}
+		return true;
 	}
-	
+
+	/**
+	 * Unlocks the entry if it is locked by this manager without readers, so
+	 * that it can be removed without waiting for this manager.
+	 */
+	private synchronized void unlockIdle( DataSourceAndDataSet dsAndDs,
+			CacheEntry entry )
+	{
+		ReadLock readLock = readLocks.get( dsAndDs );
+		if ( readLock != null && readLock.entry == entry
+				&& readLock.readerCount == 0 )
+		{
+			readLocks.remove( dsAndDs );
+			entry.unlock( );
+		}
+	}
+
+	/**
+	 * Removes the cache entry and releases its cache object after the readers
+	 * have finished.
+	 *
+	 * @param dsAndDs
+	 * @param entry
+	 * @return false if the entry has been removed by another thread
+	 */
+	private boolean removeEntry( DataSourceAndDataSet dsAndDs, CacheEntry entry )
+	{
+		if ( !cacheMap.remove( dsAndDs, entry ) )
+		{
+			return false;
+		}
+		if ( useJVMLevelCache )
+		{
+			entry.waitForReaders( WAIT_TIMEOUT );
+		}
+		tempDataSetCacheMap.remove( dsAndDs );
+		entry.cacheObject.release( );
+		return true;
+	}
+
 	/**
 	 * @return
 	 */
 	IDataSetCacheObject getSavedCacheObject( DataSourceAndDataSet dsAndDs )
-	{	
-		synchronized ( cacheMap )
+	{
+		return tempDataSetCacheMap.get( dsAndDs );
+	}
+
+	/**
+	 * @param dsAndDs
+	 * @param dsco
+	 * @param maxEntries
+	 *            the max count of the data sets in the JVM level cache, no
+	 *            limit if it is not positive
+	 */
+	void saveFinishOnCache( DataSourceAndDataSet dsAndDs,
+			IDataSetCacheObject dsco, int maxEntries )
+	{
+		cacheMap.put( dsAndDs, new CacheEntry( dsco ) );
+
+		LoadingEntry loading = finishLoading( dsAndDs );
+		if ( loading != null )
 		{
-			return tempDataSetCacheMap.get( dsAndDs );
+			statistics.recordLoad( System.currentTimeMillis( )
+					- loading.startTime );
+		}
+
+		if ( useJVMLevelCache && maxEntries > 0 )
+		{
+			evict( dsAndDs, maxEntries );
 		}
 	}
-	
-	void saveFinishOnCache( DataSourceAndDataSet dsAndDs,
-			IDataSetCacheObject dsco )
+
+	/**
+	 * Removes the least recently used entries which are not being read, until
+	 * the count of the entries is not more than maxEntries.
+	 *
+	 * @param savedKey
+	 *            the key of the data set just saved, which is not removed
+	 * @param maxEntries
+	 */
+	private void evict( DataSourceAndDataSet savedKey, int maxEntries )
 	{
-		synchronized ( cacheMap )
+		if ( cacheMap.size( ) <= maxEntries )
 		{
-			cacheMap.put( dsAndDs, dsco );
+			return;
+		}
+		List<Map.Entry<DataSourceAndDataSet, CacheEntry>> entries = new ArrayList<Map.Entry<DataSourceAndDataSet, CacheEntry>>( cacheMap.entrySet( ) );
+		Collections.sort( entries,
+				new Comparator<Map.Entry<DataSourceAndDataSet, CacheEntry>>( ) {
+
+					public int compare(
+							Map.Entry<DataSourceAndDataSet, CacheEntry> o1,
+							Map.Entry<DataSourceAndDataSet, CacheEntry> o2 )
+					{
+						long time1 = o1.getValue( ).lastAccessTime;
+						long time2 = o2.getValue( ).lastAccessTime;
+						return time1 < time2 ? -1 : ( time1 == time2 ? 0 : 1 );
+					}
+				} );
+		for ( int i = 0; i < entries.size( )
+				&& cacheMap.size( ) > maxEntries; i++ )
+		{
+			DataSourceAndDataSet key = entries.get( i ).getKey( );
+			CacheEntry entry = entries.get( i ).getValue( );
+			if ( key.equals( savedKey ) || !entry.tryRelease( ) )
+			{
+				continue;
+			}
+			if ( cacheMap.remove( key, entry ) )
+			{
+				tempDataSetCacheMap.remove( key );
+				entry.cacheObject.release( );
+				statistics.recordEviction( );
+			}
 		}
 	}
-	
+
 	/**
+	 * Wakes up the threads waiting for the data set retrieved by this manager.
+	 *
+	 * @param dsAndDs
+	 * @return the removed loading entry, null if the data set is not retrieved
+	 *         by this manager
 	 */
-	void loadStart( DataSourceAndDataSet dsAndDs ) throws DataException
+	private LoadingEntry finishLoading( DataSourceAndDataSet dsAndDs )
+	{
+		LoadingEntry loading = loadingMap.get( dsAndDs );
+		if ( loading != null && loading.owner == this
+				&& finishLoading( dsAndDs, loading ) )
+		{
+			return loading;
+		}
+		return null;
+	}
+
+	private boolean finishLoading( DataSourceAndDataSet dsAndDs,
+			LoadingEntry loading )
+	{
+		boolean removed = loadingMap.remove( dsAndDs, loading );
+		loading.finish( );
+		return removed;
+	}
+
+	/**
+	 * Wakes up the threads waiting for the data sets retrieved by this manager,
+	 * it is called when the data sets will not be saved.
+	 */
+	void finishLoading( )
+	{
+		for ( Iterator<Map.Entry<DataSourceAndDataSet, LoadingEntry>> it = loadingMap.entrySet( )
+				.iterator( ); it.hasNext( ); )
+		{
+			Map.Entry<DataSourceAndDataSet, LoadingEntry> loading = it.next( );
+			if ( loading.getValue( ).owner == this )
+			{
+				finishLoading( loading.getKey( ), loading.getValue( ) );
+			}
+		}
+	}
+
+	/**
+	 * Wakes up the threads waiting for the data sets retrieved by this manager
+	 * in current thread, it is called when the retrieving fails. One of the
+	 * waiting threads retrieves the data set again.
+	 */
+	void loadingFailed( )
+	{
+		for ( Iterator<Map.Entry<DataSourceAndDataSet, LoadingEntry>> it = loadingMap.entrySet( )
+				.iterator( ); it.hasNext( ); )
+		{
+			Map.Entry<DataSourceAndDataSet, LoadingEntry> loading = it.next( );
+			if ( loading.getValue( ).owner == this
+					&& loading.getValue( ).isLoadedInCurrentThread( ) )
+			{
+				finishLoading( loading.getKey( ), loading.getValue( ) );
+			}
+		}
+	}
+
+	/**
+	 */
+	synchronized void loadStart( DataSourceAndDataSet dsAndDs )
+			throws DataException
 	{
 		if ( this.useJVMLevelCache )
 		{
-			synchronized ( lockedDataSetCacheMap )
+			ReadLock readLock = readLocks.get( dsAndDs );
+			if ( readLock != null )
 			{
-				if ( lockedDataSetCacheMap.containsKey( dsAndDs ) )
-				{
-					Integer count = lockedDataSetCacheMap.get( dsAndDs );
-					lockedDataSetCacheMap.put( dsAndDs, count + 1 );
-				}
+				readLock.readerCount++;
 			}
 		}
 	}
 
 	/**
 	 */
-	void loadFinishOnCache( DataSourceAndDataSet dsAndDs ) throws DataException
+	synchronized void loadFinishOnCache( DataSourceAndDataSet dsAndDs )
+			throws DataException
 	{
 		if( this.useJVMLevelCache )
 		{
-			synchronized ( lockedDataSetCacheMap )
+			// the readers of this manager have finished, unlock the entry
+			ReadLock readLock = readLocks.get( dsAndDs );
+			if ( readLock != null && --readLock.readerCount <= 0 )
 			{
-				if( lockedDataSetCacheMap.containsKey( dsAndDs ) )
-				{
-					Integer count = lockedDataSetCacheMap.get( dsAndDs );
-					if( count<=1 )
-					{
-						lockedDataSetCacheMap.remove( dsAndDs );
-						lockedDataSetCacheMap.notifyAll( );
-					}
-					else
-					{
-						lockedDataSetCacheMap.put( dsAndDs, count-1 );
-					}
-				}
+				readLocks.remove( dsAndDs );
+				readLock.entry.unlock( );
 			}
 		}
 	}
-	
-	
+
+
 	/**
 	 * @return
 	 */
 	IDataSetCacheObject getloadedCacheObject( DataSourceAndDataSet dsAndDs )
-	{	
-		return (IDataSetCacheObject) cacheMap.get( dsAndDs );
+	{
+		CacheEntry entry = getLockedEntry( dsAndDs );
+		if ( entry == null )
+		{
+			entry = cacheMap.get( dsAndDs );
+		}
+		if ( entry == null )
+		{
+			return null;
+		}
+		entry.touch( );
+		return entry.cacheObject;
 	}
-	
+
+	/**
+	 * @return the entry locked by this manager, which may have been removed
+	 *         from the cache map
+	 */
+	private synchronized CacheEntry getLockedEntry( DataSourceAndDataSet dsAndDs )
+	{
+		ReadLock readLock = readLocks.get( dsAndDs );
+		return readLock == null ? null : readLock.entry;
+	}
+
 	/**
 	 * @param dataSourceDesign2
 	 * @param dataSetDesign2
 	 */
 	void clearCache( DataSourceAndDataSet dsAndDs )
 	{
-		List cacheObjects = new ArrayList( );
-		synchronized ( cacheMap )
+		List<IDataSetCacheObject> cacheObjects = new ArrayList<IDataSetCacheObject>( );
+		Object key = getKey( dsAndDs );
+		while ( key != null )
 		{
-			Object key = getKey(dsAndDs);
-			while ( key != null )
+			CacheEntry entry = cacheMap.remove( key );
+			if ( entry != null )
 			{
-				cacheObjects.add( cacheMap.remove( key ) );
-				tempDataSetCacheMap.remove( key );
-				key = getKey(dsAndDs);
+				cacheObjects.add( entry.cacheObject );
+			}
+			tempDataSetCacheMap.remove( key );
+			key = getKey( dsAndDs );
+		}
+		for ( Iterator<DataSourceAndDataSet> it = loadingMap.keySet( )
+				.iterator( ); it.hasNext( ); )
+		{
+			DataSourceAndDataSet loadingKey = it.next( );
+			if ( loadingKey.isDataSourceDataSetEqual( dsAndDs, false ) )
+			{
+				finishLoading( loadingKey );
 			}
 		}
 		for ( int i = 0; i < cacheObjects.size( ); i++ )
 		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheObjects.get( i );
-			cacheObject.release( );
+			cacheObjects.get( i ).release( );
 		}
 
 	}
-	
+
 	/**
 	 * Reset for test case
 	 */
@@ -250,16 +507,30 @@ public class CacheMapManager
 	{
 		synchronized ( this )
 		{
-			cacheMap.clear( );
-			tempDataSetCacheMap.clear( );
+			for ( ReadLock readLock : readLocks.values( ) )
+			{
+				readLock.entry.unlock( );
+			}
+			readLocks.clear( );
 		}
+		cacheMap.clear( );
+		tempDataSetCacheMap.clear( );
+		finishLoading( );
+	}
+
+	/**
+	 * @return the statistics of the cache map
+	 */
+	DataSetCacheStatistics getStatistics( )
+	{
+		return statistics;
 	}
-	
+
 	/**
 	 * Return the cached result metadata featured by the given
 	 * DataSourceAndDataSet. Please note that the paramter would have no impact
 	 * to DataSourceAndDataSet so that will be omited.
-	 * 
+	 *
 	 * @param dsAndDs
 	 * @return
 	 * @throws DataException
@@ -267,111 +538,258 @@ public class CacheMapManager
 	IResultClass getCachedResultClass( DataSourceAndDataSet dsAndDs )
 			throws DataException
 	{
-		IDataSetCacheObject cacheObject = null;
+		CacheEntry entry = null;
 		Object key = getKey( dsAndDs );
 		if ( key != null )
 		{
-			cacheObject = (IDataSetCacheObject)cacheMap.get( key );
+			entry = cacheMap.get( key );
 		}
-		if (cacheObject != null)
+		if ( entry != null )
 		{
-			return cacheObject.getResultClass( );
+			return entry.cacheObject.getResultClass( );
 		}
 		else
 		{
 			return null;
 		}
 	}
-	
+
 	/**
-	 * 
+	 *
 	 * @param dsAndDs
 	 * @return
 	 */
 	private Object getKey ( DataSourceAndDataSet dsAndDs )
 	{
-		synchronized ( cacheMap )
+		for ( Iterator<DataSourceAndDataSet> it = cacheMap.keySet( )
+				.iterator( ); it.hasNext( ); )
 		{
-			for ( Iterator it = cacheMap.keySet( ).iterator( ); it.hasNext( ); )
+			DataSourceAndDataSet temp = it.next( );
+			if ( temp.isDataSourceDataSetEqual( dsAndDs, false ) )
 			{
-				DataSourceAndDataSet temp = (DataSourceAndDataSet) it.next( );
-				if ( temp.isDataSourceDataSetEqual( dsAndDs, false ) )
-				{
-					return temp;
-				}
+				return temp;
 			}
-			return null;
 		}
+		return null;
 	}
-	
-	public static void clearCache( Set<String> cacheIDs ) 
+
+	public static void clearCache( Set<String> cacheIDs )
 	{
 		List<IDataSetCacheObject> removed = new ArrayList<IDataSetCacheObject>( );
-		
-		Object[] keyArray = JVMLevelCacheMap.keySet( ).toArray( new DataSourceAndDataSet[]{} );
-		for( Object dsAndDs : keyArray )
+
+		for ( Iterator<DataSourceAndDataSet> it = JVMLevelCacheMap.keySet( )
+				.iterator( ); it.hasNext( ); )
 		{
-			if( cacheIDs.contains( ((DataSourceAndDataSet)dsAndDs).getCacheScopeID( ) ))
+			DataSourceAndDataSet dsAndDs = it.next( );
+			if( cacheIDs.contains( dsAndDs.getCacheScopeID( ) ))
 			{
-				// here we do not use while clause to avoid thread suspending if
-				// cached is not properly closed.
-				synchronized ( lockedDataSetCacheMap ) 
+				CacheEntry entry = JVMLevelCacheMap.remove( dsAndDs );
+				if ( entry != null )
 				{
-		          if ( lockedDataSetCacheMap.containsKey( dsAndDs ) )
-		          {
-		             try
-					 {
-		            	 //waiting for 60s
-		              	lockedDataSetCacheMap.wait( 60000 );
-					 }
-					 catch ( InterruptedException e )
-					 {
-					 }
-		             lockedDataSetCacheMap.remove( dsAndDs );
-			      }
+					// here we wait with time out to avoid thread suspending
+					// if cached is not properly closed.
+					entry.waitForReaders( WAIT_TIMEOUT );
+					removed.add( entry.cacheObject );
 				}
-				IDataSetCacheObject cacheObj = (IDataSetCacheObject) JVMLevelCacheMap.remove( dsAndDs );
-				if( cacheObj != null )
-					removed.add( cacheObj );
-				
 			}
 		}
-		
+
 		for( IDataSetCacheObject dataSetCacheObject : removed )
 		{
 			dataSetCacheObject.release( );
 		}
 	}
-	
+
 	void clearCache( )
 	{
-		List cacheObjects = new ArrayList( );
-		synchronized ( cacheMap )
+		List<IDataSetCacheObject> cacheObjects = new ArrayList<IDataSetCacheObject>( );
+		for ( DataSourceAndDataSet dataSetAndSource : cacheMap.keySet( ).toArray( new DataSourceAndDataSet[0] ) )
 		{
-			for ( DataSourceAndDataSet dataSetAndSource : cacheMap.keySet( ).toArray( new DataSourceAndDataSet[0] ) )
- 			{
-				cacheObjects.add( cacheMap.remove( dataSetAndSource ) );
-				tempDataSetCacheMap.remove( dataSetAndSource );
- 			}
+			CacheEntry entry = cacheMap.remove( dataSetAndSource );
+			if ( entry != null )
+			{
+				cacheObjects.add( entry.cacheObject );
+			}
+			tempDataSetCacheMap.remove( dataSetAndSource );
 		}
+		finishLoading( );
 		for ( int i = 0; i < cacheObjects.size( ); i++ )
 		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheObjects.get( i );
-			cacheObject.release( );
+			cacheObjects.get( i ).release( );
+		}
+	}
+
+	/**
+	 * The cached data set and the managers reading it. A data set in the JVM
+	 * level cache is locked by a manager when it is found reusable, and
+	 * unlocked when all the readers of the manager have finished. It can only
+	 * be released when no manager locks it, the lock count and the release
+	 * are decided under the lock of the entry.
+	 */
+	static class CacheEntry
+	{
+		final IDataSetCacheObject cacheObject;
+		final long createTime;
+		volatile long lastAccessTime;
+
+		// guarded by this
+		private int lockCount;
+		private boolean released;
+
+		CacheEntry( IDataSetCacheObject cacheObject )
+		{
+			this.cacheObject = cacheObject;
+			this.createTime = System.currentTimeMillis( );
+			this.lastAccessTime = createTime;
+		}
+
+		void touch( )
+		{
+			lastAccessTime = System.currentTimeMillis( );
+		}
+
+		boolean isExpired( long timeToLive )
+		{
+			return timeToLive > 0
+					&& System.currentTimeMillis( ) - createTime > timeToLive;
+		}
+
+		/**
+		 * @return false if the entry is being released
+		 */
+		synchronized boolean lock( )
+		{
+			if ( released )
+			{
+				return false;
+			}
+			lockCount++;
+			return true;
+		}
+
+		synchronized void unlock( )
+		{
+			if ( lockCount > 0 && --lockCount == 0 )
+			{
+				notifyAll( );
+			}
+		}
+
+		/**
+		 * @return false if the entry is locked
+		 */
+		synchronized boolean tryRelease( )
+		{
+			if ( lockCount > 0 )
+			{
+				return false;
+			}
+			released = true;
+			return true;
+		}
+
+		/**
+		 * Prevents the entry from being locked again and waits until it is
+		 * unlocked or the time out.
+		 *
+		 * @param timeout
+		 */
+		synchronized void waitForReaders( long timeout )
+		{
+			released = true;
+			long deadline = System.currentTimeMillis( ) + timeout;
+			while ( lockCount > 0 )
+			{
+				long rest = deadline - System.currentTimeMillis( );
+				if ( rest <= 0 )
+				{
+					break;
+				}
+				try
+				{
+					wait( rest );
+				}
+				catch ( InterruptedException e )
+				{
+					Thread.currentThread( ).interrupt( );
+					break;
+				}
+			}
+			lockCount = 0;
+		}
+	}
+
+	/**
+	 * The entry locked by this manager and the count of its readers.
+	 */
+	private static class ReadLock
+	{
+		private CacheEntry entry;
+		private int readerCount;
+
+		ReadLock( CacheEntry entry )
+		{
+			this.entry = entry;
+		}
+	}
+
+	/**
+	 * A data set being retrieved by a thread, which will be saved into the
+	 * cache map by the owner manager.
+	 */
+	private static class LoadingEntry
+	{
+		private final CacheMapManager owner;
+		private final Thread thread;
+		private final long startTime;
+		private final CountDownLatch latch = new CountDownLatch( 1 );
+
+		LoadingEntry( CacheMapManager owner )
+		{
+			this.owner = owner;
+			this.thread = Thread.currentThread( );
+			this.startTime = System.currentTimeMillis( );
+		}
+
+		boolean isLoadedInCurrentThread( )
+		{
+			return thread == Thread.currentThread( );
+		}
+
+		void finish( )
+		{
+			latch.countDown( );
+		}
+
+		/**
+		 * @param timeout
+		 * @return false if the data set is not saved in time
+		 */
+		boolean await( long timeout )
+		{
+			try
+			{
+				return latch.await( timeout, TimeUnit.MILLISECONDS );
+			}
+			catch ( InterruptedException e )
+			{
+				Thread.currentThread( ).interrupt( );
+				return false;
+			}
 		}
 	}
 }
 /**
  * Register shutdown hook on JVM exit to ensure that JVM cache will be cleared correctly.
- * 
+ *
  *
  */
 class ShutdownHook implements Runnable
 {
-	private Map<DataSourceAndDataSet, IDataSetCacheObject> cacheMap;
+	private Map<DataSourceAndDataSet, CacheMapManager.CacheEntry> cacheMap;
 
 	ShutdownHook(
-			Map<DataSourceAndDataSet, IDataSetCacheObject> jvmLevelCacheMap )
+			Map<DataSourceAndDataSet, CacheMapManager.CacheEntry> jvmLevelCacheMap )
 	{
 		cacheMap = jvmLevelCacheMap;
 		Runtime.getRuntime( ).addShutdownHook( new Thread( this ) );
@@ -383,7 +801,11 @@ class ShutdownHook implements Runnable
 		for ( DataSourceAndDataSet dataSetAndSource : cacheMap.keySet( )
 				.toArray( new DataSourceAndDataSet[0] ) )
 		{
-			cacheObjects.add( cacheMap.remove( dataSetAndSource ) );
+			CacheMapManager.CacheEntry entry = cacheMap.remove( dataSetAndSource );
+			if ( entry != null )
+			{
+				cacheObjects.add( entry.cacheObject );
+			}
 		}
 		for ( int i = 0; i < cacheObjects.size( ); i++ )
 		{
@@ -89,6 +89,7 @@ public class DataSetCacheManager
 				try
 				{
 					dteLevelCacheMapManager.clearCache( );
+					jvmLevelCacheMapManager.finishLoading( );
 				}
 				catch ( Exception e )
 				{
@@ -208,7 +209,8 @@ public class DataSetCacheManager
 		return cacheMapManager.doesLoadFromCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				dataSetDesign,
 				parameterHints, this.cacheID ),
-				dscc.getCacheCapability( ));
+				dscc.getCacheCapability( ),
+				DataSetCacheUtil.getJVMCacheTimeToLive( appContext ) );
 	}
 
 	/**
@@ -327,9 +329,20 @@ public class DataSetCacheManager
 		
 		cacheMapManager.saveFinishOnCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
-				this.parameterHints, this.cacheID ), dsco );
+				this.parameterHints, this.cacheID ), dsco,
+				DataSetCacheUtil.getJVMCacheMaxEntries( appContext ) );
 	}
 	
+	/**
+	 * Wakes up the threads waiting for the data sets retrieved in current
+	 * thread, it is called when the data set fails to be retrieved.
+	 */
+	public void loadingFailed( )
+	{
+		jvmLevelCacheMapManager.loadingFailed( );
+		dteLevelCacheMapManager.loadingFailed( );
+	}
+
 	/**
 	 * 
 	 * @param dsco
@@ -392,7 +405,8 @@ public class DataSetCacheManager
 		return cacheMapManager.doesLoadFromCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
 				this.parameterHints, this.cacheID ),
-				dscc.getCacheCapability( ));
+				dscc.getCacheCapability( ),
+				DataSetCacheUtil.getJVMCacheTimeToLive( appContext ) );
 	}
 
 	/**
@@ -409,6 +423,27 @@ public class DataSetCacheManager
 		}
 	}
 
+	/**
+	 * Return the statistics of the JVM level data set cache, which is shared by
+	 * all the data engines.
+	 * 
+	 * @return
+	 */
+	public DataSetCacheStatistics getJVMLevelCacheStatistics( )
+	{
+		return this.jvmLevelCacheMapManager.getStatistics( );
+	}
+
+	/**
+	 * Return the statistics of the data set cache of current data engine.
+	 * 
+	 * @return
+	 */
+	public DataSetCacheStatistics getDteLevelCacheStatistics( )
+	{
+		return this.dteLevelCacheMapManager.getStatistics( );
+	}
+
 	/**
 	 * Return the cached result metadata. Please note that parameter hint will
 	 * not change the returned metadata.
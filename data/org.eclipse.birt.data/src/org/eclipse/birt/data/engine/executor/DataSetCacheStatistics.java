@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of a data set cache map. A hit is a data set loaded from the
+ * cache, a miss is a data set which has to be retrieved from the data source,
+ * and a load is a retrieved data set which has been saved into the cache. The
+ * load time is the time from the miss to the end of the saving.
+ */
+public class DataSetCacheStatistics
+{
+
+	private AtomicLong hitCount = new AtomicLong( );
+	private AtomicLong missCount = new AtomicLong( );
+	private AtomicLong loadCount = new AtomicLong( );
+	private AtomicLong totalLoadTime = new AtomicLong( );
+	private AtomicLong evictionCount = new AtomicLong( );
+
+	void recordHit( )
+	{
+		hitCount.incrementAndGet( );
+	}
+
+	void recordMiss( )
+	{
+		missCount.incrementAndGet( );
+	}
+
+	void recordLoad( long loadTime )
+	{
+		loadCount.incrementAndGet( );
+		totalLoadTime.addAndGet( loadTime );
+	}
+
+	void recordEviction( )
+	{
+		evictionCount.incrementAndGet( );
+	}
+
+	/**
+	 * @return the count of the data sets loaded from the cache
+	 */
+	public long getHitCount( )
+	{
+		return hitCount.get( );
+	}
+
+	/**
+	 * @return the count of the data sets not found in the cache
+	 */
+	public long getMissCount( )
+	{
+		return missCount.get( );
+	}
+
+	/**
+	 * @return the count of the data sets saved into the cache
+	 */
+	public long getLoadCount( )
+	{
+		return loadCount.get( );
+	}
+
+	/**
+	 * @return the total time in milliseconds spent on retrieving and saving
+	 *         the data sets saved into the cache
+	 */
+	public long getTotalLoadTime( )
+	{
+		return totalLoadTime.get( );
+	}
+
+	/**
+	 * @return the average load time in milliseconds, 0 if no data set is
+	 *         saved
+	 */
+	public long getAverageLoadTime( )
+	{
+		long count = loadCount.get( );
+		return count == 0 ? 0 : totalLoadTime.get( ) / count;
+	}
+
+	/**
+	 * @return the count of the cached data sets removed because they are
+	 *         expired or the cache is full
+	 */
+	public long getEvictionCount( )
+	{
+		return evictionCount.get( );
+	}
+
+	/**
+	 * @return the ratio of the hits to all the requests, 0 if there is no
+	 *         request
+	 */
+	public double getHitRate( )
+	{
+		long hits = hitCount.get( );
+		long requests = hits + missCount.get( );
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	/**
+	 * Resets all the counters.
+	 */
+	public void reset( )
+	{
+		hitCount.set( 0 );
+		missCount.set( 0 );
+		loadCount.set( 0 );
+		totalLoadTime.set( 0 );
+		evictionCount.set( 0 );
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString( )
+	{
+		return "hits=" + getHitCount( ) //$NON-NLS-1$
+				+ ", misses=" + getMissCount( ) //$NON-NLS-1$
+				+ ", loads=" + getLoadCount( ) //$NON-NLS-1$
+				+ ", totalLoadTime=" + getTotalLoadTime( ) //$NON-NLS-1$
+				+ ", evictions=" + getEvictionCount( ); //$NON-NLS-1$
+	}
+}
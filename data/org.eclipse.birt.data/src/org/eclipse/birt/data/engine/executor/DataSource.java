@@ -232,15 +232,19 @@ class DataSource implements IDataSource
     
     /** 
      * Find a connection available for new statements in the pool, or create
-     * a new one if none available 
+     * a new one if none available. A connection with active statements is
+     * only shared by the statements of the same thread, so the queries
+     * executed in parallel don't use the same connection.
      */
     private CacheConnection getAvailableConnection() throws DataException
 	{
+    	Thread currentThread = Thread.currentThread( );
     	Iterator it = this.getOdaConnections( true ).iterator();
     	while ( it.hasNext() )
     	{
     		CacheConnection c = (CacheConnection) (it.next());
-    		if ( c.odaConn.isOpen( ) && c.currentStatements < c.maxStatements )
+    		if ( c.odaConn.isOpen( ) && c.currentStatements < c.maxStatements
+    				&& ( c.currentStatements == 0 || c.owner == currentThread ) )
     			return c;
     	}
     	
@@ -299,6 +303,7 @@ class DataSource implements IDataSource
         CacheConnection conn = getAvailableConnection();
         assert conn.currentStatements < conn.maxStatements;
         ++ conn.currentStatements;
+        conn.owner = Thread.currentThread( );
         PreparedStatement stmt = conn.odaConn.prepareStatement( queryText, dataSetType, querySpec );
         
         // Map statement to the open connection, so we can release the connection
@@ -328,6 +333,8 @@ class DataSource implements IDataSource
     		-- conn.currentStatements;
     		if ( conn.currentStatements < 0 )
         		logger.warning( DataSource.class.getName() + ".closeStatement: negative statement count for connection.");
+    		if ( conn.currentStatements <= 0 )
+    			conn.owner = null;
     		
     		// TODO: consider releasing connections here if we have more than 1 free connections
     	}
@@ -448,6 +455,7 @@ class DataSource implements IDataSource
 		Connection odaConn;
 		int maxStatements = Integer.MAX_VALUE; // max # of supported concurrent statements
 		int currentStatements = 0; // # of currently active statements
+		Thread owner; // the thread of the currently active statements
 	}
 	
 	static private final class ConnectionProp
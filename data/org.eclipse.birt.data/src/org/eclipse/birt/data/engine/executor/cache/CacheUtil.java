@@ -20,6 +20,8 @@ import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
 import java.util.Calendar;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.eclipse.birt.data.engine.api.DataEngine;
 import org.eclipse.birt.data.engine.core.DataException;
@@ -35,6 +37,8 @@ import org.eclipse.birt.data.engine.impl.IIncreCacheDataSetDesign;
  */
 public class CacheUtil
 {
+	private static Logger logger = Logger.getLogger( CacheUtil.class.getName( ) );
+
 	private static final int MAX_DIR_CREATION_ATTEMPT = 1000;
 	private static final String PATH_SEP = File.separator;
 	private static final String TEST_MEM_BUFFER_SIZE = "birt.data.engine.test.memcachesize";
@@ -113,6 +117,83 @@ public class CacheUtil
 		}
 	}
 
+	/**
+	 * @param appContext
+	 * @return whether the rows cached in memory are stored column by column
+	 */
+	public static boolean enableColumnarCache( Map appContext )
+	{
+		if ( appContext == null )
+			return false;
+		Object propValue = appContext.get( DataEngine.COLUMNAR_MEMORY_CACHE );
+		if ( propValue == null )
+			return false;
+		return Boolean.valueOf( propValue.toString( ).trim( ) ).booleanValue( );
+	}
+
+	/**
+	 * @param appContext
+	 * @return the count of the threads used in disk sort, 1 if it is not set
+	 */
+	public static int getDiskSortThreadCount( Map appContext )
+	{
+		if ( appContext == null )
+			return 1;
+		Object threadCount = appContext.get( DataEngine.DISK_SORT_THREAD_COUNT );
+		if ( threadCount == null )
+			return 1;
+		return parseThreadCount( threadCount );
+	}
+
+	/**
+	 * @param threadCount
+	 * @return the count of the threads, 1 if it is not a valid number
+	 */
+	private static int parseThreadCount( Object threadCount )
+	{
+		try
+		{
+			return Math.max( 1, Integer.parseInt( threadCount.toString( )
+					.trim( ) ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			logger.log( Level.WARNING, "invalid thread count: {0}", //$NON-NLS-1$
+					threadCount );
+			return 1;
+		}
+	}
+
+	/**
+	 * @param appContext
+	 * @return the count of the threads used to calculate the aggregations of
+	 *         a cube query, 1 if it is not set
+	 */
+	public static int getCubeAggregationThreadCount( Map appContext )
+	{
+		if ( appContext == null )
+			return 1;
+		Object threadCount = appContext.get( DataEngine.CUBE_AGGREGATION_THREAD_COUNT );
+		if ( threadCount == null )
+			return 1;
+		return parseThreadCount( threadCount );
+	}
+
+	/**
+	 * @param appContext
+	 * @return the dirs of the temp files used in disk sort, null if it is not
+	 *         set
+	 */
+	public static String[] getDiskSortTempDirs( Map appContext )
+	{
+		if ( appContext == null )
+			return null;
+		Object tempDirs = appContext.get( DataEngine.DISK_SORT_TEMP_DIRS );
+		if ( tempDirs == null || tempDirs.toString( ).trim( ).length( ) == 0 )
+			return null;
+		return tempDirs.toString( ).trim( ).split( File.pathSeparator );
+	}
+
 	/**
 	 * 
 	 * @param propValue
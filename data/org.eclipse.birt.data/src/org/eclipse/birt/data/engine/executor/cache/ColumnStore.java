@@ -0,0 +1,711 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Stores the rows of a result set column by column. Integer, long, double,
+ * boolean, decimal and date values are kept in primitive arrays with a null
+ * bitmap, strings are dictionary encoded, and the other values are kept as
+ * objects.
+ * <p>
+ * The type of a column is decided by its first non-null value. If a later
+ * value doesn't fit into the column, the column is converted to an object
+ * column.
+ */
+class ColumnStore
+{
+
+	/**
+	 * estimated size of an object reference, an object header and an array
+	 * header.
+	 */
+	private static final int POINTER_SIZE = 4;
+	private static final int OBJECT_OVERHEAD = 16;
+
+	private IResultClass resultClass;
+	private Column[] columns;
+	private int rowCount;
+
+	ColumnStore( IResultClass resultClass )
+	{
+		this.resultClass = resultClass;
+		this.columns = new Column[resultClass.getFieldCount( )];
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			columns[i] = new NullColumn( );
+		}
+	}
+
+	IResultClass getResultClass( )
+	{
+		return resultClass;
+	}
+
+	int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 * Appends a row. The values which exceed the field count of the result
+	 * class are ignored, the missing values are null.
+	 */
+	void add( IResultObject row ) throws DataException
+	{
+		int fieldCount = Math.min( row.getResultClass( ).getFieldCount( ),
+				columns.length );
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			Object value = i < fieldCount ? row.getFieldValue( i + 1 ) : null;
+			if ( !columns[i].add( value ) )
+			{
+				columns[i] = columns[i].convert( value );
+				if ( !columns[i].add( value ) )
+				{
+					columns[i] = columns[i].toObjectColumn( );
+					columns[i].add( value );
+				}
+			}
+		}
+		rowCount++;
+	}
+
+	/**
+	 * @param row
+	 *            0-based row index
+	 * @param column
+	 *            0-based column index
+	 */
+	Object get( int row, int column )
+	{
+		return columns[column].get( row );
+	}
+
+	void set( int row, int column, Object value )
+	{
+		if ( !columns[column].set( row, value ) )
+		{
+			columns[column] = columns[column].convert( value );
+			if ( !columns[column].set( row, value ) )
+			{
+				columns[column] = columns[column].toObjectColumn( );
+				columns[column].set( row, value );
+			}
+		}
+	}
+
+	/**
+	 * @return the estimated memory size of the store in bytes
+	 */
+	long getMemorySize( )
+	{
+		long size = OBJECT_OVERHEAD;
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			size += columns[i].getMemorySize( );
+		}
+		return size;
+	}
+
+	/**
+	 * @return the row views of all the rows in the store
+	 */
+	IResultObject[] toResultObjects( )
+	{
+		IResultObject[] result = new IResultObject[rowCount];
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			result[i] = new ColumnarResultObject( this, i );
+		}
+		return result;
+	}
+
+	static int newCapacity( int capacity, int minCapacity )
+	{
+		int newCapacity = capacity + ( capacity >> 1 ) + 16;
+		return newCapacity < minCapacity ? minCapacity : newCapacity;
+	}
+
+	static long sizeOfObject( Object value )
+	{
+		if ( value == null )
+			return 0;
+		if ( value instanceof String )
+			return 40 + ( (String) value ).length( ) * 2;
+		if ( value instanceof byte[] )
+			return OBJECT_OVERHEAD + ( (byte[]) value ).length;
+		if ( value instanceof BigDecimal )
+			return 64 + ( (BigDecimal) value ).unscaledValue( ).bitLength( ) / 8;
+		return 2 * OBJECT_OVERHEAD;
+	}
+
+	/**
+	 * A column of the store. The rows are added in order.
+	 */
+	private static abstract class Column
+	{
+
+		protected int size;
+
+		/**
+		 * @return false if the value doesn't fit into the column
+		 */
+		abstract boolean add( Object value );
+
+		abstract Object get( int row );
+
+		/**
+		 * @return false if the value doesn't fit into the column
+		 */
+		abstract boolean set( int row, Object value );
+
+		abstract long getMemorySize( );
+
+		/**
+		 * creates the column which can store the existing values and the new
+		 * value.
+		 */
+		Column convert( Object value )
+		{
+			return toObjectColumn( );
+		}
+
+		Column toObjectColumn( )
+		{
+			ObjectColumn column = new ObjectColumn( );
+			for ( int i = 0; i < size; i++ )
+			{
+				column.add( get( i ) );
+			}
+			return column;
+		}
+	}
+
+	/**
+	 * The column with only null values, it is converted to a typed column
+	 * with the first non-null value.
+	 */
+	private static class NullColumn extends Column
+	{
+
+		boolean add( Object value )
+		{
+			if ( value != null )
+				return false;
+			size++;
+			return true;
+		}
+
+		Object get( int row )
+		{
+			return null;
+		}
+
+		boolean set( int row, Object value )
+		{
+			return value == null;
+		}
+
+		long getMemorySize( )
+		{
+			return OBJECT_OVERHEAD;
+		}
+
+		Column convert( Object value )
+		{
+			Column column;
+			Class valueClass = value.getClass( );
+			if ( valueClass == Integer.class )
+				column = new IntColumn( );
+			else if ( valueClass == Double.class )
+				column = new DoubleColumn( );
+			else if ( valueClass == String.class )
+				column = new StringColumn( );
+			else if ( valueClass == BigDecimal.class )
+				column = new DecimalColumn( );
+			else if ( valueClass == Long.class )
+				column = new LongColumn( );
+			else if ( valueClass == Boolean.class )
+				column = new BooleanColumn( );
+			else if ( valueClass == Date.class
+					|| valueClass == java.sql.Date.class
+					|| valueClass == Time.class
+					|| valueClass == Timestamp.class )
+				column = new DateColumn( valueClass );
+			else
+				column = new ObjectColumn( );
+			for ( int i = 0; i < size; i++ )
+			{
+				column.add( null );
+			}
+			return column;
+		}
+	}
+
+	/**
+	 * The column of primitive values, the nulls are kept in a bitmap.
+	 */
+	private static abstract class PrimitiveColumn extends Column
+	{
+
+		private long[] nulls = new long[0];
+
+		protected abstract int getCapacity( );
+
+		/**
+		 * grows the value array to hold at least the given count of values.
+		 */
+		protected abstract void grow( int minCapacity );
+
+		/**
+		 * stores the non-null value.
+		 *
+		 * @return false if the value doesn't fit into the column
+		 */
+		protected abstract boolean setValue( int row, Object value );
+
+		protected abstract Object getValue( int row );
+
+		protected abstract int getValueSize( );
+
+		boolean add( Object value )
+		{
+			if ( size == getCapacity( ) )
+				grow( newCapacity( size, size + 1 ) );
+			if ( ( size >> 6 ) >= nulls.length )
+			{
+				long[] newNulls = new long[newCapacity( nulls.length,
+						( size >> 6 ) + 1 )];
+				System.arraycopy( nulls, 0, newNulls, 0, nulls.length );
+				nulls = newNulls;
+			}
+			if ( value != null && !setValue( size, value ) )
+				return false;
+			setNull( size, value == null );
+			size++;
+			return true;
+		}
+
+		Object get( int row )
+		{
+			if ( ( nulls[row >> 6] & ( 1L << row ) ) != 0 )
+				return null;
+			return getValue( row );
+		}
+
+		boolean set( int row, Object value )
+		{
+			if ( value != null && !setValue( row, value ) )
+				return false;
+			setNull( row, value == null );
+			return true;
+		}
+
+		private void setNull( int row, boolean isNull )
+		{
+			if ( isNull )
+				nulls[row >> 6] |= 1L << row;
+			else
+				nulls[row >> 6] &= ~( 1L << row );
+		}
+
+		long getMemorySize( )
+		{
+			return 2 * OBJECT_OVERHEAD
+					+ (long) getCapacity( ) * getValueSize( )
+					+ nulls.length * 8L;
+		}
+	}
+
+	private static class IntColumn extends PrimitiveColumn
+	{
+
+		private int[] values = new int[0];
+
+		protected int getCapacity( )
+		{
+			return values.length;
+		}
+
+		protected void grow( int minCapacity )
+		{
+			int[] newValues = new int[minCapacity];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
+		}
+
+		protected boolean setValue( int row, Object value )
+		{
+			if ( value.getClass( ) != Integer.class )
+				return false;
+			values[row] = ( (Integer) value ).intValue( );
+			return true;
+		}
+
+		protected Object getValue( int row )
+		{
+			return Integer.valueOf( values[row] );
+		}
+
+		protected int getValueSize( )
+		{
+			return 4;
+		}
+	}
+
+	private static class LongColumn extends PrimitiveColumn
+	{
+
+		private long[] values = new long[0];
+
+		protected int getCapacity( )
+		{
+			return values.length;
+		}
+
+		protected void grow( int minCapacity )
+		{
+			long[] newValues = new long[minCapacity];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
+		}
+
+		protected boolean setValue( int row, Object value )
+		{
+			if ( value.getClass( ) != Long.class )
+				return false;
+			values[row] = ( (Long) value ).longValue( );
+			return true;
+		}
+
+		protected Object getValue( int row )
+		{
+			return Long.valueOf( values[row] );
+		}
+
+		protected int getValueSize( )
+		{
+			return 8;
+		}
+	}
+
+	private static class DoubleColumn extends PrimitiveColumn
+	{
+
+		private double[] values = new double[0];
+
+		protected int getCapacity( )
+		{
+			return values.length;
+		}
+
+		protected void grow( int minCapacity )
+		{
+			double[] newValues = new double[minCapacity];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
+		}
+
+		protected boolean setValue( int row, Object value )
+		{
+			if ( value.getClass( ) != Double.class )
+				return false;
+			values[row] = ( (Double) value ).doubleValue( );
+			return true;
+		}
+
+		protected Object getValue( int row )
+		{
+			return Double.valueOf( values[row] );
+		}
+
+		protected int getValueSize( )
+		{
+			return 8;
+		}
+	}
+
+	private static class BooleanColumn extends PrimitiveColumn
+	{
+
+		private boolean[] values = new boolean[0];
+
+		protected int getCapacity( )
+		{
+			return values.length;
+		}
+
+		protected void grow( int minCapacity )
+		{
+			boolean[] newValues = new boolean[minCapacity];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
+		}
+
+		protected boolean setValue( int row, Object value )
+		{
+			if ( value.getClass( ) != Boolean.class )
+				return false;
+			values[row] = ( (Boolean) value ).booleanValue( );
+			return true;
+		}
+
+		protected Object getValue( int row )
+		{
+			return Boolean.valueOf( values[row] );
+		}
+
+		protected int getValueSize( )
+		{
+			return 1;
+		}
+	}
+
+	/**
+	 * Stores the decimals whose unscaled value fits into a long.
+	 */
+	private static class DecimalColumn extends PrimitiveColumn
+	{
+
+		private long[] unscaledValues = new long[0];
+		private byte[] scales = new byte[0];
+
+		protected int getCapacity( )
+		{
+			return unscaledValues.length;
+		}
+
+		protected void grow( int minCapacity )
+		{
+			long[] newValues = new long[minCapacity];
+			System.arraycopy( unscaledValues, 0, newValues, 0, size );
+			unscaledValues = newValues;
+			byte[] newScales = new byte[minCapacity];
+			System.arraycopy( scales, 0, newScales, 0, size );
+			scales = newScales;
+		}
+
+		protected boolean setValue( int row, Object value )
+		{
+			if ( value.getClass( ) != BigDecimal.class )
+				return false;
+			BigDecimal decimal = (BigDecimal) value;
+			int scale = decimal.scale( );
+			BigInteger unscaled = decimal.unscaledValue( );
+			if ( scale < Byte.MIN_VALUE
+					|| scale > Byte.MAX_VALUE
+					|| unscaled.bitLength( ) > 63 )
+				return false;
+			unscaledValues[row] = unscaled.longValue( );
+			scales[row] = (byte) scale;
+			return true;
+		}
+
+		protected Object getValue( int row )
+		{
+			return BigDecimal.valueOf( unscaledValues[row], scales[row] );
+		}
+
+		protected int getValueSize( )
+		{
+			return 9;
+		}
+	}
+
+	/**
+	 * Stores the dates of the same class as milliseconds, and the nanoseconds
+	 * of timestamps.
+	 */
+	private static class DateColumn extends PrimitiveColumn
+	{
+
+		private Class dateClass;
+		private long[] values = new long[0];
+		private int[] nanos;
+
+		DateColumn( Class dateClass )
+		{
+			this.dateClass = dateClass;
+			if ( dateClass == Timestamp.class )
+				nanos = new int[0];
+		}
+
+		protected int getCapacity( )
+		{
+			return values.length;
+		}
+
+		protected void grow( int minCapacity )
+		{
+			long[] newValues = new long[minCapacity];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
+			if ( nanos != null )
+			{
+				int[] newNanos = new int[minCapacity];
+				System.arraycopy( nanos, 0, newNanos, 0, size );
+				nanos = newNanos;
+			}
+		}
+
+		protected boolean setValue( int row, Object value )
+		{
+			if ( value.getClass( ) != dateClass )
+				return false;
+			values[row] = ( (Date) value ).getTime( );
+			if ( nanos != null )
+				nanos[row] = ( (Timestamp) value ).getNanos( );
+			return true;
+		}
+
+		protected Object getValue( int row )
+		{
+			if ( dateClass == Date.class )
+				return new Date( values[row] );
+			if ( dateClass == java.sql.Date.class )
+				return new java.sql.Date( values[row] );
+			if ( dateClass == Time.class )
+				return new Time( values[row] );
+			Timestamp timestamp = new Timestamp( values[row] );
+			timestamp.setNanos( nanos[row] );
+			return timestamp;
+		}
+
+		protected int getValueSize( )
+		{
+			return nanos == null ? 8 : 12;
+		}
+	}
+
+	/**
+	 * The dictionary encoded string column. It is converted to an object
+	 * column if most of the values are distinct.
+	 */
+	private static class StringColumn extends Column
+	{
+
+		private static final int MIN_DICTIONARY_SIZE = 1024;
+		private static final int NULL_CODE = -1;
+
+		private int[] codes = new int[0];
+		private List<String> dictionary = new ArrayList<String>( );
+		private HashMap<String, Integer> index = new HashMap<String, Integer>( );
+		private long dictionarySize;
+
+		boolean add( Object value )
+		{
+			if ( size == codes.length )
+			{
+				int[] newCodes = new int[newCapacity( size, size + 1 )];
+				System.arraycopy( codes, 0, newCodes, 0, size );
+				codes = newCodes;
+			}
+			if ( !set( size, value ) )
+				return false;
+			size++;
+			return true;
+		}
+
+		Object get( int row )
+		{
+			int code = codes[row];
+			return code == NULL_CODE ? null : dictionary.get( code );
+		}
+
+		boolean set( int row, Object value )
+		{
+			if ( value == null )
+			{
+				codes[row] = NULL_CODE;
+				return true;
+			}
+			if ( value.getClass( ) != String.class )
+				return false;
+			Integer code = index.get( value );
+			if ( code == null )
+			{
+				// the dictionary doesn't help if most of the values are
+				// distinct
+				if ( dictionary.size( ) >= MIN_DICTIONARY_SIZE
+						&& dictionary.size( ) > size / 2 )
+					return false;
+				code = Integer.valueOf( dictionary.size( ) );
+				dictionary.add( (String) value );
+				index.put( (String) value, code );
+				dictionarySize += sizeOfObject( value ) + 3 * OBJECT_OVERHEAD;
+			}
+			codes[row] = code.intValue( );
+			return true;
+		}
+
+		long getMemorySize( )
+		{
+			return 4 * OBJECT_OVERHEAD + codes.length * 4L + dictionarySize;
+		}
+	}
+
+	private static class ObjectColumn extends Column
+	{
+
+		private Object[] values = new Object[0];
+		private long valueSize;
+
+		boolean add( Object value )
+		{
+			if ( size == values.length )
+			{
+				Object[] newValues = new Object[newCapacity( size, size + 1 )];
+				System.arraycopy( values, 0, newValues, 0, size );
+				values = newValues;
+			}
+			set( size, value );
+			size++;
+			return true;
+		}
+
+		Object get( int row )
+		{
+			return values[row];
+		}
+
+		boolean set( int row, Object value )
+		{
+			valueSize += sizeOfObject( value ) - sizeOfObject( values[row] );
+			values[row] = value;
+			return true;
+		}
+
+		long getMemorySize( )
+		{
+			return OBJECT_OVERHEAD + (long) values.length * POINTER_SIZE
+					+ valueSize;
+		}
+
+		Column toObjectColumn( )
+		{
+			return this;
+		}
+	}
+}
@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.birt.core.archive.RAOutputStream;
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.StringTable;
+import org.eclipse.birt.data.engine.impl.document.viewing.ExprMetaUtil;
+import org.eclipse.birt.data.engine.impl.index.IIndexSerializer;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * The memory cache which stores the rows column by column in a
+ * <code>ColumnStore</code>. The rows are returned as views of the store, so
+ * the boxed values exist only while they are used.
+ */
+public class ColumnarCache implements ResultSetCache
+{
+
+	private int countOfResult;
+	private int currResultIndex = -1;
+
+	private IResultClass rsMeta;
+	private IResultObject currResultObject;
+	private ColumnStore store;
+
+	/**
+	 * the row index in the store of each result index, null if the rows are
+	 * not sorted.
+	 */
+	private int[] order;
+
+	/**
+	 * @param store
+	 * @param rsMeta
+	 * @param comparator
+	 */
+	ColumnarCache( ColumnStore store, IResultClass rsMeta,
+			Comparator comparator )
+	{
+		this.store = store;
+		this.rsMeta = rsMeta;
+		this.countOfResult = store.getRowCount( );
+
+		if ( comparator != null )
+			this.order = sort( store, comparator );
+	}
+
+	/**
+	 * sorts the row indexes of the store. The sort is stable, as the sort of
+	 * the memory cache.
+	 */
+	private static int[] sort( ColumnStore store, Comparator comparator )
+	{
+		int count = store.getRowCount( );
+		int[] order = new int[count];
+		for ( int i = 0; i < count; i++ )
+		{
+			order[i] = i;
+		}
+		ColumnarResultObject row1 = new ColumnarResultObject( store, 0 );
+		ColumnarResultObject row2 = new ColumnarResultObject( store, 0 );
+		mergeSort( order.clone( ), order, 0, count, comparator, row1, row2 );
+		return order;
+	}
+
+	/**
+	 * sorts dest[low, high), src is a copy of dest.
+	 */
+	private static void mergeSort( int[] src, int[] dest, int low, int high,
+			Comparator comparator, ColumnarResultObject row1,
+			ColumnarResultObject row2 )
+	{
+		int length = high - low;
+		if ( length < 7 )
+		{
+			// insertion sort on small arrays
+			for ( int i = low; i < high; i++ )
+			{
+				for ( int j = i; j > low
+						&& compare( dest[j - 1], dest[j], comparator, row1, row2 ) > 0; j-- )
+				{
+					int temp = dest[j];
+					dest[j] = dest[j - 1];
+					dest[j - 1] = temp;
+				}
+			}
+			return;
+		}
+
+		int mid = ( low + high ) >>> 1;
+		mergeSort( dest, src, low, mid, comparator, row1, row2 );
+		mergeSort( dest, src, mid, high, comparator, row1, row2 );
+
+		if ( compare( src[mid - 1], src[mid], comparator, row1, row2 ) <= 0 )
+		{
+			System.arraycopy( src, low, dest, low, length );
+			return;
+		}
+
+		for ( int i = low, p = low, q = mid; i < high; i++ )
+		{
+			if ( q >= high
+					|| ( p < mid && compare( src[p], src[q], comparator, row1, row2 ) <= 0 ) )
+				dest[i] = src[p++];
+			else
+				dest[i] = src[q++];
+		}
+	}
+
+	private static int compare( int index1, int index2, Comparator comparator,
+			ColumnarResultObject row1, ColumnarResultObject row2 )
+	{
+		row1.setRow( index1 );
+		row2.setRow( index2 );
+		return comparator.compare( row1, row2 );
+	}
+
+	private IResultObject getResultObject( int index )
+	{
+		return new ColumnarResultObject( store, order == null
+				? index : order[index] );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCurrentIndex()
+	 */
+	public int getCurrentIndex( ) throws DataException
+	{
+		return currResultIndex;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCurrentResult()
+	 */
+	public IResultObject getCurrentResult( ) throws DataException
+	{
+		return currResultObject;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#next()
+	 */
+	public boolean next( ) throws DataException
+	{
+		if ( countOfResult == 0 )
+			return false;
+
+		if ( currResultIndex > countOfResult - 1 )
+		{
+			currResultObject = null;
+		}
+		else
+		{
+			currResultIndex++;
+			if ( currResultIndex == countOfResult )
+				currResultObject = null;
+			else
+				currResultObject = getResultObject( currResultIndex );
+		}
+
+		return currResultObject != null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#fetch()
+	 */
+	public IResultObject fetch( ) throws DataException
+	{
+		next( );
+		return getCurrentResult( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#moveTo(int)
+	 */
+	public void moveTo( int destIndex ) throws DataException
+	{
+		if ( destIndex < -1 || destIndex > countOfResult )
+			throw new DataException( ResourceConstants.DESTINDEX_OUTOF_RANGE,
+					new Object[]{
+							Integer.valueOf( -1 ),
+							Integer.valueOf( countOfResult )
+					} );
+
+		currResultIndex = destIndex;
+
+		// currResultObject needs to be updated
+		if ( currResultIndex == -1 || currResultIndex == countOfResult )
+			currResultObject = null;
+		else
+			currResultObject = getResultObject( currResultIndex );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCount()
+	 */
+	public int getCount( )
+	{
+		return countOfResult;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#reset()
+	 */
+	public void reset( )
+	{
+		currResultIndex = -1;
+		currResultObject = null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#close()
+	 */
+	public void close( )
+	{
+		reset( );
+		store = null;
+		order = null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#doSave(java.io.DataOutputStream, java.io.DataOutputStream, java.util.Map, java.util.Map, java.util.List, int)
+	 */
+	public void doSave( DataOutputStream outputStream,
+			DataOutputStream rowLensStream,
+			Map<String, StringTable> stringTable,
+			Map<String, IIndexSerializer> index,
+			List<IBinding> cacheRequestMap, int version ) throws DataException
+	{
+		DataOutputStream dos = new DataOutputStream( outputStream );
+		Set resultSetNameSet = ResultSetUtil.getRsColumnRequestMap( cacheRequestMap );
+		try
+		{
+			// save data
+			int colCount = getColumnCount( this.rsMeta );
+
+			IOUtil.writeInt( dos, countOfResult );
+			long offset = 4;
+			for ( int i = 0; i < countOfResult; i++ )
+			{
+				IOUtil.writeLong( rowLensStream, offset );
+				offset += ResultSetUtil.writeResultObject( dos,
+						getResultObject( i ),
+						colCount,
+						resultSetNameSet,
+						stringTable,
+						index,
+						i,
+						version );
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.RD_SAVE_ERROR, e );
+		}
+	}
+
+	private int getColumnCount( IResultClass meta ) throws DataException
+	{
+		int count = meta.getFieldCount( );
+		for ( int i = 1; i <= meta.getFieldCount( ); i++ )
+		{
+			if ( meta.getFieldName( i ).equals( ExprMetaUtil.POS_NAME ) )
+			{
+				count--;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#incrementalUpdate(java.io.OutputStream, java.io.OutputStream, int, java.util.Map, java.util.Map, java.util.List, int)
+	 */
+	public void incrementalUpdate( OutputStream outputStream,
+			OutputStream rowLensStream, int originalRowCount,
+			Map<String, StringTable> stringTable,
+			Map<String, IIndexSerializer> map, List<IBinding> cacheRequestMap,
+			int version ) throws DataException
+	{
+		Set resultSetNameSet = ResultSetUtil.getRsColumnRequestMap( cacheRequestMap );
+		try
+		{
+			// save data
+			int rowCount = originalRowCount + countOfResult;
+			int colCount = this.rsMeta.getFieldCount( );
+
+			IOUtil.writeInt( outputStream, rowCount );
+			if ( outputStream instanceof RAOutputStream )
+				( (RAOutputStream) outputStream ).seek( ( (RAOutputStream) outputStream ).length( ) );
+			if ( rowLensStream instanceof RAOutputStream )
+				( (RAOutputStream) rowLensStream ).seek( ( (RAOutputStream) rowLensStream ).length( ) );
+			DataOutputStream dos = new DataOutputStream( outputStream );
+			DataOutputStream rlos = new DataOutputStream( rowLensStream );
+
+			long offset = 4;
+			if ( outputStream instanceof RAOutputStream )
+				offset = ( (RAOutputStream) outputStream ).length( );
+			for ( int i = 0; i < countOfResult; i++ )
+			{
+				IOUtil.writeLong( rlos, offset );
+				offset += ResultSetUtil.writeResultObject( dos,
+						getResultObject( i ),
+						colCount,
+						resultSetNameSet,
+						stringTable,
+						map,
+						originalRowCount + i,
+						version );
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.RD_SAVE_ERROR, e );
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#setResultClass(org.eclipse.birt.data.engine.odi.IResultClass)
+	 */
+	public void setResultClass( IResultClass rsMeta ) throws DataException
+	{
+		this.rsMeta = rsMeta;
+	}
+}
@@ -0,0 +1,591 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UTFDataFormatException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.datatools.connectivity.oda.IBlob;
+import org.eclipse.datatools.connectivity.oda.IClob;
+
+/**
+ * Serializes and deserializes the rows in blocks through a reused buffer. The
+ * rows are saved in the same format as ResultObjectUtil.writeObject, so the
+ * rows written by the codec can be read by ResultObjectUtil and vice versa.
+ * The way to save the values of a column is decided once by the type code of
+ * the column, and the values are encoded in the buffer without the streams.
+ *
+ * The codec is not thread safe, each reader or writer creates its own codec
+ * by ResultObjectUtil.newCodec.
+ */
+public class ResultObjectCodec
+{
+
+	static final int TYPE_UNKNOWN = 0;
+	static final int TYPE_INTEGER = 1;
+	static final int TYPE_DOUBLE = 2;
+	static final int TYPE_DECIMAL = 3;
+	static final int TYPE_TIME = 4;
+	static final int TYPE_TIMESTAMP = 5;
+	static final int TYPE_SQL_DATE = 6;
+	static final int TYPE_DATE = 7;
+	static final int TYPE_BOOLEAN = 8;
+	static final int TYPE_STRING = 9;
+	static final int TYPE_BLOB = 10;
+	static final int TYPE_OBJECT = 11;
+
+	/**
+	 * the types written by IOUtil.writeString
+	 */
+	private static final int STRING_NULL = 0;
+	private static final int STRING_SHORT = 9;
+	private static final int STRING_LONG = 15;
+
+	/**
+	 * the encoded rows are written to the stream once the buffer exceeds the
+	 * size
+	 */
+	private static final int FLUSH_SIZE = 64 * 1024;
+
+	private ResultObjectUtil util;
+	private Class[] typeArray;
+	private int[] typeCodes;
+
+	private ByteBuffer buffer = ByteBuffer.allocate( 1024 );
+	private char[] chars = new char[256];
+	private ByteArrayOutputStream objectBuffer;
+
+	ResultObjectCodec( ResultObjectUtil util, Class[] typeArray,
+			int[] typeCodes )
+	{
+		this.util = util;
+		this.typeArray = typeArray;
+		this.typeCodes = typeCodes;
+	}
+
+	/**
+	 * Gets the type code deciding how the values of the type are saved, which
+	 * follows the order of ResultObjectUtil.readObject.
+	 *
+	 * @param fieldType
+	 * @return
+	 */
+	static int getTypeCode( Class fieldType )
+	{
+		if ( fieldType == null )
+			return TYPE_UNKNOWN;
+		if ( fieldType.equals( Integer.class ) )
+			return TYPE_INTEGER;
+		if ( fieldType.equals( Double.class ) )
+			return TYPE_DOUBLE;
+		if ( fieldType.equals( BigDecimal.class ) )
+			return TYPE_DECIMAL;
+		if ( fieldType.equals( Time.class ) )
+			return TYPE_TIME;
+		if ( fieldType.equals( Timestamp.class ) )
+			return TYPE_TIMESTAMP;
+		if ( fieldType.equals( java.sql.Date.class ) )
+			return TYPE_SQL_DATE;
+		if ( Date.class.isAssignableFrom( fieldType ) )
+			return TYPE_DATE;
+		if ( fieldType.equals( Boolean.class ) )
+			return TYPE_BOOLEAN;
+		if ( fieldType.equals( String.class )
+				|| fieldType.equals( IClob.class )
+				|| fieldType.equals( Clob.class ) )
+			return TYPE_STRING;
+		if ( fieldType.equals( IBlob.class )
+				|| fieldType.equals( Blob.class ) )
+			return TYPE_BLOB;
+		if ( fieldType.equals( Object.class )
+				|| fieldType.equals( DataType.getClass( DataType.ANY_TYPE ) ) )
+			return TYPE_OBJECT;
+		return TYPE_UNKNOWN;
+	}
+
+	/**
+	 * Writes the rows to the stream.
+	 *
+	 * @param out
+	 * @param rows
+	 * @param from
+	 *            the index of the first row to write
+	 * @param count
+	 *            how many rows to write
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public void writeRows( OutputStream out, IResultObject[] rows, int from,
+			int count ) throws IOException, DataException
+	{
+		buffer.clear( );
+		try
+		{
+			for ( int i = 0; i < count; i++ )
+			{
+				encodeRow( rows[from + i] );
+				if ( buffer.position( ) >= FLUSH_SIZE )
+				{
+					flush( out );
+				}
+				if ( util.isStopped( ) )
+					return;
+			}
+		}
+		finally
+		{
+			flush( out );
+		}
+	}
+
+	/**
+	 * Writes a row to the stream.
+	 *
+	 * @param out
+	 * @param row
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public void writeRow( OutputStream out, IResultObject row )
+			throws IOException, DataException
+	{
+		buffer.clear( );
+		encodeRow( row );
+		flush( out );
+	}
+
+	/**
+	 * Reads the rows from the stream, no more data than the rows is read from
+	 * the stream.
+	 *
+	 * @param in
+	 * @param classLoader
+	 * @param rows
+	 *            the array to save the rows
+	 * @param from
+	 *            the index of the first row in the array
+	 * @param count
+	 *            how many rows to read
+	 * @return the count of the rows read, which is less than the count if the
+	 *         session is stopped
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public int readRows( InputStream in, ClassLoader classLoader,
+			IResultObject[] rows, int from, int count ) throws IOException,
+			DataException
+	{
+		for ( int i = 0; i < count; i++ )
+		{
+			IResultObject row = readRow( in, classLoader );
+			if ( row == null )
+				return i;
+			rows[from + i] = row;
+		}
+		return count;
+	}
+
+	/**
+	 * Reads a row from the stream.
+	 *
+	 * @param in
+	 * @param classLoader
+	 * @return the row, or null if the session is stopped
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public IResultObject readRow( InputStream in, ClassLoader classLoader )
+			throws IOException, DataException
+	{
+		if ( util.isStopped( ) )
+			return null;
+		int rowLen = IOUtil.readInt( in );
+		if ( rowLen < 0 )
+		{
+			throw new EOFException( );
+		}
+		if ( buffer.capacity( ) < rowLen )
+		{
+			buffer = ByteBuffer.allocate( Math.max( rowLen,
+					buffer.capacity( ) * 2 ) );
+		}
+		byte[] bytes = buffer.array( );
+		int size = 0;
+		while ( size < rowLen )
+		{
+			int readSize = in.read( bytes, size, rowLen - size );
+			if ( readSize < 0 )
+			{
+				throw new EOFException( );
+			}
+			size += readSize;
+		}
+		buffer.clear( );
+		buffer.limit( rowLen );
+		try
+		{
+			Object[] values = new Object[typeCodes.length];
+			for ( int i = 0; i < typeCodes.length; i++ )
+			{
+				values[i] = decodeValue( i, classLoader );
+			}
+			return util.newResultObject( values );
+		}
+		catch ( BufferUnderflowException ex )
+		{
+			throw new EOFException( );
+		}
+	}
+
+	private void flush( OutputStream out ) throws IOException
+	{
+		if ( buffer.position( ) > 0 )
+		{
+			out.write( buffer.array( ), 0, buffer.position( ) );
+			buffer.clear( );
+		}
+	}
+
+	/**
+	 * Appends the row length and the values to the buffer, the buffer is
+	 * enlarged and the row is encoded again if the buffer is full.
+	 */
+	private void encodeRow( IResultObject row ) throws IOException,
+			DataException
+	{
+		int start = buffer.position( );
+		while ( true )
+		{
+			try
+			{
+				buffer.putInt( 0 );
+				for ( int i = 0; i < typeCodes.length; i++ )
+				{
+					Object value = null;
+					try
+					{
+						value = row.getFieldValue( i + 1 );
+					}
+					catch ( DataException e )
+					{
+						// never get here since the index value is always valid
+					}
+					encodeValue( i, value );
+				}
+				buffer.putInt( start, buffer.position( ) - start - 4 );
+				return;
+			}
+			catch ( BufferOverflowException ex )
+			{
+				ByteBuffer newBuffer = ByteBuffer.allocate( buffer.capacity( ) * 2 );
+				newBuffer.put( buffer.array( ), 0, start );
+				buffer = newBuffer;
+			}
+		}
+	}
+
+	private void encodeValue( int column, Object value ) throws IOException,
+			DataException
+	{
+		if ( value == null )
+		{
+			buffer.put( (byte) 0 );
+			return;
+		}
+		buffer.put( (byte) 1 );
+		switch ( typeCodes[column] )
+		{
+			case TYPE_INTEGER :
+				buffer.putInt( ( (Integer) convert( value,
+						DataType.INTEGER_TYPE ) ).intValue( ) );
+				break;
+			case TYPE_DOUBLE :
+				buffer.putLong( Double.doubleToLongBits( ( (Double) convert( value,
+						DataType.DOUBLE_TYPE ) ).doubleValue( ) ) );
+				break;
+			case TYPE_DECIMAL :
+				String decimal = ( (BigDecimal) convert( value,
+						DataType.DECIMAL_TYPE ) ).toString( );
+				int utflen = getUTFLength( decimal );
+				if ( utflen > 65535 )
+				{
+					throw new UTFDataFormatException( );
+				}
+				buffer.putShort( (short) utflen );
+				putUTF( decimal );
+				break;
+			case TYPE_TIME :
+			case TYPE_TIMESTAMP :
+			case TYPE_SQL_DATE :
+			case TYPE_DATE :
+				buffer.putLong( ( (Date) convert( value, DataType.DATE_TYPE ) ).getTime( ) );
+				break;
+			case TYPE_BOOLEAN :
+				buffer.put( ( (Boolean) convert( value, DataType.BOOLEAN_TYPE ) ).booleanValue( )
+						? (byte) 1 : (byte) 0 );
+				break;
+			case TYPE_STRING :
+				putString( value.toString( ) );
+				break;
+			case TYPE_BLOB :
+				byte[] bytes = (byte[]) value;
+				buffer.putInt( bytes.length );
+				buffer.put( bytes );
+				break;
+			case TYPE_OBJECT :
+				if ( !( value instanceof Serializable ) )
+					throw new DataException( ResourceConstants.NOT_SERIALIZABLE_CLASS,
+							value.getClass( ).getName( ) );
+				if ( objectBuffer == null )
+				{
+					objectBuffer = new ByteArrayOutputStream( );
+				}
+				objectBuffer.reset( );
+				DataOutputStream dos = new DataOutputStream( objectBuffer );
+				IOUtil.writeObject( dos, value );
+				dos.flush( );
+				buffer.put( objectBuffer.toByteArray( ) );
+				break;
+			default :
+				throw new DataException( ResourceConstants.BAD_DATA_TYPE,
+						String.valueOf( typeArray[column] ) );
+		}
+	}
+
+	private Object decodeValue( int column, ClassLoader classLoader )
+			throws IOException, DataException
+	{
+		if ( buffer.get( ) == 0 )
+		{
+			return null;
+		}
+		switch ( typeCodes[column] )
+		{
+			case TYPE_INTEGER :
+				return Integer.valueOf( buffer.getInt( ) );
+			case TYPE_DOUBLE :
+				return new Double( Double.longBitsToDouble( buffer.getLong( ) ) );
+			case TYPE_DECIMAL :
+				return new BigDecimal( getUTF( buffer.getShort( ) & 0xFFFF ) );
+			case TYPE_TIME :
+				return new Time( buffer.getLong( ) );
+			case TYPE_TIMESTAMP :
+				return new Timestamp( buffer.getLong( ) );
+			case TYPE_SQL_DATE :
+				return new java.sql.Date( buffer.getLong( ) );
+			case TYPE_DATE :
+				return new Date( buffer.getLong( ) );
+			case TYPE_BOOLEAN :
+				return Boolean.valueOf( buffer.get( ) != 0 );
+			case TYPE_STRING :
+				return getString( );
+			case TYPE_BLOB :
+				int len = buffer.getInt( );
+				if ( len == 0 )
+				{
+					return null;
+				}
+				byte[] bytes = new byte[len];
+				buffer.get( bytes );
+				return bytes;
+			case TYPE_OBJECT :
+				ByteArrayInputStream bais = new ByteArrayInputStream( buffer.array( ),
+						buffer.position( ),
+						buffer.remaining( ) );
+				Object value = IOUtil.readObject( new DataInputStream( bais ),
+						classLoader );
+				buffer.position( buffer.limit( ) - bais.available( ) );
+				return value;
+			default :
+				throw new DataException( ResourceConstants.BAD_DATA_TYPE,
+						String.valueOf( typeArray[column] ) );
+		}
+	}
+
+	/**
+	 * Saves the string in the format of IOUtil.writeString.
+	 */
+	private void putString( String str )
+	{
+		int utflen = getUTFLength( str );
+		if ( utflen > 65535 )
+		{
+			buffer.putInt( STRING_LONG );
+			buffer.putInt( utflen );
+		}
+		else
+		{
+			buffer.putInt( STRING_SHORT );
+			buffer.putShort( (short) utflen );
+		}
+		putUTF( str );
+	}
+
+	/**
+	 * Reads the string saved by IOUtil.writeString.
+	 */
+	private String getString( ) throws IOException
+	{
+		int type = buffer.getInt( );
+		if ( type == STRING_SHORT )
+		{
+			return getUTF( buffer.getShort( ) & 0xFFFF );
+		}
+		if ( type == STRING_LONG )
+		{
+			return getUTF( buffer.getInt( ) );
+		}
+		if ( type == STRING_NULL )
+		{
+			return null;
+		}
+		throw new EOFException( );
+	}
+
+	private static int getUTFLength( String str )
+	{
+		int utflen = 0;
+		for ( int i = 0; i < str.length( ); i++ )
+		{
+			int c = str.charAt( i );
+			if ( ( c >= 0x0001 ) && ( c <= 0x007F ) )
+			{
+				utflen++;
+			}
+			else if ( c > 0x07FF )
+			{
+				utflen += 3;
+			}
+			else
+			{
+				utflen += 2;
+			}
+		}
+		return utflen;
+	}
+
+	/**
+	 * Saves the chars in modified UTF-8, as DataOutputStream.writeUTF.
+	 */
+	private void putUTF( String str )
+	{
+		int strlen = str.length( );
+		for ( int i = 0; i < strlen; i++ )
+		{
+			int c = str.charAt( i );
+			if ( ( c >= 0x0001 ) && ( c <= 0x007F ) )
+			{
+				buffer.put( (byte) c );
+			}
+			else if ( c > 0x07FF )
+			{
+				buffer.put( (byte) ( 0xE0 | ( ( c >> 12 ) & 0x0F ) ) );
+				buffer.put( (byte) ( 0x80 | ( ( c >> 6 ) & 0x3F ) ) );
+				buffer.put( (byte) ( 0x80 | ( c & 0x3F ) ) );
+			}
+			else
+			{
+				buffer.put( (byte) ( 0xC0 | ( ( c >> 6 ) & 0x1F ) ) );
+				buffer.put( (byte) ( 0x80 | ( c & 0x3F ) ) );
+			}
+		}
+	}
+
+	/**
+	 * Reads the chars saved in modified UTF-8.
+	 */
+	private String getUTF( int utflen ) throws IOException
+	{
+		if ( utflen > buffer.remaining( ) )
+		{
+			throw new EOFException( );
+		}
+		if ( chars.length < utflen )
+		{
+			chars = new char[Math.max( utflen, chars.length * 2 )];
+		}
+		byte[] bytes = buffer.array( );
+		int pos = buffer.position( );
+		int end = pos + utflen;
+		int count = 0;
+		while ( pos < end )
+		{
+			int c = bytes[pos] & 0xFF;
+			if ( c < 0x80 )
+			{
+				pos++;
+				chars[count++] = (char) c;
+			}
+			else if ( ( c >> 5 ) == 0x06 && pos + 1 < end )
+			{
+				int char2 = bytes[pos + 1];
+				if ( ( char2 & 0xC0 ) != 0x80 )
+					throw new UTFDataFormatException( );
+				chars[count++] = (char) ( ( ( c & 0x1F ) << 6 ) | ( char2 & 0x3F ) );
+				pos += 2;
+			}
+			else if ( ( c >> 4 ) == 0x0E && pos + 2 < end )
+			{
+				int char2 = bytes[pos + 1];
+				int char3 = bytes[pos + 2];
+				if ( ( ( char2 & 0xC0 ) != 0x80 )
+						|| ( ( char3 & 0xC0 ) != 0x80 ) )
+					throw new UTFDataFormatException( );
+				chars[count++] = (char) ( ( ( c & 0x0F ) << 12 )
+						| ( ( char2 & 0x3F ) << 6 ) | ( char3 & 0x3F ) );
+				pos += 3;
+			}
+			else
+			{
+				throw new UTFDataFormatException( );
+			}
+		}
+		buffer.position( end );
+		return new String( chars, 0, count );
+	}
+
+	private static Object convert( Object o, int type ) throws DataException
+	{
+		try
+		{
+			return DataTypeUtil.convert( o, type );
+		}
+		catch ( BirtException e )
+		{
+			throw DataException.wrap( e );
+		}
+	}
+}
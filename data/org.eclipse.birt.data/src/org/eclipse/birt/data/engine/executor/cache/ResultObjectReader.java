@@ -25,6 +25,7 @@ import org.eclipse.birt.data.engine.odi.IResultObject;
 public class ResultObjectReader
 {
 	private ResultObjectUtil roUtil;
+	private ResultObjectCodec codec;
 	private InputStream intputStream;
 
 	private int dataCount;
@@ -48,6 +49,7 @@ public class ResultObjectReader
 
 		roReader.intputStream = intputStream;
 		roReader.roUtil = ResultObjectUtil.newInstance( rsMetaData, session );
+		roReader.codec = roReader.roUtil.newCodec( );
 		roReader.dataCount = dataCount;
 		roReader.curIndex = 0;
 		roReader.loader = session.getEngineContext( ).getClassLoader( );
@@ -73,7 +75,7 @@ public class ResultObjectReader
 			try
 			{
 				curIndex++;
-				return roUtil.readData( intputStream, this.loader, 1 )[0];
+				return codec.readRow( intputStream, this.loader );
 			}
 			catch ( IOException e )
 			{
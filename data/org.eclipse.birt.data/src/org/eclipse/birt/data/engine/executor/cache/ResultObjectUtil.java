@@ -11,14 +11,10 @@
 
 package org.eclipse.birt.data.engine.executor.cache;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
@@ -56,6 +52,9 @@ public class ResultObjectUtil
 	// data type array of result set
 	private Class[] typeArray;
 
+	// how the values of each column are saved by ResultObjectCodec
+	private int[] typeCodes;
+
 	// meta data of result set
 	private IResultClass rsMetaData;
 
@@ -77,6 +76,7 @@ public class ResultObjectUtil
 		ResultObjectUtil instance = new ResultObjectUtil( );
 		int length = rsMetaData.getFieldCount( );
 		instance.typeArray = new Class[length];
+		instance.typeCodes = new int[length];
 		for ( int i = 0; i < length; i++ )
 		{
 			try
@@ -87,6 +87,7 @@ public class ResultObjectUtil
 			{
 				// the index will be always valid
 			}
+			instance.typeCodes[i] = ResultObjectCodec.getTypeCode( instance.typeArray[i] );
 		}
 
 		instance.columnCount = rsMetaData.getFieldCount( );
@@ -114,6 +115,26 @@ public class ResultObjectUtil
 		return new ResultObject( rsMetaData, rowData );
 	}
 
+	/**
+	 * Creates a codec to serialize and deserialize the rows in blocks. The
+	 * codec reuses its buffer and is not thread safe, so each reader or writer
+	 * should have its own codec.
+	 * 
+	 * @return
+	 */
+	public ResultObjectCodec newCodec( )
+	{
+		return new ResultObjectCodec( this, typeArray, typeCodes );
+	}
+
+	/**
+	 * @return whether the session is stopped
+	 */
+	boolean isStopped( )
+	{
+		return session.getStopSign( ).isStopped( );
+	}
+
 	/**
 	 * Deserialze result object array from input stream. The reading procedure
 	 * is strictly sequential, that means there is no random access.
@@ -133,43 +154,7 @@ public class ResultObjectUtil
 			throws IOException, DataException
 	{
 		ResultObject[] rowDatas = new ResultObject[length];
-
-		int rowLen;
-		byte[] rowDataBytes;
-				
-		ByteArrayInputStream bais;
-		DataInputStream dis;
-
-		for ( int i = 0; i < length; i++ )
-		{
-			if( session.getStopSign( ).isStopped( ) )
-				break;
-			rowLen = IOUtil.readInt( bis );
-			rowDataBytes = new byte[rowLen];
-			int readSize = bis.read( rowDataBytes );
-			int totalSize = readSize;
-			while( readSize > 0 && totalSize < rowLen )
-			{
-				readSize = bis.read( rowDataBytes, totalSize, rowLen - totalSize );
-				totalSize += readSize;
-			}
-			
-			bais = new ByteArrayInputStream( rowDataBytes );
-			dis = new DataInputStream( bais );
-
-			Object[] obs = new Object[columnCount];
-			for ( int j = 0; j < columnCount; j++ )
-			{
-				Class fieldType = typeArray[j];
-				obs[j] = readObject( dis, fieldType, classLoader );
-			}
-			rowDatas[i] = newResultObject( obs );
-
-			rowDataBytes = null;			
-			dis = null;
-			bais = null;
-		}
-
+		newCodec( ).readRows( bis, classLoader, rowDatas, 0, length );
 		return rowDatas;
 	}
 
@@ -244,12 +229,7 @@ public class ResultObjectUtil
 	public void writeData( OutputStream bos,
 			IResultObject[] resultObjects, int length ) throws IOException, DataException
 	{		
-		for ( int i = 0; i < length; i++ )
-		{
-			writeData( bos, resultObjects[i] );
-			if( session.getStopSign().isStopped( ) )
-				return;
-		}
+		newCodec( ).writeRows( bos, resultObjects, 0, length );
 	}
 	
 	/**
@@ -262,35 +242,7 @@ public class ResultObjectUtil
 	public void writeData( OutputStream bos, IResultObject resultObject )
 			throws IOException, DataException
 	{
-		byte[] rowsDataBytes;
-
-		ByteArrayOutputStream baos = new ByteArrayOutputStream( );
-		DataOutputStream dos = new DataOutputStream( baos );
-
-		for ( int j = 0; j < columnCount; j++ )
-		{
-			Object fieldValue = null;
-			try
-			{
-				fieldValue = resultObject.getFieldValue( j + 1 );
-			}
-			catch ( DataException e )
-			{
-				// never get here since the index value is always value
-			}
-
-			Class fieldType = typeArray[j];
-			writeObject( dos, fieldValue, fieldType );
-		}
-		dos.flush( );
-
-		rowsDataBytes = baos.toByteArray( );
-		IOUtil.writeInt( bos, rowsDataBytes.length );
-		bos.write( rowsDataBytes );
-
-		rowsDataBytes = null;
-		dos = null;
-		baos = null;
+		newCodec( ).writeRow( bos, resultObject );
 	}
 
 	public static void writeObject( DataOutputStream dos, Object fieldValue,
@@ -26,7 +26,6 @@ import org.eclipse.birt.data.engine.odaconsumer.ResultSet;
 import org.eclipse.birt.data.engine.odi.IEventHandler;
 import org.eclipse.birt.data.engine.odi.IResultClass;
 import org.eclipse.birt.data.engine.odi.IResultObject;
-import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
 
 /**
  * Help SmartCache to get the ResultSetCache, the real data cache.
@@ -308,6 +307,8 @@ class SmartCacheHelper
 		IResultObject odaObject;
 		IResultObject[] resultObjects;
 		List resultObjectsList = new ArrayList( );
+		ColumnStore columnStore = CacheUtil.enableColumnarCache( eventHandler.getAppContext( ) )
+				? new ColumnStore( rsMeta ) : null;
 
 		int dataCount = 0;
 		long usedMemorySize = 0;
@@ -322,6 +323,14 @@ class SmartCacheHelper
 				{
 					throw new DataException( ResourceConstants.EXCEED_MAX_DATA_OBJECT_ROWS );
 				}
+				if ( columnStore != null )
+				{
+					// missing fields are stored as null in the column store
+					columnStore.add( odaObject );
+					if ( memoryCacheSize != 0 )
+						usedMemorySize = columnStore.getMemorySize( );
+					continue;
+				}
 				//the followed variable is for performance
 				int odaObjectFieldCount = odaObject.getResultClass( ).getFieldCount( );
 				int metaFieldCount = rsMeta.getFieldCount( );
@@ -350,7 +359,10 @@ class SmartCacheHelper
 			{
 				logger.fine( "DisckCache is used" );
 
-				resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
+				if ( columnStore != null )
+					resultObjects = columnStore.toResultObjects( );
+				else
+					resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
 				// the order is: resultObjects, odaObject, rowResultSet
 				resultSetCache = new DiskCache( resultObjects,
 						odaObject,
@@ -359,11 +371,21 @@ class SmartCacheHelper
 						getComparator( sortSpec, eventHandler ),
 						dataCount,
 						maxRows,
-						this.session );
+						this.session,
+						eventHandler.getAppContext( ) );
 				break;
 			}
 		}
 
+		if ( resultSetCache == null && columnStore != null )
+		{
+			logger.fine( "ColumnarCache is used" );
+
+			resultSetCache = new ColumnarCache( columnStore,
+					rsMeta,
+					getComparator( sortSpec, eventHandler ) );
+		}
+
 		if ( resultSetCache == null )
 		{
 			logger.fine( "MemoryCache is used" );
@@ -390,77 +412,16 @@ class SmartCacheHelper
 	 *         no need to do sorting
 	 */
 	private static Comparator getComparator( SortSpec sortSpec,
-			final IEventHandler eventHandler )
+			IEventHandler eventHandler )
 	{
 		if ( sortSpec == null )
 			return null;
 
-		final int[] sortKeyIndexes = sortSpec.getSortKeyIndexes();
-		final String[] sortKeyColumns = sortSpec.getSortKeyColumns();
+		int[] sortKeyIndexes = sortSpec.getSortKeyIndexes();
 
 		if ( sortKeyIndexes == null || sortKeyIndexes.length == 0 )
 			return null;
 
-		final int[] sortAscending = sortSpec.getSortAscending();
-		final CompareHints[] comparators = sortSpec.getComparator( );
-		Comparator comparator = new Comparator( ) {
-
-			/**
-			 * compares two row indexes, actually compares two rows pointed by
-			 * the two row indexes
-			 */
-			public int compare( Object obj1, Object obj2 )
-			{
-				IResultObject row1 = (IResultObject) obj1;
-				IResultObject row2 = (IResultObject) obj2;
-
-				// compare group keys first
-				for ( int i = 0; i < sortKeyIndexes.length; i++ )
-				{
-					int colIndex = sortKeyIndexes[i];
-					String colName = sortKeyColumns[i];
-					try
-					{
-						Object colObj1 = null;
-						Object colObj2 = null;
-
-						if ( eventHandler != null )
-						{
-							colObj1 = eventHandler.getValue( row1,
-									colIndex,
-									colName );
-							colObj2 = eventHandler.getValue( row2,
-									colIndex,
-									colName );
-						}
-						else
-						{
-							colObj1 = row1.getFieldValue( colIndex );
-							colObj2 = row2.getFieldValue( colIndex );
-						}
-
-						int result = ScriptEvalUtil.compare( colObj1, colObj2, comparators[i] );
-						if ( result != 0 )
-						{
-							if( sortAscending[i] == SortSpec.SORT_DISABLE )
-							{
-								return 0;
-							}
-							return sortAscending[i] == SortSpec.SORT_ASC ? result : -result;
-						}
-					}
-					catch ( DataException e )
-					{
-						// Should never get here
-						// colIndex is always valid
-					}
-				}
-
-				// all equal, so return 0
-				return 0;
-			}
-		};
-
-		return comparator;
+		return new SortKeyComparator( sortSpec, eventHandler );
 	}
 }
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.Comparator;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.expression.CompareHints;
+import org.eclipse.birt.data.engine.odi.IEventHandler;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
+
+/**
+ * Compares the rows by the sort keys of a sort specification. The values of
+ * the sort keys may be evaluated by the scripts of the event handler, so they
+ * can only be got in the thread which executes the query. The sort keys got
+ * by getSortKeys can be compared in another thread, but not concurrently as
+ * the compare hints are shared.
+ */
+public class SortKeyComparator implements Comparator
+{
+
+	private int[] sortKeyIndexes;
+	private String[] sortKeyColumns;
+	private int[] sortAscending;
+	private CompareHints[] comparators;
+	private IEventHandler eventHandler;
+
+	SortKeyComparator( SortSpec sortSpec, IEventHandler eventHandler )
+	{
+		this.sortKeyIndexes = sortSpec.getSortKeyIndexes( );
+		this.sortKeyColumns = sortSpec.getSortKeyColumns( );
+		this.sortAscending = sortSpec.getSortAscending( );
+		this.comparators = sortSpec.getComparator( );
+		this.eventHandler = eventHandler;
+	}
+
+	/**
+	 * compares two row indexes, actually compares two rows pointed by the two
+	 * row indexes
+	 */
+	public int compare( Object obj1, Object obj2 )
+	{
+		IResultObject row1 = (IResultObject) obj1;
+		IResultObject row2 = (IResultObject) obj2;
+
+		// compare group keys first
+		for ( int i = 0; i < sortKeyIndexes.length; i++ )
+		{
+			try
+			{
+				int result = ScriptEvalUtil.compare( getSortKey( row1, i ),
+						getSortKey( row2, i ),
+						comparators[i] );
+				if ( result != 0 )
+				{
+					return getOrder( i, result );
+				}
+			}
+			catch ( DataException e )
+			{
+				// Should never get here
+				// colIndex is always valid
+			}
+		}
+
+		// all equal, so return 0
+		return 0;
+	}
+
+	/**
+	 * Gets the values of the sort keys of the row, the value of a key which
+	 * fails to be evaluated is null.
+	 *
+	 * @param row
+	 * @return the values of the sort keys
+	 */
+	public Object[] getSortKeys( IResultObject row )
+	{
+		Object[] keys = new Object[sortKeyIndexes.length];
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			try
+			{
+				keys[i] = getSortKey( row, i );
+			}
+			catch ( DataException e )
+			{
+				keys[i] = null;
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Compares the sort keys got by getSortKeys in the same order as the rows.
+	 *
+	 * @param keys1
+	 * @param keys2
+	 * @return
+	 */
+	public int compareSortKeys( Object[] keys1, Object[] keys2 )
+	{
+		for ( int i = 0; i < keys1.length; i++ )
+		{
+			try
+			{
+				int result = ScriptEvalUtil.compare( keys1[i],
+						keys2[i],
+						comparators[i] );
+				if ( result != 0 )
+				{
+					return getOrder( i, result );
+				}
+			}
+			catch ( DataException e )
+			{
+			}
+		}
+		return 0;
+	}
+
+	private Object getSortKey( IResultObject row, int index )
+			throws DataException
+	{
+		if ( eventHandler != null )
+		{
+			return eventHandler.getValue( row,
+					sortKeyIndexes[index],
+					sortKeyColumns[index] );
+		}
+		return row.getFieldValue( sortKeyIndexes[index] );
+	}
+
+	private int getOrder( int index, int result )
+	{
+		if ( sortAscending[index] == SortSpec.SORT_DISABLE )
+		{
+			return 0;
+		}
+		return sortAscending[index] == SortSpec.SORT_ASC ? result : -result;
+	}
+}
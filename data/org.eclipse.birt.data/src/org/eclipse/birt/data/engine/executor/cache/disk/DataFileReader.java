@@ -18,6 +18,7 @@ import java.io.IOException;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectCodec;
 import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
 import org.eclipse.birt.data.engine.odi.IResultObject;
 
@@ -34,6 +35,7 @@ class DataFileReader
 	private BufferedInputStream bis;
 
 	private ResultObjectUtil resultObjectUtil;
+	private ResultObjectCodec codec;
 	
 	/**
 	 * A util method to new instance of DataFileReader
@@ -55,6 +57,7 @@ class DataFileReader
 	private DataFileReader( File file, ResultObjectUtil resultObjectUtil )
 	{
 		this.resultObjectUtil = resultObjectUtil;
+		this.codec = resultObjectUtil.newCodec( );
 		setReadFile( file );
 	}
 
@@ -85,6 +88,24 @@ class DataFileReader
 	 * @throws DataException 
 	 */
 	IResultObject[] read( int length ) throws IOException, DataException
+	{
+		IResultObject[] resultObjects = new IResultObject[length];
+		read( resultObjects, length );
+		return resultObjects;
+	}
+
+	/**
+	 * Read the specified count of objects from file into the array, the rows
+	 * are decoded by the buffer reused by this reader.
+	 * 
+	 * @param resultObjects
+	 * @param count
+	 * @return the count of objects read
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	int read( IResultObject[] resultObjects, int count ) throws IOException,
+			DataException
 	{
 		if ( isOpen == false )
 		{
@@ -101,7 +122,7 @@ class DataFileReader
 			isOpen = true;
 		}
 
-		return resultObjectUtil.readData( bis, null, length );
+		return codec.readRows( bis, null, resultObjects, 0, count );
 	}
 
 	/**
@@ -18,6 +18,7 @@ import java.io.IOException;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectCodec;
 import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
 import org.eclipse.birt.data.engine.odi.IResultObject;
 
@@ -34,6 +35,7 @@ class DataFileWriter
 	private BufferedOutputStream bos;
 
 	private ResultObjectUtil resultObjectUtil;
+	private ResultObjectCodec codec;
 	
 	/**
 	 * A util method to new instance of DataFileWriter
@@ -55,6 +57,7 @@ class DataFileWriter
 	private DataFileWriter( File file, ResultObjectUtil resultObjectUtil )
 	{
 		this.resultObjectUtil = resultObjectUtil;
+		this.codec = resultObjectUtil.newCodec( );
 		setWriteFile( file );
 	}
 	
@@ -86,6 +89,21 @@ class DataFileWriter
 	 * @throws DataException 
 	 */
 	void write( IResultObject[] resultObjects, int count ) throws IOException, DataException
+	{
+		write( resultObjects, 0, count );
+	}
+
+	/**
+	 * Write the specified count of objects starting at from to file.
+	 * 
+	 * @param resultObjects
+	 * @param from
+	 * @param count
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	void write( IResultObject[] resultObjects, int from, int count )
+			throws IOException, DataException
 	{
 		if ( isOpen == false )
 		{
@@ -102,7 +120,7 @@ class DataFileWriter
 			isOpen = true;
 		}
 
-		resultObjectUtil.writeData( bos, resultObjects, count );
+		codec.writeRows( bos, resultObjects, from, count );
 	}
 
 	/**
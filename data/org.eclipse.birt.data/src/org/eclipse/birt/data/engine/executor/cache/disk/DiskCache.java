@@ -98,12 +98,43 @@ public class DiskCache implements ResultSetCache
 			IRowResultSet rowResultSet, IResultClass rsMeta,
 			Comparator comparator, int MemoryCacheRowCount,int maxRows, DataEngineSession session )
 			throws DataException
+	{
+		this( resultObjects,
+				resultObject,
+				rowResultSet,
+				rsMeta,
+				comparator,
+				MemoryCacheRowCount,
+				maxRows,
+				session,
+				null );
+	}
+	
+	/**
+	 * @param resultObjects
+	 * @param resultObject
+	 * @param rowResultSet
+	 * @param rsMeta
+	 * @param comparator
+	 * @param MemoryCacheRowCount
+	 * @param maxRows
+	 * @param session
+	 * @param appContext
+	 *            the thread count and temp dirs of the disk sort are read from
+	 *            it
+	 * @throws DataException
+	 */
+	public DiskCache( IResultObject[] resultObjects, IResultObject resultObject,
+			IRowResultSet rowResultSet, IResultClass rsMeta,
+			Comparator comparator, int MemoryCacheRowCount, int maxRows,
+			DataEngineSession session, Map appContext ) throws DataException
 	{
 		//this.rsMeta = rsMeta;
 		this.MemoryCacheRowCount = MemoryCacheRowCount;
 		this.rsMeta = rsMeta;
 		this.session = session;
-		this.diskBasedResultSet = new DiskCacheResultSet( getInfoMap( ), session );
+		this.diskBasedResultSet = new DiskCacheResultSet( getInfoMap( appContext ),
+				session );
 		
 		try
 		{
@@ -348,9 +379,11 @@ public class DiskCache implements ResultSetCache
 	 * 		tempDir, to generated temp file in DiskMergeSort
 	 * 		goalFile, to generate the end result file
 	 * 		dataCountOfUnit, to indicate how many rows can be loaded into memory
+	 * 		sortThreadCount, the count of the threads used in sorting
+	 * 		tempDirs, the user specified dirs to generate temp file
 	 * @throws DataException 
 	 */
-	private Map getInfoMap( ) throws DataException
+	private Map getInfoMap( Map appContext ) throws DataException
 	{
 		Map infoMap = new HashMap( );
 
@@ -358,6 +391,25 @@ public class DiskCache implements ResultSetCache
 		goalFileStr = getGoalFileStr( );
 		infoMap.put( "goalFile", goalFileStr );
 		infoMap.put( "dataCountOfUnit", "" + MemoryCacheRowCount );
+		infoMap.put( "sortThreadCount", ""
+				+ CacheUtil.getDiskSortThreadCount( appContext ) );
+
+		String[] tempDirs = CacheUtil.getDiskSortTempDirs( appContext );
+		if ( tempDirs != null )
+		{
+			// the name of the session dir is unique, it is used to name the
+			// temp dir in every user specified dir.
+			String tempDirName = new File( tempRootDirStr ).getName( )
+					+ "_" + new File( sessionRootDirStr ).getName( );
+			StringBuffer buffer = new StringBuffer( );
+			for ( int i = 0; i < tempDirs.length; i++ )
+			{
+				if ( i > 0 )
+					buffer.append( File.pathSeparator );
+				buffer.append( new File( tempDirs[i], tempDirName ).getPath( ) );
+			}
+			infoMap.put( "tempDirs", buffer.toString( ) );
+		}
 
 		return infoMap;
 	}
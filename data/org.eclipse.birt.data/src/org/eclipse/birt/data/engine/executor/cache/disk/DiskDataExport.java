@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.executor.cache.disk;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Comparator;
 import java.util.Map;
@@ -46,7 +47,13 @@ abstract class DiskDataExport
 			ResultObjectUtil resultObjectUtil, DataEngineSession session )
 	{
 		DiskDataExport dbExport;
-		if ( comparator != null )
+		int threadCount = getSortThreadCount( infoMap );
+		if ( comparator != null && threadCount > 1 )
+			dbExport = new ParallelDiskSortExport( infoMap,
+					comparator,
+					resultObjectUtil,
+					threadCount );
+		else if ( comparator != null )
 			dbExport = new DiskSortExport2( infoMap, comparator, resultObjectUtil );
 		else
 			dbExport = new DiskDirectExport( infoMap, resultObjectUtil );
@@ -56,6 +63,34 @@ abstract class DiskDataExport
 		return dbExport;
 	}
 	
+	/**
+	 * @param infoMap
+	 * @return the count of the threads used to sort the data, 1 if it is not
+	 *         specified
+	 */
+	static int getSortThreadCount( Map infoMap )
+	{
+		Object threadCount = infoMap.get( "sortThreadCount" );
+		if ( threadCount == null )
+			return 1;
+		return Integer.parseInt( (String) threadCount );
+	}
+
+	/**
+	 * @param infoMap
+	 * @return the dirs of the temp files used in sorting. The temp files are
+	 *         spread over them if more than one dir is specified.
+	 */
+	static String[] getTempDirs( Map infoMap )
+	{
+		String tempDirs = (String) infoMap.get( "tempDirs" );
+		if ( tempDirs == null )
+			return new String[]{
+				(String) infoMap.get( "tempDir" )
+			};
+		return tempDirs.split( File.pathSeparator );
+	}
+
 	/**
 	 * Export data which is stored in the resultObjects array to disk, which is
 	 * the first step of export.
@@ -65,7 +65,7 @@ class DiskSortExport2 extends DiskDataExport
 
 		rowBuffer = new IResultObject[dataCountOfUnit];
 
-		tempFileUtil = new MergeTempFileUtil( (String) ( infoMap.get( "tempDir" ) ),
+		tempFileUtil = new MergeTempFileUtil( getTempDirs( infoMap ),
 				resultObjectUtil );
 
 		mergeSortUtil = MergeSortUtil.getUtil( comparator );
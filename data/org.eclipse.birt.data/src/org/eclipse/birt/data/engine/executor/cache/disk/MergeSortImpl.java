@@ -13,6 +13,8 @@ package org.eclipse.birt.data.engine.executor.cache.disk;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
@@ -34,6 +36,11 @@ class MergeSortImpl
 	private final static int maxOpenFile = 500;
 	
 	private DataEngineSession session;
+	
+	// the threads to read and write the temp files, null if the files are
+	// read and written in current thread.
+	private SortThreadPool threadPool;
+	
 	/**
 	 * @param dataCountOfUnit
 	 * @param mergeSortUtil
@@ -42,12 +49,35 @@ class MergeSortImpl
 	 */
 	MergeSortImpl( int dataCountOfUnit, MergeSortUtil mergeSortUtil,
 			MergeTempFileUtil tempFileUtil, List tempRowFiles, DataEngineSession session )
+	{
+		this( dataCountOfUnit,
+				mergeSortUtil,
+				tempFileUtil,
+				tempRowFiles,
+				session,
+				null );
+	}
+	
+	/**
+	 * @param dataCountOfUnit
+	 * @param mergeSortUtil
+	 * @param tempFileUtil
+	 * @param tempRowFiles
+	 * @param session
+	 * @param threadPool
+	 *            the rows of the temp files are read ahead and written in
+	 *            these threads.
+	 */
+	MergeSortImpl( int dataCountOfUnit, MergeSortUtil mergeSortUtil,
+			MergeTempFileUtil tempFileUtil, List tempRowFiles,
+			DataEngineSession session, SortThreadPool threadPool )
 	{
 		this.dataCountOfUnit = dataCountOfUnit;
 		this.mergeSortUtil = mergeSortUtil;
 		this.tempFileUtil = tempFileUtil;
 		this.tempRowFiles = tempRowFiles;
 		this.session = session;
+		this.threadPool = threadPool;
 	}
 	
 	/**
@@ -70,9 +100,9 @@ class MergeSortImpl
 			granularity = getMergeGranularity( );
 			if ( granularity == tempRowFiles.size( ) )
 			{
-				goalFile = new MergeSortRowFiles( getSubList( tempRowFiles,
+				goalFile = new MergeSortRowFiles( prefetch( getSubList( tempRowFiles,
 						0,
-						tempRowFiles.size( ) - 1 ), mergeSortUtil );
+						tempRowFiles.size( ) - 1 ) ), mergeSortUtil );
 				tempRowFiles.clear( );
 				finish = true;
 			}
@@ -145,6 +175,43 @@ class MergeSortImpl
 		return rowFiles;
 	}
 
+	/**
+	 * Wraps the row files to read ahead their rows in the sort threads. The
+	 * read ahead blocks take half of the memory of one unit, and the blocks
+	 * read from the files are not larger than them.
+	 * 
+	 * @param rowFiles
+	 * @return
+	 */
+	private IRowIterator[] prefetch( RowFile[] rowFiles )
+	{
+		int blockSize = getBlockSize( rowFiles.length );
+		for ( int i = 0; i < rowFiles.length; i++ )
+		{
+			rowFiles[i].setReadBlockSize( blockSize );
+		}
+		if ( threadPool == null )
+			return rowFiles;
+		
+		IRowIterator[] rowIterators = new IRowIterator[rowFiles.length];
+		for ( int i = 0; i < rowFiles.length; i++ )
+		{
+			rowIterators[i] = new PrefetchRowIterator( rowFiles[i],
+					threadPool,
+					blockSize );
+		}
+		return rowIterators;
+	}
+	
+	/**
+	 * @param fileCount
+	 * @return the row count of a read ahead block
+	 */
+	private int getBlockSize( int fileCount )
+	{
+		return Math.max( 1, dataCountOfUnit / ( 2 * fileCount ) );
+	}
+
 	/**
 	 * merge rows in multi files to one file.
 	 * 
@@ -156,16 +223,107 @@ class MergeSortImpl
 	private void mergeRowFiles( RowFile[] sourceFiles, RowFile targetFile )
 			throws IOException, DataException
 	{
-		MergeSortRowFiles mergeSortRowSet = new MergeSortRowFiles( sourceFiles,
+		MergeSortRowFiles mergeSortRowSet = new MergeSortRowFiles( prefetch( sourceFiles ),
 				mergeSortUtil );
-		IResultObject resultObject = mergeSortRowSet.fetch( );
-		while ( resultObject != null )
+		boolean merged = false;
+		try
 		{
-			targetFile.write( resultObject );
-			resultObject = mergeSortRowSet.fetch( );
+			if ( threadPool == null )
+			{
+				IResultObject resultObject = mergeSortRowSet.fetch( );
+				while ( resultObject != null )
+				{
+					targetFile.write( resultObject );
+					resultObject = mergeSortRowSet.fetch( );
+				}
+			}
+			else
+			{
+				mergeRowsInThreads( mergeSortRowSet,
+						targetFile,
+						getBlockSize( sourceFiles.length ) );
+			}
+			merged = true;
+		}
+		finally
+		{
+			// the source files are deleted when they are closed
+			mergeSortRowSet.close( );
+			if ( !merged )
+			{
+				targetFile.close( );
+			}
 		}
-		mergeSortRowSet.close( );
 		targetFile.endWrite( );
 	}
 	
+	/**
+	 * Writes the merged rows block by block in the sort threads.
+	 * 
+	 * @param mergeSortRowSet
+	 * @param targetFile
+	 * @param blockSize
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void mergeRowsInThreads( MergeSortRowFiles mergeSortRowSet,
+			RowFile targetFile, int blockSize ) throws IOException,
+			DataException
+	{
+		IResultObject[] block = new IResultObject[blockSize];
+		int count = 0;
+		Future<Object> lastWrite = null;
+		try
+		{
+			IResultObject resultObject = mergeSortRowSet.fetch( );
+			while ( resultObject != null )
+			{
+				block[count++] = resultObject;
+				if ( count == blockSize )
+				{
+					lastWrite = writeRows( targetFile, block, count, lastWrite );
+					block = new IResultObject[blockSize];
+					count = 0;
+				}
+				resultObject = mergeSortRowSet.fetch( );
+			}
+			if ( count > 0 )
+			{
+				lastWrite = writeRows( targetFile, block, count, lastWrite );
+			}
+			SortThreadPool.waitFor( lastWrite );
+		}
+		finally
+		{
+			SortThreadPool.waitQuietly( lastWrite );
+		}
+	}
+
+	/**
+	 * Writes the rows in a sort thread after the last write of the file is
+	 * done.
+	 * 
+	 * @param targetFile
+	 * @param rows
+	 * @param count
+	 * @param lastWrite
+	 * @return the future of the write
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private Future<Object> writeRows( final RowFile targetFile,
+			final IResultObject[] rows, final int count, Future<Object> lastWrite )
+			throws IOException, DataException
+	{
+		SortThreadPool.waitFor( lastWrite );
+		return threadPool.submit( new Callable<Object>( ) {
+
+			public Object call( ) throws Exception
+			{
+				targetFile.writeRows( rows, count );
+				return null;
+			}
+		} );
+	}
+	
 }
@@ -12,8 +12,6 @@
 package org.eclipse.birt.data.engine.executor.cache.disk;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Comparator;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.odi.IResultObject;
@@ -27,9 +25,13 @@ class MergeSortRowFiles implements IRowIterator
 {
 	private IRowIterator[] subRowIterators = null;
 	private MergeSortUtil mergeSortUtil = null;
-	private ValueIndex[] rowBuffer = null;
-	private ValueIndex mValueIndex = null;
-	private int rowBufferSize = 0;
+	
+	// the current row of every sub iterator, null if the iterator is exhausted
+	private IResultObject[] headRows = null;
+	
+	// loser tree on the sub iterators, loserTree[0] is the index of the winner
+	private int[] loserTree = null;
+	private int treeSize = 0;
 	
 	/**
 	 * @param rowFiles
@@ -42,7 +44,7 @@ class MergeSortRowFiles implements IRowIterator
 		
 		this.subRowIterators = subRowIterators;
 		this.mergeSortUtil = mergeSortUtil;
-		this.mValueIndex = new ValueIndex( null, 0, mergeSortUtil.getComparator( ) );
+		this.treeSize = subRowIterators.length;
 	}
 	
 	/*
@@ -57,7 +59,7 @@ class MergeSortRowFiles implements IRowIterator
 			subRowIterators[i].reset( );
 		}
 		
-		rowBuffer = null;
+		headRows = null;
 	}
 
 	/*
@@ -65,52 +67,25 @@ class MergeSortRowFiles implements IRowIterator
 	 */
 	public IResultObject fetch( ) throws IOException, DataException
 	{	
-		if ( rowBuffer == null )
+		if ( headRows == null )
 		{
 			prepareFirstFetch( );
 		}
-		if ( rowBufferSize == 0 )
+		if ( treeSize == 0 )
 		{
 			return null;
 		}
 		
-		ValueIndex reObj = rowBuffer[0];
-		IResultObject value = reObj.value;
-		
-		IResultObject readValue = subRowIterators[reObj.index].fetch( );
-		if( readValue == null )
-		{
-			rowBufferSize--;
-			if( rowBufferSize > 0 )
-			{
-				ValueIndex[] tBuffer = new ValueIndex[rowBufferSize];
-				System.arraycopy( rowBuffer, 1, tBuffer, 0, rowBufferSize );
-				rowBuffer = tBuffer;
-			}
-		}
-		else
+		int winner = loserTree[0];
+		IResultObject value = headRows[winner];
+		if ( value == null )
 		{
-			int pos = 0;
-			mValueIndex.value = readValue;
-			mValueIndex.index = reObj.index;
-			if( rowBufferSize > 1 )
-			{
-				pos = Arrays.binarySearch( rowBuffer, mValueIndex );
-				
-				if( pos < 0 )
-					pos = ( pos + 1 ) * -1;
-				pos--;
-				if( pos == -1 )
-					pos = 0;
-
-				if( pos > 0 )
-				{
-					System.arraycopy( rowBuffer, 1 , rowBuffer, 0, pos );
-				}
-			}
-			rowBuffer[pos] = mValueIndex;
-			mValueIndex = reObj;
+			// all the sub iterators are exhausted
+			return null;
 		}
+		
+		headRows[winner] = subRowIterators[winner].fetch( );
+		adjust( winner );
 		return value;
 	}
 	
@@ -120,25 +95,66 @@ class MergeSortRowFiles implements IRowIterator
 	 */
 	private void prepareFirstFetch( ) throws IOException, DataException
 	{
-		rowBuffer = new ValueIndex[subRowIterators.length];
+		headRows = new IResultObject[treeSize];
+		for ( int i = 0; i < treeSize; i++ )
+		{
+			headRows[i] = subRowIterators[i].fetch( );
+		}
 		
-		for ( int i = 0; i < rowBuffer.length; i++ )
+		// treeSize is used as the index of a virtual row which is less than
+		// all the rows, so that every leaf can be adjusted into the tree.
+		loserTree = new int[Math.max( treeSize, 1 )];
+		for ( int i = 0; i < loserTree.length; i++ )
+		{
+			loserTree[i] = treeSize;
+		}
+		for ( int i = treeSize - 1; i >= 0; i-- )
 		{
-			IResultObject value = subRowIterators[i].fetch( );
-			if( value != null )
-				rowBuffer[i] = new ValueIndex( value, i, this.mergeSortUtil.getComparator( ) );;
+			adjust( i );
 		}
-		rowBufferSize = 0;
-		for ( int i = 0; i < rowBuffer.length; i++ )
+	}
+	
+	/**
+	 * Replays the matches from the leaf to the root after the row of the leaf
+	 * is changed.
+	 * 
+	 * @param leaf
+	 */
+	private void adjust( int leaf )
+	{
+		int winner = leaf;
+		for ( int parent = ( leaf + treeSize ) / 2; parent > 0; parent /= 2 )
 		{
-			if( rowBuffer[i] != null )
+			if ( beats( loserTree[parent], winner ) )
 			{
-				rowBuffer[rowBufferSize] = rowBuffer[i];
-				rowBufferSize++;
+				int loser = winner;
+				winner = loserTree[parent];
+				loserTree[parent] = loser;
 			}
 		}
-		Arrays.sort( rowBuffer, 0, rowBufferSize );
+		loserTree[0] = winner;
+	}
+	
+	/**
+	 * The exhausted iterators are greater than any row. Equal rows are ordered
+	 * by the index of the iterator, so that the merge is stable.
+	 * 
+	 * @return true if the row of index1 is before the row of index2
+	 */
+	private boolean beats( int index1, int index2 )
+	{
+		if ( index1 == treeSize )
+			return true;
+		if ( index2 == treeSize )
+			return false;
+		if ( headRows[index1] == null )
+			return headRows[index2] == null && index1 < index2;
+		if ( headRows[index2] == null )
+			return true;
 		
+		int result = mergeSortUtil.getComparator( ).compare( headRows[index1],
+				headRows[index2] );
+		return result < 0 || ( result == 0 && index1 < index2 );
 	}
 	
 	/*
@@ -154,38 +170,7 @@ class MergeSortRowFiles implements IRowIterator
 		}
 		
 		subRowIterators = null;
-	}
-
-	static class ValueIndex implements Comparable
-	{
-		IResultObject value;
-		int index;
-		private Comparator comparator;
-		
-		ValueIndex( IResultObject value, int index, Comparator comparator )
-		{
-			this.value = value;
-			this.index = index;
-			this.comparator = comparator;
-		}
-
-		public int compareTo(Object o)
-		{
-			ValueIndex other = ( ( ValueIndex ) o );
-			int result = comparator.compare( value, other.value  );
-			if( result == 0 )
-			{
-				if( index > other.index )
-					return 1;
-				else if( index == other.index )
-					return 0;
-				else 
-					return -1;
-					
-			}
-			return result;
-		}
+		headRows = null;
 	}
 	
 }
-
@@ -21,8 +21,8 @@ import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
  */
 class MergeTempFileUtil
 {
-	// temp dir
-	private String tempDirStr;
+	// temp dirs, the temp files are spread over them
+	private String[] tempDirStrs;
 	
 	// result object util
 	private ResultObjectUtil resultObjectUtil;
@@ -32,6 +32,9 @@ class MergeTempFileUtil
 	private int curLevel = 0;
 	private int curIndex = 0;
 	
+	// count of the created temp files, used to choose the temp dir
+	private int fileCount = 0;
+	
 	// the prefix of temp file
 	private final static String tempFilePrefix = "data";
 	
@@ -41,12 +44,30 @@ class MergeTempFileUtil
 	 */
 	MergeTempFileUtil( String tempDirStr, ResultObjectUtil resultObjectUtil )
 	{
-		this.tempDirStr = tempDirStr;
+		this( new String[]{
+			tempDirStr
+		}, resultObjectUtil );
+	}
+
+	/**
+	 * @param tempDirStrs
+	 *            the temp files are created in these dirs in turn, which can
+	 *            be on different disks.
+	 * @param resultObjectUtil
+	 */
+	MergeTempFileUtil( String[] tempDirStrs, ResultObjectUtil resultObjectUtil )
+	{
+		assert tempDirStrs != null && tempDirStrs.length > 0;
+		
+		this.tempDirStrs = tempDirStrs;
 		this.resultObjectUtil = resultObjectUtil;
 
-		File tempDir = new File( tempDirStr );
-		if ( FileSecurity.fileExist( tempDir ) == false )
-			FileSecurity.fileMakeDirs( tempDir );
+		for ( int i = 0; i < tempDirStrs.length; i++ )
+		{
+			File tempDir = new File( tempDirStrs[i] );
+			if ( FileSecurity.fileExist( tempDir ) == false )
+				FileSecurity.fileMakeDirs( tempDir );
+		}
 	}
 
 	/**
@@ -59,6 +80,7 @@ class MergeTempFileUtil
 	 */
 	RowFile newTempFile( int cacheSize )
 	{
+		String tempDirStr = tempDirStrs[fileCount++ % tempDirStrs.length];
 		return new RowFile( new File( tempDirStr, tempFilePrefix
 				+ "_" + curLevel + "_" + curIndex++ ),
 				resultObjectUtil,
@@ -76,14 +98,17 @@ class MergeTempFileUtil
 	}
 	
 	/**
-	 * Delete the temperary dir.
+	 * Delete the temperary dirs.
 	 * 
 	 */
 	void clearTempDir( )
 	{
-		File tempDir = new File( tempDirStr );
-		if ( FileSecurity.fileExist( tempDir ) )
-			FileSecurity.fileDelete( tempDir );
+		for ( int i = 0; i < tempDirStrs.length; i++ )
+		{
+			File tempDir = new File( tempDirStrs[i] );
+			if ( FileSecurity.fileExist( tempDir ) )
+				FileSecurity.fileDelete( tempDir );
+		}
 	}
 	
 }
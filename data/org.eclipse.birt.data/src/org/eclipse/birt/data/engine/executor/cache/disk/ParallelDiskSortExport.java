@@ -0,0 +1,392 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.IRowResultSet;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.executor.cache.SortKeyComparator;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * The implementation of DataBaseExport which sorts the data with several
+ * threads. The rows are split into runs, the sort keys of every run are
+ * evaluated in current thread, then the run is sorted by the keys, serialized
+ * and written to a temp file in a sort thread while the next run is fetched.
+ * The runs are merged with the temp files read ahead in the sort threads.
+ *
+ * The rows of all the runs being written and the run being fetched are in
+ * memory at the same time, so the size of a run is dataCountOfUnit divided by
+ * (thread count + 1).
+ */
+class ParallelDiskSortExport extends DiskDataExport
+{
+	private int dataCountOfUnit;
+	private int dataCountOfRun;
+
+	private MergeTempFileUtil tempFileUtil;
+	private MergeSortUtil mergeSortUtil;
+	private SortThreadPool threadPool;
+
+	// the comparator whose sort keys can be compared in the sort threads, null
+	// if the runs are sorted in current thread
+	private SortKeyComparator sortKeyComparator;
+	// the compare hints of the sort keys are used by one thread at a time
+	private final Object sortLock = new Object( );
+
+	// the temp files of the runs
+	private List runFiles;
+
+	// the writing of the runs which is not done
+	private LinkedList pendingWrites;
+
+	// the rows of current run
+	private IResultObject[] rowBuffer;
+	private int rowCount;
+
+	// the goal file
+	private IRowIterator goalRowIterator = null;
+
+	/**
+	 * @param infoMap
+	 * @param comparator
+	 * @param resultObjectUtil
+	 * @param threadCount
+	 */
+	ParallelDiskSortExport( Map infoMap, Comparator comparator,
+			ResultObjectUtil resultObjectUtil, int threadCount )
+	{
+		dataCountOfUnit = Integer.parseInt( (String) infoMap.get( "dataCountOfUnit" ) );
+
+		if ( dataCountOfUnit < 2 )
+		{
+			throw new IllegalArgumentException( "the dataCountOfUnit of "
+					+ dataCountOfUnit + " is less than 2 "
+					+ ", and then merge sort on file can not be done" );
+		}
+
+		dataCountOfRun = Math.max( 2, dataCountOfUnit / ( threadCount + 1 ) );
+		rowBuffer = new IResultObject[dataCountOfRun];
+
+		tempFileUtil = new MergeTempFileUtil( getTempDirs( infoMap ),
+				resultObjectUtil );
+		mergeSortUtil = MergeSortUtil.getUtil( comparator );
+		threadPool = new SortThreadPool( threadCount );
+		if ( comparator instanceof SortKeyComparator )
+		{
+			sortKeyComparator = (SortKeyComparator) comparator;
+		}
+
+		runFiles = new ArrayList( );
+		pendingWrites = new LinkedList( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#exportStartDataToDisk(org.eclipse.birt.data.engine.odi.IResultObject[])
+	 */
+	public void exportStartDataToDisk( IResultObject[] resultObjects )
+			throws IOException, DataException
+	{
+		try
+		{
+			for ( int i = 0; i < resultObjects.length; i++ )
+			{
+				addNewRow( resultObjects[i] );
+			}
+		}
+		catch ( IOException e )
+		{
+			discardRunFiles( );
+			throw e;
+		}
+		catch ( DataException e )
+		{
+			discardRunFiles( );
+			throw e;
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#exportRestDataToDisk(org.eclipse.birt.data.engine.odi.IResultObject, org.eclipse.birt.data.engine.executor.cache.IRowResultSet, int)
+	 */
+	public int exportRestDataToDisk( IResultObject resultObject,
+			IRowResultSet rs, int maxRows ) throws DataException, IOException
+	{
+		int dataCountOfRest;
+		try
+		{
+			dataCountOfRest = innerExportRestData( resultObject,
+					rs,
+					dataCountOfUnit,
+					maxRows );
+			waitForWrites( 0 );
+
+			MergeSortImpl mergeSortImpl = new MergeSortImpl( this.dataCountOfUnit,
+					this.mergeSortUtil,
+					this.tempFileUtil,
+					this.runFiles,
+					session,
+					this.threadPool );
+			this.goalRowIterator = mergeSortImpl.mergeSortOnUnits( );
+		}
+		catch ( IOException e )
+		{
+			discardRunFiles( );
+			throw e;
+		}
+		catch ( DataException e )
+		{
+			discardRunFiles( );
+			throw e;
+		}
+
+		return dataCountOfRest;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#innerExportRestData(org.eclipse.birt.data.engine.odi.IResultObject, org.eclipse.birt.data.engine.executor.cache.IRowResultSet, int, int)
+	 */
+	protected int innerExportRestData( IResultObject resultObject,
+			IRowResultSet rs, int dataCountOfUnit, int maxRows )
+			throws DataException, IOException
+	{
+		addNewRow( resultObject );
+
+		int columnCount = rs.getMetaData( ).getFieldCount( );
+		int currDataCount = 1;
+		IResultObject odaObject = null;
+
+		while ( ( odaObject = rs.next( ) ) != null )
+		{
+			if ( maxRows > 0 && currDataCount > maxRows )
+				throw new DataException( ResourceConstants.EXCEED_MAX_DATA_OBJECT_ROWS );
+			if ( session.getStopSign( ).isStopped( ) )
+				return 0;
+			Object[] ob = new Object[columnCount];
+			for ( int i = 0; i < columnCount; i++ )
+				ob[i] = odaObject.getFieldValue( i + 1 );
+
+			addNewRow( resultObjectUtil.newResultObject( ob ) );
+			currDataCount++;
+		}
+
+		processLastRun( );
+
+		return currDataCount;
+	}
+
+	/**
+	 * @param resultObject
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void addNewRow( IResultObject resultObject ) throws IOException,
+			DataException
+	{
+		rowBuffer[rowCount++] = resultObject;
+		if ( rowCount == dataCountOfRun )
+		{
+			IResultObject[] run = rowBuffer;
+			rowBuffer = new IResultObject[dataCountOfRun];
+			rowCount = 0;
+			writeRun( run );
+		}
+	}
+
+	/**
+	 * Sorts the run and writes it in a sort thread. The count of the runs being
+	 * written is not more than the count of the threads. The run is not used
+	 * by current thread after it is submitted.
+	 *
+	 * @param run
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void writeRun( final IResultObject[] run ) throws IOException,
+			DataException
+	{
+		final Object[][] sortKeys;
+		if ( sortKeyComparator != null )
+		{
+			// the sort keys may be evaluated by scripts in current thread only
+			sortKeys = new Object[run.length][];
+			for ( int i = 0; i < run.length; i++ )
+			{
+				sortKeys[i] = sortKeyComparator.getSortKeys( run[i] );
+			}
+		}
+		else
+		{
+			// the comparator can be only used in current thread
+			sortKeys = null;
+			mergeSortUtil.sortSelf( run );
+		}
+
+		final RowFile rowFile = tempFileUtil.newTempFile( 0 );
+		runFiles.add( rowFile );
+
+		waitForWrites( threadPool.getThreadCount( ) - 1 );
+		pendingWrites.add( threadPool.submit( new Callable<Object>( ) {
+
+			public Object call( ) throws Exception
+			{
+				if ( sortKeys != null )
+				{
+					sortRun( run, sortKeys );
+				}
+				rowFile.writeRows( run, run.length );
+				rowFile.endWrite( );
+				return null;
+			}
+		} ) );
+	}
+
+	/**
+	 * Sorts the run by the sort keys of its rows.
+	 *
+	 * @param run
+	 * @param sortKeys
+	 */
+	private void sortRun( IResultObject[] run, Object[][] sortKeys )
+	{
+		KeyedRow[] rows = new KeyedRow[run.length];
+		for ( int i = 0; i < run.length; i++ )
+		{
+			rows[i] = new KeyedRow( run[i], sortKeys[i] );
+		}
+		synchronized ( sortLock )
+		{
+			Arrays.sort( rows, new Comparator<KeyedRow>( ) {
+
+				public int compare( KeyedRow row1, KeyedRow row2 )
+				{
+					return sortKeyComparator.compareSortKeys( row1.sortKeys,
+							row2.sortKeys );
+				}
+			} );
+		}
+		for ( int i = 0; i < run.length; i++ )
+		{
+			run[i] = rows[i].row;
+		}
+	}
+
+	/**
+	 * The last run is kept in memory. Its row file is created with a memory
+	 * cache as large as the run, so all the rows are written to the cache
+	 * and no temp file is created for it.
+	 *
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void processLastRun( ) throws IOException, DataException
+	{
+		IResultObject[] run = new IResultObject[rowCount];
+		System.arraycopy( rowBuffer, 0, run, 0, rowCount );
+		rowBuffer = null;
+		rowCount = 0;
+		synchronized ( sortLock )
+		{
+			mergeSortUtil.sortSelf( run );
+		}
+
+		RowFile rowFile = tempFileUtil.newTempFile( run.length );
+		rowFile.writeRows( run, run.length );
+		rowFile.endWrite( );
+		runFiles.add( rowFile );
+	}
+
+	/**
+	 * Waits until the count of the runs being written is not more than
+	 * maxCount.
+	 *
+	 * @param maxCount
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void waitForWrites( int maxCount ) throws IOException,
+			DataException
+	{
+		while ( pendingWrites.size( ) > maxCount )
+		{
+			SortThreadPool.waitFor( (Future) pendingWrites.removeFirst( ) );
+		}
+	}
+
+	/**
+	 * Waits for the writing and deletes the temp files of the runs.
+	 */
+	private void discardRunFiles( )
+	{
+		while ( !pendingWrites.isEmpty( ) )
+		{
+			SortThreadPool.waitQuietly( (Future) pendingWrites.removeFirst( ) );
+		}
+		for ( int i = 0; i < runFiles.size( ); i++ )
+		{
+			( (RowFile) runFiles.get( i ) ).close( );
+		}
+		runFiles.clear( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#outputResultObjects(org.eclipse.birt.data.engine.odi.IResultObject[], int)
+	 */
+	protected void outputResultObjects( IResultObject[] resultObjects,
+			int indexOfUnit ) throws IOException
+	{
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#getRowIterator()
+	 */
+	public IRowIterator getRowIterator( )
+	{
+		return goalRowIterator;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#close()
+	 */
+	public void close( )
+	{
+		tempFileUtil.clearTempDir( );
+		threadPool.shutdown( );
+	}
+
+	/**
+	 * A row with the values of its sort keys.
+	 */
+	private static class KeyedRow
+	{
+
+		IResultObject row;
+		Object[] sortKeys;
+
+		KeyedRow( IResultObject row, Object[] sortKeys )
+		{
+			this.row = row;
+			this.sortKeys = sortKeys;
+		}
+	}
+}
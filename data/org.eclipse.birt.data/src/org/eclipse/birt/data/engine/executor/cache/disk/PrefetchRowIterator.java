@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Reads the rows of an iterator block by block in the sort threads, so the
+ * next block is read and deserialized while the current block is merged. At
+ * most one block is read ahead, and the wrapped iterator is only accessed by
+ * one thread at a time.
+ */
+class PrefetchRowIterator implements IRowIterator
+{
+
+	private IRowIterator rowIterator;
+	private SortThreadPool threadPool;
+	private int blockSize;
+
+	private Future<IResultObject[]> nextBlock;
+	private IResultObject[] currBlock;
+	private int currPos;
+	private boolean isEnd;
+
+	/**
+	 * @param rowIterator
+	 * @param threadPool
+	 * @param blockSize
+	 */
+	PrefetchRowIterator( IRowIterator rowIterator, SortThreadPool threadPool,
+			int blockSize )
+	{
+		assert blockSize > 0;
+
+		this.rowIterator = rowIterator;
+		this.threadPool = threadPool;
+		this.blockSize = blockSize;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#fetch()
+	 */
+	public IResultObject fetch( ) throws IOException, DataException
+	{
+		if ( currBlock == null || currPos == currBlock.length )
+		{
+			if ( isEnd )
+				return null;
+			if ( nextBlock == null )
+				nextBlock = readBlock( );
+
+			currBlock = SortThreadPool.waitFor( nextBlock );
+			currPos = 0;
+			if ( currBlock.length < blockSize )
+			{
+				isEnd = true;
+				nextBlock = null;
+			}
+			else
+			{
+				nextBlock = readBlock( );
+			}
+			if ( currBlock.length == 0 )
+				return null;
+		}
+		return currBlock[currPos++];
+	}
+
+	/**
+	 * @return the future of the next block, the block is shorter than
+	 *         blockSize at the end of the iterator
+	 */
+	private Future<IResultObject[]> readBlock( )
+	{
+		return threadPool.submit( new Callable<IResultObject[]>( ) {
+
+			public IResultObject[] call( ) throws Exception
+			{
+				IResultObject[] block = new IResultObject[blockSize];
+				int count = 0;
+				IResultObject row;
+				while ( count < blockSize
+						&& ( row = rowIterator.fetch( ) ) != null )
+				{
+					block[count++] = row;
+				}
+				if ( count < blockSize )
+				{
+					IResultObject[] lastBlock = new IResultObject[count];
+					System.arraycopy( block, 0, lastBlock, 0, count );
+					return lastBlock;
+				}
+				return block;
+			}
+		} );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#reset()
+	 */
+	public void reset( ) throws DataException
+	{
+		SortThreadPool.waitQuietly( nextBlock );
+		nextBlock = null;
+		currBlock = null;
+		isEnd = false;
+		rowIterator.reset( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#close()
+	 */
+	public void close( ) throws DataException
+	{
+		SortThreadPool.waitQuietly( nextBlock );
+		nextBlock = null;
+		currBlock = null;
+		rowIterator.close( );
+	}
+}
@@ -39,6 +39,13 @@ class RowFile implements IRowIterator, ICloseListener
 	private DataFileReader dfr = null;
 	private DataFileWriter dfw = null;
 	
+	// the rows are read from file in blocks
+	static final int DEFAULT_READ_BLOCK_SIZE = 256;
+	private int readBlockSize = DEFAULT_READ_BLOCK_SIZE;
+	private IResultObject[] readBlock = null;
+	private int readBlockPos = 0;
+	private int readBlockCount = 0;
+	
 	/**
 	 * 
 	 * @param file
@@ -55,6 +62,25 @@ class RowFile implements IRowIterator, ICloseListener
 		DataEngineThreadLocal.getInstance( ).getCloseListener( ).add( this );
 	}
 	
+	/**
+	 * Sets the max count of the rows read from file at one time. The rows
+	 * read ahead are in memory, so the merge of several files sets the size
+	 * according to its memory budget.
+	 * 
+	 * @param readBlockSize
+	 */
+	void setReadBlockSize( int readBlockSize )
+	{
+		this.readBlockSize = Math.max( 1, readBlockSize );
+		// a larger block is dropped once its rows are all fetched
+		if ( readBlock != null
+				&& readBlock.length > this.readBlockSize
+				&& readBlockPos >= readBlockCount )
+		{
+			readBlock = null;
+		}
+	}
+
 	//-------------------------write-----------------------
 	/**
 	 * Set cache size and initialize cache.
@@ -140,24 +166,10 @@ class RowFile implements IRowIterator, ICloseListener
 		{
 			createWriter( );
 		}
-		dfw.write( getSubArray( resultObjects, from, count ), count );
+		dfw.write( resultObjects, from, count );
 		rowCount += count;
 	}
 	
-	/**
-	 * Get subarray of a object array
-	 * @param resultObjects
-	 * @param count
-	 * @throws IOException
-	 */
-	private IResultObject[] getSubArray( IResultObject[] resultObjects, int from,
-			int count )
-	{
-		IResultObject[] subArray = new IResultObject[count];
-		System.arraycopy( resultObjects, from, subArray, 0, count );
-		return subArray;
-	}
-	
 	/**
 	 * Create a instance of DataFileWriter
 	 *
@@ -243,8 +255,24 @@ class RowFile implements IRowIterator, ICloseListener
 		{
 			createReader( );
 		}
+		if ( readBlockPos >= readBlockCount )
+		{
+			int count = Math.min( readBlockSize, rowCount - readPos );
+			if ( readBlock == null || readBlock.length < count )
+			{
+				readBlock = new IResultObject[count];
+			}
+			readBlockCount = dfr.read( readBlock, count );
+			readBlockPos = 0;
+			if ( readBlockCount == 0 )
+			{
+				return null;
+			}
+		}
 		readPos++;
-		return ( dfr.read( 1 ) )[0];
+		IResultObject resultObject = readBlock[readBlockPos];
+		readBlock[readBlockPos++] = null;
+		return resultObject;
 	}
 	
 	/**
@@ -256,6 +284,8 @@ class RowFile implements IRowIterator, ICloseListener
 		if ( dfr != null )
 			dfr.close( );
 		
+		readBlockPos = 0;
+		readBlockCount = 0;
 		dfr = DataFileReader.newInstance( tempFile, resultObjectUtil );
 	}
 	
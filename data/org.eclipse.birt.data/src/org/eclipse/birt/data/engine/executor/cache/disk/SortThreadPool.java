@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * The threads used by the parallel disk sort to serialize and write the sorted
+ * runs, and to read ahead the runs during the merge. The rows are never
+ * compared in these threads, since the comparator may evaluate the binding
+ * expressions in the script context of the caller.
+ */
+class SortThreadPool
+{
+
+	private int threadCount;
+	private ExecutorService executor;
+
+	/**
+	 * @param threadCount
+	 */
+	SortThreadPool( int threadCount )
+	{
+		this.threadCount = threadCount;
+		this.executor = Executors.newFixedThreadPool( threadCount,
+				new ThreadFactory( ) {
+
+					private int threadIndex = 0;
+
+					public synchronized Thread newThread( Runnable r )
+					{
+						Thread thread = new Thread( r, "BIRT disk sort-" //$NON-NLS-1$
+								+ ( threadIndex++ ) );
+						thread.setDaemon( true );
+						return thread;
+					}
+				} );
+	}
+
+	/**
+	 * @return the count of the threads
+	 */
+	int getThreadCount( )
+	{
+		return threadCount;
+	}
+
+	/**
+	 * @param task
+	 * @return the future of the task
+	 */
+	<T> Future<T> submit( Callable<T> task )
+	{
+		return executor.submit( task );
+	}
+
+	/**
+	 * Stops the threads, the submitted tasks are still executed.
+	 */
+	void shutdown( )
+	{
+		executor.shutdown( );
+	}
+
+	/**
+	 * Waits for the task and throws the exception of the task.
+	 *
+	 * @param future
+	 * @return the result of the task, null if future is null
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	static <T> T waitFor( Future<T> future ) throws IOException,
+			DataException
+	{
+		if ( future == null )
+			return null;
+		try
+		{
+			return future.get( );
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			IOException ioe = new IOException( e.getLocalizedMessage( ) );
+			ioe.initCause( e );
+			throw ioe;
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+			if ( cause instanceof IOException )
+				throw (IOException) cause;
+			if ( cause instanceof DataException )
+				throw (DataException) cause;
+			if ( cause instanceof RuntimeException )
+				throw (RuntimeException) cause;
+			if ( cause instanceof Error )
+				throw (Error) cause;
+			IOException ioe = new IOException( cause.getLocalizedMessage( ) );
+			ioe.initCause( cause );
+			throw ioe;
+		}
+	}
+
+	/**
+	 * Waits for the task and ignores its result, used in the clean up.
+	 *
+	 * @param future
+	 */
+	static void waitQuietly( Future future )
+	{
+		try
+		{
+			waitFor( future );
+		}
+		catch ( Exception e )
+		{
+			// the task has failed, nothing to clean
+		}
+	}
+}
@@ -47,6 +47,7 @@ import org.eclipse.birt.data.engine.executor.MemoryDataSetCacheObject;
 import org.eclipse.birt.data.engine.executor.ResultClass;
 import org.eclipse.birt.data.engine.executor.ResultObject;
 import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectCodec;
 import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
@@ -147,6 +148,7 @@ class CacheUtilFactory
 		
 		private IResultClass rsClass;
 		private ResultObjectUtil roUtil;
+		private ResultObjectCodec codec;
 		
 		private int rowCount;
 		private String tempFolder;
@@ -180,6 +182,7 @@ class CacheUtilFactory
 			if ( roUtil == null )
 			{				
 				roUtil = ResultObjectUtil.newInstance( rsClass, session );
+				codec = roUtil.newCodec( );
 				try
 				{
 					fos = FileSecurity.createFileOutputStream( file );
@@ -195,7 +198,7 @@ class CacheUtilFactory
 			try
 			{
 				rowCount ++;
-				roUtil.writeData( bos, resultObject );
+				codec.writeRow( bos, resultObject );
 			}
 			catch ( IOException e )
 			{
@@ -290,6 +293,7 @@ class CacheUtilFactory
 		
 		private IResultClass rsMeta;
 		private ResultObjectUtil roUtil;
+		private ResultObjectCodec codec;
 		
 		private int rowCount;
 		private String tempDir;
@@ -315,6 +319,7 @@ class CacheUtilFactory
 			if ( roUtil == null )
 			{				
 				roUtil = ResultObjectUtil.newInstance( rsMeta, session );
+				codec = roUtil.newCodec( );
 				try
 				{
 					bos = new BufferedOutputStream( FileSecurity.createFileOutputStream( file,
@@ -330,7 +335,7 @@ class CacheUtilFactory
 			try
 			{
 				rowCount ++;
-				roUtil.writeData( bos, resultObject );
+				codec.writeRow( bos, resultObject );
 			}
 			catch ( IOException e )
 			{
@@ -394,6 +399,7 @@ class CacheUtilFactory
 		private BufferedInputStream bis;
 		
 		private ResultObjectUtil roUtil;
+		private ResultObjectCodec codec;
 		private IResultClass rsClass;
 		
 		private int rowCount;
@@ -426,7 +432,7 @@ class CacheUtilFactory
 				if ( currIndex == rowCount - 1 )
 					return null;
 				currIndex++;
-				return roUtil.readData( bis, null, 1 )[0];
+				return codec.readRow( bis, null );
 			}
 			catch ( IOException e )
 			{
@@ -466,6 +472,7 @@ class CacheUtilFactory
 				if ( rowCount > 0 )
 				{
 					roUtil = ResultObjectUtil.newInstance( rsClass, session );
+					codec = roUtil.newCodec( );
 					fis = FileSecurity.createFileInputStream( file );
 					bis = new BufferedInputStream( fis );
 				}
@@ -516,6 +523,7 @@ class CacheUtilFactory
 		private BufferedInputStream bis;
 		
 		private ResultObjectUtil roUtil;
+		private ResultObjectCodec codec;
 		private IResultClass rsClass;
 		
 		private DiskDataSetCacheObject cacheObject;
@@ -556,7 +564,7 @@ class CacheUtilFactory
 					return null;
 				
 				currIndex++;
-				return roUtil.readData( bis, this.session.getEngineContext( ).getClassLoader( ), 1 )[0];
+				return codec.readRow( bis, this.session.getEngineContext( ).getClassLoader( ) );
 			}
 			catch ( IOException e )
 			{
@@ -596,6 +604,7 @@ class CacheUtilFactory
 				if ( rowCount > 0 )
 				{
 					roUtil = ResultObjectUtil.newInstance( rsClass, session );
+					codec = roUtil.newCodec( );
 					fis = FileSecurity.createFileInputStream( file );
 					bis = new BufferedInputStream( fis );
 				}
@@ -972,6 +981,7 @@ class CacheUtilFactory
 		private BufferedOutputStream bos;
 
 		private ResultObjectUtil roUtil;
+		private ResultObjectCodec codec;
 
 		private int rowCount;
 		private DataEngineSession session;
@@ -1038,6 +1048,7 @@ class CacheUtilFactory
 			if ( roUtil == null )
 			{
 				roUtil = ResultObjectUtil.newInstance( rsClass, session );
+				codec = roUtil.newCodec( );
 				try
 				{
 					fos = FileSecurity.createFileOutputStream( dataFile, true );
@@ -1053,7 +1064,7 @@ class CacheUtilFactory
 			try
 			{
 				rowCount++;
-				roUtil.writeData( bos, resultObject );
+				codec.writeRow( bos, resultObject );
 			}
 			catch ( IOException e )
 			{
@@ -447,7 +447,8 @@ abstract class AbstractExpressionCompiler
 
 	
 	/**
-	 * compile the tree to script
+	 * compile the tree to script, and to Java evaluator if the expression is
+	 * simple enough
 	 * 
 	 * @param context
 	 * @param tree
@@ -457,6 +458,9 @@ abstract class AbstractExpressionCompiler
 			CompiledExpression expr )
 	{
 		assert ( expr instanceof BytecodeExpression );
+		// the evaluator must be compiled before the tree is transformed by
+		// the script compiler
+		( (BytecodeExpression) expr ).setEvaluator( JavaExpressionEvaluator.compile( tree ) );
 		CompilerEnvirons compilerEnv = getCompilerEnv( context );
 		Interpreter compiler = new Interpreter( );
 		Object compiledOb = compiler.compile( compilerEnv, tree, null, false );
@@ -24,6 +24,7 @@ import org.mozilla.javascript.Scriptable;
 public abstract class BytecodeExpression extends CompiledExpression
 {
 	private Script m_script;
+	private JavaExpressionEvaluator m_evaluator;
 	  
 	protected static Logger logger = Logger.getLogger( BytecodeExpression.class.getName( ) );
 	/**
@@ -37,12 +38,45 @@ public abstract class BytecodeExpression extends CompiledExpression
     	m_script = script;
     }
 
+	/**
+	 * Sets the Java evaluator of the expression, which is used instead of the
+	 * compiled script if the expression is simple enough.
+	 * 
+	 * @param evaluator
+	 *            the Java evaluator, null if the script must be executed.
+	 */
+	void setEvaluator( JavaExpressionEvaluator evaluator )
+	{
+		m_evaluator = evaluator;
+	}
+
+	/**
+	 * @return whether the expression is evaluated without the script.
+	 */
+	boolean hasEvaluator( )
+	{
+		return m_evaluator != null;
+	}
+
 	/**
 	 * Evaluates the compiled byte code
 	 */
 	public Object evaluate( ScriptContext context, Scriptable scope ) 
 		throws DataException
 	{
+	    if ( m_evaluator != null )
+	    {
+	    	try
+	    	{
+	    		return JavascriptEvalUtil.convertJavascriptValue(
+	    				m_evaluator.evaluate( Context.getCurrentContext( ), scope ) );
+	    	}
+	    	catch ( RuntimeException e )
+	    	{
+	    		// the value is not supported by the evaluator or the expression
+	    		// fails, execute the script which reports the error if any.
+	    	}
+	    }
 	    try
 	    {
 	    	Object result = JavascriptEvalUtil.convertJavascriptValue(
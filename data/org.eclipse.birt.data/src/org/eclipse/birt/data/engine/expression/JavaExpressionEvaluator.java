@@ -0,0 +1,489 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.expression;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Node;
+import org.mozilla.javascript.ScriptOrFnNode;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Token;
+import org.mozilla.javascript.Undefined;
+
+/**
+ * A tree of Java evaluators compiled from the Rhino parse tree of a simple
+ * expression, such as <code>row["a"] * row["b"]</code>,
+ * <code>row.x > 100</code> or <code>dataSetRow["q"] != null</code>. It
+ * evaluates the expression without running the Rhino interpreter.
+ * <p>
+ * Only literals, names, constant property access, arithmetic, comparison,
+ * logical and conditional operators and the calls of the BirtMath and BirtStr
+ * functions are compiled. The operators are evaluated by the Rhino
+ * ScriptRuntime, so the result is the same as the interpreted script. If a
+ * value can't be handled at runtime, the evaluator throws
+ * {@link FallbackException} and the caller should execute the script instead.
+ */
+abstract class JavaExpressionEvaluator
+{
+
+	/**
+	 * the objects whose functions can be called by the evaluator. These
+	 * functions have no side effect, so the script can be executed after a
+	 * failed evaluation.
+	 */
+	private static final String[] FUNCTION_OBJECTS = new String[]{
+			"BirtMath", "BirtStr" //$NON-NLS-1$ //$NON-NLS-2$
+	};
+
+	/**
+	 * Thrown when the evaluator can't evaluate the expression, the script
+	 * should be executed instead.
+	 */
+	static class FallbackException extends RuntimeException
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private FallbackException( )
+		{
+			super( null, null );
+		}
+
+		/*
+		 * the exception is used as a signal, no stack trace is needed.
+		 */
+		public synchronized Throwable fillInStackTrace( )
+		{
+			return this;
+		}
+	}
+
+	private static final FallbackException FALLBACK = new FallbackException( );
+
+	/**
+	 * Evaluates the expression.
+	 *
+	 * @param cx
+	 *            the Rhino context of current thread
+	 * @param scope
+	 *            the scope in which the script would be executed
+	 * @return the JavaScript value of the expression
+	 * @throws FallbackException
+	 *             if the expression should be evaluated by the script
+	 */
+	abstract Object evaluate( Context cx, Scriptable scope );
+
+	/**
+	 * Compiles the script tree of a single expression.
+	 *
+	 * @param tree
+	 * @return the evaluator, or null if the expression is not supported.
+	 */
+	static JavaExpressionEvaluator compile( ScriptOrFnNode tree )
+	{
+		Node statement = tree.getFirstChild( );
+		if ( statement == null
+				|| statement.getNext( ) != null
+				|| statement.getType( ) != Token.EXPR_RESULT )
+			return null;
+		Node expr = statement.getFirstChild( );
+		if ( expr == null || expr.getNext( ) != null )
+			return null;
+		return compileNode( expr );
+	}
+
+	private static JavaExpressionEvaluator compileNode( Node node )
+	{
+		switch ( node.getType( ) )
+		{
+			case Token.NUMBER :
+				return new Literal( ScriptRuntime.wrapNumber( node.getDouble( ) ) );
+			case Token.STRING :
+				return new Literal( node.getString( ) );
+			case Token.NULL :
+				return new Literal( null );
+			case Token.TRUE :
+				return new Literal( Boolean.TRUE );
+			case Token.FALSE :
+				return new Literal( Boolean.FALSE );
+			case Token.NAME :
+				return new Name( node.getString( ) );
+			case Token.GETPROP :
+			case Token.GETELEM :
+				return compileProperty( node );
+			case Token.CALL :
+				return compileCall( node );
+			case Token.NOT :
+			case Token.NEG :
+			case Token.POS :
+			{
+				JavaExpressionEvaluator operand = compileChildren( node, 1 )[0];
+				return operand == null ? null : new Unary( node.getType( ),
+						operand );
+			}
+			case Token.ADD :
+			case Token.SUB :
+			case Token.MUL :
+			case Token.DIV :
+			case Token.MOD :
+			case Token.EQ :
+			case Token.NE :
+			case Token.SHEQ :
+			case Token.SHNE :
+			case Token.LT :
+			case Token.LE :
+			case Token.GT :
+			case Token.GE :
+			case Token.AND :
+			case Token.OR :
+			{
+				JavaExpressionEvaluator[] operands = compileChildren( node, 2 );
+				return operands == null ? null : new Binary( node.getType( ),
+						operands[0],
+						operands[1] );
+			}
+			case Token.HOOK :
+			{
+				JavaExpressionEvaluator[] operands = compileChildren( node, 3 );
+				return operands == null ? null : new Conditional( operands[0],
+						operands[1],
+						operands[2] );
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * compiles the children of the node.
+	 *
+	 * @return the evaluators of the children, null if the count of children
+	 *         is not expected or any child is not supported.
+	 */
+	private static JavaExpressionEvaluator[] compileChildren( Node node,
+			int count )
+	{
+		JavaExpressionEvaluator[] result = new JavaExpressionEvaluator[count];
+		Node child = node.getFirstChild( );
+		for ( int i = 0; i < count; i++ )
+		{
+			if ( child == null )
+				return null;
+			result[i] = compileNode( child );
+			if ( result[i] == null )
+				return null;
+			child = child.getNext( );
+		}
+		return child == null ? result : null;
+	}
+
+	/**
+	 * compiles obj.name, obj["name"] and obj[index], the name or index must be
+	 * a constant.
+	 */
+	private static JavaExpressionEvaluator compileProperty( Node node )
+	{
+		Node target = node.getFirstChild( );
+		Node property = target == null ? null : target.getNext( );
+		if ( property == null || property.getNext( ) != null )
+			return null;
+		JavaExpressionEvaluator object = compileNode( target );
+		if ( object == null )
+			return null;
+		if ( property.getType( ) == Token.STRING )
+		{
+			String name = property.getString( );
+			// the array index in string form is an index property in Rhino
+			if ( isIndex( name ) )
+				return null;
+			return new Property( object, name, -1 );
+		}
+		if ( property.getType( ) == Token.NUMBER
+				&& node.getType( ) == Token.GETELEM )
+		{
+			double value = property.getDouble( );
+			if ( value >= 0 && value <= Integer.MAX_VALUE
+					&& value == (int) value )
+				return new Property( object, null, (int) value );
+		}
+		return null;
+	}
+
+	private static boolean isIndex( String name )
+	{
+		if ( name.length( ) == 0 )
+			return false;
+		for ( int i = 0; i < name.length( ); i++ )
+		{
+			if ( !Character.isDigit( name.charAt( i ) ) )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * compiles BirtMath.xxx( args ) and BirtStr.xxx( args ).
+	 */
+	private static JavaExpressionEvaluator compileCall( Node node )
+	{
+		Node function = node.getFirstChild( );
+		if ( function.getType( ) != Token.GETPROP )
+			return null;
+		Node objectName = function.getFirstChild( );
+		Node functionName = objectName.getNext( );
+		if ( objectName.getType( ) != Token.NAME
+				|| functionName.getType( ) != Token.STRING )
+			return null;
+		boolean supported = false;
+		for ( int i = 0; i < FUNCTION_OBJECTS.length; i++ )
+		{
+			if ( FUNCTION_OBJECTS[i].equals( objectName.getString( ) ) )
+			{
+				supported = true;
+				break;
+			}
+		}
+		if ( !supported )
+			return null;
+
+		int argCount = 0;
+		for ( Node arg = function.getNext( ); arg != null; arg = arg.getNext( ) )
+			argCount++;
+		JavaExpressionEvaluator[] args = new JavaExpressionEvaluator[argCount];
+		Node arg = function.getNext( );
+		for ( int i = 0; i < argCount; i++ )
+		{
+			args[i] = compileNode( arg );
+			if ( args[i] == null )
+				return null;
+			arg = arg.getNext( );
+		}
+		return new Call( objectName.getString( ),
+				functionName.getString( ),
+				args );
+	}
+
+	private static class Literal extends JavaExpressionEvaluator
+	{
+
+		private Object value;
+
+		Literal( Object value )
+		{
+			this.value = value;
+		}
+
+		Object evaluate( Context cx, Scriptable scope )
+		{
+			return value;
+		}
+	}
+
+	private static class Name extends JavaExpressionEvaluator
+	{
+
+		private String name;
+
+		Name( String name )
+		{
+			this.name = name;
+		}
+
+		Object evaluate( Context cx, Scriptable scope )
+		{
+			return ScriptRuntime.name( cx, scope, name );
+		}
+	}
+
+	private static class Property extends JavaExpressionEvaluator
+	{
+
+		private JavaExpressionEvaluator object;
+		private String name;
+		private int index;
+
+		Property( JavaExpressionEvaluator object, String name, int index )
+		{
+			this.object = object;
+			this.name = name;
+			this.index = index;
+		}
+
+		Object evaluate( Context cx, Scriptable scope )
+		{
+			Object target = object.evaluate( cx, scope );
+			if ( !( target instanceof Scriptable ) )
+				throw FALLBACK;
+			Object value = name != null
+					? ScriptableObject.getProperty( (Scriptable) target, name )
+					: ScriptableObject.getProperty( (Scriptable) target, index );
+			if ( value == Scriptable.NOT_FOUND )
+				return Undefined.instance;
+			return value;
+		}
+	}
+
+	private static class Call extends JavaExpressionEvaluator
+	{
+
+		private String objectName;
+		private String functionName;
+		private JavaExpressionEvaluator[] args;
+
+		Call( String objectName, String functionName,
+				JavaExpressionEvaluator[] args )
+		{
+			this.objectName = objectName;
+			this.functionName = functionName;
+			this.args = args;
+		}
+
+		Object evaluate( Context cx, Scriptable scope )
+		{
+			Object target = ScriptRuntime.name( cx, scope, objectName );
+			if ( !( target instanceof Scriptable ) )
+				throw FALLBACK;
+			Object function = ScriptableObject.getProperty( (Scriptable) target,
+					functionName );
+			if ( !( function instanceof Function ) )
+				throw FALLBACK;
+			Object[] values = new Object[args.length];
+			for ( int i = 0; i < args.length; i++ )
+			{
+				values[i] = args[i].evaluate( cx, scope );
+			}
+			return ( (Function) function ).call( cx,
+					scope,
+					(Scriptable) target,
+					values );
+		}
+	}
+
+	private static class Unary extends JavaExpressionEvaluator
+	{
+
+		private int type;
+		private JavaExpressionEvaluator operand;
+
+		Unary( int type, JavaExpressionEvaluator operand )
+		{
+			this.type = type;
+			this.operand = operand;
+		}
+
+		Object evaluate( Context cx, Scriptable scope )
+		{
+			Object value = operand.evaluate( cx, scope );
+			switch ( type )
+			{
+				case Token.NOT :
+					return Boolean.valueOf( !ScriptRuntime.toBoolean( value ) );
+				case Token.NEG :
+					return ScriptRuntime.wrapNumber( -ScriptRuntime.toNumber( value ) );
+				default :
+					return ScriptRuntime.wrapNumber( ScriptRuntime.toNumber( value ) );
+			}
+		}
+	}
+
+	private static class Binary extends JavaExpressionEvaluator
+	{
+
+		private int type;
+		private JavaExpressionEvaluator left;
+		private JavaExpressionEvaluator right;
+
+		Binary( int type, JavaExpressionEvaluator left,
+				JavaExpressionEvaluator right )
+		{
+			this.type = type;
+			this.left = left;
+			this.right = right;
+		}
+
+		Object evaluate( Context cx, Scriptable scope )
+		{
+			Object lhs = left.evaluate( cx, scope );
+			// && and || return the operand and don't evaluate the right one
+			// if not necessary
+			if ( type == Token.AND )
+				return ScriptRuntime.toBoolean( lhs ) ? right.evaluate( cx,
+						scope ) : lhs;
+			if ( type == Token.OR )
+				return ScriptRuntime.toBoolean( lhs ) ? lhs : right.evaluate( cx,
+						scope );
+
+			Object rhs = right.evaluate( cx, scope );
+			switch ( type )
+			{
+				case Token.ADD :
+					if ( lhs instanceof Number && rhs instanceof Number )
+						return ScriptRuntime.wrapNumber( ( (Number) lhs ).doubleValue( )
+								+ ( (Number) rhs ).doubleValue( ) );
+					return ScriptRuntime.add( lhs, rhs, cx );
+				case Token.SUB :
+					return ScriptRuntime.wrapNumber( ScriptRuntime.toNumber( lhs )
+							- ScriptRuntime.toNumber( rhs ) );
+				case Token.MUL :
+					return ScriptRuntime.wrapNumber( ScriptRuntime.toNumber( lhs )
+							* ScriptRuntime.toNumber( rhs ) );
+				case Token.DIV :
+					return ScriptRuntime.wrapNumber( ScriptRuntime.toNumber( lhs )
+							/ ScriptRuntime.toNumber( rhs ) );
+				case Token.MOD :
+					return ScriptRuntime.wrapNumber( ScriptRuntime.toNumber( lhs )
+							% ScriptRuntime.toNumber( rhs ) );
+				case Token.EQ :
+					return Boolean.valueOf( ScriptRuntime.eq( lhs, rhs ) );
+				case Token.NE :
+					return Boolean.valueOf( !ScriptRuntime.eq( lhs, rhs ) );
+				case Token.SHEQ :
+					return Boolean.valueOf( ScriptRuntime.shallowEq( lhs, rhs ) );
+				case Token.SHNE :
+					return Boolean.valueOf( !ScriptRuntime.shallowEq( lhs, rhs ) );
+				case Token.LT :
+					return Boolean.valueOf( ScriptRuntime.cmp_LT( lhs, rhs ) );
+				case Token.LE :
+					return Boolean.valueOf( ScriptRuntime.cmp_LE( lhs, rhs ) );
+				case Token.GT :
+					return Boolean.valueOf( ScriptRuntime.cmp_LT( rhs, lhs ) );
+				case Token.GE :
+					return Boolean.valueOf( ScriptRuntime.cmp_LE( rhs, lhs ) );
+			}
+			throw FALLBACK;
+		}
+	}
+
+	private static class Conditional extends JavaExpressionEvaluator
+	{
+
+		private JavaExpressionEvaluator condition;
+		private JavaExpressionEvaluator ifTrue;
+		private JavaExpressionEvaluator ifFalse;
+
+		Conditional( JavaExpressionEvaluator condition,
+				JavaExpressionEvaluator ifTrue, JavaExpressionEvaluator ifFalse )
+		{
+			this.condition = condition;
+			this.ifTrue = ifTrue;
+			this.ifFalse = ifFalse;
+		}
+
+		Object evaluate( Context cx, Scriptable scope )
+		{
+			return ScriptRuntime.toBoolean( condition.evaluate( cx, scope ) )
+					? ifTrue.evaluate( cx, scope )
+					: ifFalse.evaluate( cx, scope );
+		}
+	}
+}
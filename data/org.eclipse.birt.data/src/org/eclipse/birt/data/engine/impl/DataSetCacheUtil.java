@@ -12,6 +12,8 @@ package org.eclipse.birt.data.engine.impl;
 
 import java.io.File;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.eclipse.birt.data.engine.api.DataEngine;
 import org.eclipse.birt.data.engine.api.DataEngineContext;
@@ -26,6 +28,8 @@ import org.eclipse.birt.data.engine.executor.DataSetCacheConfig.DataSetCacheMode
  */
 public class DataSetCacheUtil
 {
+	private static Logger logger = Logger.getLogger( DataSetCacheUtil.class.getName( ) );
+
 	/**
 	 * used to get DataSetCacheConfig from all boring options outside
 	 * @param appContext
@@ -131,6 +135,55 @@ public class DataSetCacheUtil
 	}
 	
 	
+	/**
+	 * @param appContext
+	 * @return the max count of the data sets in the JVM level cache, 0 if
+	 *         there is no limit
+	 */
+	public static int getJVMCacheMaxEntries( Map appContext )
+	{
+		if ( appContext != null )
+		{
+			Object option = appContext.get( DataEngine.DATA_SET_CACHE_MAX_ENTRIES );
+			if ( option != null )
+			{
+				return Math.max( 0, getIntValueFromString( option ) );
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @param appContext
+	 * @return the time in milliseconds a data set in the JVM level cache can
+	 *         be reused, 0 if there is no limit
+	 */
+	public static long getJVMCacheTimeToLive( Map appContext )
+	{
+		if ( appContext != null )
+		{
+			Object option = appContext.get( DataEngine.DATA_SET_CACHE_TIME_TO_LIVE );
+			if ( option instanceof Number )
+			{
+				return Math.max( 0, ( (Number) option ).longValue( ) );
+			}
+			if ( option != null )
+			{
+				try
+				{
+					return Math.max( 0, Long.parseLong( option.toString( ) ) );
+				}
+				catch ( NumberFormatException e )
+				{
+					logger.log( Level.WARNING,
+							"invalid data set cache time to live: {0}", //$NON-NLS-1$
+							option );
+				}
+			}
+		}
+		return 0;
+	}
+
 	/**
 	 * 
 	 * @param dir
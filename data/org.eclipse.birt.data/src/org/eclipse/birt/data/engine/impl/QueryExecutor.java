@@ -281,6 +281,26 @@ public abstract class QueryExecutor implements IQueryExecutor
 		if ( isPrepared )
 			return;
 
+		try
+		{
+			doPrepareExecution( outerRts, targetScope );
+		}
+		catch ( DataException e )
+		{
+			loadingFailed( );
+			throw e;
+		}
+		catch ( RuntimeException e )
+		{
+			loadingFailed( );
+			throw e;
+		}
+	}
+
+	private void doPrepareExecution( IBaseQueryResults outerRts,
+			Scriptable targetScope ) throws DataException
+	{
+
 		this.parentScope = targetScope;
 		dataSource = findDataSource( );
 
@@ -377,6 +397,19 @@ public abstract class QueryExecutor implements IQueryExecutor
 		}
 	}
 	
+	/**
+	 * Wakes up the threads waiting for the data set retrieved by this
+	 * executor, so that they don't wait for a data set which will never be
+	 * saved into the cache. It does nothing if the data set has been saved.
+	 */
+	private void loadingFailed( )
+	{
+		if ( !loadFromCache && session.getDataSetCacheManager( ) != null )
+		{
+			session.getDataSetCacheManager( ).loadingFailed( );
+		}
+	}
+
 	/**
 	 * 
 	 * @return
@@ -415,35 +448,40 @@ public abstract class QueryExecutor implements IQueryExecutor
 		// dataSource = findDataSource( );
 		if ( dataSource != null )
 		{
-			// TODO: potential bug
-			if ( !dataSource.isOpen( )
-					|| session.getDataSetCacheManager( ).needsToCache( ))
+			// the queries prefetched by other threads share the data source
+			// runtime, only one of them may open it
+			synchronized ( dataSource )
 			{
-				// Data source is not open; create an Odi Data Source and open it
-				// We should run the beforeOpen script now to give it a chance to modify
-				// runtime data source properties
-				dataSourceBeforeOpen( );
+				// TODO: potential bug
+				if ( !dataSource.isOpen( )
+						|| session.getDataSetCacheManager( ).needsToCache( ))
+				{
+					// Data source is not open; create an Odi Data Source and open it
+					// We should run the beforeOpen script now to give it a chance to modify
+					// runtime data source properties
+					dataSourceBeforeOpen( );
 
-				// Let subclass create a new unopened odi data source
-				odiDataSource = createOdiDataSource( );
+					// Let subclass create a new unopened odi data source
+					odiDataSource = createOdiDataSource( );
 
-				// Passes thru the prepared query executor's 
-				// context to the new odi data source
-				odiDataSource.setAppContext( queryAppContext );
+					// Passes thru the prepared query executor's 
+					// context to the new odi data source
+					odiDataSource.setAppContext( queryAppContext );
 
-				// Open the odi data source
-				dataSource.openOdiDataSource( odiDataSource );
+					// Open the odi data source
+					dataSource.openOdiDataSource( odiDataSource );
 
-				dataSourceAfterOpen( );
-			}
-			else
-			{
-				// Use existing odiDataSource created for the data source runtime
-				odiDataSource = dataSource.getOdiDataSource( );
+					dataSourceAfterOpen( );
+				}
+				else
+				{
+					// Use existing odiDataSource created for the data source runtime
+					odiDataSource = dataSource.getOdiDataSource( );
 
-				// Passes thru the prepared query executor's 
-				// current context to existing data source
-				odiDataSource.setAppContext( queryAppContext );
+					// Passes thru the prepared query executor's 
+					// current context to existing data source
+					odiDataSource.setAppContext( queryAppContext );
+				}
 			}
 		}
 	}
@@ -1205,7 +1243,20 @@ public abstract class QueryExecutor implements IQueryExecutor
 		}
 		    
 		// Execute the query
-		odiResult = executeOdiQuery( eventHandler );
+		try
+		{
+			odiResult = executeOdiQuery( eventHandler );
+		}
+		catch ( DataException e )
+		{
+			loadingFailed( );
+			throw e;
+		}
+		catch ( RuntimeException e )
+		{
+			loadingFailed( );
+			throw e;
+		}
 
 		helper.setScriptable( this.dataSet.getJSResultRowObject( ) );
 		
@@ -1251,6 +1302,10 @@ public abstract class QueryExecutor implements IQueryExecutor
 			return;
 		}
 
+		// the data set retrieved by this executor and not saved into the cache
+		// yet is abandoned
+		loadingFailed( );
+
 		// Close the data set and associated odi query
 		try
 		{
@@ -16,8 +16,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -26,6 +28,7 @@ import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.document.stream.VersionManager;
+import org.eclipse.birt.data.engine.impl.document.util.ColumnBlockUtil;
 
 /**
  * Save util class
@@ -49,6 +52,10 @@ public class RowSaveUtil
 	private int version;
 	private Map bindingNameType;
 	
+	// the rows of the current column block, it is null if the rows are
+	// saved one by one
+	private List<Object[]> blockRows;
+	
 	/**
 	 * @param rowCount
 	 * @param rowExprsOs
@@ -83,9 +90,16 @@ public class RowSaveUtil
 			
 			saveNullRowsBetween( lastRowIndex, currIndex );
 			
-			int rowBytes = saveExprValue( valueMap );
-			IOUtil.writeLong( this.rowLenDos, currentOffset );
-			currentOffset += rowBytes;
+			if ( blockRows != null )
+			{
+				saveBlockRow( getRowValues( valueMap ) );
+			}
+			else
+			{
+				int rowBytes = saveExprValue( valueMap );
+				IOUtil.writeLong( this.rowLenDos, currentOffset );
+				currentOffset += rowBytes;
+			}
 			lastRowIndex = currIndex;
 		}
 		catch ( IOException e )
@@ -194,6 +208,58 @@ public class RowSaveUtil
 		}
 	}
 
+	/**
+	 * @param valueMap
+	 * @return the values in the order of the expression names
+	 */
+	private Object[] getRowValues( Map valueMap )
+	{
+		Object[] values = new Object[exprNameSet.size( )];
+		Iterator it = exprNameSet.iterator( );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			Object value = valueMap.get( it.next( ) );
+			if ( value instanceof BirtException )
+				value = EXCEPTION_INDICATOR;
+			values[i] = value;
+		}
+		return values;
+	}
+
+	/**
+	 * @param values
+	 *            the values of the row, null if no value is saved
+	 * @throws IOException
+	 */
+	private void saveBlockRow( Object[] values ) throws IOException
+	{
+		blockRows.add( values );
+		if ( blockRows.size( ) == ColumnBlockUtil.BLOCK_ROW_COUNT )
+		{
+			saveBlock( );
+		}
+	}
+
+	/**
+	 * Save the rows of the current block, the offset of the block is saved in
+	 * the row length stream.
+	 * 
+	 * @throws IOException
+	 */
+	private void saveBlock( ) throws IOException
+	{
+		if ( blockRows.isEmpty( ) )
+			return;
+
+		byte[] bytes = ColumnBlockUtil.encodeBlock( blockRows,
+				exprNameSet.size( ) );
+		IOUtil.writeLong( this.rowLenDos, currentOffset );
+		IOUtil.writeInt( this.rowExprsDos, bytes.length );
+		IOUtil.writeRawBytes( this.rowExprsDos, bytes );
+		currentOffset += IOUtil.INT_LENGTH + bytes.length;
+		blockRows.clear( );
+	}
+
 	/**
 	 * @return
 	 */
@@ -213,6 +279,8 @@ public class RowSaveUtil
 		try
 		{
 			saveNullRowsBetween( lastRowIndex, currIndex );
+			if ( blockRows != null )
+				saveBlock( );
 
 			rowExprsDos.close( );
 			rowLenDos.close( );
@@ -249,6 +317,13 @@ public class RowSaveUtil
 			int rowBytes = this.version >= VersionManager.VERSION_2_2_1_3
 					? this.initSave( map ) : this.saveExprValue( map );
 			IOUtil.writeInt( this.rowExprsDos, rowBytes );
+			
+			if ( this.version >= VersionManager.VERSION_4_2_2_2 )
+			{
+				IOUtil.writeInt( this.rowExprsDos,
+						ColumnBlockUtil.COLUMN_BLOCK_FORMAT );
+				blockRows = new ArrayList<Object[]>( ColumnBlockUtil.BLOCK_ROW_COUNT );
+			}
 		}
 		catch ( IOException e )
 		{
@@ -267,6 +342,11 @@ public class RowSaveUtil
 		int gapRows = currIndex - lastRowIndex - 1;
 		for ( int i = 0; i < gapRows; i++ )
 		{
+			if ( blockRows != null )
+			{
+				saveBlockRow( null );
+				continue;
+			}
 			IOUtil.writeInt( this.rowExprsDos, 0 );
 			IOUtil.writeLong( this.rowLenDos, currentOffset );
 			currentOffset += IOUtil.INT_LENGTH;
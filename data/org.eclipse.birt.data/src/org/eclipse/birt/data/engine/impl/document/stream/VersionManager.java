@@ -92,6 +92,9 @@ public class VersionManager
 	//filter target support
 	public final static int VERSION_4_2_2_1 = 220;
 	
+	//In version 4_2_2_2 the expression values are saved in column blocks
+	public final static int VERSION_4_2_2_2 = 230;
+	
 	private DataEngineContext dataEngineContext;
 	private static Logger logger = Logger.getLogger( VersionManager.class.getName( ) );
 	
@@ -234,6 +237,6 @@ public class VersionManager
 	 */
 	public static int getLatestVersion( )
 	{
-		return VERSION_4_2_2_1;
+		return VERSION_4_2_2_2;
 	}
 }
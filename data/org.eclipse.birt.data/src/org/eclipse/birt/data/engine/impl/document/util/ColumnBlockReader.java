@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.document.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.document.RowSaveUtil;
+
+/**
+ * Read the expression values saved in column blocks by ColumnBlockUtil. Only
+ * the block of the current row is kept, and its columns are decoded the first
+ * time their values are got.
+ */
+class ColumnBlockReader
+{
+
+	private static Logger logger = Logger.getLogger( ColumnBlockReader.class.getName( ) );
+
+	private RAInputStream rowExprsRAIs;
+	private RAInputStream blockIndexRAIs;
+	private long dataOffset;
+
+	private List exprKeys;
+	private Map<Object, Integer> columnIndexes;
+	private ClassLoader classLoader;
+
+	private Block block;
+	private int blockIndex = -1;
+	private int nextBlockIndex;
+
+	/**
+	 * @param rowExprsRAIs
+	 *            the stream of the expression values, positioned at the first
+	 *            block
+	 * @param blockIndexRAIs
+	 *            the stream of the offsets of the blocks, the blocks are read
+	 *            one by one if it is null
+	 * @param exprKeys
+	 *            the names of the saved expressions
+	 * @param classLoader
+	 * @throws IOException
+	 */
+	ColumnBlockReader( RAInputStream rowExprsRAIs,
+			RAInputStream blockIndexRAIs, List exprKeys,
+			ClassLoader classLoader ) throws IOException
+	{
+		this.rowExprsRAIs = rowExprsRAIs;
+		this.blockIndexRAIs = blockIndexRAIs;
+		this.dataOffset = rowExprsRAIs.getOffset( );
+		this.exprKeys = exprKeys;
+		this.classLoader = classLoader;
+		this.columnIndexes = new HashMap<Object, Integer>( );
+		for ( int i = 0; i < exprKeys.size( ); i++ )
+		{
+			columnIndexes.put( exprKeys.get( i ), Integer.valueOf( i ) );
+		}
+	}
+
+	/**
+	 * Gets the expression values of the row. The values of the other
+	 * expressions can be put into the returned map.
+	 *
+	 * @param rowIndex
+	 * @return
+	 * @throws IOException
+	 */
+	Map getRowValue( int rowIndex ) throws IOException
+	{
+		Block rowBlock = getBlock( rowIndex / ColumnBlockUtil.BLOCK_ROW_COUNT );
+		return new RowValueMap( rowBlock, rowIndex
+				% ColumnBlockUtil.BLOCK_ROW_COUNT );
+	}
+
+	private Block getBlock( int index ) throws IOException
+	{
+		if ( index == blockIndex )
+		{
+			return block;
+		}
+		if ( blockIndexRAIs != null )
+		{
+			blockIndexRAIs.seek( index * 8L );
+			rowExprsRAIs.seek( dataOffset
+					+ IOUtil.readLong( new DataInputStream( blockIndexRAIs ) ) );
+		}
+		else
+		{
+			if ( index < nextBlockIndex )
+			{
+				rowExprsRAIs.seek( dataOffset );
+				nextBlockIndex = 0;
+			}
+			while ( nextBlockIndex < index )
+			{
+				int length = IOUtil.readInt( rowExprsRAIs );
+				rowExprsRAIs.seek( rowExprsRAIs.getOffset( ) + length );
+				nextBlockIndex++;
+			}
+		}
+		int length = IOUtil.readInt( rowExprsRAIs );
+		byte[] data = new byte[length];
+		rowExprsRAIs.readFully( data, 0, length );
+		block = new Block( data );
+		blockIndex = index;
+		nextBlockIndex = index + 1;
+		return block;
+	}
+
+	private class Block
+	{
+
+		private byte[] data;
+		private int rowCount;
+		private byte[] emptyRows;
+		private int[] columnOffsets;
+		private int[] columnLengths;
+		private Object[][] columns;
+
+		Block( byte[] data ) throws IOException
+		{
+			this.data = data;
+			ByteArrayInputStream buffer = new ByteArrayInputStream( data );
+			DataInputStream in = new DataInputStream( buffer );
+			rowCount = (int) ColumnBlockUtil.readVarLong( in );
+			int columnCount = (int) ColumnBlockUtil.readVarLong( in );
+			if ( in.readBoolean( ) )
+			{
+				emptyRows = new byte[( rowCount + 7 ) / 8];
+				in.readFully( emptyRows );
+			}
+			columnLengths = new int[columnCount];
+			for ( int i = 0; i < columnCount; i++ )
+			{
+				columnLengths[i] = (int) ColumnBlockUtil.readVarLong( in );
+			}
+			columnOffsets = new int[columnCount];
+			int offset = data.length - buffer.available( );
+			for ( int i = 0; i < columnCount; i++ )
+			{
+				columnOffsets[i] = offset;
+				offset += columnLengths[i];
+			}
+			columns = new Object[columnCount][];
+		}
+
+		boolean isEmptyRow( int row )
+		{
+			return emptyRows != null && ColumnBlockUtil.getBit( emptyRows, row );
+		}
+
+		Object getValue( int column, int row ) throws IOException
+		{
+			if ( columns[column] == null )
+			{
+				columns[column] = ColumnBlockUtil.decodeColumn( data,
+						columnOffsets[column],
+						columnLengths[column],
+						rowCount,
+						classLoader );
+			}
+			return columns[column][row];
+		}
+	}
+
+	/**
+	 * The expression values of a row, the values are read from the block when
+	 * they are got. The values put into the map are kept by the map itself.
+	 */
+	private class RowValueMap extends AbstractMap
+	{
+
+		private Block block;
+		private int row;
+		private Map otherValues = new HashMap( );
+
+		RowValueMap( Block block, int row )
+		{
+			this.block = block;
+			this.row = row;
+		}
+
+		public Object get( Object key )
+		{
+			if ( otherValues.containsKey( key ) )
+			{
+				return otherValues.get( key );
+			}
+			Integer column = columnIndexes.get( key );
+			if ( column == null || block.isEmptyRow( row ) )
+			{
+				return null;
+			}
+			return getValue( column.intValue( ) );
+		}
+
+		private Object getValue( int column )
+		{
+			String exprID = exprKeys.get( column ).toString( );
+			try
+			{
+				Object value = block.getValue( column, row );
+				if ( RowSaveUtil.EXCEPTION_INDICATOR.equals( value ) )
+				{
+					return new DataException( ResourceConstants.READ_COLUMN_VALUE_FROM_DOCUMENT_ERROR,
+							exprID );
+				}
+				return value;
+			}
+			catch ( IOException e )
+			{
+				logger.log( Level.WARNING, e.getMessage( ), e );
+				return new DataException( ResourceConstants.READ_COLUMN_VALUE_FROM_DOCUMENT_ERROR,
+						exprID );
+			}
+		}
+
+		public boolean containsKey( Object key )
+		{
+			return otherValues.containsKey( key )
+					|| ( !block.isEmptyRow( row ) && columnIndexes.containsKey( key ) );
+		}
+
+		public Object put( Object key, Object value )
+		{
+			return otherValues.put( key, value );
+		}
+
+		public Set entrySet( )
+		{
+			Map values = new HashMap( );
+			if ( !block.isEmptyRow( row ) )
+			{
+				for ( int i = 0; i < exprKeys.size( ); i++ )
+				{
+					values.put( exprKeys.get( i ), getValue( i ) );
+				}
+			}
+			values.putAll( otherValues );
+			return values.entrySet( );
+		}
+	}
+}
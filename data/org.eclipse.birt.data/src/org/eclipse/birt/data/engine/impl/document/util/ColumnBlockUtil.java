@@ -0,0 +1,423 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.document.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.core.util.IOUtil;
+
+/**
+ * Saves the expression values of the rows in column blocks. A block holds the
+ * values of BLOCK_ROW_COUNT rows, and the values of a column are saved
+ * together in the block:
+ * <ul>
+ * <li>the integers, longs and dates are saved as the variable length zigzag
+ * deltas from the previous value of the column, the first value as the delta
+ * from 0</li>
+ * <li>the doubles are saved as they are</li>
+ * <li>the repeated strings are saved in a dictionary of the block</li>
+ * <li>the nulls are saved in a bitmap</li>
+ * <li>the values of the other types are saved by IOUtil.writeObject</li>
+ * </ul>
+ * The length of each column is saved in the header of the block, so a column
+ * is only decoded when its values are read.
+ */
+public class ColumnBlockUtil
+{
+
+	/**
+	 * the marker saved after the expression metadata, instead of the row
+	 * count of the first row, when the values are saved in column blocks
+	 */
+	public static final int COLUMN_BLOCK_FORMAT = -1;
+
+	public static final int BLOCK_ROW_COUNT = 1024;
+
+	private static final int NULL_ENCODING = 0;
+	private static final int INT_ENCODING = 1;
+	private static final int LONG_ENCODING = 2;
+	private static final int DOUBLE_ENCODING = 3;
+	private static final int DATE_ENCODING = 4;
+	private static final int STRING_ENCODING = 5;
+	private static final int DICTIONARY_ENCODING = 6;
+	private static final int OBJECT_ENCODING = 7;
+
+	/**
+	 * Encodes the rows into a block.
+	 *
+	 * @param rows
+	 *            the values of the rows, the item is null for the row having
+	 *            no value saved
+	 * @param columnCount
+	 *            the count of the values of a row
+	 * @return the encoded block
+	 * @throws IOException
+	 */
+	public static byte[] encodeBlock( List<Object[]> rows, int columnCount )
+			throws IOException
+	{
+		int rowCount = rows.size( );
+		byte[][] columns = new byte[columnCount][];
+		for ( int i = 0; i < columnCount; i++ )
+		{
+			columns[i] = encodeColumn( rows, i );
+		}
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream( );
+		DataOutputStream out = new DataOutputStream( buffer );
+		writeVarLong( out, rowCount );
+		writeVarLong( out, columnCount );
+		byte[] emptyRows = new byte[( rowCount + 7 ) / 8];
+		boolean hasEmptyRow = false;
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			if ( rows.get( i ) == null )
+			{
+				setBit( emptyRows, i );
+				hasEmptyRow = true;
+			}
+		}
+		out.writeBoolean( hasEmptyRow );
+		if ( hasEmptyRow )
+		{
+			out.write( emptyRows );
+		}
+		for ( int i = 0; i < columnCount; i++ )
+		{
+			writeVarLong( out, columns[i].length );
+		}
+		for ( int i = 0; i < columnCount; i++ )
+		{
+			out.write( columns[i] );
+		}
+		out.flush( );
+		return buffer.toByteArray( );
+	}
+
+	private static byte[] encodeColumn( List<Object[]> rows, int column )
+			throws IOException
+	{
+		int rowCount = rows.size( );
+		List<Object> values = new ArrayList<Object>( rowCount );
+		byte[] nulls = new byte[( rowCount + 7 ) / 8];
+		int encoding = NULL_ENCODING;
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			Object[] row = rows.get( i );
+			Object value = row == null ? null : row[column];
+			if ( value == null )
+			{
+				setBit( nulls, i );
+				continue;
+			}
+			values.add( value );
+			int valueEncoding = getEncoding( value );
+			if ( encoding == NULL_ENCODING )
+			{
+				encoding = valueEncoding;
+			}
+			else if ( encoding != valueEncoding )
+			{
+				encoding = OBJECT_ENCODING;
+			}
+		}
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream( );
+		DataOutputStream out = new DataOutputStream( buffer );
+		if ( encoding == STRING_ENCODING && isRepeated( values ) )
+		{
+			encoding = DICTIONARY_ENCODING;
+		}
+		out.writeByte( encoding );
+		if ( encoding == NULL_ENCODING )
+		{
+			out.flush( );
+			return buffer.toByteArray( );
+		}
+		boolean hasNull = values.size( ) < rowCount;
+		out.writeBoolean( hasNull );
+		if ( hasNull )
+		{
+			out.write( nulls );
+		}
+		switch ( encoding )
+		{
+			case INT_ENCODING :
+			case LONG_ENCODING :
+			case DATE_ENCODING :
+				writeLongs( out, values, encoding );
+				break;
+			case DOUBLE_ENCODING :
+				for ( int i = 0; i < values.size( ); i++ )
+				{
+					out.writeDouble( ( (Double) values.get( i ) ).doubleValue( ) );
+				}
+				break;
+			case STRING_ENCODING :
+				for ( int i = 0; i < values.size( ); i++ )
+				{
+					writeString( out, (String) values.get( i ) );
+				}
+				break;
+			case DICTIONARY_ENCODING :
+				writeDictionary( out, values );
+				break;
+			default :
+				for ( int i = 0; i < values.size( ); i++ )
+				{
+					IOUtil.writeObject( out, values.get( i ) );
+				}
+		}
+		out.flush( );
+		return buffer.toByteArray( );
+	}
+
+	private static int getEncoding( Object value )
+	{
+		if ( value instanceof Integer )
+		{
+			return INT_ENCODING;
+		}
+		if ( value instanceof Long )
+		{
+			return LONG_ENCODING;
+		}
+		if ( value instanceof Double )
+		{
+			return DOUBLE_ENCODING;
+		}
+		if ( value instanceof String )
+		{
+			return STRING_ENCODING;
+		}
+		// the sub classes of date have more fields than the time
+		if ( value.getClass( ) == Date.class )
+		{
+			return DATE_ENCODING;
+		}
+		return OBJECT_ENCODING;
+	}
+
+	private static boolean isRepeated( List<Object> values )
+	{
+		Map<Object, Object> distinctValues = new HashMap<Object, Object>( );
+		for ( int i = 0; i < values.size( ); i++ )
+		{
+			distinctValues.put( values.get( i ), values.get( i ) );
+			if ( distinctValues.size( ) * 2 > values.size( ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long getLong( Object value, int encoding )
+	{
+		if ( encoding == DATE_ENCODING )
+		{
+			return ( (Date) value ).getTime( );
+		}
+		return ( (Number) value ).longValue( );
+	}
+
+	private static void writeLongs( DataOutputStream out, List<Object> values,
+			int encoding ) throws IOException
+	{
+		// the delta may overflow, it is restored by the same overflow when
+		// the values are read
+		long previous = 0;
+		for ( int i = 0; i < values.size( ); i++ )
+		{
+			long value = getLong( values.get( i ), encoding );
+			writeVarLong( out, zigzag( value - previous ) );
+			previous = value;
+		}
+	}
+
+	private static void writeDictionary( DataOutputStream out,
+			List<Object> values ) throws IOException
+	{
+		Map<Object, Integer> dictionary = new HashMap<Object, Integer>( );
+		List<Object> entries = new ArrayList<Object>( );
+		int[] indexes = new int[values.size( )];
+		for ( int i = 0; i < values.size( ); i++ )
+		{
+			Integer index = dictionary.get( values.get( i ) );
+			if ( index == null )
+			{
+				index = Integer.valueOf( entries.size( ) );
+				dictionary.put( values.get( i ), index );
+				entries.add( values.get( i ) );
+			}
+			indexes[i] = index.intValue( );
+		}
+		writeVarLong( out, entries.size( ) );
+		for ( int i = 0; i < entries.size( ); i++ )
+		{
+			writeString( out, (String) entries.get( i ) );
+		}
+		for ( int i = 0; i < indexes.length; i++ )
+		{
+			writeVarLong( out, indexes[i] );
+		}
+	}
+
+	/**
+	 * Decodes the values of a column.
+	 *
+	 * @param data
+	 *            the block
+	 * @param offset
+	 *            the offset of the column in the block
+	 * @param length
+	 *            the length of the column
+	 * @param rowCount
+	 *            the count of the rows in the block
+	 * @param classLoader
+	 *            the class loader to read the objects
+	 * @return the values of the rows
+	 * @throws IOException
+	 */
+	static Object[] decodeColumn( byte[] data, int offset, int length,
+			int rowCount, ClassLoader classLoader ) throws IOException
+	{
+		Object[] result = new Object[rowCount];
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream( data,
+				offset,
+				length ) );
+		int encoding = in.readByte( );
+		if ( encoding == NULL_ENCODING )
+		{
+			return result;
+		}
+		byte[] nulls = null;
+		if ( in.readBoolean( ) )
+		{
+			nulls = new byte[( rowCount + 7 ) / 8];
+			in.readFully( nulls );
+		}
+		long previous = 0;
+		Object[] dictionary = null;
+		if ( encoding == DICTIONARY_ENCODING )
+		{
+			dictionary = new Object[(int) readVarLong( in )];
+			for ( int i = 0; i < dictionary.length; i++ )
+			{
+				dictionary[i] = readString( in );
+			}
+		}
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			if ( nulls != null && getBit( nulls, i ) )
+			{
+				continue;
+			}
+			switch ( encoding )
+			{
+				case INT_ENCODING :
+					previous += unzigzag( readVarLong( in ) );
+					result[i] = Integer.valueOf( (int) previous );
+					break;
+				case LONG_ENCODING :
+					previous += unzigzag( readVarLong( in ) );
+					result[i] = Long.valueOf( previous );
+					break;
+				case DATE_ENCODING :
+					previous += unzigzag( readVarLong( in ) );
+					result[i] = new Date( previous );
+					break;
+				case DOUBLE_ENCODING :
+					result[i] = Double.valueOf( in.readDouble( ) );
+					break;
+				case STRING_ENCODING :
+					result[i] = readString( in );
+					break;
+				case DICTIONARY_ENCODING :
+					result[i] = dictionary[(int) readVarLong( in )];
+					break;
+				default :
+					result[i] = IOUtil.readObject( in, classLoader );
+			}
+		}
+		return result;
+	}
+
+	private static void writeString( DataOutputStream out, String value )
+			throws IOException
+	{
+		byte[] bytes = value.getBytes( "UTF-8" );
+		writeVarLong( out, bytes.length );
+		out.write( bytes );
+	}
+
+	private static String readString( DataInputStream in ) throws IOException
+	{
+		byte[] bytes = new byte[(int) readVarLong( in )];
+		in.readFully( bytes );
+		return new String( bytes, "UTF-8" );
+	}
+
+	static void writeVarLong( DataOutputStream out, long value )
+			throws IOException
+	{
+		while ( ( value & ~0x7FL ) != 0 )
+		{
+			out.writeByte( (int) ( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+		out.writeByte( (int) value );
+	}
+
+	static long readVarLong( DataInputStream in ) throws IOException
+	{
+		long value = 0;
+		int shift = 0;
+		int b;
+		do
+		{
+			b = in.readByte( );
+			value |= (long) ( b & 0x7F ) << shift;
+			shift += 7;
+		} while ( ( b & 0x80 ) != 0 );
+		return value;
+	}
+
+	private static long zigzag( long value )
+	{
+		return ( value << 1 ) ^ ( value >> 63 );
+	}
+
+	private static long unzigzag( long value )
+	{
+		return ( value >>> 1 ) ^ -( value & 1 );
+	}
+
+	private static void setBit( byte[] bits, int index )
+	{
+		bits[index >> 3] |= 1 << ( index & 7 );
+	}
+
+	static boolean getBit( byte[] bits, int index )
+	{
+		return ( bits[index >> 3] & ( 1 << ( index & 7 ) ) ) != 0;
+	}
+}
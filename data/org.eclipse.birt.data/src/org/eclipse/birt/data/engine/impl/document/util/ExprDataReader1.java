@@ -57,6 +57,7 @@ class ExprDataReader1 implements IExprDataReader
 	private DataSetResultSet dataSetData;
 	private Map bindingNameTypeMap;
 	private ClassLoader currentClassLoader;
+	private ColumnBlockReader columnBlockReader;
 	/**
 	 * @param rowExprsRAIs
 	 * @param rowLenRAIs
@@ -107,6 +108,21 @@ class ExprDataReader1 implements IExprDataReader
 			if( this.dataSetExprKeys.size() > 0 )
 				this.dataSetData = dataSetData;
 			
+			if ( version >= VersionManager.VERSION_4_2_2_2 )
+			{
+				if ( IOUtil.readInt( this.rowExprsDis ) == ColumnBlockUtil.COLUMN_BLOCK_FORMAT )
+				{
+					this.columnBlockReader = new ColumnBlockReader( rowExprsRAIs,
+							rowLenRAIs,
+							this.exprKeys,
+							this.currentClassLoader );
+				}
+				else
+				{
+					rowExprsRAIs.seek( this.metaOffset );
+				}
+			}
+			
 		}
 		catch ( IOException e )
 		{
@@ -251,6 +267,10 @@ class ExprDataReader1 implements IExprDataReader
 		
 		if ( currReadIndex == absoluteRowIndex )
 			return;
+		
+		// the block of the row is located when its values are read
+		if ( columnBlockReader != null )
+			return;
 				
 		if ( version == VersionManager.VERSION_2_0 )
 		{
@@ -290,21 +310,16 @@ class ExprDataReader1 implements IExprDataReader
 	 */
 	private Map getValueMap( ) throws IOException, DataException
 	{
-		Map valueMap = new HashMap( );
-
-		int exprCount = IOUtil.readInt( rowExprsDis );
-		for ( int i = 0; i < exprCount; i++ )
+		Map valueMap;
+		if ( columnBlockReader != null )
 		{
-			String exprID = this.exprKeys.get( i ).toString( );
-			Object exprValue = IOUtil.readObject( rowExprsDis, this.currentClassLoader );
-			if ( RowSaveUtil.EXCEPTION_INDICATOR.equals( exprValue ) )
-			{
-				valueMap.put( exprID,
-						new DataException( ResourceConstants.READ_COLUMN_VALUE_FROM_DOCUMENT_ERROR,
-								exprID ) );
-				continue;
-			}
-			valueMap.put( exprID, exprValue );
+			valueMap = this.rowCount == 0 ? new HashMap( )
+					: columnBlockReader.getRowValue( currRowIndex );
+		}
+		else
+		{
+			valueMap = new HashMap( );
+			readValueMap( valueMap );
 		}
 
 		if ( dataSetData != null )
@@ -333,6 +348,30 @@ class ExprDataReader1 implements IExprDataReader
 		return valueMap;
 	}
 
+	/**
+	 * Read the values of a row saved one by one.
+	 * 
+	 * @param valueMap
+	 * @throws IOException
+	 */
+	private void readValueMap( Map valueMap ) throws IOException
+	{
+		int exprCount = IOUtil.readInt( rowExprsDis );
+		for ( int i = 0; i < exprCount; i++ )
+		{
+			String exprID = this.exprKeys.get( i ).toString( );
+			Object exprValue = IOUtil.readObject( rowExprsDis, this.currentClassLoader );
+			if ( RowSaveUtil.EXCEPTION_INDICATOR.equals( exprValue ) )
+			{
+				valueMap.put( exprID,
+						new DataException( ResourceConstants.READ_COLUMN_VALUE_FROM_DOCUMENT_ERROR,
+								exprID ) );
+				continue;
+			}
+			valueMap.put( exprID, exprValue );
+		}
+	}
+
 	/*
 	 * @see org.eclipse.birt.data.engine.impl.document.IExprResultReader#close()
 	 */
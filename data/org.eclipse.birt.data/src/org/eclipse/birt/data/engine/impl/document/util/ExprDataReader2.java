@@ -64,6 +64,7 @@ class ExprDataReader2 implements IExprDataReader
 	private DataSetResultSet dataSetResultSet;
 	private Map bindingNameTypeMap;
 	private ClassLoader currentClassLoader;
+	private ColumnBlockReader columnBlockReader;
 
 	/**
 	 * @param rowExprsIs
@@ -141,6 +142,21 @@ class ExprDataReader2 implements IExprDataReader
 			this.metaOffset = IOUtil.INT_LENGTH
 					+ IOUtil.readInt( this.rowExprsDis ) + IOUtil.INT_LENGTH;
 			
+			if ( version >= VersionManager.VERSION_4_2_2_2 )
+			{
+				if ( IOUtil.readInt( this.rowExprsDis ) == ColumnBlockUtil.COLUMN_BLOCK_FORMAT )
+				{
+					this.columnBlockReader = new ColumnBlockReader( rowExprsIs,
+							rowLenIs,
+							this.exprKeys,
+							this.currentClassLoader );
+				}
+				else
+				{
+					rowExprsIs.seek( this.metaOffset );
+				}
+			}
+			
 		}
 		catch ( IOException e )
 		{
@@ -278,6 +294,10 @@ class ExprDataReader2 implements IExprDataReader
 		if ( currRowLenReadIndex == absoluteIndex )
 			return;
 		
+		// the block of the row is located when its values are read
+		if ( columnBlockReader != null )
+			return;
+		
 		currRowLenReadIndex = absoluteIndex + 1;
 
 		// Before 2.2.1.1 we use Integer, after that we use long.
@@ -297,21 +317,16 @@ class ExprDataReader2 implements IExprDataReader
 	 */
 	private Map getValueMap( ) throws IOException, DataException
 	{
-		Map valueMap = new HashMap( );
-
-		int exprCount = IOUtil.readInt( rowExprsDis );
-		for ( int i = 0; i < exprCount; i++ )
+		Map valueMap;
+		if ( columnBlockReader != null )
 		{
-			String exprID = this.exprKeys.get( i ).toString( );
-			Object exprValue = IOUtil.readObject( rowExprsDis, this.currentClassLoader );
-			if ( RowSaveUtil.EXCEPTION_INDICATOR.equals( exprValue ) )
-			{
-				valueMap.put( exprID,
-						new DataException( ResourceConstants.READ_COLUMN_VALUE_FROM_DOCUMENT_ERROR,
-								exprID ) );
-				continue;
-			}
-			valueMap.put( exprID, exprValue );
+			valueMap = this.rowCount == 0 ? new HashMap( )
+					: columnBlockReader.getRowValue( nextDestIndex );
+		}
+		else
+		{
+			valueMap = new HashMap( );
+			readValueMap( valueMap );
 		}
 		
 		java.util.Iterator it = this.dataSetExprKeys.keySet( ).iterator( );
@@ -337,6 +352,30 @@ class ExprDataReader2 implements IExprDataReader
 		return valueMap;
 	}
 	
+	/**
+	 * Read the values of a row saved one by one.
+	 * 
+	 * @param valueMap
+	 * @throws IOException
+	 */
+	private void readValueMap( Map valueMap ) throws IOException
+	{
+		int exprCount = IOUtil.readInt( rowExprsDis );
+		for ( int i = 0; i < exprCount; i++ )
+		{
+			String exprID = this.exprKeys.get( i ).toString( );
+			Object exprValue = IOUtil.readObject( rowExprsDis, this.currentClassLoader );
+			if ( RowSaveUtil.EXCEPTION_INDICATOR.equals( exprValue ) )
+			{
+				valueMap.put( exprID,
+						new DataException( ResourceConstants.READ_COLUMN_VALUE_FROM_DOCUMENT_ERROR,
+								exprID ) );
+				continue;
+			}
+			valueMap.put( exprID, exprValue );
+		}
+	}
+
 	/*
 	 * @see org.eclipse.birt.data.engine.impl.document.IExprResultReader#close()
 	 */
@@ -46,6 +46,7 @@ import org.eclipse.birt.data.engine.olap.data.impl.AggregationDefinition;
 import org.eclipse.birt.data.engine.olap.data.impl.AggregationFunctionDefinition;
 import org.eclipse.birt.data.engine.olap.data.impl.AggregationResultSetSaveUtil;
 import org.eclipse.birt.data.engine.olap.data.impl.Cube;
+import org.eclipse.birt.data.engine.olap.data.impl.CubeAggregateStore;
 import org.eclipse.birt.data.engine.olap.data.impl.SecuredCube;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationExecutor;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultRow;
@@ -898,6 +899,26 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 	{
 		IDiskArray[] dimPosition = getFilterResult( );
 
+		IAggregationResultSet[] storedResultSet = getStoredAggregationResultSet( aggregations,
+				dimPosition,
+				stopSign );
+		List remainAggregations = new ArrayList( );
+		for ( int i = 0; i < aggregations.length; i++ )
+		{
+			if ( storedResultSet == null || storedResultSet[i] == null )
+			{
+				remainAggregations.add( aggregations[i] );
+			}
+		}
+		if ( remainAggregations.isEmpty( ) )
+		{
+			return storedResultSet;
+		}
+		if ( storedResultSet != null )
+		{
+			aggregations = (AggregationDefinition[]) remainAggregations.toArray( new AggregationDefinition[remainAggregations.size( )] );
+		}
+
 		FactTableRowIterator factTableRowIterator = populateFactTableIterator( stopSign,
 				dimPosition );
 		DimensionResultIterator[] dimensionResultIterators = populateDimensionResultIterator( dimPosition, stopSign );
@@ -919,8 +940,66 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 				memoryCacheSize );
 		
 		aggregationCalculatorExecutor.setMaxDataObjectRows( maxDataObjectRows );
+		aggregationCalculatorExecutor.setThreadCount( CacheUtil.getCubeAggregationThreadCount( this.appContext ) );
 		
-		return aggregationCalculatorExecutor.execute( stopSign );
+		IAggregationResultSet[] resultSet = aggregationCalculatorExecutor.execute( stopSign );
+		if ( storedResultSet == null )
+		{
+			return resultSet;
+		}
+		int pos = 0;
+		for ( int i = 0; i < storedResultSet.length; i++ )
+		{
+			if ( storedResultSet[i] == null )
+			{
+				storedResultSet[i] = resultSet[pos++];
+			}
+		}
+		return storedResultSet;
+	}
+	
+	/**
+	 * Gets the aggregation result sets from the pre-aggregated rollups of the
+	 * cube. The rollups are used only if all the fact table rows are
+	 * aggregated, that is, no dimension, measure or cube position filter is
+	 * applied.
+	 * 
+	 * @param aggregations
+	 * @param dimPosition
+	 * @param stopSign
+	 * @return null if the cube has no rollup, otherwise the result sets of the
+	 *         aggregations, null for those not answered by the rollups
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private IAggregationResultSet[] getStoredAggregationResultSet(
+			AggregationDefinition[] aggregations, IDiskArray[] dimPosition,
+			StopSign stopSign ) throws IOException, DataException
+	{
+		if ( cube instanceof SecuredCube
+				|| !measureFilters.isEmpty( )
+				|| ( cubePosFilters != null && !cubePosFilters.isEmpty( ) ) )
+		{
+			return null;
+		}
+		for ( int i = 0; i < dimPosition.length; i++ )
+		{
+			if ( dimPosition[i] != null )
+			{
+				return null;
+			}
+		}
+		CubeAggregateStore aggregateStore = cube.getAggregateStore( );
+		if ( aggregateStore == null )
+		{
+			return null;
+		}
+		IAggregationResultSet[] result = new IAggregationResultSet[aggregations.length];
+		for ( int i = 0; i < aggregations.length; i++ )
+		{
+			result[i] = aggregateStore.execute( aggregations[i], stopSign );
+		}
+		return result;
 	}
 
 	/**
@@ -13,7 +13,12 @@ package org.eclipse.birt.data.engine.olap.data.api.cube;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
 import org.eclipse.birt.core.archive.RAOutputStream;
@@ -24,13 +29,20 @@ import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.DataEngineImpl;
 import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.data.api.CubeQueryExecutorHelper;
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
 import org.eclipse.birt.data.engine.olap.data.api.ILevel;
+import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationDefinition;
 import org.eclipse.birt.data.engine.olap.data.impl.Cube;
+import org.eclipse.birt.data.engine.olap.data.impl.CubeAggregateStore;
 import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionFactory;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Hierarchy;
 
 /**
@@ -41,6 +53,11 @@ public class CubeMaterializer
 {
 	private IDocumentManager documentManager;
 	private DataEngine dataEngine;
+	private int threadCount = 1;
+	private boolean bitmapIndexEnabled = true;
+	private DimLevel[][] aggregateLevels;
+	
+	private static Logger logger = Logger.getLogger( CubeMaterializer.class.getName( ) );
 	
 	/**
 	 * 
@@ -123,6 +140,7 @@ public class CubeMaterializer
 			BirtException
 	{
 		Hierarchy hierarchy = new Hierarchy( documentManager, dimensionName, hierarchyName ); 
+		hierarchy.setThreadCount( threadCount );
 		hierarchy.createAndSaveHierarchy( 
 				iterator,
 				levelDefs,
@@ -166,6 +184,42 @@ public class CubeMaterializer
 		}
 	}
 	
+	/**
+	 * Sets the count of the threads used to sort the level index keys of the
+	 * hierarchies and to calculate the fact table row positions of the cubes
+	 * created afterwards. The indexes and the fact tables are still written by
+	 * the caller thread.
+	 * 
+	 * @param threadCount
+	 */
+	public void setThreadCount( int threadCount )
+	{
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Sets whether the bitmap index of the fact table is saved with the cubes
+	 * created or appended afterwards.
+	 * 
+	 * @param bitmapIndexEnabled
+	 */
+	public void setBitmapIndexEnabled( boolean bitmapIndexEnabled )
+	{
+		this.bitmapIndexEnabled = bitmapIndexEnabled;
+	}
+
+	/**
+	 * Sets the level combinations whose aggregations are saved together with
+	 * the cubes created afterwards. The combinations having a level not in the
+	 * cube are ignored.
+	 * 
+	 * @param aggregateLevels
+	 */
+	public void setAggregateLevels( DimLevel[][] aggregateLevels )
+	{
+		this.aggregateLevels = aggregateLevels;
+	}
+
 	/**
 	 * 
 	 * @param name
@@ -234,10 +288,203 @@ public class CubeMaterializer
 			throw new DataException( ResourceConstants.MISSING_DIMENSION_IN_CUBE, name );
 		}
 		Cube cube = new Cube( name, documentManager );
+		cube.setThreadCount( threadCount );
+		cube.setBitmapIndexEnabled( bitmapIndexEnabled );
 		cube.create(factTableJointColumnNames, DimJointColumnNames, dimensions,
 				factTable, measureColumns, calculatedMeasure, measureAggrFunctionNames, cacheSize, stopSign);
 		cube.close( );
 		documentManager.flush( );
+		saveAggregateStore( name, aggregateLevels, cacheSize, stopSign );
+	}
+	
+	/**
+	 * Appends the members of the iterator not in the saved dimension. The
+	 * positions of the saved members do not change, so the dimension should
+	 * be appended before the rows referring to the new members are appended
+	 * to the cubes by <code>appendCube</code>.
+	 * 
+	 * @param name
+	 * @param iterator
+	 * @param stopSign
+	 * @return
+	 * @throws BirtException
+	 * @throws IOException
+	 */
+	public IDimension appendDimension( String name, IDatasetIterator iterator,
+			StopSign stopSign ) throws BirtException, IOException
+	{
+		return DimensionFactory.appendDimension( name,
+				documentManager,
+				iterator,
+				stopSign );
+	}
+	
+	/**
+	 * Appends the rows of the iterator to the saved cube. The saved rows are
+	 * not sorted again, the new rows are saved after them. The new rows are
+	 * merged into the pre-aggregated rollups of the cube, which are saved
+	 * again for the same level combinations only if they cannot be merged.
+	 * 
+	 * @param name
+	 * @param factTableJointColumnNames
+	 * @param DimJointColumnNames
+	 * @param factTable
+	 * @param measureAggrFunctionNames
+	 * @param cacheSize
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public void appendCube( String name, String[][] factTableJointColumnNames,
+			String[][] DimJointColumnNames, IDatasetIterator factTable,
+			String[] measureAggrFunctionNames, long cacheSize, StopSign stopSign )
+			throws IOException, BirtException
+	{
+		CubeAggregateStore savedStore = CubeAggregateStore.load( documentManager,
+				name );
+		Cube cube = new Cube( name, documentManager );
+		cube.setThreadCount( threadCount );
+		cube.setBitmapIndexEnabled( bitmapIndexEnabled );
+		cube.append( factTableJointColumnNames,
+				DimJointColumnNames,
+				factTable,
+				measureAggrFunctionNames,
+				cacheSize,
+				stopSign );
+		CubeAggregateStore store = cube.getAggregateStore( );
+		cube.close( );
+		documentManager.flush( );
+		if ( savedStore != null && store == null && !stopSign.isStopped( ) )
+		{
+			saveAggregateStore( name,
+					savedStore.getRollupLevels( ),
+					cacheSize,
+					stopSign );
+		}
+	}
+	
+	/**
+	 * Saves the aggregations of the level combinations as the pre-aggregated
+	 * rollups of the cube.
+	 * 
+	 * @param cubeName
+	 * @param aggregateLevels
+	 * @param cacheSize
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	private void saveAggregateStore( String cubeName,
+			DimLevel[][] aggregateLevels, long cacheSize, StopSign stopSign )
+			throws IOException, BirtException
+	{
+		// remove the rollups of the cube created before with the same name,
+		// so they are not used to calculate the new rollups
+		CubeAggregateStore.save( documentManager,
+				cubeName,
+				null,
+				new IAggregationResultSet[0],
+				stopSign );
+		if ( aggregateLevels == null || aggregateLevels.length == 0 )
+		{
+			return;
+		}
+		Cube cube = new Cube( cubeName, documentManager );
+		cube.load( stopSign );
+		IAggregationResultSet[] resultSets = null;
+		try
+		{
+			MeasureInfo[] measureInfos = cube.getFactTable( ).getMeasureInfo( );
+			List aggregations = new ArrayList( );
+			for ( int i = 0; i < aggregateLevels.length; i++ )
+			{
+				if ( isValidLevels( cube, aggregateLevels[i] ) )
+				{
+					aggregations.add( CubeAggregateStore.createRollupDefinition( aggregateLevels[i],
+							measureInfos ) );
+				}
+				else
+				{
+					logger.log( Level.WARNING, "The aggregation levels " //$NON-NLS-1$
+							+ Arrays.asList( aggregateLevels[i] )
+							+ " are not in the cube " + cubeName ); //$NON-NLS-1$
+				}
+			}
+			if ( aggregations.isEmpty( ) )
+			{
+				return;
+			}
+			CubeQueryExecutorHelper helper = new CubeQueryExecutorHelper( cube );
+			helper.setMemoryCacheSize( cacheSize );
+			resultSets = helper.execute( (AggregationDefinition[]) aggregations.toArray( new AggregationDefinition[aggregations.size( )] ),
+					stopSign );
+			CubeAggregateStore.save( documentManager,
+					cubeName,
+					measureInfos,
+					resultSets,
+					stopSign );
+		}
+		finally
+		{
+			if ( resultSets != null )
+			{
+				for ( int i = 0; i < resultSets.length; i++ )
+				{
+					resultSets[i].close( );
+				}
+			}
+			cube.close( );
+		}
+	}
+	
+	/**
+	 * 
+	 * @param cube
+	 * @param levels
+	 * @return whether all the levels are in the cube and not repeated
+	 */
+	private static boolean isValidLevels( Cube cube, DimLevel[] levels )
+	{
+		if ( levels == null || levels.length == 0 )
+		{
+			return false;
+		}
+		IDimension[] dimensions = cube.getDimesions( );
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			for ( int j = 0; j < i; j++ )
+			{
+				if ( levels[i].equals( levels[j] ) )
+				{
+					return false;
+				}
+			}
+			boolean found = false;
+			for ( int j = 0; j < dimensions.length && !found; j++ )
+			{
+				if ( !dimensions[j].getName( )
+						.equals( levels[i].getDimensionName( ) ) )
+				{
+					continue;
+				}
+				ILevel[] dimensionLevels = dimensions[j].getHierarchy( )
+						.getLevels( );
+				for ( int k = 0; k < dimensionLevels.length; k++ )
+				{
+					if ( dimensionLevels[k].getName( )
+							.equals( levels[i].getLevelName( ) ) )
+					{
+						found = true;
+						break;
+					}
+				}
+			}
+			if ( !found )
+			{
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	/**
@@ -265,12 +512,25 @@ public class CubeMaterializer
 			while ( FTSUName != null )
 			{
 				saveDocObjToReportDocument( FTSUName, writer, stopSign );
+				if ( documentManager.exist( NamingUtil.getFTSUBitmapIndexName( FTSUName ) ) )
+				{
+					saveDocObjToReportDocument( NamingUtil.getFTSUBitmapIndexName( FTSUName ),
+							writer,
+							stopSign );
+				}
 				FTSUName = documentObject.readString( );
 			}
 		}
 		catch ( EOFException e )
 		{
 
+		}
+		//save aggregate store
+		String[] aggregateStoreNames = CubeAggregateStore.getDocumentObjectNames( documentManager,
+				cubeName );
+		for ( int i = 0; i < aggregateStoreNames.length; i++ )
+		{
+			saveDocObjToReportDocument( aggregateStoreNames[i], writer, stopSign );
 		}
 		//save dimension
 		IDimension[] dimensions = cube.getDimesions( );
@@ -156,7 +156,7 @@ public class BlockRandomAccessObject implements IRandomAccessObject
 	 */
 	public void setLength( long newLength ) throws IOException
 	{
-		assert newLength > 0;
+		assert newLength >= 0;
 		int needBlockCount = (int) ( (newLength - 1) / FileDocumentManager.BLOCK_SIZE ) + 1;
 		if ( needBlockCount > blockList.size( ) )
 		{
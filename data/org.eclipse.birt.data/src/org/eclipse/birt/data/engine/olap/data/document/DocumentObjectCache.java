@@ -15,6 +15,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
 
 /**
  * A cache that keeps a collection of at most maximumCapacity document object.
@@ -29,6 +30,7 @@ public class DocumentObjectCache
 	private long cachedSize;
 	private LinkedList linkedList = null;
 	private HashMap map = null;
+	private HashMap initialLengths = null;
 
 	public DocumentObjectCache( IDocumentManager documentManager )
 	{
@@ -43,6 +45,7 @@ public class DocumentObjectCache
 
 		linkedList = new LinkedList( );
 		map = new HashMap( );
+		initialLengths = new HashMap( );
 	}
 
 	/**
@@ -77,6 +80,11 @@ public class DocumentObjectCache
 		{
 			newDocumentObject = documentManager.createDocumentObject( name );
 		}
+		if ( !initialLengths.containsKey( name ) )
+		{
+			initialLengths.put( name,
+					Long.valueOf( newDocumentObject.length( ) ) );
+		}
 		newDocumentObject.seek( newDocumentObject.length( ) );
 		map.put( name, newDocumentObject );
 		linkedList.addFirst( name );
@@ -95,6 +103,19 @@ public class DocumentObjectCache
 		return size;
 	}
 
+	/**
+	 * Gets the lengths of the document objects when they are got from the
+	 * cache for the first time, the bytes after them are written through the
+	 * cache.
+	 * 
+	 * @return the map from the names of the document objects to their
+	 *         initial lengths
+	 */
+	public Map getInitialLengths( )
+	{
+		return initialLengths;
+	}
+
 	/**
 	 * Close all cached document objects.
 	 * 
@@ -188,4 +188,26 @@ public class DocumentObjectUtil
 				return null;
 		}
 	}
+
+	/**
+	 * Creates the document object, or clears it if it already exists, so the
+	 * document object is saved again.
+	 * 
+	 * @param documentManager
+	 * @param name
+	 * @return
+	 * @throws IOException
+	 */
+	public static IDocumentObject createOrReplaceDocumentObject(
+			IDocumentManager documentManager, String name ) throws IOException
+	{
+		IDocumentObject documentObject = documentManager.createDocumentObject( name );
+		if ( documentObject == null )
+		{
+			documentObject = documentManager.openDocumentObject( name );
+			documentObject.setLength( 0 );
+			documentObject.seek( 0 );
+		}
+		return documentObject;
+	}
 }
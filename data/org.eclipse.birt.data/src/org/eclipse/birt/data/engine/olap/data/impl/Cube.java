@@ -39,6 +39,10 @@ public class Cube implements ICube
 	protected IDocumentManager documentManager;
 	private IDimension[] dimension;
 	private FactTable factTable;
+	private int threadCount = 1;
+	private boolean bitmapIndexEnabled = true;
+	private CubeAggregateStore aggregateStore;
+	private boolean aggregateStoreLoaded = false;
 
 	private static Logger logger = Logger.getLogger( Cube.class.getName( ) );
 
@@ -124,6 +128,8 @@ public class Cube implements ICube
 		}
 		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
 		factTableConstructor.setMemoryCacheSize( cacheSize );
+		factTableConstructor.setThreadCount( threadCount );
+		factTableConstructor.setBitmapIndexEnabled( bitmapIndexEnabled );
 		factTable = factTableConstructor.saveFactTable( name,
 				factTableJointColumnNames,
 				DimJointColumnNames,
@@ -164,6 +170,82 @@ public class Cube implements ICube
 				stopSign );
 	}
 
+	/**
+	 * Appends the rows of the iterator to the fact table of the saved cube.
+	 * The new members of the dimensions should be appended before by
+	 * <code>Dimension.append</code>. The new rows are merged into the rollups
+	 * of the cube, the rollups which cannot be merged are removed and should
+	 * be saved again.
+	 * 
+	 * @param factTableJointColumnNames
+	 * @param DimJointColumnNames
+	 * @param iterator
+	 * @param measureColumnAggregations
+	 * @param cacheSize
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public void append( String[][] factTableJointColumnNames,
+			String[][] DimJointColumnNames, IDatasetIterator iterator,
+			String[] measureColumnAggregations, long cacheSize,
+			StopSign stopSign ) throws IOException, BirtException
+	{
+		load( stopSign );
+		CubeAggregateStore store = CubeAggregateStore.load( documentManager,
+				name );
+		Dimension[] tDimensions = new Dimension[dimension.length];
+		for ( int i = 0; i < tDimensions.length; i++ )
+		{
+			tDimensions[i] = (Dimension) dimension[i];
+		}
+		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
+		factTableConstructor.setMemoryCacheSize( cacheSize );
+		factTableConstructor.setThreadCount( threadCount );
+		factTableConstructor.setBitmapIndexEnabled( bitmapIndexEnabled );
+		factTable = factTableConstructor.appendFactTable( name,
+				factTableJointColumnNames,
+				DimJointColumnNames,
+				iterator,
+				tDimensions,
+				measureColumnAggregations,
+				stopSign );
+		if ( store != null && factTableConstructor.getAppendedSegments( ) != null )
+		{
+			store.append( this,
+					factTableConstructor.getAppendedSegments( ),
+					stopSign );
+		}
+		synchronized ( this )
+		{
+			aggregateStore = null;
+			aggregateStoreLoaded = false;
+		}
+		documentManager.flush( );
+	}
+
+	/**
+	 * Sets the count of the threads used to save the fact table when the cube
+	 * is created or appended.
+	 * 
+	 * @param threadCount
+	 */
+	public void setThreadCount( int threadCount )
+	{
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Sets whether the bitmap index of the fact table is saved when the cube
+	 * is created or appended.
+	 * 
+	 * @param bitmapIndexEnabled
+	 */
+	public void setBitmapIndexEnabled( boolean bitmapIndexEnabled )
+	{
+		this.bitmapIndexEnabled = bitmapIndexEnabled;
+	}
+
 	/**
 	 * 
 	 * @param stopSign
@@ -220,6 +302,23 @@ public class Cube implements ICube
 		return factTable;
 	}
 
+	/**
+	 * 
+	 * @return the pre-aggregated rollups of the cube, null if the cube has no
+	 *         rollup
+	 * @throws IOException
+	 */
+	public synchronized CubeAggregateStore getAggregateStore( )
+			throws IOException
+	{
+		if ( !aggregateStoreLoaded )
+		{
+			aggregateStore = CubeAggregateStore.load( documentManager, name );
+			aggregateStoreLoaded = true;
+		}
+		return aggregateStore;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.olap.data.api.ICube#close()
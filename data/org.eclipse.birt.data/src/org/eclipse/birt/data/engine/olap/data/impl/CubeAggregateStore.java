@@ -0,0 +1,1122 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
+import org.eclipse.birt.data.engine.cache.Constants;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultRow;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.api.IDimensionSortDefn;
+import org.eclipse.birt.data.engine.olap.data.api.ILevel;
+import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
+import org.eclipse.birt.data.engine.olap.data.api.cube.IDimension;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentObjectUtil;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultRow;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultRowComparator;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTable;
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTableAccessor.FTSUDocumentObjectNamingUtil;
+import org.eclipse.birt.data.engine.olap.data.util.BufferedStructureArray;
+import org.eclipse.birt.data.engine.olap.data.util.Bytes;
+import org.eclipse.birt.data.engine.olap.data.util.DataType;
+import org.eclipse.birt.data.engine.olap.data.util.DiskSortedStack;
+import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+
+/**
+ * The pre-aggregated rollups of a cube, saved in the document manager of the
+ * cube. Each rollup is the aggregation of all the fact table rows on a level
+ * combination. For the row count and for each measure the SUM, MIN, MAX and
+ * COUNT are saved, so an aggregation of these functions on a subset of the
+ * levels is answered by rolling up the smallest rollup covering the levels,
+ * instead of reading the fact table.
+ */
+public class CubeAggregateStore
+{
+
+	private static final String SUM_FUNC = "SUM"; //$NON-NLS-1$
+	private static final String MIN_FUNC = "MIN"; //$NON-NLS-1$
+	private static final String MAX_FUNC = "MAX"; //$NON-NLS-1$
+	private static final String COUNT_FUNC = "COUNT"; //$NON-NLS-1$
+
+	/**
+	 * the functions saved for each measure, the row count is saved before
+	 * them.
+	 */
+	private static final String[] MEASURE_FUNCTIONS = new String[]{
+			SUM_FUNC, MIN_FUNC, MAX_FUNC, COUNT_FUNC
+	};
+
+	private static final int NULL_VALUE = -1;
+
+	private IDocumentManager documentManager;
+	private String cubeName;
+	private String[] measureNames;
+	private int[] measureDataTypes;
+	private Rollup[] rollups;
+
+	private CubeAggregateStore( )
+	{
+	}
+
+	/**
+	 * Creates the aggregation whose result is saved as a rollup.
+	 *
+	 * @param levels
+	 * @param measureInfos
+	 * @return
+	 */
+	public static AggregationDefinition createRollupDefinition(
+			DimLevel[] levels, MeasureInfo[] measureInfos )
+	{
+		AggregationFunctionDefinition[] functions = new AggregationFunctionDefinition[1
+				+ measureInfos.length * MEASURE_FUNCTIONS.length];
+		functions[0] = new AggregationFunctionDefinition( "_count_", //$NON-NLS-1$
+				null,
+				COUNT_FUNC );
+		for ( int i = 0; i < measureInfos.length; i++ )
+		{
+			for ( int j = 0; j < MEASURE_FUNCTIONS.length; j++ )
+			{
+				functions[getColumnIndex( i, j )] = new AggregationFunctionDefinition( "_" //$NON-NLS-1$
+						+ MEASURE_FUNCTIONS[j] + "_" + measureInfos[i].getMeasureName( ), //$NON-NLS-1$
+						measureInfos[i].getMeasureName( ),
+						MEASURE_FUNCTIONS[j] );
+			}
+		}
+		return new AggregationDefinition( levels, null, functions );
+	}
+
+	/**
+	 * Saves the rollups of the cube. The rollups saved before are replaced,
+	 * an empty array removes them from the store.
+	 *
+	 * @param documentManager
+	 * @param cubeName
+	 * @param measureInfos
+	 * @param resultSets
+	 *            the result sets of the aggregations created by
+	 *            <code>createRollupDefinition</code>
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public static void save( IDocumentManager documentManager,
+			String cubeName, MeasureInfo[] measureInfos,
+			IAggregationResultSet[] resultSets, StopSign stopSign )
+			throws IOException, DataException
+	{
+		String storeName = NamingUtil.getAggregateStoreName( cubeName );
+		if ( resultSets.length == 0 && !documentManager.exist( storeName ) )
+		{
+			return;
+		}
+		for ( int i = 0; i < resultSets.length; i++ )
+		{
+			IDocumentObject documentObject = DocumentObjectUtil.createOrReplaceDocumentObject( documentManager,
+					NamingUtil.getAggregateRollupName( cubeName, i ) );
+			try
+			{
+				for ( int j = 0; j < resultSets[i].length( ); j++ )
+				{
+					if ( stopSign.isStopped( ) )
+					{
+						return;
+					}
+					resultSets[i].seek( j );
+					writeRow( documentObject, resultSets[i].getCurrentRow( ) );
+				}
+			}
+			finally
+			{
+				documentObject.close( );
+			}
+		}
+
+		if ( measureInfos == null )
+		{
+			measureInfos = new MeasureInfo[0];
+		}
+		CubeAggregateStore store = new CubeAggregateStore( );
+		store.documentManager = documentManager;
+		store.cubeName = cubeName;
+		store.measureNames = new String[measureInfos.length];
+		store.measureDataTypes = new int[measureInfos.length];
+		for ( int i = 0; i < measureInfos.length; i++ )
+		{
+			store.measureNames[i] = measureInfos[i].getMeasureName( );
+			store.measureDataTypes[i] = measureInfos[i].getDataType( );
+		}
+		store.rollups = new Rollup[resultSets.length];
+		for ( int i = 0; i < resultSets.length; i++ )
+		{
+			Rollup rollup = new Rollup( );
+			rollup.documentObjectName = NamingUtil.getAggregateRollupName( cubeName,
+					i );
+			rollup.levels = resultSets[i].getAllLevels( );
+			rollup.keyNames = new String[rollup.levels.length][];
+			rollup.attributeNames = new String[rollup.levels.length][];
+			for ( int j = 0; j < rollup.levels.length; j++ )
+			{
+				rollup.keyNames[j] = resultSets[i].getLevelKeys( )[j];
+				rollup.attributeNames[j] = resultSets[i].getLevelAttributes( ) == null
+						? null : resultSets[i].getLevelAttributes( )[j];
+			}
+			rollup.rowCount = resultSets[i].length( );
+			store.rollups[i] = rollup;
+		}
+		store.saveCatalog( );
+	}
+
+	/**
+	 * Saves the measures and the rollups of the store.
+	 *
+	 * @throws IOException
+	 */
+	private void saveCatalog( ) throws IOException
+	{
+		IDocumentObject documentObject = DocumentObjectUtil.createOrReplaceDocumentObject( documentManager,
+				NamingUtil.getAggregateStoreName( cubeName ) );
+		try
+		{
+			documentObject.writeInt( measureNames.length );
+			for ( int i = 0; i < measureNames.length; i++ )
+			{
+				documentObject.writeString( measureNames[i] );
+				documentObject.writeInt( measureDataTypes[i] );
+			}
+			documentObject.writeInt( rollups.length );
+			for ( int i = 0; i < rollups.length; i++ )
+			{
+				documentObject.writeInt( rollups[i].levels.length );
+				for ( int j = 0; j < rollups[i].levels.length; j++ )
+				{
+					documentObject.writeString( rollups[i].levels[j].getDimensionName( ) );
+					documentObject.writeString( rollups[i].levels[j].getLevelName( ) );
+					writeStrings( documentObject, rollups[i].keyNames[j] );
+					writeStrings( documentObject, rollups[i].attributeNames[j] );
+				}
+				documentObject.writeInt( rollups[i].rowCount );
+			}
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+		documentManager.flush( );
+	}
+
+	/**
+	 * Loads the rollups of the cube.
+	 *
+	 * @param documentManager
+	 * @param cubeName
+	 * @return null if the cube has no rollup
+	 * @throws IOException
+	 */
+	public static CubeAggregateStore load( IDocumentManager documentManager,
+			String cubeName ) throws IOException
+	{
+		String storeName = NamingUtil.getAggregateStoreName( cubeName );
+		if ( !documentManager.exist( storeName ) )
+		{
+			return null;
+		}
+		IDocumentObject documentObject = documentManager.openDocumentObject( storeName );
+		try
+		{
+			CubeAggregateStore store = new CubeAggregateStore( );
+			store.documentManager = documentManager;
+			store.cubeName = cubeName;
+			int measureCount = documentObject.readInt( );
+			store.measureNames = new String[measureCount];
+			store.measureDataTypes = new int[measureCount];
+			for ( int i = 0; i < measureCount; i++ )
+			{
+				store.measureNames[i] = documentObject.readString( );
+				store.measureDataTypes[i] = documentObject.readInt( );
+			}
+			store.rollups = new Rollup[documentObject.readInt( )];
+			if ( store.rollups.length == 0 )
+			{
+				return null;
+			}
+			for ( int i = 0; i < store.rollups.length; i++ )
+			{
+				Rollup rollup = new Rollup( );
+				rollup.documentObjectName = NamingUtil.getAggregateRollupName( cubeName,
+						i );
+				int levelCount = documentObject.readInt( );
+				rollup.levels = new DimLevel[levelCount];
+				rollup.keyNames = new String[levelCount][];
+				rollup.attributeNames = new String[levelCount][];
+				for ( int j = 0; j < levelCount; j++ )
+				{
+					rollup.levels[j] = new DimLevel( documentObject.readString( ),
+							documentObject.readString( ) );
+					rollup.keyNames[j] = readStrings( documentObject );
+					rollup.attributeNames[j] = readStrings( documentObject );
+				}
+				rollup.rowCount = documentObject.readInt( );
+				store.rollups[i] = rollup;
+			}
+			return store;
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+	}
+
+	/**
+	 * Gets the names of the document objects of the store, which are saved
+	 * together with the cube.
+	 *
+	 * @param documentManager
+	 * @param cubeName
+	 * @return
+	 * @throws IOException
+	 */
+	public static String[] getDocumentObjectNames(
+			IDocumentManager documentManager, String cubeName )
+			throws IOException
+	{
+		CubeAggregateStore store = load( documentManager, cubeName );
+		if ( store == null )
+		{
+			return new String[0];
+		}
+		String[] result = new String[store.rollups.length + 1];
+		result[0] = NamingUtil.getAggregateStoreName( cubeName );
+		for ( int i = 0; i < store.rollups.length; i++ )
+		{
+			result[i + 1] = store.rollups[i].documentObjectName;
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @return the levels of each rollup, used to calculate the rollups again
+	 *         after the rows are appended to the cube
+	 */
+	public DimLevel[][] getRollupLevels( )
+	{
+		DimLevel[][] result = new DimLevel[rollups.length][];
+		for ( int i = 0; i < rollups.length; i++ )
+		{
+			result[i] = rollups[i].levels;
+		}
+		return result;
+	}
+
+	/**
+	 * Merges the rows appended to the fact table of the cube into the
+	 * rollups, so the rollups are not calculated again from all the rows.
+	 * Each appended row is rolled up with the saved row of the same members,
+	 * and the rows of each rollup are kept in the ascending order of the
+	 * levels. If a rollup cannot be merged, which is the case when it is on a
+	 * time dimension or the measures of the fact table are changed, or if the
+	 * stop sign is stopped, the store is removed.
+	 *
+	 * @param cube
+	 *            the cube the rows are appended to
+	 * @param appendedSegments
+	 *            the map from the names of the segments to the offsets of
+	 *            their first appended rows
+	 * @param stopSign
+	 * @return false if the store is removed
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public boolean append( Cube cube, Map appendedSegments, StopSign stopSign )
+			throws IOException, DataException
+	{
+		FactTable factTable = cube.getFactTable( );
+		IDimension[] dimensions = cube.getDimesions( );
+		MeasureInfo[] measureInfos = new MeasureInfo[measureNames.length];
+		int[] measureIndex = new int[measureNames.length];
+		for ( int i = 0; i < measureNames.length; i++ )
+		{
+			measureInfos[i] = new MeasureInfo( measureNames[i],
+					measureDataTypes[i] );
+			measureIndex[i] = factTable.getMeasureIndex( measureNames[i] );
+			if ( measureIndex[i] < 0 )
+			{
+				return remove( );
+			}
+		}
+		// the dimension and the level of each rollup level
+		int[][] dimensionIndex = new int[rollups.length][];
+		int[][] levelIndex = new int[rollups.length][];
+		for ( int i = 0; i < rollups.length; i++ )
+		{
+			dimensionIndex[i] = new int[rollups[i].levels.length];
+			levelIndex[i] = new int[rollups[i].levels.length];
+			for ( int j = 0; j < rollups[i].levels.length; j++ )
+			{
+				dimensionIndex[i][j] = factTable.getDimensionIndex( rollups[i].levels[j].getDimensionName( ) );
+				if ( dimensionIndex[i][j] < 0
+						|| dimensions[dimensionIndex[i][j]].isTime( ) )
+				{
+					return remove( );
+				}
+				levelIndex[i][j] = getLevelIndex( dimensions[dimensionIndex[i][j]],
+						rollups[i].levels[j].getLevelName( ) );
+				if ( levelIndex[i][j] < 0 )
+				{
+					return remove( );
+				}
+			}
+		}
+
+		DiskSortedStack[] sortedRows = new DiskSortedStack[rollups.length];
+		AggregationResultRowComparator[] comparators = new AggregationResultRowComparator[rollups.length];
+		try
+		{
+			for ( int i = 0; i < rollups.length; i++ )
+			{
+				int[] keyLevelIndex = new int[rollups[i].levels.length];
+				for ( int j = 0; j < keyLevelIndex.length; j++ )
+				{
+					keyLevelIndex[j] = j;
+				}
+				comparators[i] = new AggregationResultRowComparator( keyLevelIndex,
+						null );
+				sortedRows[i] = new DiskSortedStack( Constants.LIST_BUFFER_SIZE,
+						false,
+						comparators[i],
+						AggregationResultRow.getCreator( ) );
+			}
+			readAppendedRows( factTable,
+					dimensions,
+					measureIndex,
+					dimensionIndex,
+					levelIndex,
+					appendedSegments,
+					sortedRows,
+					stopSign );
+			for ( int i = 0; i < rollups.length; i++ )
+			{
+				if ( stopSign.isStopped( ) )
+				{
+					return remove( );
+				}
+				mergeRows( rollups[i],
+						sortedRows[i],
+						comparators[i],
+						createRollupDefinition( rollups[i].levels,
+								measureInfos ).getAggregationFunctions( ),
+						stopSign );
+			}
+		}
+		finally
+		{
+			for ( int i = 0; i < sortedRows.length; i++ )
+			{
+				if ( sortedRows[i] != null )
+				{
+					sortedRows[i].close( );
+				}
+			}
+		}
+		if ( stopSign.isStopped( ) )
+		{
+			return remove( );
+		}
+		saveCatalog( );
+		return true;
+	}
+
+	/**
+	 * Reads the rows appended to the segments, and pushes a row for each
+	 * rollup whose members are the ones of the fact table row, and whose
+	 * values are the ones of the rollup columns aggregating the row alone.
+	 */
+	private void readAppendedRows( FactTable factTable,
+			IDimension[] dimensions, int[] measureIndex, int[][] dimensionIndex,
+			int[][] levelIndex, Map appendedSegments,
+			DiskSortedStack[] sortedRows, StopSign stopSign )
+			throws IOException
+	{
+		MeasureInfo[] factTableMeasures = factTable.getMeasureInfo( );
+		Object[] measures = new Object[factTableMeasures.length];
+		Iterator itr = appendedSegments.entrySet( ).iterator( );
+		while ( itr.hasNext( ) )
+		{
+			Map.Entry entry = (Map.Entry) itr.next( );
+			String FTSUDocName = (String) entry.getKey( );
+			int[] subDimensionIndex = FTSUDocumentObjectNamingUtil.getSubDimensionIndex( NamingUtil.getFactTableName( factTable.getName( ) ),
+					FTSUDocName );
+			IDocumentObject segment = documentManager.openDocumentObject( FTSUDocName );
+			try
+			{
+				segment.seek( ( (Long) entry.getValue( ) ).longValue( ) );
+				long length = segment.length( );
+				while ( segment.getFilePointer( ) < length )
+				{
+					if ( stopSign.isStopped( ) )
+					{
+						return;
+					}
+					Bytes combinedPosition = segment.readBytes( );
+					int[] dimensionPosition = factTable.getCombinedPositionCalculator( )
+							.calculateDimensionPosition( subDimensionIndex,
+									combinedPosition.bytesValue( ) );
+					for ( int i = 0; i < measures.length; i++ )
+					{
+						measures[i] = DocumentObjectUtil.readValue( segment,
+								factTableMeasures[i].getDataType( ) );
+					}
+					Object[] values = new Object[1 + measureIndex.length
+							* MEASURE_FUNCTIONS.length];
+					values[0] = Integer.valueOf( 1 );
+					for ( int i = 0; i < measureIndex.length; i++ )
+					{
+						Object value = measures[measureIndex[i]];
+						values[getColumnIndex( i, 0 )] = value;
+						values[getColumnIndex( i, 1 )] = value;
+						values[getColumnIndex( i, 2 )] = value;
+						values[getColumnIndex( i, 3 )] = Integer.valueOf( value == null
+								? 0 : 1 );
+					}
+					for ( int i = 0; i < rollups.length; i++ )
+					{
+						Member[] members = null;
+						if ( dimensionIndex[i].length > 0 )
+						{
+							members = new Member[dimensionIndex[i].length];
+							for ( int j = 0; j < members.length; j++ )
+							{
+								int dimension = dimensionIndex[i][j];
+								members[j] = ( (Dimension) dimensions[dimension] ).getRowByPosition( dimensionPosition[dimension] )
+										.getMembers( )[levelIndex[i][j]];
+							}
+						}
+						sortedRows[i].push( new AggregationResultRow( members,
+								values ) );
+					}
+				}
+			}
+			finally
+			{
+				segment.close( );
+			}
+		}
+	}
+
+	/**
+	 * Merges the saved rows of the rollup with the sorted appended rows, and
+	 * saves the merged rows in the ascending order of the levels.
+	 */
+	private void mergeRows( Rollup rollup, DiskSortedStack sortedRows,
+			AggregationResultRowComparator comparator,
+			AggregationFunctionDefinition[] functions, StopSign stopSign )
+			throws IOException, DataException
+	{
+		int[] levelIndex = new int[rollup.levels.length];
+		for ( int i = 0; i < levelIndex.length; i++ )
+		{
+			levelIndex[i] = i;
+		}
+		int[] columnIndex = new int[functions.length];
+		for ( int i = 0; i < columnIndex.length; i++ )
+		{
+			columnIndex[i] = i;
+		}
+		IDiskArray savedRows = new BufferedStructureArray( AggregationResultRow.getCreator( ),
+				Constants.LIST_BUFFER_SIZE );
+		readRows( rollup, levelIndex, columnIndex, savedRows, stopSign );
+		for ( int i = 0; i < savedRows.size( ); i++ )
+		{
+			sortedRows.push( savedRows.get( i ) );
+		}
+		savedRows.close( );
+
+		int rowCount = 0;
+		IDocumentObject documentObject = DocumentObjectUtil.createOrReplaceDocumentObject( documentManager,
+				rollup.documentObjectName );
+		try
+		{
+			Merger merger = null;
+			IAggregationResultRow row = (IAggregationResultRow) sortedRows.pop( );
+			while ( row != null && !stopSign.isStopped( ) )
+			{
+				if ( merger == null )
+				{
+					merger = new Merger( functions );
+				}
+				else if ( comparator.compare( merger.first, row ) != 0 )
+				{
+					writeRow( documentObject, merger.getResult( ) );
+					rowCount++;
+					merger = new Merger( functions );
+				}
+				merger.onRow( row );
+				row = (IAggregationResultRow) sortedRows.pop( );
+			}
+			if ( merger != null )
+			{
+				writeRow( documentObject, merger.getResult( ) );
+				rowCount++;
+			}
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+		rollup.rowCount = rowCount;
+	}
+
+	/**
+	 * Removes the store of the cube.
+	 *
+	 * @return false
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private boolean remove( ) throws IOException, DataException
+	{
+		save( documentManager,
+				cubeName,
+				null,
+				new IAggregationResultSet[0],
+				new StopSign( ) );
+		return false;
+	}
+
+	private static int getLevelIndex( IDimension dimension, String levelName )
+	{
+		ILevel[] levels = dimension.getHierarchy( ).getLevels( );
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			if ( levels[i].getName( ).equals( levelName ) )
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the aggregation result from the smallest rollup covering the
+	 * levels of the aggregation. The caller should make sure that all the
+	 * fact table rows are aggregated, the filters of the dimensions and the
+	 * measures are not applied here.
+	 *
+	 * @param aggregation
+	 * @param stopSign
+	 * @return null if the aggregation cannot be answered by the rollups
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public IAggregationResultSet execute( AggregationDefinition aggregation,
+			StopSign stopSign ) throws IOException, DataException
+	{
+		DimLevel[] levels = aggregation.getLevels( ) == null
+				? new DimLevel[0] : aggregation.getLevels( );
+		AggregationFunctionDefinition[] functions = aggregation.getAggregationFunctions( ) == null
+				? new AggregationFunctionDefinition[0]
+				: aggregation.getAggregationFunctions( );
+		int[] columnIndex = new int[functions.length];
+		boolean needSameLevels = false;
+		for ( int i = 0; i < functions.length; i++ )
+		{
+			columnIndex[i] = getColumnIndex( functions[i] );
+			if ( columnIndex[i] < 0 )
+			{
+				return null;
+			}
+			// the sum of the double values depends on the order of the
+			// values, so it is not rolled up
+			if ( SUM_FUNC.equals( functions[i].getFunctionName( ) )
+					&& measureDataTypes[getMeasureIndex( functions[i].getMeasureName( ) )] == DataType.DOUBLE_TYPE )
+			{
+				needSameLevels = true;
+			}
+		}
+
+		Rollup rollup = null;
+		int[] levelIndex = null;
+		for ( int i = 0; i < rollups.length; i++ )
+		{
+			int[] index = rollups[i].getLevelIndex( levels );
+			if ( index == null
+					|| ( needSameLevels && rollups[i].levels.length != levels.length ) )
+			{
+				continue;
+			}
+			if ( rollup == null || rollups[i].rowCount < rollup.rowCount )
+			{
+				rollup = rollups[i];
+				levelIndex = index;
+			}
+		}
+		if ( rollup == null )
+		{
+			return null;
+		}
+
+		String[][] keyNames = new String[levels.length][];
+		String[][] attributeNames = new String[levels.length][];
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			keyNames[i] = rollup.keyNames[levelIndex[i]];
+			attributeNames[i] = rollup.attributeNames[levelIndex[i]];
+		}
+		IDiskArray result = new BufferedStructureArray( AggregationResultRow.getCreator( ),
+				Constants.LIST_BUFFER_SIZE );
+		boolean needRollup = rollup.levels.length != levels.length;
+		if ( !needRollup
+				&& isInOrder( levelIndex, aggregation.getSortTypes( ) ) )
+		{
+			readRows( rollup, levelIndex, columnIndex, result, stopSign );
+		}
+		else if ( levels.length == 0 )
+		{
+			IDiskArray rows = new BufferedStructureArray( AggregationResultRow.getCreator( ),
+					Constants.LIST_BUFFER_SIZE );
+			readRows( rollup, levelIndex, columnIndex, rows, stopSign );
+			if ( rows.size( ) > 0 )
+			{
+				Merger merger = new Merger( functions );
+				for ( int i = 0; i < rows.size( ); i++ )
+				{
+					merger.onRow( (IAggregationResultRow) rows.get( i ) );
+				}
+				result.add( merger.getResult( ) );
+			}
+			rows.close( );
+		}
+		else
+		{
+			int[] keyLevelIndex = new int[levels.length];
+			for ( int i = 0; i < keyLevelIndex.length; i++ )
+			{
+				keyLevelIndex[i] = i;
+			}
+			AggregationResultRowComparator comparator = new AggregationResultRowComparator( keyLevelIndex,
+					aggregation.getSortTypes( ) );
+			DiskSortedStack sortedRows = new DiskSortedStack( Constants.LIST_BUFFER_SIZE,
+					false,
+					comparator,
+					AggregationResultRow.getCreator( ) );
+			IDiskArray rows = new BufferedStructureArray( AggregationResultRow.getCreator( ),
+					Constants.LIST_BUFFER_SIZE );
+			readRows( rollup, levelIndex, columnIndex, rows, stopSign );
+			for ( int i = 0; i < rows.size( ); i++ )
+			{
+				sortedRows.push( rows.get( i ) );
+			}
+			rows.close( );
+
+			Merger merger = null;
+			IAggregationResultRow row = (IAggregationResultRow) sortedRows.pop( );
+			while ( row != null && !stopSign.isStopped( ) )
+			{
+				if ( merger == null )
+				{
+					merger = new Merger( functions );
+				}
+				else if ( comparator.compare( merger.first, row ) != 0 )
+				{
+					result.add( merger.getResult( ) );
+					merger = new Merger( functions );
+				}
+				merger.onRow( row );
+				row = (IAggregationResultRow) sortedRows.pop( );
+			}
+			if ( merger != null )
+			{
+				result.add( merger.getResult( ) );
+			}
+			sortedRows.close( );
+		}
+		return new AggregationResultSet( aggregation,
+				result,
+				keyNames,
+				attributeNames );
+	}
+
+	/**
+	 * Reads the rows of the rollup, keeping the members of the levels and
+	 * the values of the columns.
+	 */
+	private void readRows( Rollup rollup, int[] levelIndex,
+			int[] columnIndex, IDiskArray rows, StopSign stopSign )
+			throws IOException
+	{
+		int columnCount = 1 + measureNames.length * MEASURE_FUNCTIONS.length;
+		IDocumentObject documentObject = documentManager.openDocumentObject( rollup.documentObjectName );
+		try
+		{
+			Member[] members = new Member[rollup.levels.length];
+			Object[] values = new Object[columnCount];
+			for ( int i = 0; i < rollup.rowCount; i++ )
+			{
+				if ( stopSign.isStopped( ) )
+				{
+					return;
+				}
+				for ( int j = 0; j < members.length; j++ )
+				{
+					members[j] = readMember( documentObject );
+				}
+				for ( int j = 0; j < values.length; j++ )
+				{
+					values[j] = readObject( documentObject );
+				}
+				Member[] levelMembers = null;
+				if ( levelIndex.length > 0 )
+				{
+					levelMembers = new Member[levelIndex.length];
+					for ( int j = 0; j < levelIndex.length; j++ )
+					{
+						levelMembers[j] = members[levelIndex[j]];
+					}
+				}
+				Object[] aggregationValues = null;
+				if ( columnIndex.length > 0 )
+				{
+					aggregationValues = new Object[columnIndex.length];
+					for ( int j = 0; j < columnIndex.length; j++ )
+					{
+						aggregationValues[j] = values[columnIndex[j]];
+					}
+				}
+				rows.add( new AggregationResultRow( levelMembers,
+						aggregationValues ) );
+			}
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+	}
+
+	/**
+	 * The rows of a rollup are saved in the ascending order of the levels.
+	 */
+	private static boolean isInOrder( int[] levelIndex, int[] sortTypes )
+	{
+		for ( int i = 0; i < levelIndex.length; i++ )
+		{
+			if ( levelIndex[i] != i )
+			{
+				return false;
+			}
+			if ( sortTypes != null
+					&& sortTypes.length > i
+					&& sortTypes[i] == IDimensionSortDefn.SORT_DESC )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @param function
+	 * @return the index of the rollup column of the function, -1 if the
+	 *         function is not saved in the rollups
+	 */
+	private int getColumnIndex( AggregationFunctionDefinition function )
+	{
+		if ( function.getParaCol( ) != null
+				|| function.getParaValue( ) != null
+				|| function.getFilterEvalHelper( ) != null
+				|| function.getTimeFunction( ) != null
+				|| function.getTimeFunctionFilter( ) != null )
+		{
+			return -1;
+		}
+		if ( function.getMeasureName( ) == null )
+		{
+			return COUNT_FUNC.equals( function.getFunctionName( ) ) ? 0 : -1;
+		}
+		int measureIndex = getMeasureIndex( function.getMeasureName( ) );
+		if ( measureIndex < 0 )
+		{
+			return -1;
+		}
+		for ( int i = 0; i < MEASURE_FUNCTIONS.length; i++ )
+		{
+			if ( MEASURE_FUNCTIONS[i].equals( function.getFunctionName( ) ) )
+			{
+				return getColumnIndex( measureIndex, i );
+			}
+		}
+		return -1;
+	}
+
+	private static int getColumnIndex( int measureIndex, int functionIndex )
+	{
+		return 1 + measureIndex * MEASURE_FUNCTIONS.length + functionIndex;
+	}
+
+	private int getMeasureIndex( String measureName )
+	{
+		for ( int i = 0; i < measureNames.length; i++ )
+		{
+			if ( measureNames[i].equals( measureName ) )
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void writeRow( IDocumentObject documentObject,
+			IAggregationResultRow row ) throws IOException, DataException
+	{
+		Member[] members = row.getLevelMembers( );
+		for ( int i = 0; members != null && i < members.length; i++ )
+		{
+			writeObjects( documentObject, members[i].getKeyValues( ) );
+			writeObjects( documentObject, members[i].getAttributes( ) );
+		}
+		Object[] values = row.getAggregationValues( );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			writeObject( documentObject, values[i] );
+		}
+	}
+
+	private static Member readMember( IDocumentObject documentObject )
+			throws IOException
+	{
+		Member member = new Member( );
+		member.setKeyValues( readObjects( documentObject ) );
+		member.setAttributes( readObjects( documentObject ) );
+		return member;
+	}
+
+	private static void writeObjects( IDocumentObject documentObject,
+			Object[] values ) throws IOException, DataException
+	{
+		if ( values == null )
+		{
+			documentObject.writeInt( NULL_VALUE );
+			return;
+		}
+		documentObject.writeInt( values.length );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			writeObject( documentObject, values[i] );
+		}
+	}
+
+	private static Object[] readObjects( IDocumentObject documentObject )
+			throws IOException
+	{
+		int length = documentObject.readInt( );
+		if ( length == NULL_VALUE )
+		{
+			return null;
+		}
+		Object[] result = new Object[length];
+		for ( int i = 0; i < length; i++ )
+		{
+			result[i] = readObject( documentObject );
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the value with its data type, so it is read back as the same
+	 * class.
+	 */
+	private static void writeObject( IDocumentObject documentObject,
+			Object value ) throws IOException, DataException
+	{
+		int dataType = value == null
+				? DataType.UNKNOWN_TYPE
+				: DataType.getDataType( value.getClass( ) );
+		if ( value != null
+				&& ( dataType == DataType.UNKNOWN_TYPE || value instanceof java.sql.Timestamp ) )
+		{
+			dataType = DataType.JAVA_OBJECT_TYPE;
+		}
+		documentObject.writeInt( dataType );
+		DocumentObjectUtil.writeValue( documentObject, dataType, value );
+	}
+
+	private static Object readObject( IDocumentObject documentObject )
+			throws IOException
+	{
+		return DocumentObjectUtil.readValue( documentObject,
+				documentObject.readInt( ) );
+	}
+
+	private static void writeStrings( IDocumentObject documentObject,
+			String[] values ) throws IOException
+	{
+		if ( values == null )
+		{
+			documentObject.writeInt( NULL_VALUE );
+			return;
+		}
+		documentObject.writeInt( values.length );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			documentObject.writeString( values[i] );
+		}
+	}
+
+	private static String[] readStrings( IDocumentObject documentObject )
+			throws IOException
+	{
+		int length = documentObject.readInt( );
+		if ( length == NULL_VALUE )
+		{
+			return null;
+		}
+		String[] result = new String[length];
+		for ( int i = 0; i < length; i++ )
+		{
+			result[i] = documentObject.readString( );
+		}
+		return result;
+	}
+
+	/**
+	 * The catalog entry of a rollup.
+	 */
+	private static class Rollup
+	{
+
+		String documentObjectName;
+		DimLevel[] levels;
+		String[][] keyNames;
+		String[][] attributeNames;
+		int rowCount;
+
+		/**
+		 *
+		 * @param queryLevels
+		 * @return the index of each query level in the rollup, null if the
+		 *         rollup does not cover the query levels
+		 */
+		int[] getLevelIndex( DimLevel[] queryLevels )
+		{
+			int[] result = new int[queryLevels.length];
+			for ( int i = 0; i < queryLevels.length; i++ )
+			{
+				result[i] = -1;
+				for ( int j = 0; j < levels.length; j++ )
+				{
+					if ( levels[j].equals( queryLevels[i] ) )
+					{
+						result[i] = j;
+						break;
+					}
+				}
+				if ( result[i] == -1 )
+				{
+					return null;
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Rolls up the rows having the same members. The SUM, MIN and MAX are
+	 * rolled up by the same function as the one of the rows, and the COUNT is
+	 * rolled up by adding the counts.
+	 */
+	private static class Merger
+	{
+
+		private AggregationFunctionDefinition[] functions;
+		private Accumulator[] accumulators;
+		private int[] counts;
+		private IAggregationResultRow first;
+
+		Merger( AggregationFunctionDefinition[] functions )
+				throws DataException
+		{
+			this.functions = functions;
+			this.accumulators = new Accumulator[functions.length];
+			this.counts = new int[functions.length];
+			for ( int i = 0; i < functions.length; i++ )
+			{
+				if ( !COUNT_FUNC.equals( functions[i].getFunctionName( ) ) )
+				{
+					accumulators[i] = AggregationManager.getInstance( )
+							.getAggregation( functions[i].getFunctionName( ) )
+							.newAccumulator( );
+					accumulators[i].start( );
+				}
+			}
+		}
+
+		void onRow( IAggregationResultRow row ) throws DataException
+		{
+			if ( first == null )
+			{
+				first = row;
+			}
+			for ( int i = 0; i < functions.length; i++ )
+			{
+				Object value = row.getAggregationValues( )[i];
+				if ( accumulators[i] == null )
+				{
+					if ( value != null )
+					{
+						counts[i] += ( (Number) value ).intValue( );
+					}
+				}
+				else
+				{
+					accumulators[i].onRow( new Object[]{
+						value
+					} );
+				}
+			}
+		}
+
+		IAggregationResultRow getResult( ) throws DataException
+		{
+			Object[] values = null;
+			if ( functions.length > 0 )
+			{
+				values = new Object[functions.length];
+				for ( int i = 0; i < functions.length; i++ )
+				{
+					if ( accumulators[i] == null )
+					{
+						values[i] = Integer.valueOf( counts[i] );
+					}
+					else
+					{
+						accumulators[i].finish( );
+						values[i] = accumulators[i].getValue( );
+					}
+				}
+			}
+			return new AggregationResultRow( first.getLevelMembers( ), values );
+		}
+	}
+}
@@ -25,7 +25,10 @@ public class NamingUtil
 	private static final String HIERARCHY_OFFSET = OLAP_PREFIX + "hierarchy_offset_";
 	private static final String FACT_TABLE = OLAP_PREFIX + "fact_table_";
 	private static final String FTSU_LIST = OLAP_PREFIX + "ftsu_list_";
+	private static final String FTSU_BITMAP_INDEX = OLAP_PREFIX + "ftsu_bitmap_index_";
 	private static final String AGGREGATION_RS_DOC = OLAP_PREFIX + "rs_doc_";
+	private static final String AGGREGATE_STORE = OLAP_PREFIX + "aggregate_store_";
+	private static final String AGGREGATE_ROLLUP = OLAP_PREFIX + "aggregate_rollup_";
 
 	public static final String DERIVED_MEASURE_PREFIX = "_${DERIVED_MEASURE}$_";
 
@@ -139,6 +142,37 @@ public class NamingUtil
 		return FTSU_LIST + factTableName;
 	}
 	
+	/**
+	 * 
+	 * @param FTSUDocName
+	 * @return the name of the bitmap index of the fact table segment
+	 */
+	public static String getFTSUBitmapIndexName( String FTSUDocName )
+	{
+		return FTSU_BITMAP_INDEX + FTSUDocName;
+	}
+	
+	/**
+	 * 
+	 * @param cubeName
+	 * @return the name of the catalog of the pre-aggregated rollups
+	 */
+	public static String getAggregateStoreName( String cubeName )
+	{
+		return AGGREGATE_STORE + cubeName;
+	}
+	
+	/**
+	 * 
+	 * @param cubeName
+	 * @param index
+	 * @return the name of the pre-aggregated rollup
+	 */
+	public static String getAggregateRollupName( String cubeName, int index )
+	{
+		return AGGREGATE_ROLLUP + index + "_" + cubeName;
+	}
+	
 	/**
 	 * 
 	 * @param ID
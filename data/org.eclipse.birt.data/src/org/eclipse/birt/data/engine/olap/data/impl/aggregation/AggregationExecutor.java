@@ -17,12 +17,21 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.aggregation.AggregationUtil;
+import org.eclipse.birt.data.engine.api.CloseListenerManager;
+import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
 import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.TempPathManager;
 import org.eclipse.birt.data.engine.executor.ComparatorUtil;
 import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
 import org.eclipse.birt.data.engine.i18n.DataResourceHandle;
@@ -71,6 +80,7 @@ public class AggregationExecutor
 	public Row4Aggregation[] aggregationRow;
 	private AggregationFunctionDefinition simpleFunc;
 	private boolean existReferenceDate = false;
+	private int threadCount = 1;
 	
 	private static String[] simpleFuncNames = new String[]{
 		"SUM",
@@ -280,33 +290,17 @@ public class AggregationExecutor
 			throws IOException, DataException
 	{
 		populateSortedFactRows( stopSign );
-		for ( int i = 0; i < allSortedFactRows.size( ); i++ )
+		if ( threadCount > 1
+				&& allSortedFactRows.size( ) > 1 && isThreadConfined( ) )
 		{
-			DiskSortedStackWrapper diskSortedStackWrapper = (DiskSortedStackWrapper) allSortedFactRows.get( i );
-			int[] calculatorIndexs = new int[sortedFactRows.length];
-			int pos = 0;
-			for ( int j = 0; j < calculatorIndexs.length; j++ )
-			{
-				if ( sortedFactRows[j] == diskSortedStackWrapper )
-				{
-					calculatorIndexs[pos] = j;
-					pos++;
-				}
-			}
-			while ( diskSortedStackWrapper.pop( ) != null
-					&& !stopSign.isStopped( ) )
+			calculateInParallel( stopSign );
+		}
+		else
+		{
+			for ( int i = 0; i < allSortedFactRows.size( ); i++ )
 			{
-				Row4Aggregation row = (Row4Aggregation) diskSortedStackWrapper.getCurrentObject( );
-				for ( int j = 0; j < pos; j++ )
-				{
-//					aggregationCalculators[calculatorIndexs[j]].onRow( cut( row,
-//							levelIndex[calculatorIndexs[j]].length / 2 ) );
-					if( timeFunctionCalculator[calculatorIndexs[j]].existTimeFunction() )
-					{
-						timeFunctionCalculator[calculatorIndexs[j]].onRow( row );
-					}
-					aggregationCalculators[calculatorIndexs[j]].onRow( row );
-				}
+				calculate( (DiskSortedStackWrapper) allSortedFactRows.get( i ),
+						stopSign );
 			}
 		}
 		IAggregationResultSet[] resultSets = 
@@ -327,6 +321,192 @@ public class AggregationExecutor
 		return resultSets;
 	}
 	
+	/**
+	 * Pops the rows of the sorted stack and passes them to the calculators of
+	 * the aggregations using the stack.
+	 * 
+	 * @param diskSortedStackWrapper
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void calculate( DiskSortedStackWrapper diskSortedStackWrapper,
+			StopSign stopSign ) throws IOException, DataException
+	{
+		int[] calculatorIndexs = new int[sortedFactRows.length];
+		int pos = 0;
+		for ( int j = 0; j < calculatorIndexs.length; j++ )
+		{
+			if ( sortedFactRows[j] == diskSortedStackWrapper )
+			{
+				calculatorIndexs[pos] = j;
+				pos++;
+			}
+		}
+		while ( diskSortedStackWrapper.pop( ) != null
+				&& !stopSign.isStopped( ) )
+		{
+			Row4Aggregation row = (Row4Aggregation) diskSortedStackWrapper.getCurrentObject( );
+			for ( int j = 0; j < pos; j++ )
+			{
+//				aggregationCalculators[calculatorIndexs[j]].onRow( cut( row,
+//						levelIndex[calculatorIndexs[j]].length / 2 ) );
+				if( timeFunctionCalculator[calculatorIndexs[j]].existTimeFunction() )
+				{
+					timeFunctionCalculator[calculatorIndexs[j]].onRow( row );
+				}
+				aggregationCalculators[calculatorIndexs[j]].onRow( row );
+			}
+		}
+	}
+
+	/**
+	 * Calculates the aggregations of the sorted stacks in several threads. The
+	 * rows of a stack and the calculators using them are only accessed by the
+	 * thread calculating the stack, so the results are the same as the ones
+	 * calculated in one thread. The temp files created by the threads are
+	 * managed by the managers of the caller thread.
+	 * 
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void calculateInParallel( final StopSign stopSign )
+			throws IOException, DataException
+	{
+		final TempPathManager pathManager = DataEngineThreadLocal.getInstance( )
+				.getPathManager( );
+		final CloseListenerManager closeListener = DataEngineThreadLocal.getInstance( )
+				.getCloseListener( );
+		ExecutorService executor = Executors.newFixedThreadPool( Math.min( threadCount,
+				allSortedFactRows.size( ) ),
+				new ThreadFactory( ) {
+
+					private int threadIndex = 0;
+
+					public synchronized Thread newThread( Runnable r )
+					{
+						Thread thread = new Thread( r, "BIRT cube aggregation-" //$NON-NLS-1$
+								+ ( threadIndex++ ) );
+						thread.setDaemon( true );
+						return thread;
+					}
+				} );
+		List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+		try
+		{
+			for ( int i = 0; i < allSortedFactRows.size( ); i++ )
+			{
+				final DiskSortedStackWrapper diskSortedStackWrapper = (DiskSortedStackWrapper) allSortedFactRows.get( i );
+				futures.add( executor.submit( new Callable<Object>( ) {
+
+					public Object call( ) throws Exception
+					{
+						DataEngineThreadLocal.getInstance( )
+								.setPathManager( pathManager );
+						DataEngineThreadLocal.getInstance( )
+								.setCloseListener( closeListener );
+						try
+						{
+							calculate( diskSortedStackWrapper, stopSign );
+							return null;
+						}
+						finally
+						{
+							DataEngineThreadLocal.getInstance( )
+									.removeTempPathManger( );
+							DataEngineThreadLocal.getInstance( )
+									.removeCloseListener( );
+						}
+					}
+				} ) );
+			}
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				waitFor( futures.get( i ) );
+			}
+		}
+		finally
+		{
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				futures.get( i ).cancel( true );
+			}
+			executor.shutdown( );
+		}
+	}
+
+	/**
+	 * Waits for the task and throws the exception of the task.
+	 * 
+	 * @param future
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private static void waitFor( Future<Object> future ) throws IOException,
+			DataException
+	{
+		try
+		{
+			future.get( );
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			IOException ioe = new IOException( e.getLocalizedMessage( ) );
+			ioe.initCause( e );
+			throw ioe;
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+			if ( cause instanceof IOException )
+				throw (IOException) cause;
+			if ( cause instanceof DataException )
+				throw (DataException) cause;
+			if ( cause instanceof RuntimeException )
+				throw (RuntimeException) cause;
+			if ( cause instanceof Error )
+				throw (Error) cause;
+			IOException ioe = new IOException( cause.getLocalizedMessage( ) );
+			ioe.initCause( cause );
+			throw ioe;
+		}
+	}
+
+	/**
+	 * The filters of the aggregation functions are evaluated in the script
+	 * context of the caller, and the time functions read the members of the
+	 * time dimension, which can not be shared by the threads.
+	 * 
+	 * @return whether the calculators only access the rows of their stacks
+	 */
+	private boolean isThreadConfined( )
+	{
+		for ( int i = 0; i < aggregationCalculators.length; i++ )
+		{
+			if ( timeFunctionCalculator[i].existTimeFunction( ) )
+			{
+				return false;
+			}
+			AggregationFunctionDefinition[] functions = aggregationCalculators[i].aggregation.getAggregationFunctions( );
+			if ( functions == null )
+			{
+				continue;
+			}
+			for ( int j = 0; j < functions.length; j++ )
+			{
+				if ( functions[j].getFilterEvalHelper( ) != null
+						|| functions[j].getTimeFunction( ) != null
+						|| functions[j].getTimeFunctionFilter( ) != null )
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * 
 	 * @param row
@@ -798,6 +978,17 @@ public class AggregationExecutor
 		return maxDataObjectRows;
 	}
 	
+	/**
+	 * Sets the count of the threads calculating the aggregations, 1 means the
+	 * aggregations are calculated in the caller thread.
+	 * 
+	 * @param threadCount
+	 */
+	public void setThreadCount( int threadCount )
+	{
+		this.threadCount = Math.max( 1, threadCount );
+	}
+	
 	public void setMemoryCacheSize( long memoryCacheSize )
 	{
 		this.memoryCacheSize = memoryCacheSize;
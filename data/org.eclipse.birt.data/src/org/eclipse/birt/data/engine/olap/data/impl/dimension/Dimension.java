@@ -20,6 +20,7 @@ import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.StopSign;
 import org.eclipse.birt.data.engine.olap.data.api.ILevel;
 import org.eclipse.birt.data.engine.olap.data.api.ISelection;
+import org.eclipse.birt.data.engine.olap.data.api.cube.IDatasetIterator;
 import org.eclipse.birt.data.engine.olap.data.api.cube.IDimension;
 import org.eclipse.birt.data.engine.olap.data.api.cube.IHierarchy;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
@@ -125,6 +126,27 @@ public class Dimension implements IDimension
 		documentObj = null;
 	}
 	
+	/**
+	 * Appends the members of the iterator which are not in the dimension. The
+	 * positions of the saved members do not change, so the fact tables
+	 * referring to the dimension are still valid. The dimension is loaded
+	 * again after the members are appended.
+	 * 
+	 * @param iterator
+	 * @param stopSign
+	 * @return the count of the appended members
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public int append( IDatasetIterator iterator, StopSign stopSign )
+			throws IOException, BirtException
+	{
+		int count = hierarchy.appendHierarchy( iterator, stopSign );
+		hierarchy.close( );
+		loadFromDisk( );
+		return count;
+	}
+	
 	protected Hierarchy loadHierarchy( String hierarchyName )
 	{
 		return new Hierarchy( documentManager, name, hierarchyName );
@@ -40,6 +40,27 @@ public class DimensionFactory
 		return new Dimension( name, documentManager, hierarchy, isTime );
 	}
 	
+	/**
+	 * Appends the members of the iterator which are not in the saved
+	 * dimension.
+	 * 
+	 * @param name
+	 * @param documentManager
+	 * @param iterator
+	 * @param stopSign
+	 * @return the dimension containing the appended members
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public static IDimension appendDimension( String name,
+			IDocumentManager documentManager, IDatasetIterator iterator,
+			StopSign stopSign ) throws IOException, BirtException
+	{
+		Dimension dimension = new Dimension( name, documentManager );
+		dimension.append( iterator, stopSign );
+		return dimension;
+	}
+	
 	public static IDimension loadDimension( String name,
 			IDocumentManager documentManager ) throws DataException,
 			IOException
@@ -47,6 +47,7 @@ public class Hierarchy implements IHierarchy
 	private String name = null;
 	private Map levelMap = new HashMap( );
 	private String dimensionName;
+	private int threadCount = 1;
 	
 	public Hierarchy( IDocumentManager documentManager, String dimensionName, String hierarchyName )
 	{
@@ -95,6 +96,19 @@ public class Hierarchy implements IHierarchy
 		}
 	}
 
+	/**
+	 * Sets the count of the threads used to sort the keys of the level indexes
+	 * when the hierarchy is created. Only the keys are sorted in parallel, the
+	 * rows and the level indexes are still written one by one by the caller
+	 * thread, as the document manager is not thread safe.
+	 * 
+	 * @param threadCount
+	 */
+	public void setThreadCount( int threadCount )
+	{
+		this.threadCount = threadCount;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.api.IHierarchy#size()
@@ -161,6 +175,148 @@ public class Hierarchy implements IHierarchy
 		
 	}
 	
+	/**
+	 * Appends the members of the iterator which are not in the saved
+	 * hierarchy. The new members are saved after the saved ones, so the
+	 * positions of the saved members do not change, and the keys of the new
+	 * members are merged into the level indexes. A member is identified by
+	 * the key of its detail level, the saved members are not updated. The
+	 * hierarchy should be closed and loaded again after the members are
+	 * appended.
+	 *
+	 * @param datasetIterator
+	 * @param stopSign
+	 * @return the count of the appended members
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public int appendHierarchy( IDatasetIterator datasetIterator,
+			StopSign stopSign ) throws IOException, BirtException
+	{
+		if ( documentObj == null )
+		{
+			loadFromDisk( );
+		}
+		ILevelDefn[] levelDefs = new ILevelDefn[levels.length];
+		int[][] keyDataType = new int[levels.length][];
+		int[][] attributesDataType = new int[levels.length][];
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			levelDefs[i] = new LevelDefinition( levels[i].getName( ),
+					levels[i].getKeyColNames( ),
+					levels[i].getAttributeColNames( ) );
+			keyDataType[i] = levels[i].getKeyDataType( );
+			attributesDataType[i] = levels[i].getAttributeDataTypes( );
+		}
+		DiskSortedStack sortedDimensionSet = getSortedDimRows( datasetIterator,
+				levelDefs );
+
+		// find the new members before writing, since the saved members are
+		// read from the same document object
+		BufferedStructureArray newRows = new BufferedStructureArray( DimensionRow.getCreator( ),
+				Math.min( sortedDimensionSet.size( ) + 1,
+						Constants.MAX_LIST_BUFFER_SIZE ) );
+		DiskSortedStack sortedDimMembers = new DiskSortedStack( Math.min( sortedDimensionSet.size( ) + 1,
+				Constants.MAX_DIMENSION_LENGTH ),
+				true,
+				false,
+				Member.getCreator( ) );
+		Object obj = sortedDimensionSet.pop( );
+		while ( obj != null && !stopSign.isStopped( ) )
+		{
+			DimensionRow dimRow = (DimensionRow) obj;
+			if ( !existDimensionRow( dimRow ) )
+			{
+				newRows.add( dimRow );
+				sortedDimMembers.push( dimRow.getMembers( )[levels.length - 1] );
+			}
+			obj = sortedDimensionSet.pop( );
+		}
+		validateDimensionMembers( sortedDimMembers );
+		if ( newRows.size( ) == 0 || stopSign.isStopped( ) )
+		{
+			newRows.close( );
+			return 0;
+		}
+
+		documentObj.seek( 0 );
+		int size = documentObj.readInt( );
+		IDiskArray[] indexKeyLists = new IDiskArray[levels.length];
+		for ( int i = 0; i < indexKeyLists.length; i++ )
+		{
+			indexKeyLists[i] = new BufferedStructureArray( IndexKey.getCreator( ),
+					Math.min( newRows.size( ), Constants.MAX_LIST_BUFFER_SIZE ) );
+		}
+		documentObj.seek( documentObj.length( ) );
+		offsetDocObj.seek( size * 4L );
+		for ( int i = 0; i < newRows.size( ); i++ )
+		{
+			DimensionRow dimRow = (DimensionRow) newRows.get( i );
+			Member[] levelMembers = dimRow.getMembers( );
+			for ( int j = 0; j < indexKeyLists.length; j++ )
+			{
+				IndexKey indexKey = new IndexKey( );
+				indexKey.setKey( levelMembers[j].getKeyValues( ) );
+				indexKey.setOffset( new int[]{(int) documentObj.getFilePointer( ) } );
+				indexKey.setDimensionPos( new int[]{ size + i } );
+				indexKeyLists[j].add( indexKey );
+			}
+			offsetDocObj.writeInt( (int) documentObj.getFilePointer( ) );
+			writeDimensionRow( dimRow, keyDataType, attributesDataType );
+		}
+		documentObj.seek( 0 );
+		documentObj.writeInt( size + newRows.size( ) );
+		documentObj.flush( );
+		offsetDocObj.flush( );
+
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			DiskIndex diskIndex = DiskIndex.appendIndex( documentManager,
+					NamingUtil.getLevelIndexDocName( dimensionName,
+							levels[i].getName( ) ),
+					levels[i].getDiskIndex( ),
+					indexKeyLists[i] );
+			levels[i].setDiskIndex( diskIndex );
+			indexKeyLists[i].close( );
+		}
+		int count = newRows.size( );
+		newRows.close( );
+		return count;
+	}
+
+	/**
+	 *
+	 * @param dimRow
+	 * @return whether the detail member of the row is saved
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private boolean existDimensionRow( DimensionRow dimRow )
+			throws IOException, DataException
+	{
+		DiskIndex detailIndex = levels[levels.length - 1].getDiskIndex( );
+		if ( detailIndex == null )
+		{
+			return false;
+		}
+		Member detailMember = dimRow.getMembers( )[levels.length - 1];
+		IndexKey indexKey = detailIndex.findFirst( detailMember.getKeyValues( ) );
+		if ( indexKey == null )
+		{
+			return false;
+		}
+		DimensionRow savedRow = readRowByPosition( indexKey.getDimensionPos( )[0] );
+		for ( int i = 0; i < levels.length - 1; i++ )
+		{
+			if ( !savedRow.getMembers( )[i].equals( dimRow.getMembers( )[i] ) )
+			{
+				throw new DataException( ResourceConstants.DETAIL_MEMBER_HAVE_MULTI_PARENT,
+						detailMember.getKeyValues( )[0] );
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * 
 	 * @throws IOException
@@ -367,14 +523,20 @@ public class Hierarchy implements IHierarchy
 			currentIndex++;
 		}
 		validateDimensionMembers( sortedDimMembers );
+		IDiskArray[] sortedKeyLists = DiskIndex.sortKeys( indexKeyLists,
+				threadCount,
+				stopSign );
 		DiskIndex[] diskIndex = new DiskIndex[indexKeyLists.length];
 		for ( int i = 0; i < indexKeyLists.length; i++ )
 		{
-			// create index for this level
+			// create index for this level in this thread, the document
+			// manager is not thread safe. The keys are not sorted if the
+			// creation is stopped
 			diskIndex[i] = DiskIndex.createIndex( documentManager,
 					NamingUtil.getLevelIndexDocName( dimensionName, levelDefs[i].getLevelName( ) ),
-					indexKeyLists[i],
-					false );
+					sortedKeyLists[i] != null ? sortedKeyLists[i]
+							: indexKeyLists[i],
+					sortedKeyLists[i] != null );
 		}
 		levels = new Level[levelDefs.length];
 		for ( int i = 0; i < levels.length; i++ )
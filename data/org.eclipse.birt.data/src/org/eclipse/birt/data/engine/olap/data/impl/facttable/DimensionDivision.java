@@ -72,6 +72,16 @@ public class DimensionDivision
 		logger.exiting( DimensionDivision.class.getName( ), "DimensionDivision" );
 	}
 	
+	/**
+	 * Creates the division whose ranges are saved with the fact table.
+	 * 
+	 * @param ranges
+	 */
+	DimensionDivision( IntRange[] ranges )
+	{
+		setRanges( ranges );
+	}
+	
 	int getSubDimensionIndex( int dimensionIndex )
 	{
 		for ( int i = 0; i < getRanges().length; i++ )
@@ -62,6 +62,15 @@ public class FactTableAccessor
 	private IDocumentManager documentManager =null;
 	private static Logger logger = Logger.getLogger( FactTableAccessor.class.getName( ) );
 	private long memoryCacheSize = 0;
+	private int threadCount = 1;
+	private boolean bitmapIndexEnabled = true;
+	private Map appendedSegments = null;
+	
+	/**
+	 * the count of the rows whose positions are calculated by each thread in a
+	 * batch
+	 */
+	private static final int ROWS_PER_THREAD = 2000;
 	
 	public FactTableAccessor( IDocumentManager documentManager )
 	{
@@ -89,37 +98,264 @@ public class FactTableAccessor
 			String[] measureColumnName, Map calculatedMeasure, String[] measureColumnAggregations, StopSign stopSign )
 			throws BirtException, IOException
 	{
-		FacttableRowContainer sortedFactTableRows = null;
-		if ( measureColumnAggregations == null || measureColumnAggregations.length == 0)
+		FacttableRowContainer sortedFactTableRows = populateSortedFacttableRows( factTableJointColumnNames,
+				iterator,
+				measureColumnName,
+				measureColumnAggregations,
+				stopSign );
+		int segmentCount = getSegmentCount( sortedFactTableRows.size( ) );
+
+		DimensionInfo[] dimensionInfo = getDimensionInfo( dimensions );
+		MeasureInfo[] measureInfo = getMeasureInfo( iterator, measureColumnName );
+		MeasureInfo[] calMeasureInfo = getCalculatedMeasureInfo( calculatedMeasure );
+
+		DimensionDivision[] subDimensions = calculateDimensionDivision( getDimensionMemberCount( dimensions ),
+				segmentCount );
+		
+		saveFactTableMetadata( factTableName,
+				dimensionInfo,
+				measureInfo,
+				calMeasureInfo,
+				segmentCount,
+				subDimensions );
+		
+		FTSUNameSaveHelper saveHelper = new FTSUNameSaveHelper( documentManager, factTableName );
+		DocumentObjectCache documentObjectManager = new DocumentObjectCache( documentManager, (long) ( memoryCacheSize* 0.25 ) );
+		try
 		{
-			sortedFactTableRows = populateSortedFacttableRowsWithoutAggregationCalculation( factTableJointColumnNames,
+			saveSegmentRows( factTableName,
+					factTableJointColumnNames,
+					DimJointColumnNames,
 					iterator,
+					dimensions,
 					measureColumnName,
+					measureInfo,
+					subDimensions,
+					sortedFactTableRows,
+					documentObjectManager,
+					saveHelper,
 					stopSign );
 		}
-		else
+		finally
+		{
+			documentObjectManager.closeAll( );
+		}
+		saveHelper.save( );
+		FactTable factTable = new FactTable( factTableName,
+				documentManager,
+				dimensionInfo,
+				measureInfo,
+				calMeasureInfo,
+				segmentCount,
+				subDimensions);
+		Iterator FTSUNames = saveHelper.getNames( ).iterator( );
+		while ( FTSUNames.hasNext( ) && !stopSign.isStopped( ) )
 		{
-			sortedFactTableRows = populatedSortedFacttableRowsWithAggregationCalculation( factTableJointColumnNames,
+			if ( bitmapIndexEnabled )
+			{
+				FactTableBitmapIndex.save( factTable,
+						(String) FTSUNames.next( ),
+						stopSign );
+			}
+			else
+			{
+				FactTableBitmapIndex.remove( documentManager,
+						(String) FTSUNames.next( ) );
+			}
+		}
+		documentManager.flush( );
+		return factTable;
+	}
+
+	/**
+	 * Appends the rows of the iterator to a saved fact table. Only the new
+	 * rows are sorted, they are saved after the rows of the segments, so the
+	 * saved rows are neither read nor sorted again. The dimensions should
+	 * keep the positions of their saved members, which is the case when the
+	 * new members are appended by <code>Dimension.append</code>. The new
+	 * members are put into new sub dimensions, so the combined positions of
+	 * the saved rows do not change. The measures are the ones of the saved
+	 * fact table. The metadata is saved after all the new rows, if the stop
+	 * sign is stopped before, the segments are truncated to their saved rows
+	 * and the saved fact table is returned.
+	 * 
+	 * @param factTableName
+	 * @param factTableJointColumnNames
+	 * @param DimJointColumnNames
+	 * @param iterator
+	 * @param dimensions
+	 * @param measureColumnAggregations
+	 *            the functions aggregating the new rows having the same
+	 *            dimension keys, the new rows are not aggregated with the
+	 *            saved ones
+	 * @param stopSign
+	 * @return
+	 * @throws BirtException
+	 * @throws IOException
+	 */
+	public FactTable appendFactTable( String factTableName,
+			String[][] factTableJointColumnNames, String[][] DimJointColumnNames,
+			IDatasetIterator iterator, Dimension[] dimensions,
+			String[] measureColumnAggregations, StopSign stopSign )
+			throws BirtException, IOException
+	{
+		FactTable savedFactTable = load( factTableName, stopSign );
+		DimensionInfo[] savedDimensionInfo = savedFactTable.getDimensionInfo( );
+		if ( dimensions.length != savedDimensionInfo.length )
+		{
+			throw new DataException( ResourceConstants.OLAPFILE_DATA_ERROR,
+					NamingUtil.getFactTableName( factTableName ) );
+		}
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			if ( !dimensions[i].getName( )
+					.equals( savedDimensionInfo[i].dimensionName ) )
+			{
+				throw new DataException( ResourceConstants.DIMENSION_NOT_EXIST,
+						dimensions[i].getName( ) );
+			}
+			// the saved rows refer to the positions of the saved members
+			if ( dimensions[i].length( ) < savedDimensionInfo[i].dimensionLength )
+			{
+				throw new DataException( ResourceConstants.OLAPFILE_DATA_ERROR,
+						dimensions[i].getName( ) );
+			}
+		}
+		String[] measureColumnName = savedFactTable.getMeasureNames( );
+		MeasureInfo[] measureInfo = savedFactTable.getMeasureInfo( );
+		MeasureInfo[] calMeasureInfo = savedFactTable.getCalcualtedMeasureInfo( );
+		FacttableRowContainer sortedFactTableRows = populateSortedFacttableRows( factTableJointColumnNames,
+				iterator,
+				measureColumnName,
+				measureColumnAggregations,
+				stopSign );
+
+		DimensionInfo[] dimensionInfo = getDimensionInfo( dimensions );
+		DimensionDivision[] subDimensions = extendDimensionDivision( savedFactTable.getDimensionDivision( ),
+				getDimensionMemberCount( dimensions ) );
+
+		FTSUNameSaveHelper saveHelper = new FTSUNameSaveHelper( documentManager,
+				factTableName );
+		saveHelper.loadSavedNames( );
+		// the new rows are committed by the metadata saved after them, the
+		// segments are truncated if they are not all saved
+		DocumentObjectCache documentObjectManager = new DocumentObjectCache( documentManager, (long) ( memoryCacheSize* 0.25 ) );
+		boolean completed = false;
+		try
+		{
+			saveSegmentRows( factTableName,
+					factTableJointColumnNames,
+					DimJointColumnNames,
 					iterator,
+					dimensions,
 					measureColumnName,
-					measureColumnAggregations,
+					measureInfo,
+					subDimensions,
+					sortedFactTableRows,
+					documentObjectManager,
+					saveHelper,
 					stopSign );
+			completed = !stopSign.isStopped( );
+		}
+		finally
+		{
+			documentObjectManager.closeAll( );
+			if ( !completed )
+			{
+				rollbackSegments( documentObjectManager.getInitialLengths( ) );
+			}
+		}
+		if ( !completed )
+		{
+			return savedFactTable;
+		}
+		appendedSegments = documentObjectManager.getInitialLengths( );
+		// the names of the calculated measures are saved with the prefix
+		MeasureInfo[] savedCalMeasureInfo = new MeasureInfo[calMeasureInfo.length];
+		for ( int i = 0; i < calMeasureInfo.length; i++ )
+		{
+			savedCalMeasureInfo[i] = new MeasureInfo( NamingUtil.getDerivedMeasureName( calMeasureInfo[i].getMeasureName( ) ),
+					calMeasureInfo[i].getDataType( ) );
 		}
-		int segmentCount = getSegmentCount( sortedFactTableRows.size( ) );
-
-		DimensionInfo[] dimensionInfo = getDimensionInfo( dimensions );
-		MeasureInfo[] measureInfo = getMeasureInfo( iterator, measureColumnName );
-		MeasureInfo[] calMeasureInfo = getCalculatedMeasureInfo( calculatedMeasure );
-		
 		saveFactTableMetadata( factTableName,
+				dimensionInfo,
+				measureInfo,
+				savedCalMeasureInfo,
+				savedFactTable.getSegmentCount( ),
+				subDimensions );
+		saveHelper.save( );
+		FactTable factTable = new FactTable( factTableName,
+				documentManager,
 				dimensionInfo,
 				measureInfo,
 				calMeasureInfo,
-				segmentCount );
+				savedFactTable.getSegmentCount( ),
+				subDimensions );
+		Iterator FTSUNames = saveHelper.getNames( ).iterator( );
+		// without the bitmap index pass, the index of an appended segment is
+		// stale since its length changed, and is ignored
+		while ( bitmapIndexEnabled
+				&& FTSUNames.hasNext( ) && !stopSign.isStopped( ) )
+		{
+			FactTableBitmapIndex.append( factTable,
+					(String) FTSUNames.next( ),
+					stopSign );
+		}
+		documentManager.flush( );
+		return factTable;
+	}
 
-		DimensionDivision[] subDimensions = calculateDimensionDivision( getDimensionMemberCount( dimensions ),
-				segmentCount );
-		
+	/**
+	 * Gets the segments the last <code>appendFactTable</code> appended rows
+	 * to.
+	 * 
+	 * @return the map from the names of the segments to the offsets of their
+	 *         first appended rows, null if no fact table is appended
+	 */
+	public Map getAppendedSegments( )
+	{
+		return appendedSegments;
+	}
+
+	/**
+	 * Truncates the segments to their lengths before the rows are appended.
+	 * 
+	 * @param initialLengths
+	 * @throws IOException
+	 */
+	private void rollbackSegments( Map initialLengths ) throws IOException
+	{
+		Iterator itr = initialLengths.entrySet( ).iterator( );
+		while ( itr.hasNext( ) )
+		{
+			Entry entry = (Entry) itr.next( );
+			IDocumentObject documentObject = documentManager.openDocumentObject( (String) entry.getKey( ) );
+			if ( documentObject != null )
+			{
+				documentObject.setLength( ( (Long) entry.getValue( ) ).longValue( ) );
+				documentObject.close( );
+			}
+		}
+		documentManager.flush( );
+	}
+
+	/**
+	 * Saves the sorted rows to the segments of the fact table, the rows are
+	 * written after the rows saved in the segments.
+	 * 
+	 * @throws BirtException
+	 * @throws IOException
+	 */
+	private void saveSegmentRows( String factTableName,
+			String[][] factTableJointColumnNames,
+			String[][] DimJointColumnNames, IDatasetIterator iterator,
+			Dimension[] dimensions, String[] measureColumnName,
+			MeasureInfo[] measureInfo, DimensionDivision[] subDimensions,
+			FacttableRowContainer sortedFactTableRows,
+			DocumentObjectCache documentObjectManager,
+			FTSUNameSaveHelper saveHelper, StopSign stopSign )
+			throws BirtException, IOException
+	{
 		int[][][] columnIndex = getColumnIndex( DimJointColumnNames, dimensions );
 		DimensionPositionSeeker[] dimensionSeekers = new DimensionPositionSeeker[dimensions.length];
 		for ( int i = 0; i < dimensionSeekers.length; i++ )
@@ -129,56 +365,220 @@ public class FactTableAccessor
 		}
 		
 		int[] dimensionPosition = new int[dimensions.length];
-		DocumentObjectCache documentObjectManager = new DocumentObjectCache( documentManager, (long) ( memoryCacheSize* 0.25 ) );
 		CombinedPositionContructor combinedPositionCalculator = new CombinedPositionContructor( subDimensions );
 		
-		FTSUNameSaveHelper saveHelper = new FTSUNameSaveHelper( documentManager, factTableName );
-		FactTableRow currentRow = sortedFactTableRows.pop( );
-		boolean invalidDimensionKey = false;
 		int invalidRowNumber = 0;
-		while ( currentRow != null && !stopSign.isStopped( ) )
-		{			
-			invalidDimensionKey = false;
-			for ( int i = 0; i < dimensionPosition.length; i++ )
+		if ( threadCount > 1
+				&& FactTablePositionCalculator.isSupported( dimensionSeekers ) )
+		{
+			FactTablePositionCalculator positionCalculator = new FactTablePositionCalculator( NamingUtil.getFactTableName( factTableName ),
+					dimensionSeekers,
+					subDimensions,
+					combinedPositionCalculator,
+					threadCount );
+			try
+			{
+				invalidRowNumber = saveFactTableRows( factTableName,
+						factTableJointColumnNames,
+						dimensions,
+						measureInfo,
+						sortedFactTableRows,
+						positionCalculator,
+						caculateBatchSize( iterator,
+								factTableJointColumnNames,
+								measureColumnName ),
+						documentObjectManager,
+						saveHelper,
+						stopSign );
+			}
+			finally
 			{
-				dimensionPosition[i] = dimensionSeekers[i].find( currentRow.getDimensionKeys()[i] );
-				if ( dimensionPosition[i] < 0 )
+				positionCalculator.shutdown( );
+			}
+		}
+		else
+		{
+			FactTableRow currentRow = sortedFactTableRows.pop( );
+			boolean invalidDimensionKey = false;
+			while ( currentRow != null && !stopSign.isStopped( ) )
+			{			
+				invalidDimensionKey = false;
+				for ( int i = 0; i < dimensionPosition.length; i++ )
+				{
+					dimensionPosition[i] = dimensionSeekers[i].find( currentRow.getDimensionKeys()[i] );
+					if ( dimensionPosition[i] < 0 )
+					{
+						invalidDimensionKey = true;
+						logInvalidDimensionKey( factTableName,
+								factTableJointColumnNames,
+								dimensions,
+								currentRow,
+								i );
+					}
+				}
+				if( invalidDimensionKey )
 				{
-					invalidDimensionKey = true;
-					logger.fine( "The fact table of cube " 
-							+ factTableName + 
-							" has an invalid data row where the value of dimension key " + 
-							Arrays.toString( factTableJointColumnNames[i] ) + " is " + 
-							currentRow.getDimensionKeys()[i].toString( ) + 
-							" which however does not exist in dimension "+ 
-							dimensions[i].getName( ) +"." );
+					currentRow = sortedFactTableRows.pop( );
+					invalidRowNumber ++;
+					continue;
 				}
+				int[] subDimensionIndex = getSubDimensionIndex( dimensionPosition,
+						subDimensions );
+				String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( 
+						NamingUtil.getFactTableName( factTableName ),
+						subDimensionIndex );
+				saveHelper.add( FTSUDocName );
+			
+				IDocumentObject documentObject = documentObjectManager.getIDocumentObject( FTSUDocName );
+				documentObject.writeBytes( new Bytes( combinedPositionCalculator.
+						calculateCombinedPosition( subDimensionIndex, dimensionPosition ).toByteArray( ) ) );
+				for( int i=0;i<measureInfo.length;i++)
+				{
+					DocumentObjectUtil.writeValue( documentObject,
+							measureInfo[i].getDataType(),
+							currentRow.getMeasures()[i] );
+				}
+				currentRow = sortedFactTableRows.pop( );
 			}
-			if( invalidDimensionKey )
+		}
+		logInvalidRowNumber( factTableName, invalidRowNumber );
+	}
+
+	/**
+	 * Saves the sorted rows while their positions are calculated by the
+	 * threads. The rows of the next batch are popped while the positions of
+	 * the current batch are being calculated, and the rows are written in
+	 * their order.
+	 * 
+	 * @param factTableName
+	 * @param factTableJointColumnNames
+	 * @param dimensions
+	 * @param measureInfo
+	 * @param sortedFactTableRows
+	 * @param positionCalculator
+	 * @param batchSize
+	 * @param documentObjectManager
+	 * @param saveHelper
+	 * @param stopSign
+	 * @return the count of the invalid rows
+	 * @throws IOException
+	 */
+	private static int saveFactTableRows( String factTableName,
+			String[][] factTableJointColumnNames, Dimension[] dimensions,
+			MeasureInfo[] measureInfo, FacttableRowContainer sortedFactTableRows,
+			FactTablePositionCalculator positionCalculator, int batchSize,
+			DocumentObjectCache documentObjectManager,
+			FTSUNameSaveHelper saveHelper, StopSign stopSign )
+			throws IOException
+	{
+		int invalidRowNumber = 0;
+		FactTablePositionCalculator.PositionBatch currentBatch = null;
+		try
+		{
+			while ( !stopSign.isStopped( ) )
 			{
-				currentRow = sortedFactTableRows.pop( );
-				invalidRowNumber ++;
+				FactTableRow[] rows = new FactTableRow[batchSize];
+				int count = 0;
+				FactTableRow row = null;
+				while ( count < batchSize
+						&& !stopSign.isStopped( )
+						&& ( row = sortedFactTableRows.pop( ) ) != null )
+				{
+					rows[count++] = row;
+				}
+				FactTablePositionCalculator.PositionBatch nextBatch = count > 0
+						? positionCalculator.submit( rows, count ) : null;
+				if ( currentBatch != null )
+				{
+					currentBatch.await( );
+					invalidRowNumber += writeFactTableRows( factTableName,
+							factTableJointColumnNames,
+							dimensions,
+							measureInfo,
+							currentBatch,
+							documentObjectManager,
+							saveHelper );
+				}
+				currentBatch = nextBatch;
+				if ( currentBatch == null )
+				{
+					break;
+				}
+			}
+		}
+		finally
+		{
+			if ( currentBatch != null )
+			{
+				currentBatch.cancel( );
+			}
+		}
+		return invalidRowNumber;
+	}
+
+	/**
+	 * 
+	 * @return the count of the invalid rows in the batch
+	 * @throws IOException
+	 */
+	private static int writeFactTableRows( String factTableName,
+			String[][] factTableJointColumnNames, Dimension[] dimensions,
+			MeasureInfo[] measureInfo,
+			FactTablePositionCalculator.PositionBatch batch,
+			DocumentObjectCache documentObjectManager,
+			FTSUNameSaveHelper saveHelper ) throws IOException
+	{
+		int invalidRowNumber = 0;
+		for ( int index = 0; index < batch.size( ); index++ )
+		{
+			FactTableRow currentRow = batch.getRow( index );
+			FactTablePositionCalculator.RowPosition position = batch.getPosition( index );
+			if ( position.invalidDimensions != null )
+			{
+				for ( int i = 0; i < position.invalidDimensions.length; i++ )
+				{
+					if ( position.invalidDimensions[i] )
+					{
+						logInvalidDimensionKey( factTableName,
+								factTableJointColumnNames,
+								dimensions,
+								currentRow,
+								i );
+					}
+				}
+				invalidRowNumber++;
 				continue;
 			}
-			int[] subDimensionIndex = getSubDimensionIndex( dimensionPosition,
-					subDimensions );
-			String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( 
-					NamingUtil.getFactTableName( factTableName ),
-					subDimensionIndex );
-			saveHelper.add( FTSUDocName );
-			
-			IDocumentObject documentObject = documentObjectManager.getIDocumentObject( FTSUDocName );
-			documentObject.writeBytes( new Bytes( combinedPositionCalculator.
-					calculateCombinedPosition( subDimensionIndex, dimensionPosition ).toByteArray( ) ) );
-			for( int i=0;i<measureInfo.length;i++)
+			saveHelper.add( position.documentObjectName );
+
+			IDocumentObject documentObject = documentObjectManager.getIDocumentObject( position.documentObjectName );
+			documentObject.writeBytes( new Bytes( position.combinedPosition ) );
+			for ( int i = 0; i < measureInfo.length; i++ )
 			{
 				DocumentObjectUtil.writeValue( documentObject,
-						measureInfo[i].getDataType(),
-						currentRow.getMeasures()[i] );
+						measureInfo[i].getDataType( ),
+						currentRow.getMeasures( )[i] );
 			}
-			currentRow = sortedFactTableRows.pop( );
 		}
-		saveHelper.save( );
+		return invalidRowNumber;
+	}
+
+	private static void logInvalidDimensionKey( String factTableName,
+			String[][] factTableJointColumnNames, Dimension[] dimensions,
+			FactTableRow row, int dimensionIndex )
+	{
+		logger.fine( "The fact table of cube " 
+				+ factTableName + 
+				" has an invalid data row where the value of dimension key " + 
+				Arrays.toString( factTableJointColumnNames[dimensionIndex] ) + " is " + 
+				row.getDimensionKeys()[dimensionIndex].toString( ) + 
+				" which however does not exist in dimension "+ 
+				dimensions[dimensionIndex].getName( ) +"." );
+	}
+
+	private static void logInvalidRowNumber( String factTableName,
+			int invalidRowNumber )
+	{
 		if( invalidRowNumber > 0 )
 		{
 			logger.warning("The fact table of cube "
@@ -186,16 +586,25 @@ public class FactTableAccessor
 				+ " has " + invalidRowNumber 
 				+ "invalid rows where the value of dimension key does not exist in dimension.");
 		}
-		documentObjectManager.closeAll( );
-		documentManager.flush( );
-		return new FactTable( factTableName,
-				documentManager,
-				dimensionInfo,
-				measureInfo,
-				calMeasureInfo,
-				segmentCount,
-				subDimensions);
-		
+	}
+
+	private FacttableRowContainer populateSortedFacttableRows(
+			String[][] factTableJointColumnNames, IDatasetIterator iterator,
+			String[] measureColumnName, String[] measureColumnAggregations,
+			StopSign stopSign ) throws BirtException, IOException
+	{
+		if ( measureColumnAggregations == null || measureColumnAggregations.length == 0)
+		{
+			return populateSortedFacttableRowsWithoutAggregationCalculation( factTableJointColumnNames,
+					iterator,
+					measureColumnName,
+					stopSign );
+		}
+		return populatedSortedFacttableRowsWithAggregationCalculation( factTableJointColumnNames,
+				iterator,
+				measureColumnName,
+				measureColumnAggregations,
+				stopSign );
 	}
 
 	private FacttableRowContainer populatedSortedFacttableRowsWithAggregationCalculation(
@@ -491,15 +900,16 @@ public class FactTableAccessor
 	 * @param dimensionInfo
 	 * @param measureInfo
 	 * @param segmentNumber
+	 * @param subDimensions
 	 * @throws IOException
 	 * @throws BirtException
 	 */
 	private void saveFactTableMetadata( String factTableName,
 			DimensionInfo[] dimensionInfo, MeasureInfo[] measureInfo, MeasureInfo[] calculatedMeasureInfo,
-			int segmentNumber ) throws IOException, BirtException
+			int segmentNumber, DimensionDivision[] subDimensions ) throws IOException, BirtException
 	{
 		IDocumentObject documentObject = 
-			documentManager.createDocumentObject( NamingUtil.getFactTableName( factTableName ) );
+			DocumentObjectUtil.createOrReplaceDocumentObject( documentManager, NamingUtil.getFactTableName( factTableName ) );
 		// write dimension name and dimension member count
 		documentObject.writeInt( dimensionInfo.length );
 		for ( int i = 0; i < dimensionInfo.length; i++ )
@@ -521,6 +931,18 @@ public class FactTableAccessor
 		}
 		// write segment count
 		documentObject.writeInt( segmentNumber );
+		// write the ranges of the sub dimensions, which can not be calculated
+		// from the segment count after the rows are appended
+		for ( int i = 0; i < subDimensions.length; i++ )
+		{
+			IntRange[] ranges = subDimensions[i].getRanges( );
+			documentObject.writeInt( ranges.length );
+			for ( int j = 0; j < ranges.length; j++ )
+			{
+				documentObject.writeInt( ranges[j].getStart( ) );
+				documentObject.writeInt( ranges[j].getEnd( ) );
+			}
+		}
 		documentObject.close( );
 	}
 	
@@ -529,6 +951,30 @@ public class FactTableAccessor
 		this.memoryCacheSize = memoryCacheSize;
 	}
 
+	/**
+	 * Sets the count of the threads calculating the positions of the fact
+	 * table rows, 1 means the fact table is saved in the caller thread.
+	 * 
+	 * @param threadCount
+	 */
+	public void setThreadCount( int threadCount )
+	{
+		this.threadCount = Math.max( 1, threadCount );
+	}
+
+	/**
+	 * Sets whether the bitmap index of the segments is saved. Building the
+	 * index reads every saved segment once more; without it, the rows
+	 * selected by the dimension positions are found by scanning the whole
+	 * segments. The default is true.
+	 * 
+	 * @param bitmapIndexEnabled
+	 */
+	public void setBitmapIndexEnabled( boolean bitmapIndexEnabled )
+	{
+		this.bitmapIndexEnabled = bitmapIndexEnabled;
+	}
+
 	private static int getObjectSize( int[] dataType) {
 		int size = 0;
 		for( int i = 0; i < dataType.length; i++ )
@@ -617,6 +1063,34 @@ public class FactTableAccessor
 	private int caculateBufferSize(IDatasetIterator iterator,
 			String[][] keyColumnNames, String[] measureColumnNames)
 			throws BirtException
+	{
+		int rowSize = caculateRowSize( iterator, keyColumnNames, measureColumnNames );
+		return (int) ( ( memoryCacheSize * 0.75 )/ rowSize );
+	}
+
+	/**
+	 * The batch holds the rows of the sorted stack whose positions are being
+	 * calculated, it is limited to a tenth of the memory cache.
+	 */
+	private int caculateBatchSize( IDatasetIterator iterator,
+			String[][] keyColumnNames, String[] measureColumnNames )
+			throws BirtException
+	{
+		int batchSize = ROWS_PER_THREAD * threadCount;
+		if ( memoryCacheSize != 0 )
+		{
+			int rowSize = caculateRowSize( iterator,
+					keyColumnNames,
+					measureColumnNames );
+			batchSize = (int) Math.min( batchSize,
+					( memoryCacheSize * 0.1 ) / rowSize );
+		}
+		return Math.max( threadCount, batchSize );
+	}
+
+	private int caculateRowSize( IDatasetIterator iterator,
+			String[][] keyColumnNames, String[] measureColumnNames )
+			throws BirtException
 	{
 		int[][] levelKeyColumnDataType = new int[keyColumnNames.length][];
 		int[] measureColumnType = new int[measureColumnNames.length];
@@ -640,8 +1114,7 @@ public class FactTableAccessor
 		}
 		int measureSize = getObjectSize( measureColumnType );
 		
-		int rowSize = 16 + ( 4 + ( levelSize + measureSize ) - 1 ) / 8 * 8;
-		return (int) ( ( memoryCacheSize * 0.75 )/ rowSize );
+		return 16 + ( 4 + ( levelSize + measureSize ) - 1 ) / 8 * 8;
 	}
 
 	/**
@@ -681,6 +1154,41 @@ public class FactTableAccessor
 		return result;
 	}
 
+	/**
+	 * Adds the sub dimensions of the members appended to the dimensions. The
+	 * saved sub dimensions are kept, and the new members are divided into
+	 * sub dimensions no longer than the bit length of the dimension allows,
+	 * so the combined positions of the saved rows do not change.
+	 * 
+	 * @param subDimensions
+	 *            the saved sub dimensions
+	 * @param dimensionMemberCount
+	 * @return
+	 */
+	static DimensionDivision[] extendDimensionDivision(
+			DimensionDivision[] subDimensions, int[] dimensionMemberCount )
+	{
+		CombinedPositionContructor combinedPositionCalculator = new CombinedPositionContructor( subDimensions );
+		DimensionDivision[] result = new DimensionDivision[subDimensions.length];
+		for ( int i = 0; i < result.length; i++ )
+		{
+			IntRange[] ranges = subDimensions[i].getRanges( );
+			List newRanges = new ArrayList( Arrays.asList( ranges ) );
+			int maxLength = combinedPositionCalculator.getMaxSubDimensionLength( i );
+			int start = ranges.length == 0 ? 0
+					: ranges[ranges.length - 1].getEnd( ) + 1;
+			while ( start < dimensionMemberCount[i] )
+			{
+				int end = (int) Math.min( (long) start + maxLength,
+						dimensionMemberCount[i] ) - 1;
+				newRanges.add( new IntRange( start, end ) );
+				start = end + 1;
+			}
+			result[i] = new DimensionDivision( (IntRange[]) newRanges.toArray( new IntRange[newRanges.size( )] ) );
+		}
+		return result;
+	}
+
 	/**
 	 * 
 	 * @param dimensionPosition
@@ -745,8 +1253,27 @@ public class FactTableAccessor
 		{
 			dimensionMemberCount[i] = dimensionInfo[i].dimensionLength;
 		}
-		DimensionDivision[] subDimensions = calculateDimensionDivision( dimensionMemberCount,
-				segmentNumber );
+		DimensionDivision[] subDimensions = null;
+		if ( documentObject.getFilePointer( ) < documentObject.length( ) )
+		{
+			subDimensions = new DimensionDivision[dimensionInfo.length];
+			for ( int i = 0; i < subDimensions.length; i++ )
+			{
+				IntRange[] ranges = new IntRange[documentObject.readInt( )];
+				for ( int j = 0; j < ranges.length; j++ )
+				{
+					ranges[j] = new IntRange( documentObject.readInt( ),
+							documentObject.readInt( ) );
+				}
+				subDimensions[i] = new DimensionDivision( ranges );
+			}
+		}
+		else
+		{
+			// the fact table saved without the ranges
+			subDimensions = calculateDimensionDivision( dimensionMemberCount,
+					segmentNumber );
+		}
 		documentObject.close( );
 		return new FactTable( factTableName,
 				documentManager,
@@ -772,10 +1299,11 @@ public class FactTableAccessor
 				'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'
 		};
 
-		private static char[] buffer = new char[100];
-
 		public static String getDocumentObjectName( String factTableName, int[] subDimensionNumber )
 		{
+			// the buffer is not shared since the names are created by the
+			// threads saving the fact table and by the queries
+			char[] buffer = new char[100];
 			int radix = 10;
 			
 			int position = 0;
@@ -804,6 +1332,28 @@ public class FactTableAccessor
 			}
 			return factTableName + new String( buffer, 0, position );
 		}
+
+		/**
+		 * Parses the sub dimension indexes from the name of a fact table
+		 * segment.
+		 * 
+		 * @param factTableName
+		 * @param documentObjectName
+		 *            the name returned by getDocumentObjectName
+		 * @return
+		 */
+		public static int[] getSubDimensionIndex( String factTableName,
+				String documentObjectName )
+		{
+			String[] indexes = documentObjectName.substring( factTableName.length( ) )
+					.split( "X" );
+			int[] result = new int[indexes.length];
+			for ( int i = 0; i < result.length; i++ )
+			{
+				result[i] = Integer.parseInt( indexes[i] );
+			}
+			return result;
+		}
 	}
 
 }
@@ -821,6 +1371,7 @@ interface FacttableRowContainer
 class FTSUNameSaveHelper
 {
 	private HashMap map;
+	private Set savedNames;
 	private IDocumentManager documentManager; 
 	private String factTableName;
 	
@@ -834,6 +1385,34 @@ class FTSUNameSaveHelper
 		this.documentManager = documentManager;
 		this.factTableName = factTableName;
 		this.map = new HashMap( );
+		this.savedNames = new HashSet( );
+	}
+	
+	/**
+	 * Reads the names of the saved segments when the rows are appended to a
+	 * saved fact table, they are saved again together with the added names.
+	 * 
+	 * @throws IOException
+	 */
+	void loadSavedNames( ) throws IOException
+	{
+		IDocumentObject FTSUNameSave = documentManager.openDocumentObject( NamingUtil.getFTSUListName( factTableName ) );
+		if ( FTSUNameSave == null )
+		{
+			return;
+		}
+		try
+		{
+			long length = FTSUNameSave.length( );
+			while ( FTSUNameSave.getFilePointer( ) < length )
+			{
+				savedNames.add( FTSUNameSave.readString( ) );
+			}
+		}
+		finally
+		{
+			FTSUNameSave.close( );
+		}
 	}
 	
 	/**
@@ -848,19 +1427,38 @@ class FTSUNameSaveHelper
 		}
 	}
 	
+	/**
+	 * 
+	 * @return the names of the fact table segments added by this helper
+	 */
+	Set getNames( )
+	{
+		return map.keySet( );
+	}
+	
 	/**
 	 * 
 	 * @throws IOException
 	 */
 	void save( ) throws IOException
 	{
-		IDocumentObject FTSUNameSave = documentManager.createDocumentObject( NamingUtil.getFTSUListName( factTableName ) );
+		IDocumentObject FTSUNameSave = DocumentObjectUtil.createOrReplaceDocumentObject( documentManager,
+				NamingUtil.getFTSUListName( factTableName ) );
 		
-		Iterator nameIterator = map.keySet( ).iterator( );
+		Iterator nameIterator = savedNames.iterator( );
 		while ( nameIterator.hasNext( ) )
 		{
 			FTSUNameSave.writeString( (String)nameIterator.next( ) );
 		}
+		nameIterator = map.keySet( ).iterator( );
+		while ( nameIterator.hasNext( ) )
+		{
+			String name = (String) nameIterator.next( );
+			if ( !savedNames.contains( name ) )
+			{
+				FTSUNameSave.writeString( name );
+			}
+		}
 		FTSUNameSave.close( );
 	}
 }
@@ -998,6 +1596,16 @@ class DimensionDivider
 			return resultArray;
 		}
 
+		/**
+		 * 
+		 * @return whether all the members are in memory, then the seeker can
+		 *         be used by several threads
+		 */
+		boolean isInMemory( )
+		{
+			return diskMemberArray == null;
+		}
+
 		/**
 		 * Find dimension position by dimension key.
 		 * 
@@ -1128,6 +1736,22 @@ class DimensionDivider
 			return bitLength;
 		}
 
+		/**
+		 * 
+		 * @param dimensionIndex
+		 * @return the max count of the members of a sub dimension whose
+		 *         positions can be combined without changing the bit length
+		 *         of the dimension
+		 */
+		int getMaxSubDimensionLength( int dimensionIndex )
+		{
+			if ( dimensionBitLength[dimensionIndex] >= 31 )
+			{
+				return Integer.MAX_VALUE;
+			}
+			return 1 << dimensionBitLength[dimensionIndex];
+		}
+
 		/**
 		 * 
 		 * @param subdimensionIndex
@@ -0,0 +1,352 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.facttable;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentObjectUtil;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTableAccessor.FTSUDocumentObjectNamingUtil;
+import org.eclipse.birt.data.engine.olap.data.util.Bytes;
+import org.eclipse.birt.data.engine.olap.data.util.RoaringBitmap;
+
+/**
+ * The bitmap index of a fact table segment. For each member of each dimension
+ * in the segment, the bitmap of the numbers of the rows having the member is
+ * saved. The offset of every ROW_BLOCK_SIZE rows is also saved, so the rows
+ * selected by the dimension positions can be read without scanning the whole
+ * segment. The length of the indexed segment is saved as well, an index whose
+ * length differs from the one of the segment is stale and should not be used.
+ */
+class FactTableBitmapIndex
+{
+
+	static final int ROW_BLOCK_SIZE = 64;
+
+	private int rowCount;
+	private long segmentLength;
+	private long[] blockOffsets;
+	private int[][] memberPositions;
+	private RoaringBitmap[][] memberRows;
+
+	private FactTableBitmapIndex( )
+	{
+	}
+
+	/**
+	 * Reads the rows of the segment and saves its bitmap index.
+	 *
+	 * @param factTable
+	 * @param FTSUDocName
+	 * @param stopSign
+	 * @throws IOException
+	 */
+	static void save( FactTable factTable, String FTSUDocName,
+			StopSign stopSign ) throws IOException
+	{
+		save( factTable, FTSUDocName, null, stopSign );
+	}
+
+	/**
+	 * Adds the rows appended to the segment to its bitmap index. Only the rows
+	 * from the last indexed block are read.
+	 *
+	 * @param factTable
+	 * @param FTSUDocName
+	 * @param stopSign
+	 * @throws IOException
+	 */
+	static void append( FactTable factTable, String FTSUDocName,
+			StopSign stopSign ) throws IOException
+	{
+		save( factTable,
+				FTSUDocName,
+				load( factTable.getDocumentManager( ), FTSUDocName ),
+				stopSign );
+	}
+
+	/**
+	 * Invalidates the bitmap index saved for a former segment of the same
+	 * name. The index is replaced by an empty one, which is never used and is
+	 * rebuilt from the first row by <code>append</code>.
+	 *
+	 * @param documentManager
+	 * @param FTSUDocName
+	 * @throws IOException
+	 */
+	static void remove( IDocumentManager documentManager, String FTSUDocName )
+			throws IOException
+	{
+		String indexName = NamingUtil.getFTSUBitmapIndexName( FTSUDocName );
+		if ( !documentManager.exist( indexName ) )
+		{
+			return;
+		}
+		IDocumentObject documentObject = DocumentObjectUtil.createOrReplaceDocumentObject( documentManager,
+				indexName );
+		documentObject.writeInt( 0 );
+		writeLong( documentObject, -1 );
+		documentObject.writeInt( 0 );
+		documentObject.writeInt( 0 );
+		documentObject.close( );
+	}
+
+	private static void save( FactTable factTable, String FTSUDocName,
+			FactTableBitmapIndex savedIndex, StopSign stopSign )
+			throws IOException
+	{
+		IDocumentManager documentManager = factTable.getDocumentManager( );
+		int[] subDimensionIndex = FTSUDocumentObjectNamingUtil.getSubDimensionIndex( NamingUtil.getFactTableName( factTable.getName( ) ),
+				FTSUDocName );
+		int dimensionCount = factTable.getDimensionInfo( ).length;
+		Map[] members = new Map[dimensionCount];
+		for ( int i = 0; i < dimensionCount; i++ )
+		{
+			members[i] = new TreeMap( );
+		}
+		int rowCount = 0;
+		long[] blockOffsets = new long[16];
+		long startOffset = 0;
+		if ( savedIndex != null && savedIndex.blockOffsets.length > 0 )
+		{
+			for ( int i = 0; i < dimensionCount; i++ )
+			{
+				for ( int j = 0; j < savedIndex.memberPositions[i].length; j++ )
+				{
+					members[i].put( Integer.valueOf( savedIndex.memberPositions[i][j] ),
+							savedIndex.memberRows[i][j] );
+				}
+			}
+			// the rows of the last block are read again, adding them to the
+			// bitmaps twice is harmless
+			int lastBlock = savedIndex.blockOffsets.length - 1;
+			blockOffsets = new long[Math.max( 16,
+					savedIndex.blockOffsets.length * 2 )];
+			System.arraycopy( savedIndex.blockOffsets,
+					0,
+					blockOffsets,
+					0,
+					lastBlock );
+			rowCount = lastBlock * ROW_BLOCK_SIZE;
+			startOffset = savedIndex.blockOffsets[lastBlock];
+		}
+
+		IDocumentObject segment = documentManager.openDocumentObject( FTSUDocName );
+		long length;
+		try
+		{
+			segment.seek( startOffset );
+			length = segment.length( );
+			while ( segment.getFilePointer( ) < length )
+			{
+				if ( stopSign.isStopped( ) )
+				{
+					return;
+				}
+				if ( rowCount % ROW_BLOCK_SIZE == 0 )
+				{
+					int block = rowCount / ROW_BLOCK_SIZE;
+					if ( block == blockOffsets.length )
+					{
+						long[] newOffsets = new long[block * 2];
+						System.arraycopy( blockOffsets, 0, newOffsets, 0, block );
+						blockOffsets = newOffsets;
+					}
+					blockOffsets[block] = segment.getFilePointer( );
+				}
+				Bytes combinedPosition = segment.readBytes( );
+				int[] dimensionPosition = factTable.getCombinedPositionCalculator( )
+						.calculateDimensionPosition( subDimensionIndex,
+								combinedPosition.bytesValue( ) );
+				for ( int i = 0; i < dimensionCount; i++ )
+				{
+					Integer position = Integer.valueOf( dimensionPosition[i] );
+					RoaringBitmap rows = (RoaringBitmap) members[i].get( position );
+					if ( rows == null )
+					{
+						rows = new RoaringBitmap( );
+						members[i].put( position, rows );
+					}
+					rows.add( rowCount );
+				}
+				for ( int i = 0; i < factTable.getMeasureInfo( ).length; i++ )
+				{
+					DocumentObjectUtil.readValue( segment,
+							factTable.getMeasureInfo( )[i].getDataType( ) );
+				}
+				rowCount++;
+			}
+		}
+		finally
+		{
+			segment.close( );
+		}
+
+		String indexName = NamingUtil.getFTSUBitmapIndexName( FTSUDocName );
+		IDocumentObject documentObject = DocumentObjectUtil.createOrReplaceDocumentObject( documentManager,
+				indexName );
+		documentObject.writeInt( rowCount );
+		writeLong( documentObject, length );
+		int blockCount = ( rowCount + ROW_BLOCK_SIZE - 1 ) / ROW_BLOCK_SIZE;
+		documentObject.writeInt( blockCount );
+		for ( int i = 0; i < blockCount; i++ )
+		{
+			writeLong( documentObject, blockOffsets[i] );
+		}
+		documentObject.writeInt( dimensionCount );
+		for ( int i = 0; i < dimensionCount; i++ )
+		{
+			documentObject.writeInt( members[i].size( ) );
+			Iterator itr = members[i].entrySet( ).iterator( );
+			while ( itr.hasNext( ) )
+			{
+				Map.Entry entry = (Map.Entry) itr.next( );
+				documentObject.writeInt( ( (Integer) entry.getKey( ) ).intValue( ) );
+				documentObject.writeBytes( new Bytes( ( (RoaringBitmap) entry.getValue( ) ).toBytes( ) ) );
+			}
+		}
+		documentObject.close( );
+	}
+
+	/**
+	 * Loads the bitmap index of the segment.
+	 *
+	 * @param documentManager
+	 * @param FTSUDocName
+	 * @return null if the segment has no bitmap index
+	 * @throws IOException
+	 */
+	static FactTableBitmapIndex load( IDocumentManager documentManager,
+			String FTSUDocName ) throws IOException
+	{
+		String indexName = NamingUtil.getFTSUBitmapIndexName( FTSUDocName );
+		if ( !documentManager.exist( indexName ) )
+		{
+			return null;
+		}
+		IDocumentObject documentObject = documentManager.openDocumentObject( indexName );
+		try
+		{
+			FactTableBitmapIndex index = new FactTableBitmapIndex( );
+			index.rowCount = documentObject.readInt( );
+			index.segmentLength = readLong( documentObject );
+			index.blockOffsets = new long[documentObject.readInt( )];
+			for ( int i = 0; i < index.blockOffsets.length; i++ )
+			{
+				index.blockOffsets[i] = readLong( documentObject );
+			}
+			int dimensionCount = documentObject.readInt( );
+			index.memberPositions = new int[dimensionCount][];
+			index.memberRows = new RoaringBitmap[dimensionCount][];
+			for ( int i = 0; i < dimensionCount; i++ )
+			{
+				int memberCount = documentObject.readInt( );
+				index.memberPositions[i] = new int[memberCount];
+				index.memberRows[i] = new RoaringBitmap[memberCount];
+				for ( int j = 0; j < memberCount; j++ )
+				{
+					index.memberPositions[i][j] = documentObject.readInt( );
+					index.memberRows[i][j] = RoaringBitmap.fromBytes( documentObject.readBytes( )
+							.bytesValue( ) );
+				}
+			}
+			return index;
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+	}
+
+	/**
+	 *
+	 * @return the count of the rows in the segment
+	 */
+	int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 *
+	 * @return the length of the segment when it is indexed
+	 */
+	long getSegmentLength( )
+	{
+		return segmentLength;
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @return the offset of the first row of the block containing the row
+	 */
+	long getBlockOffset( int row )
+	{
+		return blockOffsets[row / ROW_BLOCK_SIZE];
+	}
+
+	/**
+	 * Gets the rows having any of the members.
+	 *
+	 * @param dimension
+	 *            the index of the dimension in the fact table
+	 * @param positions
+	 *            the sorted positions of the members
+	 * @return
+	 */
+	RoaringBitmap getRows( int dimension, int[] positions )
+	{
+		RoaringBitmap result = new RoaringBitmap( );
+		int[] memberPosition = memberPositions[dimension];
+		int i = 0, j = 0;
+		while ( i < memberPosition.length && j < positions.length )
+		{
+			if ( memberPosition[i] < positions[j] )
+			{
+				i++;
+			}
+			else if ( memberPosition[i] > positions[j] )
+			{
+				j++;
+			}
+			else
+			{
+				result = RoaringBitmap.or( result, memberRows[dimension][i] );
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	private static void writeLong( IDocumentObject documentObject, long value )
+			throws IOException
+	{
+		documentObject.writeInt( (int) ( value >>> 32 ) );
+		documentObject.writeInt( (int) value );
+	}
+
+	private static long readLong( IDocumentObject documentObject )
+			throws IOException
+	{
+		long high = documentObject.readInt( );
+		long low = documentObject.readInt( ) & 0xFFFFFFFFL;
+		return high << 32 | low;
+	}
+}
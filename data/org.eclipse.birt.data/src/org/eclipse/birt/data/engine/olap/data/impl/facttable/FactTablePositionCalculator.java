@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.facttable;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.DimensionDivider.CombinedPositionContructor;
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.DimensionDivider.DimensionPositionSeeker;
+
+/**
+ * Calculates the positions of the fact table rows in several threads when the
+ * cube is built in parallel. The rows are still popped from the sorted stack
+ * and written to the document objects by the caller thread in the order of
+ * the rows, only the dimension positions, the sub dimension indexes and the
+ * combined positions are calculated in the threads. So the saved fact table is
+ * the same as the one saved by one thread.
+ */
+class FactTablePositionCalculator
+{
+
+	private String factTableDocName;
+	private DimensionPositionSeeker[] dimensionSeekers;
+	private DimensionDivision[] subDimensions;
+	private CombinedPositionContructor combinedPositionCalculator;
+	private int threadCount;
+	private ExecutorService executor;
+
+	/**
+	 *
+	 * @param factTableDocName
+	 * @param dimensionSeekers
+	 * @param subDimensions
+	 * @param combinedPositionCalculator
+	 * @param threadCount
+	 */
+	FactTablePositionCalculator( String factTableDocName,
+			DimensionPositionSeeker[] dimensionSeekers,
+			DimensionDivision[] subDimensions,
+			CombinedPositionContructor combinedPositionCalculator,
+			int threadCount )
+	{
+		this.factTableDocName = factTableDocName;
+		this.dimensionSeekers = dimensionSeekers;
+		this.subDimensions = subDimensions;
+		this.combinedPositionCalculator = combinedPositionCalculator;
+		this.threadCount = threadCount;
+		this.executor = Executors.newFixedThreadPool( threadCount,
+				new ThreadFactory( ) {
+
+					private int threadIndex = 0;
+
+					public synchronized Thread newThread( Runnable r )
+					{
+						Thread thread = new Thread( r, "BIRT cube build-" //$NON-NLS-1$
+								+ ( threadIndex++ ) );
+						thread.setDaemon( true );
+						return thread;
+					}
+				} );
+	}
+
+	/**
+	 * The seekers can be shared by the threads only if all the members are in
+	 * memory, the seeker searching the members on disk keeps its position.
+	 *
+	 * @param dimensionSeekers
+	 * @return
+	 */
+	static boolean isSupported( DimensionPositionSeeker[] dimensionSeekers )
+	{
+		for ( int i = 0; i < dimensionSeekers.length; i++ )
+		{
+			if ( !dimensionSeekers[i].isInMemory( ) )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Starts to calculate the positions of the rows.
+	 *
+	 * @param rows
+	 * @param count
+	 *            the count of the rows in the array
+	 * @return
+	 */
+	PositionBatch submit( FactTableRow[] rows, int count )
+	{
+		PositionBatch batch = new PositionBatch( rows, count );
+		if ( count == 0 )
+		{
+			batch.futures = new Future[0];
+			return batch;
+		}
+		int taskSize = ( count + threadCount - 1 ) / threadCount;
+		batch.futures = new Future[( count + taskSize - 1 ) / taskSize];
+		for ( int i = 0; i < batch.futures.length; i++ )
+		{
+			batch.futures[i] = executor.submit( new PositionTask( batch,
+					i * taskSize,
+					Math.min( count, ( i + 1 ) * taskSize ) ) );
+		}
+		return batch;
+	}
+
+	/**
+	 * Stops the threads.
+	 */
+	void shutdown( )
+	{
+		executor.shutdownNow( );
+	}
+
+	/**
+	 * The position of a fact table row.
+	 */
+	static class RowPosition
+	{
+
+		/**
+		 * whether the key of each dimension is not found, null if the row is
+		 * valid
+		 */
+		boolean[] invalidDimensions;
+		String documentObjectName;
+		byte[] combinedPosition;
+	}
+
+	/**
+	 * The rows whose positions are calculated together.
+	 */
+	static class PositionBatch
+	{
+
+		private FactTableRow[] rows;
+		private int count;
+		private RowPosition[] positions;
+		private Future[] futures;
+
+		private PositionBatch( FactTableRow[] rows, int count )
+		{
+			this.rows = rows;
+			this.count = count;
+			this.positions = new RowPosition[count];
+		}
+
+		int size( )
+		{
+			return count;
+		}
+
+		FactTableRow getRow( int index )
+		{
+			return rows[index];
+		}
+
+		RowPosition getPosition( int index )
+		{
+			return positions[index];
+		}
+
+		/**
+		 * Waits until the positions of all the rows are calculated.
+		 *
+		 * @throws IOException
+		 */
+		void await( ) throws IOException
+		{
+			for ( int i = 0; i < futures.length; i++ )
+			{
+				try
+				{
+					futures[i].get( );
+				}
+				catch ( InterruptedException e )
+				{
+					Thread.currentThread( ).interrupt( );
+					IOException ioe = new IOException( e.getLocalizedMessage( ) );
+					ioe.initCause( e );
+					throw ioe;
+				}
+				catch ( ExecutionException e )
+				{
+					Throwable cause = e.getCause( );
+					if ( cause instanceof IOException )
+						throw (IOException) cause;
+					if ( cause instanceof RuntimeException )
+						throw (RuntimeException) cause;
+					if ( cause instanceof Error )
+						throw (Error) cause;
+					IOException ioe = new IOException( cause.getLocalizedMessage( ) );
+					ioe.initCause( cause );
+					throw ioe;
+				}
+			}
+		}
+
+		/**
+		 * Cancels the calculation, used when the build is stopped.
+		 */
+		void cancel( )
+		{
+			for ( int i = 0; i < futures.length; i++ )
+			{
+				futures[i].cancel( false );
+			}
+		}
+	}
+
+	/**
+	 * Calculates the positions of a range of the rows in a batch. Each task
+	 * writes its own range of the position array.
+	 */
+	private class PositionTask implements Callable
+	{
+
+		private PositionBatch batch;
+		private int start;
+		private int end;
+
+		PositionTask( PositionBatch batch, int start, int end )
+		{
+			this.batch = batch;
+			this.start = start;
+			this.end = end;
+		}
+
+		/*
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public Object call( ) throws IOException
+		{
+			int[] dimensionPosition = new int[dimensionSeekers.length];
+			for ( int i = start; i < end; i++ )
+			{
+				batch.positions[i] = calculate( batch.rows[i], dimensionPosition );
+			}
+			return null;
+		}
+
+		private RowPosition calculate( FactTableRow row,
+				int[] dimensionPosition ) throws IOException
+		{
+			RowPosition result = new RowPosition( );
+			for ( int i = 0; i < dimensionPosition.length; i++ )
+			{
+				dimensionPosition[i] = dimensionSeekers[i].find( row.getDimensionKeys( )[i] );
+				if ( dimensionPosition[i] < 0 )
+				{
+					if ( result.invalidDimensions == null )
+						result.invalidDimensions = new boolean[dimensionPosition.length];
+					result.invalidDimensions[i] = true;
+				}
+			}
+			if ( result.invalidDimensions != null )
+			{
+				return result;
+			}
+			int[] subDimensionIndex = new int[dimensionPosition.length];
+			for ( int i = 0; i < subDimensionIndex.length; i++ )
+			{
+				subDimensionIndex[i] = subDimensions[i].getSubDimensionIndex( dimensionPosition[i] );
+			}
+			result.documentObjectName = FactTableAccessor.FTSUDocumentObjectNamingUtil.getDocumentObjectName( factTableDocName,
+					subDimensionIndex );
+			result.combinedPosition = combinedPositionCalculator.calculateCombinedPosition( subDimensionIndex,
+					dimensionPosition )
+					.toByteArray( );
+			return result;
+		}
+	}
+}
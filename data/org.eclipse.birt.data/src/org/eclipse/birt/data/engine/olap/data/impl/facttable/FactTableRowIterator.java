@@ -37,6 +37,7 @@ import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTableAccessor.F
 import org.eclipse.birt.data.engine.olap.data.util.Bytes;
 import org.eclipse.birt.data.engine.olap.data.util.DataType;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+import org.eclipse.birt.data.engine.olap.data.util.RoaringBitmap;
 import org.eclipse.birt.data.engine.olap.util.filter.ICubePosFilter;
 import org.eclipse.birt.data.engine.olap.util.filter.IFacttableRow;
 import org.eclipse.birt.data.engine.olap.util.filter.IJSFacttableFilterEvalHelper;
@@ -88,6 +89,13 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	private boolean lastFilterResult;
 	private boolean isDuplicatedRow;
 	
+	//the rows of the current segment selected by the bitmap index, null if
+	//all the rows are read
+	private int[] selectedRows;
+	private int selectedRowIndex;
+	private int nextRowNumber;
+	private FactTableBitmapIndex currentIndex;
+	
 	/**
 	 * 
 	 * @param factTable
@@ -236,6 +244,10 @@ public class FactTableRowIterator implements IFactTableRowIterator
 				{
 					return false;
 				}
+				if ( selectedRows != null && !seekSelectedRow( ) )
+				{
+					break;
+				}
 				Bytes combinedDimensionPosition = currentSegment.readBytes( );
 				if( this.lastCombinedDimensionPosition == null )
 				{
@@ -493,6 +505,92 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		return true;
 	}
 
+	/**
+	 * Moves to the next row selected by the bitmap index.
+	 * 
+	 * @return false if there is no more selected row in the segment
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private boolean seekSelectedRow( ) throws IOException, DataException
+	{
+		if ( selectedRowIndex >= selectedRows.length )
+		{
+			return false;
+		}
+		int row = selectedRows[selectedRowIndex++];
+		if ( row < nextRowNumber
+				|| row / FactTableBitmapIndex.ROW_BLOCK_SIZE > nextRowNumber
+						/ FactTableBitmapIndex.ROW_BLOCK_SIZE )
+		{
+			currentSegment.seek( currentIndex.getBlockOffset( row ) );
+			nextRowNumber = row - row % FactTableBitmapIndex.ROW_BLOCK_SIZE;
+		}
+		while ( nextRowNumber < row )
+		{
+			currentSegment.readBytes( );
+			if ( !skipMeasure( ) )
+			{
+				return false;
+			}
+			nextRowNumber++;
+		}
+		nextRowNumber++;
+		return true;
+	}
+
+	/**
+	 * Selects the rows of the current segment by the bitmap index.
+	 * 
+	 * @param FTSUDocName
+	 * @param segmentLength
+	 *            the length of the segment, the index of a segment appended
+	 *            after it is indexed is not used
+	 * @return false if no row of the segment is selected
+	 * @throws IOException
+	 */
+	private boolean selectRows( String FTSUDocName, long segmentLength )
+			throws IOException
+	{
+		selectedRows = null;
+		currentIndex = null;
+		RoaringBitmap rows = null;
+		for ( int i = 0; i < dimensionIndex.length; i++ )
+		{
+			if ( dimensionIndex[i] == -1 )
+			{
+				continue;
+			}
+			if ( currentIndex == null )
+			{
+				currentIndex = FactTableBitmapIndex.load( factTable.getDocumentManager( ),
+						FTSUDocName );
+				if ( currentIndex == null
+						|| currentIndex.getSegmentLength( ) != segmentLength )
+				{
+					currentIndex = null;
+					return true;
+				}
+			}
+			RoaringBitmap dimensionRows = currentIndex.getRows( i,
+					selectedPosOfCurSegment[i] );
+			rows = rows == null ? dimensionRows : RoaringBitmap.and( rows,
+					dimensionRows );
+			if ( rows.isEmpty( ) )
+			{
+				return false;
+			}
+		}
+		if ( rows != null
+				&& rows.getCardinality( ) < currentIndex.getRowCount( ) )
+		{
+			selectedRows = rows.toArray( );
+			selectedRowIndex = 0;
+			nextRowNumber = 0;
+		}
+		return true;
+	}
+
 	/**
      * Moves down one segment from its current segment of the iterator.
 	 * @return
@@ -519,11 +617,6 @@ public class FactTableRowIterator implements IFactTableRowIterator
 				continue;
 			}
 			
-			if( currentSegment != null )
-				currentSegment.close( );
-			
-			currentSegment = factTable.getDocumentManager( ).openDocumentObject( FTSUDocName );
-			
 			for ( int i = 0; i < dimensionIndex.length; i++ )
 			{
 				if ( dimensionIndex[i] != -1 )
@@ -539,6 +632,20 @@ public class FactTableRowIterator implements IFactTableRowIterator
 					}
 				}
 			}
+			IDocumentObject segment = factTable.getDocumentManager( )
+					.openDocumentObject( FTSUDocName );
+			if ( !selectRows( FTSUDocName, segment.length( ) ) )
+			{
+				segment.close( );
+				continue;
+			}
+			
+			if( currentSegment != null )
+				currentSegment.close( );
+			
+			currentSegment = segment;
+			// the rows of different segments are never duplicated
+			lastCombinedDimensionPosition = null;
 			break;
 		}
 		return true;
@@ -14,10 +14,20 @@ package org.eclipse.birt.data.engine.olap.data.util;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
+import org.eclipse.birt.data.engine.api.CloseListenerManager;
+import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
 import org.eclipse.birt.data.engine.cache.Constants;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.TempPathManager;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.StopSign;
 import org.eclipse.birt.data.engine.olap.data.api.ISelection;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentObjectUtil;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
@@ -94,6 +104,78 @@ public class DiskIndex
 		return new DiskIndex( documentManager, name );
 	}
 
+	/**
+	 * Adds the keys to the index and saves the index again. The keys equal to
+	 * the saved keys are merged into them, their dimension positions and
+	 * offsets follow the saved ones.
+	 * 
+	 * @param documentManager
+	 * @param name
+	 * @param index
+	 *            the saved index, null if the index is not saved
+	 * @param keyList
+	 *            the keys to add, each has one dimension position and offset
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public static DiskIndex appendIndex( IDocumentManager documentManager,
+			String name, DiskIndex index, IDiskArray keyList )
+			throws IOException, DataException
+	{
+		if ( index == null )
+		{
+			return createIndex( documentManager, name, keyList, false );
+		}
+		IDiskArray savedKeys = index.findAll( );
+		IDiskArray addedKeys = sortKeys( keyList );
+		index.close( );
+		BufferedStructureArray mergedKeys = new BufferedStructureArray( IndexKey.getCreator( ),
+				Math.min( savedKeys.size( ) + addedKeys.size( ),
+						Constants.MAX_LIST_BUFFER_SIZE ) );
+		int i = 0, j = 0;
+		while ( i < savedKeys.size( ) || j < addedKeys.size( ) )
+		{
+			IndexKey savedKey = i < savedKeys.size( )
+					? (IndexKey) savedKeys.get( i ) : null;
+			IndexKey addedKey = j < addedKeys.size( )
+					? (IndexKey) addedKeys.get( j ) : null;
+			int result = savedKey == null ? 1 : ( addedKey == null ? -1
+					: savedKey.compareTo( addedKey ) );
+			if ( result < 0 )
+			{
+				mergedKeys.add( savedKey );
+				i++;
+			}
+			else if ( result > 0 )
+			{
+				mergedKeys.add( addedKey );
+				j++;
+			}
+			else
+			{
+				savedKey.setDimensionPos( concat( savedKey.getDimensionPos( ),
+						addedKey.getDimensionPos( ) ) );
+				savedKey.setOffset( concat( savedKey.getOffset( ),
+						addedKey.getOffset( ) ) );
+				mergedKeys.add( savedKey );
+				i++;
+				j++;
+			}
+		}
+		savedKeys.close( );
+		addedKeys.close( );
+		return createIndex( documentManager, name, mergedKeys, true );
+	}
+
+	private static int[] concat( int[] array1, int[] array2 )
+	{
+		int[] result = new int[array1.length + array2.length];
+		System.arraycopy( array1, 0, result, 0, array1.length );
+		System.arraycopy( array2, 0, result, array1.length, array2.length );
+		return result;
+	}
+
 	/**
 	 * 
 	 * @param documentManager
@@ -488,20 +570,142 @@ public class DiskIndex
 	 */
 	private void createDocumentObject( ) throws IOException, DataException
 	{
-		documentObject = documentManager.createDocumentObject( name );
-		if ( documentObject == null )
+		// the index is saved again when the keys are appended
+		documentObject = DocumentObjectUtil.createOrReplaceDocumentObject( documentManager,
+				name );
+		offsetDocumentObject = DocumentObjectUtil.createOrReplaceDocumentObject( documentManager,
+				getOffsetDocName( name ) );
+	}
+
+	/**
+	 * Sorts the key lists of several indexes in the threads, the sorted lists
+	 * can be passed to <code>createIndex</code> as sorted ones. The document
+	 * objects are not accessed by the threads, so the indexes should still be
+	 * created by the caller thread. The temp files created by the threads are
+	 * managed by the managers of the caller thread.
+	 * 
+	 * @param keyLists
+	 * @param threadCount
+	 * @param stopSign
+	 * @return the sorted key lists, the keys equal to each other are merged
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public static IDiskArray[] sortKeys( final IDiskArray[] keyLists,
+			int threadCount, final StopSign stopSign ) throws IOException,
+			DataException
+	{
+		IDiskArray[] result = new IDiskArray[keyLists.length];
+		if ( threadCount <= 1 || keyLists.length <= 1 )
 		{
-			// throw new OlapException(
-			// ResourceConstants.DOCUMENTOJBECT_ALWAYS_EXIST,
-			// name );
+			for ( int i = 0; i < keyLists.length && !stopSign.isStopped( ); i++ )
+			{
+				result[i] = sortKeys( keyLists[i] );
+			}
+			return result;
 		}
+		final TempPathManager pathManager = DataEngineThreadLocal.getInstance( )
+				.getPathManager( );
+		final CloseListenerManager closeListener = DataEngineThreadLocal.getInstance( )
+				.getCloseListener( );
+		ExecutorService executor = Executors.newFixedThreadPool( Math.min( threadCount,
+				keyLists.length ),
+				new ThreadFactory( ) {
 
-		offsetDocumentObject = documentManager.createDocumentObject( getOffsetDocName( name ) );
-		if ( offsetDocumentObject == null )
+					private int threadIndex = 0;
+
+					public synchronized Thread newThread( Runnable r )
+					{
+						Thread thread = new Thread( r, "BIRT index sort-" //$NON-NLS-1$
+								+ ( threadIndex++ ) );
+						thread.setDaemon( true );
+						return thread;
+					}
+				} );
+		List<Future<IDiskArray>> futures = new ArrayList<Future<IDiskArray>>( );
+		try
+		{
+			for ( int i = 0; i < keyLists.length; i++ )
+			{
+				final IDiskArray keyList = keyLists[i];
+				futures.add( executor.submit( new Callable<IDiskArray>( ) {
+
+					public IDiskArray call( ) throws Exception
+					{
+						if ( stopSign.isStopped( ) )
+						{
+							return null;
+						}
+						DataEngineThreadLocal.getInstance( )
+								.setPathManager( pathManager );
+						DataEngineThreadLocal.getInstance( )
+								.setCloseListener( closeListener );
+						try
+						{
+							return sortKeys( keyList );
+						}
+						finally
+						{
+							DataEngineThreadLocal.getInstance( )
+									.removeTempPathManger( );
+							DataEngineThreadLocal.getInstance( )
+									.removeCloseListener( );
+						}
+					}
+				} ) );
+			}
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				result[i] = waitFor( futures.get( i ) );
+			}
+		}
+		finally
+		{
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				futures.get( i ).cancel( true );
+			}
+			executor.shutdown( );
+		}
+		return result;
+	}
+
+	/**
+	 * Waits for the task and throws the exception of the task.
+	 * 
+	 * @param future
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private static IDiskArray waitFor( Future<IDiskArray> future )
+			throws IOException, DataException
+	{
+		try
+		{
+			return future.get( );
+		}
+		catch ( InterruptedException e )
 		{
-			// throw new OlapException(
-			// ResourceConstants.DOCUMENTOJBECT_ALWAYS_EXIST,
-			// name );
+			Thread.currentThread( ).interrupt( );
+			IOException ioe = new IOException( e.getLocalizedMessage( ) );
+			ioe.initCause( e );
+			throw ioe;
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+			if ( cause instanceof IOException )
+				throw (IOException) cause;
+			if ( cause instanceof DataException )
+				throw (DataException) cause;
+			if ( cause instanceof RuntimeException )
+				throw (RuntimeException) cause;
+			if ( cause instanceof Error )
+				throw (Error) cause;
+			IOException ioe = new IOException( cause.getLocalizedMessage( ) );
+			ioe.initCause( cause );
+			throw ioe;
 		}
 	}
 
@@ -511,8 +715,12 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private IDiskArray sortKeys( IDiskArray keyList ) throws IOException
+	private static IDiskArray sortKeys( IDiskArray keyList ) throws IOException
 	{
+		if ( keyList.size( ) == 0 )
+		{
+			return keyList;
+		}
 		DiskSortedStack sortStack = new DiskSortedStack( Math.min( keyList.size( ),
 				Constants.MAX_LIST_BUFFER_SIZE ),
 				false,
@@ -555,7 +763,7 @@ public class DiskIndex
 		return reList;
 	}
 
-	private void addIndex(BufferedStructureArray reList, IndexKey curIndexKey,
+	private static void addIndex(BufferedStructureArray reList, IndexKey curIndexKey,
 			List<Integer> dimPos, List<Integer> dimOffset) throws IOException {
 		int[] iDimPos = new int[dimPos.size( )];
 		for( int j = 0; j < iDimPos.length; j++ )
@@ -0,0 +1,639 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A compressed bitmap of non-negative integers. The integers are grouped by
+ * their high 16 bits, the low 16 bits of each group are kept in a sorted array
+ * if the group is sparse, or in a bitmap of 65536 bits if the group has more
+ * than 4096 integers. So a bitmap never takes much more space than a sorted
+ * array of its integers, and the AND/OR of two bitmaps only visits the groups
+ * existing in both/either of them.
+ */
+public class RoaringBitmap
+{
+
+	/**
+	 * the max count of the integers kept in an array container
+	 */
+	static final int ARRAY_MAX_SIZE = 4096;
+
+	private static final int ARRAY_CONTAINER = 0;
+	private static final int BITMAP_CONTAINER = 1;
+
+	private char[] keys;
+	private Container[] containers;
+	private int size;
+
+	public RoaringBitmap( )
+	{
+		this.keys = new char[4];
+		this.containers = new Container[4];
+		this.size = 0;
+	}
+
+	/**
+	 * Adds an integer to the bitmap.
+	 *
+	 * @param value
+	 *            non-negative integer
+	 */
+	public void add( int value )
+	{
+		assert value >= 0;
+		char key = highBits( value );
+		int index = size > 0 && keys[size - 1] == key ? size - 1
+				: binarySearch( keys, size, key );
+		if ( index < 0 )
+		{
+			index = -index - 1;
+			insertContainer( index, key, new ArrayContainer( ) );
+		}
+		containers[index] = containers[index].add( lowBits( value ) );
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @return whether the integer is in the bitmap
+	 */
+	public boolean contains( int value )
+	{
+		int index = binarySearch( keys, size, highBits( value ) );
+		return index >= 0 && containers[index].contains( lowBits( value ) );
+	}
+
+	/**
+	 *
+	 * @return the count of the integers in the bitmap
+	 */
+	public int getCardinality( )
+	{
+		int cardinality = 0;
+		for ( int i = 0; i < size; i++ )
+		{
+			cardinality += containers[i].cardinality;
+		}
+		return cardinality;
+	}
+
+	/**
+	 *
+	 * @return whether the bitmap has no integer
+	 */
+	public boolean isEmpty( )
+	{
+		return size == 0;
+	}
+
+	/**
+	 *
+	 * @return the integers in ascending order
+	 */
+	public int[] toArray( )
+	{
+		int[] result = new int[getCardinality( )];
+		int pos = 0;
+		for ( int i = 0; i < size; i++ )
+		{
+			pos = containers[i].fill( result, pos, keys[i] << 16 );
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param bitmap1
+	 * @param bitmap2
+	 * @return a new bitmap of the integers in either of the bitmaps
+	 */
+	public static RoaringBitmap or( RoaringBitmap bitmap1, RoaringBitmap bitmap2 )
+	{
+		RoaringBitmap result = new RoaringBitmap( );
+		int i = 0, j = 0;
+		while ( i < bitmap1.size && j < bitmap2.size )
+		{
+			if ( bitmap1.keys[i] < bitmap2.keys[j] )
+			{
+				result.appendContainer( bitmap1.keys[i], bitmap1.containers[i++].copy( ) );
+			}
+			else if ( bitmap1.keys[i] > bitmap2.keys[j] )
+			{
+				result.appendContainer( bitmap2.keys[j], bitmap2.containers[j++].copy( ) );
+			}
+			else
+			{
+				result.appendContainer( bitmap1.keys[i],
+						bitmap1.containers[i++].or( bitmap2.containers[j++] ) );
+			}
+		}
+		for ( ; i < bitmap1.size; i++ )
+		{
+			result.appendContainer( bitmap1.keys[i], bitmap1.containers[i].copy( ) );
+		}
+		for ( ; j < bitmap2.size; j++ )
+		{
+			result.appendContainer( bitmap2.keys[j], bitmap2.containers[j].copy( ) );
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param bitmap1
+	 * @param bitmap2
+	 * @return a new bitmap of the integers in both of the bitmaps
+	 */
+	public static RoaringBitmap and( RoaringBitmap bitmap1,
+			RoaringBitmap bitmap2 )
+	{
+		RoaringBitmap result = new RoaringBitmap( );
+		int i = 0, j = 0;
+		while ( i < bitmap1.size && j < bitmap2.size )
+		{
+			if ( bitmap1.keys[i] < bitmap2.keys[j] )
+			{
+				i++;
+			}
+			else if ( bitmap1.keys[i] > bitmap2.keys[j] )
+			{
+				j++;
+			}
+			else
+			{
+				Container container = bitmap1.containers[i++].and( bitmap2.containers[j++] );
+				if ( container.cardinality > 0 )
+				{
+					result.appendContainer( bitmap1.keys[i - 1], container );
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @return the serialized bitmap
+	 * @throws IOException
+	 */
+	public byte[] toBytes( ) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream( );
+		DataOutputStream output = new DataOutputStream( buffer );
+		output.writeInt( size );
+		for ( int i = 0; i < size; i++ )
+		{
+			output.writeChar( keys[i] );
+			containers[i].write( output );
+		}
+		output.flush( );
+		return buffer.toByteArray( );
+	}
+
+	/**
+	 *
+	 * @param bytes
+	 *            the bytes returned by toBytes()
+	 * @return the bitmap
+	 * @throws IOException
+	 */
+	public static RoaringBitmap fromBytes( byte[] bytes ) throws IOException
+	{
+		DataInputStream input = new DataInputStream( new ByteArrayInputStream( bytes ) );
+		RoaringBitmap result = new RoaringBitmap( );
+		int size = input.readInt( );
+		for ( int i = 0; i < size; i++ )
+		{
+			char key = input.readChar( );
+			int type = input.readByte( );
+			int cardinality = input.readInt( );
+			Container container;
+			if ( type == BITMAP_CONTAINER )
+			{
+				container = BitmapContainer.read( input, cardinality );
+			}
+			else
+			{
+				container = ArrayContainer.read( input, cardinality );
+			}
+			result.appendContainer( key, container );
+		}
+		return result;
+	}
+
+	private void insertContainer( int index, char key, Container container )
+	{
+		ensureCapacity( );
+		System.arraycopy( keys, index, keys, index + 1, size - index );
+		System.arraycopy( containers, index, containers, index + 1, size
+				- index );
+		keys[index] = key;
+		containers[index] = container;
+		size++;
+	}
+
+	private void appendContainer( char key, Container container )
+	{
+		ensureCapacity( );
+		keys[size] = key;
+		containers[size] = container;
+		size++;
+	}
+
+	private void ensureCapacity( )
+	{
+		if ( size == keys.length )
+		{
+			char[] newKeys = new char[size * 2];
+			System.arraycopy( keys, 0, newKeys, 0, size );
+			keys = newKeys;
+			Container[] newContainers = new Container[size * 2];
+			System.arraycopy( containers, 0, newContainers, 0, size );
+			containers = newContainers;
+		}
+	}
+
+	private static char highBits( int value )
+	{
+		return (char) ( value >>> 16 );
+	}
+
+	private static char lowBits( int value )
+	{
+		return (char) ( value & 0xFFFF );
+	}
+
+	private static int binarySearch( char[] array, int length, char key )
+	{
+		int low = 0;
+		int high = length - 1;
+		while ( low <= high )
+		{
+			int mid = ( low + high ) >>> 1;
+			if ( array[mid] < key )
+				low = mid + 1;
+			else if ( array[mid] > key )
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -( low + 1 );
+	}
+
+	/**
+	 * The low 16 bits of the integers sharing the same high 16 bits.
+	 */
+	private static abstract class Container
+	{
+
+		int cardinality;
+
+		/**
+		 * @return the container holding the value, which may be a new one
+		 */
+		abstract Container add( char value );
+
+		abstract boolean contains( char value );
+
+		abstract Container or( Container other );
+
+		abstract Container and( Container other );
+
+		abstract Container copy( );
+
+		/**
+		 * @return the position after the last filled integer
+		 */
+		abstract int fill( int[] result, int pos, int high );
+
+		abstract void write( DataOutputStream output ) throws IOException;
+	}
+
+	/**
+	 * The sorted array of the low bits, used when there are at most 4096
+	 * integers.
+	 */
+	private static class ArrayContainer extends Container
+	{
+
+		private char[] values;
+
+		ArrayContainer( )
+		{
+			this( new char[4], 0 );
+		}
+
+		ArrayContainer( char[] values, int cardinality )
+		{
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		Container add( char value )
+		{
+			int index = cardinality > 0 && values[cardinality - 1] < value
+					? -cardinality - 1 : binarySearch( values,
+							cardinality,
+							value );
+			if ( index >= 0 )
+			{
+				return this;
+			}
+			if ( cardinality == ARRAY_MAX_SIZE )
+			{
+				return toBitmapContainer( ).add( value );
+			}
+			index = -index - 1;
+			if ( cardinality == values.length )
+			{
+				char[] newValues = new char[Math.min( ARRAY_MAX_SIZE,
+						Math.max( 4, cardinality * 2 ) )];
+				System.arraycopy( values, 0, newValues, 0, cardinality );
+				values = newValues;
+			}
+			System.arraycopy( values, index, values, index + 1, cardinality
+					- index );
+			values[index] = value;
+			cardinality++;
+			return this;
+		}
+
+		boolean contains( char value )
+		{
+			return binarySearch( values, cardinality, value ) >= 0;
+		}
+
+		Container or( Container other )
+		{
+			if ( other instanceof BitmapContainer )
+			{
+				return other.or( this );
+			}
+			ArrayContainer array = (ArrayContainer) other;
+			char[] result = new char[cardinality + array.cardinality];
+			int i = 0, j = 0, k = 0;
+			while ( i < cardinality && j < array.cardinality )
+			{
+				if ( values[i] < array.values[j] )
+					result[k++] = values[i++];
+				else if ( values[i] > array.values[j] )
+					result[k++] = array.values[j++];
+				else
+				{
+					result[k++] = values[i++];
+					j++;
+				}
+			}
+			while ( i < cardinality )
+				result[k++] = values[i++];
+			while ( j < array.cardinality )
+				result[k++] = array.values[j++];
+			if ( k > ARRAY_MAX_SIZE )
+			{
+				return new ArrayContainer( result, k ).toBitmapContainer( );
+			}
+			return new ArrayContainer( result, k );
+		}
+
+		Container and( Container other )
+		{
+			char[] result = new char[cardinality];
+			int k = 0;
+			if ( other instanceof BitmapContainer )
+			{
+				for ( int i = 0; i < cardinality; i++ )
+				{
+					if ( other.contains( values[i] ) )
+						result[k++] = values[i];
+				}
+				return new ArrayContainer( result, k );
+			}
+			ArrayContainer array = (ArrayContainer) other;
+			int i = 0, j = 0;
+			while ( i < cardinality && j < array.cardinality )
+			{
+				if ( values[i] < array.values[j] )
+					i++;
+				else if ( values[i] > array.values[j] )
+					j++;
+				else
+				{
+					result[k++] = values[i++];
+					j++;
+				}
+			}
+			return new ArrayContainer( result, k );
+		}
+
+		Container copy( )
+		{
+			char[] newValues = new char[values.length];
+			System.arraycopy( values, 0, newValues, 0, cardinality );
+			return new ArrayContainer( newValues, cardinality );
+		}
+
+		int fill( int[] result, int pos, int high )
+		{
+			for ( int i = 0; i < cardinality; i++ )
+			{
+				result[pos++] = high | values[i];
+			}
+			return pos;
+		}
+
+		void write( DataOutputStream output ) throws IOException
+		{
+			output.writeByte( ARRAY_CONTAINER );
+			output.writeInt( cardinality );
+			for ( int i = 0; i < cardinality; i++ )
+			{
+				output.writeChar( values[i] );
+			}
+		}
+
+		static ArrayContainer read( DataInputStream input, int cardinality )
+				throws IOException
+		{
+			char[] values = new char[Math.max( 4, cardinality )];
+			for ( int i = 0; i < cardinality; i++ )
+			{
+				values[i] = input.readChar( );
+			}
+			return new ArrayContainer( values, cardinality );
+		}
+
+		private BitmapContainer toBitmapContainer( )
+		{
+			BitmapContainer bitmap = new BitmapContainer( );
+			for ( int i = 0; i < cardinality; i++ )
+			{
+				bitmap.add( values[i] );
+			}
+			return bitmap;
+		}
+	}
+
+	/**
+	 * The bitmap of the low bits, used when there are more than 4096 integers.
+	 */
+	private static class BitmapContainer extends Container
+	{
+
+		private long[] words;
+
+		BitmapContainer( )
+		{
+			this( new long[1024], 0 );
+		}
+
+		BitmapContainer( long[] words, int cardinality )
+		{
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		Container add( char value )
+		{
+			long word = words[value >>> 6];
+			long newWord = word | ( 1L << value );
+			if ( word != newWord )
+			{
+				words[value >>> 6] = newWord;
+				cardinality++;
+			}
+			return this;
+		}
+
+		boolean contains( char value )
+		{
+			return ( words[value >>> 6] & ( 1L << value ) ) != 0;
+		}
+
+		Container or( Container other )
+		{
+			long[] result = new long[1024];
+			System.arraycopy( words, 0, result, 0, result.length );
+			if ( other instanceof BitmapContainer )
+			{
+				long[] otherWords = ( (BitmapContainer) other ).words;
+				for ( int i = 0; i < result.length; i++ )
+				{
+					result[i] |= otherWords[i];
+				}
+			}
+			else
+			{
+				ArrayContainer array = (ArrayContainer) other;
+				for ( int i = 0; i < array.cardinality; i++ )
+				{
+					result[array.values[i] >>> 6] |= 1L << array.values[i];
+				}
+			}
+			return new BitmapContainer( result, bitCount( result ) );
+		}
+
+		Container and( Container other )
+		{
+			if ( other instanceof ArrayContainer )
+			{
+				return other.and( this );
+			}
+			long[] otherWords = ( (BitmapContainer) other ).words;
+			long[] result = new long[1024];
+			for ( int i = 0; i < result.length; i++ )
+			{
+				result[i] = words[i] & otherWords[i];
+			}
+			int count = bitCount( result );
+			if ( count > ARRAY_MAX_SIZE )
+			{
+				return new BitmapContainer( result, count );
+			}
+			char[] values = new char[count];
+			new BitmapContainer( result, count ).fill( values );
+			return new ArrayContainer( values, count );
+		}
+
+		Container copy( )
+		{
+			long[] newWords = new long[words.length];
+			System.arraycopy( words, 0, newWords, 0, words.length );
+			return new BitmapContainer( newWords, cardinality );
+		}
+
+		int fill( int[] result, int pos, int high )
+		{
+			for ( int i = 0; i < words.length; i++ )
+			{
+				long word = words[i];
+				while ( word != 0 )
+				{
+					result[pos++] = high
+							| ( i << 6 | Long.numberOfTrailingZeros( word ) );
+					word &= word - 1;
+				}
+			}
+			return pos;
+		}
+
+		private void fill( char[] values )
+		{
+			int pos = 0;
+			for ( int i = 0; i < words.length; i++ )
+			{
+				long word = words[i];
+				while ( word != 0 )
+				{
+					values[pos++] = (char) ( i << 6 | Long.numberOfTrailingZeros( word ) );
+					word &= word - 1;
+				}
+			}
+		}
+
+		void write( DataOutputStream output ) throws IOException
+		{
+			output.writeByte( BITMAP_CONTAINER );
+			output.writeInt( cardinality );
+			for ( int i = 0; i < words.length; i++ )
+			{
+				output.writeLong( words[i] );
+			}
+		}
+
+		static BitmapContainer read( DataInputStream input, int cardinality )
+				throws IOException
+		{
+			long[] words = new long[1024];
+			for ( int i = 0; i < words.length; i++ )
+			{
+				words[i] = input.readLong( );
+			}
+			return new BitmapContainer( words, cardinality );
+		}
+
+		private static int bitCount( long[] words )
+		{
+			int count = 0;
+			for ( int i = 0; i < words.length; i++ )
+			{
+				count += Long.bitCount( words[i] );
+			}
+			return count;
+		}
+	}
+}
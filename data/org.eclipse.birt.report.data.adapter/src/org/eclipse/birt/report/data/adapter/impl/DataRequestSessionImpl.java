@@ -831,6 +831,8 @@ public class DataRequestSessionImpl extends DataRequestSession
 			}
 		}
 
+		cubeMaterializer.setThreadCount( getCubeBuildThreadCount( appContext ) );
+		cubeMaterializer.setBitmapIndexEnabled( isCubeBitmapIndexEnabled( appContext ) );
 		IDimension[] dimensions = populateDimensions( cubeMaterializer,
 				cubeHandle,
 				appContext,
@@ -1038,6 +1040,7 @@ public class DataRequestSessionImpl extends DataRequestSession
 						cubeMetaMap.get( cubeHandle ),
 						appContext );
 			}
+			cubeMaterializer.setAggregateLevels( getCubeAggregateLevels( appContext ) );
 			cubeMaterializer.createCube( cubeHandle.getQualifiedName( ),
 					factTableKey,
 					dimensionKey,
@@ -1066,6 +1069,80 @@ public class DataRequestSessionImpl extends DataRequestSession
 		appContext.putAll( backupAppContext );
 	}
 
+	/**
+	 * @param appContext
+	 * @return the count of the threads used to create the cube, 1 if it is
+	 *         not set
+	 */
+	private static int getCubeBuildThreadCount( Map appContext )
+	{
+		if ( appContext == null )
+			return 1;
+		Object threadCount = appContext.get( DataEngine.CUBE_BUILD_THREAD_COUNT );
+		if ( threadCount == null )
+			return 1;
+		try
+		{
+			return Math.max( 1, Integer.parseInt( threadCount.toString( )
+					.trim( ) ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			logger.log( Level.WARNING, "invalid cube build thread count: {0}", //$NON-NLS-1$
+					threadCount );
+			return 1;
+		}
+	}
+
+	/**
+	 * @param appContext
+	 * @return whether the bitmap index of the fact table is saved with the
+	 *         cube, true if it is not set
+	 */
+	private static boolean isCubeBitmapIndexEnabled( Map appContext )
+	{
+		if ( appContext == null )
+			return true;
+		Object bitmapIndex = appContext.get( DataEngine.CUBE_BITMAP_INDEX );
+		if ( bitmapIndex == null )
+			return true;
+		return !"false".equalsIgnoreCase( bitmapIndex.toString( ).trim( ) ); //$NON-NLS-1$
+	}
+
+	/**
+	 * @param appContext
+	 * @return the level combinations whose aggregations are saved together
+	 *         with the cube, null if it is not set
+	 */
+	private static DimLevel[][] getCubeAggregateLevels( Map appContext )
+	{
+		if ( appContext == null )
+			return null;
+		Object aggregateLevels = appContext.get( DataEngine.CUBE_AGGREGATE_LEVELS );
+		if ( aggregateLevels == null )
+			return null;
+		List result = new ArrayList( );
+		String[] combinations = aggregateLevels.toString( ).split( ";" ); //$NON-NLS-1$
+		for ( int i = 0; i < combinations.length; i++ )
+		{
+			if ( combinations[i].trim( ).length( ) == 0 )
+				continue;
+			String[] levelNames = combinations[i].split( "," ); //$NON-NLS-1$
+			DimLevel[] levels = new DimLevel[levelNames.length];
+			for ( int j = 0; j < levelNames.length; j++ )
+			{
+				String levelName = levelNames[j].trim( );
+				int index = levelName.indexOf( '/' );
+				if ( index < 0 )
+					throw new IllegalArgumentException( levelName );
+				levels[j] = new DimLevel( levelName.substring( 0, index ).trim( ),
+						levelName.substring( index + 1 ).trim( ) );
+			}
+			result.add( levels );
+		}
+		return (DimLevel[][]) result.toArray( new DimLevel[result.size( )][] );
+	}
+
 	public static long computeMemoryBufferSize( Map appContext )
 	{
 		//here a simple assumption, that 1M memory can accommodate 2000 rows
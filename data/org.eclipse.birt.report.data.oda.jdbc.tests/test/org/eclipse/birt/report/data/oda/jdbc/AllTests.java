@@ -40,6 +40,7 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.ResultSetTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.StatementTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.DBConfigTest.class );
+		suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.connectionpool.ConnectionPoolTest.class );
 		return suite;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ConnectionPoolTest extends TestCase
+{
+
+	private List<FakeConnection> physicalConnections = new ArrayList<FakeConnection>( );
+
+	private ConnectionPool.IConnectionCreator creator = new ConnectionPool.IConnectionCreator( ) {
+
+		public Connection createConnection( ) throws SQLException
+		{
+			FakeConnection handler = new FakeConnection( );
+			physicalConnections.add( handler );
+			return (Connection) Proxy.newProxyInstance( Connection.class
+					.getClassLoader( ), new Class[]{
+				Connection.class
+			}, handler );
+		}
+	};
+
+	public void testReuse( ) throws SQLException
+	{
+		ConnectionPool pool = new ConnectionPool( creator, 2, 0, 100, null );
+		Connection conn1 = pool.getConnection( );
+		conn1.close( );
+		assertTrue( conn1.isClosed( ) );
+		Connection conn2 = pool.getConnection( );
+		assertFalse( conn2.isClosed( ) );
+		assertEquals( 1, physicalConnections.size( ) );
+		assertFalse( physicalConnections.get( 0 ).closed );
+		conn2.close( );
+
+		ConnectionPoolStatistics stat = pool.getStatistics( );
+		assertEquals( 2, stat.getBorrowCount( ) );
+		assertEquals( 1, stat.getCreateCount( ) );
+		assertEquals( 0, stat.getActiveCount( ) );
+		assertEquals( 1, stat.getIdleCount( ) );
+
+		pool.close( );
+		assertTrue( physicalConnections.get( 0 ).closed );
+	}
+
+	public void testClosedProxy( ) throws SQLException
+	{
+		ConnectionPool pool = new ConnectionPool( creator, 1, 0, 100, null );
+		Connection conn = pool.getConnection( );
+		conn.close( );
+		// close twice is allowed
+		conn.close( );
+		try
+		{
+			conn.createStatement( );
+			fail( );
+		}
+		catch ( SQLException e )
+		{
+		}
+		assertEquals( 0, pool.getStatistics( ).getActiveCount( ) );
+		pool.close( );
+	}
+
+	public void testWaitTimeout( ) throws SQLException
+	{
+		ConnectionPool pool = new ConnectionPool( creator, 1, 0, 50, null );
+		Connection conn = pool.getConnection( );
+		try
+		{
+			pool.getConnection( );
+			fail( );
+		}
+		catch ( SQLException e )
+		{
+			assertEquals( ConnectionPool.TIMEOUT_SQL_STATE, e.getSQLState( ) );
+		}
+		assertEquals( 1, pool.getStatistics( ).getTimeoutCount( ) );
+		conn.close( );
+		pool.getConnection( ).close( );
+		pool.close( );
+	}
+
+	public void testIdleTimeout( ) throws Exception
+	{
+		ConnectionPool pool = new ConnectionPool( creator, 2, 10, 100, null );
+		pool.getConnection( ).close( );
+		Thread.sleep( 50 );
+		pool.getConnection( ).close( );
+		assertEquals( 2, physicalConnections.size( ) );
+		assertTrue( physicalConnections.get( 0 ).closed );
+		pool.close( );
+	}
+
+	public void testInvalidConnection( ) throws SQLException
+	{
+		ConnectionPool pool = new ConnectionPool( creator, 2, 0, 100, null );
+		pool.getConnection( ).close( );
+		physicalConnections.get( 0 ).closed = true;
+		pool.getConnection( ).close( );
+		assertEquals( 2, physicalConnections.size( ) );
+		assertEquals( 1, pool.getStatistics( ).getDestroyCount( ) );
+		pool.close( );
+	}
+
+	public void testStatementCache( ) throws SQLException
+	{
+		ConnectionPool pool = new ConnectionPool( creator, 1, 0, 100, null, 2 );
+		Connection conn = pool.getConnection( );
+		PreparedStatement stmt1 = conn.prepareStatement( "select 1" );
+		stmt1.setMaxRows( 10 );
+		stmt1.close( );
+		assertTrue( stmt1.isClosed( ) );
+		conn.close( );
+
+		conn = pool.getConnection( );
+		PreparedStatement stmt2 = conn.prepareStatement( "select 1" );
+		// the statement in use is not shared
+		PreparedStatement stmt3 = conn.prepareStatement( "select 1" );
+		assertSame( conn, stmt2.getConnection( ) );
+		assertEquals( 0, stmt2.getMaxRows( ) );
+		FakeConnection physical = physicalConnections.get( 0 );
+		assertEquals( 2, physical.statements.size( ) );
+		assertEquals( 1, pool.getStatistics( ).getStatementCacheHitCount( ) );
+		assertEquals( 2, pool.getStatistics( ).getStatementCacheMissCount( ) );
+		stmt3.close( );
+		// the statements not closed by user are returned with the connection
+		conn.close( );
+		assertTrue( stmt2.isClosed( ) );
+		// only one statement of the same key is cached
+		assertTrue( physical.statements.get( 0 ).closed );
+		assertFalse( physical.statements.get( 1 ).closed );
+
+		// the least recently used statement is closed
+		conn = pool.getConnection( );
+		conn.prepareStatement( "select 2" ).close( );
+		conn.prepareStatement( "select 3" ).close( );
+		assertTrue( physical.statements.get( 1 ).closed );
+		assertFalse( physical.statements.get( 2 ).closed );
+		assertFalse( physical.statements.get( 3 ).closed );
+		conn.close( );
+		pool.close( );
+	}
+
+	private static class FakeStatement implements InvocationHandler
+	{
+
+		boolean closed;
+		int maxRows;
+
+		public Object invoke( Object proxy, Method method, Object[] args )
+				throws Throwable
+		{
+			String name = method.getName( );
+			if ( "close".equals( name ) )
+			{
+				closed = true;
+				return null;
+			}
+			if ( "isClosed".equals( name ) )
+			{
+				return Boolean.valueOf( closed );
+			}
+			if ( "setMaxRows".equals( name ) )
+			{
+				maxRows = ( (Integer) args[0] ).intValue( );
+				return null;
+			}
+			if ( "getMaxRows".equals( name ) )
+			{
+				return Integer.valueOf( maxRows );
+			}
+			if ( "getFetchSize".equals( name )
+					|| "getQueryTimeout".equals( name ) )
+			{
+				return Integer.valueOf( 0 );
+			}
+			if ( method.getReturnType( ) == void.class )
+			{
+				return null;
+			}
+			return null;
+		}
+	}
+
+	private static class FakeConnection implements InvocationHandler
+	{
+
+		boolean closed;
+		List<FakeStatement> statements = new ArrayList<FakeStatement>( );
+
+		public Object invoke( Object proxy, Method method, Object[] args )
+				throws Throwable
+		{
+			String name = method.getName( );
+			if ( "close".equals( name ) )
+			{
+				closed = true;
+				return null;
+			}
+			if ( "isClosed".equals( name ) )
+			{
+				return Boolean.valueOf( closed );
+			}
+			if ( "isValid".equals( name ) )
+			{
+				return Boolean.valueOf( !closed );
+			}
+			if ( "getAutoCommit".equals( name ) || "isReadOnly".equals( name ) )
+			{
+				return Boolean.valueOf( "getAutoCommit".equals( name ) );
+			}
+			if ( "prepareStatement".equals( name ) )
+			{
+				FakeStatement handler = new FakeStatement( );
+				statements.add( handler );
+				return Proxy.newProxyInstance( PreparedStatement.class
+						.getClassLoader( ), new Class[]{
+					PreparedStatement.class
+				}, handler );
+			}
+			if ( "getTransactionIsolation".equals( name ) )
+			{
+				return Integer.valueOf( Connection.TRANSACTION_READ_COMMITTED );
+			}
+			if ( "hashCode".equals( name ) )
+			{
+				return Integer.valueOf( System.identityHashCode( proxy ) );
+			}
+			if ( "equals".equals( name ) )
+			{
+				return Boolean.valueOf( proxy == args[0] );
+			}
+			if ( "toString".equals( name ) )
+			{
+				return "FakeConnection";
+			}
+			if ( method.getReturnType( ) == void.class )
+			{
+				return null;
+			}
+			throw new SQLException( "unsupported" );
+		}
+	}
+}
@@ -237,6 +237,9 @@ public class Connection implements IConnection
 				//First try to identify the authorization info. 28000 is xOpen standard for login failure
 				if( "28000".equals( e1.getSQLState( )))
 					throw new JDBCException( ResourceConstants.CONN_CANNOT_GET, e1 );
+				//HYT00 is the timeout of the connection pool, don't bypass the pool limit
+				if( "HYT00".equals( e1.getSQLState( )))
+					throw new JDBCException( ResourceConstants.CONN_CANNOT_GET, e1 );
 			}
 			else
 			{
@@ -36,6 +36,17 @@ public class DBConfig
 	private HashMap<Integer, Set<String>> driverPolicy = null;
 	private volatile static DBConfig config = null;
 
+	public static final int DEFAULT_POOL_MAX_SIZE = 10;
+	public static final long DEFAULT_POOL_IDLE_TIMEOUT = 300000;
+	public static final long DEFAULT_POOL_WAIT_TIMEOUT = 30000;
+	public static final int DEFAULT_STATEMENT_CACHE_SIZE = 20;
+	private boolean poolEnabled = false;
+	private int poolMaxSize = DEFAULT_POOL_MAX_SIZE;
+	private long poolIdleTimeout = DEFAULT_POOL_IDLE_TIMEOUT;
+	private long poolWaitTimeout = DEFAULT_POOL_WAIT_TIMEOUT;
+	private String poolValidationQuery = null;
+	private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+
 	public static DBConfig getInstance( )
 	{
 		if( config == null )
@@ -87,6 +98,97 @@ public class DBConfig
 		driverPolicy.get(policy).add(driverName.toUpperCase());
 	}
 	
+	/**
+	 * Set the default connection pool settings.
+	 * 
+	 * @param enabled
+	 *            whether the connection pool is enabled by default
+	 * @param maxSize
+	 *            the max count of connections of each pool
+	 * @param idleTimeout
+	 *            the time in milliseconds an idle connection is kept
+	 * @param waitTimeout
+	 *            the max time in milliseconds to wait for a free connection
+	 * @param validationQuery
+	 *            the query used to validate a connection, may be null
+	 */
+	public void setConnectionPool( boolean enabled, int maxSize,
+			long idleTimeout, long waitTimeout, String validationQuery )
+	{
+		this.poolEnabled = enabled;
+		this.poolMaxSize = maxSize;
+		this.poolIdleTimeout = idleTimeout;
+		this.poolWaitTimeout = waitTimeout;
+		this.poolValidationQuery = validationQuery;
+	}
+
+	/**
+	 * 
+	 * @return whether the connection pool is enabled by default
+	 */
+	public boolean isConnectionPoolEnabled( )
+	{
+		return poolEnabled;
+	}
+
+	/**
+	 * 
+	 * @return the max count of connections of each pool
+	 */
+	public int getConnectionPoolMaxSize( )
+	{
+		return poolMaxSize;
+	}
+
+	/**
+	 * 
+	 * @return the time in milliseconds an idle connection is kept in the pool
+	 */
+	public long getConnectionPoolIdleTimeout( )
+	{
+		return poolIdleTimeout;
+	}
+
+	/**
+	 * 
+	 * @return the max time in milliseconds to wait for a free connection
+	 */
+	public long getConnectionPoolWaitTimeout( )
+	{
+		return poolWaitTimeout;
+	}
+
+	/**
+	 * 
+	 * @return the query used to validate a connection, may be null
+	 */
+	public String getConnectionPoolValidationQuery( )
+	{
+		return poolValidationQuery;
+	}
+
+	/**
+	 * Set the default count of prepared statements cached by each pooled
+	 * connection.
+	 * 
+	 * @param size
+	 *            the cache size, 0 disables the statement cache
+	 */
+	public void setStatementCacheSize( int size )
+	{
+		this.statementCacheSize = size;
+	}
+
+	/**
+	 * 
+	 * @return the count of prepared statements cached by each pooled
+	 *         connection
+	 */
+	public int getStatementCacheSize( )
+	{
+		return statementCacheSize;
+	}
+
 	/**
 	 * 
 	 * @return
@@ -111,6 +213,13 @@ class SaxParser extends DefaultHandler
 	private static final String POLICY = "Policy";
 	private static final String NAME = "name";
 	private static final String DRIVER = "Driver";
+	private static final String CONNECTION_POOL = "ConnectionPool";
+	private static final String ENABLED = "enabled";
+	private static final String MAX_SIZE = "maxSize";
+	private static final String IDLE_TIMEOUT = "idleTimeout";
+	private static final String WAIT_TIMEOUT = "waitTimeout";
+	private static final String VALIDATION_QUERY = "validationQuery";
+	private static final String STATEMENT_CACHE_SIZE = "statementCacheSize";
 	private int currentPolicy = DBConfig.DEFAULT_POLICY;
 	private DBConfig dbConfig;
 	
@@ -150,6 +259,34 @@ class SaxParser extends DefaultHandler
 				currentPolicy = DBConfig.DEFAULT_POLICY;
 			}
 		} 
+		else if ( elementName.equals( CONNECTION_POOL ) )
+		{
+			dbConfig.setConnectionPool( Boolean.valueOf( atts.getValue( ENABLED ) )
+					.booleanValue( ),
+					(int) parseLong( atts.getValue( MAX_SIZE ),
+							DBConfig.DEFAULT_POOL_MAX_SIZE ),
+					parseLong( atts.getValue( IDLE_TIMEOUT ),
+							DBConfig.DEFAULT_POOL_IDLE_TIMEOUT ),
+					parseLong( atts.getValue( WAIT_TIMEOUT ),
+							DBConfig.DEFAULT_POOL_WAIT_TIMEOUT ),
+					atts.getValue( VALIDATION_QUERY ) );
+			dbConfig.setStatementCacheSize( (int) parseLong( atts.getValue( STATEMENT_CACHE_SIZE ),
+					DBConfig.DEFAULT_STATEMENT_CACHE_SIZE ) );
+		}
+	}
+	
+	private long parseLong( String value, long defaultValue )
+	{
+		if ( value == null )
+			return defaultValue;
+		try
+		{
+			return Long.parseLong( value.trim( ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			return defaultValue;
+		}
 	}
 	
 	/**
@@ -20,9 +20,45 @@ import org.eclipse.datatools.connectivity.oda.OdaException;
 
 public interface IConnectionPoolManager
 {
+	/**
+	 * The appContext key to enable or disable the connection pool, the value
+	 * is a Boolean or a String. The default value is defined in config.xml.
+	 */
+	public static final String CONNECTION_POOL_ENABLED = "OdaJDBCDriverConnectionPoolEnabled";
+
+	/**
+	 * The appContext key of the max count of connections in each pool.
+	 */
+	public static final String CONNECTION_POOL_MAX_SIZE = "OdaJDBCDriverConnectionPoolMaxSize";
+
+	/**
+	 * The appContext key of the time in milliseconds an idle connection is
+	 * kept in the pool.
+	 */
+	public static final String CONNECTION_POOL_IDLE_TIMEOUT = "OdaJDBCDriverConnectionPoolIdleTimeout";
+
+	/**
+	 * The appContext key of the max time in milliseconds to wait for a free
+	 * connection.
+	 */
+	public static final String CONNECTION_POOL_WAIT_TIMEOUT = "OdaJDBCDriverConnectionPoolWaitTimeout";
+
+	/**
+	 * The appContext key of the query used to validate a pooled connection
+	 * before it is returned to the user.
+	 */
+	public static final String CONNECTION_POOL_VALIDATION_QUERY = "OdaJDBCDriverConnectionPoolValidationQuery";
+
+	/**
+	 * The appContext key of the count of prepared statements cached by each
+	 * pooled connection, 0 disables the statement cache.
+	 */
+	public static final String CONNECTION_POOL_STATEMENT_CACHE_SIZE = "OdaJDBCDriverConnectionPoolStatementCacheSize";
+
 
 	/**
-	 * Get connection from IConnectionPoolManager.
+	 * Get connection from IConnectionPoolManager. Returns null if the
+	 * connection is not pooled, then the caller connects directly.
 	 * @param driverClass
 	 * @param url
 	 * @param connectionProps
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A prepared statement borrowed from the statement cache. Closing the proxy
+ * resets the statement and returns it to the cache, the proxy can't be used
+ * after that.
+ */
+class CachedStatement implements InvocationHandler
+{
+
+	private static Logger logger = Logger.getLogger( CachedStatement.class
+			.getName( ) );
+
+	private StatementCache cache;
+	private String key;
+	private PreparedStatement statement;
+	private Connection connection;
+
+	/**
+	 * the settings of the statement when it is borrowed, they are restored
+	 * when the statement is returned.
+	 */
+	private int maxRows;
+	private int fetchSize;
+	private int queryTimeout;
+
+	private boolean closed;
+
+	CachedStatement( StatementCache cache, String key,
+			PreparedStatement statement, Connection connection )
+			throws SQLException
+	{
+		this.cache = cache;
+		this.key = key;
+		this.statement = statement;
+		this.connection = connection;
+		this.maxRows = statement.getMaxRows( );
+		this.fetchSize = statement.getFetchSize( );
+		this.queryTimeout = statement.getQueryTimeout( );
+	}
+
+	String getKey( )
+	{
+		return key;
+	}
+
+	PreparedStatement getStatement( )
+	{
+		return statement;
+	}
+
+	PreparedStatement open( )
+	{
+		return (PreparedStatement) Proxy.newProxyInstance( PreparedStatement.class
+				.getClassLoader( ),
+				new Class[]{
+					PreparedStatement.class
+				},
+				this );
+	}
+
+	/**
+	 * close the proxy and return the statement to the cache.
+	 */
+	void close( )
+	{
+		synchronized ( this )
+		{
+			if ( closed )
+			{
+				return;
+			}
+			closed = true;
+		}
+		cache.release( this );
+	}
+
+	/**
+	 * clear the parameters and restore the settings of the statement.
+	 * 
+	 * @return true if the statement can be reused.
+	 */
+	boolean reset( )
+	{
+		StatementCache.closeResultSet( statement );
+		try
+		{
+			statement.clearParameters( );
+			statement.clearWarnings( );
+			if ( statement.getMaxRows( ) != maxRows )
+			{
+				statement.setMaxRows( maxRows );
+			}
+			if ( statement.getFetchSize( ) != fetchSize )
+			{
+				statement.setFetchSize( fetchSize );
+			}
+			if ( statement.getQueryTimeout( ) != queryTimeout )
+			{
+				statement.setQueryTimeout( queryTimeout );
+			}
+			return true;
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Failed to reset cached statement", e ); //$NON-NLS-1$
+			return false;
+		}
+	}
+
+	public Object invoke( Object proxy, Method method, Object[] args )
+			throws Throwable
+	{
+		String name = method.getName( );
+		int argCount = method.getParameterTypes( ).length;
+		if ( "equals".equals( name ) && argCount == 1 ) //$NON-NLS-1$
+		{
+			return Boolean.valueOf( proxy == args[0] );
+		}
+		if ( "hashCode".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+		{
+			return Integer.valueOf( System.identityHashCode( proxy ) );
+		}
+		if ( "toString".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+		{
+			return "Cached[" + statement + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if ( "close".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+		{
+			close( );
+			return null;
+		}
+		boolean isClosed;
+		synchronized ( this )
+		{
+			isClosed = closed;
+		}
+		if ( "isClosed".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+		{
+			// Statement.isClosed is not available before JDBC 4.0, the
+			// cached statement is only closed by the cache after the proxy
+			// is closed.
+			return Boolean.valueOf( isClosed );
+		}
+		if ( isClosed )
+		{
+			throw new SQLException( "Statement is closed" ); //$NON-NLS-1$
+		}
+		if ( "getConnection".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+		{
+			return connection;
+		}
+		try
+		{
+			return method.invoke( statement, args );
+		}
+		catch ( InvocationTargetException e )
+		{
+			throw e.getCause( );
+		}
+	}
+}
@@ -0,0 +1,397 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded pool of the physical connections to one database url and user.
+ * <p>
+ * The user gets a proxy of the physical connection, closing the proxy returns
+ * the physical connection to the pool. The idle connections are validated
+ * before they are returned to the user, and closed once they are idle longer
+ * than the idle timeout.
+ */
+public class ConnectionPool
+{
+
+	private static Logger logger = Logger.getLogger( ConnectionPool.class
+			.getName( ) );
+
+	/**
+	 * the SQL state of the exception thrown when there is no free connection
+	 * in the wait time.
+	 */
+	public static final String TIMEOUT_SQL_STATE = "HYT00"; //$NON-NLS-1$
+
+	private static Method isValidMethod;
+	private static boolean isValidResolved;
+
+	private IConnectionCreator creator;
+
+	private int maxSize;
+	private long idleTimeout;
+	private long waitTimeout;
+	private String validationQuery;
+	private int statementCacheSize;
+
+	/**
+	 * permits of the connections can be borrowed from the pool.
+	 */
+	private Semaphore permits;
+
+	/**
+	 * idle connections, the most recently returned one is the first.
+	 */
+	private LinkedList<PooledConnection> idleConnections = new LinkedList<PooledConnection>( );
+
+	private boolean closed;
+
+	// statistics
+	private int activeCount;
+	private long borrowCount;
+	private long createCount;
+	private long destroyCount;
+	private long timeoutCount;
+	private long totalWaitTime;
+	private long maxWaitTime;
+	private long statementHitCount;
+	private long statementMissCount;
+
+	/**
+	 * creates the physical connections of the pool
+	 */
+	public interface IConnectionCreator
+	{
+
+		Connection createConnection( ) throws SQLException;
+	}
+
+	public ConnectionPool( IConnectionCreator creator, int maxSize,
+			long idleTimeout, long waitTimeout, String validationQuery )
+	{
+		this( creator, maxSize, idleTimeout, waitTimeout, validationQuery, 0 );
+	}
+
+	/**
+	 * @param statementCacheSize
+	 *            the count of prepared statements cached by each connection, 0
+	 *            disables the statement cache.
+	 */
+	public ConnectionPool( IConnectionCreator creator, int maxSize,
+			long idleTimeout, long waitTimeout, String validationQuery,
+			int statementCacheSize )
+	{
+		this.creator = creator;
+		this.maxSize = maxSize > 0 ? maxSize : 1;
+		this.idleTimeout = idleTimeout;
+		this.waitTimeout = waitTimeout;
+		this.validationQuery = validationQuery;
+		this.statementCacheSize = statementCacheSize;
+		this.permits = new Semaphore( this.maxSize, true );
+	}
+
+	/**
+	 * borrow a connection from the pool. It waits at most the wait timeout
+	 * if all the connections are in use.
+	 *
+	 * @return a connection, closing it returns the connection to the pool.
+	 * @throws SQLException
+	 *             if there is no free connection in the wait time or failed
+	 *             to create a new connection.
+	 */
+	public Connection getConnection( ) throws SQLException
+	{
+		long startTime = System.currentTimeMillis( );
+		boolean acquired;
+		try
+		{
+			acquired = permits.tryAcquire( waitTimeout, TimeUnit.MILLISECONDS );
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			acquired = false;
+		}
+		long waitTime = System.currentTimeMillis( ) - startTime;
+		if ( !acquired )
+		{
+			synchronized ( this )
+			{
+				timeoutCount++;
+			}
+			throw new SQLException( "Timeout waiting for a free connection after " //$NON-NLS-1$
+					+ waitTime + " ms", TIMEOUT_SQL_STATE ); //$NON-NLS-1$
+		}
+		try
+		{
+			PooledConnection connection = borrowIdleConnection( );
+			if ( connection == null )
+			{
+				connection = new PooledConnection( this,
+						creator.createConnection( ) );
+				synchronized ( this )
+				{
+					createCount++;
+				}
+			}
+			synchronized ( this )
+			{
+				activeCount++;
+				borrowCount++;
+				totalWaitTime += waitTime;
+				if ( waitTime > maxWaitTime )
+				{
+					maxWaitTime = waitTime;
+				}
+			}
+			return connection.open( );
+		}
+		catch ( SQLException e )
+		{
+			permits.release( );
+			throw e;
+		}
+		catch ( RuntimeException e )
+		{
+			permits.release( );
+			throw e;
+		}
+	}
+
+	int getStatementCacheSize( )
+	{
+		return statementCacheSize;
+	}
+
+	synchronized void statementCacheHit( )
+	{
+		statementHitCount++;
+	}
+
+	synchronized void statementCacheMiss( )
+	{
+		statementMissCount++;
+	}
+
+	/**
+	 * get a valid idle connection, the invalid ones are closed.
+	 */
+	private PooledConnection borrowIdleConnection( )
+	{
+		while ( true )
+		{
+			PooledConnection connection = null;
+			LinkedList<PooledConnection> expired;
+			synchronized ( this )
+			{
+				expired = evictIdleConnections( );
+				if ( !idleConnections.isEmpty( ) )
+				{
+					connection = idleConnections.removeFirst( );
+				}
+			}
+			destroy( expired );
+			if ( connection == null )
+			{
+				return null;
+			}
+			if ( validate( connection.getPhysicalConnection( ) ) )
+			{
+				return connection;
+			}
+			destroy( connection );
+		}
+	}
+
+	/**
+	 * return the connection to the pool, it is called when the user closes
+	 * the connection proxy.
+	 */
+	void release( PooledConnection connection )
+	{
+		boolean reusable = connection.reset( );
+		LinkedList<PooledConnection> expired;
+		synchronized ( this )
+		{
+			activeCount--;
+			if ( reusable && !closed )
+			{
+				idleConnections.addFirst( connection );
+				connection = null;
+			}
+			expired = evictIdleConnections( );
+		}
+		destroy( expired );
+		if ( connection != null )
+		{
+			destroy( connection );
+		}
+		permits.release( );
+	}
+
+	/**
+	 * remove the connections which are idle longer than the idle timeout. It
+	 * must be called in synchronized block, and the removed connections are
+	 * closed by the caller after leaving the block.
+	 * 
+	 * @return the removed connections
+	 */
+	private LinkedList<PooledConnection> evictIdleConnections( )
+	{
+		LinkedList<PooledConnection> expired = new LinkedList<PooledConnection>( );
+		if ( idleTimeout <= 0 )
+		{
+			return expired;
+		}
+		long now = System.currentTimeMillis( );
+		Iterator<PooledConnection> iter = idleConnections.iterator( );
+		while ( iter.hasNext( ) )
+		{
+			PooledConnection connection = iter.next( );
+			if ( now - connection.getLastUsedTime( ) > idleTimeout )
+			{
+				iter.remove( );
+				expired.add( connection );
+			}
+		}
+		return expired;
+	}
+
+	private void destroy( LinkedList<PooledConnection> connections )
+	{
+		for ( PooledConnection connection : connections )
+		{
+			destroy( connection );
+		}
+	}
+
+	private void destroy( PooledConnection connection )
+	{
+		synchronized ( this )
+		{
+			destroyCount++;
+		}
+		try
+		{
+			connection.getPhysicalConnection( ).close( );
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, e.getMessage( ), e );
+		}
+	}
+
+	private boolean validate( Connection connection )
+	{
+		try
+		{
+			if ( connection.isClosed( ) )
+			{
+				return false;
+			}
+			if ( validationQuery != null && validationQuery.length( ) > 0 )
+			{
+				Statement statement = connection.createStatement( );
+				try
+				{
+					statement.execute( validationQuery );
+				}
+				finally
+				{
+					statement.close( );
+				}
+				return true;
+			}
+			Method isValid = getIsValidMethod( );
+			if ( isValid != null )
+			{
+				Object valid = isValid.invoke( connection, new Object[]{
+					Integer.valueOf( 5 )
+				} );
+				return !Boolean.FALSE.equals( valid );
+			}
+			return true;
+		}
+		catch ( Throwable e )
+		{
+			logger.log( Level.FINE, "Invalid pooled connection", e ); //$NON-NLS-1$
+			return false;
+		}
+	}
+
+	/**
+	 * Connection.isValid is not available before JDBC 4.0.
+	 */
+	private static synchronized Method getIsValidMethod( )
+	{
+		if ( !isValidResolved )
+		{
+			try
+			{
+				isValidMethod = Connection.class.getMethod( "isValid", //$NON-NLS-1$
+						new Class[]{
+							int.class
+						} );
+			}
+			catch ( NoSuchMethodException e )
+			{
+				isValidMethod = null;
+			}
+			isValidResolved = true;
+		}
+		return isValidMethod;
+	}
+
+	/**
+	 * close the pool and all the idle connections. The connections in use are
+	 * closed when they are returned.
+	 */
+	public void close( )
+	{
+		LinkedList<PooledConnection> connections;
+		synchronized ( this )
+		{
+			closed = true;
+			connections = idleConnections;
+			idleConnections = new LinkedList<PooledConnection>( );
+		}
+		destroy( connections );
+	}
+
+	public synchronized ConnectionPoolStatistics getStatistics( )
+	{
+		return new ConnectionPoolStatistics( maxSize, activeCount,
+				idleConnections.size( ), borrowCount, createCount,
+				destroyCount, timeoutCount, totalWaitTime, maxWaitTime,
+				statementHitCount, statementMissCount );
+	}
+
+	/**
+	 * test if the connection is a proxy created by a connection pool.
+	 */
+	static boolean isPooledConnection( Connection connection )
+	{
+		return Proxy.isProxyClass( connection.getClass( ) )
+				&& Proxy.getInvocationHandler( connection ) instanceof PooledConnection;
+	}
+}
@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.report.data.oda.jdbc.DBConfig;
+import org.eclipse.birt.report.data.oda.jdbc.IConnectionPoolManager;
+import org.eclipse.birt.report.data.oda.jdbc.JDBCDriverManager;
+import org.eclipse.birt.report.data.oda.jdbc.LogUtil;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * The built-in connection pool manager of the ODA JDBC driver. It keeps one
+ * pool per driver, url and connection properties.
+ * <p>
+ * The pool is disabled by default, it is enabled by the ConnectionPool
+ * element of config.xml or by
+ * {@link IConnectionPoolManager#CONNECTION_POOL_ENABLED} in the application
+ * context. If the pool is disabled, getConnection returns null and the
+ * driver connects through the JDBCDriverManager directly.
+ */
+public class ConnectionPoolManager implements IConnectionPoolManager
+{
+
+	private static Logger logger = Logger
+			.getLogger( ConnectionPoolManager.class.getName( ) );
+
+	private static ConcurrentHashMap<String, ConnectionPool> pools = new ConcurrentHashMap<String, ConnectionPool>( );
+
+	public Connection getConnection( final String driverClass,
+			final String url, final Properties connectionProps,
+			final Collection<String> driverClassPath, Map appContext )
+			throws SQLException, OdaException
+	{
+		DBConfig config = DBConfig.getInstance( );
+		if ( !getBoolean( appContext, CONNECTION_POOL_ENABLED, config
+				.isConnectionPoolEnabled( ) ) )
+		{
+			return null;
+		}
+
+		String key = getPoolKey( driverClass, url, connectionProps,
+				driverClassPath );
+		ConnectionPool pool = pools.get( key );
+		if ( pool == null )
+		{
+			int maxSize = (int) getLong( appContext,
+					CONNECTION_POOL_MAX_SIZE,
+					config.getConnectionPoolMaxSize( ) );
+			long idleTimeout = getLong( appContext,
+					CONNECTION_POOL_IDLE_TIMEOUT,
+					config.getConnectionPoolIdleTimeout( ) );
+			long waitTimeout = getLong( appContext,
+					CONNECTION_POOL_WAIT_TIMEOUT,
+					config.getConnectionPoolWaitTimeout( ) );
+			String validationQuery = config
+					.getConnectionPoolValidationQuery( );
+			if ( appContext != null
+					&& appContext.get( CONNECTION_POOL_VALIDATION_QUERY ) != null )
+			{
+				validationQuery = appContext.get(
+						CONNECTION_POOL_VALIDATION_QUERY ).toString( );
+			}
+			int statementCacheSize = (int) getLong( appContext,
+					CONNECTION_POOL_STATEMENT_CACHE_SIZE,
+					config.getStatementCacheSize( ) );
+			final Properties props = connectionProps == null
+					? new Properties( )
+					: (Properties) connectionProps.clone( );
+			ConnectionPool newPool = new ConnectionPool(
+					new ConnectionPool.IConnectionCreator( ) {
+
+						public Connection createConnection( )
+								throws SQLException
+						{
+							try
+							{
+								return JDBCDriverManager.getInstance( )
+										.getConnection( driverClass,
+												url,
+												props,
+												driverClassPath );
+							}
+							catch ( OdaException e )
+							{
+								SQLException ex = new SQLException( e
+										.getLocalizedMessage( ) );
+								ex.initCause( e );
+								throw ex;
+							}
+						}
+					},
+					maxSize,
+					idleTimeout,
+					waitTimeout,
+					validationQuery,
+					statementCacheSize );
+			pool = pools.putIfAbsent( key, newPool );
+			if ( pool == null )
+			{
+				pool = newPool;
+				logger.log( Level.FINE, "Connection pool created for " //$NON-NLS-1$
+						+ LogUtil.encryptURL( url ) );
+			}
+		}
+		return pool.getConnection( );
+	}
+
+	/**
+	 * the pool key contains all the properties used to create the connection,
+	 * so the connections of different users are never shared.
+	 */
+	private static String getPoolKey( String driverClass, String url,
+			Properties props, Collection<String> driverClassPath )
+	{
+		StringBuffer buffer = new StringBuffer( );
+		buffer.append( driverClass ).append( '\n' );
+		buffer.append( url ).append( '\n' );
+		if ( driverClassPath != null )
+		{
+			buffer.append( driverClassPath ).append( '\n' );
+		}
+		if ( props != null )
+		{
+			List<String> names = new ArrayList<String>( );
+			for ( Iterator iter = props.keySet( ).iterator( ); iter.hasNext( ); )
+			{
+				names.add( String.valueOf( iter.next( ) ) );
+			}
+			Collections.sort( names );
+			for ( String name : names )
+			{
+				buffer.append( name ).append( '=' ).append(
+						props.getProperty( name ) ).append( '\n' );
+			}
+		}
+		return buffer.toString( );
+	}
+
+	private static boolean getBoolean( Map appContext, String key,
+			boolean defaultValue )
+	{
+		Object value = appContext == null ? null : appContext.get( key );
+		if ( value instanceof Boolean )
+		{
+			return ( (Boolean) value ).booleanValue( );
+		}
+		if ( value instanceof String )
+		{
+			return Boolean.valueOf( (String) value ).booleanValue( );
+		}
+		return defaultValue;
+	}
+
+	private static long getLong( Map appContext, String key, long defaultValue )
+	{
+		Object value = appContext == null ? null : appContext.get( key );
+		if ( value instanceof Number )
+		{
+			return ( (Number) value ).longValue( );
+		}
+		if ( value instanceof String )
+		{
+			try
+			{
+				return Long.parseLong( ( (String) value ).trim( ) );
+			}
+			catch ( NumberFormatException e )
+			{
+				return defaultValue;
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Returns the statistics of all the pools, the key is the connection url.
+	 * The statistics of the pools with same url are merged.
+	 */
+	public static Map<String, ConnectionPoolStatistics> getStatistics( )
+	{
+		Map<String, ConnectionPoolStatistics> result = new HashMap<String, ConnectionPoolStatistics>( );
+		for ( Map.Entry<String, ConnectionPool> entry : pools.entrySet( ) )
+		{
+			String key = entry.getKey( );
+			int index = key.indexOf( '\n' );
+			String url = key.substring( index + 1, key.indexOf( '\n',
+					index + 1 ) );
+			String encryptedUrl = LogUtil.encryptURL( url );
+			ConnectionPoolStatistics stat = entry.getValue( ).getStatistics( );
+			ConnectionPoolStatistics old = result.get( encryptedUrl );
+			if ( old != null )
+			{
+				stat = new ConnectionPoolStatistics( old.getMaxSize( )
+						+ stat.getMaxSize( ), old.getActiveCount( )
+						+ stat.getActiveCount( ), old.getIdleCount( )
+						+ stat.getIdleCount( ), old.getBorrowCount( )
+						+ stat.getBorrowCount( ), old.getCreateCount( )
+						+ stat.getCreateCount( ), old.getDestroyCount( )
+						+ stat.getDestroyCount( ), old.getTimeoutCount( )
+						+ stat.getTimeoutCount( ), old.getTotalWaitTime( )
+						+ stat.getTotalWaitTime( ), Math.max(
+						old.getMaxWaitTime( ), stat.getMaxWaitTime( ) ),
+						old.getStatementCacheHitCount( )
+								+ stat.getStatementCacheHitCount( ),
+						old.getStatementCacheMissCount( )
+								+ stat.getStatementCacheMissCount( ) );
+			}
+			result.put( encryptedUrl, stat );
+		}
+		return result;
+	}
+
+	/**
+	 * Closes all the pools and their idle connections.
+	 */
+	public static void closeAll( )
+	{
+		Iterator<ConnectionPool> iter = pools.values( ).iterator( );
+		while ( iter.hasNext( ) )
+		{
+			ConnectionPool pool = iter.next( );
+			iter.remove( );
+			pool.close( );
+		}
+	}
+}
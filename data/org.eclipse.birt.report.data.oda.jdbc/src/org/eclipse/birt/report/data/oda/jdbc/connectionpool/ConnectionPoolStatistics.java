@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+/**
+ * A snapshot of the usage of a connection pool.
+ */
+public class ConnectionPoolStatistics
+{
+
+	private int maxSize;
+	private int activeCount;
+	private int idleCount;
+	private long borrowCount;
+	private long createCount;
+	private long destroyCount;
+	private long timeoutCount;
+	private long totalWaitTime;
+	private long maxWaitTime;
+	private long statementHitCount;
+	private long statementMissCount;
+
+	ConnectionPoolStatistics( int maxSize, int activeCount, int idleCount,
+			long borrowCount, long createCount, long destroyCount,
+			long timeoutCount, long totalWaitTime, long maxWaitTime,
+			long statementHitCount, long statementMissCount )
+	{
+		this.maxSize = maxSize;
+		this.activeCount = activeCount;
+		this.idleCount = idleCount;
+		this.borrowCount = borrowCount;
+		this.createCount = createCount;
+		this.destroyCount = destroyCount;
+		this.timeoutCount = timeoutCount;
+		this.totalWaitTime = totalWaitTime;
+		this.maxWaitTime = maxWaitTime;
+		this.statementHitCount = statementHitCount;
+		this.statementMissCount = statementMissCount;
+	}
+
+	/**
+	 * @return the max count of connections of the pool
+	 */
+	public int getMaxSize( )
+	{
+		return maxSize;
+	}
+
+	/**
+	 * @return the count of connections in use
+	 */
+	public int getActiveCount( )
+	{
+		return activeCount;
+	}
+
+	/**
+	 * @return the count of idle connections in the pool
+	 */
+	public int getIdleCount( )
+	{
+		return idleCount;
+	}
+
+	/**
+	 * @return the count of connections borrowed from the pool
+	 */
+	public long getBorrowCount( )
+	{
+		return borrowCount;
+	}
+
+	/**
+	 * @return the count of physical connections created by the pool
+	 */
+	public long getCreateCount( )
+	{
+		return createCount;
+	}
+
+	/**
+	 * @return the count of physical connections closed by the pool
+	 */
+	public long getDestroyCount( )
+	{
+		return destroyCount;
+	}
+
+	/**
+	 * @return the count of requests failed to get a free connection in time
+	 */
+	public long getTimeoutCount( )
+	{
+		return timeoutCount;
+	}
+
+	/**
+	 * @return the total time in milliseconds spent in waiting for a free
+	 *         connection
+	 */
+	public long getTotalWaitTime( )
+	{
+		return totalWaitTime;
+	}
+
+	/**
+	 * @return the max time in milliseconds spent in waiting for a free
+	 *         connection
+	 */
+	public long getMaxWaitTime( )
+	{
+		return maxWaitTime;
+	}
+
+	/**
+	 * @return the average time in milliseconds spent in waiting for a free
+	 *         connection
+	 */
+	public double getAverageWaitTime( )
+	{
+		if ( borrowCount == 0 )
+		{
+			return 0;
+		}
+		return (double) totalWaitTime / borrowCount;
+	}
+
+	/**
+	 * @return the count of prepared statements found in the statement cache
+	 */
+	public long getStatementCacheHitCount( )
+	{
+		return statementHitCount;
+	}
+
+	/**
+	 * @return the count of prepared statements not found in the statement
+	 *         cache
+	 */
+	public long getStatementCacheMissCount( )
+	{
+		return statementMissCount;
+	}
+
+	public String toString( )
+	{
+		StringBuffer buffer = new StringBuffer( );
+		buffer.append( "active=" ).append( activeCount ); //$NON-NLS-1$
+		buffer.append( ", idle=" ).append( idleCount ); //$NON-NLS-1$
+		buffer.append( ", max=" ).append( maxSize ); //$NON-NLS-1$
+		buffer.append( ", borrowed=" ).append( borrowCount ); //$NON-NLS-1$
+		buffer.append( ", created=" ).append( createCount ); //$NON-NLS-1$
+		buffer.append( ", destroyed=" ).append( destroyCount ); //$NON-NLS-1$
+		buffer.append( ", timeouts=" ).append( timeoutCount ); //$NON-NLS-1$
+		buffer.append( ", maxWait=" ).append( maxWaitTime ).append( "ms" ); //$NON-NLS-1$ //$NON-NLS-2$
+		buffer.append( ", statementHits=" ).append( statementHitCount ); //$NON-NLS-1$
+		buffer.append( ", statementMisses=" ).append( statementMissCount ); //$NON-NLS-1$
+		return buffer.toString( );
+	}
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A physical connection in the pool. It creates the proxy which is returned
+ * to the user each time the connection is borrowed. Closing the proxy returns
+ * the physical connection to the pool, the proxy can't be used after that.
+ */
+class PooledConnection implements InvocationHandler
+{
+
+	private static Logger logger = Logger.getLogger( PooledConnection.class
+			.getName( ) );
+
+	private ConnectionPool pool;
+	private Connection connection;
+
+	/**
+	 * the state of the physical connection when it is created, it is
+	 * restored when the connection is returned to the pool.
+	 */
+	private boolean autoCommit;
+	private int isolation;
+	private boolean readOnly;
+
+	private long lastUsedTime;
+
+	/**
+	 * the prepared statements of the connection, null if the statement cache
+	 * is disabled.
+	 */
+	private StatementCache statementCache;
+
+	/**
+	 * the proxy used by the user currently, null if the connection is idle.
+	 */
+	private Connection proxy;
+
+	PooledConnection( ConnectionPool pool, Connection connection )
+			throws SQLException
+	{
+		this.pool = pool;
+		this.connection = connection;
+		this.autoCommit = connection.getAutoCommit( );
+		this.isolation = connection.getTransactionIsolation( );
+		this.readOnly = connection.isReadOnly( );
+		this.lastUsedTime = System.currentTimeMillis( );
+		if ( pool.getStatementCacheSize( ) > 0 )
+		{
+			this.statementCache = new StatementCache( pool,
+					connection,
+					pool.getStatementCacheSize( ) );
+		}
+	}
+
+	Connection getPhysicalConnection( )
+	{
+		return connection;
+	}
+
+	long getLastUsedTime( )
+	{
+		return lastUsedTime;
+	}
+
+	synchronized Connection open( )
+	{
+		proxy = (Connection) Proxy.newProxyInstance( Connection.class
+				.getClassLoader( ), new Class[]{
+			Connection.class
+		}, this );
+		return proxy;
+	}
+
+	/**
+	 * restore the state of the physical connection.
+	 *
+	 * @return true if the connection can be reused.
+	 */
+	boolean reset( )
+	{
+		lastUsedTime = System.currentTimeMillis( );
+		if ( statementCache != null )
+		{
+			statementCache.releaseAll( );
+		}
+		try
+		{
+			if ( connection.isClosed( ) )
+			{
+				return false;
+			}
+			if ( !connection.getAutoCommit( ) )
+			{
+				connection.rollback( );
+			}
+			if ( connection.getAutoCommit( ) != autoCommit )
+			{
+				connection.setAutoCommit( autoCommit );
+			}
+			if ( connection.getTransactionIsolation( ) != isolation )
+			{
+				connection.setTransactionIsolation( isolation );
+			}
+			if ( connection.isReadOnly( ) != readOnly )
+			{
+				connection.setReadOnly( readOnly );
+			}
+			connection.clearWarnings( );
+			return true;
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Failed to reset pooled connection", e ); //$NON-NLS-1$
+			return false;
+		}
+	}
+
+	public Object invoke( Object proxy, Method method, Object[] args )
+			throws Throwable
+	{
+		String name = method.getName( );
+		int argCount = method.getParameterTypes( ).length;
+		if ( "equals".equals( name ) && argCount == 1 ) //$NON-NLS-1$
+		{
+			return Boolean.valueOf( proxy == args[0] );
+		}
+		if ( "hashCode".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+		{
+			return Integer.valueOf( System.identityHashCode( proxy ) );
+		}
+		if ( "toString".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+		{
+			return "Pooled[" + connection + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		boolean closed;
+		synchronized ( this )
+		{
+			closed = this.proxy != proxy;
+			if ( !closed && "close".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+			{
+				this.proxy = null;
+				pool.release( this );
+				return null;
+			}
+		}
+		if ( "close".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+		{
+			return null;
+		}
+		if ( "isClosed".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+		{
+			return closed ? Boolean.TRUE : Boolean.valueOf( connection
+					.isClosed( ) );
+		}
+		if ( closed )
+		{
+			throw new SQLException( "Connection is closed" ); //$NON-NLS-1$
+		}
+		if ( statementCache != null && "prepareStatement".equals( name ) //$NON-NLS-1$
+				&& isCacheable( method.getParameterTypes( ) ) )
+		{
+			return statementCache.prepareStatement( (Connection) proxy, args );
+		}
+		return invokePhysical( method, args );
+	}
+
+	/**
+	 * only prepareStatement(String) and prepareStatement(String, int, int) are
+	 * cached.
+	 */
+	private static boolean isCacheable( Class[] types )
+	{
+		if ( types.length == 1 )
+		{
+			return types[0] == String.class;
+		}
+		return types.length == 3
+				&& types[0] == String.class
+				&& types[1] == int.class
+				&& types[2] == int.class;
+	}
+
+	private Object invokePhysical( Method method, Object[] args )
+			throws Throwable
+	{
+		try
+		{
+			return method.invoke( connection, args );
+		}
+		catch ( InvocationTargetException e )
+		{
+			throw e.getCause( );
+		}
+	}
+}
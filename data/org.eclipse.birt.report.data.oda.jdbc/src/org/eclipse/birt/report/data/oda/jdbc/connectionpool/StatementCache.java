@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The LRU cache of the prepared statements of a pooled connection. The key of
+ * a statement is the SQL text and the result set type and concurrency.
+ * <p>
+ * A statement is removed from the cache while it is used, closing it resets
+ * the statement and puts it back to the cache, so the database can reuse the
+ * parsed statement and its execution plan.
+ */
+class StatementCache
+{
+
+	private static Logger logger = Logger.getLogger( StatementCache.class
+			.getName( ) );
+
+	private ConnectionPool pool;
+	private Connection connection;
+	private int maxSize;
+
+	/**
+	 * the idle statements, the least recently used is the first.
+	 */
+	private LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>( 16,
+			0.75f,
+			true );
+
+	/**
+	 * the statements in use.
+	 */
+	private List<CachedStatement> openStatements = new ArrayList<CachedStatement>( );
+
+	StatementCache( ConnectionPool pool, Connection connection, int maxSize )
+	{
+		this.pool = pool;
+		this.connection = connection;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * get the statement from the cache or prepare a new one.
+	 * 
+	 * @param proxy
+	 *            the connection returned to the user
+	 * @param args
+	 *            the arguments of the prepareStatement call, the SQL text and
+	 *            the optional result set type and concurrency.
+	 */
+	synchronized PreparedStatement prepareStatement( Connection proxy,
+			Object[] args ) throws SQLException
+	{
+		String sql = (String) args[0];
+		String key = args.length == 1 ? sql : args[1] + ":" + args[2] + ":" //$NON-NLS-1$ //$NON-NLS-2$
+				+ sql;
+		PreparedStatement statement = statements.remove( key );
+		if ( statement != null )
+		{
+			pool.statementCacheHit( );
+		}
+		else
+		{
+			pool.statementCacheMiss( );
+			if ( args.length == 1 )
+			{
+				statement = connection.prepareStatement( sql );
+			}
+			else
+			{
+				statement = connection.prepareStatement( sql,
+						( (Integer) args[1] ).intValue( ),
+						( (Integer) args[2] ).intValue( ) );
+			}
+		}
+		CachedStatement cachedStatement = new CachedStatement( this,
+				key,
+				statement,
+				proxy );
+		openStatements.add( cachedStatement );
+		return cachedStatement.open( );
+	}
+
+	/**
+	 * return the statement to the cache, it is called when the user closes
+	 * the statement.
+	 */
+	void release( CachedStatement cachedStatement )
+	{
+		PreparedStatement statement = cachedStatement.getStatement( );
+		String key = cachedStatement.getKey( );
+		boolean reusable = cachedStatement.reset( );
+		synchronized ( this )
+		{
+			openStatements.remove( cachedStatement );
+			if ( reusable && !statements.containsKey( key ) )
+			{
+				statements.put( key, statement );
+				statement = null;
+				if ( statements.size( ) > maxSize )
+				{
+					Iterator<Map.Entry<String, PreparedStatement>> iter = statements.entrySet( )
+							.iterator( );
+					statement = iter.next( ).getValue( );
+					iter.remove( );
+				}
+			}
+		}
+		// the statement is closed out of the lock of the cache
+		if ( statement != null )
+		{
+			close( statement );
+		}
+	}
+
+	/**
+	 * return all the statements which are not closed by the user, it is
+	 * called when the connection is returned to the pool.
+	 */
+	void releaseAll( )
+	{
+		CachedStatement[] statements;
+		synchronized ( this )
+		{
+			statements = openStatements.toArray( new CachedStatement[openStatements.size( )] );
+		}
+		for ( int i = 0; i < statements.length; i++ )
+		{
+			statements[i].close( );
+		}
+	}
+
+	private void close( PreparedStatement statement )
+	{
+		try
+		{
+			statement.close( );
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, e.getMessage( ), e );
+		}
+	}
+
+	/**
+	 * close the result set which is not closed by the user.
+	 */
+	static void closeResultSet( PreparedStatement statement )
+	{
+		try
+		{
+			ResultSet rs = statement.getResultSet( );
+			if ( rs != null )
+			{
+				rs.close( );
+			}
+		}
+		catch ( SQLException e )
+		{
+			// some drivers throw exception if the result set is closed
+			logger.log( Level.FINEST, e.getMessage( ), e );
+		}
+	}
+}
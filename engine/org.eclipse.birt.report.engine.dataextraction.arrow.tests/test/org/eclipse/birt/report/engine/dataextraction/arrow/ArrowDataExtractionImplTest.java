@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.arrow;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.report.engine.api.IDataIterator;
+import org.eclipse.birt.report.engine.api.IExtractionResults;
+import org.eclipse.birt.report.engine.api.IResultMetaData;
+import org.eclipse.birt.report.engine.api.script.IReportContext;
+import org.eclipse.birt.report.engine.dataextraction.ArrowDataExtractionOption;
+
+/**
+ * Test the conversion of the column types and values, and the stream written
+ * by the extraction.
+ */
+public class ArrowDataExtractionImplTest extends TestCase
+{
+
+	private static final byte[] END_OF_STREAM = new byte[]{
+			-1, -1, -1, -1, 0, 0, 0, 0
+	};
+
+	private ByteArrayOutputStream out;
+	private ArrowDataExtractionOption option;
+
+	public void setUp( )
+	{
+		out = new ByteArrayOutputStream( );
+		option = new ArrowDataExtractionOption( );
+		option.setOutputStream( out );
+	}
+
+	public void testArrowType( ) throws Exception
+	{
+		ArrowDataExtractionImpl impl = createExtraction( );
+		assertEquals( ArrowStreamWriter.TYPE_BOOLEAN,
+				impl.getArrowType( DataType.BOOLEAN_TYPE ) );
+		assertEquals( ArrowStreamWriter.TYPE_INT,
+				impl.getArrowType( DataType.INTEGER_TYPE ) );
+		assertEquals( ArrowStreamWriter.TYPE_DOUBLE,
+				impl.getArrowType( DataType.DOUBLE_TYPE ) );
+		assertEquals( ArrowStreamWriter.TYPE_STRING,
+				impl.getArrowType( DataType.DECIMAL_TYPE ) );
+		assertEquals( ArrowStreamWriter.TYPE_TIMESTAMP,
+				impl.getArrowType( DataType.DATE_TYPE ) );
+		assertEquals( ArrowStreamWriter.TYPE_DATE,
+				impl.getArrowType( DataType.SQL_DATE_TYPE ) );
+		assertEquals( ArrowStreamWriter.TYPE_TIME,
+				impl.getArrowType( DataType.SQL_TIME_TYPE ) );
+		assertEquals( ArrowStreamWriter.TYPE_BINARY,
+				impl.getArrowType( DataType.BLOB_TYPE ) );
+		assertEquals( ArrowStreamWriter.TYPE_BINARY,
+				impl.getArrowType( DataType.BINARY_TYPE ) );
+		assertEquals( ArrowStreamWriter.TYPE_DICTIONARY,
+				impl.getArrowType( DataType.STRING_TYPE ) );
+		assertEquals( ArrowStreamWriter.TYPE_DICTIONARY,
+				impl.getArrowType( DataType.JAVA_OBJECT_TYPE ) );
+
+		option.setDictionaryEncode( false );
+		impl = createExtraction( );
+		assertEquals( ArrowStreamWriter.TYPE_STRING,
+				impl.getArrowType( DataType.STRING_TYPE ) );
+	}
+
+	public void testArrowValue( ) throws Exception
+	{
+		ArrowDataExtractionImpl impl = createExtraction( );
+		assertEquals( Boolean.TRUE,
+				getArrowValue( impl, "true", DataType.BOOLEAN_TYPE ) ); //$NON-NLS-1$
+		assertEquals( Integer.valueOf( 3 ),
+				getArrowValue( impl, Double.valueOf( 3 ), DataType.INTEGER_TYPE ) );
+		assertEquals( Double.valueOf( 2.5 ),
+				getArrowValue( impl, "2.5", DataType.DOUBLE_TYPE ) ); //$NON-NLS-1$
+		assertEquals( "1.50", getArrowValue( impl, //$NON-NLS-1$
+				new BigDecimal( "1.50" ), //$NON-NLS-1$
+				DataType.DECIMAL_TYPE ) );
+		assertEquals( Long.valueOf( -1000 ), getArrowValue( impl,
+				new Date( -1000 ),
+				DataType.DATE_TYPE ) );
+		assertEquals( Integer.valueOf( -1 ), getArrowValue( impl,
+				java.sql.Date.valueOf( "1969-12-31" ), //$NON-NLS-1$
+				DataType.SQL_DATE_TYPE ) );
+		assertEquals( Integer.valueOf( 3723000 ), getArrowValue( impl,
+				Time.valueOf( "01:02:03" ), //$NON-NLS-1$
+				DataType.SQL_TIME_TYPE ) );
+		byte[] bytes = new byte[]{1, 2};
+		assertSame( bytes, getArrowValue( impl, bytes, DataType.BINARY_TYPE ) );
+		assertNull( getArrowValue( impl, null, DataType.INTEGER_TYPE ) );
+	}
+
+	public void testDays( ) throws Exception
+	{
+		ArrowDataExtractionImpl impl = createExtraction( );
+		assertEquals( 0, impl.getDays( java.sql.Date.valueOf( "1970-01-01" ) ) ); //$NON-NLS-1$
+		assertEquals( 14999, impl.getDays( java.sql.Date.valueOf( "2011-01-25" ) ) ); //$NON-NLS-1$
+		// the days before the epoch are rounded down
+		assertEquals( -1, impl.getDays( java.sql.Date.valueOf( "1969-12-31" ) ) ); //$NON-NLS-1$
+		assertEquals( -25567, impl.getDays( java.sql.Date.valueOf( "1900-01-01" ) ) ); //$NON-NLS-1$
+		Calendar calendar = Calendar.getInstance( );
+		calendar.clear( );
+		calendar.set( 1969, Calendar.DECEMBER, 31, 23, 59, 59 );
+		assertEquals( -1, impl.getDays( calendar.getTime( ) ) );
+	}
+
+	public void testTimeOfDay( ) throws Exception
+	{
+		ArrowDataExtractionImpl impl = createExtraction( );
+		assertEquals( 0, impl.getTimeOfDay( Time.valueOf( "00:00:00" ) ) ); //$NON-NLS-1$
+		assertEquals( 86399000, impl.getTimeOfDay( Time.valueOf( "23:59:59" ) ) ); //$NON-NLS-1$
+		Calendar calendar = Calendar.getInstance( );
+		calendar.clear( );
+		calendar.set( 1960, Calendar.MARCH, 1, 12, 30, 15 );
+		calendar.set( Calendar.MILLISECOND, 250 );
+		assertEquals( 45015250, impl.getTimeOfDay( calendar.getTime( ) ) );
+	}
+
+	public void testNoResultIterator( ) throws Exception
+	{
+		ArrowDataExtractionImpl impl = createExtraction( );
+		impl.output( createResults( new String[]{"id"}, //$NON-NLS-1$
+				new int[]{DataType.INTEGER_TYPE},
+				false ) );
+		assertValidStream( out.toByteArray( ) );
+	}
+
+	public void testNoSelectedColumn( ) throws Exception
+	{
+		option.setSelectedColumns( new String[]{"missing"} ); //$NON-NLS-1$
+		ArrowDataExtractionImpl impl = createExtraction( );
+		impl.output( createResults( new String[]{"id"}, //$NON-NLS-1$
+				new int[]{DataType.INTEGER_TYPE},
+				true ) );
+		assertValidStream( out.toByteArray( ) );
+	}
+
+	/**
+	 * Checks the stream has a schema message and the end of the stream.
+	 */
+	private void assertValidStream( byte[] stream )
+	{
+		assertTrue( stream.length > END_OF_STREAM.length );
+		for ( int i = 0; i < 4; i++ )
+		{
+			assertEquals( -1, stream[i] );
+		}
+		for ( int i = 0; i < END_OF_STREAM.length; i++ )
+		{
+			assertEquals( END_OF_STREAM[i], stream[stream.length
+					- END_OF_STREAM.length + i] );
+		}
+	}
+
+	private Object getArrowValue( ArrowDataExtractionImpl impl,
+			final Object value, int type ) throws Exception
+	{
+		IDataIterator iterator = (IDataIterator) createProxy( IDataIterator.class,
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						return value;
+					}
+				} );
+		return impl.getArrowValue( iterator, new String[]{"value"}, 0, type ); //$NON-NLS-1$
+	}
+
+	private ArrowDataExtractionImpl createExtraction( ) throws Exception
+	{
+		IReportContext context = (IReportContext) createProxy( IReportContext.class,
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						if ( "getLocale".equals( method.getName( ) ) ) //$NON-NLS-1$
+						{
+							return Locale.US;
+						}
+						return null;
+					}
+				} );
+		ArrowDataExtractionImpl impl = new ArrowDataExtractionImpl( );
+		impl.initialize( context, option );
+		return impl;
+	}
+
+	/**
+	 * Creates the results with a row whose values are the column indexes.
+	 */
+	private IExtractionResults createResults( final String[] names,
+			final int[] types, final boolean hasIterator )
+	{
+		final IResultMetaData metaData = (IResultMetaData) createProxy( IResultMetaData.class,
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						String name = method.getName( );
+						if ( "getColumnCount".equals( name ) ) //$NON-NLS-1$
+						{
+							return Integer.valueOf( names.length );
+						}
+						int index = ( (Integer) args[0] ).intValue( );
+						if ( "getColumnName".equals( name ) ) //$NON-NLS-1$
+						{
+							return names[index];
+						}
+						if ( "getColumnType".equals( name ) ) //$NON-NLS-1$
+						{
+							return Integer.valueOf( types[index] );
+						}
+						return null;
+					}
+				} );
+		final IDataIterator iterator = (IDataIterator) createProxy( IDataIterator.class,
+				new InvocationHandler( ) {
+
+					private int rowCount;
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						String name = method.getName( );
+						if ( "next".equals( name ) ) //$NON-NLS-1$
+						{
+							return Boolean.valueOf( rowCount++ == 0 );
+						}
+						if ( "getValue".equals( name ) ) //$NON-NLS-1$
+						{
+							for ( int i = 0; i < names.length; i++ )
+							{
+								if ( names[i].equals( args[0] ) )
+								{
+									return Integer.valueOf( i );
+								}
+							}
+						}
+						return null;
+					}
+				} );
+		return (IExtractionResults) createProxy( IExtractionResults.class,
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						String name = method.getName( );
+						if ( "getResultMetaData".equals( name ) ) //$NON-NLS-1$
+						{
+							return metaData;
+						}
+						if ( "nextResultIterator".equals( name ) && hasIterator ) //$NON-NLS-1$
+						{
+							return iterator;
+						}
+						return null;
+					}
+				} );
+	}
+
+	private static Object createProxy( Class type, InvocationHandler handler )
+	{
+		return Proxy.newProxyInstance( type.getClassLoader( ),
+				new Class[]{type},
+				handler );
+	}
+}
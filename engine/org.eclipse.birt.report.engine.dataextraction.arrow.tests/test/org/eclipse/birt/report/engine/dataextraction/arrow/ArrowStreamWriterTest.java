@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.arrow;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the Arrow IPC stream by reading the flat buffers of its messages.
+ */
+public class ArrowStreamWriterTest extends TestCase
+{
+
+	private static final int HEADER_SCHEMA = 1;
+	private static final int HEADER_DICTIONARY_BATCH = 2;
+	private static final int HEADER_RECORD_BATCH = 3;
+
+	private static final String[] NAMES = new String[]{
+			"bool", "int", "double", "string", "dictionary", "timestamp", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+			"date", "time", "binary" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	};
+
+	private static final int[] TYPES = new int[]{
+			ArrowStreamWriter.TYPE_BOOLEAN,
+			ArrowStreamWriter.TYPE_INT,
+			ArrowStreamWriter.TYPE_DOUBLE,
+			ArrowStreamWriter.TYPE_STRING,
+			ArrowStreamWriter.TYPE_DICTIONARY,
+			ArrowStreamWriter.TYPE_TIMESTAMP,
+			ArrowStreamWriter.TYPE_DATE,
+			ArrowStreamWriter.TYPE_TIME,
+			ArrowStreamWriter.TYPE_BINARY
+	};
+
+	/**
+	 * the Arrow type ids of the columns
+	 */
+	private static final int[] ARROW_TYPES = new int[]{6, 2, 3, 5, 5, 10, 8, 9, 4};
+
+	private static final Object[][] ROWS = new Object[][]{
+			{
+					Boolean.TRUE,
+					Integer.valueOf( -5 ),
+					Double.valueOf( 1.5 ),
+					"abc", //$NON-NLS-1$
+					"red", //$NON-NLS-1$
+					Long.valueOf( 1000000000000L ),
+					Integer.valueOf( 15000 ),
+					Integer.valueOf( 3600000 ),
+					new byte[]{1, 2, 3}
+			}, {
+					null, null, null, null, null, null, null, null, null
+			}, {
+					Boolean.FALSE,
+					Integer.valueOf( Integer.MAX_VALUE ),
+					Double.valueOf( -0.25 ),
+					"\u4e2d\u6587", //$NON-NLS-1$
+					"green", //$NON-NLS-1$
+					Long.valueOf( -1 ),
+					Integer.valueOf( -1 ),
+					Integer.valueOf( 0 ),
+					new byte[0]
+			}, {
+					Boolean.TRUE,
+					Integer.valueOf( 0 ),
+					Double.valueOf( 0 ),
+					"", //$NON-NLS-1$
+					"red", //$NON-NLS-1$
+					Long.valueOf( 0 ),
+					Integer.valueOf( 0 ),
+					Integer.valueOf( 86399999 ),
+					new byte[]{-1}
+			}, {
+					Boolean.FALSE,
+					Integer.valueOf( 7 ),
+					Double.valueOf( 7 ),
+					"x", //$NON-NLS-1$
+					"blue", //$NON-NLS-1$
+					Long.valueOf( 7 ),
+					Integer.valueOf( 7 ),
+					Integer.valueOf( 7 ),
+					new byte[]{7}
+			}
+	};
+
+	public void testWriteStream( ) throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		ArrowStreamWriter writer = new ArrowStreamWriter( out, NAMES, TYPES );
+		writer.writeSchema( );
+		// the first 3 rows are in the first batch, the others are in the
+		// second batch
+		for ( int i = 0; i < ROWS.length; i++ )
+		{
+			writer.addRow( ROWS[i] );
+			if ( i == 2 )
+			{
+				writer.writeBatch( );
+			}
+		}
+		writer.close( );
+
+		List<Message> messages = readMessages( out.toByteArray( ) );
+		assertEquals( 5, messages.size( ) );
+
+		Message schema = messages.get( 0 );
+		assertEquals( HEADER_SCHEMA, schema.headerType );
+		int fields = schema.getVector( schema.header, 1 );
+		assertEquals( NAMES.length, schema.getInt( fields ) );
+		for ( int i = 0; i < NAMES.length; i++ )
+		{
+			int field = schema.getOffset( fields + 4 + 4 * i );
+			assertEquals( NAMES[i], schema.getString( field, 0 ) );
+			assertEquals( ARROW_TYPES[i], schema.bytes[schema.getField( field, 2 )] );
+			int dictionary = schema.getTable( field, 4 );
+			assertEquals( TYPES[i] == ArrowStreamWriter.TYPE_DICTIONARY,
+					dictionary != -1 );
+			if ( dictionary != -1 )
+			{
+				assertEquals( i, schema.getLong( schema.getField( dictionary, 0 ) ) );
+			}
+		}
+
+		// the dictionary of the first batch
+		Message dictionary = messages.get( 1 );
+		assertEquals( HEADER_DICTIONARY_BATCH, dictionary.headerType );
+		assertEquals( 4, dictionary.getLong( dictionary.getField( dictionary.header, 0 ) ) );
+		assertEquals( 0, dictionary.bytes[dictionary.getField( dictionary.header, 2 )] );
+		int data = dictionary.getTable( dictionary.header, 1 );
+		assertStrings( dictionary, data, 0, new String[]{"red", "green"} ); //$NON-NLS-1$ //$NON-NLS-2$
+
+		Message batch = messages.get( 2 );
+		assertEquals( HEADER_RECORD_BATCH, batch.headerType );
+		assertEquals( 3, batch.getLong( batch.getField( batch.header, 0 ) ) );
+		assertEquals( 1, batch.getNullCount( batch.header, 0 ) );
+		assertTrue( batch.isValid( batch.header, 0, 0 ) );
+		assertFalse( batch.isValid( batch.header, 0, 1 ) );
+		assertTrue( batch.getBit( batch.header, 1, 0 ) );
+		assertFalse( batch.getBit( batch.header, 1, 2 ) );
+		assertEquals( -5, batch.getInt( batch.getBuffer( batch.header, 3 ) ) );
+		assertEquals( Integer.MAX_VALUE,
+				batch.getInt( batch.getBuffer( batch.header, 3 ) + 8 ) );
+		assertEquals( Double.doubleToLongBits( -0.25 ),
+				batch.getLong( batch.getBuffer( batch.header, 5 ) + 16 ) );
+		assertStrings( batch, batch.header, 6, new String[]{"abc", null, "\u4e2d\u6587"} ); //$NON-NLS-1$ //$NON-NLS-2$
+		// the dictionary indices
+		int indices = batch.getBuffer( batch.header, 10 );
+		assertEquals( 0, batch.getInt( indices ) );
+		assertEquals( 1, batch.getInt( indices + 8 ) );
+		assertEquals( 1000000000000L,
+				batch.getLong( batch.getBuffer( batch.header, 12 ) ) );
+		assertEquals( -1, batch.getInt( batch.getBuffer( batch.header, 14 ) + 8 ) );
+		assertEquals( 3600000, batch.getInt( batch.getBuffer( batch.header, 16 ) ) );
+		int offsets = batch.getBuffer( batch.header, 18 );
+		assertEquals( 3, batch.getInt( offsets + 4 ) );
+		assertEquals( 3, batch.getInt( offsets + 12 ) );
+
+		// only the new value is in the delta dictionary of the second batch
+		dictionary = messages.get( 3 );
+		assertEquals( HEADER_DICTIONARY_BATCH, dictionary.headerType );
+		assertEquals( 1, dictionary.bytes[dictionary.getField( dictionary.header, 2 )] );
+		data = dictionary.getTable( dictionary.header, 1 );
+		assertStrings( dictionary, data, 0, new String[]{"blue"} ); //$NON-NLS-1$
+
+		batch = messages.get( 4 );
+		assertEquals( HEADER_RECORD_BATCH, batch.headerType );
+		assertEquals( 2, batch.getLong( batch.getField( batch.header, 0 ) ) );
+		assertEquals( 0, batch.getNullCount( batch.header, 0 ) );
+		indices = batch.getBuffer( batch.header, 10 );
+		assertEquals( 0, batch.getInt( indices ) );
+		assertEquals( 2, batch.getInt( indices + 4 ) );
+	}
+
+	public void testEmptyStream( ) throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		ArrowStreamWriter writer = new ArrowStreamWriter( out, NAMES, TYPES );
+		writer.writeSchema( );
+		writer.close( );
+		List<Message> messages = readMessages( out.toByteArray( ) );
+		assertEquals( 1, messages.size( ) );
+		assertEquals( HEADER_SCHEMA, messages.get( 0 ).headerType );
+	}
+
+	private void assertStrings( Message message, int recordBatch,
+			int bufferIndex, String[] values ) throws Exception
+	{
+		int offsets = message.getBuffer( recordBatch, bufferIndex + 1 );
+		int data = message.getBuffer( recordBatch, bufferIndex + 2 );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			int start = message.getInt( offsets + 4 * i );
+			int end = message.getInt( offsets + 4 * i + 4 );
+			if ( values[i] == null )
+			{
+				assertEquals( start, end );
+				continue;
+			}
+			assertEquals( values[i], new String( message.bytes,
+					data + start,
+					end - start,
+					"UTF-8" ) ); //$NON-NLS-1$
+		}
+	}
+
+	private List<Message> readMessages( byte[] stream )
+	{
+		List<Message> messages = new ArrayList<Message>( );
+		int position = 0;
+		while ( true )
+		{
+			Message message = new Message( );
+			message.bytes = stream;
+			assertEquals( -1, message.getInt( position ) );
+			int metadataLength = message.getInt( position + 4 );
+			position += 8;
+			if ( metadataLength == 0 )
+			{
+				break;
+			}
+			assertEquals( 0, ( position + metadataLength ) % 8 );
+			int root = message.getOffset( position );
+			assertEquals( 4, message.getShort( message.getField( root, 0 ) ) );
+			message.headerType = stream[message.getField( root, 1 )];
+			message.header = message.getTable( root, 2 );
+			long bodyLength = message.getLong( message.getField( root, 3 ) );
+			assertEquals( 0, bodyLength % 8 );
+			message.body = position + metadataLength;
+			position = message.body + (int) bodyLength;
+			messages.add( message );
+		}
+		assertEquals( stream.length, position );
+		return messages;
+	}
+
+	/**
+	 * A message in the stream, the positions are in the bytes of the stream.
+	 */
+	private static class Message
+	{
+
+		byte[] bytes;
+		int headerType;
+		int header;
+		int body;
+
+		int getShort( int position )
+		{
+			return ( bytes[position] & 0xFF ) | ( bytes[position + 1] & 0xFF ) << 8;
+		}
+
+		int getInt( int position )
+		{
+			return getShort( position ) | getShort( position + 2 ) << 16;
+		}
+
+		long getLong( int position )
+		{
+			return ( getInt( position ) & 0xFFFFFFFFL )
+					| ( (long) getInt( position + 4 ) ) << 32;
+		}
+
+		int getOffset( int position )
+		{
+			assertEquals( 0, position % 4 );
+			return position + getInt( position );
+		}
+
+		int getField( int table, int id )
+		{
+			assertEquals( 4, table % 8 );
+			int vtable = table - getInt( table );
+			assertEquals( 0, vtable % 2 );
+			if ( 4 + 2 * id >= getShort( vtable ) )
+			{
+				return -1;
+			}
+			int offset = getShort( vtable + 4 + 2 * id );
+			return offset == 0 ? -1 : table + offset;
+		}
+
+		int getTable( int table, int id )
+		{
+			int field = getField( table, id );
+			return field == -1 ? -1 : getOffset( field );
+		}
+
+		int getVector( int table, int id )
+		{
+			return getOffset( getField( table, id ) );
+		}
+
+		String getString( int table, int id ) throws Exception
+		{
+			int string = getVector( table, id );
+			return new String( bytes, string + 4, getInt( string ), "UTF-8" ); //$NON-NLS-1$
+		}
+
+		int getNullCount( int recordBatch, int column )
+		{
+			int nodes = getVector( recordBatch, 1 );
+			assertEquals( 0, ( nodes + 4 ) % 8 );
+			return (int) getLong( nodes + 4 + 16 * column + 8 );
+		}
+
+		/**
+		 * Returns the position of the buffer in the stream.
+		 */
+		int getBuffer( int recordBatch, int index )
+		{
+			int buffers = getVector( recordBatch, 2 );
+			assertEquals( 0, ( buffers + 4 ) % 8 );
+			long offset = getLong( buffers + 4 + 16 * index );
+			assertEquals( 0, offset % 8 );
+			return body + (int) offset;
+		}
+
+		boolean getBit( int recordBatch, int bufferIndex, int index )
+		{
+			int buffer = getBuffer( recordBatch, bufferIndex );
+			return ( bytes[buffer + index / 8] & ( 1 << ( index % 8 ) ) ) != 0;
+		}
+
+		boolean isValid( int recordBatch, int column, int index )
+		{
+			// the validity buffers of the columns in the test are the even
+			// buffers
+			return getBit( recordBatch, 2 * column, index );
+		}
+	}
+}
@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.arrow;
+
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.TimeZone;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.report.engine.api.IDataExtractionOption;
+import org.eclipse.birt.report.engine.api.IDataIterator;
+import org.eclipse.birt.report.engine.api.IExtractionResults;
+import org.eclipse.birt.report.engine.api.IResultMetaData;
+import org.eclipse.birt.report.engine.api.script.IReportContext;
+import org.eclipse.birt.report.engine.dataextraction.ArrowDataExtractionOption;
+import org.eclipse.birt.report.engine.dataextraction.IArrowDataExtractionOption;
+import org.eclipse.birt.report.engine.dataextraction.i18n.Messages;
+import org.eclipse.birt.report.engine.dataextraction.impl.CommonDataExtractionImpl;
+
+/**
+ * Implements the logic to extract data as Apache Arrow IPC stream format. The
+ * values are written as typed columns in record batches, and the string
+ * values are dictionary encoded by default. The values of the column types
+ * which have no Arrow counterpart are formatted as strings as the CSV format
+ * does.
+ */
+public class ArrowDataExtractionImpl extends CommonDataExtractionImpl
+{
+	public static final String PLUGIN_ID = "org.eclipse.birt.report.engine.dataextraction.arrow"; //$NON-NLS-1$
+
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+	private OutputStream outputStream;
+	private int batchSize;
+	private boolean isDictionaryEncode;
+	private String[] selectedColumnNames;
+
+	private Calendar localCalendar;
+	private Calendar utcCalendar;
+
+	/**
+	 * @see org.eclipse.birt.report.engine.extension.IDataExtractionExtension#initialize(org.eclipse.birt.report.engine.api.script.IReportContext,
+	 *      org.eclipse.birt.report.engine.api.IDataExtractionOption)
+	 */
+	public void initialize( IReportContext context, IDataExtractionOption options )
+			throws BirtException
+	{
+		super.initialize( context, options );
+		initArrowOptions( options );
+	}
+
+	/**
+	 * Initializes the Arrow options based on the data extraction option.
+	 *
+	 * @param options
+	 */
+	private void initArrowOptions( IDataExtractionOption options )
+	{
+		this.outputStream = options.getOutputStream( );
+		IArrowDataExtractionOption arrowOptions;
+		if ( options instanceof IArrowDataExtractionOption )
+		{
+			arrowOptions = (IArrowDataExtractionOption) options;
+		}
+		else
+		{
+			arrowOptions = new ArrowDataExtractionOption( options.getOptions( ) );
+		}
+
+		batchSize = arrowOptions.getBatchSize( );
+		if ( batchSize <= 0 )
+		{
+			batchSize = IArrowDataExtractionOption.DEFAULT_BATCH_SIZE;
+		}
+		isDictionaryEncode = arrowOptions.isDictionaryEncode( );
+		selectedColumnNames = arrowOptions.getSelectedColumns( );
+	}
+
+	/**
+	 * @see org.eclipse.birt.report.engine.extension.IDataExtractionExtension#output(org.eclipse.birt.report.engine.api.IExtractionResults)
+	 */
+	public void output( IExtractionResults results ) throws BirtException
+	{
+		if ( results == null )
+		{
+			throw new BirtException( PLUGIN_ID,
+					Messages.getString( "exception.dataextraction.no_extraction_result_error" ), //$NON-NLS-1$
+					(ResourceBundle) null );
+		}
+		try
+		{
+			IResultMetaData metaData = results.getResultMetaData( );
+			int count = metaData.getColumnCount( );
+			Map<String, Integer> columnTypes = new HashMap<String, Integer>( );
+			List<String> nameList = new ArrayList<String>( );
+			for ( int i = 0; i < count; i++ )
+			{
+				String colName = metaData.getColumnName( i );
+				columnTypes.put( colName,
+						Integer.valueOf( metaData.getColumnType( i ) ) );
+				nameList.add( colName );
+			}
+
+			// if selected columns are null or empty, returns all columns
+			if ( selectedColumnNames != null && selectedColumnNames.length > 0 )
+			{
+				nameList.clear( );
+				for ( int i = 0; i < selectedColumnNames.length; i++ )
+				{
+					if ( columnTypes.containsKey( selectedColumnNames[i] ) )
+					{
+						nameList.add( selectedColumnNames[i] );
+					}
+				}
+			}
+			String[] columnNames = nameList.toArray( new String[0] );
+			int[] types = new int[columnNames.length];
+			int[] arrowTypes = new int[columnNames.length];
+			for ( int i = 0; i < columnNames.length; i++ )
+			{
+				types[i] = columnTypes.get( columnNames[i] ).intValue( );
+				arrowTypes[i] = getArrowType( types[i] );
+			}
+
+			// the schema and the end of the stream are always written, so the
+			// output is a valid stream even if there is no row
+			ArrowStreamWriter writer = new ArrowStreamWriter( outputStream,
+					columnNames,
+					arrowTypes );
+			writer.writeSchema( );
+			IDataIterator iData = results.nextResultIterator( );
+			if ( iData != null && columnNames.length > 0 )
+			{
+				// Data
+				Object[] values = new Object[columnNames.length];
+				createFormatters( columnNames, types );
+				while ( iData.next( ) )
+				{
+					for ( int i = 0; i < columnNames.length; i++ )
+					{
+						values[i] = getArrowValue( iData,
+								columnNames,
+								i,
+								types[i] );
+					}
+					writer.addRow( values );
+					if ( writer.getRowCount( ) >= batchSize )
+					{
+						writer.writeBatch( );
+					}
+				}
+			}
+			writer.close( );
+		}
+		catch ( Exception e )
+		{
+			throw new BirtException( PLUGIN_ID,
+					Messages.getString( "exception.dataextraction.exception_occured" ), //$NON-NLS-1$
+					(ResourceBundle) null,
+					e );
+		}
+	}
+
+	/**
+	 * Returns the Arrow type of the column type. The decimals are saved as
+	 * strings since their precision is not fixed.
+	 */
+	int getArrowType( int type )
+	{
+		switch ( type )
+		{
+			case DataType.BOOLEAN_TYPE :
+				return ArrowStreamWriter.TYPE_BOOLEAN;
+			case DataType.INTEGER_TYPE :
+				return ArrowStreamWriter.TYPE_INT;
+			case DataType.DOUBLE_TYPE :
+				return ArrowStreamWriter.TYPE_DOUBLE;
+			case DataType.DECIMAL_TYPE :
+				return ArrowStreamWriter.TYPE_STRING;
+			case DataType.DATE_TYPE :
+				return ArrowStreamWriter.TYPE_TIMESTAMP;
+			case DataType.SQL_DATE_TYPE :
+				return ArrowStreamWriter.TYPE_DATE;
+			case DataType.SQL_TIME_TYPE :
+				return ArrowStreamWriter.TYPE_TIME;
+			case DataType.BLOB_TYPE :
+			case DataType.BINARY_TYPE :
+				return ArrowStreamWriter.TYPE_BINARY;
+			default :
+				return isDictionaryEncode
+						? ArrowStreamWriter.TYPE_DICTIONARY
+						: ArrowStreamWriter.TYPE_STRING;
+		}
+	}
+
+	/**
+	 * Returns the value of the column as the value type of its Arrow type.
+	 */
+	Object getArrowValue( IDataIterator dataIterator,
+			String[] columnNames, int index, int type ) throws Exception
+	{
+		Object value = dataIterator.getValue( columnNames[index] );
+		if ( value == null )
+		{
+			return null;
+		}
+		switch ( type )
+		{
+			case DataType.BOOLEAN_TYPE :
+				return DataTypeUtil.toBoolean( value );
+			case DataType.INTEGER_TYPE :
+				return DataTypeUtil.toInteger( value );
+			case DataType.DOUBLE_TYPE :
+				return DataTypeUtil.toDouble( value );
+			case DataType.DECIMAL_TYPE :
+				return DataTypeUtil.toBigDecimal( value ).toString( );
+			case DataType.DATE_TYPE :
+				return Long.valueOf( DataTypeUtil.toDate( value ).getTime( ) );
+			case DataType.SQL_DATE_TYPE :
+				return Integer.valueOf( getDays( DataTypeUtil.toDate( value ) ) );
+			case DataType.SQL_TIME_TYPE :
+				return Integer.valueOf( getTimeOfDay( DataTypeUtil.toDate( value ) ) );
+			case DataType.BLOB_TYPE :
+			case DataType.BINARY_TYPE :
+				if ( value instanceof Blob )
+				{
+					Blob blob = (Blob) value;
+					return blob.getBytes( 1, (int) blob.length( ) );
+				}
+				return (byte[]) value;
+			default :
+				return getStringValue( dataIterator, columnNames, index );
+		}
+	}
+
+	/**
+	 * Returns the days since the epoch of the local date of the value, as the
+	 * SQL dates are created in the local time zone.
+	 */
+	int getDays( Date value )
+	{
+		initCalendars( value );
+		utcCalendar.clear( );
+		utcCalendar.set( Calendar.ERA, localCalendar.get( Calendar.ERA ) );
+		utcCalendar.set( localCalendar.get( Calendar.YEAR ),
+				localCalendar.get( Calendar.MONTH ),
+				localCalendar.get( Calendar.DAY_OF_MONTH ) );
+		long millis = utcCalendar.getTimeInMillis( );
+		// the dates before the epoch are rounded down
+		return (int) ( ( millis - ( millis < 0 ? MILLIS_PER_DAY - 1 : 0 ) ) / MILLIS_PER_DAY );
+	}
+
+	/**
+	 * Returns the milliseconds since midnight of the local time of the value,
+	 * as the SQL times are created in the local time zone.
+	 */
+	int getTimeOfDay( Date value )
+	{
+		initCalendars( value );
+		return ( ( localCalendar.get( Calendar.HOUR_OF_DAY ) * 60 + localCalendar.get( Calendar.MINUTE ) ) * 60 + localCalendar.get( Calendar.SECOND ) )
+				* 1000 + localCalendar.get( Calendar.MILLISECOND );
+	}
+
+	private void initCalendars( Date value )
+	{
+		if ( localCalendar == null )
+		{
+			localCalendar = Calendar.getInstance( );
+			utcCalendar = Calendar.getInstance( TimeZone.getTimeZone( "UTC" ) ); //$NON-NLS-1$
+		}
+		localCalendar.setTime( value );
+	}
+}
@@ -0,0 +1,666 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.arrow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.report.engine.dataextraction.arrow.FlatBufferWriter.Table;
+import org.eclipse.birt.report.engine.dataextraction.arrow.FlatBufferWriter.Vector;
+
+/**
+ * Writes the rows as the record batches of the Arrow IPC stream format. The
+ * values of a batch are kept in column vectors and written to the stream
+ * without any conversion once the batch is full.
+ *
+ * The dictionaries of the dictionary encoded columns are written as delta
+ * dictionary batches before each record batch, only with the values not
+ * written yet. A dictionary is replaced by a new one once it grows beyond
+ * MAX_DICTIONARY_SIZE, so the memory used for the high cardinality columns is
+ * bounded.
+ */
+class ArrowStreamWriter
+{
+
+	static final int TYPE_BOOLEAN = 0;
+	static final int TYPE_INT = 1;
+	static final int TYPE_DOUBLE = 2;
+	static final int TYPE_STRING = 3;
+	static final int TYPE_DICTIONARY = 4;
+	static final int TYPE_TIMESTAMP = 5;
+	static final int TYPE_DATE = 6;
+	static final int TYPE_TIME = 7;
+	static final int TYPE_BINARY = 8;
+
+	/**
+	 * the count of the values in a dictionary before it is replaced
+	 */
+	static final int MAX_DICTIONARY_SIZE = 65536;
+
+	/**
+	 * the ids of MetadataVersion, MessageHeader and Type in the Arrow schema
+	 */
+	private static final int METADATA_VERSION_V5 = 4;
+	private static final int HEADER_SCHEMA = 1;
+	private static final int HEADER_DICTIONARY_BATCH = 2;
+	private static final int HEADER_RECORD_BATCH = 3;
+	private static final int ARROW_TYPE_INT = 2;
+	private static final int ARROW_TYPE_FLOATING_POINT = 3;
+	private static final int ARROW_TYPE_BINARY = 4;
+	private static final int ARROW_TYPE_UTF8 = 5;
+	private static final int ARROW_TYPE_BOOL = 6;
+	private static final int ARROW_TYPE_DATE = 8;
+	private static final int ARROW_TYPE_TIME = 9;
+	private static final int ARROW_TYPE_TIMESTAMP = 10;
+	private static final int PRECISION_DOUBLE = 2;
+	private static final int DATE_UNIT_DAY = 0;
+	private static final int TIME_UNIT_MILLISECOND = 1;
+
+	private static final byte[] CONTINUATION = new byte[]{-1, -1, -1, -1};
+
+	private OutputStream out;
+	private String[] names;
+	private int[] types;
+	private ColumnVector[] columns;
+	private int rowCount;
+
+	private ArrowBuffer body = new ArrowBuffer( );
+	private ArrowBuffer nodes = new ArrowBuffer( );
+	private ArrowBuffer buffers = new ArrowBuffer( );
+	private int nodeCount;
+	private int bufferCount;
+
+	/**
+	 * @param out
+	 *            the stream to write
+	 * @param names
+	 *            the names of the columns
+	 * @param types
+	 *            the TYPE_XXX types of the columns
+	 */
+	ArrowStreamWriter( OutputStream out, String[] names, int[] types )
+	{
+		this.out = out;
+		this.names = names;
+		this.types = types;
+		this.columns = new ColumnVector[types.length];
+		for ( int i = 0; i < types.length; i++ )
+		{
+			switch ( types[i] )
+			{
+				case TYPE_BOOLEAN :
+					columns[i] = new BooleanVector( );
+					break;
+				case TYPE_INT :
+				case TYPE_DATE :
+				case TYPE_TIME :
+					columns[i] = new FixedWidthVector( 4 );
+					break;
+				case TYPE_DOUBLE :
+				case TYPE_TIMESTAMP :
+					columns[i] = new FixedWidthVector( 8 );
+					break;
+				case TYPE_STRING :
+				case TYPE_BINARY :
+					columns[i] = new VariableWidthVector( );
+					break;
+				case TYPE_DICTIONARY :
+					columns[i] = new DictionaryVector( );
+					break;
+				default :
+					throw new IllegalArgumentException( String.valueOf( types[i] ) );
+			}
+		}
+	}
+
+	/**
+	 * Gets the count of the rows not written yet.
+	 */
+	int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 * Writes the schema message, which must be called before any row is
+	 * written.
+	 *
+	 * @throws IOException
+	 */
+	void writeSchema( ) throws IOException
+	{
+		List<Table> fields = new ArrayList<Table>( );
+		for ( int i = 0; i < types.length; i++ )
+		{
+			Table field = new Table( ).addString( 0, names[i] )
+					.addBoolean( 1, true )
+					.addVector( 5, Vector.ofTables( new ArrayList<Table>( ) ) );
+			switch ( types[i] )
+			{
+				case TYPE_BOOLEAN :
+					field.addByte( 2, ARROW_TYPE_BOOL ).addTable( 3, new Table( ) );
+					break;
+				case TYPE_INT :
+					field.addByte( 2, ARROW_TYPE_INT ).addTable( 3,
+							createIntType( ) );
+					break;
+				case TYPE_DOUBLE :
+					field.addByte( 2, ARROW_TYPE_FLOATING_POINT ).addTable( 3,
+							new Table( ).addShort( 0, PRECISION_DOUBLE ) );
+					break;
+				case TYPE_STRING :
+					field.addByte( 2, ARROW_TYPE_UTF8 ).addTable( 3, new Table( ) );
+					break;
+				case TYPE_DICTIONARY :
+					field.addByte( 2, ARROW_TYPE_UTF8 )
+							.addTable( 3, new Table( ) )
+							.addTable( 4,
+									new Table( ).addLong( 0, i )
+											.addTable( 1, createIntType( ) )
+											.addBoolean( 2, false ) );
+					break;
+				case TYPE_TIMESTAMP :
+					field.addByte( 2, ARROW_TYPE_TIMESTAMP ).addTable( 3,
+							new Table( ).addShort( 0, TIME_UNIT_MILLISECOND )
+									.addString( 1, "UTC" ) ); //$NON-NLS-1$
+					break;
+				case TYPE_DATE :
+					field.addByte( 2, ARROW_TYPE_DATE ).addTable( 3,
+							new Table( ).addShort( 0, DATE_UNIT_DAY ) );
+					break;
+				case TYPE_TIME :
+					field.addByte( 2, ARROW_TYPE_TIME ).addTable( 3,
+							new Table( ).addShort( 0, TIME_UNIT_MILLISECOND )
+									.addInt( 1, 32 ) );
+					break;
+				case TYPE_BINARY :
+					field.addByte( 2, ARROW_TYPE_BINARY ).addTable( 3, new Table( ) );
+					break;
+			}
+			fields.add( field );
+		}
+		// little endian
+		Table schema = new Table( ).addShort( 0, 0 ).addVector( 1,
+				Vector.ofTables( fields ) );
+		writeMessage( HEADER_SCHEMA, schema );
+	}
+
+	private static Table createIntType( )
+	{
+		return new Table( ).addInt( 0, 32 ).addBoolean( 1, true );
+	}
+
+	/**
+	 * Adds a row to the current batch.
+	 *
+	 * @param values
+	 *            the values of the row, which are Boolean, Integer, Double,
+	 *            String, byte[] or Long for the milliseconds of the
+	 *            timestamps, and Integer for the days of the dates and the
+	 *            milliseconds of the times.
+	 */
+	void addRow( Object[] values )
+	{
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			columns[i].add( values[i] );
+		}
+		rowCount++;
+	}
+
+	/**
+	 * Writes the rows added as a record batch.
+	 *
+	 * @throws IOException
+	 */
+	void writeBatch( ) throws IOException
+	{
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			if ( columns[i] instanceof DictionaryVector )
+			{
+				( (DictionaryVector) columns[i] ).writeDictionary( i );
+			}
+		}
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			columns[i].write( );
+		}
+		writeRecordBatch( HEADER_RECORD_BATCH, rowCount, -1, false );
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			columns[i].reset( );
+		}
+		rowCount = 0;
+	}
+
+	/**
+	 * Writes the rows not written yet and the end of the stream.
+	 *
+	 * @throws IOException
+	 */
+	void close( ) throws IOException
+	{
+		if ( rowCount > 0 )
+		{
+			writeBatch( );
+		}
+		out.write( CONTINUATION );
+		out.write( new byte[4] );
+		out.flush( );
+	}
+
+	/**
+	 * Writes the nodes and buffers added to the body as a record batch, or a
+	 * dictionary batch if the dictionary id is not negative.
+	 */
+	private void writeRecordBatch( int headerType, int length,
+			long dictionaryId, boolean isDelta ) throws IOException
+	{
+		Table recordBatch = new Table( ).addLong( 0, length )
+				.addVector( 1, Vector.ofStructs( nodes.toBytes( ), nodeCount ) )
+				.addVector( 2,
+						Vector.ofStructs( buffers.toBytes( ), bufferCount ) );
+		Table header = recordBatch;
+		if ( dictionaryId >= 0 )
+		{
+			header = new Table( ).addLong( 0, dictionaryId )
+					.addTable( 1, recordBatch )
+					.addBoolean( 2, isDelta );
+		}
+		writeMessage( headerType, header );
+		nodes.reset( );
+		buffers.reset( );
+		body.reset( );
+		nodeCount = 0;
+		bufferCount = 0;
+	}
+
+	private void writeMessage( int headerType, Table header )
+			throws IOException
+	{
+		Table message = new Table( ).addShort( 0, METADATA_VERSION_V5 )
+				.addByte( 1, headerType )
+				.addTable( 2, header )
+				.addLong( 3, body.size( ) );
+		byte[] metadata = FlatBufferWriter.write( message );
+		// the body after the prefix and the metadata is aligned to 8 bytes
+		int padding = ( 8 - metadata.length % 8 ) % 8;
+		ArrowBuffer prefix = new ArrowBuffer( );
+		prefix.putInt( -1 );
+		prefix.putInt( metadata.length + padding );
+		prefix.writeTo( out );
+		out.write( metadata );
+		out.write( new byte[padding] );
+		body.writeTo( out );
+	}
+
+	private void addNode( int length, int nullCount )
+	{
+		nodes.putLong( length );
+		nodes.putLong( nullCount );
+		nodeCount++;
+	}
+
+	/**
+	 * Appends the buffer to the body, the buffers in the body are aligned to 8
+	 * bytes.
+	 */
+	private void addBuffer( ArrowBuffer buffer )
+	{
+		buffers.putLong( body.size( ) );
+		buffers.putLong( buffer.size( ) );
+		bufferCount++;
+		body.put( buffer );
+		body.pad( 8 );
+	}
+
+	/**
+	 * The growable little endian buffer.
+	 */
+	private static class ArrowBuffer
+	{
+
+		private byte[] bytes = new byte[64];
+		private int size;
+
+		int size( )
+		{
+			return size;
+		}
+
+		void reset( )
+		{
+			size = 0;
+		}
+
+		private void ensureCapacity( int capacity )
+		{
+			if ( capacity > bytes.length )
+			{
+				byte[] newBytes = new byte[Math.max( capacity, bytes.length * 2 )];
+				System.arraycopy( bytes, 0, newBytes, 0, size );
+				bytes = newBytes;
+			}
+		}
+
+		void put( byte[] value, int offset, int length )
+		{
+			ensureCapacity( size + length );
+			System.arraycopy( value, offset, bytes, size, length );
+			size += length;
+		}
+
+		void put( ArrowBuffer buffer )
+		{
+			put( buffer.bytes, 0, buffer.size );
+		}
+
+		void putInt( int value )
+		{
+			ensureCapacity( size + 4 );
+			bytes[size++] = (byte) value;
+			bytes[size++] = (byte) ( value >>> 8 );
+			bytes[size++] = (byte) ( value >>> 16 );
+			bytes[size++] = (byte) ( value >>> 24 );
+		}
+
+		void putLong( long value )
+		{
+			putInt( (int) value );
+			putInt( (int) ( value >>> 32 ) );
+		}
+
+		void pad( int alignment )
+		{
+			int padding = ( alignment - size % alignment ) % alignment;
+			ensureCapacity( size + padding );
+			for ( int i = 0; i < padding; i++ )
+			{
+				bytes[size++] = 0;
+			}
+		}
+
+		void setBit( int index, boolean value )
+		{
+			int byteIndex = index >> 3;
+			if ( byteIndex >= size )
+			{
+				ensureCapacity( byteIndex + 1 );
+				while ( size <= byteIndex )
+				{
+					bytes[size++] = 0;
+				}
+			}
+			if ( value )
+			{
+				bytes[byteIndex] |= (byte) ( 1 << ( index & 7 ) );
+			}
+		}
+
+		byte[] toBytes( )
+		{
+			byte[] value = new byte[size];
+			System.arraycopy( bytes, 0, value, 0, size );
+			return value;
+		}
+
+		void writeTo( OutputStream out ) throws IOException
+		{
+			out.write( bytes, 0, size );
+		}
+	}
+
+	/**
+	 * The values of a column in the current batch.
+	 */
+	private abstract class ColumnVector
+	{
+
+		protected ArrowBuffer validity = new ArrowBuffer( );
+		protected int count;
+		protected int nullCount;
+
+		void add( Object value )
+		{
+			validity.setBit( count, value != null );
+			if ( value == null )
+			{
+				nullCount++;
+			}
+			addValue( value );
+			count++;
+		}
+
+		/**
+		 * Adds the value, which is null for the null values.
+		 */
+		abstract void addValue( Object value );
+
+		/**
+		 * Adds the node and the buffers of the column to the body.
+		 */
+		void write( )
+		{
+			addNode( count, nullCount );
+			if ( nullCount == 0 )
+			{
+				// the validity buffer can be omitted if there is no null
+				validity.reset( );
+			}
+			addBuffer( validity );
+			writeBuffers( );
+		}
+
+		abstract void writeBuffers( );
+
+		void reset( )
+		{
+			validity.reset( );
+			count = 0;
+			nullCount = 0;
+		}
+	}
+
+	private class BooleanVector extends ColumnVector
+	{
+
+		private ArrowBuffer data = new ArrowBuffer( );
+
+		void addValue( Object value )
+		{
+			data.setBit( count, value != null
+					&& ( (Boolean) value ).booleanValue( ) );
+		}
+
+		void writeBuffers( )
+		{
+			// the bits of the values may be shorter than the row count if
+			// the last values are false
+			if ( count > 0 )
+			{
+				data.setBit( count - 1, false );
+			}
+			addBuffer( data );
+		}
+
+		void reset( )
+		{
+			super.reset( );
+			data.reset( );
+		}
+	}
+
+	private class FixedWidthVector extends ColumnVector
+	{
+
+		private int width;
+		private ArrowBuffer data = new ArrowBuffer( );
+
+		FixedWidthVector( int width )
+		{
+			this.width = width;
+		}
+
+		void addValue( Object value )
+		{
+			if ( value == null )
+			{
+				if ( width == 4 )
+					data.putInt( 0 );
+				else
+					data.putLong( 0 );
+			}
+			else if ( value instanceof Double )
+			{
+				data.putLong( Double.doubleToLongBits( ( (Double) value ).doubleValue( ) ) );
+			}
+			else if ( width == 4 )
+			{
+				data.putInt( ( (Number) value ).intValue( ) );
+			}
+			else
+			{
+				data.putLong( ( (Number) value ).longValue( ) );
+			}
+		}
+
+		void writeBuffers( )
+		{
+			addBuffer( data );
+		}
+
+		void reset( )
+		{
+			super.reset( );
+			data.reset( );
+		}
+	}
+
+	private class VariableWidthVector extends ColumnVector
+	{
+
+		private ArrowBuffer offsets = new ArrowBuffer( );
+		private ArrowBuffer data = new ArrowBuffer( );
+
+		VariableWidthVector( )
+		{
+			offsets.putInt( 0 );
+		}
+
+		void addValue( Object value )
+		{
+			if ( value instanceof String )
+			{
+				byte[] bytes = toUTF8( (String) value );
+				data.put( bytes, 0, bytes.length );
+			}
+			else if ( value != null )
+			{
+				byte[] bytes = (byte[]) value;
+				data.put( bytes, 0, bytes.length );
+			}
+			offsets.putInt( data.size( ) );
+		}
+
+		void writeBuffers( )
+		{
+			addBuffer( offsets );
+			addBuffer( data );
+		}
+
+		void reset( )
+		{
+			super.reset( );
+			offsets.reset( );
+			offsets.putInt( 0 );
+			data.reset( );
+		}
+	}
+
+	private class DictionaryVector extends ColumnVector
+	{
+
+		private ArrowBuffer indices = new ArrowBuffer( );
+		private Map<String, Integer> dictionary = new HashMap<String, Integer>( );
+		private VariableWidthVector newValues = new VariableWidthVector( );
+		private boolean isWritten;
+
+		void addValue( Object value )
+		{
+			if ( value == null )
+			{
+				indices.putInt( 0 );
+				return;
+			}
+			Integer index = dictionary.get( value );
+			if ( index == null )
+			{
+				index = Integer.valueOf( dictionary.size( ) );
+				dictionary.put( (String) value, index );
+				newValues.add( value );
+			}
+			indices.putInt( index.intValue( ) );
+		}
+
+		/**
+		 * Writes the values added to the dictionary since the last batch.
+		 */
+		void writeDictionary( int id ) throws IOException
+		{
+			if ( isWritten && newValues.count == 0 )
+			{
+				return;
+			}
+			newValues.write( );
+			writeRecordBatch( HEADER_DICTIONARY_BATCH,
+					newValues.count,
+					id,
+					isWritten );
+			newValues.reset( );
+			isWritten = true;
+		}
+
+		void writeBuffers( )
+		{
+			addBuffer( indices );
+		}
+
+		void reset( )
+		{
+			super.reset( );
+			indices.reset( );
+			if ( dictionary.size( ) > MAX_DICTIONARY_SIZE )
+			{
+				// the next dictionary batch replaces the dictionary
+				dictionary.clear( );
+				isWritten = false;
+			}
+		}
+	}
+
+	private static byte[] toUTF8( String value )
+	{
+		try
+		{
+			return value.getBytes( "UTF-8" ); //$NON-NLS-1$
+		}
+		catch ( UnsupportedEncodingException e )
+		{
+			throw new IllegalStateException( e.getMessage( ) );
+		}
+	}
+}
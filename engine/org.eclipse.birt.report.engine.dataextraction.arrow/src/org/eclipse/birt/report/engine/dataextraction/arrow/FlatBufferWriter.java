@@ -0,0 +1,328 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.arrow;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the flat buffers used by the metadata of the Arrow IPC messages.
+ *
+ * The tables are built as trees and written from the root, each table or
+ * vector is written after the object referring it, so all the offsets are
+ * positive as flat buffers require. Only the little endian scalars, strings,
+ * tables and the vectors of tables or 8 bytes aligned structs are supported.
+ */
+class FlatBufferWriter
+{
+
+	private static final int OFFSET = 0;
+
+	private byte[] buffer = new byte[256];
+	private int size;
+
+	/**
+	 * Writes the flat buffer with the table as its root.
+	 *
+	 * @param root
+	 * @return the bytes of the flat buffer
+	 */
+	static byte[] write( Table root )
+	{
+		FlatBufferWriter writer = new FlatBufferWriter( );
+		writer.putInt( 0 );
+		writer.setInt( 0, writer.writeTable( root ) );
+		byte[] bytes = new byte[writer.size];
+		System.arraycopy( writer.buffer, 0, bytes, 0, writer.size );
+		return bytes;
+	}
+
+	/**
+	 * A table of the flat buffer, the fields are identified by their index in
+	 * the schema.
+	 */
+	static class Table
+	{
+
+		private List<Field> fields = new ArrayList<Field>( );
+
+		Table addBoolean( int id, boolean value )
+		{
+			return add( id, 1, value ? 1 : 0, null );
+		}
+
+		Table addByte( int id, int value )
+		{
+			return add( id, 1, value, null );
+		}
+
+		Table addShort( int id, int value )
+		{
+			return add( id, 2, value, null );
+		}
+
+		Table addInt( int id, int value )
+		{
+			return add( id, 4, value, null );
+		}
+
+		Table addLong( int id, long value )
+		{
+			return add( id, 8, value, null );
+		}
+
+		Table addTable( int id, Table table )
+		{
+			return add( id, OFFSET, 0, table );
+		}
+
+		Table addString( int id, String value )
+		{
+			return add( id, OFFSET, 0, value );
+		}
+
+		Table addVector( int id, Vector vector )
+		{
+			return add( id, OFFSET, 0, vector );
+		}
+
+		private Table add( int id, int size, long value, Object child )
+		{
+			Field field = new Field( );
+			field.id = id;
+			field.size = size;
+			field.value = value;
+			field.child = child;
+			// the larger fields are put first to be aligned without padding
+			int index = 0;
+			while ( index < fields.size( )
+					&& getInlineSize( fields.get( index ) ) >= getInlineSize( field ) )
+			{
+				index++;
+			}
+			fields.add( index, field );
+			return this;
+		}
+	}
+
+	/**
+	 * A vector of tables or structs.
+	 */
+	static class Vector
+	{
+
+		private List<Table> tables;
+		private byte[] structs;
+		private int count;
+
+		static Vector ofTables( List<Table> tables )
+		{
+			Vector vector = new Vector( );
+			vector.tables = tables;
+			vector.count = tables.size( );
+			return vector;
+		}
+
+		/**
+		 * @param structs
+		 *            the little endian bytes of the structs, which are aligned
+		 *            to 8 bytes
+		 * @param count
+		 *            the count of the structs
+		 */
+		static Vector ofStructs( byte[] structs, int count )
+		{
+			Vector vector = new Vector( );
+			vector.structs = structs;
+			vector.count = count;
+			return vector;
+		}
+	}
+
+	private static class Field
+	{
+
+		int id;
+		int size;
+		long value;
+		Object child;
+	}
+
+	private static int getInlineSize( Field field )
+	{
+		return field.size == OFFSET ? 4 : field.size;
+	}
+
+	private int writeTable( Table table )
+	{
+		int fieldCount = 0;
+		for ( Field field : table.fields )
+		{
+			fieldCount = Math.max( fieldCount, field.id + 1 );
+		}
+
+		// the vtable is put just before the table, and the table starts at 4
+		// modulo 8 so that the long fields after the vtable offset are aligned
+		align( 2, 0 );
+		int vtablePosition = size;
+		int vtableSize = 4 + 2 * fieldCount;
+		ensureCapacity( size + vtableSize );
+		size += vtableSize;
+		align( 8, 4 );
+		int tablePosition = size;
+
+		int[] positions = new int[table.fields.size( )];
+		int position = tablePosition + 4;
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			int fieldSize = getInlineSize( table.fields.get( i ) );
+			position = ( position + fieldSize - 1 ) / fieldSize * fieldSize;
+			positions[i] = position;
+			position += fieldSize;
+		}
+
+		ensureCapacity( position );
+		setShort( vtablePosition, vtableSize );
+		setShort( vtablePosition + 2, position - tablePosition );
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			setShort( vtablePosition + 4 + 2 * table.fields.get( i ).id,
+					positions[i] - tablePosition );
+		}
+		setInt( tablePosition, tablePosition - vtablePosition );
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			Field field = table.fields.get( i );
+			for ( int j = 0; j < field.size; j++ )
+			{
+				buffer[positions[i] + j] = (byte) ( field.value >>> ( 8 * j ) );
+			}
+		}
+		size = position;
+
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			Field field = table.fields.get( i );
+			if ( field.size == OFFSET )
+			{
+				int childPosition;
+				if ( field.child instanceof Table )
+				{
+					childPosition = writeTable( (Table) field.child );
+				}
+				else if ( field.child instanceof Vector )
+				{
+					childPosition = writeVector( (Vector) field.child );
+				}
+				else
+				{
+					childPosition = writeString( (String) field.child );
+				}
+				setInt( positions[i], childPosition - positions[i] );
+			}
+		}
+		return tablePosition;
+	}
+
+	private int writeString( String value )
+	{
+		byte[] bytes;
+		try
+		{
+			bytes = value.getBytes( "UTF-8" ); //$NON-NLS-1$
+		}
+		catch ( UnsupportedEncodingException e )
+		{
+			throw new IllegalStateException( e.getMessage( ) );
+		}
+		align( 4, 0 );
+		int position = size;
+		putInt( bytes.length );
+		put( bytes );
+		put( new byte[1] );
+		return position;
+	}
+
+	private int writeVector( Vector vector )
+	{
+		if ( vector.structs != null )
+		{
+			// the structs after the length are aligned to 8 bytes
+			align( 8, 4 );
+			int position = size;
+			putInt( vector.count );
+			put( vector.structs );
+			return position;
+		}
+		align( 4, 0 );
+		int position = size;
+		putInt( vector.count );
+		ensureCapacity( size + 4 * vector.count );
+		size += 4 * vector.count;
+		for ( int i = 0; i < vector.count; i++ )
+		{
+			int offsetPosition = position + 4 + 4 * i;
+			int tablePosition = writeTable( vector.tables.get( i ) );
+			setInt( offsetPosition, tablePosition - offsetPosition );
+		}
+		return position;
+	}
+
+	/**
+	 * Pads the buffer until the size modulo the alignment equals the
+	 * remainder.
+	 */
+	private void align( int alignment, int remainder )
+	{
+		int padding = ( remainder - size % alignment + alignment ) % alignment;
+		ensureCapacity( size + padding );
+		size += padding;
+	}
+
+	private void ensureCapacity( int capacity )
+	{
+		if ( capacity > buffer.length )
+		{
+			byte[] newBuffer = new byte[Math.max( capacity, buffer.length * 2 )];
+			System.arraycopy( buffer, 0, newBuffer, 0, size );
+			buffer = newBuffer;
+		}
+	}
+
+	private void put( byte[] bytes )
+	{
+		ensureCapacity( size + bytes.length );
+		System.arraycopy( bytes, 0, buffer, size, bytes.length );
+		size += bytes.length;
+	}
+
+	private void putInt( int value )
+	{
+		ensureCapacity( size + 4 );
+		setInt( size, value );
+		size += 4;
+	}
+
+	private void setShort( int position, int value )
+	{
+		buffer[position] = (byte) value;
+		buffer[position + 1] = (byte) ( value >>> 8 );
+	}
+
+	private void setInt( int position, int value )
+	{
+		buffer[position] = (byte) value;
+		buffer[position + 1] = (byte) ( value >>> 8 );
+		buffer[position + 2] = (byte) ( value >>> 16 );
+		buffer[position + 3] = (byte) ( value >>> 24 );
+	}
+}
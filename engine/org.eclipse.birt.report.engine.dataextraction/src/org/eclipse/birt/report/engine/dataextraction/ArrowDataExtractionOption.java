@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction;
+
+import java.util.Map;
+
+
+
+/**
+ * Extends Data Extraction options for Arrow IPC stream format
+ * 
+ */
+public class ArrowDataExtractionOption extends CommonDataExtractionOption
+		implements
+			IArrowDataExtractionOption
+{
+
+	public ArrowDataExtractionOption( )
+	{
+		super( );
+	}
+
+	public ArrowDataExtractionOption( Map options )
+	{
+		super( options );	
+	}
+	
+	/**
+	 * @see org.eclipse.birt.report.engine.dataextraction.IArrowDataExtractionOption#getBatchSize()
+	 */
+	public int getBatchSize( )
+	{
+		return getIntOption( OUTPUT_BATCH_SIZE, DEFAULT_BATCH_SIZE );
+	}
+
+	/**
+	 * @see org.eclipse.birt.report.engine.dataextraction.IArrowDataExtractionOption#setBatchSize(int)
+	 */
+	public void setBatchSize( int batchSize )
+	{
+		setOption( OUTPUT_BATCH_SIZE, Integer.valueOf( batchSize ) );
+	}
+	
+	public boolean isDictionaryEncode( )
+	{
+		return getBooleanOption( OUTPUT_DICTIONARY_ENCODE, true );
+	}
+
+	public void setDictionaryEncode( boolean isDictionaryEncode )
+	{
+		setOption( OUTPUT_DICTIONARY_ENCODE, isDictionaryEncode );
+	}
+	
+}
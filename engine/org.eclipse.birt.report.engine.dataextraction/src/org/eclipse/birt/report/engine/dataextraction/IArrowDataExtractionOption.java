@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction;
+
+
+/**
+ * Extends Data Extraction options for Arrow IPC stream format
+ * 
+ */
+public interface IArrowDataExtractionOption extends ICommonDataExtractionOption
+{
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+
+	/**
+	 * the max count of rows in a record batch
+	 */
+	public static final String OUTPUT_BATCH_SIZE = "BatchSize"; //$NON-NLS-1$
+
+	/**
+	 * the option checks if the string columns are dictionary encoded.
+	 */
+	public static final String OUTPUT_DICTIONARY_ENCODE = "DictionaryEncode"; //$NON-NLS-1$
+
+	/**
+	 * Sets the max count of rows in a record batch
+	 * 
+	 * @param batchSize
+	 */
+	void setBatchSize( int batchSize );
+
+	/**
+	 * Returns the max count of rows in a record batch
+	 * 
+	 * @return int
+	 */
+	int getBatchSize( );
+
+	boolean isDictionaryEncode( );
+
+	void setDictionaryEncode( boolean isDictionaryEncode );
+}
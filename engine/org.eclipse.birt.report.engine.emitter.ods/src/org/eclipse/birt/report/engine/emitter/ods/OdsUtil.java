@@ -25,7 +25,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.birt.core.format.DateFormatter;
-import org.eclipse.birt.core.format.NumberFormatter;
+import org.eclipse.birt.core.format.FormatterCache;
 import org.eclipse.birt.core.format.StringFormatter;
 import org.eclipse.birt.report.engine.emitter.ods.GroupInfo.Position;
 import org.eclipse.birt.report.engine.emitter.ods.layout.OdsLayoutEngine;
@@ -487,7 +487,7 @@ public class OdsUtil extends OdfUtil
 //			{
 //				return "Scientific";
 //			}
-			return new NumberFormatter( val ).getPattern( );
+			return FormatterCache.getNumberFormatter( val, null ).getPattern( );
 		}
 		else if ( val != null && data instanceof String )
 		{
@@ -30,6 +30,8 @@ public class AllTests
 		
 		/* in package: org.eclipse.birt.report.engine.emitter.pdf */
 		suite.addTestSuite( org.eclipse.birt.report.engine.emitter.pdf.PDFEmitterTest.class );
+		suite.addTestSuite( org.eclipse.birt.report.engine.emitter.pdf.PDFImageCacheTest.class );
+		suite.addTestSuite( org.eclipse.birt.report.engine.emitter.pdf.PDFOutputMergerTest.class );
 		
 		//$JUnit-END$
 		return suite;
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter.pdf;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.report.engine.api.EngineConfig;
+import org.eclipse.birt.report.engine.api.IReportEngine;
+
+import com.lowagie.text.Image;
+
+public class PDFImageCacheTest extends TestCase
+{
+
+	public void testGetImage( ) throws Exception
+	{
+		PDFImageCache cache = new PDFImageCache( PDFImageCache.DEFAULT_CAPACITY );
+		byte[] png = createPNG( 0xFF0000 );
+		Image image = cache.getImage( png );
+		assertSame( image, cache.getImage( png ) );
+		// the same content read from another source
+		assertSame( image, cache.getImage( (byte[]) png.clone( ) ) );
+		assertNotSame( image, cache.getImage( createPNG( 0x00FF00 ) ) );
+		assertEquals( 2, cache.getSize( ) );
+		assertEquals( 2, cache.getHitCount( ) );
+		assertEquals( 2, cache.getMissCount( ) );
+
+		cache.setCapacity( 0 );
+		assertEquals( 0, cache.getSize( ) );
+		assertNotSame( image, cache.getImage( png ) );
+		assertEquals( 0, cache.getSize( ) );
+	}
+
+	/**
+	 * the template images are filled by the PDF writer of each document
+	 */
+	public void testTemplateImage( ) throws Exception
+	{
+		PDFImageCache cache = new PDFImageCache( PDFImageCache.DEFAULT_CAPACITY );
+		byte[] wmf = createWMF( );
+		Image image = cache.getImage( wmf );
+		assertTrue( image.isImgTemplate( ) );
+		assertNotSame( image, cache.getImage( wmf ) );
+		assertEquals( 0, cache.getSize( ) );
+	}
+
+	public void testEngineCache( ) throws Exception
+	{
+		IReportEngine engine = createEngine( null );
+		PDFImageCache cache = PDFImageCache.getInstance( engine );
+		assertSame( cache, PDFImageCache.getInstance( engine ) );
+		assertEquals( PDFImageCache.DEFAULT_CAPACITY, cache.getCapacity( ) );
+
+		HashMap appContext = new HashMap( );
+		appContext.put( PDFImageCache.APPCONTEXT_IMAGE_CACHE_SIZE, "1024" ); //$NON-NLS-1$
+		IReportEngine another = createEngine( appContext );
+		PDFImageCache anotherCache = PDFImageCache.getInstance( another );
+		assertNotSame( cache, anotherCache );
+		assertEquals( 1024, anotherCache.getCapacity( ) );
+
+		appContext.put( PDFImageCache.APPCONTEXT_IMAGE_CACHE_SIZE,
+				new Long( 0 ) );
+		assertEquals( 0, PDFImageCache.getInstance( createEngine( appContext ) )
+				.getCapacity( ) );
+	}
+
+	private IReportEngine createEngine( HashMap appContext )
+	{
+		final EngineConfig config = new EngineConfig( );
+		if ( appContext != null )
+		{
+			config.setAppContext( appContext );
+		}
+		return (IReportEngine) Proxy.newProxyInstance( IReportEngine.class
+				.getClassLoader( ), new Class[]{IReportEngine.class},
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						String name = method.getName( );
+						if ( "getConfig".equals( name ) ) //$NON-NLS-1$
+						{
+							return config;
+						}
+						if ( "hashCode".equals( name ) ) //$NON-NLS-1$
+						{
+							return Integer.valueOf( System
+									.identityHashCode( proxy ) );
+						}
+						if ( "equals".equals( name ) ) //$NON-NLS-1$
+						{
+							return Boolean.valueOf( proxy == args[0] );
+						}
+						return null;
+					}
+				} );
+	}
+
+	private byte[] createPNG( int rgb ) throws Exception
+	{
+		BufferedImage image = new BufferedImage( 4, 4,
+				BufferedImage.TYPE_INT_RGB );
+		for ( int x = 0; x < 4; x++ )
+		{
+			for ( int y = 0; y < 4; y++ )
+			{
+				image.setRGB( x, y, rgb );
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		ImageIO.write( image, "png", out ); //$NON-NLS-1$
+		return out.toByteArray( );
+	}
+
+	/**
+	 * Creates the placeable header of a one inch WMF image.
+	 */
+	private byte[] createWMF( )
+	{
+		return new byte[]{(byte) 0xD7, (byte) 0xCD, (byte) 0xC6, (byte) 0x9A,
+				// handle
+				0, 0,
+				// left, top, right, bottom
+				0, 0, 0, 0, (byte) 0xA0, 0x05, (byte) 0xA0, 0x05,
+				// units per inch
+				(byte) 0xA0, 0x05,
+				// reserved and checksum
+				0, 0, 0, 0, 0, 0};
+	}
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter.pdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.report.engine.api.RenderOption;
+import org.eclipse.birt.report.engine.emitter.EngineEmitterServices;
+
+import com.lowagie.text.Chapter;
+import com.lowagie.text.Document;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.SimpleBookmark;
+
+public class PDFOutputMergerTest extends TestCase
+{
+
+	public void testMerge( ) throws Exception
+	{
+		List<InputStream> outputs = new ArrayList<InputStream>( );
+		outputs.add( new ByteArrayInputStream( createPDF( "first", 2 ) ) ); //$NON-NLS-1$
+		outputs.add( new ByteArrayInputStream( createPDF( "second", 1 ) ) ); //$NON-NLS-1$
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		RenderOption option = new RenderOption( );
+		option.setOutputStream( out );
+		// without the TOC, the outlines of the files are appended
+		new PDFOutputMerger( ).merge( new EngineEmitterServices( null,
+				option, null ), null, outputs );
+
+		PdfReader reader = new PdfReader( out.toByteArray( ) );
+		assertEquals( 3, reader.getNumberOfPages( ) );
+		// the document information of the first file is kept
+		assertEquals( "first", reader.getInfo( ).get( "Title" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		// the outline of the second file refers to the third page
+		List bookmarks = SimpleBookmark.getBookmark( reader );
+		assertEquals( 3, bookmarks.size( ) );
+		Map bookmark = (Map) bookmarks.get( 2 );
+		assertTrue( ( (String) bookmark.get( "Title" ) ).endsWith( "second 0" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue( ( (String) bookmark.get( "Page" ) ).startsWith( "3 " ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		reader.close( );
+	}
+
+	/**
+	 * Creates a PDF file with a chapter on each page.
+	 */
+	private byte[] createPDF( String title, int pageCount ) throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		Document doc = new Document( );
+		PdfWriter.getInstance( doc, out );
+		doc.addTitle( title );
+		doc.open( );
+		for ( int i = 0; i < pageCount; i++ )
+		{
+			Chapter chapter = new Chapter( title + " " + i, 1 ); //$NON-NLS-1$
+			chapter.add( new Paragraph( title ) );
+			doc.add( chapter );
+		}
+		doc.close( );
+		return out.toByteArray( );
+	}
+}
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter.pdf;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.report.engine.api.EngineConfig;
+import org.eclipse.birt.report.engine.api.IReportEngine;
+
+import com.lowagie.text.BadElementException;
+import com.lowagie.text.Image;
+
+/**
+ * The decoded images shared by the PDF documents rendered by a report engine.
+ * The images are keyed by the digest of their content, so the same image got
+ * from an URI, embedded in a design or generated by a chart is decoded only
+ * once, no matter which report renders it.
+ *
+ * The cache is bounded by the memory used by the decoded images, the least
+ * recently used images are evicted first. The decoded images are only read
+ * by the PDF writers, so they can be used by several render tasks at the same
+ * time. The template images (such as WMF) are bound to the PDF writer which
+ * reads them, they are never cached. The templates drawing the images are
+ * bound to a PDF writer too, they are still cached by each PDFPageDevice.
+ */
+public class PDFImageCache
+{
+
+	protected static Logger logger = Logger.getLogger( PDFImageCache.class
+			.getName( ) );
+
+	/**
+	 * the default memory used by the cached images, in bytes
+	 */
+	public static final long DEFAULT_CAPACITY = 16 * 1024 * 1024;
+
+	/**
+	 * the key of the memory used by the cached images in the application
+	 * context of the engine configuration, the cache is disabled if it is
+	 * less than 1.
+	 */
+	public static final String APPCONTEXT_IMAGE_CACHE_SIZE = "org.eclipse.birt.report.engine.emitter.pdf.imageCacheSize"; //$NON-NLS-1$
+
+	/**
+	 * the caches of the report engines, the cache is released with its engine
+	 */
+	private static Map<IReportEngine, PDFImageCache> instances = new WeakHashMap<IReportEngine, PDFImageCache>( );
+
+	private long capacity;
+
+	private long weight;
+
+	private long hitCount;
+
+	private long missCount;
+
+	private LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(
+			16, 0.75f, true );
+
+	PDFImageCache( long capacity )
+	{
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Gets the cache shared by the PDF documents rendered by the engine. The
+	 * cache is created with the capacity defined by
+	 * APPCONTEXT_IMAGE_CACHE_SIZE in the application context of the engine
+	 * configuration.
+	 *
+	 * @param engine
+	 *            the report engine
+	 * @return the cache of the engine
+	 */
+	public static synchronized PDFImageCache getInstance( IReportEngine engine )
+	{
+		PDFImageCache cache = instances.get( engine );
+		if ( cache == null )
+		{
+			cache = new PDFImageCache( getCapacity( engine.getConfig( ) ) );
+			instances.put( engine, cache );
+		}
+		return cache;
+	}
+
+	private static long getCapacity( EngineConfig config )
+	{
+		Map appContext = config == null ? null : config.getAppContext( );
+		if ( appContext == null )
+		{
+			return DEFAULT_CAPACITY;
+		}
+		Object value = appContext.get( APPCONTEXT_IMAGE_CACHE_SIZE );
+		if ( value instanceof Number )
+		{
+			return ( (Number) value ).longValue( );
+		}
+		if ( value instanceof String )
+		{
+			try
+			{
+				return Long.parseLong( (String) value );
+			}
+			catch ( NumberFormatException ex )
+			{
+				logger.log( Level.WARNING, "invalid image cache size: {0}", //$NON-NLS-1$
+						value );
+			}
+		}
+		return DEFAULT_CAPACITY;
+	}
+
+	/**
+	 * Gets the decoded image, the image is decoded and cached if it is not in
+	 * the cache.
+	 *
+	 * @param imageData
+	 *            the content of the image
+	 * @return the decoded image, which must not be changed by the caller
+	 *         unless it is a template image.
+	 * @throws BadElementException
+	 * @throws IOException
+	 */
+	public Image getImage( byte[] imageData ) throws BadElementException,
+			IOException
+	{
+		String key = null;
+		if ( getCapacity( ) > 0 )
+		{
+			key = createKey( imageData );
+		}
+		if ( key == null )
+		{
+			return Image.getInstance( imageData );
+		}
+		Image image = get( key );
+		if ( image == null )
+		{
+			// decode the image out of the lock, it is harmless if several
+			// threads decode the same image at the same time
+			image = Image.getInstance( imageData );
+			// the template images are filled by the PDF writer
+			if ( !image.isImgTemplate( ) )
+			{
+				put( key, image, getWeight( image, imageData ) );
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Sets the max memory used by the cached images. The cache is disabled if
+	 * the capacity is less than 1.
+	 *
+	 * @param capacity
+	 *            the capacity in bytes
+	 */
+	public synchronized void setCapacity( long capacity )
+	{
+		this.capacity = capacity;
+		evict( );
+	}
+
+	public synchronized long getCapacity( )
+	{
+		return capacity;
+	}
+
+	/**
+	 * @return the memory used by the cached images
+	 */
+	public synchronized long getWeight( )
+	{
+		return weight;
+	}
+
+	public synchronized int getSize( )
+	{
+		return entries.size( );
+	}
+
+	public synchronized long getHitCount( )
+	{
+		return hitCount;
+	}
+
+	public synchronized long getMissCount( )
+	{
+		return missCount;
+	}
+
+	public synchronized void clear( )
+	{
+		entries.clear( );
+		weight = 0;
+	}
+
+	synchronized Image get( String key )
+	{
+		CacheEntry entry = entries.get( key );
+		if ( entry == null )
+		{
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		return entry.image;
+	}
+
+	synchronized void put( String key, Image image, long imageWeight )
+	{
+		if ( imageWeight > capacity )
+		{
+			return;
+		}
+		CacheEntry entry = entries.put( key, new CacheEntry( image,
+				imageWeight ) );
+		if ( entry != null )
+		{
+			weight -= entry.weight;
+		}
+		weight += imageWeight;
+		evict( );
+	}
+
+	private void evict( )
+	{
+		Iterator<CacheEntry> itr = entries.values( ).iterator( );
+		while ( weight > capacity && itr.hasNext( ) )
+		{
+			CacheEntry entry = itr.next( );
+			weight -= entry.weight;
+			itr.remove( );
+		}
+	}
+
+	/**
+	 * Creates the key of the image from the digest of its content.
+	 *
+	 * @param imageData
+	 * @return null if the digest is not supported
+	 */
+	static String createKey( byte[] imageData )
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance( "MD5" ).digest(
+					imageData );
+			StringBuffer buffer = new StringBuffer( );
+			for ( int i = 0; i < digest.length; i++ )
+			{
+				int value = digest[i] & 0xFF;
+				if ( value < 0x10 )
+				{
+					buffer.append( '0' );
+				}
+				buffer.append( Integer.toHexString( value ) );
+			}
+			buffer.append( ':' );
+			buffer.append( imageData.length );
+			return buffer.toString( );
+		}
+		catch ( NoSuchAlgorithmException ex )
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Estimates the memory used by the decoded image. The decoded data of
+	 * PNG, GIF and BMP images is kept by the image, JPEG images keep the
+	 * original content.
+	 */
+	private static long getWeight( Image image, byte[] imageData )
+	{
+		byte[] rawData = image.getRawData( );
+		long result = rawData != null ? rawData.length : imageData.length;
+		Image mask = image.getImageMask( );
+		if ( mask != null && mask.getRawData( ) != null )
+		{
+			result += mask.getRawData( ).length;
+		}
+		return result;
+	}
+
+	private static class CacheEntry
+	{
+
+		Image image;
+		long weight;
+
+		CacheEntry( Image image, long weight )
+		{
+			this.image = image;
+			this.weight = weight;
+		}
+	}
+}
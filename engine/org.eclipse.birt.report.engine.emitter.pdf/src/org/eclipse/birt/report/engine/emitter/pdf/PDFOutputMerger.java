@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter.pdf;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.report.engine.api.EngineException;
+import org.eclipse.birt.report.engine.api.ITOCTree;
+import org.eclipse.birt.report.engine.api.TOCNode;
+import org.eclipse.birt.report.engine.api.script.instance.IScriptStyle;
+import org.eclipse.birt.report.engine.emitter.EmitterUtil;
+import org.eclipse.birt.report.engine.emitter.IEmitterServices;
+import org.eclipse.birt.report.engine.emitter.IOutputMerger;
+import org.eclipse.birt.report.engine.i18n.MessageConstants;
+import org.eclipse.birt.report.engine.layout.pdf.util.PropertyUtil;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Font;
+import com.lowagie.text.pdf.PdfArray;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfNameTree;
+import com.lowagie.text.pdf.PdfNull;
+import com.lowagie.text.pdf.PdfNumber;
+import com.lowagie.text.pdf.PdfObject;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.SimpleBookmark;
+import com.lowagie.text.pdf.SimpleNamedDestination;
+
+/**
+ * Merges the PDF files of the page ranges into one PDF file. The pages are
+ * copied without being rendered again. The named destinations of the files
+ * are merged with their page numbers shifted, so the links to the bookmarks
+ * of the other files still resolve, and the outline is created once from the
+ * TOC of the whole document.
+ */
+public class PDFOutputMerger implements IOutputMerger
+{
+
+	protected static Logger logger = Logger.getLogger( PDFOutputMerger.class
+			.getName( ) );
+
+	/**
+	 * The max number of pdf outline, as the TOCHandler.
+	 */
+	private static final int MAX_OUTLINE_COUNT = 70000;
+
+	public void merge( IEmitterServices services, ITOCTree tocTree,
+			List<InputStream> outputs ) throws BirtException
+	{
+		OutputStream output = EmitterUtil.getOuputStream( services,
+				"report.pdf" ); //$NON-NLS-1$
+		try
+		{
+			merge( outputs, tocTree == null ? null : tocTree.getRoot( ),
+					output );
+		}
+		catch ( IOException ex )
+		{
+			throw new EngineException( MessageConstants.FAILED_TO_MERGE_OUTPUTS,
+					ex );
+		}
+		catch ( DocumentException ex )
+		{
+			throw new EngineException( MessageConstants.FAILED_TO_MERGE_OUTPUTS,
+					ex );
+		}
+		finally
+		{
+			try
+			{
+				output.close( );
+			}
+			catch ( IOException ex )
+			{
+				logger.log( Level.WARNING, ex.getMessage( ), ex );
+			}
+		}
+	}
+
+	/**
+	 * Copies the pages of the PDF files into the output.
+	 *
+	 * @param inputs
+	 *            the PDF files in page order
+	 * @param tocRoot
+	 *            the root of the document TOC. If it is null, the outlines of
+	 *            the files are appended instead.
+	 * @param output
+	 *            the merged PDF file
+	 */
+	protected void merge( List<InputStream> inputs, TOCNode tocRoot,
+			OutputStream output ) throws IOException, DocumentException
+	{
+		Document doc = new Document( );
+		PdfCopy copy = new PdfCopy( doc, output );
+		copy.setFullCompression( );
+		List bookmarks = new ArrayList( );
+		// the destinations of all the files, keyed by the bookmark
+		HashMap<String, String> destinations = new HashMap<String, String>( );
+		int pageCount = 0;
+		for ( InputStream input : inputs )
+		{
+			PdfReader reader = new PdfReader( input );
+			try
+			{
+				if ( !doc.isOpen( ) )
+				{
+					// the document information is kept as the first file
+					copyInfo( reader, doc );
+					doc.open( );
+				}
+				addDestinations( SimpleNamedDestination.getNamedDestination(
+						reader, false ), pageCount, destinations );
+				// PdfCopy doesn't copy the named destinations, the links and
+				// outlines to the bookmarks of the file refer to its pages
+				// directly
+				reader.consolidateNamedDestinations( );
+				if ( tocRoot == null )
+				{
+					List marks = SimpleBookmark.getBookmark( reader );
+					if ( marks != null )
+					{
+						SimpleBookmark.shiftPageNumbers( marks, pageCount,
+								null );
+						bookmarks.addAll( marks );
+					}
+				}
+				int count = reader.getNumberOfPages( );
+				for ( int i = 1; i <= count; i++ )
+				{
+					copy.addPage( copy.getImportedPage( reader, i ) );
+				}
+				pageCount += count;
+				copy.freeReader( reader );
+			}
+			finally
+			{
+				reader.close( );
+			}
+		}
+		if ( !doc.isOpen( ) )
+		{
+			// to ensure we create a PDF file
+			doc.open( );
+			copy.setPageEmpty( false );
+		}
+		if ( !destinations.isEmpty( ) )
+		{
+			// the links to the bookmarks of other files are resolved by name
+			writeDestinations( copy, destinations );
+		}
+		if ( tocRoot != null )
+		{
+			createOutlines( tocRoot, destinations, bookmarks, new int[1] );
+		}
+		if ( bookmarks.isEmpty( ) )
+		{
+			copy.setViewerPreferences( PdfWriter.PageModeUseNone );
+		}
+		else
+		{
+			copy.setViewerPreferences( PdfWriter.PageModeUseOutlines );
+			copy.setOutlines( bookmarks );
+		}
+		doc.close( );
+	}
+
+	/**
+	 * Adds the named destinations of a file, the destinations are strings
+	 * starting with the page number, as created by SimpleNamedDestination. A
+	 * bookmark of a content split over several files refers to its first
+	 * page.
+	 */
+	private void addDestinations( Map names, int pageShift,
+			Map<String, String> destinations )
+	{
+		Iterator iter = names.entrySet( ).iterator( );
+		while ( iter.hasNext( ) )
+		{
+			Map.Entry entry = (Map.Entry) iter.next( );
+			if ( destinations.containsKey( entry.getKey( ) ) )
+			{
+				continue;
+			}
+			String destination = (String) entry.getValue( );
+			int index = destination.indexOf( ' ' );
+			String page = index == -1 ? destination : destination.substring(
+					0, index );
+			String position = index == -1 ? "" : destination //$NON-NLS-1$
+					.substring( index );
+			destinations.put( (String) entry.getKey( ), String
+					.valueOf( Integer.parseInt( page ) + pageShift )
+					+ position );
+		}
+	}
+
+	/**
+	 * Writes the destinations as the Dests name tree of the catalog.
+	 */
+	private void writeDestinations( PdfCopy copy,
+			Map<String, String> destinations ) throws IOException
+	{
+		HashMap names = new HashMap( );
+		for ( Map.Entry<String, String> entry : destinations.entrySet( ) )
+		{
+			StringTokenizer tokens = new StringTokenizer( entry.getValue( ) );
+			PdfArray destination = new PdfArray( );
+			destination.add( copy.getPageReference( Integer.parseInt( tokens
+					.nextToken( ) ) ) );
+			if ( !tokens.hasMoreTokens( ) )
+			{
+				destination.add( PdfName.FIT );
+			}
+			else
+			{
+				destination.add( new PdfName( tokens.nextToken( ) ) );
+				while ( tokens.hasMoreTokens( ) )
+				{
+					String token = tokens.nextToken( );
+					destination.add( "null".equals( token ) //$NON-NLS-1$
+							? (PdfObject) PdfNull.PDFNULL
+							: new PdfNumber( token ) );
+				}
+			}
+			names.put( entry.getKey( ), destination );
+		}
+		PdfDictionary nameTree = new PdfDictionary( );
+		nameTree.put( PdfName.DESTS, copy.addToBody(
+				PdfNameTree.writeTree( names, copy ) ).getIndirectReference( ) );
+		copy.getExtraCatalog( ).put( PdfName.NAMES, nameTree );
+	}
+
+	/**
+	 * Creates the outlines of the children of the TOC node, in the map format
+	 * of SimpleBookmark. The children of a node whose bookmark is not on the
+	 * merged pages are added to the parent outline, as the TOCHandler does.
+	 *
+	 * @param tocNode
+	 *            the TOC node
+	 * @param destinations
+	 *            the destinations of the merged pages
+	 * @param outlines
+	 *            the outlines to add to
+	 * @param counter
+	 *            the count of the created outlines
+	 */
+	protected void createOutlines( TOCNode tocNode,
+			Map<String, String> destinations, List outlines, int[] counter )
+	{
+		if ( tocNode.getChildren( ) == null )
+		{
+			return;
+		}
+		for ( Iterator i = tocNode.getChildren( ).iterator( ); i.hasNext( )
+				&& counter[0] <= MAX_OUTLINE_COUNT; )
+		{
+			TOCNode node = (TOCNode) i.next( );
+			String destination = destinations.get( node.getBookmark( ) );
+			if ( destination == null )
+			{
+				createOutlines( node, destinations, outlines, counter );
+				continue;
+			}
+			HashMap outline = new HashMap( );
+			outline.put( "Title", node.getDisplayString( ) ); //$NON-NLS-1$
+			outline.put( "Action", "GoTo" ); //$NON-NLS-1$ //$NON-NLS-2$
+			outline.put( "Page", destination ); //$NON-NLS-1$
+			counter[0]++;
+			IScriptStyle style = node.getTOCStyle( );
+			Color color = PropertyUtil.getColor( style.getColor( ) );
+			if ( color != null )
+			{
+				outline.put( "Color", color.getRed( ) / 255f + " " //$NON-NLS-1$ //$NON-NLS-2$
+						+ color.getGreen( ) / 255f + " " //$NON-NLS-1$
+						+ color.getBlue( ) / 255f );
+			}
+			int fontStyle = PropertyUtil.getFontStyle( style.getFontStyle( ),
+					style.getFontWeight( ) );
+			if ( ( fontStyle & Font.BOLDITALIC ) != 0 )
+			{
+				String styleValue = ( fontStyle & Font.BOLD ) != 0
+						? "bold" : ""; //$NON-NLS-1$ //$NON-NLS-2$
+				if ( ( fontStyle & Font.ITALIC ) != 0 )
+				{
+					styleValue += " italic"; //$NON-NLS-1$
+				}
+				outline.put( "Style", styleValue.trim( ) ); //$NON-NLS-1$
+			}
+			List kids = new ArrayList( );
+			createOutlines( node, destinations, kids, counter );
+			if ( !kids.isEmpty( ) )
+			{
+				outline.put( "Kids", kids ); //$NON-NLS-1$
+			}
+			outlines.add( outline );
+		}
+	}
+
+	private void copyInfo( PdfReader reader, Document doc )
+	{
+		Iterator iter = reader.getInfo( ).entrySet( ).iterator( );
+		while ( iter.hasNext( ) )
+		{
+			Map.Entry entry = (Map.Entry) iter.next( );
+			String name = (String) entry.getKey( );
+			// the producer and the dates are set by the writer
+			if ( !"Producer".equals( name ) && !"CreationDate".equals( name ) //$NON-NLS-1$ //$NON-NLS-2$
+					&& !"ModDate".equals( name ) ) //$NON-NLS-1$
+			{
+				doc.addHeader( name, (String) entry.getValue( ) );
+			}
+		}
+	}
+}
@@ -145,7 +145,7 @@ public class PDFPage extends AbstractPage
 		}
 		if ( image == null )
 		{
-			Image img = Image.getInstance( imageData );
+			Image img = getImage( imageData );
 			if ( imageHeight == 0 || imageWidth == 0 )
 			{
 				int resolutionX = img.getDpiX( );
@@ -237,7 +237,7 @@ public class PDFPage extends AbstractPage
 		else
 		{
 			// PNG/JPG/BMP... images:
-			Image image = Image.getInstance( imageData );
+			Image image = getImage( imageData );
 			if ( imageId == null )
 			{
 				// image without imageId, not able to cache.
@@ -258,6 +258,21 @@ public class PDFPage extends AbstractPage
 		}
 	}
 
+	/**
+	 * Decodes the image, the decoded images are shared by the documents
+	 * rendered by the same engine.
+	 */
+	private Image getImage( byte[] imageData ) throws BadElementException,
+			IOException
+	{
+		PDFImageCache cache = pageDevice.getDecodedImageCache( );
+		if ( cache == null )
+		{
+			return Image.getInstance( imageData );
+		}
+		return cache.getImage( imageData );
+	}
+
 	/**
 	 * @deprecated
 	 */
@@ -63,6 +63,12 @@ public class PDFPageDevice implements IPageDevice
 
 	protected HashMap<String, PdfTemplate> imageCache = new HashMap<String, PdfTemplate>( );
 
+	/**
+	 * the decoded images shared with the other documents, null if the images
+	 * are decoded by each document.
+	 */
+	protected PDFImageCache decodedImageCache;
+
 	/**
 	 * the iText and Birt engine version info.
 	 */
@@ -162,6 +168,16 @@ public class PDFPageDevice implements IPageDevice
 		return imageCache;
 	}
 
+	public PDFImageCache getDecodedImageCache( )
+	{
+		return decodedImageCache;
+	}
+
+	public void setDecodedImageCache( PDFImageCache decodedImageCache )
+	{
+		this.decodedImageCache = decodedImageCache;
+	}
+
 	public void close( ) throws Exception
 	{
 		if ( !doc.isOpen( ) )
@@ -19,6 +19,7 @@ import java.util.logging.Level;
 
 import org.eclipse.birt.report.engine.api.EngineException;
 import org.eclipse.birt.report.engine.api.IHTMLActionHandler;
+import org.eclipse.birt.report.engine.api.IReportEngine;
 import org.eclipse.birt.report.engine.api.RenderOption;
 import org.eclipse.birt.report.engine.api.impl.Action;
 import org.eclipse.birt.report.engine.api.script.IReportContext;
@@ -65,6 +66,12 @@ public class PDFRender extends PageDeviceRender
 	{
 		currentPageDevice = new PDFPageDevice( output, title, author, subject,
 				comments, context, report );
+		IReportEngine engine = services.getReportEngine( );
+		if ( engine != null )
+		{
+			currentPageDevice.setDecodedImageCache( PDFImageCache
+					.getInstance( engine ) );
+		}
 		return currentPageDevice;
 	}
 
@@ -29,6 +29,8 @@ public class AllTests
 		
 		/* in package: org.eclipse.birt.report.engine.emitter.prototype.excel */
 		suite.addTestSuite( org.eclipse.birt.report.engine.emitter.prototype.excel.DateSymbolTest.class );
+		suite.addTestSuite( org.eclipse.birt.report.engine.emitter.prototype.excel.XlsxWriterTest.class );
+		suite.addTestSuite( org.eclipse.birt.report.engine.emitter.prototype.excel.ExcelLayoutEngineTest.class );
 		
 		//$JUnit-END$
 		return suite;
@@ -0,0 +1,347 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter.prototype.excel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.report.engine.content.ICellContent;
+import org.eclipse.birt.report.engine.content.IPageContent;
+import org.eclipse.birt.report.engine.content.IReportContent;
+import org.eclipse.birt.report.engine.content.IRowContent;
+import org.eclipse.birt.report.engine.content.ITableContent;
+import org.eclipse.birt.report.engine.content.impl.ReportContent;
+import org.eclipse.birt.report.engine.emitter.excel.BookmarkDef;
+import org.eclipse.birt.report.engine.emitter.excel.IExcelWriter;
+import org.eclipse.birt.report.engine.emitter.excel.SheetData;
+import org.eclipse.birt.report.engine.emitter.excel.StyleEntry;
+import org.eclipse.birt.report.engine.emitter.excel.layout.ColumnsInfo;
+import org.eclipse.birt.report.engine.emitter.excel.layout.ExcelContext;
+import org.eclipse.birt.report.engine.emitter.excel.layout.ExcelLayoutEngine;
+import org.eclipse.birt.report.engine.ir.CellDesign;
+import org.eclipse.birt.report.engine.ir.ColumnDesign;
+import org.eclipse.birt.report.engine.ir.DataItemDesign;
+import org.eclipse.birt.report.engine.ir.DimensionType;
+import org.eclipse.birt.report.engine.ir.GridItemDesign;
+import org.eclipse.birt.report.engine.ir.ImageItemDesign;
+import org.eclipse.birt.report.engine.ir.PageSetupDesign;
+import org.eclipse.birt.report.engine.ir.Report;
+import org.eclipse.birt.report.engine.ir.RowDesign;
+import org.eclipse.birt.report.engine.ir.SimpleMasterPageDesign;
+import org.eclipse.birt.report.engine.ir.TableBandDesign;
+import org.eclipse.birt.report.engine.ir.TableItemDesign;
+
+public class ExcelLayoutEngineTest extends TestCase
+{
+
+	static final int ROW_COUNT = ExcelLayoutEngine.STREAMING_ROW_COUNT * 5 / 2;
+
+	/**
+	 * the second column has cells spanning two rows, the rows written in
+	 * batches are the same as the ones written when the sheet ends.
+	 */
+	public void testStreamRowSpans( ) throws BirtException
+	{
+		Report design = createDesign( 1, true );
+		RowRecorder cached = layout( design, false );
+		RowRecorder streamed = layout( design, true );
+		assertEquals( 1, cached.sheetCount );
+		assertEquals( 1, streamed.sheetCount );
+		assertEquals( ROW_COUNT, cached.rows.size( ) );
+		assertEquals( cached.rows, streamed.rows );
+		assertTrue( streamed.rowsBeforeEnd > 0 );
+		assertEquals( 0, cached.rowsBeforeEnd );
+		// the spanned cell is only output in its first row
+		assertTrue( streamed.rows.get( 0 ).indexOf( "b0(" ) != -1 );
+		assertEquals( -1, streamed.rows.get( 1 ).indexOf( "b" ) );
+	}
+
+	/**
+	 * the second table may split the columns, so no row is written before
+	 * the sheet ends.
+	 */
+	public void testStreamSplitColumns( ) throws BirtException
+	{
+		Report design = createDesign( 2, true );
+		ReportContent report = new ReportContent( );
+		RowRecorder recorder = new RowRecorder( );
+		TestLayoutEngine engine = startSheet( design, report, recorder, true );
+		addTable( engine, report, new int[]{288000, 288000}, ROW_COUNT );
+		addTable( engine, report, new int[]{192000, 192000, 192000},
+				ROW_COUNT );
+		assertEquals( 0, recorder.rows.size( ) );
+		engine.outputSheet( engine.getPage( ) );
+		assertEquals( 1, recorder.sheetCount );
+		assertEquals( ROW_COUNT * 2, recorder.rows.size( ) );
+	}
+
+	/**
+	 * the rows are only streamed when the report is a single table or grid
+	 * with column widths and simple items.
+	 */
+	public void testColumnsFixed( )
+	{
+		assertFalse( TestLayoutEngine.hasFixedColumns( null ) );
+		assertTrue( TestLayoutEngine.hasFixedColumns( createDesign( 1, true ) ) );
+		assertFalse( TestLayoutEngine.hasFixedColumns( createDesign( 2, true ) ) );
+		assertFalse( TestLayoutEngine.hasFixedColumns( createDesign( 1, false ) ) );
+
+		Report design = createDesign( 1, true );
+		TableItemDesign table = (TableItemDesign) design.getContent( 0 );
+		RowDesign row = (RowDesign) table.getDetail( ).getContent( 0 );
+		row.getCell( 0 ).addContent( new ImageItemDesign( ) );
+		assertFalse( TestLayoutEngine.hasFixedColumns( design ) );
+
+		design = new Report( );
+		GridItemDesign grid = new GridItemDesign( );
+		ColumnDesign column = new ColumnDesign( );
+		column.setWidth( new DimensionType( 2, DimensionType.UNITS_IN ) );
+		grid.addColumn( column );
+		grid.addRow( createRow( 1 ) );
+		design.addContent( grid );
+		assertTrue( TestLayoutEngine.hasFixedColumns( design ) );
+
+		SimpleMasterPageDesign masterPage = new SimpleMasterPageDesign( );
+		masterPage.addFooter( new GridItemDesign( ) );
+		design.setPageSetup( new PageSetupDesign( ) );
+		design.getPageSetup( ).addMasterPage( masterPage );
+		assertFalse( TestLayoutEngine.hasFixedColumns( design ) );
+	}
+
+	private RowRecorder layout( Report design, boolean streaming )
+			throws BirtException
+	{
+		ReportContent report = new ReportContent( );
+		RowRecorder recorder = new RowRecorder( );
+		TestLayoutEngine engine = startSheet( design, report, recorder,
+				streaming );
+		addTable( engine, report, new int[]{288000, 288000}, ROW_COUNT );
+		recorder.rowsBeforeEnd = recorder.rows.size( );
+		engine.outputSheet( engine.getPage( ) );
+		return recorder;
+	}
+
+	private TestLayoutEngine startSheet( Report design, ReportContent report,
+			RowRecorder recorder, boolean streaming ) throws BirtException
+	{
+		ExcelContext context = new ExcelContext( );
+		context.setStreamingXlsx( streaming );
+		TestLayoutEngine engine = new TestLayoutEngine( context, design,
+				recorder );
+		engine.initalize( null );
+		SimpleMasterPageDesign masterPage = new SimpleMasterPageDesign( );
+		masterPage.setPageSize( new DimensionType( 8, DimensionType.UNITS_IN ),
+				new DimensionType( 11, DimensionType.UNITS_IN ) );
+		DimensionType margin = new DimensionType( 0, DimensionType.UNITS_IN );
+		masterPage.setMargin( margin, margin, margin, margin );
+		IPageContent pageContent = report.createPageContent( );
+		pageContent.setGenerateBy( masterPage );
+		engine.startPage( pageContent );
+		return engine;
+	}
+
+	/**
+	 * Adds a table, the first column of each row has a cell, the other
+	 * columns have a cell spanning two rows every two rows.
+	 */
+	private void addTable( TestLayoutEngine engine, ReportContent report,
+			int[] columns, int rowCount )
+	{
+		ITableContent table = report.createTableContent( );
+		engine.addTable( table, new ColumnsInfo( columns ), null );
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			IRowContent row = report.createRowContent( );
+			row.setParent( table );
+			engine.addRow( row.getComputedStyle( ), null );
+			addCell( engine, report, row, 0, 1, "a" + i );
+			if ( i % 2 == 0 )
+			{
+				addCell( engine, report, row, 1, 2, "b" + i );
+				for ( int j = 2; j < columns.length; j++ )
+				{
+					addCell( engine, report, row, j, 2, "c" + i );
+				}
+			}
+			engine.endRow( ExcelLayoutEngine.DEFAULT_ROW_HEIGHT );
+		}
+		engine.endTable( table );
+	}
+
+	/**
+	 * Creates a report of tables with two columns, each detail row has a
+	 * data item in every cell.
+	 */
+	private Report createDesign( int tableCount, boolean columnWidths )
+	{
+		Report design = new Report( );
+		for ( int i = 0; i < tableCount; i++ )
+		{
+			TableItemDesign table = new TableItemDesign( );
+			for ( int j = 0; j < 2; j++ )
+			{
+				ColumnDesign column = new ColumnDesign( );
+				if ( columnWidths )
+				{
+					column.setWidth( new DimensionType( 2,
+							DimensionType.UNITS_IN ) );
+				}
+				table.addColumn( column );
+			}
+			TableBandDesign detail = new TableBandDesign( );
+			detail.addRow( createRow( 2 ) );
+			table.setDetail( detail );
+			design.addContent( table );
+		}
+		return design;
+	}
+
+	private RowDesign createRow( int cellCount )
+	{
+		RowDesign row = new RowDesign( );
+		for ( int i = 0; i < cellCount; i++ )
+		{
+			CellDesign cell = new CellDesign( );
+			cell.addContent( new DataItemDesign( ) );
+			row.addCell( cell );
+		}
+		return row;
+	}
+
+	private void addCell( TestLayoutEngine engine, ReportContent report,
+			IRowContent row, int column, int rowSpan, String value )
+	{
+		ICellContent cell = report.createCellContent( );
+		cell.setParent( row );
+		cell.setColumn( column );
+		cell.setRowSpan( rowSpan );
+		engine.addCell( cell, column, 1, rowSpan, cell.getComputedStyle( ) );
+		engine.addData( value, cell.getComputedStyle( ), null, null, 0 );
+		engine.endCell( cell );
+	}
+
+	private static class TestLayoutEngine extends ExcelLayoutEngine
+	{
+
+		private Report design;
+		private RowRecorder recorder;
+
+		TestLayoutEngine( ExcelContext context, Report design,
+				RowRecorder recorder )
+		{
+			super( context, null );
+			this.design = design;
+			this.recorder = recorder;
+		}
+
+		protected void createWriter( )
+		{
+			writer = recorder;
+		}
+
+		protected Report getReportDesign( )
+		{
+			return design;
+		}
+
+		static boolean hasFixedColumns( Report design )
+		{
+			return ExcelLayoutEngine.isColumnsFixed( design );
+		}
+	}
+
+	/**
+	 * Records the data of each row as value(column,colSpan,rowSpan).
+	 */
+	private static class RowRecorder implements IExcelWriter
+	{
+
+		List<String> rows = new ArrayList<String>( );
+		int rowsBeforeEnd;
+		int sheetCount;
+		private StringBuffer row;
+
+		public void start( IReportContent report,
+				Map<StyleEntry, Integer> styles,
+				HashMap<String, BookmarkDef> bookmarkList )
+		{
+		}
+
+		public void end( )
+		{
+		}
+
+		public void startSheet( double[] coordinates, String pageHeader,
+				String pageFooter, String sheetName )
+		{
+			sheetCount++;
+		}
+
+		public void startSheet( String sheetName )
+		{
+			sheetCount++;
+		}
+
+		public void endSheet( double[] coordinates, String orientation,
+				int pageWidth, int pageHeight, float leftMargin,
+				float rightMargin, float topMargin, float bottomMargin )
+		{
+		}
+
+		public void endSheet( )
+		{
+		}
+
+		public void startRow( double rowHeight )
+		{
+			row = new StringBuffer( );
+		}
+
+		public void startRow( )
+		{
+			row = new StringBuffer( );
+		}
+
+		public void endRow( )
+		{
+			rows.add( row.toString( ) );
+		}
+
+		public void outputData( SheetData data, StyleEntry style, int column,
+				int colSpan )
+		{
+			row.append( data.getValue( ) ).append( '(' ).append( column )
+					.append( ',' ).append( colSpan ).append( ',' )
+					.append( data.getRowSpan( ) ).append( ')' );
+		}
+
+		public void outputData( String sheet, SheetData data,
+				StyleEntry style, int column, int colSpan )
+		{
+			outputData( data, style, column, colSpan );
+		}
+
+		public void outputData( int col, int row, int type, Object value )
+		{
+		}
+
+		public String defineName( String cells )
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter.prototype.excel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.report.engine.emitter.excel.BookmarkDef;
+import org.eclipse.birt.report.engine.emitter.excel.SheetData;
+import org.eclipse.birt.report.engine.emitter.excel.StyleEntry;
+import org.eclipse.birt.report.engine.emitter.excel.XlsxWriter;
+import org.eclipse.birt.report.engine.emitter.excel.layout.ExcelContext;
+
+public class XlsxWriterTest extends TestCase
+{
+
+	public void testWriteRows( ) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		XlsxWriter writer = new XlsxWriter( out, new ExcelContext( ) );
+		writer.startSheet( "dataview" );
+		for ( int i = 0; i < 3; i++ )
+		{
+			writer.startRow( );
+			writer.outputData( 1, 1, SheetData.STRING, "a & b" );
+			writer.outputData( 2, 1, SheetData.NUMBER, Double.valueOf( i ) );
+			writer.endRow( );
+		}
+		writer.endSheet( );
+		writer.start( null, new HashMap<StyleEntry, Integer>( ),
+				new HashMap<String, BookmarkDef>( ) );
+		writer.end( );
+
+		Map<String, String> entries = readEntries( out.toByteArray( ) );
+		assertTrue( entries.containsKey( "[Content_Types].xml" ) );
+		assertTrue( entries.containsKey( "xl/workbook.xml" ) );
+		assertTrue( entries.containsKey( "xl/styles.xml" ) );
+		assertTrue( entries.get( "xl/workbook.xml" ).indexOf(
+				"name=\"dataview\"" ) != -1 );
+
+		// the repeated string is saved once in the shared strings
+		String strings = entries.get( "xl/sharedStrings.xml" );
+		assertEquals( strings.indexOf( "a &amp; b" ),
+				strings.lastIndexOf( "a &amp; b" ) );
+		String sheet = entries.get( "xl/worksheets/sheet1.xml" );
+		assertTrue( sheet.indexOf( "<c r=\"A3\" t=\"s\"><v>0</v></c>" ) != -1 );
+		assertTrue( sheet.indexOf( "<c r=\"B3\"><v>2" ) != -1 );
+	}
+
+	private Map<String, String> readEntries( byte[] content )
+			throws IOException
+	{
+		Map<String, String> entries = new HashMap<String, String>( );
+		ZipInputStream in = new ZipInputStream( new ByteArrayInputStream( content ) );
+		ZipEntry entry = in.getNextEntry( );
+		while ( entry != null )
+		{
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream( );
+			byte[] bytes = new byte[1024];
+			int size = in.read( bytes );
+			while ( size != -1 )
+			{
+				buffer.write( bytes, 0, size );
+				size = in.read( bytes );
+			}
+			entries.put( entry.getName( ), buffer.toString( "UTF-8" ) );
+			entry = in.getNextEntry( );
+		}
+		in.close( );
+		return entries;
+	}
+}
@@ -30,6 +30,10 @@ public class DataCache
 	private List<ArrayList<SheetData>> columns = new ArrayList<ArrayList<SheetData>>( );
 	private int maxColumnCount;
 	private int maxRowIndex = 0;
+	/**
+	 * the index of the first row which hasn't been removed
+	 */
+	private int firstRowIndex = 1;
 	private int offset = 0;
 	private Map<Integer, Float> rowIndex2Height = new HashMap<Integer, Float>( );
 
@@ -179,6 +183,51 @@ public class DataCache
 		return new DataCacheIterator( filter, rowIndexAdjuster );
 	}
 
+	/**
+	 * Gets the iterator of the rows up to the given row.
+	 * 
+	 * @param lastRowIndex
+	 *            the index of the last row to iterate
+	 * @return
+	 */
+	public Iterator<SheetData[]> getRowIterator( int lastRowIndex )
+	{
+		return new DataCacheIterator( null, null, lastRowIndex );
+	}
+
+	/**
+	 * Removes the rows which have been output. The rows after them keep their
+	 * indexes, and the iterators start from the first row kept.
+	 * 
+	 * @param lastRowIndex
+	 *            the index of the last row to remove
+	 */
+	public void removeRows( int lastRowIndex )
+	{
+		for ( ArrayList<SheetData> columnDatas : columns )
+		{
+			int count = 0;
+			while ( count < columnDatas.size( )
+					&& columnDatas.get( count ).getRowIndex( ) <= lastRowIndex )
+			{
+				count++;
+			}
+			columnDatas.subList( 0, count ).clear( );
+		}
+		// the height of the last removed row is still used to calculate the
+		// height of the next row.
+		for ( int i = Math.max( 0, firstRowIndex - 2 ); i < lastRowIndex - 1; i++ )
+		{
+			rowIndex2Height.remove( i );
+		}
+		firstRowIndex = Math.max( firstRowIndex, lastRowIndex + 1 );
+	}
+
+	public int getFirstRowIndex( )
+	{
+		return firstRowIndex;
+	}
+
 	public void setOffset( int offset )
 	{
 		this.offset = offset;
@@ -193,21 +242,29 @@ public class DataCache
 	{
 
 		private int[] columnIndexes;
-		private int rowIndex = 1;
+		private int rowIndex = firstRowIndex;
+		private int lastRowIndex;
 		private DataFilter dataFilter;
 		private RowIndexAdjuster rowIndexAdjuster;
 
 		public DataCacheIterator( DataFilter dataFilter,
 		        RowIndexAdjuster rowIndexAdjuster )
+		{
+			this( dataFilter, rowIndexAdjuster, Integer.MAX_VALUE );
+		}
+
+		public DataCacheIterator( DataFilter dataFilter,
+				RowIndexAdjuster rowIndexAdjuster, int lastRowIndex )
 		{
 			this.dataFilter = dataFilter;
 			this.rowIndexAdjuster = rowIndexAdjuster;
+			this.lastRowIndex = lastRowIndex;
 			columnIndexes = new int[columns.size( )];
 		}
 
 		public boolean hasNext( )
 		{
-			return rowIndex <= maxRowIndex;
+			return rowIndex <= maxRowIndex && rowIndex <= lastRowIndex;
 		}
 
 		public SheetData[] next( )
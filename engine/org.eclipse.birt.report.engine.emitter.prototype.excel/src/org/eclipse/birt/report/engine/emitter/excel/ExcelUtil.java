@@ -27,7 +27,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.birt.core.format.DateFormatter;
-import org.eclipse.birt.core.format.NumberFormatter;
+import org.eclipse.birt.core.format.FormatterCache;
 import org.eclipse.birt.core.format.StringFormatter;
 import org.eclipse.birt.report.engine.css.engine.value.FloatValue;
 import org.eclipse.birt.report.engine.emitter.excel.layout.ExcelLayoutEngine;
@@ -496,7 +496,7 @@ public class ExcelUtil
 			// {
 			// return "Scientific";
 			// }
-			return new NumberFormatter( val ).getPattern( );
+			return FormatterCache.getNumberFormatter( val, null ).getPattern( );
 		}
 		else if ( val != null && data instanceof String )
 		{
@@ -51,20 +51,31 @@ public class ExcelXmlWriter implements IExcelWriter
 
 		static String encodeXLSText( String s )
 		{
-			char[] chars = s.toCharArray( );
-			int length = chars.length;
-			int index = testEscape( chars, XLS_TEXT_ENCODE );
+			int length = s.length( );
+			int index = testEscape( s, XLS_TEXT_ENCODE );
 			if ( index >= length )
 			{
 				return s;
 			}
 
 			StringBuilder sb = new StringBuilder( 2 * length );
-			sb.append( chars, 0, index );
+			sb.append( s, 0, index );
+			encodeXLSText( s, index, sb );
+			return sb.toString( );
+		}
+
+		static int testXLSEscape( String s )
+		{
+			return testEscape( s, XLS_TEXT_ENCODE );
+		}
 
+		static void encodeXLSText( CharSequence chars, int index,
+				StringBuilder sb )
+		{
+			int length = chars.length( );
 			while ( index < length )
 			{
-				char c = chars[index++];
+				char c = chars.charAt( index++ );
 				if ( Character.isHighSurrogate( c ) )
 				{
 					index += decodeSurrogate( c, chars, index, sb );
@@ -83,7 +94,7 @@ public class ExcelXmlWriter implements IExcelWriter
 					{
 						if ( index < length )
 						{
-							char nc = chars[index];
+							char nc = chars.charAt( index );
 							if ( nc == '\n' )
 							{
 								index++;
@@ -106,7 +117,6 @@ public class ExcelXmlWriter implements IExcelWriter
 							Integer.valueOf( c ) );
 				}
 			}
-			return sb.toString( );
 		}
 	}
 
@@ -116,6 +126,18 @@ public class ExcelXmlWriter implements IExcelWriter
 		{
 			return XLSEncodeUtil.encodeXLSText( text );
 		}
+
+		protected void printText( String text )
+		{
+			int index = XLSEncodeUtil.testXLSEscape( text );
+			print( text, 0, index );
+			if ( index < text.length( ) )
+			{
+				encodeBuffer.setLength( 0 );
+				XLSEncodeUtil.encodeXLSText( text, index, encodeBuffer );
+				print( encodeBuffer );
+			}
+		}
 	}
 
 	protected static Logger logger = Logger.getLogger( ExcelXmlWriter.class
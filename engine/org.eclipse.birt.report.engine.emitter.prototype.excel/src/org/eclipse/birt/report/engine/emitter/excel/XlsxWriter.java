@@ -0,0 +1,1255 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter.excel;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.birt.report.engine.content.IHyperlinkAction;
+import org.eclipse.birt.report.engine.content.IReportContent;
+import org.eclipse.birt.report.engine.css.engine.value.FloatValue;
+import org.eclipse.birt.report.engine.css.engine.value.css.CSSConstants;
+import org.eclipse.birt.report.engine.emitter.XMLEncodeUtil;
+import org.eclipse.birt.report.engine.emitter.XMLWriter;
+import org.eclipse.birt.report.engine.emitter.excel.layout.ExcelContext;
+
+/**
+ * Writes the report as an Office 2007 (xlsx) workbook. The cells are written
+ * as soon as they are output and the strings are saved in the shared strings
+ * table, so the memory used by the writer doesn't grow with the count of the
+ * rows.
+ *
+ * The columns of a sheet are written before its rows but they are only known
+ * when the sheet ends, so the rows, merged cells and hyperlinks of a sheet are
+ * written to temporary files and copied to the sheet when it ends. The
+ * styles, shared strings and workbook are written when the report ends.
+ */
+public class XlsxWriter implements IExcelWriter
+{
+
+	protected static Logger logger = Logger.getLogger( XlsxWriter.class
+			.getName( ) );
+
+	/**
+	 * The count of the strings whose index in the shared strings table is
+	 * kept. The cache is cleared when it is full, a string which is not in the
+	 * cache is added to the table again.
+	 */
+	private static final int MAX_CACHED_STRING_COUNT = 10000;
+
+	private static final int CUSTOM_FORMAT_START_ID = 164;
+
+	private static final String SPREADSHEET_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+	private static final String RELATIONSHIP_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+	private static final String PACKAGE_RELATIONSHIP_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+	private static final String CONTENT_TYPES_NS = "http://schemas.openxmlformats.org/package/2006/content-types";
+
+	private static final String DEFAULT_FONT = "<font><sz val=\"10\"/><name val=\"Arial\"/></font>";
+
+	private static final String DEFAULT_XF = "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>";
+
+	private static Map<String, String> namedFormats = new HashMap<String, String>( );
+
+	static
+	{
+		namedFormats.put( "General", null );
+		namedFormats.put( "Fixed", "0.00" );
+		namedFormats.put( "Percent", "0.00%" );
+		namedFormats.put( "Scientific", "0.00E+00" );
+		namedFormats.put( "Standard", "#,##0.00" );
+	}
+
+	private final ExcelContext context;
+	private OutputStream out;
+	private ZipOutputStream zip;
+	private XMLWriterXLSX writer;
+
+	private List<String> sheetNames = new ArrayList<String>( );
+
+	private TempXMLWriter sharedStrings;
+	private Map<String, Integer> stringIndexes = new HashMap<String, Integer>( );
+	private int stringCount;
+
+	private String pageHeader, pageFooter;
+	private TempXMLWriter rows, mergeCells, hyperlinks, relations;
+	private int rowIndex;
+	private int relationCount;
+
+	static class XMLWriterXLSX extends XMLWriter
+	{
+
+		XMLWriterXLSX( )
+		{
+			setEnableCompactMode( true );
+		}
+
+		/**
+		 * Outputs a fragment of xml which has been encoded.
+		 *
+		 * @param xml
+		 */
+		void fragment( String xml )
+		{
+			if ( !bPairedFlag )
+			{
+				print( '>' );
+				bPairedFlag = true;
+			}
+			print( xml );
+		}
+
+		/**
+		 * Flushes the buffered content to the output stream without closing
+		 * it.
+		 */
+		void flushStream( ) throws IOException
+		{
+			flush( );
+			writer.flush( );
+		}
+	}
+
+	/**
+	 * The xml written to a temporary file and copied to the workbook later.
+	 */
+	private class TempXMLWriter
+	{
+
+		private File file;
+		private XMLWriterXLSX xmlWriter = new XMLWriterXLSX( );
+
+		TempXMLWriter( String prefix ) throws IOException
+		{
+			String tempDir = context.getTempFileDir( );
+			file = File.createTempFile( prefix, ".xml", tempDir == null
+					? null
+					: new File( tempDir ) );
+			xmlWriter.open( new BufferedOutputStream( new FileOutputStream(
+					file ) ), "UTF-8" );
+		}
+
+		XMLWriterXLSX getWriter( )
+		{
+			return xmlWriter;
+		}
+
+		void copyTo( OutputStream output ) throws IOException
+		{
+			xmlWriter.close( );
+			InputStream input = new FileInputStream( file );
+			try
+			{
+				byte[] buffer = new byte[8192];
+				int size = input.read( buffer );
+				while ( size != -1 )
+				{
+					output.write( buffer, 0, size );
+					size = input.read( buffer );
+				}
+			}
+			finally
+			{
+				input.close( );
+			}
+		}
+
+		void delete( )
+		{
+			xmlWriter.close( );
+			if ( file.exists( ) )
+			{
+				file.delete( );
+			}
+		}
+	}
+
+	public XlsxWriter( ExcelContext context )
+	{
+		this( context.getOutputSteam( ), context );
+	}
+
+	public XlsxWriter( OutputStream out, ExcelContext context )
+	{
+		this.out = out;
+		this.context = context;
+	}
+
+	private void openWorkbook( )
+	{
+		if ( zip == null )
+		{
+			zip = new ZipOutputStream( out );
+			writer = new XMLWriterXLSX( );
+			writer.open( zip, "UTF-8" );
+		}
+	}
+
+	private void startEntry( String name ) throws IOException
+	{
+		openWorkbook( );
+		zip.putNextEntry( new ZipEntry( name ) );
+		writer.startWriter( );
+	}
+
+	private void endEntry( ) throws IOException
+	{
+		writer.flushStream( );
+		zip.closeEntry( );
+	}
+
+	private void copy( TempXMLWriter tempWriter ) throws IOException
+	{
+		if ( tempWriter != null )
+		{
+			writer.flushStream( );
+			tempWriter.copyTo( zip );
+		}
+	}
+
+	public void start( IReportContent report, Map<StyleEntry, Integer> styles,
+			HashMap<String, BookmarkDef> bookmarkList ) throws IOException
+	{
+		if ( sheetNames.isEmpty( ) )
+		{
+			// a workbook must have a sheet.
+			startSheet( "Sheet1" );
+			endSheet( );
+		}
+		writeStyles( styles );
+		writeSharedStrings( );
+		writeWorkbook( bookmarkList );
+	}
+
+	public void end( ) throws IOException
+	{
+		openWorkbook( );
+		int sheetCount = sheetNames.size( );
+
+		startEntry( "[Content_Types].xml" );
+		writer.openTag( "Types" );
+		writer.attribute( "xmlns", CONTENT_TYPES_NS );
+		writeDefaultContentType( "rels",
+				"application/vnd.openxmlformats-package.relationships+xml" );
+		writeDefaultContentType( "xml", "application/xml" );
+		writeContentType( "/xl/workbook.xml",
+				"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml" );
+		writeContentType( "/xl/styles.xml",
+				"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml" );
+		writeContentType( "/xl/sharedStrings.xml",
+				"application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml" );
+		for ( int i = 1; i <= sheetCount; i++ )
+		{
+			writeContentType( "/xl/worksheets/sheet" + i + ".xml",
+					"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml" );
+		}
+		writer.closeTag( "Types" );
+		endEntry( );
+
+		startEntry( "_rels/.rels" );
+		writer.openTag( "Relationships" );
+		writer.attribute( "xmlns", PACKAGE_RELATIONSHIP_NS );
+		writeRelationship( writer, "rId1", "officeDocument", "xl/workbook.xml",
+				false );
+		writer.closeTag( "Relationships" );
+		endEntry( );
+
+		startEntry( "xl/_rels/workbook.xml.rels" );
+		writer.openTag( "Relationships" );
+		writer.attribute( "xmlns", PACKAGE_RELATIONSHIP_NS );
+		for ( int i = 1; i <= sheetCount; i++ )
+		{
+			writeRelationship( writer, "rId" + i, "worksheet",
+					"worksheets/sheet" + i + ".xml", false );
+		}
+		writeRelationship( writer, "rId" + ( sheetCount + 1 ), "styles",
+				"styles.xml", false );
+		writeRelationship( writer, "rId" + ( sheetCount + 2 ),
+				"sharedStrings", "sharedStrings.xml", false );
+		writer.closeTag( "Relationships" );
+		endEntry( );
+
+		zip.close( );
+	}
+
+	private void writeDefaultContentType( String extension, String contentType )
+	{
+		writer.openTag( "Default" );
+		writer.attribute( "Extension", extension );
+		writer.attribute( "ContentType", contentType );
+		writer.closeTag( "Default" );
+	}
+
+	private void writeContentType( String partName, String contentType )
+	{
+		writer.openTag( "Override" );
+		writer.attribute( "PartName", partName );
+		writer.attribute( "ContentType", contentType );
+		writer.closeTag( "Override" );
+	}
+
+	private void writeRelationship( XMLWriter xmlWriter, String id,
+			String type, String target, boolean isExternal )
+	{
+		xmlWriter.openTag( "Relationship" );
+		xmlWriter.attribute( "Id", id );
+		xmlWriter.attribute( "Type", RELATIONSHIP_NS + "/" + type );
+		xmlWriter.attribute( "Target", target );
+		if ( isExternal )
+		{
+			xmlWriter.attribute( "TargetMode", "External" );
+		}
+		xmlWriter.closeTag( "Relationship" );
+	}
+
+	private void writeWorkbook( HashMap<String, BookmarkDef> bookmarkList )
+			throws IOException
+	{
+		startEntry( "xl/workbook.xml" );
+		writer.openTag( "workbook" );
+		writer.attribute( "xmlns", SPREADSHEET_NS );
+		writer.attribute( "xmlns:r", RELATIONSHIP_NS );
+		writer.openTag( "sheets" );
+		for ( int i = 0; i < sheetNames.size( ); i++ )
+		{
+			writer.openTag( "sheet" );
+			writer.attribute( "name", sheetNames.get( i ) );
+			writer.attribute( "sheetId", i + 1 );
+			writer.attribute( "r:id", "rId" + ( i + 1 ) );
+			writer.closeTag( "sheet" );
+		}
+		writer.closeTag( "sheets" );
+		boolean hasName = false;
+		for ( BookmarkDef bookmark : bookmarkList.values( ) )
+		{
+			if ( bookmark.getSheetName( ) == null )
+			{
+				continue;
+			}
+			if ( !hasName )
+			{
+				writer.openTag( "definedNames" );
+				hasName = true;
+			}
+			writer.openTag( "definedName" );
+			writer.attribute( "name", bookmark.getValidName( ) );
+			writer.text( getRefer( bookmark ) );
+			writer.closeTag( "definedName" );
+		}
+		if ( hasName )
+		{
+			writer.closeTag( "definedNames" );
+		}
+		writer.closeTag( "workbook" );
+		endEntry( );
+	}
+
+	private String getRefer( BookmarkDef bookmark )
+	{
+		StringBuffer buffer = new StringBuffer( );
+		buffer.append( '\'' );
+		buffer.append( bookmark.getSheetName( ).replace( "'", "''" ) );
+		buffer.append( "'!" );
+		int startColumn = bookmark.getStartColumn( );
+		int startRow = bookmark.getStartRow( );
+		addCellPosition( buffer, startColumn, startRow );
+		int endColumn = bookmark.getEndColumn( );
+		int endRow = bookmark.getEndRow( );
+		if ( endRow != -1 && endColumn != -1 && startRow != endRow
+				&& startColumn != endColumn )
+		{
+			buffer.append( ':' );
+			addCellPosition( buffer, endColumn, endRow );
+		}
+		return buffer.toString( );
+	}
+
+	private void addCellPosition( StringBuffer buffer, int column, int row )
+	{
+		buffer.append( '$' );
+		buffer.append( ExcelUtil.getColumnId( column ) );
+		buffer.append( '$' );
+		buffer.append( row );
+	}
+
+	private void writeSharedStrings( ) throws IOException
+	{
+		startEntry( "xl/sharedStrings.xml" );
+		if ( sharedStrings == null )
+		{
+			writer.openTag( "sst" );
+			writer.attribute( "xmlns", SPREADSHEET_NS );
+			writer.closeTag( "sst" );
+		}
+		else
+		{
+			sharedStrings.getWriter( ).closeTag( "sst" );
+			copy( sharedStrings );
+			sharedStrings.delete( );
+			sharedStrings = null;
+			stringIndexes.clear( );
+		}
+		endEntry( );
+	}
+
+	public void startSheet( double[] coordinates, String pageHeader,
+			String pageFooter, String sheetName ) throws IOException
+	{
+		this.pageHeader = pageHeader;
+		this.pageFooter = pageFooter;
+		sheetNames.add( sheetName );
+		rows = new TempXMLWriter( "birt_xlsx_" );
+		rows.getWriter( ).openTag( "sheetData" );
+		rowIndex = 0;
+		relationCount = 0;
+	}
+
+	public void startSheet( String sheetName ) throws IOException
+	{
+		startSheet( null, null, null, sheetName );
+	}
+
+	/**
+	 * Changes the name of the current sheet, the name is only written when the
+	 * report ends.
+	 *
+	 * @param sheetName
+	 */
+	public void setSheetName( String sheetName )
+	{
+		if ( !sheetNames.isEmpty( ) )
+		{
+			sheetNames.set( sheetNames.size( ) - 1, sheetName );
+		}
+	}
+
+	public void endSheet( double[] coordinates, String orientation,
+			int pageWidth, int pageHeight, float leftMargin, float rightMargin,
+			float topMargin, float bottomMargin )
+	{
+		int sheetIndex = sheetNames.size( );
+		try
+		{
+			rows.getWriter( ).closeTag( "sheetData" );
+			if ( mergeCells != null )
+			{
+				mergeCells.getWriter( ).closeTag( "mergeCells" );
+			}
+			if ( hyperlinks != null )
+			{
+				hyperlinks.getWriter( ).closeTag( "hyperlinks" );
+			}
+
+			startEntry( "xl/worksheets/sheet" + sheetIndex + ".xml" );
+			writer.openTag( "worksheet" );
+			writer.attribute( "xmlns", SPREADSHEET_NS );
+			writer.attribute( "xmlns:r", RELATIONSHIP_NS );
+			writer.openTag( "sheetViews" );
+			writer.openTag( "sheetView" );
+			if ( context.isRTL( ) )
+			{
+				writer.attribute( "rightToLeft", 1 );
+			}
+			if ( context.getHideGridlines( ) )
+			{
+				writer.attribute( "showGridLines", 0 );
+			}
+			writer.attribute( "workbookViewId", 0 );
+			writer.closeTag( "sheetView" );
+			writer.closeTag( "sheetViews" );
+			outputColumns( coordinates );
+			copy( rows );
+			copy( mergeCells );
+			copy( hyperlinks );
+			writePageSetup( orientation, pageWidth, pageHeight, leftMargin,
+					rightMargin, topMargin, bottomMargin );
+			writer.closeTag( "worksheet" );
+			endEntry( );
+
+			if ( relations != null )
+			{
+				relations.getWriter( ).closeTag( "Relationships" );
+				startEntry( "xl/worksheets/_rels/sheet" + sheetIndex
+						+ ".xml.rels" );
+				copy( relations );
+				endEntry( );
+			}
+		}
+		catch ( IOException e )
+		{
+			logger.log( Level.SEVERE, e.getLocalizedMessage( ), e );
+		}
+		finally
+		{
+			deleteSheetFiles( );
+		}
+	}
+
+	public void endSheet( )
+	{
+		endSheet( null, null, 0, 0, 0, 0, 0, 0 );
+	}
+
+	private void deleteSheetFiles( )
+	{
+		TempXMLWriter[] tempWriters = new TempXMLWriter[]{rows, mergeCells,
+				hyperlinks, relations};
+		for ( int i = 0; i < tempWriters.length; i++ )
+		{
+			if ( tempWriters[i] != null )
+			{
+				tempWriters[i].delete( );
+			}
+		}
+		rows = null;
+		mergeCells = null;
+		hyperlinks = null;
+		relations = null;
+	}
+
+	private void outputColumns( double[] coordinates )
+	{
+		if ( coordinates == null || coordinates.length == 0 )
+		{
+			return;
+		}
+		writer.openTag( "cols" );
+		for ( int i = 0; i < coordinates.length; i++ )
+		{
+			writer.openTag( "col" );
+			writer.attribute( "min", i + 1 );
+			writer.attribute( "max", i + 1 );
+			writer.attribute( "width", ExcelUtil
+					.convertColWidth( coordinates[i] / 1000 ) );
+			writer.attribute( "customWidth", 1 );
+			writer.closeTag( "col" );
+		}
+		writer.closeTag( "cols" );
+	}
+
+	private void writePageSetup( String orientation, int pageWidth,
+			int pageHeight, float leftMargin, float rightMargin,
+			float topMargin, float bottomMargin )
+	{
+		writer.openTag( "pageMargins" );
+		writer.attribute( "left", leftMargin / ExcelUtil.INCH_PT );
+		writer.attribute( "right", rightMargin / ExcelUtil.INCH_PT );
+		writer.attribute( "top", topMargin / ExcelUtil.INCH_PT );
+		writer.attribute( "bottom", bottomMargin / ExcelUtil.INCH_PT );
+		writer.attribute( "header", 0 );
+		writer.attribute( "footer", 0 );
+		writer.closeTag( "pageMargins" );
+
+		writer.openTag( "pageSetup" );
+		if ( pageWidth > 0 && pageHeight > 0 )
+		{
+			writer.attribute( "paperSize", ExcelUtil.getPageSizeIndex(
+					pageWidth / 1000, pageHeight / 1000 ) );
+		}
+		if ( orientation != null )
+		{
+			writer.attribute( "orientation", orientation.toLowerCase( ) );
+		}
+		writer.closeTag( "pageSetup" );
+
+		if ( pageHeader != null || pageFooter != null )
+		{
+			writer.openTag( "headerFooter" );
+			if ( pageHeader != null )
+			{
+				writer.openTag( "oddHeader" );
+				writer.text( pageHeader );
+				writer.closeTag( "oddHeader" );
+			}
+			if ( pageFooter != null )
+			{
+				writer.openTag( "oddFooter" );
+				writer.text( pageFooter );
+				writer.closeTag( "oddFooter" );
+			}
+			writer.closeTag( "headerFooter" );
+		}
+	}
+
+	public void startRow( double rowHeight )
+	{
+		rowIndex++;
+		XMLWriter rowWriter = rows.getWriter( );
+		rowWriter.openTag( "row" );
+		rowWriter.attribute( "r", rowIndex );
+		if ( rowHeight > 0 )
+		{
+			rowWriter.attribute( "ht", rowHeight );
+			rowWriter.attribute( "customHeight", 1 );
+		}
+	}
+
+	public void startRow( )
+	{
+		startRow( -1 );
+	}
+
+	public void endRow( )
+	{
+		rows.getWriter( ).closeTag( "row" );
+	}
+
+	public void outputData( String sheet, SheetData data, StyleEntry style,
+			int column, int colSpan ) throws IOException
+	{
+		// the sheet is ignored as ExcelXmlWriter does.
+		outputData( data, style, column, colSpan );
+	}
+
+	public void outputData( SheetData data, StyleEntry style, int column,
+			int colSpan ) throws IOException
+	{
+		int rowSpan = data.getRowSpan( );
+		int styleId = data.getStyleId( );
+		int type = data.getDataType( );
+		if ( type == SheetData.IMAGE )
+		{
+			outputData( SheetData.STRING, null, style, column, colSpan,
+					rowSpan, styleId, null, null );
+		}
+		else
+		{
+			Data d = (Data) data;
+			outputData( type, d.getValue( ), style, column, colSpan, rowSpan,
+					styleId, d.getHyperlinkDef( ), d.getLinkedBookmark( ) );
+		}
+	}
+
+	public void outputData( int col, int row, int type, Object value )
+	{
+		try
+		{
+			outputData( type, value, null, col, 0, 0, -1, null, null );
+		}
+		catch ( IOException e )
+		{
+			logger.log( Level.SEVERE, e.getLocalizedMessage( ), e );
+		}
+	}
+
+	private void outputData( int type, Object value, StyleEntry style,
+			int column, int colSpan, int rowSpan, int styleId,
+			HyperlinkDef hyperLink, BookmarkDef linkedBookmark )
+			throws IOException
+	{
+		XMLWriter rowWriter = rows.getWriter( );
+		String ref = ExcelUtil.getRef( rowIndex, column );
+		rowWriter.openTag( "c" );
+		rowWriter.attribute( "r", ref );
+		if ( styleId > 0 )
+		{
+			rowWriter.attribute( "s", styleId );
+		}
+		writeValue( rowWriter, type, value, style );
+		rowWriter.closeTag( "c" );
+
+		if ( colSpan > 0 || rowSpan > 0 )
+		{
+			if ( styleId > 0 )
+			{
+				// the borders of a merged cell are drawn by the cells it
+				// covers.
+				for ( int i = 1; i <= colSpan; i++ )
+				{
+					rowWriter.openTag( "c" );
+					rowWriter.attribute( "r", ExcelUtil.getRef( rowIndex,
+							column + i ) );
+					rowWriter.attribute( "s", styleId );
+					rowWriter.closeTag( "c" );
+				}
+			}
+			if ( mergeCells == null )
+			{
+				mergeCells = new TempXMLWriter( "birt_xlsx_" );
+				mergeCells.getWriter( ).openTag( "mergeCells" );
+			}
+			XMLWriter mergeWriter = mergeCells.getWriter( );
+			mergeWriter.openTag( "mergeCell" );
+			mergeWriter.attribute( "ref", ref + ":"
+					+ ExcelUtil.getRef( rowIndex + rowSpan, column + colSpan ) );
+			mergeWriter.closeTag( "mergeCell" );
+		}
+
+		if ( hyperLink != null )
+		{
+			outputHyperlink( ref, hyperLink, linkedBookmark );
+		}
+	}
+
+	private void writeValue( XMLWriter rowWriter, int type, Object value,
+			StyleEntry style ) throws IOException
+	{
+		if ( value == null )
+		{
+			return;
+		}
+		if ( type == SheetData.NUMBER
+				&& !( ExcelUtil.isNaN( value ) || ExcelUtil.isBigNumber( value ) || ExcelUtil
+						.isInfinity( value ) ) )
+		{
+			writeValue( rowWriter, ExcelUtil.format( value, type ) );
+			return;
+		}
+		if ( type == SheetData.DATE )
+		{
+			Date date = ExcelUtil.getDate( value );
+			if ( date != null )
+			{
+				writeValue( rowWriter, Double.toString( getSerialDate( date ) ) );
+				return;
+			}
+		}
+		String text = transform( ExcelUtil.format( value, type ), style );
+		if ( text.length( ) > 0 )
+		{
+			int index = getStringIndex( ExcelUtil.truncateCellText( text ) );
+			rowWriter.attribute( "t", "s" );
+			writeValue( rowWriter, String.valueOf( index ) );
+		}
+	}
+
+	private void writeValue( XMLWriter rowWriter, String value )
+	{
+		rowWriter.openTag( "v" );
+		rowWriter.text( value );
+		rowWriter.closeTag( "v" );
+	}
+
+	/**
+	 * Gets the serial date of Excel, the count of the days since 1900-1-0 in
+	 * the default time zone, as the dates are written by ExcelXmlWriter.
+	 */
+	static double getSerialDate( Date date )
+	{
+		long time = date.getTime( );
+		time += TimeZone.getDefault( ).getOffset( time );
+		// 25569 is the serial date of 1970-1-1
+		return time / 86400000.0 + 25569;
+	}
+
+	private String transform( String text, StyleEntry style )
+	{
+		if ( style != null )
+		{
+			String textTransform = (String) style
+					.getProperty( StyleConstant.TEXT_TRANSFORM );
+			if ( CSSConstants.CSS_CAPITALIZE_VALUE.equalsIgnoreCase( textTransform ) )
+			{
+				return ExcelUtil.capitalize( text );
+			}
+			else if ( CSSConstants.CSS_UPPERCASE_VALUE.equalsIgnoreCase( textTransform ) )
+			{
+				return text.toUpperCase( );
+			}
+			else if ( CSSConstants.CSS_LOWERCASE_VALUE.equalsIgnoreCase( textTransform ) )
+			{
+				return text.toLowerCase( );
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * Gets the index of the string in the shared strings table, the string is
+	 * added to the table if it isn't in the cache.
+	 */
+	private int getStringIndex( String text ) throws IOException
+	{
+		Integer index = stringIndexes.get( text );
+		if ( index != null )
+		{
+			return index.intValue( );
+		}
+		if ( sharedStrings == null )
+		{
+			sharedStrings = new TempXMLWriter( "birt_xlsx_" );
+			sharedStrings.getWriter( ).openTag( "sst" );
+			sharedStrings.getWriter( ).attribute( "xmlns", SPREADSHEET_NS );
+		}
+		XMLWriter stringWriter = sharedStrings.getWriter( );
+		stringWriter.openTag( "si" );
+		stringWriter.openTag( "t" );
+		stringWriter.attribute( "xml:space", "preserve" );
+		stringWriter.text( text );
+		stringWriter.closeTag( "t" );
+		stringWriter.closeTag( "si" );
+		if ( stringIndexes.size( ) >= MAX_CACHED_STRING_COUNT )
+		{
+			stringIndexes.clear( );
+		}
+		index = Integer.valueOf( stringCount++ );
+		stringIndexes.put( text, index );
+		return index.intValue( );
+	}
+
+	private void outputHyperlink( String ref, HyperlinkDef hyperLink,
+			BookmarkDef linkedBookmark ) throws IOException
+	{
+		String location = null;
+		String relationId = null;
+		if ( hyperLink.getType( ) == IHyperlinkAction.ACTION_BOOKMARK )
+		{
+			if ( linkedBookmark == null )
+			{
+				logger.log( Level.WARNING, "The bookmark: {"
+						+ hyperLink.getUrl( ) + "} is not defined!" );
+				return;
+			}
+			location = linkedBookmark.getValidName( );
+		}
+		else
+		{
+			String url = hyperLink.getUrl( );
+			if ( url == null )
+			{
+				return;
+			}
+			if ( relations == null )
+			{
+				relations = new TempXMLWriter( "birt_xlsx_" );
+				relations.getWriter( ).openTag( "Relationships" );
+				relations.getWriter( ).attribute( "xmlns",
+						PACKAGE_RELATIONSHIP_NS );
+			}
+			relationId = "rId" + ( ++relationCount );
+			writeRelationship( relations.getWriter( ), relationId,
+					"hyperlink", url, true );
+		}
+		if ( hyperlinks == null )
+		{
+			hyperlinks = new TempXMLWriter( "birt_xlsx_" );
+			hyperlinks.getWriter( ).openTag( "hyperlinks" );
+		}
+		XMLWriter linkWriter = hyperlinks.getWriter( );
+		linkWriter.openTag( "hyperlink" );
+		linkWriter.attribute( "ref", ref );
+		linkWriter.attribute( "r:id", relationId );
+		linkWriter.attribute( "location", location );
+		linkWriter.attribute( "tooltip", hyperLink.getToolTip( ) );
+		linkWriter.closeTag( "hyperlink" );
+	}
+
+	private void writeStyles( Map<StyleEntry, Integer> styles )
+			throws IOException
+	{
+		int maxId = 0;
+		for ( Integer id : styles.values( ) )
+		{
+			maxId = Math.max( maxId, id.intValue( ) );
+		}
+		StyleEntry[] entries = new StyleEntry[maxId + 1];
+		for ( Map.Entry<StyleEntry, Integer> entry : styles.entrySet( ) )
+		{
+			entries[entry.getValue( ).intValue( )] = entry.getKey( );
+		}
+
+		Map<String, Integer> formats = new LinkedHashMap<String, Integer>( );
+		Map<String, Integer> fonts = new LinkedHashMap<String, Integer>( );
+		Map<String, Integer> fills = new LinkedHashMap<String, Integer>( );
+		Map<String, Integer> borders = new LinkedHashMap<String, Integer>( );
+		fonts.put( DEFAULT_FONT, Integer.valueOf( 0 ) );
+		fills.put( "<fill><patternFill patternType=\"none\"/></fill>",
+				Integer.valueOf( 0 ) );
+		fills.put( "<fill><patternFill patternType=\"gray125\"/></fill>",
+				Integer.valueOf( 1 ) );
+		borders.put( "<border><left/><right/><top/><bottom/><diagonal/></border>",
+				Integer.valueOf( 0 ) );
+		String[] xfs = new String[entries.length];
+		for ( int i = 0; i < entries.length; i++ )
+		{
+			StyleEntry style = entries[i];
+			if ( style == null )
+			{
+				xfs[i] = DEFAULT_XF;
+				continue;
+			}
+			StringBuffer xf = new StringBuffer( "<xf xfId=\"0\"" );
+			int formatId = getFormatId( style, formats );
+			appendAttribute( xf, "numFmtId", String.valueOf( formatId ) );
+			if ( formatId != 0 )
+			{
+				appendAttribute( xf, "applyNumberFormat", "1" );
+			}
+			String alignment = null;
+			if ( i >= StyleEngine.RESERVE_STYLE_ID )
+			{
+				appendAttribute( xf, "fontId", String.valueOf( getId( fonts,
+						createFont( style ) ) ) );
+				appendAttribute( xf, "fillId", String.valueOf( getId( fills,
+						createFill( style ) ) ) );
+				appendAttribute( xf, "borderId", String.valueOf( getId(
+						borders, createBorder( style ) ) ) );
+				xf.append( " applyFont=\"1\" applyFill=\"1\" applyBorder=\"1\" applyAlignment=\"1\"" );
+				alignment = createAlignment( style );
+			}
+			else
+			{
+				xf.append( " fontId=\"0\" fillId=\"0\" borderId=\"0\"" );
+			}
+			if ( alignment != null )
+			{
+				xf.append( '>' ).append( alignment ).append( "</xf>" );
+			}
+			else
+			{
+				xf.append( "/>" );
+			}
+			xfs[i] = xf.toString( );
+		}
+
+		startEntry( "xl/styles.xml" );
+		writer.openTag( "styleSheet" );
+		writer.attribute( "xmlns", SPREADSHEET_NS );
+		if ( !formats.isEmpty( ) )
+		{
+			writer.openTag( "numFmts" );
+			writer.attribute( "count", formats.size( ) );
+			for ( Map.Entry<String, Integer> format : formats.entrySet( ) )
+			{
+				writer.openTag( "numFmt" );
+				writer.attribute( "numFmtId", format.getValue( ).intValue( ) );
+				writer.attribute( "formatCode", format.getKey( ) );
+				writer.closeTag( "numFmt" );
+			}
+			writer.closeTag( "numFmts" );
+		}
+		writeFragments( "fonts", fonts.keySet( ).toArray( new String[0] ) );
+		writeFragments( "fills", fills.keySet( ).toArray( new String[0] ) );
+		writeFragments( "borders", borders.keySet( ).toArray( new String[0] ) );
+		writeFragments( "cellStyleXfs", new String[]{DEFAULT_XF} );
+		writeFragments( "cellXfs", xfs );
+		writeFragments( "cellStyles",
+				new String[]{"<cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/>"} );
+		writer.closeTag( "styleSheet" );
+		endEntry( );
+	}
+
+	private void writeFragments( String tagName, String[] fragments )
+	{
+		writer.openTag( tagName );
+		writer.attribute( "count", fragments.length );
+		for ( int i = 0; i < fragments.length; i++ )
+		{
+			writer.fragment( fragments[i] );
+		}
+		writer.closeTag( tagName );
+	}
+
+	private static int getId( Map<String, Integer> ids, String value )
+	{
+		Integer id = ids.get( value );
+		if ( id == null )
+		{
+			id = Integer.valueOf( ids.size( ) );
+			ids.put( value, id );
+		}
+		return id.intValue( );
+	}
+
+	private static void appendAttribute( StringBuffer buffer, String name,
+			String value )
+	{
+		buffer.append( ' ' ).append( name ).append( "=\"" );
+		buffer.append( XMLEncodeUtil.encodeAttr( value ) ).append( '\"' );
+	}
+
+	private int getFormatId( StyleEntry style, Map<String, Integer> formats )
+	{
+		Integer type = (Integer) style
+				.getProperty( StyleConstant.DATA_TYPE_PROP );
+		String format = null;
+		if ( type == null )
+		{
+			return 0;
+		}
+		if ( type == SheetData.DATE )
+		{
+			format = (String) style.getProperty( StyleConstant.DATE_FORMAT_PROP );
+		}
+		else if ( type == SheetData.NUMBER )
+		{
+			NumberFormatValue numberFormat = (NumberFormatValue) style
+					.getProperty( StyleConstant.NUMBER_FORMAT_PROP );
+			if ( numberFormat != null )
+			{
+				format = numberFormat.getFormat( );
+			}
+		}
+		if ( namedFormats.containsKey( format ) )
+		{
+			format = namedFormats.get( format );
+		}
+		if ( format == null || format.length( ) == 0 )
+		{
+			return 0;
+		}
+		Integer id = formats.get( format );
+		if ( id == null )
+		{
+			id = Integer.valueOf( CUSTOM_FORMAT_START_ID + formats.size( ) );
+			formats.put( format, id );
+		}
+		return id.intValue( );
+	}
+
+	private String createFont( StyleEntry style )
+	{
+		StringBuffer buffer = new StringBuffer( "<font>" );
+		if ( Boolean.TRUE.equals( style
+				.getProperty( StyleConstant.FONT_WEIGHT_PROP ) ) )
+		{
+			buffer.append( "<b/>" );
+		}
+		if ( Boolean.TRUE.equals( style
+				.getProperty( StyleConstant.FONT_STYLE_PROP ) ) )
+		{
+			buffer.append( "<i/>" );
+		}
+		if ( Boolean.TRUE.equals( style
+				.getProperty( StyleConstant.TEXT_LINE_THROUGH_PROP ) ) )
+		{
+			buffer.append( "<strike/>" );
+		}
+		if ( Boolean.TRUE.equals( style
+				.getProperty( StyleConstant.TEXT_UNDERLINE_PROP ) ) )
+		{
+			buffer.append( "<u/>" );
+		}
+		Float size = (Float) style.getProperty( StyleConstant.FONT_SIZE_PROP );
+		buffer.append( "<sz val=\"" ).append( size != null ? size.floatValue( ) : 10 )
+				.append( "\"/>" );
+		Color color = (Color) style.getProperty( StyleConstant.COLOR_PROP );
+		if ( color != null )
+		{
+			buffer.append( "<color rgb=\"" ).append( toString( color ) )
+					.append( "\"/>" );
+		}
+		String fontName = (String) style
+				.getProperty( StyleConstant.FONT_FAMILY_PROP );
+		buffer.append( "<name" );
+		appendAttribute( buffer, "val", isValid( fontName )
+				? getFirstFont( fontName )
+				: "Arial" );
+		buffer.append( "/></font>" );
+		return buffer.toString( );
+	}
+
+	private String createFill( StyleEntry style )
+	{
+		Color color = (Color) style
+				.getProperty( StyleConstant.BACKGROUND_COLOR_PROP );
+		if ( color == null )
+		{
+			return "<fill><patternFill patternType=\"none\"/></fill>";
+		}
+		return "<fill><patternFill patternType=\"solid\"><fgColor rgb=\""
+				+ toString( color ) + "\"/></patternFill></fill>";
+	}
+
+	private String createBorder( StyleEntry style )
+	{
+		StringBuffer buffer = new StringBuffer( "<border" );
+		String diagonalStyle = (String) style
+				.getProperty( StyleConstant.BORDER_DIAGONAL_STYLE_PROP );
+		if ( isValid( diagonalStyle ) )
+		{
+			buffer.append( " diagonalDown=\"1\"" );
+		}
+		buffer.append( '>' );
+		appendBorder( buffer, "left", style,
+				StyleConstant.BORDER_LEFT_STYLE_PROP,
+				StyleConstant.BORDER_LEFT_WIDTH_PROP,
+				StyleConstant.BORDER_LEFT_COLOR_PROP );
+		appendBorder( buffer, "right", style,
+				StyleConstant.BORDER_RIGHT_STYLE_PROP,
+				StyleConstant.BORDER_RIGHT_WIDTH_PROP,
+				StyleConstant.BORDER_RIGHT_COLOR_PROP );
+		appendBorder( buffer, "top", style,
+				StyleConstant.BORDER_TOP_STYLE_PROP,
+				StyleConstant.BORDER_TOP_WIDTH_PROP,
+				StyleConstant.BORDER_TOP_COLOR_PROP );
+		appendBorder( buffer, "bottom", style,
+				StyleConstant.BORDER_BOTTOM_STYLE_PROP,
+				StyleConstant.BORDER_BOTTOM_WIDTH_PROP,
+				StyleConstant.BORDER_BOTTOM_COLOR_PROP );
+		appendBorder( buffer, "diagonal", style,
+				StyleConstant.BORDER_DIAGONAL_STYLE_PROP,
+				StyleConstant.BORDER_DIAGONAL_WIDTH_PROP,
+				StyleConstant.BORDER_DIAGONAL_COLOR_PROP );
+		buffer.append( "</border>" );
+		return buffer.toString( );
+	}
+
+	private void appendBorder( StringBuffer buffer, String position,
+			StyleEntry style, int styleProp, int widthProp, int colorProp )
+	{
+		String lineStyle = (String) style.getProperty( styleProp );
+		if ( !isValid( lineStyle ) )
+		{
+			buffer.append( '<' ).append( position ).append( "/>" );
+			return;
+		}
+		Integer weight = (Integer) style.getProperty( widthProp );
+		buffer.append( '<' ).append( position ).append( " style=\"" );
+		buffer.append( getBorderStyle( lineStyle, weight ) ).append( "\">" );
+		Color color = (Color) style.getProperty( colorProp );
+		if ( color != null )
+		{
+			buffer.append( "<color rgb=\"" ).append( toString( color ) )
+					.append( "\"/>" );
+		}
+		buffer.append( "</" ).append( position ).append( '>' );
+	}
+
+	/**
+	 * Converts the line style and weight of SpreadsheetML to the border style
+	 * of xlsx.
+	 */
+	private static String getBorderStyle( String lineStyle, Integer weight )
+	{
+		int w = weight != null ? weight.intValue( ) : 1;
+		if ( "Dot".equalsIgnoreCase( lineStyle ) )
+		{
+			return "dotted";
+		}
+		if ( "Dash".equalsIgnoreCase( lineStyle ) )
+		{
+			return w > 1 ? "mediumDashed" : "dashed";
+		}
+		if ( "DashDot".equalsIgnoreCase( lineStyle ) )
+		{
+			return w > 1 ? "mediumDashDot" : "dashDot";
+		}
+		if ( "Double".equalsIgnoreCase( lineStyle ) )
+		{
+			return "double";
+		}
+		if ( w >= 3 )
+		{
+			return "thick";
+		}
+		return w == 2 ? "medium" : "thin";
+	}
+
+	private String createAlignment( StyleEntry style )
+	{
+		boolean wrapText = context.getWrappingText( );
+		String whiteSpace = (String) style
+				.getProperty( StyleConstant.WHITE_SPACE );
+		if ( CSSConstants.CSS_NOWRAP_VALUE.equals( whiteSpace ) )
+		{
+			wrapText = false;
+		}
+		String horizontalAlign = (String) style
+				.getProperty( StyleConstant.H_ALIGN_PROP );
+		String verticalAlign = (String) style
+				.getProperty( StyleConstant.V_ALIGN_PROP );
+		String direction = (String) style
+				.getProperty( StyleConstant.DIRECTION_PROP );
+		Float fontSize = (Float) style
+				.getProperty( StyleConstant.FONT_SIZE_PROP );
+		int indent = 0;
+		if ( fontSize != null )
+		{
+			indent = Math.round( ExcelUtil.convertTextIndentToEM(
+					(FloatValue) style.getProperty( StyleConstant.TEXT_INDENT ),
+					fontSize ) );
+		}
+
+		StringBuffer buffer = new StringBuffer( "<alignment" );
+		if ( isValid( horizontalAlign ) )
+		{
+			appendAttribute( buffer, "horizontal", horizontalAlign
+					.toLowerCase( ) );
+		}
+		if ( isValid( verticalAlign ) )
+		{
+			appendAttribute( buffer, "vertical", verticalAlign.toLowerCase( ) );
+		}
+		if ( indent > 0 )
+		{
+			appendAttribute( buffer, "indent", String.valueOf( indent ) );
+		}
+		if ( isValid( direction ) )
+		{
+			appendAttribute( buffer, "readingOrder",
+					CSSConstants.CSS_RTL_VALUE.equals( direction ) ? "2" : "1" );
+		}
+		if ( wrapText )
+		{
+			appendAttribute( buffer, "wrapText", "1" );
+		}
+		buffer.append( "/>" );
+		return buffer.toString( );
+	}
+
+	private boolean isValid( String value )
+	{
+		return !StyleEntry.isNull( value );
+	}
+
+	private String getFirstFont( String fontName )
+	{
+		int firstSeperatorIndex = fontName.indexOf( ',' );
+		if ( firstSeperatorIndex != -1 )
+		{
+			return fontName.substring( 0, firstSeperatorIndex );
+		}
+		return fontName;
+	}
+
+	private static String toString( Color color )
+	{
+		return "FF" + toHexString( color.getRed( ) )
+				+ toHexString( color.getGreen( ) )
+				+ toHexString( color.getBlue( ) );
+	}
+
+	private static String toHexString( int c )
+	{
+		String result = Integer.toHexString( c ).toUpperCase( );
+		if ( result.length( ) < 2 )
+		{
+			result = "0" + result;
+		}
+		return result;
+	}
+
+	public String defineName( String cells )
+	{
+		return null;
+	}
+}
@@ -43,6 +43,7 @@ public class ExcelContext
 	private Boolean hideGridlines = false;
 	private boolean enableMultipleSheet = true;
 	private boolean ignoreImage = true;
+	private boolean streamingXlsx = false;
 	private String sheetName;
 	private String sheetPrefix;
 	private OutputStream out;
@@ -128,6 +129,15 @@ public class ExcelContext
 			this.officeVersion = "office2007";
 		}
 
+		Object streamingXlsx = renderOptions
+				.getOption( IExcelRenderOption.STREAMING_XLSX );
+		if ( Boolean.TRUE.equals( streamingXlsx ) )
+		{
+			// the streaming writer only writes the Office 2007 format
+			this.streamingXlsx = true;
+			this.officeVersion = "office2007";
+		}
+
 		Object hideGridlines = renderOptions
 		        .getOption( IExcelRenderOption.HIDE_GRIDLINES );
 		if ( hideGridlines instanceof Boolean )
@@ -266,6 +276,16 @@ public class ExcelContext
 		return this.hideGridlines;
 	}
 
+	public boolean isStreamingXlsx( )
+	{
+		return this.streamingXlsx;
+	}
+
+	public void setStreamingXlsx( boolean streamingXlsx )
+	{
+		this.streamingXlsx = streamingXlsx;
+	}
+
 	public boolean isIgnoreImage( )
 	{
 		return this.ignoreImage;
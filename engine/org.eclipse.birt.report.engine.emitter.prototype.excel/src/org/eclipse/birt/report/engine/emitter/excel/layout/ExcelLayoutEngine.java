@@ -15,6 +15,7 @@ import java.awt.Color;
 import java.io.IOException;
 import java.sql.Time;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -55,8 +56,24 @@ import org.eclipse.birt.report.engine.emitter.excel.StyleBuilder;
 import org.eclipse.birt.report.engine.emitter.excel.StyleConstant;
 import org.eclipse.birt.report.engine.emitter.excel.StyleEngine;
 import org.eclipse.birt.report.engine.emitter.excel.StyleEntry;
+import org.eclipse.birt.report.engine.emitter.excel.XlsxWriter;
 import org.eclipse.birt.report.engine.i18n.EngineResourceHandle;
 import org.eclipse.birt.report.engine.i18n.MessageConstants;
+import org.eclipse.birt.report.engine.ir.AutoTextItemDesign;
+import org.eclipse.birt.report.engine.ir.BandDesign;
+import org.eclipse.birt.report.engine.ir.CellDesign;
+import org.eclipse.birt.report.engine.ir.ColumnDesign;
+import org.eclipse.birt.report.engine.ir.DataItemDesign;
+import org.eclipse.birt.report.engine.ir.GridItemDesign;
+import org.eclipse.birt.report.engine.ir.GroupDesign;
+import org.eclipse.birt.report.engine.ir.LabelItemDesign;
+import org.eclipse.birt.report.engine.ir.MasterPageDesign;
+import org.eclipse.birt.report.engine.ir.PageSetupDesign;
+import org.eclipse.birt.report.engine.ir.Report;
+import org.eclipse.birt.report.engine.ir.ReportItemDesign;
+import org.eclipse.birt.report.engine.ir.RowDesign;
+import org.eclipse.birt.report.engine.ir.SimpleMasterPageDesign;
+import org.eclipse.birt.report.engine.ir.TableItemDesign;
 import org.eclipse.birt.report.engine.layout.emitter.Image;
 import org.eclipse.birt.report.engine.layout.pdf.util.PropertyUtil;
 import org.eclipse.birt.report.engine.presentation.ContentEmitterVisitor;
@@ -85,6 +102,11 @@ public class ExcelLayoutEngine
 	public final static int MAX_ROW_OFFICE2003 = 65535;
 	
 	public final static int MAX_COLUMN_OFFICE2003 = 256;
+
+	/**
+	 * The count of the completed rows written at once in the streaming mode.
+	 */
+	public final static int STREAMING_ROW_COUNT = 1000;
 	
 	protected int maxRow = MAX_ROW_OFFICE2003;
 
@@ -111,6 +133,16 @@ public class ExcelLayoutEngine
 	protected Stack<Boolean> rowVisibilities = new Stack<Boolean>( );
 	protected Page page;
 	protected IExcelWriter writer;
+	/**
+	 * Whether the completed rows are written before the sheet ends. The rows
+	 * written can't be changed, so they are only streamed when the columns
+	 * of the sheets can't be split after the first rows.
+	 */
+	private boolean streaming;
+	/**
+	 * The page whose completed rows have been written in the streaming mode.
+	 */
+	private Page streamingPage;
 	protected ContentEmitterVisitor contentVisitor;
 	
 	private HashMap<String, Image> imageCache = new HashMap<String, Image>( );
@@ -132,7 +164,14 @@ public class ExcelLayoutEngine
 	
 	protected void createWriter( )
 	{
-		writer = new ExcelWriter( context );
+		if ( context.isStreamingXlsx( ) )
+		{
+			writer = new XlsxWriter( context );
+		}
+		else
+		{
+			writer = new ExcelWriter( context );
+		}
 	}
 
 	public void initalize( IStyle style )
@@ -140,6 +179,129 @@ public class ExcelLayoutEngine
 		setCacheSize();
 		engine = new StyleEngine( this );
 		createWriter( );
+		streaming = context.isStreamingXlsx( )
+				&& isColumnsFixed( getReportDesign( ) );
+	}
+
+	protected Report getReportDesign( )
+	{
+		IReportContent report = context.getReport( );
+		return report == null ? null : report.getDesign( );
+	}
+
+	/**
+	 * Checks whether the columns of the sheets are fixed once the first rows
+	 * are completed. It is the case when the report body is a single table
+	 * or grid whose columns all have a width, and neither the table nor the
+	 * page footers have any item other than data, labels and auto texts,
+	 * since the other items may split the columns. The page headers are laid
+	 * out before the table starts, so they can have any item.
+	 * 
+	 * @param design
+	 * @return
+	 */
+	protected static boolean isColumnsFixed( Report design )
+	{
+		if ( design == null || design.getContentCount( ) != 1 )
+		{
+			return false;
+		}
+		PageSetupDesign pageSetup = design.getPageSetup( );
+		if ( pageSetup != null )
+		{
+			for ( int i = 0; i < pageSetup.getMasterPageCount( ); i++ )
+			{
+				MasterPageDesign masterPage = pageSetup.getMasterPage( i );
+				if ( !( masterPage instanceof SimpleMasterPageDesign )
+						|| !isSimpleItems( ( (SimpleMasterPageDesign) masterPage )
+								.getFooters( ) ) )
+				{
+					return false;
+				}
+			}
+		}
+		ReportItemDesign item = design.getContent( 0 );
+		if ( item instanceof TableItemDesign )
+		{
+			TableItemDesign table = (TableItemDesign) item;
+			if ( !hasWidths( table.getColumns( ) )
+					|| !isSimpleBand( table.getHeader( ) )
+					|| !isSimpleBand( table.getDetail( ) )
+					|| !isSimpleBand( table.getFooter( ) ) )
+			{
+				return false;
+			}
+			for ( int i = 0; i < table.getGroupCount( ); i++ )
+			{
+				GroupDesign group = table.getGroup( i );
+				if ( !isSimpleBand( group.getHeader( ) )
+						|| !isSimpleBand( group.getFooter( ) ) )
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+		if ( item instanceof GridItemDesign )
+		{
+			GridItemDesign grid = (GridItemDesign) item;
+			return hasWidths( grid.getColumns( ) )
+					&& isSimpleRows( grid.getRows( ) );
+		}
+		return false;
+	}
+
+	private static boolean hasWidths( Collection<ColumnDesign> columns )
+	{
+		if ( columns.isEmpty( ) )
+		{
+			return false;
+		}
+		for ( ColumnDesign column : columns )
+		{
+			if ( column.getWidth( ) == null )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSimpleBand( BandDesign band )
+	{
+		return band == null || isSimpleRows( band.getContents( ) );
+	}
+
+	private static boolean isSimpleRows( Collection<?> rows )
+	{
+		for ( Object row : rows )
+		{
+			if ( !( row instanceof RowDesign ) )
+			{
+				return false;
+			}
+			for ( CellDesign cell : ( (RowDesign) row ).getCells( ) )
+			{
+				if ( !isSimpleItems( cell.getContents( ) ) )
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSimpleItems( Collection<?> items )
+	{
+		for ( Object item : items )
+		{
+			if ( !( item instanceof DataItemDesign
+					|| item instanceof LabelItemDesign || item instanceof AutoTextItemDesign ) )
+			{
+				return false;
+			}
+		}
+		return true;
 	}
 
 	private void initializePage( IPageContent pageContent )
@@ -165,6 +327,10 @@ public class ExcelLayoutEngine
 		{
 			maxCol = MAX_COL_OFFICE2007;
 		}
+		if ( context.isStreamingXlsx( ) )
+		{
+			maxRow = MAX_ROW_OFFICE2007;
+		}
 	}
 
 	public void processForeign( IForeignContent foreign, HyperlinkDef link )
@@ -518,6 +684,59 @@ public class ExcelLayoutEngine
 			page.synchronize( rowHeight, rowContainer );
 		}
 		endContainer( );
+		if ( streaming && rowVisibilities.isEmpty( ) )
+		{
+			outputCompletedRows( );
+		}
+	}
+
+	/**
+	 * Writes the completed rows of the current page in the streaming mode.
+	 * It is only called when no row is open, so no row span can reach the
+	 * rows before the last data of each column.
+	 */
+	private void outputCompletedRows( )
+	{
+		int lastRowIndex = page.getCompletedRowIndex( );
+		if ( lastRowIndex - page.getFirstRowIndex( ) + 1 < STREAMING_ROW_COUNT )
+		{
+			return;
+		}
+		try
+		{
+			outputRows( page, lastRowIndex );
+		}
+		catch ( IOException e )
+		{
+			logger.log( Level.SEVERE, e.getLocalizedMessage( ), e );
+		}
+	}
+
+	/**
+	 * Writes the rows of the page up to the given row and removes them from
+	 * the page. The sheet is started when the first rows are written.
+	 * 
+	 * @param page
+	 * @param lastRowIndex
+	 * @throws IOException
+	 */
+	protected void outputRows( Page page, int lastRowIndex )
+			throws IOException
+	{
+		if ( streamingPage != page )
+		{
+			streamingPage = page;
+			writer.startSheet( page.getCoordinates( ), page.getHeader( ),
+					page.getFooter( ), page.getSheetName( ) );
+		}
+		Iterator<SheetData[]> iterator = page.getRowIterator( lastRowIndex );
+		while ( iterator.hasNext( ) )
+		{
+			SheetData[] row = iterator.next( );
+			completeRow( page, row );
+			outputRowData( page, createRowData( page, row ) );
+		}
+		page.removeRows( lastRowIndex );
 	}
 
 	public void endTable( IContent content )
@@ -1121,26 +1340,7 @@ public class ExcelLayoutEngine
 		{
 			while ( iterator.hasNext( ) )
 			{
-				SheetData[] rowData = iterator.next( );
-
-				for ( int j = 0; j < rowData.length; j++ )
-				{
-					SheetData data = rowData[j];
-					if ( data == null || data.isBlank( ) )
-					{
-						continue;
-					}
-
-					HyperlinkDef hyperLink = data.getHyperlinkDef( );
-					if ( hyperLink != null )
-					{
-						if ( hyperLink.getType( ) == IHyperlinkAction.ACTION_BOOKMARK )
-						{
-							setLinkedBookmark( data, hyperLink );
-						}
-					}
-				}
-				page.calculateRowHeight( rowData, context.isRTL( ) );
+				completeRow( page, iterator.next( ) );
 			}
 		}
 		else
@@ -1153,12 +1353,51 @@ public class ExcelLayoutEngine
 		}
 	}
 
+	private void completeRow( Page page, SheetData[] rowData )
+	{
+		for ( int j = 0; j < rowData.length; j++ )
+		{
+			SheetData data = rowData[j];
+			if ( data == null || data.isBlank( ) )
+			{
+				continue;
+			}
+
+			HyperlinkDef hyperLink = data.getHyperlinkDef( );
+			if ( hyperLink != null )
+			{
+				if ( hyperLink.getType( ) == IHyperlinkAction.ACTION_BOOKMARK )
+				{
+					setLinkedBookmark( data, hyperLink );
+				}
+			}
+		}
+		page.calculateRowHeight( rowData, context.isRTL( ) );
+	}
+
 	/**
 	 * @throws IOException
 	 * 
 	 */
 	public void outputCacheData( Page page ) throws IOException
 	{
+		if ( page == streamingPage )
+		{
+			// the first rows of the sheet have been written.
+			engine.applyContainerBottomStyle( page.getPageContainer( ), page );
+			outputRows( page, page.getMaxRow( ) );
+			if ( writer instanceof XlsxWriter )
+			{
+				// the sheet name may be changed by the page label.
+				( (XlsxWriter) writer ).setSheetName( page.getSheetName( ) );
+			}
+			streamingPage = null;
+			writer.endSheet( page.getCoordinates( ), page.getOrientation( ),
+					context.getPageWidth( ), context.getPageHeight( ),
+					context.getLeftMargin( ), context.getRightMargin( ),
+					context.getTopMargin( ), context.getBottomMargin( ) );
+			return;
+		}
 		complete( page );
 		Iterator<RowData> it = getIterator( page );
 		if ( it.hasNext( ) )
@@ -1245,6 +1484,27 @@ public class ExcelLayoutEngine
 		return new ExcelLayoutEngineIterator( page, filter, rowIndexAdjuster );
 	}
 
+	private RowData createRowData( Page page, SheetData[] row )
+	{
+		List<SheetData> data = new ArrayList<SheetData>( );
+		int width = Math.min( row.length, maxCol );
+		int rowIndex = 0;
+		for ( int i = 0; i < width; i++ )
+		{
+			SheetData d = row[i];
+			if ( d == null || d.isBlank( ) )
+			{
+				continue;
+			}
+			rowIndex = d.getRowIndex( );
+			data.add( row[i] );
+		}
+		SheetData[] rowdata = new SheetData[data.size( )];
+		double rowHeight = page.getRowHeight( rowIndex - 1 );
+		data.toArray( rowdata );
+		return new RowData( page, rowdata, rowHeight );
+	}
+
 	private class ExcelLayoutEngineIterator implements Iterator<RowData>
 	{
 
@@ -1265,24 +1525,7 @@ public class ExcelLayoutEngine
 
 		public RowData next( )
 		{
-			SheetData[] row = rowIterator.next( );
-			List<SheetData> data = new ArrayList<SheetData>( );
-			int width = Math.min( row.length, maxCol );
-			int rowIndex = 0;
-			for ( int i = 0; i < width; i++ )
-			{
-				SheetData d = row[i];
-				if ( d == null || d.isBlank( ) )
-				{
-					continue;
-				}
-				rowIndex = d.getRowIndex( );
-				data.add( row[i] );
-			}
-			SheetData[] rowdata = new SheetData[data.size( )];
-			double rowHeight = page.getRowHeight( rowIndex - 1 );
-			data.toArray( rowdata );
-			return new RowData( page, rowdata, rowHeight );
+			return createRowData( page, rowIterator.next( ) );
 		}
 
 		public void remove( )
@@ -1031,6 +1031,64 @@ public class Page
 		return currentCache.getRowIterator( filter, rowIndexAdjuster );
 	}
 
+	public Iterator<SheetData[]> getRowIterator( int lastRowIndex )
+	{
+		return currentCache.getRowIterator( lastRowIndex );
+	}
+
+	/**
+	 * Gets the index of the last row which can't be changed by the data added
+	 * later. The last data of each column may still be spanned or get the
+	 * bottom border of its container, so only the rows before the real data
+	 * of the last data of every column are completed.
+	 * 
+	 * @return the index of the last completed row, 0 if no row is completed
+	 */
+	public int getCompletedRowIndex( )
+	{
+		int completedRowIndex = Integer.MAX_VALUE;
+		for ( int i = 0; i < currentCache.getColumnCount( ); i++ )
+		{
+			SheetData lastData = currentCache.getColumnLastData( i );
+			if ( lastData == null )
+			{
+				continue;
+			}
+			SheetData realData = ExcelUtil.getRealData( lastData );
+			if ( realData == null )
+			{
+				realData = lastData;
+			}
+			completedRowIndex = Math.min( completedRowIndex, realData
+					.getRowIndex( ) - 1 );
+		}
+		return completedRowIndex == Integer.MAX_VALUE ? 0 : completedRowIndex;
+	}
+
+	/**
+	 * Removes the rows which have been output.
+	 * 
+	 * @param lastRowIndex
+	 *            the index of the last row output
+	 */
+	public void removeRows( int lastRowIndex )
+	{
+		currentCache.removeRows( lastRowIndex );
+	}
+
+	/**
+	 * @return the index of the first row which hasn't been output
+	 */
+	public int getFirstRowIndex( )
+	{
+		return currentCache.getFirstRowIndex( );
+	}
+
+	public int getMaxRow( )
+	{
+		return currentCache.getMaxRow( );
+	}
+
 	public float getRowHeight( int rowIndex )
 	{
 		return currentCache.getRowHeight( rowIndex );
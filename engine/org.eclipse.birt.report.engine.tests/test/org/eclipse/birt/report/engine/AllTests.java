@@ -88,6 +88,7 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.report.engine.css.CSSPaserTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.data.dte.DataEngineTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.data.dte.NamedExpressionTest.class );
+		suite.addTestSuite( org.eclipse.birt.report.engine.data.dte.QueryPrefetcherTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.data.dte.ReportQueryBuilderTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.data.dte.ResultSetIndexTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.emitter.EmbeddedHyperlinkProcessorTest.class );
@@ -114,6 +115,8 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.report.engine.internal.document.v2.PageHintTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.internal.document.v2.ReportContentTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.internal.document.OffsetIndexReaderWriterTest.class );
+		suite.addTestSuite( org.eclipse.birt.report.engine.internal.document.v3.CachedReportContentReaderV3Test.class );
+		suite.addTestSuite( org.eclipse.birt.report.engine.internal.document.v3.ContentCacheTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.internal.executor.doc.ReportPageReaderTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.ir.ActionTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.ir.CellTest.class );
@@ -16,6 +16,7 @@ import java.io.File;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.birt.core.archive.compound.ArchiveFile;
@@ -25,6 +26,15 @@ import org.eclipse.birt.report.engine.EngineCase;
 import org.eclipse.birt.report.engine.api.impl.ReportDocumentConstants;
 import org.eclipse.birt.report.engine.api.impl.ReportDocumentReader;
 
+import com.lowagie.text.pdf.PRIndirectReference;
+import com.lowagie.text.pdf.PdfArray;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfObject;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfString;
+import com.lowagie.text.pdf.SimpleBookmark;
+
 public class RenderTaskTest extends EngineCase
 {
 
@@ -184,6 +194,136 @@ public class RenderTaskTest extends EngineCase
 		reportDoc.close( );
 	}
 
+	public void testRenderPDFInParallel( ) throws Exception
+	{
+		String outputFileName = ".render_pdf_in_parallel.pdf";
+		createReportDocument( );
+
+		IReportDocument reportDoc = engine.openReportDocument( REPORT_DOCUMENT );
+		IRenderTask task = engine.createRenderTask( reportDoc );
+
+		RenderOption option = new RenderOption( );
+		option.setOutputFormat( "pdf" ); //$NON-NLS-1$
+		option.setOutputFileName( outputFileName );
+		// each page is rendered by a thread
+		option.setRenderThreadCount( 3 );
+		task.setRenderOption( option );
+		task.render( );
+		assertEquals( 3, task.getPageCount( ) );
+		task.close( );
+		reportDoc.close( );
+
+		PdfReader reader = new PdfReader( outputFileName );
+		assertEquals( 3, reader.getNumberOfPages( ) );
+		reader.close( );
+		removeFile( outputFileName );
+	}
+
+	/**
+	 * the pages are rendered by three threads, the outline is created from
+	 * the TOC of the document and the links refer to the pages of other
+	 * threads.
+	 */
+	public void testRenderPDFOutlinesInParallel( ) throws Exception
+	{
+		String outputFileName = ".render_pdf_outlines_in_parallel.pdf";
+		IReportDocument reportDoc = createReportDocument( "org/eclipse/birt/report/engine/api/render_pdf_toc_design.xml" );
+		IRenderTask task = engine.createRenderTask( reportDoc );
+
+		RenderOption option = new RenderOption( );
+		option.setOutputFormat( "pdf" ); //$NON-NLS-1$
+		option.setOutputFileName( outputFileName );
+		option.setRenderThreadCount( 3 );
+		task.setRenderOption( option );
+		task.render( );
+		task.close( );
+		reportDoc.close( );
+
+		PdfReader reader = new PdfReader( outputFileName );
+		try
+		{
+			assertEquals( 3, reader.getNumberOfPages( ) );
+
+			// the group spanning all the pages has one outline
+			List outlines = SimpleBookmark.getBookmark( reader );
+			assertEquals( 1, outlines.size( ) );
+			Map group = (Map) outlines.get( 0 );
+			assertEquals( "all pages", group.get( "Title" ) );
+			assertEquals( 1, getPageNumber( (String) group.get( "Page" ) ) );
+			List kids = (List) group.get( "Kids" );
+			assertEquals( 3, kids.size( ) );
+			String[] titles = new String[]{"first page", "second page",
+					"third page"};
+			for ( int i = 0; i < titles.length; i++ )
+			{
+				Map outline = (Map) kids.get( i );
+				assertEquals( titles[i], outline.get( "Title" ) );
+				assertEquals( i + 1, getPageNumber( (String) outline
+						.get( "Page" ) ) );
+			}
+
+			// the first page links to the third and the third to the first
+			assertEquals( 3, getLinkTarget( reader, 1 ) );
+			assertEquals( 1, getLinkTarget( reader, 3 ) );
+		}
+		finally
+		{
+			reader.close( );
+			removeFile( outputFileName );
+		}
+	}
+
+	private int getPageNumber( String destination )
+	{
+		return Integer.parseInt( destination.substring( 0, destination
+				.indexOf( ' ' ) ) );
+	}
+
+	/**
+	 * get the page number the link of the page goes to
+	 */
+	private int getLinkTarget( PdfReader reader, int pageNumber )
+	{
+		PdfArray annots = reader.getPageN( pageNumber ).getAsArray(
+				PdfName.ANNOTS );
+		assertNotNull( annots );
+		for ( int i = 0; i < annots.size( ); i++ )
+		{
+			PdfDictionary annot = annots.getAsDict( i );
+			if ( !PdfName.LINK.equals( annot.getAsName( PdfName.SUBTYPE ) ) )
+			{
+				continue;
+			}
+			PdfObject destination = annot.getAsDict( PdfName.A ).get(
+					PdfName.D );
+			if ( destination.isString( ) )
+			{
+				// the destination of a bookmark in another page range
+				destination = (PdfObject) reader
+						.getNamedDestinationFromStrings( ).get(
+								( (PdfString) destination ).toUnicodeString( ) );
+			}
+			destination = PdfReader.getPdfObject( destination );
+			if ( destination.isDictionary( ) )
+			{
+				destination = ( (PdfDictionary) destination ).get( PdfName.D );
+			}
+			assertNotNull( destination );
+			PdfObject page = ( (PdfArray) destination ).getPdfObject( 0 );
+			for ( int j = 1; j <= reader.getNumberOfPages( ); j++ )
+			{
+				if ( ( (PRIndirectReference) page ).getNumber( ) == reader
+						.getPageOrigRef( j ).getNumber( ) )
+				{
+					return j;
+				}
+			}
+			fail( "the link refers to no page" ); //$NON-NLS-1$
+		}
+		fail( "no link in page " + pageNumber ); //$NON-NLS-1$
+		return -1;
+	}
+
 	public void testCloseOnExitRenderOption( ) throws EngineException
 	{
 		String design = "org/eclipse/birt/report/engine/api/testCloseOnExit.rptdesign";
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.api.impl;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+
+import org.eclipse.birt.report.engine.EngineCase;
+import org.eclipse.birt.report.engine.api.EngineConfig;
+import org.eclipse.birt.report.engine.api.IReportRunnable;
+
+public class ReportDesignCacheTest extends EngineCase
+{
+
+	static final String DESIGN_RESOURCE = "org/eclipse/birt/report/engine/api/impl/test.xml";
+
+	protected ReportEngine cachedEngine;
+
+	public void setUp( ) throws Exception
+	{
+		super.setUp( );
+		EngineConfig config = new EngineConfig( );
+		config.setDesignCacheSize( 2 );
+		cachedEngine = new ReportEngine( config );
+	}
+
+	public void tearDown( ) throws Exception
+	{
+		cachedEngine.destroy( );
+	}
+
+	public void testCacheHit( ) throws Exception
+	{
+		byte[] design = loadResource( DESIGN_RESOURCE );
+		ReportDesignCache cache = cachedEngine.helper.getDesignCache( );
+		assertTrue( cache != null );
+
+		IReportRunnable first = cachedEngine.openReportDesign( "test.xml",
+				new ByteArrayInputStream( design ), new HashMap( ) );
+		IReportRunnable second = cachedEngine.openReportDesign( "test.xml",
+				new ByteArrayInputStream( design ), new HashMap( ) );
+		assertEquals( 1, cache.size( ) );
+		assertEquals( 1, cache.getHitCount( ) );
+		assertEquals( 1, cache.getMissCount( ) );
+
+		// each request gets its own design which shares the compiled scripts
+		assertTrue( first != second );
+		assertTrue( first.getDesignHandle( ) != second.getDesignHandle( ) );
+		assertTrue( ( (ReportRunnable) first ).getScriptCache( ) == ( (ReportRunnable) second )
+				.getScriptCache( ) );
+	}
+
+	public void testChangedDesign( ) throws Exception
+	{
+		byte[] design = loadResource( DESIGN_RESOURCE );
+		String changed = new String( design, "UTF-8" ).replaceAll(
+				"Fist Page", "First Page" );
+		ReportDesignCache cache = cachedEngine.helper.getDesignCache( );
+
+		cachedEngine.openReportDesign( "test.xml", new ByteArrayInputStream(
+				design ), new HashMap( ) );
+		cachedEngine.openReportDesign( "test.xml", new ByteArrayInputStream(
+				changed.getBytes( "UTF-8" ) ), new HashMap( ) );
+		assertEquals( 0, cache.getHitCount( ) );
+		assertEquals( 2, cache.getMissCount( ) );
+	}
+
+	public void testEviction( ) throws Exception
+	{
+		byte[] design = loadResource( DESIGN_RESOURCE );
+		ReportDesignCache cache = cachedEngine.helper.getDesignCache( );
+		for ( int i = 0; i < 4; i++ )
+		{
+			cachedEngine.openReportDesign( "test" + i + ".xml",
+					new ByteArrayInputStream( design ), new HashMap( ) );
+		}
+		assertEquals( 2, cache.size( ) );
+	}
+
+	public void testDisabled( ) throws Exception
+	{
+		ReportEngine engine = new ReportEngine( new EngineConfig( ) );
+		try
+		{
+			assertTrue( engine.helper.getDesignCache( ) == null );
+		}
+		finally
+		{
+			engine.destroy( );
+		}
+	}
+}
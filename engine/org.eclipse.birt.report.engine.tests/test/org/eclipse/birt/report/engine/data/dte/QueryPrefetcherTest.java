@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.data.dte;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.core.archive.FileArchiveWriter;
+import org.eclipse.birt.core.archive.IDocArchiveWriter;
+import org.eclipse.birt.data.engine.api.IQueryDefinition;
+import org.eclipse.birt.report.engine.api.EngineConstants;
+import org.eclipse.birt.report.engine.executor.ExecutionContext;
+import org.eclipse.birt.report.engine.extension.IQueryResultSet;
+import org.eclipse.birt.report.engine.ir.Report;
+import org.eclipse.birt.report.engine.parser.ReportParser;
+
+public class QueryPrefetcherTest extends TestCase
+{
+
+	private static final String PREFETCH_DESIGN = "PrefetchDataSet.xml";
+
+	private static final String ARCHIVE_PATH = "./utest/prefetch";
+
+	IDocArchiveWriter archWriter;
+
+	public void tearDown( )
+	{
+		new File( ARCHIVE_PATH ).delete( );
+	}
+
+	/**
+	 * three queries use the same data source, the query of the data set with
+	 * scripts and the query with a script binding are executed by the report
+	 * thread.
+	 */
+	public void testPrefetch( ) throws Exception
+	{
+		InputStream in = getClass( ).getResourceAsStream( PREFETCH_DESIGN );
+		assertTrue( in != null );
+		Report report = new ReportParser( ).parse( "", in );
+
+		HashMap appContext = new HashMap( );
+		appContext.put( EngineConstants.QUERY_PREFETCH_THREADS, "2" );
+		ExecutionContext context = new ExecutionContext( );
+		context.setAppContext( appContext );
+		archWriter = new FileArchiveWriter( ARCHIVE_PATH );
+		archWriter.initialize( );
+		DataGenerationEngine dataEngine = new DataGenerationEngine( null,
+				context, archWriter );
+		try
+		{
+			dataEngine.prepare( report, appContext );
+			dataEngine.prefetchQueries( report );
+
+			List queries = report.getQueries( );
+			assertEquals( 3, queries.size( ) );
+			IQueryDefinition customers = (IQueryDefinition) queries.get( 0 );
+			IQueryDefinition products = (IQueryDefinition) queries.get( 1 );
+			IQueryDefinition nextNumbers = (IQueryDefinition) queries.get( 2 );
+			assertEquals( "Customers", customers.getDataSetName( ) );
+			assertTrue( dataEngine.prefetcher.isPrefetched( customers ) );
+			assertFalse( dataEngine.prefetcher.isPrefetched( products ) );
+			assertEquals( "Customers", nextNumbers.getDataSetName( ) );
+			assertFalse( dataEngine.prefetcher.isPrefetched( nextNumbers ) );
+
+			// the scripted query opens the data source in the report thread
+			// while the prefetched query may still be running
+			IQueryResultSet productSet = (IQueryResultSet) dataEngine
+					.execute( products );
+			int productCount = 0;
+			while ( productSet.next( ) )
+			{
+				assertNotNull( productSet.getValue( "PRODUCTCODE" ) );
+				assertEquals( "Ships", productSet.getValue( "PRODUCTLINE" ) );
+				productCount++;
+			}
+			productSet.close( );
+			assertTrue( productCount > 0 );
+
+			IQueryResultSet customerSet = (IQueryResultSet) dataEngine
+					.execute( customers );
+			assertFalse( dataEngine.prefetcher.isPrefetched( customers ) );
+			int customerCount = 0;
+			while ( customerSet.next( ) )
+			{
+				assertNotNull( customerSet.getValue( "CUSTOMERNUMBER" ) );
+				customerCount++;
+			}
+			customerSet.close( );
+			assertTrue( customerCount > 0 );
+
+			// the script binding is evaluated by the report thread
+			IQueryResultSet nextNumberSet = (IQueryResultSet) dataEngine
+					.execute( nextNumbers );
+			int nextNumberCount = 0;
+			while ( nextNumberSet.next( ) )
+			{
+				assertNotNull( nextNumberSet.getValue( "NEXTNUMBER" ) );
+				nextNumberCount++;
+			}
+			nextNumberSet.close( );
+			assertEquals( customerCount, nextNumberCount );
+		}
+		finally
+		{
+			dataEngine.shutdown( );
+			archWriter.finish( );
+		}
+	}
+}
@@ -99,4 +99,28 @@ public class HTMLWriterTest extends TestCase
 
 		stream.close( );
 	}
-}
\ No newline at end of file
+
+	public void testLongText( ) throws IOException
+	{
+		StringBuffer text = new StringBuffer( );
+		StringBuffer expected = new StringBuffer( );
+		for ( int i = 0; i < 500; i++ )
+		{
+			text.append( "a&b<c" );
+			expected.append( "a&amp;b&lt;c" );
+		}
+		ByteArrayOutputStream stream = new ByteArrayOutputStream( );
+		HTMLWriter writer = new HTMLWriter( );
+		writer.open( stream );
+
+		// the encoded text is longer than the buffer of the writer
+		writer.text( text.toString( ) );
+		writer.text( "abc" );
+		writer.endWriter( );
+		writer.close( );
+		expected.append( "abc" );
+		assertEquals( expected.toString( ), stream.toString( ) );
+
+		stream.close( );
+	}
+}
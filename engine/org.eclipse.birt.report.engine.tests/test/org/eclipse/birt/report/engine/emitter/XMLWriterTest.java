@@ -104,4 +104,30 @@ public class XMLWriterTest extends TestCase
 				out.toString( "UTF-8" ).replaceAll( "[\\r|\\n |\\t]", "" ) );
 	}
 
+	public void testOverriddenEncoding( ) throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		XMLWriter writer = new XMLWriter( ) {
+
+			protected String encodeText( String s )
+			{
+				return s.toUpperCase( );
+			}
+
+			protected String encodeAttr( String s )
+			{
+				return "[" + s + "]";
+			}
+		};
+		writer.open( out );
+		writer.openTag( "fo:block" );
+		writer.attribute( "color", "blue" );
+		writer.text( "text&" );
+		writer.closeTag( "fo:block" );
+		writer.close( );
+
+		assertEquals( "<fo:block color=\"[blue]\">TEXT&</fo:block>",
+				out.toString( "UTF-8" ).replaceAll( "[\\r\\n\\t]", "" ) );
+	}
+
 }
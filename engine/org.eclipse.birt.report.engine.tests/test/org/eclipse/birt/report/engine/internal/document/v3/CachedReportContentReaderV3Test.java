@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.internal.document.v3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.core.archive.compound.ArchiveFile;
+import org.eclipse.birt.core.archive.compound.ArchiveReader;
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.archive.compound.ArchiveWriter;
+import org.eclipse.birt.report.engine.api.InstanceID;
+import org.eclipse.birt.report.engine.content.IContent;
+import org.eclipse.birt.report.engine.content.IRowContent;
+import org.eclipse.birt.report.engine.content.ITableContent;
+import org.eclipse.birt.report.engine.content.impl.ReportContent;
+import org.eclipse.birt.report.engine.executor.ExecutionContext;
+
+public class CachedReportContentReaderV3Test extends TestCase
+{
+
+	static final String ARCHIVE_FILE = "./utest/content.rptdocument";
+	static final String CONTENT_STREAM = "/content/content.dat";
+	static final int ROW_COUNT = 100;
+	static final String GROUP_STREAM = "/content/group.dat";
+	static final int GROUP_LEVEL = 4;
+	static final int GROUP_COUNT = 3;
+	static final int CAPACITY = 200;
+
+	ArchiveFile archive;
+	long tableOffset;
+	long[] rowOffsets = new long[ROW_COUNT];
+
+	public void setUp( ) throws Exception
+	{
+		new File( ARCHIVE_FILE ).delete( );
+		archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+		ReportContent reportContent = new ReportContent( );
+		ReportContentWriterV3 writer = new ReportContentWriterV3(
+				new ArchiveWriter( archive ), CONTENT_STREAM );
+		try
+		{
+			writer.writeReport( reportContent );
+			ITableContent table = reportContent.createTableContent( );
+			table.setInstanceID( new InstanceID( null, 1, 1, null ) );
+			tableOffset = writer.writeContent( table );
+			for ( int i = 0; i < ROW_COUNT; i++ )
+			{
+				IRowContent row = reportContent.createRowContent( );
+				row.setInstanceID( new InstanceID( null, i + 2, 2, null ) );
+				row.setParent( table );
+				rowOffsets[i] = writer.writeContent( row );
+			}
+		}
+		finally
+		{
+			writer.close( );
+		}
+	}
+
+	public void tearDown( ) throws Exception
+	{
+		archive.close( );
+		new File( ARCHIVE_FILE ).delete( );
+	}
+
+	/**
+	 * the rows of a long table evict each other, the table is kept until it
+	 * is unloaded.
+	 */
+	public void testEvictInTable( ) throws Exception
+	{
+		ContentCache cache = new ContentCache( 100 );
+		CachedReportContentReaderV3 reader = new CachedReportContentReaderV3(
+				new ReportContent( ), new ArchiveReader( archive )
+						.getStream( CONTENT_STREAM ), new ExecutionContext( ),
+				cache );
+		try
+		{
+			IContent table = reader.loadContent( tableOffset );
+			Object generateBy = new Object( );
+			table.setGenerateBy( generateBy );
+			for ( int i = 0; i < ROW_COUNT; i++ )
+			{
+				IContent row = reader.loadContent( rowOffsets[i] );
+				assertSame( table, row.getParent( ) );
+				assertSame( generateBy, ( (IContent) row.getParent( ) )
+						.getGenerateBy( ) );
+				reader.unloadContent( rowOffsets[i] );
+			}
+			// the released rows are evicted, the table is still loaded
+			assertTrue( cache.getSize( ) < ROW_COUNT );
+			assertSame( table, cache.get( reader, tableOffset ) );
+			reader.unloadContent( tableOffset );
+		}
+		finally
+		{
+			reader.close( );
+		}
+		assertEquals( 0, cache.getSize( ) );
+		assertEquals( 0, cache.getWeight( ) );
+	}
+
+	/**
+	 * the contents of a deep group hierarchy are loaded by the executors and
+	 * by the reportlet which loads a content without its ancestors, the
+	 * cached contents are bounded by the capacity and the loaded contents
+	 * with their ancestors.
+	 */
+	public void testEvictInGroups( ) throws Exception
+	{
+		Node root = writeGroups( );
+		ContentCache cache = new ContentCache( CAPACITY );
+		WeightedReader reader = new WeightedReader( new ArchiveReader( archive )
+				.getStream( GROUP_STREAM ), cache );
+		try
+		{
+			LinkedList<Long> loaded = new LinkedList<Long>( );
+			Node last = loadGroups( reader, root, loaded );
+			assertTrue( cache.getWeight( ) <= CAPACITY );
+
+			// the reportlet loads the last row with its ancestors
+			IContent row = reader.loadContent( last.offset );
+			assertNotNull( row.getParent( ) );
+			reader.unloadContent( last.offset );
+			assertTrue( cache.getWeight( ) <= CAPACITY );
+		}
+		finally
+		{
+			reader.close( );
+		}
+		assertEquals( 0, cache.getSize( ) );
+		assertEquals( 0, cache.getWeight( ) );
+	}
+
+	private Node loadGroups( WeightedReader reader, Node node,
+			LinkedList<Long> loaded ) throws IOException
+	{
+		IContent content = reader.loadContent( node.offset );
+		if ( !loaded.isEmpty( ) )
+		{
+			assertSame( reader.cache.get( reader, loaded.getLast( ) ), content
+					.getParent( ) );
+		}
+		loaded.add( node.offset );
+		long weight = CAPACITY;
+		for ( Long offset : loaded )
+		{
+			weight += reader.weights.get( offset );
+		}
+		assertTrue( reader.cache.getWeight( ) <= weight );
+
+		Node last = node;
+		for ( Node child : node.children )
+		{
+			last = loadGroups( reader, child, loaded );
+		}
+		loaded.removeLast( );
+		reader.unloadContent( node.offset );
+		return last;
+	}
+
+	private Node writeGroups( ) throws IOException
+	{
+		ReportContent reportContent = new ReportContent( );
+		ReportContentWriterV3 writer = new ReportContentWriterV3(
+				new ArchiveWriter( archive ), GROUP_STREAM );
+		try
+		{
+			writer.writeReport( reportContent );
+			ITableContent table = reportContent.createTableContent( );
+			table.setInstanceID( new InstanceID( null, 1, 1, null ) );
+			Node root = new Node( writer.writeContent( table ) );
+			writeGroups( writer, reportContent, table, root, 1 );
+			return root;
+		}
+		finally
+		{
+			writer.close( );
+		}
+	}
+
+	private void writeGroups( ReportContentWriterV3 writer,
+			ReportContent reportContent, IContent parent, Node node, int level )
+			throws IOException
+	{
+		for ( int i = 0; i < GROUP_COUNT; i++ )
+		{
+			IContent content;
+			if ( level <= GROUP_LEVEL )
+			{
+				content = reportContent.createTableGroupContent( );
+			}
+			else
+			{
+				content = reportContent.createRowContent( );
+			}
+			content.setInstanceID( new InstanceID( null, i, level + 1, null ) );
+			content.setParent( parent );
+			Node child = new Node( writer.writeContent( content ) );
+			node.children.add( child );
+			if ( level <= GROUP_LEVEL )
+			{
+				writeGroups( writer, reportContent, content, child, level + 1 );
+			}
+		}
+	}
+
+	private static class Node
+	{
+
+		long offset;
+		List<Node> children = new ArrayList<Node>( );
+
+		Node( long offset )
+		{
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * the reader remembers the size of the loaded contents.
+	 */
+	private static class WeightedReader extends CachedReportContentReaderV3
+	{
+
+		Map<Long, Long> weights = new HashMap<Long, Long>( );
+
+		WeightedReader( RAInputStream stream, ContentCache cache )
+				throws IOException
+		{
+			super( new ReportContent( ), stream, new ExecutionContext( ), cache );
+		}
+
+		protected void addCache( long offset, IContent content, long weight,
+				long parentOffset )
+		{
+			weights.put( offset, weight );
+			super.addCache( offset, content, weight, parentOffset );
+		}
+	}
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.internal.document.v3;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.report.engine.api.EngineConstants;
+import org.eclipse.birt.report.engine.content.IContent;
+import org.eclipse.birt.report.engine.content.impl.ReportContent;
+
+public class ContentCacheTest extends TestCase
+{
+
+	ReportContent reportContent = new ReportContent( );
+
+	public void testGetAndPut( )
+	{
+		ContentCache cache = new ContentCache( 100 );
+		Object body = new Object( );
+		Object page = new Object( );
+		IContent content = reportContent.createLabelContent( );
+		IContent pageContent = reportContent.createPageContent( );
+		cache.put( body, 8, content, 10 );
+		// the page reader uses the same offsets
+		cache.put( page, 8, pageContent, 20 );
+
+		assertSame( content, cache.get( body, 8 ) );
+		assertSame( pageContent, cache.get( page, 8 ) );
+		assertNull( cache.get( body, 16 ) );
+		assertEquals( 2, cache.getHitCount( ) );
+		assertEquals( 1, cache.getMissCount( ) );
+		assertEquals( 2, cache.getSize( ) );
+		assertEquals( 30, cache.getWeight( ) );
+
+		assertSame( content, cache.remove( body, 8 ) );
+		assertNull( cache.get( body, 8 ) );
+		assertEquals( 20, cache.getWeight( ) );
+
+		cache.removeAll( page );
+		assertEquals( 0, cache.getSize( ) );
+		assertEquals( 0, cache.getWeight( ) );
+	}
+
+	public void testEvict( )
+	{
+		ContentCache cache = new ContentCache( 30 );
+		Object owner = new Object( );
+		IContent[] contents = new IContent[4];
+		for ( int i = 0; i < 3; i++ )
+		{
+			contents[i] = reportContent.createLabelContent( );
+			cache.put( owner, i, contents[i], 10 );
+		}
+		// the first content becomes the most recently used one
+		assertSame( contents[0], cache.get( owner, 0 ) );
+		contents[3] = reportContent.createLabelContent( );
+		cache.put( owner, 3, contents[3], 10 );
+
+		assertNull( cache.get( owner, 1 ) );
+		assertSame( contents[0], cache.get( owner, 0 ) );
+		assertSame( contents[2], cache.get( owner, 2 ) );
+		assertSame( contents[3], cache.get( owner, 3 ) );
+		assertEquals( 30, cache.getWeight( ) );
+
+		// the content larger than the capacity is not cached
+		cache.put( owner, 4, reportContent.createLabelContent( ), 40 );
+		assertNull( cache.get( owner, 4 ) );
+		assertEquals( 3, cache.getSize( ) );
+
+		cache.setCapacity( 10 );
+		assertEquals( 1, cache.getSize( ) );
+		assertSame( contents[3], cache.get( owner, 3 ) );
+	}
+
+	public void testPinAndRelease( )
+	{
+		ContentCache cache = new ContentCache( 60 );
+		Object owner = new Object( );
+		IContent table = reportContent.createTableContent( );
+		cache.put( owner, 0, table, 40, true );
+		IContent[] rows = new IContent[5];
+		for ( int i = 1; i <= 4; i++ )
+		{
+			rows[i] = reportContent.createRowContent( );
+			cache.put( owner, i, rows[i], 10, true );
+			cache.release( owner, i );
+		}
+		// only the released contents are evicted
+		assertSame( table, cache.get( owner, 0 ) );
+		assertNull( cache.get( owner, 1 ) );
+		assertNull( cache.get( owner, 2 ) );
+		assertSame( rows[3], cache.get( owner, 3 ) );
+		assertSame( rows[4], cache.get( owner, 4 ) );
+		assertEquals( 60, cache.getWeight( ) );
+
+		assertSame( rows[3], cache.get( owner, 3, true ) );
+		cache.setCapacity( 0 );
+		assertSame( table, cache.get( owner, 0 ) );
+		assertSame( rows[3], cache.get( owner, 3 ) );
+		assertNull( cache.get( owner, 4 ) );
+		assertEquals( 50, cache.getWeight( ) );
+
+		// the pinned content is cached even if it is larger than the capacity
+		cache.put( owner, 5, reportContent.createRowContent( ), 10, true );
+		assertNotNull( cache.get( owner, 5 ) );
+
+		cache.release( owner, 0 );
+		assertNull( cache.get( owner, 0 ) );
+		assertSame( rows[3], cache.get( owner, 3 ) );
+		cache.removeAll( owner );
+		assertEquals( 0, cache.getSize( ) );
+		assertEquals( 0, cache.getWeight( ) );
+	}
+
+	public void testPinCount( )
+	{
+		ContentCache cache = new ContentCache( 0 );
+		Object owner = new Object( );
+		IContent table = reportContent.createTableContent( );
+		cache.put( owner, 0, table, 40, true );
+		// the table is pinned again by another executor
+		assertSame( table, cache.get( owner, 0, true ) );
+		cache.release( owner, 0 );
+		assertSame( table, cache.get( owner, 0 ) );
+		cache.release( owner, 0 );
+		assertNull( cache.get( owner, 0 ) );
+		// the extra release is ignored
+		cache.release( owner, 0 );
+		assertEquals( 0, cache.getWeight( ) );
+	}
+
+	public void testParentHeldByChild( )
+	{
+		ContentCache cache = new ContentCache( 0 );
+		Object owner = new Object( );
+		IContent table = reportContent.createTableContent( );
+		IContent group = reportContent.createTableGroupContent( );
+		IContent row = reportContent.createRowContent( );
+		cache.put( owner, 0, table, 10, true );
+		cache.put( owner, 1, group, 10, true, 0 );
+		cache.put( owner, 2, row, 10, true, 1 );
+		cache.release( owner, 0 );
+		cache.release( owner, 1 );
+		// the ancestors are held by the pinned row
+		assertSame( table, cache.get( owner, 0 ) );
+		assertSame( group, cache.get( owner, 1 ) );
+		assertEquals( 30, cache.getWeight( ) );
+
+		// the ancestors are evicted with the row
+		cache.release( owner, 2 );
+		assertEquals( 0, cache.getSize( ) );
+		assertEquals( 0, cache.getWeight( ) );
+
+		cache.put( owner, 0, table, 10, true );
+		cache.put( owner, 1, group, 10, true, 0 );
+		cache.removeAll( owner );
+		assertEquals( 0, cache.getSize( ) );
+		assertEquals( 0, cache.getWeight( ) );
+	}
+
+	public void testEvictChildBeforeParent( )
+	{
+		ContentCache cache = new ContentCache( 20 );
+		Object owner = new Object( );
+		IContent group = reportContent.createTableGroupContent( );
+		IContent row = reportContent.createRowContent( );
+		cache.put( owner, 0, group, 10, true );
+		cache.put( owner, 1, row, 10, true, 0 );
+		cache.release( owner, 1 );
+		cache.release( owner, 0 );
+		IContent label = reportContent.createLabelContent( );
+		cache.put( owner, 2, label, 10 );
+		// the row is least recently used
+		assertNull( cache.get( owner, 1 ) );
+		assertEquals( 20, cache.getWeight( ) );
+		// the group released by the row is evicted before the label
+		cache.put( owner, 3, reportContent.createLabelContent( ), 10 );
+		assertNull( cache.get( owner, 0 ) );
+		assertSame( label, cache.get( owner, 2 ) );
+		assertEquals( 20, cache.getWeight( ) );
+	}
+
+	public void testManyContents( )
+	{
+		ContentCache cache = new ContentCache( 1000 );
+		Object owner = new Object( );
+		for ( long offset = 0; offset < 10000; offset += 8 )
+		{
+			cache.put( owner, offset, reportContent.createLabelContent( ), 1 );
+		}
+		assertEquals( 1000, cache.getSize( ) );
+		assertNull( cache.get( owner, 0 ) );
+		assertNotNull( cache.get( owner, 9992 ) );
+		assertNotNull( cache.get( owner, 2000 ) );
+		assertNull( cache.get( owner, 1992 ) );
+	}
+
+	public void testCreateCache( )
+	{
+		assertEquals( ContentCache.DEFAULT_CAPACITY, ContentCache.createCache(
+				null ).getCapacity( ) );
+		Map appContext = new HashMap( );
+		appContext.put( EngineConstants.APPCONTEXT_CONTENT_CACHE_SIZE, "1024" ); //$NON-NLS-1$
+		assertEquals( 1024, ContentCache.createCache( appContext )
+				.getCapacity( ) );
+		appContext.put( EngineConstants.APPCONTEXT_CONTENT_CACHE_SIZE,
+				new Long( 0 ) );
+		assertEquals( 0, ContentCache.createCache( appContext ).getCapacity( ) );
+	}
+}
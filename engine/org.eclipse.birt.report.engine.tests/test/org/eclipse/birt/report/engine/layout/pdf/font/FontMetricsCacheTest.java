@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.layout.pdf.font;
+
+import junit.framework.TestCase;
+
+import com.lowagie.text.Font;
+import com.lowagie.text.pdf.BaseFont;
+
+public class FontMetricsCacheTest extends TestCase
+{
+
+	private static final String[] WORDS = new String[]{"", "a", "Invoice",
+			"Total:", "\u00e9t\u00e9", "\u20ac100", "\u03a9\u4e2d\u6587",
+			"a\ud840\udc00b",
+			"averyveryveryveryveryveryverylongwordwhichisnotcached"};
+
+	public void testWordWidth( ) throws Exception
+	{
+		BaseFont bf = BaseFont.createFont( BaseFont.HELVETICA,
+				BaseFont.CP1252, BaseFont.NOT_EMBEDDED );
+		FontMetricsCache cache = FontMetricsCache.getInstance( bf );
+		assertSame( cache, FontMetricsCache.getInstance( bf ) );
+		float[] sizes = new float[]{7.5f, 10, 12};
+		for ( int i = 0; i < sizes.length; i++ )
+		{
+			for ( int j = 0; j < WORDS.length; j++ )
+			{
+				// measure twice to use the cached width
+				assertEquals( bf.getWidthPoint( WORDS[j], sizes[i] ),
+						cache.getWidthPoint( WORDS[j], sizes[i] ), 0f );
+				assertEquals( bf.getWidthPoint( WORDS[j], sizes[i] ),
+						cache.getWidthPoint( WORDS[j], sizes[i] ), 0f );
+			}
+		}
+	}
+
+	public void testFontInfo( ) throws Exception
+	{
+		BaseFont bf = BaseFont.createFont( BaseFont.TIMES_ROMAN,
+				BaseFont.CP1252, BaseFont.NOT_EMBEDDED );
+		FontInfo fontInfo = new FontInfo( bf, 10, Font.NORMAL, Font.NORMAL,
+				false );
+		for ( int i = 0; i < WORDS.length; i++ )
+		{
+			assertEquals( bf.getWidthPoint( WORDS[i], 10 ),
+					fontInfo.getWordWidth( WORDS[i] ), 0f );
+		}
+		fontInfo = new FontInfo( fontInfo );
+		fontInfo.setFontSize( 14 );
+		assertEquals( bf.getWidthPoint( WORDS[2], 14 ),
+				fontInfo.getWordWidth( WORDS[2] ), 0f );
+	}
+}
@@ -98,4 +98,20 @@ public class EXCELRenderOption extends RenderOption implements IExcelRenderOptio
 		setOption( OPTION_MULTIPLE_SHEET, enableMultipleSheet );
 	}
 
+	/**
+	 * Set if the rows are written to an xlsx workbook as soon as they are
+	 * completed.
+	 * 
+	 * @param streamingXlsx
+	 */
+	public void setStreamingXlsx( boolean streamingXlsx )
+	{
+		setOption( STREAMING_XLSX, streamingXlsx );
+	}
+
+	public boolean isStreamingXlsx( )
+	{
+		return getBooleanOption( STREAMING_XLSX, false );
+	}
+
 }
@@ -490,6 +490,45 @@ public class EngineConfig extends PlatformConfig implements IEngineConfig
 		return 0;
 	}
 
+	/**
+	 * Set the max count of the report designs cached by the engine. The
+	 * cached designs are reused by openReportDesign until the design or any
+	 * included library is changed.
+	 * 
+	 * @param size
+	 *            the max count of cached designs, 0 to disable the cache.
+	 */
+	public void setDesignCacheSize( int size )
+	{
+		setProperty( DESIGN_CACHE_SIZE, Integer.valueOf( size ) );
+	}
+
+	/**
+	 * Get the max count of the report designs cached by the engine.
+	 * 
+	 * @return the max count of cached designs, 0 if the cache is disabled.
+	 */
+	public int getDesignCacheSize( )
+	{
+		Object size = getProperty( DESIGN_CACHE_SIZE );
+		if ( size instanceof Integer )
+		{
+			return ( (Integer) size ).intValue( );
+		}
+		if ( size instanceof String )
+		{
+			try
+			{
+				return Integer.parseInt( (String) size );
+			}
+			catch ( NumberFormatException ex )
+			{
+				return 0;
+			}
+		}
+		return 0;
+	}
+
 	/**
 	 * Sets default emitter for an output format.
 	 * 
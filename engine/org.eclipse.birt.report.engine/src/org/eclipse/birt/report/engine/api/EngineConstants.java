@@ -62,4 +62,19 @@ public class EngineConstants {
 	 * the default value is false;
 	 */
 	public static final String REFRESH_DATA = "REFRESH_DATA";
+
+	/**
+	 * The name of the key set in appContext to specify the count of threads
+	 * used to execute the independent top level queries of a report in
+	 * parallel before the report items are executed. The value is an Integer
+	 * or a String, the prefetch is disabled if it is not set or less than 1.
+	 */
+	public static final String QUERY_PREFETCH_THREADS = "QUERY_PREFETCH_THREADS"; //$NON-NLS-1$
+
+	/**
+	 * The name of the key set in appContext to specify the max size in bytes
+	 * of the contents cached by the readers of a report document. The value
+	 * is a Long or a String, the cache is disabled if it is less than 1.
+	 */
+	public static final String APPCONTEXT_CONTENT_CACHE_SIZE = "CONTENT_CACHE_SIZE"; //$NON-NLS-1$
 }
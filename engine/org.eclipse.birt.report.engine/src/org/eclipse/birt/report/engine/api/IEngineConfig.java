@@ -64,4 +64,10 @@ public interface IEngineConfig extends IPlatformConfig
 	 * The max rows per query
 	 */
 	static final String MAX_ROWS_PER_QUERY = "maxRowsPerQuery";
+
+	/**
+	 * The max count of the report designs cached by the engine, the design
+	 * cache is disabled if it is not set or less than 1.
+	 */
+	static final String DESIGN_CACHE_SIZE = "designCacheSize";
 }
@@ -39,6 +39,16 @@ public interface IExcelRenderOption extends IRenderOption
 	 * Excel will ignore all image items when this option is on.
 	 */
 	public static final String IGNORE_IMAGE = "excelRenderOption.ignoreImage";
+
+	/**
+	 * The option to write the report as an Office 2007 (xlsx) workbook. If
+	 * the report body is a single table or grid whose columns have widths and
+	 * whose cells only have data, labels and auto texts, the rows are written
+	 * as soon as they are completed, so the memory used by the emitter
+	 * doesn't grow with the count of the rows. The rows of other reports are
+	 * written when their sheet ends, since their columns may still change.
+	 */
+	public static final String STREAMING_XLSX = "excelRenderOption.streamingXlsx";
 	
 	/**
 	 * 
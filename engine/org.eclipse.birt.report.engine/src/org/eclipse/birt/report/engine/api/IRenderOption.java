@@ -73,6 +73,14 @@ public interface IRenderOption extends ITaskOption
 	
 	public static final String REPORTLET_SIZE = "reportletSize";
 
+	/**
+	 * The count of the threads used to render the pages of a report document.
+	 * The value is an Integer object, default is 1. The pages are split across
+	 * the threads only if the output is paginated and its emitter provides an
+	 * output merger, the partial outputs are merged in page order.
+	 */
+	public static final String RENDER_THREAD_COUNT = "renderThreadCount"; //$NON-NLS-1$
+
 	/**
 	 * @return
 	 * @deprecated use getOptions instead
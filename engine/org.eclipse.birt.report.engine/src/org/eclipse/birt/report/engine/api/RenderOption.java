@@ -292,4 +292,22 @@ public class RenderOption extends TaskOption implements IRenderOption
 	{
 		setOption( CLOSE_OUTPUTSTREAM_ON_EXIT, Boolean.valueOf( closeOnExit ) );
 	}
+
+	/**
+	 * Returns the count of the threads used to render the report document.
+	 */
+	public int getRenderThreadCount( )
+	{
+		return getIntOption( RENDER_THREAD_COUNT, 1 );
+	}
+
+	/**
+	 * Set the count of the threads used to render the report document.
+	 * 
+	 * @param threadCount
+	 */
+	public void setRenderThreadCount( int threadCount )
+	{
+		setOption( RENDER_THREAD_COUNT, Integer.valueOf( threadCount ) );
+	}
 }
\ No newline at end of file
@@ -11,10 +11,18 @@
 
 package org.eclipse.birt.report.engine.api.impl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -32,8 +40,12 @@ import org.eclipse.birt.report.engine.api.IReportDocumentInfo;
 import org.eclipse.birt.report.engine.api.IReportRunnable;
 import org.eclipse.birt.report.engine.api.ITOCTree;
 import org.eclipse.birt.report.engine.api.InstanceID;
+import org.eclipse.birt.report.engine.api.RenderOption;
 import org.eclipse.birt.report.engine.content.IReportContent;
+import org.eclipse.birt.report.engine.emitter.EngineEmitterServices;
 import org.eclipse.birt.report.engine.emitter.IContentEmitter;
+import org.eclipse.birt.report.engine.emitter.IEmitterServices;
+import org.eclipse.birt.report.engine.emitter.IOutputMerger;
 import org.eclipse.birt.report.engine.executor.EngineExtensionManager;
 import org.eclipse.birt.report.engine.executor.IReportExecutor;
 import org.eclipse.birt.report.engine.executor.PageVariable;
@@ -87,6 +99,9 @@ public class RenderTask extends EngineTask implements IRenderTask
 	// the html layout engine
 	private IReportLayoutEngine layoutEngine = null;
 
+	// the tasks which render the page ranges in parallel
+	private List<RenderTask> workerTasks = null;
+
 	/**
 	 * @param engine
 	 *            the report engine
@@ -398,6 +413,16 @@ public class RenderTask extends EngineTask implements IRenderTask
 		{
 			layoutEngine.cancel( );
 		}
+		synchronized ( this )
+		{
+			if ( workerTasks != null )
+			{
+				for ( RenderTask workerTask : workerTasks )
+				{
+					workerTask.cancel( );
+				}
+			}
+		}
 	}
 
 	private interface InnerRender
@@ -539,6 +564,12 @@ public class RenderTask extends EngineTask implements IRenderTask
 		{
 			// start the render
 			setupRenderOption( );
+			IOutputMerger outputMerger = getOutputMerger( );
+			if ( outputMerger != null )
+			{
+				renderInParallel( outputMerger );
+				return;
+			}
 			IContentEmitter emitter = createContentEmitter( );
 			supportHtmlPagination( );
 
@@ -715,6 +746,255 @@ public class RenderTask extends EngineTask implements IRenderTask
 				executionContext.setFilteredPageNumber( filteredPageNumber );
 			}
 		}
+
+		/**
+		 * @return the output merger of the emitter if the pages should be
+		 *         rendered in several threads, null if the pages are rendered
+		 *         by this task.
+		 */
+		protected IOutputMerger getOutputMerger( )
+		{
+			if ( getRenderThreadCount( ) <= 1 || getPageCount( ) <= 1
+					|| !( reportDocument instanceof ReportDocumentReader ) )
+			{
+				return null;
+			}
+			// only the paginated outputs can be split by pages
+			ExtensionManager extManager = ExtensionManager.getInstance( );
+			if ( !ExtensionManager.PAPER_SIZE_PAGINATION.equals( extManager
+					.getPagination( emitterID ) ) )
+			{
+				return null;
+			}
+			return extManager.createOutputMerger( emitterID );
+		}
+
+		protected int getRenderThreadCount( )
+		{
+			return new RenderOption( executionContext.getRenderOption( )
+					.getOptions( ) ).getRenderThreadCount( );
+		}
+
+		/**
+		 * Splits the page sequences into consecutive page ranges with about
+		 * the same page count.
+		 *
+		 * @param count
+		 *            the count of the page ranges
+		 * @return the page sequences of each page range
+		 */
+		protected List<List<long[]>> splitPageSequences( int count )
+		{
+			long pageCount = getPageCount( );
+			count = (int) Math.min( count, pageCount );
+			List<List<long[]>> ranges = new ArrayList<List<long[]>>( );
+			Iterator<long[]> iter = pageSequences.iterator( );
+			long[] pageSeg = null;
+			long start = 0;
+			for ( int i = 0; i < count; i++ )
+			{
+				List<long[]> range = new ArrayList<long[]>( );
+				long size = pageCount * ( i + 1 ) / count - pageCount * i
+						/ count;
+				while ( size > 0 )
+				{
+					if ( pageSeg == null )
+					{
+						pageSeg = iter.next( );
+						start = pageSeg[0];
+					}
+					long end = Math.min( pageSeg[1], start + size - 1 );
+					range.add( new long[]{start, end} );
+					size -= end - start + 1;
+					if ( end == pageSeg[1] )
+					{
+						pageSeg = null;
+					}
+					else
+					{
+						start = end + 1;
+					}
+				}
+				ranges.add( range );
+			}
+			return ranges;
+		}
+
+		/**
+		 * Renders the page ranges in several threads, each with its own
+		 * document reader over the shared archive, then merges the outputs of
+		 * the page ranges in page order.
+		 */
+		protected void renderInParallel( IOutputMerger outputMerger )
+				throws Exception
+		{
+			List<List<long[]>> ranges = splitPageSequences( getRenderThreadCount( ) );
+			File tempDir = new File( engine.getConfig( ).getTempDir( ) );
+			tempDir.mkdirs( );
+			List<PageRangeWorker> workers = new ArrayList<PageRangeWorker>( );
+			List<RenderTask> tasks = new ArrayList<RenderTask>( );
+			try
+			{
+				for ( List<long[]> range : ranges )
+				{
+					PageRangeWorker worker = new PageRangeWorker(
+							( (ReportDocumentReader) reportDocument )
+									.createSharedReader( ),
+							range, File.createTempFile( "render", ".tmp", //$NON-NLS-1$ //$NON-NLS-2$
+									tempDir ) );
+					workers.add( worker );
+					tasks.add( worker.task );
+				}
+				synchronized ( RenderTask.this )
+				{
+					if ( executionContext.isCanceled( ) )
+					{
+						return;
+					}
+					workerTasks = tasks;
+				}
+
+				Thread[] threads = new Thread[workers.size( )];
+				for ( int i = 0; i < threads.length; i++ )
+				{
+					threads[i] = new Thread( workers.get( i ),
+							"BIRT render " + i ); //$NON-NLS-1$
+					threads[i].start( );
+				}
+				for ( int i = 0; i < threads.length; i++ )
+				{
+					threads[i].join( );
+				}
+
+				outputPageCount = 0;
+				for ( PageRangeWorker worker : workers )
+				{
+					if ( worker.error instanceof Exception )
+					{
+						throw (Exception) worker.error;
+					}
+					if ( worker.error != null )
+					{
+						throw (Error) worker.error;
+					}
+					for ( Object error : worker.task.getErrors( ) )
+					{
+						executionContext.addException( (BirtException) error );
+					}
+					outputPageCount += worker.task.outputPageCount;
+				}
+				if ( executionContext.isCanceled( ) )
+				{
+					return;
+				}
+
+				List<InputStream> outputs = new ArrayList<InputStream>( );
+				try
+				{
+					for ( PageRangeWorker worker : workers )
+					{
+						outputs.add( new BufferedInputStream(
+								new FileInputStream( worker.output ) ) );
+					}
+					IEmitterServices services = new EngineEmitterServices(
+							executionContext.getReportContext( ),
+							executionContext.getRenderOption( ), engine
+									.getConfig( ).getEmitterConfigs( ) );
+					// the outline is created from the TOC of the whole document
+					ITOCTree tocTree = reportDocument.getTOCTree( renderOptions
+							.getOutputFormat( ), ulocale );
+					outputMerger.merge( services, tocTree, outputs );
+				}
+				finally
+				{
+					for ( InputStream output : outputs )
+					{
+						output.close( );
+					}
+				}
+			}
+			finally
+			{
+				synchronized ( RenderTask.this )
+				{
+					workerTasks = null;
+				}
+				for ( PageRangeWorker worker : workers )
+				{
+					worker.close( );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Renders a page range of the document into a temporary file.
+	 */
+	private class PageRangeWorker implements Runnable
+	{
+
+		private IReportDocument document;
+		private RenderTask task;
+		private File output;
+		private Throwable error;
+
+		PageRangeWorker( IReportDocument document, List<long[]> pageSequences,
+				File output )
+		{
+			this.document = document;
+			this.output = output;
+			task = new RenderTask( engine, reportRunnable, document );
+			task.setLocale( ulocale );
+			task.setTimeZone( timeZone );
+			task.setAppContext( executionContext.getAppContext( ) );
+			task.setLogger( log );
+			task.innerRender = task.new PageRangeRender( pageSequences );
+		}
+
+		public void run( )
+		{
+			OutputStream out = null;
+			try
+			{
+				out = new BufferedOutputStream( new FileOutputStream( output ) );
+				HashMap options = new HashMap( renderOptions.getOptions( ) );
+				options.remove( IRenderOption.OUTPUT_FILE_NAME );
+				RenderOption renderOption = new RenderOption( options );
+				renderOption.setOutputStream( out );
+				renderOption.closeOutputStreamOnExit( false );
+				renderOption.setRenderThreadCount( 1 );
+				task.setRenderOption( renderOption );
+				task.render( );
+			}
+			catch ( Throwable t )
+			{
+				error = t;
+			}
+			finally
+			{
+				if ( out != null )
+				{
+					try
+					{
+						out.close( );
+					}
+					catch ( IOException ex )
+					{
+						if ( error == null )
+						{
+							error = ex;
+						}
+					}
+				}
+			}
+		}
+
+		void close( )
+		{
+			task.close( );
+			document.close( );
+			output.delete( );
+		}
 	}
 
 	protected class ReportletRender implements InnerRender
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.api.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.report.model.api.LibraryHandle;
+import org.eclipse.birt.report.model.api.ModuleOption;
+import org.eclipse.birt.report.model.api.ReportDesignHandle;
+
+/**
+ * A size bounded LRU cache of the report runnables opened by the engine.
+ * <p>
+ * The entries are keyed by the design name, the resource folder and the
+ * digest of the design content, so a changed design is never served from the
+ * cache. Each entry also records the modification stamps of the libraries
+ * included by the design, the entry is dropped once any of them changes.
+ * <p>
+ * The cached runnable is never returned to the caller, each hit returns a
+ * clone of it which shares the compiled scripts of the cached one.
+ */
+class ReportDesignCache
+{
+
+	private int maxSize;
+
+	private long hitCount;
+	private long missCount;
+
+	private LinkedHashMap<String, CacheEntry> entries;
+
+	ReportDesignCache( int maxSize )
+	{
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<String, CacheEntry>( 16, 0.75f, true ) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<String, CacheEntry> eldest )
+			{
+				return size( ) > ReportDesignCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * create the cache key of the design.
+	 *
+	 * @param designName
+	 *            the design name
+	 * @param content
+	 *            the content of the design
+	 * @param options
+	 *            the module options used to open the design
+	 * @return the key of the design
+	 */
+	static String createKey( String designName, byte[] content, Map options )
+	{
+		StringBuffer buffer = new StringBuffer( );
+		buffer.append( designName );
+		buffer.append( '|' );
+		if ( options != null )
+		{
+			Object resourceFolder = options
+					.get( ModuleOption.RESOURCE_FOLDER_KEY );
+			if ( resourceFolder != null )
+			{
+				buffer.append( resourceFolder );
+			}
+		}
+		buffer.append( '|' );
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance( "MD5" );
+			byte[] hash = digest.digest( content );
+			for ( int i = 0; i < hash.length; i++ )
+			{
+				int value = hash[i] & 0xFF;
+				if ( value < 16 )
+				{
+					buffer.append( '0' );
+				}
+				buffer.append( Integer.toHexString( value ) );
+			}
+		}
+		catch ( NoSuchAlgorithmException ex )
+		{
+			buffer.append( content.length );
+			buffer.append( '/' );
+			buffer.append( Arrays.hashCode( content ) );
+		}
+		return buffer.toString( );
+	}
+
+	static byte[] readContent( InputStream in ) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		byte[] buffer = new byte[4096];
+		int size = in.read( buffer );
+		while ( size >= 0 )
+		{
+			out.write( buffer, 0, size );
+			size = in.read( buffer );
+		}
+		return out.toByteArray( );
+	}
+
+	static InputStream openContent( byte[] content )
+	{
+		return new ByteArrayInputStream( content );
+	}
+
+	/**
+	 * get a clone of the cached runnable.
+	 *
+	 * @param key
+	 *            the design key
+	 * @return the cloned runnable or null if the design is not cached or the
+	 *         cached design is out of date.
+	 */
+	ReportRunnable get( String key )
+	{
+		CacheEntry entry;
+		synchronized ( entries )
+		{
+			entry = entries.get( key );
+			if ( entry != null && !entry.isValid( ) )
+			{
+				entries.remove( key );
+				entry = null;
+			}
+			if ( entry == null )
+			{
+				missCount++;
+				return null;
+			}
+			hitCount++;
+		}
+		return entry.cloneRunnable( );
+	}
+
+	/**
+	 * put the runnable into the cache.
+	 *
+	 * @param key
+	 *            the design key
+	 * @param runnable
+	 *            the opened runnable, it is not modified by the cache.
+	 * @return the runnable which should be returned to the user.
+	 */
+	ReportRunnable put( String key, ReportRunnable runnable )
+	{
+		CacheEntry entry = new CacheEntry( runnable.cloneRunnable( ) );
+		synchronized ( entries )
+		{
+			entries.put( key, entry );
+		}
+		runnable.cachedScripts = entry.runnable.cachedScripts;
+		return runnable;
+	}
+
+	void clear( )
+	{
+		synchronized ( entries )
+		{
+			entries.clear( );
+		}
+	}
+
+	int size( )
+	{
+		synchronized ( entries )
+		{
+			return entries.size( );
+		}
+	}
+
+	long getHitCount( )
+	{
+		synchronized ( entries )
+		{
+			return hitCount;
+		}
+	}
+
+	long getMissCount( )
+	{
+		synchronized ( entries )
+		{
+			return missCount;
+		}
+	}
+
+	/**
+	 * resolve the file of the library, return null if the library is not
+	 * a local file.
+	 */
+	static File getLibraryFile( String fileName )
+	{
+		if ( fileName == null )
+		{
+			return null;
+		}
+		try
+		{
+			if ( fileName.startsWith( "file:" ) )
+			{
+				return new File( new URI( fileName.replaceAll( " ", "%20" ) ) );
+			}
+			File file = new File( fileName );
+			if ( file.isAbsolute( ) )
+			{
+				return file;
+			}
+		}
+		catch ( Exception ex )
+		{
+			// the library is not a local file
+		}
+		return null;
+	}
+
+	private static class CacheEntry
+	{
+
+		ReportRunnable runnable;
+		File[] libraries;
+		long[] stamps;
+
+		CacheEntry( ReportRunnable runnable )
+		{
+			this.runnable = runnable;
+			List<File> files = new ArrayList<File>( );
+			ReportDesignHandle design = runnable.getReport( );
+			if ( design != null )
+			{
+				List libs = design.getAllLibraries( );
+				if ( libs != null )
+				{
+					Iterator iter = libs.iterator( );
+					while ( iter.hasNext( ) )
+					{
+						LibraryHandle library = (LibraryHandle) iter.next( );
+						File file = getLibraryFile( library.getFileName( ) );
+						if ( file != null )
+						{
+							files.add( file );
+						}
+					}
+				}
+			}
+			libraries = files.toArray( new File[files.size( )] );
+			stamps = new long[libraries.length];
+			for ( int i = 0; i < libraries.length; i++ )
+			{
+				stamps[i] = libraries[i].lastModified( );
+			}
+		}
+
+		boolean isValid( )
+		{
+			for ( int i = 0; i < libraries.length; i++ )
+			{
+				if ( libraries[i].lastModified( ) != stamps[i] )
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		ReportRunnable cloneRunnable( )
+		{
+			ReportRunnable newRunnable;
+			// the model is not thread safe, so copy it one by one.
+			synchronized ( this )
+			{
+				newRunnable = runnable.cloneRunnable( );
+			}
+			newRunnable.cachedScripts = runnable.cachedScripts;
+			return newRunnable;
+		}
+	}
+}
@@ -1856,4 +1856,15 @@ public class ReportDocumentReader
 	{
 		return systemId;
 	}
+
+	/**
+	 * Creates another reader of the document which shares the archive with
+	 * this reader, so that the document can be read in several threads. The
+	 * archive isn't closed when the created reader is closed.
+	 */
+	public ReportDocumentReader createSharedReader( ) throws EngineException
+	{
+		return new ReportDocumentReader( systemId, engine, archive, true,
+				moduleOptions );
+	}
 }
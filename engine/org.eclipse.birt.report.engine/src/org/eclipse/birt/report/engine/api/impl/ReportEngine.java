@@ -457,6 +457,10 @@ public class ReportEngine implements IReportEngine
 	{
 		logger.fine( "ReportEngine.destroy" );
 		rootScope = null;
+		if ( helper != null )
+		{
+			helper.clearDesignCache( );
+		}
 		helper = null;
 		synchronized ( openedDocuments )
 		{
@@ -69,6 +69,11 @@ public class ReportEngineHelper
 
 	private EmitterInfo[] emitterInfos;
 
+	/**
+	 * cache of the opened designs, null if the cache is disabled.
+	 */
+	private ReportDesignCache designCache;
+
 	/**
 	 * constructor
 	 * 
@@ -80,6 +85,12 @@ public class ReportEngineHelper
 		this.engine = engine;
 		this.logger = engine.getLogger( );
 		this.extensionMgr = ExtensionManager.getInstance( );
+		EngineConfig config = engine.getConfig( );
+		if ( config != null && config.getDesignCacheSize( ) > 0 )
+		{
+			this.designCache = new ReportDesignCache( config
+					.getDesignCacheSize( ) );
+		}
 	}
 
 	/**
@@ -269,13 +280,71 @@ public class ReportEngineHelper
 			InputStream designStream, Map options )
 			throws EngineException
 	{
-		
+		if ( designCache != null && designStream != null )
+		{
+			return openCachedReportDesign( designName, designStream, options );
+		}
 		ReportRunnable runnable = new ReportRunnable( engine,
 				getReportDesignHandle( designName, designStream, options ) );
 		runnable.setReportName( designName );
 		return runnable;
 	}
 
+	/**
+	 * opens the design through the design cache. The design content is used
+	 * as part of the cache key, so only the parsing of unchanged designs is
+	 * skipped.
+	 */
+	private IReportRunnable openCachedReportDesign( String designName,
+			InputStream designStream, Map options ) throws EngineException
+	{
+		byte[] content;
+		try
+		{
+			content = ReportDesignCache.readContent( designStream );
+		}
+		catch ( IOException ex )
+		{
+			logger.log( Level.SEVERE, "invalid design file {0}", designName ); //$NON-NLS-1$
+			throw new EngineException(
+					MessageConstants.INVALID_DESIGN_FILE_EXCEPTION, designName,
+					ex );
+		}
+		if ( options == null )
+		{
+			options = new HashMap( );
+		}
+		intializeModuleOptions( options );
+		String key = ReportDesignCache.createKey( designName, content, options );
+		ReportRunnable runnable = designCache.get( key );
+		if ( runnable != null )
+		{
+			logger.log( Level.FINE, "design {0} is loaded from cache", //$NON-NLS-1$
+					designName );
+			return runnable;
+		}
+		runnable = new ReportRunnable( engine, getReportDesignHandle(
+				designName, ReportDesignCache.openContent( content ), options ) );
+		runnable.setReportName( designName );
+		return designCache.put( key, runnable );
+	}
+
+	/**
+	 * remove all the designs from the design cache.
+	 */
+	public void clearDesignCache( )
+	{
+		if ( designCache != null )
+		{
+			designCache.clear( );
+		}
+	}
+
+	ReportDesignCache getDesignCache( )
+	{
+		return designCache;
+	}
+
 	/**
 	 * creates a report design runnable based on a report design handle. From
 	 * the ReportRunnable object, embedded images and parameter definitions can
@@ -12,6 +12,7 @@
 package org.eclipse.birt.report.engine.data.dte;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
@@ -29,12 +30,14 @@ import org.eclipse.birt.data.engine.olap.api.ICubeQueryResults;
 import org.eclipse.birt.data.engine.olap.api.query.ICubeQueryDefinition;
 import org.eclipse.birt.report.data.adapter.api.DataRequestSession;
 import org.eclipse.birt.report.data.adapter.api.DataSessionContext;
+import org.eclipse.birt.report.engine.api.EngineConstants;
 import org.eclipse.birt.report.engine.api.EngineException;
 import org.eclipse.birt.report.engine.data.DataEngineFactory;
 import org.eclipse.birt.report.engine.executor.ExecutionContext;
 import org.eclipse.birt.report.engine.extension.IBaseResultSet;
 import org.eclipse.birt.report.engine.i18n.MessageConstants;
 import org.eclipse.birt.report.engine.ir.Report;
+import org.eclipse.birt.report.model.api.ModuleHandle;
 
 /**
  * implments IDataEngine interface, using birt's data transformation engine
@@ -65,6 +68,12 @@ public class DteDataEngine extends AbstractDataEngine
 	 */
 	protected HashMap<String, String> rsetRelations2 = new HashMap<String, String>( );
 
+	/**
+	 * executes the independent queries ahead of the report items, it is null
+	 * if the query prefetch is not enabled.
+	 */
+	protected QueryPrefetcher prefetcher;
+
 	//FIXME: code review. throw out all exceptions in data engines. And throw exception not return null.	
 
 	/**
@@ -140,6 +149,14 @@ public class DteDataEngine extends AbstractDataEngine
 		{
 			dteResults = getCachedQueryResult( query, parentResultSet );
 		}
+		else if ( prefetcher != null && parentResultSet == null )
+		{
+			dteResults = prefetcher.getResults( query );
+			if ( dteResults != null )
+			{
+				queryCache.putCachedQuery( query, dteResults.getID( ) );
+			}
+		}
 		if ( dteResults == null )
 		{
 			if ( needCache )
@@ -272,6 +289,92 @@ public class DteDataEngine extends AbstractDataEngine
 		super.doPrepareQuery( report, appContext );
 	}
 
+	/**
+	 * start executing the independent top level queries of the report in a
+	 * thread pool. It is enabled by setting
+	 * EngineConstants.QUERY_PREFETCH_THREADS in the application context. The
+	 * queries having script expressions, and the ones whose data set or data
+	 * source has scripts, are still executed by the report thread when the
+	 * report items ask for them.
+	 * 
+	 * @param report
+	 *            the report whose queries have been prepared.
+	 */
+	public void prefetchQueries( Report report )
+	{
+		int threadCount = getPrefetchThreadCount( context.getAppContext( ) );
+		if ( threadCount <= 0 || prefetcher != null )
+		{
+			return;
+		}
+		ModuleHandle design = report.getReportDesign( );
+		if ( design == null )
+		{
+			return;
+		}
+		ScriptContext scriptContext = context.getScriptContext( );
+		List queries = report.getQueries( );
+		for ( int i = 0; i < queries.size( ); i++ )
+		{
+			Object query = queries.get( i );
+			if ( !( query instanceof IQueryDefinition ) )
+			{
+				continue;
+			}
+			IQueryDefinition dataQuery = (IQueryDefinition) query;
+			IPreparedQuery pQuery = (IPreparedQuery) queryMap.get( dataQuery );
+			if ( pQuery == null || !QueryPrefetcher.isIndependent( dataQuery, design ) )
+			{
+				continue;
+			}
+			if ( prefetcher == null )
+			{
+				prefetcher = new QueryPrefetcher( threadCount );
+			}
+			if ( needCache )
+			{
+				( (BaseQueryDefinition) dataQuery ).setCacheQueryResults( true );
+			}
+			prefetcher.prefetch( dteSession, pQuery, dataQuery, scriptContext );
+		}
+	}
+
+	private int getPrefetchThreadCount( Map appContext )
+	{
+		if ( appContext == null )
+		{
+			return 0;
+		}
+		Object value = appContext.get( EngineConstants.QUERY_PREFETCH_THREADS );
+		if ( value instanceof Number )
+		{
+			return ( (Number) value ).intValue( );
+		}
+		if ( value instanceof String )
+		{
+			try
+			{
+				return Integer.parseInt( (String) value );
+			}
+			catch ( NumberFormatException ex )
+			{
+				logger.log( Level.WARNING, "invalid query prefetch threads: {0}", //$NON-NLS-1$
+						value );
+			}
+		}
+		return 0;
+	}
+
+	public void shutdown( )
+	{
+		if ( prefetcher != null )
+		{
+			prefetcher.close( );
+			prefetcher = null;
+		}
+		super.shutdown( );
+	}
+
 	protected void cacheResultID( IBaseResultSet parentResultSet,
 			IDataQueryDefinition query, IBaseResultSet resultSet )
 			throws BirtException
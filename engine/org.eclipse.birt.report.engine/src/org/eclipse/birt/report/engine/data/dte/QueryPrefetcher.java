@@ -0,0 +1,351 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.data.dte;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.core.data.ExpressionUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.script.ScriptContext;
+import org.eclipse.birt.data.engine.api.IBaseExpression;
+import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.api.IGroupDefinition;
+import org.eclipse.birt.data.engine.api.IPreparedQuery;
+import org.eclipse.birt.data.engine.api.IQueryDefinition;
+import org.eclipse.birt.data.engine.api.IQueryResults;
+import org.eclipse.birt.data.engine.api.IScriptExpression;
+import org.eclipse.birt.report.data.adapter.api.DataRequestSession;
+import org.eclipse.birt.report.engine.api.EngineException;
+import org.eclipse.birt.report.model.api.DataSetHandle;
+import org.eclipse.birt.report.model.api.DataSourceHandle;
+import org.eclipse.birt.report.model.api.ModuleHandle;
+import org.eclipse.birt.report.model.api.OdaDataSetHandle;
+import org.eclipse.birt.report.model.api.OdaDataSourceHandle;
+import org.mozilla.javascript.Context;
+
+/**
+ * Executes the independent top level queries of a report in a bounded thread
+ * pool, so the data sets are fetched in parallel before the report items
+ * which use them are executed.
+ * <p>
+ * The results are handed to the data engine in the order the report items
+ * ask for them. A result which is never asked for is closed with the
+ * prefetcher.
+ */
+class QueryPrefetcher
+{
+
+	protected static Logger logger = Logger.getLogger( QueryPrefetcher.class
+			.getName( ) );
+
+	private ExecutorService executor;
+
+	private HashMap<IQueryDefinition, Future<IQueryResults>> results = new HashMap<IQueryDefinition, Future<IQueryResults>>( );
+
+	QueryPrefetcher( int threadCount )
+	{
+		executor = Executors.newFixedThreadPool( threadCount,
+				new ThreadFactory( ) {
+
+					private int threadIndex = 0;
+
+					public synchronized Thread newThread( Runnable r )
+					{
+						Thread thread = new Thread( r, "BIRT query prefetch-" //$NON-NLS-1$
+								+ ( threadIndex++ ) );
+						thread.setDaemon( true );
+						return thread;
+					}
+				} );
+	}
+
+	/**
+	 * test if the query can be executed ahead of the report items. Only the
+	 * top level queries which don't refer to any other query or result are
+	 * executed ahead. The data set must be an ODA data set, and neither the
+	 * data set nor its data source may have scripts. The query must not have
+	 * any script expression either: its bindings must be data set column
+	 * references, and it must have no filter, sort, aggregation, sub query
+	 * or parameter. The scope and the script engine of the report can only
+	 * be used by the report thread, such queries are executed by it.
+	 */
+	static boolean isIndependent( IQueryDefinition query, ModuleHandle design )
+	{
+		if ( query.getParentQuery( ) != null
+				|| query.getDataSetName( ) == null
+				|| query.getQueryResultsID( ) != null
+				|| query.getSourceQuery( ) != null )
+		{
+			return false;
+		}
+		DataSetHandle dataSet = design.findDataSet( query.getDataSetName( ) );
+		if ( !( dataSet instanceof OdaDataSetHandle ) || hasScripts( dataSet ) )
+		{
+			return false;
+		}
+		DataSourceHandle dataSource = dataSet.getDataSource( );
+		return dataSource instanceof OdaDataSourceHandle
+				&& !hasScripts( dataSource ) && !hasScripts( query );
+	}
+
+	private static boolean hasScripts( DataSetHandle dataSet )
+	{
+		return dataSet.getEventHandlerClass( ) != null
+				|| dataSet.getBeforeOpen( ) != null
+				|| dataSet.getAfterOpen( ) != null
+				|| dataSet.getOnFetch( ) != null
+				|| dataSet.getBeforeClose( ) != null
+				|| dataSet.getAfterClose( ) != null
+				|| dataSet.computedColumnsIterator( ).hasNext( )
+				|| dataSet.filtersIterator( ).hasNext( )
+				|| dataSet.parametersIterator( ).hasNext( )
+				|| !dataSet.getPropertyBindings( ).isEmpty( );
+	}
+
+	private static boolean hasScripts( DataSourceHandle dataSource )
+	{
+		return dataSource.getEventHandlerClass( ) != null
+				|| dataSource.getBeforeOpen( ) != null
+				|| dataSource.getAfterOpen( ) != null
+				|| dataSource.getBeforeClose( ) != null
+				|| dataSource.getAfterClose( ) != null
+				|| !dataSource.getPropertyBindings( ).isEmpty( );
+	}
+
+	private static boolean hasScripts( IQueryDefinition query )
+	{
+		if ( !isEmpty( query.getFilters( ) ) || !isEmpty( query.getSorts( ) )
+				|| !isEmpty( query.getSubqueries( ) )
+				|| !isEmpty( query.getInputParamBindings( ) ) )
+		{
+			return true;
+		}
+		List groups = query.getGroups( );
+		if ( groups != null )
+		{
+			for ( int i = 0; i < groups.size( ); i++ )
+			{
+				IGroupDefinition group = (IGroupDefinition) groups.get( i );
+				if ( !isEmpty( group.getFilters( ) )
+						|| !isEmpty( group.getSorts( ) )
+						|| !isEmpty( group.getSubqueries( ) ) )
+				{
+					return true;
+				}
+				if ( group.getKeyColumn( ) == null
+						&& !isColumnReference( group.getKeyExpression( ) ) )
+				{
+					return true;
+				}
+			}
+		}
+		Map bindings = query.getBindings( );
+		if ( bindings != null )
+		{
+			Iterator iter = bindings.values( ).iterator( );
+			while ( iter.hasNext( ) )
+			{
+				IBinding binding = (IBinding) iter.next( );
+				try
+				{
+					if ( binding.getAggrFunction( ) != null
+							|| !isColumnReference( binding.getExpression( ) ) )
+					{
+						return true;
+					}
+				}
+				catch ( BirtException ex )
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isEmpty( Collection collection )
+	{
+		return collection == null || collection.isEmpty( );
+	}
+
+	/**
+	 * test if the expression is a data set column reference such as
+	 * dataSetRow["name"], whose value is read from the row without the script
+	 * engine.
+	 */
+	private static boolean isColumnReference( IBaseExpression expression )
+	{
+		if ( !( expression instanceof IScriptExpression ) )
+		{
+			return false;
+		}
+		return isColumnReference( ( (IScriptExpression) expression ).getText( ) );
+	}
+
+	private static boolean isColumnReference( String expression )
+	{
+		if ( expression == null )
+		{
+			return false;
+		}
+		try
+		{
+			return ExpressionUtil.getColumnName( expression ) != null;
+		}
+		catch ( BirtException ex )
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * start executing the query in the thread pool. The query is executed
+	 * with a script context created by the worker thread, so the script
+	 * engine and the scope of the report are not used out of the report
+	 * thread.
+	 */
+	synchronized void prefetch( final DataRequestSession session,
+			final IPreparedQuery preparedQuery, IQueryDefinition query,
+			final ScriptContext reportContext )
+	{
+		if ( executor == null || results.containsKey( query ) )
+		{
+			return;
+		}
+		Future<IQueryResults> future = executor
+				.submit( new Callable<IQueryResults>( ) {
+
+					public IQueryResults call( ) throws Exception
+					{
+						// the script engine requires an entered context in the
+						// current thread.
+						Context.enter( );
+						ScriptContext scriptContext = new ScriptContext( );
+						try
+						{
+							scriptContext.setLocale( reportContext.getLocale( ) );
+							scriptContext.setTimeZone( reportContext
+									.getTimeZone( ) );
+							scriptContext.setApplicationClassLoader( reportContext
+									.getApplicationClassLoader( ) );
+							IQueryResults queryResults = (IQueryResults) session
+									.execute( preparedQuery, null,
+											scriptContext );
+							// the query is executed when the first iterator is
+							// created, the iterator is cached by the results.
+							// The bindings are column references, the rows are
+							// read later without the script context.
+							queryResults.getResultIterator( );
+							return queryResults;
+						}
+						finally
+						{
+							// the script engine exits the context it entered,
+							// it must be closed by this thread
+							scriptContext.close( );
+							Context.exit( );
+						}
+					}
+				} );
+		results.put( query, future );
+	}
+
+	/**
+	 * test if the query is prefetched and its results haven't been get.
+	 */
+	synchronized boolean isPrefetched( IQueryDefinition query )
+	{
+		return results.containsKey( query );
+	}
+
+	/**
+	 * get the prefetched results of the query. The results can be get only
+	 * once, the following calls return null.
+	 *
+	 * @return the results or null if the query is not prefetched.
+	 */
+	IQueryResults getResults( IQueryDefinition query ) throws BirtException
+	{
+		Future<IQueryResults> future;
+		synchronized ( this )
+		{
+			future = results.remove( query );
+		}
+		if ( future == null )
+		{
+			return null;
+		}
+		try
+		{
+			return future.get( );
+		}
+		catch ( InterruptedException ex )
+		{
+			future.cancel( true );
+			Thread.currentThread( ).interrupt( );
+			throw new EngineException( ex.getLocalizedMessage( ), ex );
+		}
+		catch ( ExecutionException ex )
+		{
+			Throwable cause = ex.getCause( );
+			if ( cause instanceof BirtException )
+			{
+				throw (BirtException) cause;
+			}
+			throw new EngineException( cause.getLocalizedMessage( ), cause );
+		}
+	}
+
+	/**
+	 * stop the thread pool and close the results which are not used.
+	 */
+	synchronized void close( )
+	{
+		if ( executor == null )
+		{
+			return;
+		}
+		executor.shutdown( );
+		Iterator<Map.Entry<IQueryDefinition, Future<IQueryResults>>> iter = results
+				.entrySet( ).iterator( );
+		while ( iter.hasNext( ) )
+		{
+			Future<IQueryResults> future = iter.next( ).getValue( );
+			try
+			{
+				IQueryResults queryResults = future.get( );
+				if ( queryResults != null )
+				{
+					queryResults.close( );
+				}
+			}
+			catch ( Exception ex )
+			{
+				logger.log( Level.FINE, ex.getMessage( ), ex );
+			}
+		}
+		results.clear( );
+		executor = null;
+	}
+}
@@ -110,7 +110,7 @@ public class HTMLWriter extends XMLWriter
 		}
 
 		print( "<!--" );
-		print( HTMLEncodeUtil.encodeCdata( value ) );
+		printCdata( value );
 		print( "-->" );
 		bText = true;// bText is useless.
 	}
@@ -131,11 +131,38 @@ public class HTMLWriter extends XMLWriter
 			bPairedFlag = true;
 		}
 
-		String stringToPrint = HTMLEncodeUtil.encodeText( value, whitespace );
-		print( stringToPrint );
+		printText( value, whitespace );
 		bText = true;
 	}
 
+	protected void printText( String text )
+	{
+		printText( text, false );
+	}
+
+	/**
+	 * Outputs the encoded text, the text is encoded into the reused encode
+	 * buffer only if it needs to be escaped.
+	 * 
+	 * @param text
+	 *            the text
+	 * @param whitespace
+	 *            if the white space characters should be converted or not.
+	 */
+	protected void printText( String text, boolean whitespace )
+	{
+		int index = HTMLEncodeUtil.testEscape( text, whitespace
+				? HTMLEncodeUtil.HTML_WHITE_SPACE_ENCODING
+				: HTMLEncodeUtil.HTML_TEXT_ENCODING );
+		print( text, 0, index );
+		if ( index < text.length( ) )
+		{
+			encodeBuffer.setLength( 0 );
+			HTMLEncodeUtil.encodeText( text, index, whitespace, encodeBuffer );
+			print( encodeBuffer );
+		}
+	}
+
 	protected String encodeText( String text )
 	{
 		return HTMLEncodeUtil.encodeText( text, false );
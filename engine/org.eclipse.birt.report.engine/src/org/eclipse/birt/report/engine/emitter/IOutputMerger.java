@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter;
+
+import java.io.InputStream;
+import java.util.List;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.report.engine.api.ITOCTree;
+
+/**
+ * Merges the outputs created by the emitter for consecutive page ranges of a
+ * report document into one output. It is used by the render task to render
+ * the pages in several threads.
+ */
+public interface IOutputMerger
+{
+
+	/**
+	 * Merges the outputs into the output defined by the emitter services, as
+	 * the emitter does.
+	 *
+	 * @param services
+	 *            the emitter services of the render task
+	 * @param tocTree
+	 *            the TOC of the whole report document, it is null if the
+	 *            document has no TOC
+	 * @param outputs
+	 *            the partial outputs in page order
+	 * @throws BirtException
+	 */
+	void merge( IEmitterServices services, ITOCTree tocTree,
+			List<InputStream> outputs ) throws BirtException;
+}
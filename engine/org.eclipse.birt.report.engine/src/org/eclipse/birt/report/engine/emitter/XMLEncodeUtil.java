@@ -11,6 +11,7 @@
 
 package org.eclipse.birt.report.engine.emitter;
 
+import java.nio.CharBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,17 +44,32 @@ public class XMLEncodeUtil
 	}
 
 	protected static int testEscape( char[] chars, char[] encodings )
+	{
+		return testEscape( CharBuffer.wrap( chars ), encodings );
+	}
+
+	/**
+	 * Tests the characters need to be escaped.
+	 * 
+	 * @param s
+	 *            the characters
+	 * @param encodings
+	 *            the characters need to be escaped besides the invalid ones
+	 * @return the index of the first character needs to be escaped, the length
+	 *         of the characters if none of them needs to be escaped.
+	 */
+	protected static int testEscape( CharSequence s, char[] encodings )
 	{
 		int index = 0;
-		int length = chars.length;
+		int length = s.length( );
 		while ( index < length )
 		{
-			char c1 = chars[index++];
+			char c1 = s.charAt( index++ );
 			if ( Character.isHighSurrogate( c1 ) )
 			{
 				if ( index < length )
 				{
-					char c2 = chars[index++];
+					char c2 = s.charAt( index++ );
 					if ( Character.isLowSurrogate( c2 ) )
 					{
 						int cp = Character.toCodePoint( c1, c2 );
@@ -102,23 +118,40 @@ public class XMLEncodeUtil
 	 */
 	static public String encodeText( String s )
 	{
-		char[] chars = s.toCharArray( );
-		int length = chars.length;
-		int index = testEscape( chars, XML_TEXT_ENCODE );
+		int length = s.length( );
+		int index = testEscape( s, XML_TEXT_ENCODE );
 		if ( index >= length )
 		{
 			return s;
 		}
 
 		StringBuilder sb = new StringBuilder( 2 * length );
-		sb.append( chars, 0, index );
+		sb.append( s, 0, index );
+		encodeText( s, index, sb );
+		return sb.toString( );
+	}
 
+	/**
+	 * Appends the encoded text to the buffer.
+	 * 
+	 * @param s
+	 *            the text
+	 * @param index
+	 *            the index of the first character to be encoded, the
+	 *            characters before it are not appended.
+	 * @param sb
+	 *            the buffer
+	 */
+	protected static void encodeText( CharSequence s, int index,
+			StringBuilder sb )
+	{
+		int length = s.length( );
 		while ( index < length )
 		{
-			char c = chars[index++];
+			char c = s.charAt( index++ );
 			if ( Character.isHighSurrogate( c ) )
 			{
-				index += decodeSurrogate( c, chars, index, sb );
+				index += decodeSurrogate( c, s, index, sb );
 			}
 			else if ( isValidCodePoint( c ) )
 			{
@@ -141,7 +174,6 @@ public class XMLEncodeUtil
 						.valueOf( c ) );
 			}
 		}
-		return sb.toString( );
 	}
 
 	protected static final char[] XML_ATTR_ENCODE = new char[]{'&', '<', '>',
@@ -156,23 +188,40 @@ public class XMLEncodeUtil
 	 */
 	static public String encodeAttr( String s )
 	{
-		char[] chars = s.toCharArray( );
-		int length = chars.length;
-		int index = testEscape( chars, XML_ATTR_ENCODE );
+		int length = s.length( );
+		int index = testEscape( s, XML_ATTR_ENCODE );
 		if ( index >= length )
 		{
 			return s;
 		}
 
 		StringBuilder sb = new StringBuilder( 2 * length );
-		sb.append( chars, 0, index );
+		sb.append( s, 0, index );
+		encodeAttr( s, index, sb );
+		return sb.toString( );
+	}
 
+	/**
+	 * Appends the encoded attribute value to the buffer.
+	 * 
+	 * @param s
+	 *            the attribute value
+	 * @param index
+	 *            the index of the first character to be encoded, the
+	 *            characters before it are not appended.
+	 * @param sb
+	 *            the buffer
+	 */
+	protected static void encodeAttr( CharSequence s, int index,
+			StringBuilder sb )
+	{
+		int length = s.length( );
 		while ( index < length )
 		{
-			char c = chars[index++];
+			char c = s.charAt( index++ );
 			if ( Character.isHighSurrogate( c ) )
 			{
-				index += decodeSurrogate( c, chars, index, sb );
+				index += decodeSurrogate( c, s, index, sb );
 			}
 			else if ( isValidCodePoint( c ) )
 			{
@@ -211,28 +260,44 @@ public class XMLEncodeUtil
 						.valueOf( c ) );
 			}
 		}
-		return sb.toString( );
 	}
 
 	static public String encodeCdata( String s )
 	{
-		char[] chars = s.toCharArray( );
-		int length = chars.length;
-		int index = testEscape( chars, null );
+		int length = s.length( );
+		int index = testEscape( s, null );
 		if ( index >= length )
 		{
 			return s;
 		}
 
 		StringBuilder sb = new StringBuilder( 2 * length );
-		sb.append( chars, 0, index );
+		sb.append( s, 0, index );
+		encodeCdata( s, index, sb );
+		return sb.toString( );
+	}
 
+	/**
+	 * Appends the valid characters of the CDATA section to the buffer.
+	 * 
+	 * @param s
+	 *            the content of the CDATA section
+	 * @param index
+	 *            the index of the first character to be tested, the characters
+	 *            before it are not appended.
+	 * @param sb
+	 *            the buffer
+	 */
+	protected static void encodeCdata( CharSequence s, int index,
+			StringBuilder sb )
+	{
+		int length = s.length( );
 		while ( index < length )
 		{
-			char c = chars[index++];
+			char c = s.charAt( index++ );
 			if ( Character.isHighSurrogate( c ) )
 			{
-				index += decodeSurrogate( c, chars, index, sb );
+				index += decodeSurrogate( c, s, index, sb );
 			}
 			else if ( isValidCodePoint( c ) )
 			{
@@ -244,7 +309,12 @@ public class XMLEncodeUtil
 						.valueOf( c ) );
 			}
 		}
-		return sb.toString( );
+	}
+
+	protected static int decodeSurrogate( char c, char[] chars, int offset,
+			StringBuilder sb )
+	{
+		return decodeSurrogate( c, CharBuffer.wrap( chars ), offset, sb );
 	}
 
 	/**
@@ -254,21 +324,21 @@ public class XMLEncodeUtil
 	 * @param c
 	 *            the high surrogate
 	 * @param chars
-	 *            the char buffer
+	 *            the characters
 	 * @param offset
 	 *            the low surrogate index
 	 * @param sb
 	 *            string builder contains the encoding
 	 * @return index to be append to the index. 0 if there is no valid encoding.
 	 */
-	protected static int decodeSurrogate( char c, char[] chars, int offset,
-			StringBuilder sb )
+	protected static int decodeSurrogate( char c, CharSequence chars,
+			int offset, StringBuilder sb )
 	{
 		if ( Character.isHighSurrogate( c ) )
 		{
-			if ( offset < chars.length )
+			if ( offset < chars.length( ) )
 			{
-				char nc = chars[offset];
+				char nc = chars.charAt( offset );
 				if ( Character.isLowSurrogate( nc ) )
 				{
 					int cp = Character.toCodePoint( c, nc );
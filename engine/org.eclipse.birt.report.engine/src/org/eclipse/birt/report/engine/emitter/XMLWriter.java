@@ -34,6 +34,12 @@ public class XMLWriter
 	protected char[] buffer = new char[MAX_BUFFER_SIZE];
 	protected int bufferSize;
 
+	/**
+	 * the buffer reused to encode the text and the attribute values, the
+	 * values needn't be escaped are copied to the output buffer directly.
+	 */
+	protected StringBuilder encodeBuffer = new StringBuilder( );
+
 	/** the print writer for outputting */
 	protected Writer writer;
 
@@ -59,6 +65,14 @@ public class XMLWriter
 	
 	protected boolean enableCompactMode = false;
 
+	/**
+	 * whether or not the subclass overrides the encode methods, the values
+	 * are then encoded by those methods instead of the encode buffer.
+	 */
+	private final boolean customTextEncoding = isOverridden( "encodeText" ); //$NON-NLS-1$
+	private final boolean customAttrEncoding = isOverridden( "encodeAttr" ); //$NON-NLS-1$
+	private final boolean customCdataEncoding = isOverridden( "encodeCdata" ); //$NON-NLS-1$
+
 	/**
 	 * Constructor
 	 * 
@@ -220,7 +234,7 @@ public class XMLWriter
 			print( ' ' );
 			print( attrName );
 			print( "=\"" ); //$NON-NLS-1$
-			print( encodeAttr( attrValue ) );
+			printAttr( attrValue );
 			print( '\"' );
 		}
 	}
@@ -240,7 +254,7 @@ public class XMLWriter
 			print( ' ' );
 			print( attrName );
 			print( "=\"" ); //$NON-NLS-1$
-			print( encodeAttr( attrValue ) );
+			printAttr( attrValue );
 			print( '\"' );
 		}
 	}
@@ -271,7 +285,11 @@ public class XMLWriter
 	 */
 	public void attribute( String attrName, float attrValue )
 	{
-		print( ' ' + attrName + "=\"" + Float.toString( attrValue ) + '\"' ); //$NON-NLS-1$ 
+		print( ' ' );
+		print( attrName );
+		print( "=\"" ); //$NON-NLS-1$
+		print( Float.toString( attrValue ) );
+		print( '\"' );
 	}
 
 	/**
@@ -284,7 +302,11 @@ public class XMLWriter
 	 */
 	public void attribute( String attrName, double attrValue )
 	{
-		print( ' ' + attrName + "=\"" + Double.toString( attrValue ) + '\"' ); //$NON-NLS-1$
+		print( ' ' );
+		print( attrName );
+		print( "=\"" ); //$NON-NLS-1$
+		print( Double.toString( attrValue ) );
+		print( '\"' );
 	}
 
 	/**
@@ -297,8 +319,11 @@ public class XMLWriter
 	 */
 	public void attribute( String attrName, int attrValue )
 	{
-		print( ' ' + attrName + "=\"" //$NON-NLS-1$
-				+ Integer.toString( attrValue ) + '\"' ); //$NON-NLS-1$
+		print( ' ' );
+		print( attrName );
+		print( "=\"" ); //$NON-NLS-1$
+		print( Integer.toString( attrValue ) );
+		print( '\"' );
 	}
 
 	/**
@@ -322,8 +347,7 @@ public class XMLWriter
 			bPairedFlag = true;
 		}
 
-		String stringToPrint = encodeText( value );
-		print( stringToPrint );
+		printText( value );
 		bText = true;
 	}
 
@@ -334,8 +358,7 @@ public class XMLWriter
 			print( '>' );
 			bPairedFlag = true;
 		}
-		String text = encodeCdata( value );
-		print( text );
+		printCdata( value );
 		if ( bPairedFlag )
 		{
 			bText = true;
@@ -426,6 +449,102 @@ public class XMLWriter
 		return XMLEncodeUtil.encodeCdata( s );
 	}
 
+	/**
+	 * Outputs the encoded text. The text is copied to the output buffer
+	 * directly if it needn't be escaped, otherwise it is encoded into the
+	 * reused encode buffer. The text is encoded by encodeText if a subclass
+	 * overrides it.
+	 * 
+	 * @param s
+	 *            the text
+	 */
+	protected void printText( String s )
+	{
+		if ( customTextEncoding )
+		{
+			print( encodeText( s ) );
+			return;
+		}
+		int index = XMLEncodeUtil.testEscape( s, XMLEncodeUtil.XML_TEXT_ENCODE );
+		print( s, 0, index );
+		if ( index < s.length( ) )
+		{
+			encodeBuffer.setLength( 0 );
+			XMLEncodeUtil.encodeText( s, index, encodeBuffer );
+			print( encodeBuffer );
+		}
+	}
+
+	/**
+	 * Outputs the encoded attribute value.
+	 * 
+	 * @param s
+	 *            the attribute value
+	 */
+	protected void printAttr( String s )
+	{
+		if ( customAttrEncoding )
+		{
+			print( encodeAttr( s ) );
+			return;
+		}
+		int index = XMLEncodeUtil.testEscape( s, XMLEncodeUtil.XML_ATTR_ENCODE );
+		print( s, 0, index );
+		if ( index < s.length( ) )
+		{
+			encodeBuffer.setLength( 0 );
+			XMLEncodeUtil.encodeAttr( s, index, encodeBuffer );
+			print( encodeBuffer );
+		}
+	}
+
+	protected void printCdata( String s )
+	{
+		if ( customCdataEncoding )
+		{
+			print( encodeCdata( s ) );
+			return;
+		}
+		int index = XMLEncodeUtil.testEscape( s, null );
+		print( s, 0, index );
+		if ( index < s.length( ) )
+		{
+			encodeBuffer.setLength( 0 );
+			XMLEncodeUtil.encodeCdata( s, index, encodeBuffer );
+			print( encodeBuffer );
+		}
+	}
+
+	/**
+	 * Tests if a subclass overrides the encode method.
+	 * 
+	 * @param methodName
+	 *            the name of the encode method
+	 * @return true if the method is declared by a subclass
+	 */
+	private boolean isOverridden( String methodName )
+	{
+		for ( Class<?> type = getClass( ); type != XMLWriter.class; type = type
+				.getSuperclass( ) )
+		{
+			try
+			{
+				type.getDeclaredMethod( methodName, new Class[]{
+					String.class
+				} );
+				return true;
+			}
+			catch ( NoSuchMethodException e )
+			{
+			}
+			catch ( SecurityException e )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * @return Returns the indent.
 	 */
@@ -501,6 +620,42 @@ public class XMLWriter
 		}
 	}
 
+	/**
+	 * Outputs the characters of the string from the start index to the end
+	 * index.
+	 */
+	public void print( String s, int start, int end )
+	{
+		while ( start < end )
+		{
+			if ( bufferSize >= MAX_BUFFER_SIZE )
+			{
+				flush( );
+			}
+			int size = Math.min( end - start, MAX_BUFFER_SIZE - bufferSize );
+			s.getChars( start, start + size, buffer, bufferSize );
+			bufferSize += size;
+			start += size;
+		}
+	}
+
+	public void print( StringBuilder s )
+	{
+		int length = s.length( );
+		int start = 0;
+		while ( start < length )
+		{
+			if ( bufferSize >= MAX_BUFFER_SIZE )
+			{
+				flush( );
+			}
+			int size = Math.min( length - start, MAX_BUFFER_SIZE - bufferSize );
+			s.getChars( start, start + size, buffer, bufferSize );
+			bufferSize += size;
+			start += size;
+		}
+	}
+
 	public void println( )
 	{
 		if ( !enableCompactMode )
@@ -20,7 +20,9 @@ import org.eclipse.birt.report.engine.api.EngineException;
 import org.eclipse.birt.report.engine.content.IPageContent;
 import org.eclipse.birt.report.engine.content.IReportContent;
 import org.eclipse.birt.report.engine.content.impl.ReportContent;
+import org.eclipse.birt.report.engine.data.IDataEngine;
 import org.eclipse.birt.report.engine.data.dte.DocumentDataSource;
+import org.eclipse.birt.report.engine.data.dte.DteDataEngine;
 import org.eclipse.birt.report.engine.emitter.DOMBuilderEmitter;
 import org.eclipse.birt.report.engine.emitter.IContentEmitter;
 import org.eclipse.birt.report.engine.extension.IReportItemExecutor;
@@ -128,6 +130,13 @@ public class ReportExecutor implements IReportExecutor
 		{
 			// create execution optimize policy
 			context.optimizeExecution( );
+
+			// start the independent queries ahead of the report items
+			IDataEngine dataEngine = context.getDataEngine( );
+			if ( dataEngine instanceof DteDataEngine )
+			{
+				( (DteDataEngine) dataEngine ).prefetchQueries( report );
+			}
 		}
 
 		// prepare to execute the child
@@ -28,6 +28,7 @@ import org.eclipse.birt.core.framework.Platform;
 import org.eclipse.birt.report.engine.api.DataExtractionFormatInfo;
 import org.eclipse.birt.report.engine.api.EmitterInfo;
 import org.eclipse.birt.report.engine.emitter.IContentEmitter;
+import org.eclipse.birt.report.engine.emitter.IOutputMerger;
 import org.eclipse.birt.report.engine.executor.ExecutorManager;
 import org.eclipse.birt.report.engine.executor.ExtendedGenerateExecutor;
 import org.eclipse.birt.report.engine.extension.IDataExtractionExtension;
@@ -843,6 +844,27 @@ public class ExtensionManager
 		return emitterInfo == null ? DEFAULT_NEED_OUTPUT_RESULTSET : emitterInfo.needOutputResultSet( );
 	}
 
+	/**
+	 * @param emitterId
+	 *            emitterId
+	 * @return the output merger of the emitter, or null if the emitter
+	 *         doesn't define one.
+	 */
+	public IOutputMerger createOutputMerger( String emitterId )
+	{
+		EmitterInfo emitterInfo = getEmitter( emitterId );
+		if ( emitterInfo != null )
+		{
+			Object object = createObject( emitterInfo.getEmitter( ),
+					"outputMerger" ); //$NON-NLS-1$
+			if ( object instanceof IOutputMerger )
+			{
+				return (IOutputMerger) object;
+			}
+		}
+		return null;
+	}
+
 	private EmitterInfo getEmitter( String emitterId )
 	{
 		if ( emitterId != null )
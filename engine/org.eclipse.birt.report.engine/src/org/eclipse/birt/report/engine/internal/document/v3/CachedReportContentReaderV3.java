@@ -12,7 +12,6 @@
 package org.eclipse.birt.report.engine.internal.document.v3;
 
 import java.io.IOException;
-import java.util.HashMap;
 
 import org.eclipse.birt.core.archive.RAInputStream;
 import org.eclipse.birt.report.engine.content.IContent;
@@ -20,15 +19,34 @@ import org.eclipse.birt.report.engine.content.impl.ReportContent;
 import org.eclipse.birt.report.engine.executor.ExecutionContext;
 import org.eclipse.birt.report.engine.internal.document.DocumentExtension;
 
+/**
+ * The reader loads the contents of a content stream with their parents. The
+ * loaded contents are cached in a ContentCache, which may be shared by the
+ * readers of the same report. Each load pins the content in the cache until
+ * it is unloaded, so every loadContent must be paired with an unloadContent.
+ * The parents loaded with a content are not pinned, they are held by the
+ * cached content instead.
+ */
 public class CachedReportContentReaderV3
 {
 	protected ReportContentReaderV3 reader;
+	protected ContentCache cache;
+
 	public CachedReportContentReaderV3( ReportContent reportContent,
 			RAInputStream stream, ExecutionContext context )
 			throws IOException
+	{
+		this( reportContent, stream, context, ContentCache.createCache( context
+				.getAppContext( ) ) );
+	}
+
+	public CachedReportContentReaderV3( ReportContent reportContent,
+			RAInputStream stream, ExecutionContext context, ContentCache cache )
+			throws IOException
 	{
 		this.reader = new ReportContentReaderV3( reportContent, stream, context
 				.getApplicationClassLoader( ) );
+		this.cache = cache;
 	}
 	
 	public boolean isEmpty()
@@ -41,48 +59,44 @@ public class CachedReportContentReaderV3
 		if (reader != null)
 		{
 			reader.close( );
-			caches.clear( );
+			cache.removeAll( this );
 			reader = null;
 		}
 	}
 	
-	protected static class CacheEntry
+	public ContentCache getCache( )
 	{
-		long offset;
-		IContent content;
-		public CacheEntry(long offset, IContent content)
-		{
-			this.offset = offset;
-			this.content = content;
-		}
+		return cache;
 	}
-	
-	protected HashMap caches = new HashMap();
 
-	protected void addCache(long offset, IContent content)
+	protected void addCache( long offset, IContent content, long weight,
+			long parentOffset )
 	{
-		caches.put(new Long(offset), new CacheEntry(offset, content));
+		cache.put( this, offset, content, weight, true, parentOffset );
 	}
 	
 	protected void removeCache(long offset)
 	{
-		final Long hashKey = new Long (offset);
-		caches.remove( hashKey );
-		return;
+		cache.remove( this, offset );
+	}
+
+	protected void releaseCache( long offset )
+	{
+		cache.release( this, offset );
 	}
 
 	protected IContent findCache(long offset)
 	{
-		final Long hashKey = new Long (offset);
-		final CacheEntry cache = (CacheEntry)caches.get( hashKey );
-		if ( cache != null )
-			return cache.content;
-		return null;
+		return cache.get( this, offset, true );
 	}
 	
+	/**
+	 * Releases the content pinned by loadContent, the content stays in the
+	 * cache until it is evicted.
+	 */
 	public void unloadContent(long offset)
 	{
-		removeCache( offset );
+		releaseCache( offset );
 	}
 	
 	public IContent loadContent( long offset ) throws IOException
@@ -96,15 +110,22 @@ public class CachedReportContentReaderV3
 		// try to load the content from the stream
 
 		content = reader.readContent( offset );
+		int weight = reader.getContentSize( );
 		DocumentExtension docExt = (DocumentExtension) content
 				.getExtension( IContent.DOCUMENT_EXTENSION );
 		long pOffset = docExt.getParent( );
 		if ( pOffset != -1 )
 		{
+			// the parent is pinned until the content holds it
 			IContent parent = loadContent( pOffset );
 			content.setParent( parent );
+			addCache( offset, content, weight, pOffset );
+			releaseCache( pOffset );
+		}
+		else
+		{
+			addCache( offset, content, weight, -1 );
 		}
-		addCache( offset, content );
 		return content;
 	}
 	
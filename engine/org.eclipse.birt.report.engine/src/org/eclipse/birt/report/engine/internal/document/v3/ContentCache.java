@@ -0,0 +1,551 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.internal.document.v3;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.report.engine.api.EngineConstants;
+import org.eclipse.birt.report.engine.content.IContent;
+
+/**
+ * The contents loaded from the content streams of a report document. The
+ * contents are keyed by the reader and the offset of the content in the
+ * stream, so the body reader and the page reader of a report can share the
+ * same cache and the same memory budget.
+ *
+ * A content may be pinned while it is processed, the pins are counted and a
+ * content is kept until all its pins are released. A cached content also
+ * holds its parent, so the ancestors of the current content keep the states
+ * set on them (such as the generateBy of a table) as long as one of their
+ * descendants is cached. The contents neither pinned nor held by a child are
+ * bounded by the capacity, the least recently used ones are evicted first and
+ * a parent becomes evictable once its last cached child is evicted.
+ */
+public class ContentCache
+{
+
+	protected static Logger logger = Logger.getLogger( ContentCache.class
+			.getName( ) );
+
+	/**
+	 * the default size of the cached contents, in bytes
+	 */
+	public static final long DEFAULT_CAPACITY = 4 * 1024 * 1024;
+
+	private long capacity;
+
+	private long weight;
+
+	private int size;
+
+	private long hitCount;
+
+	private long missCount;
+
+	private Entry[] table = new Entry[64];
+
+	/**
+	 * the head of the double linked list of the released entries in access
+	 * order, head.after is the least recently used entry.
+	 */
+	private Entry head = new Entry( null, -1, null, 0 );
+
+	public ContentCache( )
+	{
+		this( DEFAULT_CAPACITY );
+	}
+
+	public ContentCache( long capacity )
+	{
+		this.capacity = capacity;
+		head.before = head;
+		head.after = head;
+	}
+
+	/**
+	 * Creates the cache with the capacity defined by
+	 * EngineConstants.APPCONTEXT_CONTENT_CACHE_SIZE in the application
+	 * context.
+	 *
+	 * @param appContext
+	 *            the application context, may be null.
+	 * @return the cache
+	 */
+	public static ContentCache createCache( Map appContext )
+	{
+		return new ContentCache( getCapacity( appContext ) );
+	}
+
+	private static long getCapacity( Map appContext )
+	{
+		if ( appContext == null )
+		{
+			return DEFAULT_CAPACITY;
+		}
+		Object value = appContext
+				.get( EngineConstants.APPCONTEXT_CONTENT_CACHE_SIZE );
+		if ( value instanceof Number )
+		{
+			return ( (Number) value ).longValue( );
+		}
+		if ( value instanceof String )
+		{
+			try
+			{
+				return Long.parseLong( (String) value );
+			}
+			catch ( NumberFormatException ex )
+			{
+				logger.log( Level.WARNING, "invalid content cache size: {0}", //$NON-NLS-1$
+						value );
+			}
+		}
+		return DEFAULT_CAPACITY;
+	}
+
+	/**
+	 * Sets the max size of the cached contents. The cache is disabled if the
+	 * capacity is less than 1.
+	 *
+	 * @param capacity
+	 *            the capacity in bytes
+	 */
+	public synchronized void setCapacity( long capacity )
+	{
+		this.capacity = capacity;
+		evict( );
+	}
+
+	public synchronized long getCapacity( )
+	{
+		return capacity;
+	}
+
+	/**
+	 * @return the size of the cached contents
+	 */
+	public synchronized long getWeight( )
+	{
+		return weight;
+	}
+
+	public synchronized int getSize( )
+	{
+		return size;
+	}
+
+	public synchronized long getHitCount( )
+	{
+		return hitCount;
+	}
+
+	public synchronized long getMissCount( )
+	{
+		return missCount;
+	}
+
+	/**
+	 * Gets the content loaded by the reader, the content becomes the most
+	 * recently used one.
+	 *
+	 * @param owner
+	 *            the reader which loads the content
+	 * @param offset
+	 *            the offset of the content
+	 * @return the cached content, null if it is not in the cache
+	 */
+	public synchronized IContent get( Object owner, long offset )
+	{
+		return get( owner, offset, false );
+	}
+
+	/**
+	 * Gets the content loaded by the reader.
+	 *
+	 * @param owner
+	 *            the reader which loads the content
+	 * @param offset
+	 *            the offset of the content
+	 * @param pin
+	 *            pin the content once more until it is released, otherwise
+	 *            the content becomes the most recently used one if it is not
+	 *            referenced.
+	 * @return the cached content, null if it is not in the cache
+	 */
+	public synchronized IContent get( Object owner, long offset, boolean pin )
+	{
+		Entry entry = find( owner, offset );
+		if ( entry == null )
+		{
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		if ( !entry.isReferenced( ) )
+		{
+			entry.unlink( );
+			if ( !pin )
+			{
+				entry.linkBefore( head );
+			}
+		}
+		if ( pin )
+		{
+			entry.pins++;
+		}
+		return entry.content;
+	}
+
+	/**
+	 * Caches the content loaded by the reader. The contents larger than the
+	 * capacity are not cached.
+	 *
+	 * @param owner
+	 *            the reader which loads the content
+	 * @param offset
+	 *            the offset of the content
+	 * @param content
+	 *            the content
+	 * @param contentWeight
+	 *            the size of the content
+	 */
+	public synchronized void put( Object owner, long offset, IContent content,
+			long contentWeight )
+	{
+		put( owner, offset, content, contentWeight, false );
+	}
+
+	/**
+	 * Caches the content loaded by the reader. A pinned content is kept until
+	 * it is released, whatever its size, the released contents larger than
+	 * the capacity are not cached.
+	 *
+	 * @param owner
+	 *            the reader which loads the content
+	 * @param offset
+	 *            the offset of the content
+	 * @param content
+	 *            the content
+	 * @param contentWeight
+	 *            the size of the content
+	 * @param pinned
+	 *            pin the content until it is released
+	 */
+	public synchronized void put( Object owner, long offset, IContent content,
+			long contentWeight, boolean pinned )
+	{
+		put( owner, offset, content, contentWeight, pinned, -1 );
+	}
+
+	/**
+	 * Caches the content loaded by the reader as a child of a cached content.
+	 * The parent is held by the content and is not evicted before it.
+	 *
+	 * @param owner
+	 *            the reader which loads the content
+	 * @param offset
+	 *            the offset of the content
+	 * @param content
+	 *            the content
+	 * @param contentWeight
+	 *            the size of the content
+	 * @param pinned
+	 *            pin the content until it is released
+	 * @param parentOffset
+	 *            the offset of the parent, -1 if the content has no parent
+	 */
+	public synchronized void put( Object owner, long offset, IContent content,
+			long contentWeight, boolean pinned, long parentOffset )
+	{
+		remove( owner, offset );
+		if ( !pinned && contentWeight > capacity )
+		{
+			return;
+		}
+		Entry entry = new Entry( owner, offset, content, contentWeight );
+		int index = indexOf( entry.hash, table.length );
+		entry.next = table[index];
+		table[index] = entry;
+		if ( pinned )
+		{
+			entry.pins = 1;
+		}
+		else
+		{
+			entry.linkBefore( head );
+		}
+		if ( parentOffset != -1 )
+		{
+			Entry parent = find( owner, parentOffset );
+			if ( parent != null )
+			{
+				if ( !parent.isReferenced( ) )
+				{
+					parent.unlink( );
+				}
+				parent.children++;
+				entry.parent = parent;
+			}
+		}
+		weight += contentWeight;
+		if ( ++size > table.length * 3 / 4 )
+		{
+			resize( );
+		}
+		evict( );
+	}
+
+	/**
+	 * Releases a pin of the content. Once all the pins are released and no
+	 * cached child holds it, the content becomes the most recently used one
+	 * and may be evicted.
+	 *
+	 * @param owner
+	 *            the reader which loads the content
+	 * @param offset
+	 *            the offset of the content
+	 */
+	public synchronized void release( Object owner, long offset )
+	{
+		Entry entry = find( owner, offset );
+		if ( entry != null && entry.pins > 0 )
+		{
+			entry.pins--;
+			if ( !entry.isReferenced( ) )
+			{
+				entry.linkBefore( head );
+				evict( );
+			}
+		}
+	}
+
+	/**
+	 * Removes the content loaded by the reader.
+	 *
+	 * @return the removed content, null if it is not in the cache
+	 */
+	public synchronized IContent remove( Object owner, long offset )
+	{
+		int hash = hash( owner, offset );
+		int index = indexOf( hash, table.length );
+		Entry prev = null;
+		for ( Entry entry = table[index]; entry != null; entry = entry.next )
+		{
+			if ( entry.matches( hash, owner, offset ) )
+			{
+				if ( prev == null )
+				{
+					table[index] = entry.next;
+				}
+				else
+				{
+					prev.next = entry.next;
+				}
+				delete( entry );
+				return entry.content;
+			}
+			prev = entry;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes all the contents loaded by the reader.
+	 */
+	public synchronized void removeAll( Object owner )
+	{
+		// the referenced entries are only in the table
+		for ( int i = 0; i < table.length; i++ )
+		{
+			Entry prev = null;
+			Entry entry = table[i];
+			while ( entry != null )
+			{
+				Entry next = entry.next;
+				if ( entry.owner == owner )
+				{
+					if ( prev == null )
+					{
+						table[i] = next;
+					}
+					else
+					{
+						prev.next = next;
+					}
+					delete( entry );
+				}
+				else
+				{
+					prev = entry;
+				}
+				entry = next;
+			}
+		}
+	}
+
+	public synchronized void clear( )
+	{
+		table = new Entry[64];
+		head.before = head;
+		head.after = head;
+		weight = 0;
+		size = 0;
+	}
+
+	private Entry find( Object owner, long offset )
+	{
+		int hash = hash( owner, offset );
+		for ( Entry entry = table[indexOf( hash, table.length )]; entry != null; entry = entry.next )
+		{
+			if ( entry.matches( hash, owner, offset ) )
+			{
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private void delete( Entry entry )
+	{
+		if ( !entry.isReferenced( ) )
+		{
+			entry.unlink( );
+		}
+		entry.removed = true;
+		weight -= entry.weight;
+		size--;
+		Entry parent = entry.parent;
+		if ( parent != null && !parent.removed )
+		{
+			parent.children--;
+			if ( !parent.isReferenced( ) )
+			{
+				// the descendants are evicted before the parent
+				parent.linkBefore( head.after );
+			}
+		}
+	}
+
+	private void evict( )
+	{
+		while ( weight > capacity && head.after != head )
+		{
+			Entry entry = head.after;
+			remove( entry.owner, entry.offset );
+		}
+	}
+
+	private void resize( )
+	{
+		Entry[] newTable = new Entry[table.length * 2];
+		for ( int i = 0; i < table.length; i++ )
+		{
+			Entry entry = table[i];
+			while ( entry != null )
+			{
+				Entry next = entry.next;
+				int index = indexOf( entry.hash, newTable.length );
+				entry.next = newTable[index];
+				newTable[index] = entry;
+				entry = next;
+			}
+		}
+		table = newTable;
+	}
+
+	private static int hash( Object owner, long offset )
+	{
+		int hash = (int) ( offset ^ ( offset >>> 32 ) )
+				+ System.identityHashCode( owner ) * 31;
+		// spread the bits as the offsets are multiples of small numbers
+		hash ^= ( hash >>> 20 ) ^ ( hash >>> 12 );
+		return hash ^ ( hash >>> 7 ) ^ ( hash >>> 4 );
+	}
+
+	private static int indexOf( int hash, int length )
+	{
+		return hash & ( length - 1 );
+	}
+
+	private static class Entry
+	{
+
+		Object owner;
+		long offset;
+		int hash;
+		IContent content;
+		long weight;
+		/**
+		 * the count of the pins not released yet
+		 */
+		int pins;
+		/**
+		 * the count of the cached children holding this entry
+		 */
+		int children;
+		/**
+		 * the parent held by this entry
+		 */
+		Entry parent;
+		/**
+		 * the entry is no longer in the table
+		 */
+		boolean removed;
+		/**
+		 * the next entry in the same bucket
+		 */
+		Entry next;
+		Entry before;
+		Entry after;
+
+		Entry( Object owner, long offset, IContent content, long weight )
+		{
+			this.owner = owner;
+			this.offset = offset;
+			this.hash = hash( owner, offset );
+			this.content = content;
+			this.weight = weight;
+		}
+
+		/**
+		 * the referenced entry is not linked in the access order
+		 */
+		boolean isReferenced( )
+		{
+			return pins > 0 || children > 0;
+		}
+
+		boolean matches( int hash, Object owner, long offset )
+		{
+			return this.hash == hash && this.offset == offset
+					&& this.owner == owner;
+		}
+
+		void linkBefore( Entry entry )
+		{
+			after = entry;
+			before = entry.before;
+			before.after = this;
+			entry.before = this;
+		}
+
+		void unlink( )
+		{
+			before.after = after;
+			after.before = before;
+			before = null;
+			after = null;
+		}
+	}
+}
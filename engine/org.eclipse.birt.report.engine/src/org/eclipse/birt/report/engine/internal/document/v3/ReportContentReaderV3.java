@@ -55,6 +55,11 @@ public class ReportContentReaderV3
 	protected boolean isEmpty = false;
 
 	protected ClassLoader loader;
+
+	/**
+	 * the size of the last content read from the stream.
+	 */
+	protected int contentSize;
 	
 	public ReportContentReaderV3( ReportContent reportContent,
 			RAInputStream stream, ClassLoader loader ) throws IOException
@@ -161,6 +166,7 @@ public class ReportContentReaderV3
 		}
 
 		int size = stream.readInt( );
+		contentSize = size;
 		byte[] buffer = new byte[size];
 		stream.readFully( buffer, 0, size );
 		DataInputStream oi = new DataInputStream( new ByteArrayInputStream(
@@ -389,6 +395,16 @@ public class ReportContentReaderV3
 		this.offset = offset;
 	}
 
+	/**
+	 * get the size of the last content read out, in bytes.
+	 * 
+	 * @return the size of the content in the stream
+	 */
+	public int getContentSize( )
+	{
+		return contentSize;
+	}
+
 	public void dump( ) throws IOException
 	{
 		IContent content = readContent( 0 );
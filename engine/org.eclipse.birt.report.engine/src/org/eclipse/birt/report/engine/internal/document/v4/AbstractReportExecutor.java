@@ -34,6 +34,7 @@ import org.eclipse.birt.report.engine.executor.IReportExecutor;
 import org.eclipse.birt.report.engine.extension.IReportItemExecutor;
 import org.eclipse.birt.report.engine.internal.document.PageHintReader;
 import org.eclipse.birt.report.engine.internal.document.v3.CachedReportContentReaderV3;
+import org.eclipse.birt.report.engine.internal.document.v3.ContentCache;
 import org.eclipse.birt.report.engine.ir.MasterPageDesign;
 import org.eclipse.birt.report.engine.ir.Report;
 
@@ -104,11 +105,14 @@ abstract public class AbstractReportExecutor implements IReportExecutor
 			IDocArchiveReader archive = reportDoc.getArchive( );
 			RAInputStream in = archive
 					.getStream( ReportDocumentConstants.CONTENT_STREAM );
+			// the body reader and the page reader share the content cache
+			ContentCache cache = ContentCache.createCache( context
+					.getAppContext( ) );
 			reader = new CachedReportContentReaderV3( reportContent, in,
-					context );
+					context, cache );
 			in = archive.getStream( ReportDocumentConstants.PAGE_STREAM );
 			pageReader = new CachedReportContentReaderV3( reportContent, in,
-					context );
+					context, cache );
 			hintsReader = new PageHintReader( reportDoc );
 		}
 		catch ( IOException ex )
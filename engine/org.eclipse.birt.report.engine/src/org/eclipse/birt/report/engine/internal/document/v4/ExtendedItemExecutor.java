@@ -295,6 +295,7 @@ public class ExtendedItemExecutor extends ContainerExecutor
 		{
 			IContent content = reader.loadContent( offset );
 			InstanceID iid = content.getInstanceID( );
+			reader.unloadContent( offset );
 			ReportItemDesign design = (ReportItemDesign) report.getDesign( )
 					.getReportItemByID( iid.getComponentID( ) );
 			return manager.createExecutor( this, design, offset );
@@ -114,6 +114,7 @@ public class ReportletExecutorV4 extends AbstractReportExecutor
 			}
 			content = (IContent) content.getParent( );
 		}
+		reader.unloadContent( offset );
 		InstanceIndex[] edges = new InstanceIndex[parents.size( )];
 		Iterator iter = parents.iterator( );
 		int length = 0;
@@ -32,6 +32,7 @@ import org.eclipse.birt.report.engine.extension.IReportItemExecutor;
 import org.eclipse.birt.report.engine.i18n.MessageConstants;
 import org.eclipse.birt.report.engine.internal.document.PageHintReader;
 import org.eclipse.birt.report.engine.internal.document.v3.CachedReportContentReaderV3;
+import org.eclipse.birt.report.engine.internal.document.v3.ContentCache;
 import org.eclipse.birt.report.engine.ir.MasterPageDesign;
 import org.eclipse.birt.report.engine.ir.Report;
 import org.eclipse.birt.report.engine.presentation.IPageHint;
@@ -108,14 +109,17 @@ public abstract class AbstractReportReader implements IReportExecutor
 		IDocArchiveReader archive = reportDoc.getArchive( );
 		RAInputStream in = archive
 				.getStream( ReportDocumentConstants.CONTENT_STREAM );
-		reader = new CachedReportContentReaderV3( reportContent, in, context );
+		// the body reader and the page reader share the content cache
+		ContentCache cache = ContentCache.createCache( context.getAppContext( ) );
+		reader = new CachedReportContentReaderV3( reportContent, in, context,
+				cache );
 
 		// open the page hints stream and the page content stream
 		hintReader = new PageHintReader( reportDoc );
 
 		in = archive.getStream( ReportDocumentConstants.PAGE_STREAM );
 		pageReader = new CachedReportContentReaderV3( reportContent, in,
-				context );
+				context, cache );
 	}
 
 	protected void closeReaders( )
@@ -94,6 +94,7 @@ public class ReportPageReader extends AbstractReportReader
 			}
 			content = (IContent) content.getParent( );
 		}
+		reader.unloadContent( offset );
 		Long[] edges = new Long[parents.size( )];
 		Iterator iter = parents.iterator( );
 		int length = 0;
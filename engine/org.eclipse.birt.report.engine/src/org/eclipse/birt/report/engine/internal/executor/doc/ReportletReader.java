@@ -71,6 +71,7 @@ public class ReportletReader extends AbstractReportReader
 			}
 			content = (IContent) content.getParent( );
 		}
+		reader.unloadContent( offset );
 		Long[] edges = new Long[parents.size( )];
 		Iterator iter = parents.iterator( );
 		int length = 0;
@@ -21,6 +21,8 @@ public class FontInfo
 {
 	private BaseFont bf;
 
+	private FontMetricsCache metrics;
+
 	private float fontSize;
 
 	private int fontStyle;
@@ -40,6 +42,7 @@ public class FontInfo
 			boolean simulation )
 	{
 		this.bf = bf;
+		this.metrics = bf == null ? null : FontMetricsCache.getInstance( bf );
 		this.fontStyle = fontStyle;
 		this.simulation = simulation;
 		this.fontSize = fontSize;
@@ -50,6 +53,7 @@ public class FontInfo
 	public FontInfo( FontInfo fontInfo )
 	{
 		this.bf = fontInfo.bf;
+		this.metrics = fontInfo.metrics;
 		this.fontStyle = fontInfo.fontStyle;
 		this.simulation = fontInfo.simulation;
 		this.fontSize = fontInfo.fontSize;
@@ -203,11 +207,11 @@ public class FontInfo
 		if ( simulation
 				&& ( Font.ITALIC == fontStyle || Font.BOLDITALIC == fontStyle ) )
 		{
-			return ( bf.getWidthPoint( word, fontSize ) + fontHeight
+			return ( metrics.getWidthPoint( word, fontSize ) + fontHeight
 					* EmitterUtil.getItalicHorizontalCoefficient( ) );
 		}
 
-		return bf.getWidthPoint( word, fontSize );
+		return metrics.getWidthPoint( word, fontSize );
 	}
 
 	/**
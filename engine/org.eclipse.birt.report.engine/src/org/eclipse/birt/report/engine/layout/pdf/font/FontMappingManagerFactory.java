@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -493,7 +494,14 @@ public class FontMappingManagerFactory
 		return font;
 	}
 
-	private HashMap baseFonts = new HashMap( );
+	/**
+	 * the created fonts, the key of a font failed to be created is mapped to
+	 * NULL_FONT. The fonts are got without locking, only the creation is
+	 * synchronized.
+	 */
+	private ConcurrentHashMap<String, Object> baseFonts = new ConcurrentHashMap<String, Object>( );
+
+	private static final Object NULL_FONT = new Object( );
 
 	/**
 	 * Creates iText BaseFont with the given font family name.
@@ -505,38 +513,44 @@ public class FontMappingManagerFactory
 	public BaseFont createFont( String familyName, int fontStyle )
 	{
 		String key = familyName + fontStyle;
-		BaseFont bf = null;
-		synchronized ( baseFonts )
+		Object font = baseFonts.get( key );
+		if ( font == null )
 		{
-			if ( baseFonts.containsKey( key ) )
-			{
-				bf = (BaseFont) baseFonts.get( key );
-			}
-			else
+			synchronized ( baseFonts )
 			{
-				try
+				font = baseFonts.get( key );
+				if ( font == null )
 				{
-					String fontEncoding = (String) fontEncodings
-							.get( familyName );
-					if ( fontEncoding == null )
+					BaseFont bf = null;
+					try
 					{
-						fontEncoding = BaseFont.IDENTITY_H;
+						String fontEncoding = (String) fontEncodings
+								.get( familyName );
+						if ( fontEncoding == null )
+						{
+							fontEncoding = BaseFont.IDENTITY_H;
+						}
+						bf = FontFactory.getFont( familyName, fontEncoding,
+								BaseFont.EMBEDDED, 14, fontStyle ).getBaseFont( );
 					}
-					bf = FontFactory.getFont( familyName, fontEncoding,
-							BaseFont.EMBEDDED, 14, fontStyle ).getBaseFont( );
-				}
-				catch ( Throwable de )
-				{
-					logger.log( Level.WARNING, de.getMessage( ), de );
+					catch ( Throwable de )
+					{
+						logger.log( Level.WARNING, de.getMessage( ), de );
+					}
+					font = bf == null ? NULL_FONT : bf;
+					baseFonts.put( key, font );
 				}
-				baseFonts.put( key, bf );
 			}
-			if ( bf == null && fontStyle != Font.NORMAL )
+		}
+		if ( font == NULL_FONT )
+		{
+			if ( fontStyle != Font.NORMAL )
 			{
 				return createFont( familyName, Font.NORMAL );
 			}
+			return null;
 		}
-		return bf;
+		return (BaseFont) font;
 	}
 
 	private static void registerFontPath( final String fontPath )
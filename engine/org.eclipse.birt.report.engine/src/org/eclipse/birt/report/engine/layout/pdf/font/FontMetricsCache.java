@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.layout.pdf.font;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.lowagie.text.pdf.BaseFont;
+
+/**
+ * The widths of the glyphs and the words of a font, shared by all the
+ * documents laid out in the process. The widths are saved in the units of the
+ * font, 1/1000 of the font size, so they are shared by all the font sizes. The
+ * width of a word is the sum of the widths of its characters without kerning,
+ * which is what BaseFont.getWidthPoint returns, so the width got from the
+ * cache is the same as the one got from the font.
+ *
+ * The cache is read without locking. The widths of the Latin-1 characters are
+ * read from the font when the cache is created, the widths of the other
+ * characters are read the first time they are used.
+ */
+public class FontMetricsCache
+{
+
+	private static final int UNKNOWN_WIDTH = -1;
+
+	private static final int PAGE_SIZE = 256;
+
+	/**
+	 * the words exceeding this count are not cached
+	 */
+	private static final int MAX_WORD_COUNT = 10000;
+
+	/**
+	 * the longer words are not cached, since they are unlikely to be measured
+	 * again
+	 */
+	private static final int MAX_WORD_LENGTH = 32;
+
+	private static ConcurrentMap<BaseFont, FontMetricsCache> caches = new ConcurrentHashMap<BaseFont, FontMetricsCache>( );
+
+	private BaseFont bf;
+
+	private int[] latin1Widths = new int[PAGE_SIZE];
+
+	/**
+	 * the widths of the characters above Latin-1, a page holds the widths of
+	 * 256 characters
+	 */
+	private AtomicReferenceArray<int[]> pages = new AtomicReferenceArray<int[]>( 0x10000 / PAGE_SIZE );
+
+	private ConcurrentMap<String, Integer> wordWidths = new ConcurrentHashMap<String, Integer>( );
+
+	private FontMetricsCache( BaseFont bf )
+	{
+		this.bf = bf;
+		for ( int i = 0; i < latin1Widths.length; i++ )
+		{
+			latin1Widths[i] = bf.getWidth( i );
+		}
+	}
+
+	/**
+	 * Gets the cache of the font.
+	 *
+	 * @param bf
+	 *            the font
+	 * @return the cache shared by all the users of the font
+	 */
+	public static FontMetricsCache getInstance( BaseFont bf )
+	{
+		FontMetricsCache cache = caches.get( bf );
+		if ( cache == null )
+		{
+			cache = new FontMetricsCache( bf );
+			FontMetricsCache existCache = caches.putIfAbsent( bf, cache );
+			if ( existCache != null )
+			{
+				cache = existCache;
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Gets the width of the word in points.
+	 *
+	 * @param word
+	 *            the word
+	 * @param fontSize
+	 *            the size of the font
+	 * @return the width of the word, the same as BaseFont.getWidthPoint
+	 */
+	public float getWidthPoint( String word, float fontSize )
+	{
+		return getWidth( word ) * 0.001f * fontSize;
+	}
+
+	/**
+	 * Gets the width of the word in the units of the font.
+	 *
+	 * @param word
+	 *            the word
+	 * @return the width of the word, the same as BaseFont.getWidth
+	 */
+	public int getWidth( String word )
+	{
+		int length = word.length( );
+		if ( length == 1 )
+		{
+			return getCharWidth( word.charAt( 0 ) );
+		}
+		if ( length > MAX_WORD_LENGTH )
+		{
+			return calculateWidth( word );
+		}
+		Integer width = wordWidths.get( word );
+		if ( width != null )
+		{
+			return width.intValue( );
+		}
+		int result = calculateWidth( word );
+		if ( wordWidths.size( ) >= MAX_WORD_COUNT )
+		{
+			wordWidths.clear( );
+		}
+		wordWidths.put( word, Integer.valueOf( result ) );
+		return result;
+	}
+
+	private int calculateWidth( String word )
+	{
+		int total = 0;
+		for ( int i = 0; i < word.length( ); i++ )
+		{
+			char c = word.charAt( i );
+			if ( isSurrogate( c ) )
+			{
+				// the surrogate pairs are measured by the font
+				return bf.getWidth( word );
+			}
+			total += getCharWidth( c );
+		}
+		return total;
+	}
+
+	private static boolean isSurrogate( char c )
+	{
+		return Character.isHighSurrogate( c ) || Character.isLowSurrogate( c );
+	}
+
+	private int getCharWidth( char c )
+	{
+		if ( c < PAGE_SIZE )
+		{
+			return latin1Widths[c];
+		}
+		if ( isSurrogate( c ) )
+		{
+			return bf.getWidth( String.valueOf( c ) );
+		}
+		int pageIndex = c / PAGE_SIZE;
+		int[] page = pages.get( pageIndex );
+		if ( page == null )
+		{
+			int[] newPage = new int[PAGE_SIZE];
+			for ( int i = 0; i < newPage.length; i++ )
+			{
+				newPage[i] = UNKNOWN_WIDTH;
+			}
+			if ( pages.compareAndSet( pageIndex, null, newPage ) )
+			{
+				page = newPage;
+			}
+			else
+			{
+				page = pages.get( pageIndex );
+			}
+		}
+		int width = page[c % PAGE_SIZE];
+		if ( width == UNKNOWN_WIDTH )
+		{
+			// the width never changes, so it is harmless if several threads
+			// read it from the font at the same time
+			width = bf.getWidth( c );
+			page[c % PAGE_SIZE] = width;
+		}
+		return width;
+	}
+}
@@ -21,6 +21,7 @@ import java.util.Locale;
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.format.DateFormatter;
+import org.eclipse.birt.core.format.FormatterCache;
 import org.eclipse.birt.core.format.NumberFormatter;
 import org.eclipse.birt.core.format.StringFormatter;
 import org.eclipse.birt.report.model.api.elements.DesignChoiceConstants;
@@ -1454,28 +1455,28 @@ public class ParameterValidationUtil
 		{
 			if ( value instanceof Float )
 			{
-				NumberFormatter formatter = new NumberFormatter( locale );
-				formatter.applyPattern( format );
+				NumberFormatter formatter = FormatterCache.getNumberFormatter( format,
+						locale );
 				return formatter.format( ( (Number) value ).floatValue( ) );
 			}
-			NumberFormatter formatter = new NumberFormatter( locale );
-			formatter.applyPattern( format );
+			NumberFormatter formatter = FormatterCache.getNumberFormatter( format,
+					locale );
 			return formatter.format( ( (Number) value ).doubleValue( ) );
 		}
 		else if ( DesignChoiceConstants.PARAM_TYPE_DECIMAL
 				.equalsIgnoreCase( dataType )
 				|| value instanceof BigDecimal )
 		{
-			NumberFormatter formatter = new NumberFormatter( locale );
-			formatter.applyPattern( format );
+			NumberFormatter formatter = FormatterCache.getNumberFormatter( format,
+					locale );
 			return formatter.format( ( (BigDecimal) value ) );
 		}
 		else if ( DesignChoiceConstants.PARAM_TYPE_INTEGER
 				.equalsIgnoreCase( dataType )
 				|| value instanceof Integer || value instanceof Long )
 		{
-			NumberFormatter formatter = new NumberFormatter( locale );
-			formatter.applyPattern( format );
+			NumberFormatter formatter = FormatterCache.getNumberFormatter( format,
+					locale );
 			return formatter.format( ( (Number) value ).longValue( ) );
 		}
 		else if ( DesignChoiceConstants.PARAM_TYPE_BOOLEAN
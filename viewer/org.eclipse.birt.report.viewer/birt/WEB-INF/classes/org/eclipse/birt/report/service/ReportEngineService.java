@@ -225,6 +225,9 @@ public class ReportEngineService
 		// set maxrows
 		config.setMaxRowsPerQuery( ParameterAccessor.maxRows );
 
+		// set the count of cached designs
+		config.setDesignCacheSize( ParameterAccessor.designCacheSize );
+
 		// configure the loggers
 		LoggingUtil.configureLoggers( ParameterAccessor.loggers,
 				level,
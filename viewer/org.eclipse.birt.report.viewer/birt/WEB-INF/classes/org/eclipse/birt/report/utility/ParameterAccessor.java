@@ -432,6 +432,12 @@ public class ParameterAccessor
 	 */
 	public static final String INIT_PARAM_VIEWER_MAXROWS = "BIRT_VIEWER_MAX_ROWS"; //$NON-NLS-1$
 
+	/**
+	 * Context parameter name that gives the count of report designs cached by
+	 * the engine.
+	 */
+	public static final String INIT_PARAM_VIEWER_DESIGN_CACHE_SIZE = "BIRT_VIEWER_DESIGN_CACHE_SIZE"; //$NON-NLS-1$
+
 	/**
 	 * Context parameter name that gives preview report cube fetch levels
 	 * limited.
@@ -519,6 +525,11 @@ public class ParameterAccessor
 	 */
 	public static int maxRows;
 
+	/**
+	 * Count of report designs cached by the engine
+	 */
+	public static int designCacheSize;
+
 	/**
 	 * Preview report max cube fetch levels
 	 */
@@ -1552,6 +1563,17 @@ public class ParameterAccessor
 			maxRows = -1;
 		}
 
+		// Get design cache size parameter from ServletContext
+		String s_designCacheSize = context.getInitParameter( INIT_PARAM_VIEWER_DESIGN_CACHE_SIZE );
+		try
+		{
+			designCacheSize = Integer.valueOf( s_designCacheSize ).intValue( );
+		}
+		catch ( NumberFormatException e )
+		{
+			designCacheSize = 0;
+		}
+
 		// Get preview report max cube fetch levels parameter from
 		// ServletContext
 		String s_maxRowLevels = context.getInitParameter( INIT_PARAM_VIEWER_MAXCUBE_ROWLEVELS );